@@ -23,6 +23,7 @@
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
 
 /**
@@ -65,7 +66,7 @@ public void start() {
 
 	@Override
 	public void stop() {
-		
+		AuditMetricsRegistry.getInstance().unregister(this);
 	}
 
 	@Override
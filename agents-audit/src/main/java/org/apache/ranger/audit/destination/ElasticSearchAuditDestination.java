@@ -20,20 +20,30 @@
 package org.apache.ranger.audit.destination;
 
 import java.io.File;
+import java.io.InputStream;
 import java.security.PrivilegedActionException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthSchemeProvider;
 import org.apache.http.client.CredentialsProvider;
@@ -51,7 +61,11 @@
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
@@ -70,6 +84,15 @@ public class ElasticSearchAuditDestination extends AuditDestination {
     public static final String CONFIG_INDEX = "index";
     public static final String CONFIG_PREFIX = "ranger.audit.elasticsearch";
     public static final String DEFAULT_INDEX = "ranger_audits";
+    public static final String CONFIG_BULK_STREAMING = "bulk.streaming.enabled";
+    public static final String CONFIG_BULK_GZIP = "bulk.gzip.enabled";
+    public static final String CONFIG_BULK_MAX_INFLIGHT = "bulk.max.inflight";
+    public static final String CONFIG_BULK_MIN_SIZE = "bulk.min.size";
+    public static final String CONFIG_BULK_MAX_SIZE = "bulk.max.size";
+    public static final String CONFIG_BULK_TARGET_LATENCY_MS = "bulk.target.latency.ms";
+    public static final String CONFIG_BULK_MAX_RETRIES = "bulk.max.retries";
+
+    private static final RequestOptions GZIP_REQUEST_OPTIONS = RequestOptions.DEFAULT.toBuilder().addHeader(HttpHeaders.CONTENT_ENCODING, "gzip").build();
 
     private String index = "index";
     private volatile RestHighLevelClient client = null;
@@ -80,6 +103,18 @@ public class ElasticSearchAuditDestination extends AuditDestination {
     private String hosts;
     private Subject subject;
 
+    // streaming bulk requests: events are split into bulks of bulkSize, of which up to bulkMaxInFlight are sent at a time
+    private boolean isBulkStreaming = false;
+    private boolean isBulkGzip = false;
+    private int bulkMaxInFlight = 2;
+    private int bulkMinSize = 100;
+    private int bulkMaxSize = 5000;
+    private long bulkTargetLatencyMs = 1000;
+    private int bulkMaxRetries = 3;
+    private Semaphore bulkInFlight;
+    private final AtomicInteger bulkSize = new AtomicInteger();
+    private final Queue<ElasticSearchBulkWriter> bulkWriters = new ConcurrentLinkedQueue<>();
+
     public ElasticSearchAuditDestination() {
         propPrefix = CONFIG_PREFIX;
     }
@@ -94,6 +129,18 @@ public void init(Properties props, String propPrefix) {
         this.port = MiscUtil.getIntProperty(props, propPrefix + "." + CONFIG_PORT, 9200);
         this.index = getStringProperty(props, propPrefix + "." + CONFIG_INDEX, DEFAULT_INDEX);
         this.hosts = getHosts();
+        this.isBulkStreaming = MiscUtil.getBooleanProperty(props, propPrefix + "." + CONFIG_BULK_STREAMING, false);
+        this.isBulkGzip = MiscUtil.getBooleanProperty(props, propPrefix + "." + CONFIG_BULK_GZIP, false);
+        this.bulkMaxInFlight = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + CONFIG_BULK_MAX_INFLIGHT, bulkMaxInFlight));
+        this.bulkMinSize = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + CONFIG_BULK_MIN_SIZE, bulkMinSize));
+        this.bulkMaxSize = Math.max(bulkMinSize, MiscUtil.getIntProperty(props, propPrefix + "." + CONFIG_BULK_MAX_SIZE, bulkMaxSize));
+        this.bulkTargetLatencyMs = MiscUtil.getLongProperty(props, propPrefix + "." + CONFIG_BULK_TARGET_LATENCY_MS, bulkTargetLatencyMs);
+        this.bulkMaxRetries = Math.max(0, MiscUtil.getIntProperty(props, propPrefix + "." + CONFIG_BULK_MAX_RETRIES, bulkMaxRetries));
+        this.bulkInFlight = new Semaphore(bulkMaxInFlight);
+        this.bulkSize.set(bulkMinSize);
+        if (isBulkStreaming) {
+            LOG.info("Streaming bulk requests: gzip=" + isBulkGzip + ", maxInFlight=" + bulkMaxInFlight + ", size=[" + bulkMinSize + ", " + bulkMaxSize + "], targetLatencyMs=" + bulkTargetLatencyMs + ", maxRetries=" + bulkMaxRetries);
+        }
         LOG.info("Connecting to ElasticSearch: " + connectionString());
         getClient(); // Initialize client
     }
@@ -122,6 +169,10 @@ public boolean log(Collection<AuditEventBase> events) {
                 return ret;
             }
 
+            if (isBulkStreaming) {
+                return logBulks(client.getLowLevelClient(), events);
+            }
+
             ArrayList<AuditEventBase> eventList = new ArrayList<>(events);
             BulkRequest bulkRequest = new BulkRequest();
             try {
@@ -163,6 +214,197 @@ public boolean log(Collection<AuditEventBase> events) {
         return ret;
     }
 
+    /*
+     * Sends the events in bulks written by ElasticSearchBulkWriter, up to bulkMaxInFlight at a time, and waits for all
+     * of them to complete. The size of bulks adapts to the latency of responses: it grows while responses take less
+     * than half of the target latency, and is halved when they take longer or ElasticSearch rejects a bulk.
+     *
+     * Events of bulks that failed with HTTP 429, 5xx or an I/O error, and items that failed with 429 or 5xx, are sent
+     * again, up to bulkMaxRetries times; other failures are not retried. Counts are recorded only when the batch
+     * completes, as the queue sends the whole batch again when false is returned.
+     */
+    boolean logBulks(RestClient lowLevelClient, Collection<AuditEventBase> events) throws Exception {
+        List<AuditEventBase> pending = events instanceof List ? (List<AuditEventBase>) events : new ArrayList<>(events);
+        List<Map.Entry<AuditEventBase, String>> failures = new ArrayList<>();
+        int successCount = 0;
+
+        for (int retry = 0; ; retry++) {
+            List<AuditEventBase> retryEvents = new ArrayList<>();
+            Exception retryError = null;
+
+            for (BulkResult result : sendBulks(lowLevelClient, pending)) {
+                result.await();
+
+                failures.addAll(result.failed);
+                if (result.error != null) {
+                    if (isRetriable(result.error)) {
+                        retryEvents.addAll(result.written);
+                        retryError = result.error;
+                    } else {
+                        for (AuditEventBase event : result.written) {
+                            failures.add(new AbstractMap.SimpleImmutableEntry<>(event, result.error.toString()));
+                        }
+                    }
+                } else {
+                    for (Map.Entry<Integer, ElasticSearchBulkWriter.ItemFailure> failure : result.itemFailures.entrySet()) {
+                        AuditEventBase event = result.written.get(failure.getKey());
+
+                        if (ElasticSearchBulkWriter.isRetriable(failure.getValue().getStatus())) {
+                            retryEvents.add(event);
+                        } else {
+                            failures.add(new AbstractMap.SimpleImmutableEntry<>(event, failure.getValue().getReason()));
+                        }
+                    }
+                    successCount += result.written.size() - result.itemFailures.size();
+                }
+            }
+
+            if (retryEvents.isEmpty()) {
+                break;
+            }
+
+            if (retry >= bulkMaxRetries) {
+                // events of the batch are sent again by the queue; documents are indexed by event id, so resending the
+                // events already indexed does not duplicate them
+                addDeferredCount(events.size());
+                logError("Error sending " + retryEvents.size() + " events to ElasticSearch, after " + retry + " retries", retryError);
+
+                return false;
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Retrying " + retryEvents.size() + " of " + events.size() + " events (retry=" + (retry + 1) + ")", retryError);
+            }
+
+            Thread.sleep(bulkTargetLatencyMs * (retry + 1));
+
+            pending = retryEvents;
+        }
+
+        for (Map.Entry<AuditEventBase, String> failure : failures) {
+            logFailedEvent(failure.getKey(), failure.getValue());
+        }
+        addFailedCount(failures.size());
+        addSuccessCount(successCount);
+
+        return true;
+    }
+
+    private List<BulkResult> sendBulks(RestClient lowLevelClient, List<AuditEventBase> events) throws InterruptedException {
+        List<BulkResult> ret = new ArrayList<>();
+
+        for (int from = 0; from < events.size(); ) {
+            int to = Math.min(events.size(), from + bulkSize.get());
+            List<AuditEventBase> bulkEvents = events.subList(from, to);
+
+            bulkInFlight.acquire();
+
+            ElasticSearchBulkWriter writer = bulkWriters.poll();
+            if (writer == null) {
+                writer = new ElasticSearchBulkWriter(index);
+            }
+
+            BulkResult result = new BulkResult(bulkEvents, writer);
+            ret.add(result);
+
+            try {
+                writer.reset();
+                for (AuditEventBase event : bulkEvents) {
+                    try {
+                        writer.write((AuthzAuditEvent) event);
+                        result.written.add(event);
+                    } catch (Exception ex) {
+                        result.failed.add(new AbstractMap.SimpleImmutableEntry<>(event, ex.toString()));
+                    }
+                }
+
+                if (writer.getCount() > 0) {
+                    Request request = new Request("POST", "/_bulk");
+                    request.setEntity(writer.toEntity(isBulkGzip));
+                    if (isBulkGzip) {
+                        request.setOptions(GZIP_REQUEST_OPTIONS);
+                    }
+                    lowLevelClient.performRequestAsync(request, result);
+                } else {
+                    result.complete(null);
+                }
+            } catch (Exception ex) {
+                result.onFailure(ex);
+            }
+
+            from = to;
+        }
+
+        return ret;
+    }
+
+    // HTTP 429 and 5xx responses, and errors without a response - like a failed connection - are retried
+    private static boolean isRetriable(Exception error) {
+        return !(error instanceof ResponseException) || ElasticSearchBulkWriter.isRetriable(((ResponseException) error).getResponse().getStatusLine().getStatusCode());
+    }
+
+    private void adjustBulkSize(int sentSize, long latencyMs, boolean isRejected) {
+        int current = bulkSize.get();
+        int updated = current;
+
+        if (isRejected || latencyMs > bulkTargetLatencyMs) {
+            updated = Math.max(bulkMinSize, current / 2);
+        } else if (latencyMs < bulkTargetLatencyMs / 2 && sentSize >= current) {
+            updated = Math.min(bulkMaxSize, current + bulkMinSize);
+        }
+
+        if (updated != current && bulkSize.compareAndSet(current, updated) && LOG.isDebugEnabled()) {
+            LOG.debug("bulk size: " + current + " => " + updated + " (latencyMs=" + latencyMs + ", rejected=" + isRejected + ")");
+        }
+    }
+
+    private class BulkResult implements ResponseListener {
+        final List<AuditEventBase> written;
+        final List<Map.Entry<AuditEventBase, String>> failed = new ArrayList<>();
+        final ElasticSearchBulkWriter writer;
+        final long startTime = System.currentTimeMillis();
+        final CountDownLatch done = new CountDownLatch(1);
+        Map<Integer, ElasticSearchBulkWriter.ItemFailure> itemFailures = Collections.emptyMap();
+        Exception error;
+
+        BulkResult(List<AuditEventBase> events, ElasticSearchBulkWriter writer) {
+            this.written = new ArrayList<>(events.size());
+            this.writer = writer;
+        }
+
+        @Override
+        public void onSuccess(Response response) {
+            try (InputStream in = response.getEntity().getContent()) {
+                itemFailures = ElasticSearchBulkWriter.readFailures(in);
+                adjustBulkSize(written.size(), System.currentTimeMillis() - startTime, false);
+                complete(null);
+            } catch (Exception ex) {
+                complete(ex);
+            }
+        }
+
+        @Override
+        public void onFailure(Exception ex) {
+            boolean isRejected = ex instanceof ResponseException && ((ResponseException) ex).getResponse().getStatusLine().getStatusCode() == 429;
+
+            adjustBulkSize(written.size(), System.currentTimeMillis() - startTime, isRejected);
+            complete(ex);
+        }
+
+        void complete(Exception ex) {
+            if (done.getCount() > 0) {
+                error = ex;
+                bulkWriters.offer(writer);
+                bulkInFlight.release();
+                done.countDown();
+            }
+        }
+
+        void await() throws InterruptedException {
+            done.await();
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
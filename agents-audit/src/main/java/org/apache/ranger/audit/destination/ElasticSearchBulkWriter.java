@@ -0,0 +1,523 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+
+/**
+ * Writes audit events as the body of an ElasticSearch _bulk request: an index action and the document of each event,
+ * as newline-delimited JSON, directly from the fields of AuthzAuditEvent into a buffer that is reused across
+ * requests. Documents have the same fields and values as the ones built by ElasticSearchAuditDestination.toDoc().
+ *
+ * A writer is used by one request at a time.
+ */
+public class ElasticSearchBulkWriter {
+    public static final ContentType NDJSON_CONTENT_TYPE = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+
+    private static final byte[] NULL       = bytes("null");
+    private static final byte[] HEX        = bytes("0123456789abcdef");
+    private static final byte[] ACTION_END = bytes("}}\n");
+    private static final byte[] DOC_END    = bytes("}\n");
+
+    private final byte[]     actionPrefix;
+    private final BulkBuffer buffer     = new BulkBuffer(64 * 1024);
+    private final BulkBuffer gzipBuffer = new BulkBuffer(16 * 1024);
+    private final byte[]     datePrefix = new byte[19]; // yyyy-MM-ddTHH:mm:ss
+    private       long       dateSecond = Long.MIN_VALUE;
+    private       int        count      = 0;
+
+    public ElasticSearchBulkWriter(String index) {
+        BulkBuffer prefix = new BulkBuffer(64);
+
+        prefix.write(bytes("{\"index\":{\"_index\":"));
+        writeString(prefix, index);
+        prefix.write(bytes(",\"_id\":"));
+
+        this.actionPrefix = prefix.toByteArray();
+    }
+
+    public void reset() {
+        buffer.reset();
+        count = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getSize() {
+        return buffer.size();
+    }
+
+    public void write(AuthzAuditEvent event) {
+        final int mark = buffer.size();
+
+        try {
+            buffer.write(actionPrefix);
+            writeString(buffer, event.getEventId());
+            buffer.write(ACTION_END);
+
+            buffer.write('{');
+            writeField("id", event.getEventId(), true);
+            writeField("access", event.getAccessType(), false);
+            writeField("enforcer", event.getAclEnforcer(), false);
+            writeField("agent", event.getAgentId(), false);
+            writeField("repo", event.getRepositoryName(), false);
+            writeField("sess", event.getSessionId(), false);
+            writeField("reqUser", event.getUser(), false);
+            writeField("reqData", event.getRequestData(), false);
+            writeField("reqEntityGuid", event.getEntityGuid(), false);
+            writeField("resource", event.getResourcePath(), false);
+            writeField("cliIP", event.getClientIP(), false);
+            writeField("logType", event.getLogType(), false);
+            writeField("result", event.getAccessResult());
+            writeField("policy", event.getPolicyId());
+            writeField("repoType", event.getRepositoryType());
+            writeField("resType", event.getResourceType(), false);
+            writeField("reason", event.getResultReason(), false);
+            writeField("action", event.getAction(), false);
+            writeFieldName("evtTime", false);
+            writeDate(event.getEventTime());
+            writeField("seq_num", event.getSeqNum());
+            writeField("event_count", event.getEventCount());
+            writeField("event_dur_ms", event.getEventDurationMS());
+            writeFieldName("tags", false);
+            writeStrings(event.getTags());
+            writeField("cluster", event.getClusterName(), false);
+            writeField("zoneName", event.getZoneName(), false);
+            writeField("agentHost", event.getAgentHostname(), false);
+            writeFieldName("policyVersion", false);
+            if (event.getPolicyVersion() == null) {
+                buffer.write(NULL);
+            } else {
+                writeLong(buffer, event.getPolicyVersion());
+            }
+            buffer.write(DOC_END);
+
+            count++;
+        } catch (RuntimeException excp) {
+            buffer.truncate(mark); // leave out the partially written event
+
+            throw excp;
+        }
+    }
+
+    /*
+     * Returns an entity over the buffer, which must not be reset until the request is sent
+     */
+    public HttpEntity toEntity(boolean gzip) throws IOException {
+        final BulkBuffer body;
+
+        if (gzip) {
+            gzipBuffer.reset();
+
+            try (GZIPOutputStream out = new GZIPOutputStream(gzipBuffer, 8 * 1024)) {
+                out.write(buffer.getBuffer(), 0, buffer.size());
+            }
+
+            body = gzipBuffer;
+        } else {
+            body = buffer;
+        }
+
+        return new ByteArrayEntity(body.getBuffer(), 0, body.size(), NDJSON_CONTENT_TYPE);
+    }
+
+    /*
+     * Reads the response to a _bulk request and returns the status and failure reason of items that failed, by their
+     * position in the request. As the response has "errors" before "items", items are not read when none failed.
+     */
+    public static Map<Integer, ItemFailure> readFailures(InputStream in) throws IOException {
+        Map<Integer, ItemFailure> ret = Collections.emptyMap();
+
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, in)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new IOException("invalid bulk response: expected an object");
+            }
+
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String field = parser.currentName();
+
+                parser.nextToken();
+
+                if ("errors".equals(field)) {
+                    if (!parser.booleanValue()) {
+                        break;
+                    }
+                } else if ("items".equals(field)) {
+                    ret = readItemFailures(parser);
+
+                    break;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private static Map<Integer, ItemFailure> readItemFailures(XContentParser parser) throws IOException {
+        Map<Integer, ItemFailure> ret = new HashMap<>();
+
+        for (int idx = 0; parser.nextToken() == XContentParser.Token.START_OBJECT; idx++) {
+            // {"index": {"_id": .., "status": .., "error": {..}}}
+            parser.nextToken(); // operation name
+            parser.nextToken(); // START_OBJECT
+
+            int    status = 0;
+            String error  = null;
+
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String field = parser.currentName();
+
+                parser.nextToken();
+
+                if ("status".equals(field)) {
+                    status = parser.intValue();
+                } else if ("error".equals(field)) {
+                    if (parser.currentToken() == XContentParser.Token.START_OBJECT) {
+                        Map<String, Object> errorObj = parser.map();
+
+                        error = errorObj.get("type") + ": " + errorObj.get("reason");
+                    } else {
+                        error = parser.text();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            parser.nextToken(); // END_OBJECT of the item
+
+            if (error != null || status >= 300) {
+                ret.put(idx, new ItemFailure(status, error != null ? error : ("HTTP " + status)));
+            }
+        }
+
+        return ret;
+    }
+
+    // ElasticSearch is expected to accept the request later: it is overloaded (429), or failed on its side (5xx)
+    public static boolean isRetriable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private void writeFieldName(String name, boolean isFirst) {
+        if (!isFirst) {
+            buffer.write(',');
+        }
+
+        buffer.write('"');
+        writeAscii(buffer, name);
+        buffer.write('"');
+        buffer.write(':');
+    }
+
+    private void writeField(String name, String value, boolean isFirst) {
+        writeFieldName(name, isFirst);
+        writeString(buffer, value);
+    }
+
+    private void writeField(String name, long value) {
+        writeFieldName(name, false);
+        writeLong(buffer, value);
+    }
+
+    private void writeStrings(Set<String> values) {
+        if (values == null) {
+            buffer.write(NULL);
+        } else {
+            boolean isFirst = true;
+
+            buffer.write('[');
+            for (String value : values) {
+                if (!isFirst) {
+                    buffer.write(',');
+                }
+                writeString(buffer, value);
+                isFirst = false;
+            }
+            buffer.write(']');
+        }
+    }
+
+    /*
+     * As written by ElasticSearch for java.util.Date: strict_date_optional_time in UTC, i.e. yyyy-MM-ddTHH:mm:ss.SSSZ
+     */
+    private void writeDate(Date date) {
+        if (date == null) {
+            buffer.write(NULL);
+
+            return;
+        }
+
+        long time   = date.getTime();
+        long second = Math.floorDiv(time, 1000L);
+        int  millis = (int) Math.floorMod(time, 1000L);
+
+        if (second != dateSecond) {
+            LocalDateTime dateTime = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+            int           year     = dateTime.getYear();
+
+            if (year < 0 || year > 9999) { // not expected for audit events
+                buffer.write('"');
+                writeAscii(buffer, date.toInstant().toString());
+                buffer.write('"');
+
+                return;
+            }
+
+            putDigits(datePrefix, 0, year, 4);
+            datePrefix[4] = '-';
+            putDigits(datePrefix, 5, dateTime.getMonthValue(), 2);
+            datePrefix[7] = '-';
+            putDigits(datePrefix, 8, dateTime.getDayOfMonth(), 2);
+            datePrefix[10] = 'T';
+            putDigits(datePrefix, 11, dateTime.getHour(), 2);
+            datePrefix[13] = ':';
+            putDigits(datePrefix, 14, dateTime.getMinute(), 2);
+            datePrefix[16] = ':';
+            putDigits(datePrefix, 17, dateTime.getSecond(), 2);
+
+            dateSecond = second;
+        }
+
+        buffer.write('"');
+        buffer.write(datePrefix, 0, datePrefix.length);
+        buffer.write('.');
+        buffer.write('0' + millis / 100);
+        buffer.write('0' + (millis / 10) % 10);
+        buffer.write('0' + millis % 10);
+        buffer.write('Z');
+        buffer.write('"');
+    }
+
+    private static void putDigits(byte[] dest, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            dest[i] = (byte) ('0' + value % 10);
+            value  /= 10;
+        }
+    }
+
+    private static void writeLong(BulkBuffer out, long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(out, Long.toString(value));
+
+            return;
+        }
+
+        if (value < 0) {
+            out.write('-');
+            value = -value;
+        }
+
+        if (value < 10) {
+            out.write((int) ('0' + value));
+
+            return;
+        }
+
+        int  digits = 0;
+        long tmp    = value;
+
+        while (tmp > 0) {
+            tmp /= 10;
+            digits++;
+        }
+
+        out.ensureCapacity(digits);
+
+        byte[] buf = out.getBuffer();
+        int    end = out.size() + digits;
+
+        for (int i = end - 1; value > 0; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        out.setSize(end);
+    }
+
+    private static void writeAscii(BulkBuffer out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            out.write(value.charAt(i));
+        }
+    }
+
+    private static void writeString(BulkBuffer out, String value) {
+        if (value == null) {
+            out.write(NULL);
+
+            return;
+        }
+
+        out.write('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    out.write('\\');
+                }
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write('\\');
+
+                switch (c) {
+                    case '\n': out.write('n'); break;
+                    case '\r': out.write('r'); break;
+                    case '\t': out.write('t'); break;
+                    case '\b': out.write('b'); break;
+                    case '\f': out.write('f'); break;
+                    default:
+                        out.write('u');
+                        out.write('0');
+                        out.write('0');
+                        out.write(HEX[c >> 4]);
+                        out.write(HEX[c & 0xF]);
+                        break;
+                }
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out.write('?'); // unpaired surrogate, as replaced by String.getBytes()
+            } else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+
+        out.write('"');
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class BulkBuffer extends OutputStream {
+        private byte[] buf;
+        private int    count = 0;
+
+        BulkBuffer(int size) {
+            buf = new byte[size];
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+
+            System.arraycopy(b, off, buf, count, len);
+
+            count += len;
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        int size() {
+            return count;
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        void ensureCapacity(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+            }
+        }
+
+        void setSize(int size) {
+            count = size;
+        }
+
+        void truncate(int size) {
+            count = Math.min(count, size);
+        }
+    }
+
+    public static class ItemFailure {
+        private final int    status;
+        private final String reason;
+
+        ItemFailure(int status, String reason) {
+            this.status = status;
+            this.reason = reason;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
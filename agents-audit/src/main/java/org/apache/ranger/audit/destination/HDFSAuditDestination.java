@@ -27,12 +27,18 @@
 import java.util.Map;
 import java.util.Properties;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditWriterFactory;
 import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditFileQueueSpool;
+import org.apache.ranger.audit.queue.AuditFileSpool;
+import org.apache.ranger.audit.queue.AuditSegmentSpool;
+import org.apache.ranger.audit.queue.AuditSpool;
 import org.apache.ranger.audit.utils.RangerAuditWriter;
+import org.apache.ranger.audit.utils.RangerDoubleBufferedAuditWriter;
 
 /**
  * This class write the logs to local file
@@ -44,6 +50,7 @@ public class HDFSAuditDestination extends AuditDestination {
 	private Map<String, String> auditConfigs            = null;
 	private String              auditProviderName       = null;
 	private RangerAuditWriter   auditWriter             = null;
+	private AuditSpool          fileSpooler             = null;
 	private boolean             initDone                = false;
 	private boolean             isStopped               = false;
 
@@ -55,6 +62,7 @@ public void init(Properties prop, String propPrefix) {
 
 		try {
 			this.auditWriter = getWriter();
+			this.fileSpooler = createFileSpooler();
 			this.initDone = true;
 		} catch (Exception e) {
 			logger.error("Error while getting Audit writer", e);
@@ -174,11 +182,17 @@ public boolean log(Collection<AuditEventBase> events) {
 	public void start() {
 		// Nothing to do here. We will open the file when the first log request
 		// comes
+		if (fileSpooler != null) {
+			fileSpooler.start();
+		}
 	}
 
 	@Override
 	synchronized public void stop() {
 		auditWriter.stop();
+		if (fileSpooler != null) {
+			fileSpooler.stop();
+		}
 		logStatus();
 		isStopped = true;
 	}
@@ -188,4 +202,40 @@ public RangerAuditWriter getWriter() throws Exception {
 		auditWriterFactory.init(props, propPrefix, auditProviderName, auditConfigs);
 		return auditWriterFactory.getAuditWriter();
 	}
+
+	/*
+	 * Events of a failed write of RangerDoubleBufferedAuditWriter after stop() are stashed in this spool, when
+	 * async.filespool.dir is set. They are sent to this destination when it is started again.
+	 */
+	private AuditSpool createFileSpooler() {
+		if (!(auditWriter instanceof RangerDoubleBufferedAuditWriter)) {
+			return null;
+		}
+
+		String spoolPrefix = propPrefix + "." + RangerDoubleBufferedAuditWriter.PROP_FILE_SPOOL_PREFIX;
+
+		if (StringUtils.isEmpty(MiscUtil.getStringProperty(props, spoolPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR))) {
+			return null;
+		}
+
+		AuditSpool ret;
+
+		if (AuditSegmentSpool.isBinaryFormat(props, spoolPrefix)) {
+			int replayBatchSize = MiscUtil.getIntProperty(props, spoolPrefix + "." + AuditFileQueueSpool.PROP_FILE_SPOOL_BATCH_SIZE, 1000);
+
+			ret = new AuditSegmentSpool(this, getName() + "_async", true, replayBatchSize);
+		} else {
+			ret = new AuditFileQueueSpool(this);
+		}
+
+		if (!ret.init(props, spoolPrefix)) {
+			logger.error("Error initializing file spool. Events of failed writes after stop will be dropped. name=" + getName());
+
+			return null;
+		}
+
+		((RangerDoubleBufferedAuditWriter) auditWriter).setFileSpool(ret);
+
+		return ret;
+	}
 }
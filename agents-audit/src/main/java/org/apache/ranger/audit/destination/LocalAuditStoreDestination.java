@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.RangerLocalAuditStore;
+
+/**
+ * This class writes the audits to a queryable store of ORC segments in a local directory. See RangerLocalAuditStore.
+ */
+public class LocalAuditStoreDestination extends AuditDestination {
+	private static final Log logger = LogFactory.getLog(LocalAuditStoreDestination.class);
+
+	public static final String PROP_DIR = "dir";
+
+	private volatile RangerLocalAuditStore store     = null;
+	private boolean                        isStopped = false;
+
+	@Override
+	public void init(Properties prop, String propPrefix) {
+		super.init(prop, propPrefix);
+
+		String dir = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_DIR);
+
+		if (dir == null || dir.isEmpty()) {
+			logger.error("Audit store folder is not configured. Please set " + propPrefix + "." + PROP_DIR + ". name=" + getName());
+			return;
+		}
+
+		try {
+			RangerLocalAuditStore store = new RangerLocalAuditStore(dir);
+
+			store.init(props, propPrefix);
+
+			this.store = store;
+		} catch (Throwable t) {
+			logger.error("Error initializing audit store. dir=" + dir + ", name=" + getName(), t);
+		}
+	}
+
+	@Override
+	public boolean log(Collection<AuditEventBase> events) {
+		List<AuthzAuditEvent> authzEvents = new ArrayList<>(events.size());
+
+		for (AuditEventBase event : events) {
+			if (event instanceof AuthzAuditEvent) {
+				authzEvents.add((AuthzAuditEvent) event);
+			} else {
+				addTotalCount(1);
+				addFailedCount(1);
+				logFailedEvent(event);
+			}
+		}
+
+		return write(authzEvents);
+	}
+
+	@Override
+	public boolean logJSON(Collection<String> events) {
+		List<AuthzAuditEvent> authzEvents = new ArrayList<>(events.size());
+
+		for (String event : events) {
+			try {
+				authzEvents.add(MiscUtil.fromJson(event, AuthzAuditEvent.class));
+			} catch (Throwable t) {
+				addTotalCount(1);
+				addFailedCount(1);
+				logFailedEventJSON(event, t);
+			}
+		}
+
+		return write(authzEvents);
+	}
+
+	@Override
+	public void flush() {
+		RangerLocalAuditStore store = this.store;
+
+		if (store != null) {
+			try {
+				store.rolloverIfNeeded();
+			} catch (Throwable t) {
+				logError("Error closing audit segment. name=" + getName(), t);
+			}
+		}
+	}
+
+	@Override
+	synchronized public void stop() {
+		isStopped = true;
+
+		if (store != null) {
+			try {
+				store.close();
+			} catch (Throwable t) {
+				logger.error("Error closing audit store. Exception will be ignored. name=" + getName() + ", dir=" + store.getBaseDir(), t);
+			}
+		}
+
+		logStatus();
+	}
+
+	public RangerLocalAuditStore getStore() {
+		return store;
+	}
+
+	synchronized private boolean write(List<AuthzAuditEvent> events) {
+		logStatusIfRequired();
+		addTotalCount(events.size());
+
+		if (isStopped || store == null) {
+			logError((isStopped ? "log() called after stop was requested" : "Audit store is not initialized") + ". name=" + getName());
+			addDeferredCount(events.size());
+			return false;
+		}
+
+		try {
+			store.write(events);
+		} catch (Throwable t) {
+			addDeferredCount(events.size());
+			logError("Error writing to audit store.", t);
+			return false;
+		}
+
+		addSuccessCount(events.size());
+		return true;
+	}
+}
@@ -24,6 +24,7 @@
 import org.apache.ranger.audit.queue.AuditFileCacheProviderSpool;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Properties;
 
 /*
@@ -77,6 +78,15 @@ public boolean log(Collection<AuditEventBase> events) {
         return ret;
     }
 
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> ret = super.getMetrics();
+        if (fileSpooler != null) {
+            ret.put("spool", fileSpooler.getMetrics());
+        }
+        return ret;
+    }
+
     @Override
     public void start() {
         // Start the consumer thread
@@ -92,6 +102,7 @@ public void start() {
     @Override
     public void stop() {
         logger.info("Stop called. name=" + getName());
+        AuditMetricsRegistry.getInstance().unregister(this);
         if (consumer != null) {
             consumer.stop();
         }
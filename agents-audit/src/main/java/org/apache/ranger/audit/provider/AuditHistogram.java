@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.provider;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values in fixed memory, in the manner of HdrHistogram: values are counted in buckets of
+ * the position of their highest bit, each split into SUB_BUCKET_COUNT linear sub-buckets. Values below
+ * SUB_BUCKET_COUNT are counted exactly; larger values with a relative error of at most 1/SUB_BUCKET_COUNT.
+ * record() is lock-free, and can be called from any number of threads.
+ */
+public class AuditHistogram {
+	static final int SUB_BUCKET_BITS  = 5;
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	static final int BUCKET_COUNT     = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder       count  = new LongAdder();
+	private final LongAdder       sum    = new LongAdder();
+	private final LongAccumulator max    = new LongAccumulator(Math::max, 0);
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		counts.incrementAndGet(getIndex(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+
+		return count == 0 ? 0 : ((double) sum.sum()) / count;
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return the largest value counted in the bucket where the given percentile of the recorded values falls
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long   total    = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			total      += snapshot[i];
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+		long seen   = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+
+			if (seen >= target) {
+				return Math.min(getHighestValue(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	public Map<String, Object> toMap() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+
+		ret.put("count", getCount());
+		ret.put("mean", getMean());
+		ret.put("p50", getValueAtPercentile(50));
+		ret.put("p90", getValueAtPercentile(90));
+		ret.put("p99", getValueAtPercentile(99));
+		ret.put("max", getMax());
+
+		return ret;
+	}
+
+	static int getIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int msb   = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int shift = msb - SUB_BUCKET_BITS;
+		int sub   = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + sub;
+	}
+
+	static long getHighestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int  shift  = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		int  sub    = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+		long lowest = (1L << (shift + SUB_BUCKET_BITS)) | ((long) sub << shift);
+
+		return lowest + (1L << shift) - 1;
+	}
+}
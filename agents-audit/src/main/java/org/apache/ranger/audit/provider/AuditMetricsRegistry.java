@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.provider;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Registry of the metrics of audit handlers - queues, spools and destinations - in this JVM. Handlers are registered
+ * in BaseAuditHandler.init() and unregistered when stopped; the registry holds them weakly, so handlers of a discarded
+ * audit configuration that were not stopped don't stay around either.
+ *
+ * Metrics are collected when asked for - there is no reporting thread:
+ * <ul>
+ * <li>getSnapshot() returns the metrics of each handler, keyed by the handler name, for the plugin to report</li>
+ * <li>the numeric metrics are available over JMX as attributes named "handlerName.metric" of the MBean
+ * org.apache.ranger.audit:type=AuditMetrics</li>
+ * </ul>
+ */
+public class AuditMetricsRegistry implements DynamicMBean {
+	private static final Log LOG = LogFactory.getLog(AuditMetricsRegistry.class);
+
+	public static final String MBEAN_NAME = "org.apache.ranger.audit:type=AuditMetrics";
+
+	private static volatile AuditMetricsRegistry sInstance = null;
+
+	private final Map<BaseAuditHandler, Long> handlers         = new WeakHashMap<>(); // value: registration sequence
+	private       long                        registrationSeq  = 0;
+
+	public static AuditMetricsRegistry getInstance() {
+		AuditMetricsRegistry ret = sInstance;
+
+		if (ret == null) {
+			synchronized (AuditMetricsRegistry.class) {
+				ret = sInstance;
+
+				if (ret == null) {
+					ret = new AuditMetricsRegistry();
+
+					ret.registerMBean();
+
+					sInstance = ret;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	AuditMetricsRegistry() {
+	}
+
+	public void register(BaseAuditHandler handler) {
+		if (handler != null) {
+			synchronized (handlers) {
+				if (!handlers.containsKey(handler)) {
+					handlers.put(handler, ++registrationSeq);
+				}
+			}
+		}
+	}
+
+	public void unregister(BaseAuditHandler handler) {
+		if (handler != null) {
+			synchronized (handlers) {
+				handlers.remove(handler);
+			}
+		}
+	}
+
+	/**
+	 * @return metrics of the registered handlers, keyed by handler name in sorted order. The value for each handler
+	 *         is the Map returned by BaseAuditHandler.getMetrics()
+	 */
+	public Map<String, Object> getSnapshot() {
+		List<BaseAuditHandler> handlers = getHandlers();
+		Map<String, Object>    ret      = new TreeMap<>();
+
+		for (BaseAuditHandler handler : handlers) {
+			String name = handler.getName();
+
+			if (name == null) {
+				name = handler.getClass().getSimpleName();
+			}
+
+			// a handler of a replaced configuration can have the same name as its replacement; handlers are taken in the
+			// order they were registered, so that a name refers to the same handler from one snapshot to the next
+			String key = name;
+
+			for (int i = 2; ret.containsKey(key); i++) {
+				key = name + "#" + i;
+			}
+
+			try {
+				ret.put(key, handler.getMetrics());
+			} catch (Throwable t) {
+				LOG.warn("Failed to get metrics of audit handler. name=" + name, t);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return numeric metrics of the registered handlers, with names of nested metrics joined with "."; for example
+	 *         "batch.solr.deliveryLatencyMS.p99"
+	 */
+	public Map<String, Number> getFlattenedSnapshot() {
+		Map<String, Number> ret = new TreeMap<>();
+
+		flatten(null, getSnapshot(), ret);
+
+		return ret;
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Number ret = getFlattenedSnapshot().get(attribute);
+
+		if (ret == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("audit metrics are read-only: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		Map<String, Number> snapshot = getFlattenedSnapshot();
+		AttributeList       ret      = new AttributeList();
+
+		for (String attribute : attributes) {
+			Number value = snapshot.get(attribute);
+
+			if (value != null) {
+				ret.add(new Attribute(attribute, value));
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		Map<String, Number>      snapshot   = getFlattenedSnapshot();
+		List<MBeanAttributeInfo> attributes = new ArrayList<>(snapshot.size());
+
+		for (Map.Entry<String, Number> entry : snapshot.entrySet()) {
+			attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(), true, false, false));
+		}
+
+		return new MBeanInfo(getClass().getName(), "Ranger audit handler metrics", attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0], null);
+	}
+
+	private List<BaseAuditHandler> getHandlers() {
+		final List<Map.Entry<BaseAuditHandler, Long>> entries;
+
+		synchronized (handlers) {
+			entries = new ArrayList<>(handlers.entrySet());
+		}
+
+		entries.sort(Map.Entry.comparingByValue());
+
+		List<BaseAuditHandler> ret = new ArrayList<>(entries.size());
+
+		for (Map.Entry<BaseAuditHandler, Long> entry : entries) {
+			ret.add(entry.getKey());
+		}
+
+		return ret;
+	}
+
+	private void registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+
+			LOG.info("Registered audit metrics MBean " + MBEAN_NAME);
+		} catch (Throwable t) {
+			// for example, when another classloader in this JVM already registered it
+			LOG.warn("Failed to register audit metrics MBean " + MBEAN_NAME + ". Metrics are available only from getSnapshot()", t);
+		}
+	}
+
+	private static void flatten(String prefix, Map<?, ?> metrics, Map<String, Number> ret) {
+		for (Map.Entry<?, ?> entry : metrics.entrySet()) {
+			String name  = prefix == null ? String.valueOf(entry.getKey()) : (prefix + "." + entry.getKey());
+			Object value = entry.getValue();
+
+			if (value instanceof Number) {
+				ret.put(name, (Number) value);
+			} else if (value instanceof Map) {
+				flatten(name, (Map<?, ?>) value, ret);
+			}
+		}
+	}
+}
@@ -33,10 +33,12 @@
 import org.apache.ranger.audit.provider.hdfs.HdfsAuditProvider;
 import org.apache.ranger.audit.provider.kafka.KafkaAuditProvider;
 import org.apache.ranger.audit.provider.solr.SolrAuditProvider;
+import org.apache.ranger.audit.queue.AuditAggregationQueue;
 import org.apache.ranger.audit.queue.AuditAsyncQueue;
 import org.apache.ranger.audit.queue.AuditBatchQueue;
 import org.apache.ranger.audit.queue.AuditFileQueue;
 import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditRingBufferQueue;
 import org.apache.ranger.audit.queue.AuditSummaryQueue;
 
 /*
@@ -61,6 +63,10 @@ public class AuditProviderFactory {
 	public static final String AUDIT_IS_FILE_CACHE_PROVIDER_ENABLE_PROP = "xasecure.audit.provider.filecache.is.enabled";
 	public static final String FILE_QUEUE_TYPE	  = "filequeue";
 	public static final String DEFAULT_QUEUE_TYPE = "memoryqueue";
+	public static final String RING_BUFFER_QUEUE_TYPE = "ringbuffer";
+	public static final String AUDIT_JSON_SERIALIZER_PROP = "xasecure.audit.json.serializer";
+	public static final String JSON_SERIALIZER_GSON = "gson";
+	public static final String JSON_SERIALIZER_FAST = "fast";
 	public static final int AUDIT_SHUTDOWN_HOOK_MAX_WAIT_SEC_DEFAULT = 30;
 
 	public static final int AUDIT_ASYNC_MAX_QUEUE_SIZE_DEFAULT = 10 * 1024;
@@ -124,6 +130,11 @@ public synchronized void init(Properties props, String appType) {
 		componentAppType = appType;
 		MiscUtil.setApplicationType(appType);
 
+		String jsonSerializer = MiscUtil.getStringProperty(props, AUDIT_JSON_SERIALIZER_PROP, JSON_SERIALIZER_GSON);
+
+		MiscUtil.setFastAuditEventJson(JSON_SERIALIZER_FAST.equalsIgnoreCase(jsonSerializer));
+		LOG.info("AuditProviderFactory: JSON serializer for audit events=" + jsonSerializer);
+
 		boolean isEnabled = MiscUtil.getBooleanProperty(props,
 				AUDIT_IS_ENABLED_PROP, true);
         if (!isEnabled) {
@@ -248,8 +259,15 @@ public synchronized void init(Properties props, String appType) {
 			String propPrefix = BaseAuditHandler.PROP_DEFAULT_PREFIX;
 			boolean summaryEnabled = MiscUtil.getBooleanProperty(props,
 					propPrefix + "." + "summary" + "." + "enabled", false);
+			boolean aggregationEnabled = MiscUtil.getBooleanProperty(props,
+					propPrefix + "." + "aggregation" + "." + "enabled", false);
 			AuditSummaryQueue summaryQueue = null;
-			if (summaryEnabled) {
+			if (aggregationEnabled) {
+				LOG.info("AuditAggregationQueue is enabled");
+				AuditAggregationQueue aggregationQueue = new AuditAggregationQueue(consumer);
+				aggregationQueue.init(props, propPrefix);
+				consumer = aggregationQueue;
+			} else if (summaryEnabled) {
 				LOG.info("AuditSummaryQueue is enabled");
 				summaryQueue = new AuditSummaryQueue(consumer);
 				summaryQueue.init(props, propPrefix);
@@ -260,8 +278,16 @@ public synchronized void init(Properties props, String appType) {
 
 			if (!isAuditFileCacheProviderEnabled) {
 				// Create the AsysnQueue
-				AuditAsyncQueue asyncQueue = new AuditAsyncQueue(consumer);
 				propPrefix = BaseAuditHandler.PROP_DEFAULT_PREFIX + "." + "async";
+				String asyncQueueType = MiscUtil.getStringProperty(props, propPrefix + "." + "queuetype", DEFAULT_QUEUE_TYPE);
+				AuditQueue asyncQueue;
+				if (RING_BUFFER_QUEUE_TYPE.equalsIgnoreCase(asyncQueueType)) {
+					asyncQueue = new AuditRingBufferQueue(consumer);
+					// like AuditAsyncQueue, send events as soon as they are read
+					asyncQueue.setMaxBatchInterval(0);
+				} else {
+					asyncQueue = new AuditAsyncQueue(consumer);
+				}
 				asyncQueue.init(props, propPrefix);
 				asyncQueue.setParentPath(componentAppType);
 				mProvider = asyncQueue;
@@ -425,10 +451,14 @@ private AuditHandler getProviderFromConfig(Properties props,
 				provider = new KafkaAuditProvider();
 			} else if (providerName.equalsIgnoreCase("log4j")) {
 				provider = new Log4JAuditDestination();
+			} else if (providerName.equalsIgnoreCase("localstore")) {
+				provider = new LocalAuditStoreDestination();
 			} else if (providerName.equalsIgnoreCase("batch")) {
 				provider = getAuditProvider(props, propPrefix, consumer);
 			} else if (providerName.equalsIgnoreCase("async")) {
 				provider = new AuditAsyncQueue(consumer);
+			} else if (providerName.equalsIgnoreCase(RING_BUFFER_QUEUE_TYPE)) {
+				provider = new AuditRingBufferQueue(consumer);
 			} else {
 				LOG.error("Provider name doesn't have any class associated with it. providerName="
 						+ providerName + ", propertyPrefix=" + propPrefix);
@@ -23,6 +23,7 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.utils.RangerAuditWriter;
+import org.apache.ranger.audit.utils.RangerDoubleBufferedAuditWriter;
 
 import java.util.Map;
 import java.util.Properties;
@@ -66,6 +67,10 @@ public void init(Properties props, String propPrefix, String auditProviderName,
 
         auditWriter = StringUtils.isEmpty(writerClass) ? createWriter(getDefaultWriter(auditFileType)) : createWriter(writerClass);
 
+        if (auditWriter != null && MiscUtil.getBooleanProperty(props, propPrefix + "." + RangerDoubleBufferedAuditWriter.PROP_ASYNC_ENABLED, false)) {
+            auditWriter = new RangerDoubleBufferedAuditWriter(auditWriter);
+        }
+
         if (auditWriter != null) {
             auditWriter.init(props, propPrefix, auditProviderName, auditConfigs);
         }
@@ -0,0 +1,771 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.provider;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+
+/**
+ * Serializes AuthzAuditEvent to JSON, and parses it back, without reflection.
+ *
+ * The JSON written is identical to what MiscUtil's Gson instance writes for the event: same field names and order,
+ * null fields omitted, strings escaped the same way (including Gson's HTML escaping) and evtTime in the format
+ * "yyyy-MM-dd HH:mm:ss.SSS" in the local time zone. This lets audit events written by either one be read by the other,
+ * and by consumers of Kafka/HDFS/spool files that expect the existing format.
+ *
+ * parse() handles the JSON written by toJson(); for anything else - unknown fields, lenient syntax, numbers as strings,
+ * dates in other formats - it returns null and the caller is expected to use Gson.
+ */
+public final class AuthzAuditEventJson {
+	private static final String DATE_SECONDS_FORMAT = "yyyy-MM-dd HH:mm:ss";
+	private static final int    DATE_SECONDS_LENGTH = DATE_SECONDS_FORMAT.length();
+	private static final int    DATE_LENGTH         = DATE_SECONDS_LENGTH + 4; // .SSS
+	private static final int    BUFFER_SIZE         = 1024;
+	private static final int    MAX_BUFFER_SIZE     = 64 * 1024;
+
+	private static final int TYPE_INT        = 0;
+	private static final int TYPE_SHORT      = 1;
+	private static final int TYPE_LONG       = 2;
+	private static final int TYPE_LONG_OBJ   = 3;
+	private static final int TYPE_STRING     = 4;
+	private static final int TYPE_DATE       = 5;
+	private static final int TYPE_STRING_SET = 6;
+
+	// in the order of the fields in AuthzAuditEvent, which is the order Gson writes them in
+	private static final String[] FIELD_NAMES = {
+		"repoType", "repo", "reqUser", "evtTime", "access", "resource", "resType", "action", "result", "agent", "policy",
+		"reason", "enforcer", "sess", "cliType", "cliIP", "reqData", "agentHost", "logType", "id", "seq_num",
+		"event_count", "event_dur_ms", "tags", "additional_info", "cluster_name", "zone_name", "policy_version",
+		"reqEntityGuid"
+	};
+
+	private static final int[] FIELD_TYPES = {
+		TYPE_INT, TYPE_STRING, TYPE_STRING, TYPE_DATE, TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_SHORT,
+		TYPE_STRING, TYPE_LONG, TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_STRING,
+		TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_LONG, TYPE_LONG, TYPE_LONG, TYPE_STRING_SET, TYPE_STRING,
+		TYPE_STRING, TYPE_STRING, TYPE_LONG_OBJ, TYPE_STRING
+	};
+
+	private static final int FIELD_REPO_TYPE       = 0;
+	private static final int FIELD_REPO            = 1;
+	private static final int FIELD_REQ_USER        = 2;
+	private static final int FIELD_EVT_TIME        = 3;
+	private static final int FIELD_ACCESS          = 4;
+	private static final int FIELD_RESOURCE        = 5;
+	private static final int FIELD_RES_TYPE        = 6;
+	private static final int FIELD_ACTION          = 7;
+	private static final int FIELD_RESULT          = 8;
+	private static final int FIELD_AGENT           = 9;
+	private static final int FIELD_POLICY          = 10;
+	private static final int FIELD_REASON          = 11;
+	private static final int FIELD_ENFORCER        = 12;
+	private static final int FIELD_SESS            = 13;
+	private static final int FIELD_CLI_TYPE        = 14;
+	private static final int FIELD_CLI_IP          = 15;
+	private static final int FIELD_REQ_DATA        = 16;
+	private static final int FIELD_AGENT_HOST      = 17;
+	private static final int FIELD_LOG_TYPE        = 18;
+	private static final int FIELD_ID              = 19;
+	private static final int FIELD_SEQ_NUM         = 20;
+	private static final int FIELD_EVENT_COUNT     = 21;
+	private static final int FIELD_EVENT_DUR_MS    = 22;
+	private static final int FIELD_TAGS            = 23;
+	private static final int FIELD_ADDITIONAL_INFO = 24;
+	private static final int FIELD_CLUSTER_NAME    = 25;
+	private static final int FIELD_ZONE_NAME       = 26;
+	private static final int FIELD_POLICY_VERSION  = 27;
+	private static final int FIELD_REQ_ENTITY_GUID = 28;
+
+	// '{"repoType":' for the first field, which is always written, and ',"<name>":' for the rest
+	private static final char[][] FIELD_PREFIXES = new char[FIELD_NAMES.length][];
+
+	// same escapes as Gson's JsonWriter, with HTML escaping enabled (Gson's default)
+	private static final String[] REPLACEMENT_CHARS = new String[128];
+
+	private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(BUFFER_SIZE);
+		}
+	};
+
+	private static final ThreadLocal<DateFormatCache> DATE_FORMAT = new ThreadLocal<DateFormatCache>() {
+		@Override
+		protected DateFormatCache initialValue() {
+			return new DateFormatCache();
+		}
+	};
+
+	static {
+		for (int i = 0; i < FIELD_NAMES.length; i++) {
+			FIELD_PREFIXES[i] = ((i == 0 ? "{\"" : ",\"") + FIELD_NAMES[i] + "\":").toCharArray();
+		}
+
+		for (int i = 0; i < 0x20; i++) {
+			REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+		}
+
+		REPLACEMENT_CHARS['"']  = "\\\"";
+		REPLACEMENT_CHARS['\\'] = "\\\\";
+		REPLACEMENT_CHARS['\t'] = "\\t";
+		REPLACEMENT_CHARS['\b'] = "\\b";
+		REPLACEMENT_CHARS['\n'] = "\\n";
+		REPLACEMENT_CHARS['\r'] = "\\r";
+		REPLACEMENT_CHARS['\f'] = "\\f";
+		REPLACEMENT_CHARS['<']  = "\\u003c";
+		REPLACEMENT_CHARS['>']  = "\\u003e";
+		REPLACEMENT_CHARS['&']  = "\\u0026";
+		REPLACEMENT_CHARS['=']  = "\\u003d";
+		REPLACEMENT_CHARS['\''] = "\\u0027";
+	}
+
+	private AuthzAuditEventJson() {
+	}
+
+	public static String toJson(AuthzAuditEvent event) {
+		StringBuilder sb = BUFFER.get();
+
+		sb.setLength(0);
+
+		appendJson(event, sb);
+
+		String ret = sb.toString();
+
+		if (sb.capacity() > MAX_BUFFER_SIZE) { // don't hold on to buffers grown by unusually large events
+			BUFFER.set(new StringBuilder(BUFFER_SIZE));
+		}
+
+		return ret;
+	}
+
+	public static StringBuilder appendJson(AuthzAuditEvent event, StringBuilder sb) {
+		sb.append(FIELD_PREFIXES[FIELD_REPO_TYPE]).append(event.getRepositoryType());
+		appendField(sb, FIELD_REPO, event.getRepositoryName());
+		appendField(sb, FIELD_REQ_USER, event.getUser());
+
+		if (event.getEventTime() != null) {
+			sb.append(FIELD_PREFIXES[FIELD_EVT_TIME]).append('"');
+			DATE_FORMAT.get().format(event.getEventTime(), sb);
+			sb.append('"');
+		}
+
+		appendField(sb, FIELD_ACCESS, event.getAccessType());
+		appendField(sb, FIELD_RESOURCE, event.getResourcePath());
+		appendField(sb, FIELD_RES_TYPE, event.getResourceType());
+		appendField(sb, FIELD_ACTION, event.getAction());
+		sb.append(FIELD_PREFIXES[FIELD_RESULT]).append(event.getAccessResult());
+		appendField(sb, FIELD_AGENT, event.getAgentId());
+		sb.append(FIELD_PREFIXES[FIELD_POLICY]).append(event.getPolicyId());
+		appendField(sb, FIELD_REASON, event.getResultReason());
+		appendField(sb, FIELD_ENFORCER, event.getAclEnforcer());
+		appendField(sb, FIELD_SESS, event.getSessionId());
+		appendField(sb, FIELD_CLI_TYPE, event.getClientType());
+		appendField(sb, FIELD_CLI_IP, event.getClientIP());
+		appendField(sb, FIELD_REQ_DATA, event.getRequestData());
+		appendField(sb, FIELD_AGENT_HOST, event.getAgentHostname());
+		appendField(sb, FIELD_LOG_TYPE, event.getLogType());
+		appendField(sb, FIELD_ID, event.getEventId());
+		sb.append(FIELD_PREFIXES[FIELD_SEQ_NUM]).append(event.getSeqNum());
+		sb.append(FIELD_PREFIXES[FIELD_EVENT_COUNT]).append(event.getEventCount());
+		sb.append(FIELD_PREFIXES[FIELD_EVENT_DUR_MS]).append(event.getEventDurationMS());
+
+		Set<String> tags = event.getTags();
+
+		if (tags != null) {
+			sb.append(FIELD_PREFIXES[FIELD_TAGS]).append('[');
+
+			boolean isFirst = true;
+
+			for (String tag : tags) {
+				if (!isFirst) {
+					sb.append(',');
+				}
+
+				if (tag == null) {
+					sb.append("null");
+				} else {
+					appendString(sb, tag);
+				}
+
+				isFirst = false;
+			}
+
+			sb.append(']');
+		}
+
+		appendField(sb, FIELD_ADDITIONAL_INFO, event.getAdditionalInfo());
+		appendField(sb, FIELD_CLUSTER_NAME, event.getClusterName());
+		appendField(sb, FIELD_ZONE_NAME, event.getZoneName());
+
+		if (event.getPolicyVersion() != null) {
+			sb.append(FIELD_PREFIXES[FIELD_POLICY_VERSION]).append(event.getPolicyVersion().longValue());
+		}
+
+		appendField(sb, FIELD_REQ_ENTITY_GUID, event.getEntityGuid());
+
+		return sb.append('}');
+	}
+
+	/**
+	 * @return the event in the given JSON, or null if the JSON is not in the form written by toJson()
+	 */
+	public static AuthzAuditEvent parse(String json) {
+		try {
+			return new Parser(json).parse();
+		} catch (UnsupportedJsonException excp) {
+			return null;
+		}
+	}
+
+	private static void appendField(StringBuilder sb, int field, String value) {
+		if (value != null) {
+			sb.append(FIELD_PREFIXES[field]);
+
+			appendString(sb, value);
+		}
+	}
+
+	private static void appendString(StringBuilder sb, String value) {
+		int len  = value.length();
+		int last = 0;
+
+		sb.append('"');
+
+		for (int i = 0; i < len; i++) {
+			char   c = value.charAt(i);
+			String replacement;
+
+			if (c < 128) {
+				replacement = REPLACEMENT_CHARS[c];
+
+				if (replacement == null) {
+					continue;
+				}
+			} else if (c == '\u2028') {
+				replacement = "\\u2028";
+			} else if (c == '\u2029') {
+				replacement = "\\u2029";
+			} else {
+				continue;
+			}
+
+			if (last < i) {
+				sb.append(value, last, i);
+			}
+
+			sb.append(replacement);
+
+			last = i + 1;
+		}
+
+		if (last < len) {
+			sb.append(value, last, len);
+		}
+
+		sb.append('"');
+	}
+
+	/*
+	 * Formats and parses dates in "yyyy-MM-dd HH:mm:ss.SSS". Audit events are mostly timestamped within the same second,
+	 * so the "yyyy-MM-dd HH:mm:ss" part is computed by SimpleDateFormat only when the second changes.
+	 */
+	private static final class DateFormatCache {
+		private final SimpleDateFormat format  = new SimpleDateFormat(DATE_SECONDS_FORMAT, Locale.US);
+		private       long             seconds = Long.MIN_VALUE;
+		private       String           text    = null;
+
+		DateFormatCache() {
+			format.setLenient(false);
+		}
+
+		void format(Date date, StringBuilder sb) {
+			long time    = date.getTime();
+			long seconds = Math.floorDiv(time, 1000L);
+			int  millis  = (int) Math.floorMod(time, 1000L);
+
+			if (seconds != this.seconds) {
+				this.text    = format.format(new Date(seconds * 1000L));
+				this.seconds = seconds;
+			}
+
+			sb.append(text).append('.');
+
+			if (millis < 100) {
+				sb.append('0');
+			}
+
+			if (millis < 10) {
+				sb.append('0');
+			}
+
+			sb.append(millis);
+		}
+
+		// returns null if the given text is not in the expected format
+		Date parse(String json, int start, int end) {
+			if (end - start != DATE_LENGTH || json.charAt(start + DATE_SECONDS_LENGTH) != '.') {
+				return null;
+			}
+
+			int millis = 0;
+
+			for (int i = start + DATE_SECONDS_LENGTH + 1; i < end; i++) {
+				char c = json.charAt(i);
+
+				if (c < '0' || c > '9') {
+					return null;
+				}
+
+				millis = millis * 10 + (c - '0');
+			}
+
+			if (text == null || !json.regionMatches(start, text, 0, DATE_SECONDS_LENGTH)) {
+				String        secondsText = json.substring(start, start + DATE_SECONDS_LENGTH);
+				ParsePosition pos         = new ParsePosition(0);
+				Date          date        = format.parse(secondsText, pos);
+
+				if (date == null || pos.getIndex() != DATE_SECONDS_LENGTH) {
+					return null;
+				}
+
+				this.text    = secondsText;
+				this.seconds = date.getTime() / 1000L;
+			}
+
+			return new Date(seconds * 1000L + millis);
+		}
+	}
+
+	private static final class Parser {
+		private final String          json;
+		private final int             len;
+		private final AuthzAuditEvent event = new AuthzAuditEvent();
+		private       int             pos   = 0;
+
+		Parser(String json) {
+			this.json = json;
+			this.len  = json != null ? json.length() : 0;
+		}
+
+		AuthzAuditEvent parse() throws UnsupportedJsonException {
+			expect('{');
+
+			int prevField = -1;
+
+			if (peek() == '}') {
+				pos++;
+			} else {
+				while (true) {
+					int field = readFieldName(prevField);
+
+					expect(':');
+					readValue(field);
+
+					prevField = field;
+
+					char c = next();
+
+					if (c == '}') {
+						break;
+					} else if (c != ',') {
+						throw UnsupportedJsonException.INSTANCE;
+					}
+				}
+			}
+
+			skipWhitespace();
+
+			if (pos != len) {
+				throw UnsupportedJsonException.INSTANCE;
+			}
+
+			return event;
+		}
+
+		private int readFieldName(int prevField) throws UnsupportedJsonException {
+			expect('"');
+
+			int start = pos;
+			int end   = json.indexOf('"', start);
+
+			if (end == -1) {
+				throw UnsupportedJsonException.INSTANCE;
+			}
+
+			pos = end + 1;
+
+			int nameLen = end - start;
+
+			// fields are usually in the order written by toJson(), so look for the name starting with the field after the previous one
+			for (int i = 1; i <= FIELD_NAMES.length; i++) {
+				int    field = (prevField + i) % FIELD_NAMES.length;
+				String name  = FIELD_NAMES[field];
+
+				if (name.length() == nameLen && json.regionMatches(start, name, 0, nameLen)) {
+					return field;
+				}
+			}
+
+			throw UnsupportedJsonException.INSTANCE; // unknown field, or an escaped name
+		}
+
+		private void readValue(int field) throws UnsupportedJsonException {
+			skipWhitespace();
+
+			if (json.startsWith("null", pos)) {
+				pos += 4;
+
+				setNull(field);
+
+				return;
+			}
+
+			switch (FIELD_TYPES[field]) {
+				case TYPE_INT: {
+					long value = readLong();
+
+					if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+						throw UnsupportedJsonException.INSTANCE;
+					}
+
+					event.setRepositoryType((int) value);
+				}
+				break;
+
+				case TYPE_SHORT: {
+					long value = readLong();
+
+					if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+						throw UnsupportedJsonException.INSTANCE;
+					}
+
+					event.setAccessResult((short) value);
+				}
+				break;
+
+				case TYPE_LONG:
+					setLong(field, readLong());
+				break;
+
+				case TYPE_LONG_OBJ:
+					event.setPolicyVersion(readLong());
+				break;
+
+				case TYPE_STRING:
+					setString(field, readString());
+				break;
+
+				case TYPE_DATE: {
+					expect('"');
+
+					int start = pos;
+					int end   = json.indexOf('"', start);
+
+					if (end == -1) {
+						throw UnsupportedJsonException.INSTANCE;
+					}
+
+					Date date = DATE_FORMAT.get().parse(json, start, end);
+
+					if (date == null) {
+						throw UnsupportedJsonException.INSTANCE;
+					}
+
+					pos = end + 1;
+
+					event.setEventTime(date);
+				}
+				break;
+
+				case TYPE_STRING_SET: {
+					Set<String> tags = new LinkedHashSet<>();
+
+					expect('[');
+
+					if (peek() == ']') {
+						pos++;
+					} else {
+						while (true) {
+							skipWhitespace();
+
+							if (json.startsWith("null", pos)) {
+								pos += 4;
+
+								tags.add(null);
+							} else {
+								tags.add(readString());
+							}
+
+							char c = next();
+
+							if (c == ']') {
+								break;
+							} else if (c != ',') {
+								throw UnsupportedJsonException.INSTANCE;
+							}
+						}
+					}
+
+					event.setTags(tags);
+				}
+				break;
+			}
+		}
+
+		// Gson leaves primitive fields unchanged for null values
+		private void setNull(int field) {
+			switch (FIELD_TYPES[field]) {
+				case TYPE_STRING:
+					setString(field, null);
+				break;
+
+				case TYPE_DATE:
+					event.setEventTime(null);
+				break;
+
+				case TYPE_LONG_OBJ:
+					event.setPolicyVersion(null);
+				break;
+
+				case TYPE_STRING_SET:
+					event.setTags(null);
+				break;
+			}
+		}
+
+		private void setLong(int field, long value) {
+			switch (field) {
+				case FIELD_POLICY:
+					event.setPolicyId(value);
+				break;
+
+				case FIELD_SEQ_NUM:
+					event.setSeqNum(value);
+				break;
+
+				case FIELD_EVENT_COUNT:
+					event.setEventCount(value);
+				break;
+
+				case FIELD_EVENT_DUR_MS:
+					event.setEventDurationMS(value);
+				break;
+			}
+		}
+
+		private void setString(int field, String value) {
+			switch (field) {
+				case FIELD_REPO:            event.setRepositoryName(value); break;
+				case FIELD_REQ_USER:        event.setUser(value);           break;
+				case FIELD_ACCESS:          event.setAccessType(value);     break;
+				case FIELD_RESOURCE:        event.setResourcePath(value);   break;
+				case FIELD_RES_TYPE:        event.setResourceType(value);   break;
+				case FIELD_ACTION:          event.setAction(value);         break;
+				case FIELD_AGENT:           event.setAgentId(value);        break;
+				case FIELD_REASON:          event.setResultReason(value);   break;
+				case FIELD_ENFORCER:        event.setAclEnforcer(value);    break;
+				case FIELD_SESS:            event.setSessionId(value);      break;
+				case FIELD_CLI_TYPE:        event.setClientType(value);     break;
+				case FIELD_CLI_IP:          event.setClientIP(value);       break;
+				case FIELD_REQ_DATA:        event.setRequestData(value);    break;
+				case FIELD_AGENT_HOST:      event.setAgentHostname(value);  break;
+				case FIELD_LOG_TYPE:        event.setLogType(value);        break;
+				case FIELD_ID:              event.setEventId(value);        break;
+				case FIELD_ADDITIONAL_INFO: event.setAdditionalInfo(value); break;
+				case FIELD_CLUSTER_NAME:    event.setClusterName(value);    break;
+				case FIELD_ZONE_NAME:       event.setZoneName(value);       break;
+				case FIELD_REQ_ENTITY_GUID: event.setEntityGuid(value);     break;
+			}
+		}
+
+		// integer literals only; numbers with fraction or exponent, and numbers in strings, are left to Gson
+		private long readLong() throws UnsupportedJsonException {
+			boolean isNegative = pos < len && json.charAt(pos) == '-';
+
+			if (isNegative) {
+				pos++;
+			}
+
+			int  start = pos;
+			long ret   = 0;
+
+			while (pos < len) {
+				char c = json.charAt(pos);
+
+				if (c < '0' || c > '9') {
+					break;
+				}
+
+				if (ret < (Long.MIN_VALUE + 9) / 10) {
+					throw UnsupportedJsonException.INSTANCE;
+				}
+
+				ret = ret * 10 - (c - '0'); // accumulate as negative, to handle Long.MIN_VALUE
+
+				pos++;
+			}
+
+			if (pos == start || (pos < len && (json.charAt(pos) == '.' || json.charAt(pos) == 'e' || json.charAt(pos) == 'E'))) {
+				throw UnsupportedJsonException.INSTANCE;
+			}
+
+			if (!isNegative) {
+				if (ret == Long.MIN_VALUE) {
+					throw UnsupportedJsonException.INSTANCE;
+				}
+
+				ret = -ret;
+			}
+
+			return ret;
+		}
+
+		private String readString() throws UnsupportedJsonException {
+			expect('"');
+
+			int start = pos;
+
+			while (pos < len) { // strings without escapes are returned as a substring
+				char c = json.charAt(pos);
+
+				if (c == '"') {
+					return json.substring(start, pos++);
+				} else if (c == '\\') {
+					break;
+				}
+
+				pos++;
+			}
+
+			StringBuilder sb = new StringBuilder(pos - start + 16);
+
+			sb.append(json, start, pos);
+
+			while (pos < len) {
+				char c = json.charAt(pos++);
+
+				if (c == '"') {
+					return sb.toString();
+				} else if (c != '\\') {
+					sb.append(c);
+
+					continue;
+				}
+
+				if (pos >= len) {
+					break;
+				}
+
+				char escaped = json.charAt(pos++);
+
+				switch (escaped) {
+					case '"':
+					case '\\':
+					case '/':
+						sb.append(escaped);
+					break;
+
+					case 'b': sb.append('\b'); break;
+					case 'f': sb.append('\f'); break;
+					case 'n': sb.append('\n'); break;
+					case 'r': sb.append('\r'); break;
+					case 't': sb.append('\t'); break;
+
+					case 'u': {
+						if (pos + 4 > len) {
+							throw UnsupportedJsonException.INSTANCE;
+						}
+
+						int value = 0;
+
+						for (int i = 0; i < 4; i++) {
+							int digit = Character.digit(json.charAt(pos++), 16);
+
+							if (digit == -1) {
+								throw UnsupportedJsonException.INSTANCE;
+							}
+
+							value = (value << 4) | digit;
+						}
+
+						sb.append((char) value);
+					}
+					break;
+
+					default:
+						throw UnsupportedJsonException.INSTANCE;
+				}
+			}
+
+			throw UnsupportedJsonException.INSTANCE; // unterminated string
+		}
+
+		private void expect(char expected) throws UnsupportedJsonException {
+			if (next() != expected) {
+				throw UnsupportedJsonException.INSTANCE;
+			}
+		}
+
+		private char next() throws UnsupportedJsonException {
+			skipWhitespace();
+
+			if (pos >= len) {
+				throw UnsupportedJsonException.INSTANCE;
+			}
+
+			return json.charAt(pos++);
+		}
+
+		private char peek() {
+			skipWhitespace();
+
+			return pos < len ? json.charAt(pos) : 0;
+		}
+
+		private void skipWhitespace() {
+			while (pos < len) {
+				char c = json.charAt(pos);
+
+				if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+					break;
+				}
+
+				pos++;
+			}
+		}
+	}
+
+	// thrown for JSON that is valid for Gson but not handled here; no stack trace, as it is only used to fall back to Gson
+	private static final class UnsupportedJsonException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		static final UnsupportedJsonException INSTANCE = new UnsupportedJsonException();
+
+		private UnsupportedJsonException() {
+			super("unsupported JSON", null, false, false);
+		}
+	}
+}
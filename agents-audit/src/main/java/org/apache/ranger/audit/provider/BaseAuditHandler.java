@@ -90,6 +90,10 @@ public abstract class BaseAuditHandler implements AuditHandler {
 	long lastStashedCount = 0;
 	long lastDeferredCount = 0;
 
+	// size of batches sent to the consumer or the spool, and milliseconds from event time to successful delivery
+	final AuditHistogram batchSizes = new AuditHistogram();
+	final AuditHistogram deliveryLatencies = new AuditHistogram();
+
 	long lastStatusLogTime = System.currentTimeMillis();
 	long statusLogIntervalMS = 1 * 60 * 1000;
 
@@ -150,6 +154,8 @@ public void init(Properties props, String basePropertyName) {
 			configProps.put(configName, configValue);
 			LOG.info("Found Config property: " + configName + " => " + configValue);
 		}
+
+		AuditMetricsRegistry.getInstance().register(this);
 	}
 
 	/*
@@ -247,6 +253,64 @@ public long addDeferredCount(int count) {
 		return totalDeferredCount;
 	}
 
+	/**
+	 * Records the size of a batch taken from this handler's queue, to be
+	 * sent to the consumer or to the spool
+	 */
+	public void addBatch(int batchSize) {
+		batchSizes.record(batchSize);
+	}
+
+	/**
+	 * Records the time from the event time to now for the events, which the
+	 * consumer has just accepted
+	 */
+	public void addDelivered(Collection<AuditEventBase> events) {
+		long currTime = System.currentTimeMillis();
+
+		for (AuditEventBase event : events) {
+			Date eventTime = event.getEventTime();
+
+			if (eventTime != null) {
+				deliveryLatencies.record(currTime - eventTime.getTime());
+			}
+		}
+	}
+
+	public AuditHistogram getBatchSizes() {
+		return batchSizes;
+	}
+
+	public AuditHistogram getDeliveryLatencies() {
+		return deliveryLatencies;
+	}
+
+	/**
+	 * Metrics of this handler for AuditMetricsRegistry. Subclasses add their
+	 * own, like queue depth and spool backlog
+	 *
+	 * @return metric name to Number, or to Map of nested metrics
+	 */
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+
+		ret.put("totalCount", totalCount);
+		ret.put("successCount", totalSuccessCount);
+		ret.put("failedCount", totalFailedCount);
+		ret.put("stashedCount", totalStashedCount);
+		ret.put("deferredCount", totalDeferredCount);
+
+		if (batchSizes.getCount() > 0) {
+			ret.put("batchSize", batchSizes.toMap());
+		}
+
+		if (deliveryLatencies.getCount() > 0) {
+			ret.put("deliveryLatencyMS", deliveryLatencies.toMap());
+		}
+
+		return ret;
+	}
+
 	public long getTotalCount() {
 		return totalCount;
 	}
@@ -54,6 +54,7 @@
 import org.apache.hadoop.security.authentication.util.KerberosName;
 import org.apache.hadoop.security.authentication.util.KerberosUtil;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.authorization.hadoop.utils.RangerCredentialProvider;
 
 import com.google.gson.Gson;
@@ -79,6 +80,7 @@ public class MiscUtil {
 	public static String LINE_SEPARATOR = System.getProperty("line.separator");
 
 	private static Gson sGsonBuilder = null;
+	private static volatile boolean sIsFastAuditEventJson = false;
 	private static String sApplicationType = null;
 	private static UserGroupInformation ugiLoginUser = null;
 	private static Subject subjectLoginUser = null;
@@ -312,6 +314,8 @@ public static <T> String stringify(T log) {
 		if (log != null) {
 			if (log instanceof String) {
 				ret = (String) log;
+			} else if (sIsFastAuditEventJson && log.getClass() == AuthzAuditEvent.class) {
+				ret = AuthzAuditEventJson.toJson((AuthzAuditEvent) log);
 			} else if (MiscUtil.sGsonBuilder != null) {
 				ret = MiscUtil.sGsonBuilder.toJson(log);
 			} else {
@@ -323,9 +327,29 @@ public static <T> String stringify(T log) {
 	}
 
 	static public <T> T fromJson(String jsonStr, Class<T> clazz) {
+		if (sIsFastAuditEventJson && clazz == AuthzAuditEvent.class) {
+			AuthzAuditEvent ret = AuthzAuditEventJson.parse(jsonStr);
+
+			if (ret != null) {
+				return clazz.cast(ret);
+			}
+		}
+
 		return sGsonBuilder.fromJson(jsonStr, clazz);
 	}
 
+	/**
+	 * Selects the serializer used by stringify() and fromJson() for AuthzAuditEvent: Gson, or AuthzAuditEventJson
+	 * which writes the same JSON without reflection.
+	 */
+	public static void setFastAuditEventJson(boolean isFastAuditEventJson) {
+		sIsFastAuditEventJson = isFastAuditEventJson;
+	}
+
+	public static boolean isFastAuditEventJson() {
+		return sIsFastAuditEventJson;
+	}
+
 	public static String getStringProperty(Properties props, String propName) {
 		String ret = null;
 
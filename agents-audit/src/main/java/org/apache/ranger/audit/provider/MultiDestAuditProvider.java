@@ -26,15 +26,36 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditRingBufferQueue;
 
+/**
+ * Sends events to each of the providers added to it.
+ *
+ * By default the providers are called one after another on the caller's thread. With
+ * xasecure.audit.provider.multidest.fanout.enabled=true, each provider gets its own queue and consumer thread, so
+ * a slow provider fills, spills or drops from its own queue without delaying the others. A provider that is already
+ * an AuditQueue - like the AuditBatchQueue AuditProviderFactory creates for each destination - is used as its queue.
+ * Other providers get an AuditRingBufferQueue, configured with the xasecure.audit.provider.multidest.fanout prefix
+ * (queue.size, batch.size, full.policy, filespool.*). The same event objects are queued for all providers, so
+ * providers must not modify them. A provider whose queue can't be created or started is called directly on the
+ * caller's thread, as without fan-out.
+ */
 public class MultiDestAuditProvider extends BaseAuditHandler {
 
 	private static final Log LOG = LogFactory
 			.getLog(MultiDestAuditProvider.class);
 
+	public static final String PROP_FANOUT_PREFIX  = PROP_DEFAULT_PREFIX + ".multidest.fanout";
+	public static final String PROP_FANOUT_ENABLED = "enabled";
+
 	protected List<AuditHandler> mProviders = new ArrayList<AuditHandler>();
 	static final String DEFAULT_NAME = "multi_dest";
 
+	private boolean isFanoutEnabled = false;
+	private volatile List<AuditQueue>   mFanoutQueues   = null;
+	private volatile List<AuditHandler> mFanoutHandlers = null;
+
 	public MultiDestAuditProvider() {
 		LOG.info("MultiDestAuditProvider: creating..");
 		setName(DEFAULT_NAME);
@@ -53,6 +74,10 @@ public void init(Properties props) {
 
 		super.init(props);
 
+		isFanoutEnabled = MiscUtil.getBooleanProperty(props, PROP_FANOUT_PREFIX + "." + PROP_FANOUT_ENABLED, false);
+
+		LOG.info("MultiDestAuditProvider.init(): isFanoutEnabled=" + isFanoutEnabled);
+
 		for (AuditHandler provider : mProviders) {
 			try {
 				provider.init(props);
@@ -110,7 +135,7 @@ public void addAuditProviders(List<AuditHandler> providers) {
 
 	@Override
 	public boolean log(AuditEventBase event) {
-		for (AuditHandler provider : mProviders) {
+		for (AuditHandler provider : getHandlers()) {
 			try {
 				provider.log(event);
 			} catch (Throwable excp) {
@@ -122,7 +147,7 @@ public boolean log(AuditEventBase event) {
 
 	@Override
 	public boolean log(Collection<AuditEventBase> events) {
-		for (AuditHandler provider : mProviders) {
+		for (AuditHandler provider : getHandlers()) {
 			try {
 				provider.log(events);
 			} catch (Throwable excp) {
@@ -171,6 +196,11 @@ public boolean logFile(File file) {
 
 	@Override
 	public void start() {
+		if (isFanoutEnabled) {
+			startFanoutQueues();
+			return;
+		}
+
 		for (AuditHandler provider : mProviders) {
 			try {
 				provider.start();
@@ -183,7 +213,7 @@ public void start() {
 
 	@Override
 	public void stop() {
-		for (AuditHandler provider : mProviders) {
+		for (AuditHandler provider : getHandlers()) {
 			try {
 				provider.stop();
 			} catch (Throwable excp) {
@@ -195,7 +225,7 @@ public void stop() {
 
 	@Override
 	public void waitToComplete() {
-		for (AuditHandler provider : mProviders) {
+		for (AuditHandler provider : getHandlers()) {
 			try {
 				provider.waitToComplete();
 			} catch (Throwable excp) {
@@ -208,7 +238,7 @@ public void waitToComplete() {
 
 	@Override
 	public void waitToComplete(long timeout) {
-		for (AuditHandler provider : mProviders) {
+		for (AuditHandler provider : getHandlers()) {
 			try {
 				provider.waitToComplete(timeout);
 			} catch (Throwable excp) {
@@ -221,7 +251,7 @@ public void waitToComplete(long timeout) {
 
 	@Override
 	public void flush() {
-		for (AuditHandler provider : mProviders) {
+		for (AuditHandler provider : getHandlers()) {
 			try {
 				provider.flush();
 			} catch (Throwable excp) {
@@ -230,4 +260,130 @@ public void flush() {
 			}
 		}
 	}
+
+	/**
+	 * @return health of the queue of each provider, when fan-out is enabled; empty otherwise
+	 */
+	public List<DestinationHealth> getDestinationHealth() {
+		List<DestinationHealth> ret          = new ArrayList<DestinationHealth>();
+		List<AuditQueue>        fanoutQueues = mFanoutQueues;
+
+		if (fanoutQueues != null) {
+			for (AuditQueue queue : fanoutQueues) {
+				ret.add(new DestinationHealth(queue));
+			}
+		}
+
+		return ret;
+	}
+
+	public boolean isFanoutEnabled() {
+		return isFanoutEnabled;
+	}
+
+	private List<AuditHandler> getHandlers() {
+		List<AuditHandler> fanoutHandlers = mFanoutHandlers;
+
+		return fanoutHandlers != null ? fanoutHandlers : mProviders;
+	}
+
+	private synchronized void startFanoutQueues() {
+		if (mFanoutQueues != null) {
+			LOG.error("MultiDestAuditProvider.start(): fan-out queues are already started");
+			return;
+		}
+
+		List<AuditQueue>   fanoutQueues   = new ArrayList<AuditQueue>();
+		List<AuditHandler> fanoutHandlers = new ArrayList<AuditHandler>();
+
+		for (AuditHandler provider : mProviders) {
+			if (provider instanceof AuditQueue) {
+				// already sends to its destination from its own queue and thread
+				try {
+					provider.start();
+				} catch (Throwable excp) {
+					LOG.error("MultiDestAuditProvider.start(): failed for provider { "
+							+ provider.getName() + " }", excp);
+				}
+
+				fanoutQueues.add((AuditQueue) provider);
+				fanoutHandlers.add(provider);
+
+				continue;
+			}
+
+			try {
+				AuditRingBufferQueue queue = new AuditRingBufferQueue(provider);
+
+				// the name is used in the file names of the spool, so it must be unique
+				queue.setName("fanout_" + (provider instanceof BaseAuditHandler ? ((BaseAuditHandler) provider).getFinalPath() : provider.getName()));
+				queue.init(props, PROP_FANOUT_PREFIX);
+				queue.setParentPath(getName());
+				queue.start();
+
+				fanoutQueues.add(queue);
+				fanoutHandlers.add(queue);
+			} catch (Throwable excp) {
+				LOG.error("MultiDestAuditProvider.start(): failed to create fan-out queue for provider { "
+						+ provider.getName() + " }. Events will be sent to it without a queue", excp);
+
+				try {
+					provider.start();
+				} catch (Throwable startExcp) {
+					LOG.error("MultiDestAuditProvider.start(): failed for provider { "
+							+ provider.getName() + " }", startExcp);
+				}
+
+				fanoutHandlers.add(provider);
+			}
+		}
+
+		mFanoutQueues   = fanoutQueues;
+		mFanoutHandlers = fanoutHandlers;
+	}
+
+	/**
+	 * Health of the fan-out queue of a provider. The counts are updated by the consumer thread of the queue. The queue
+	 * size is -1 for queues that don't keep events in memory
+	 */
+	public static class DestinationHealth {
+		private final String name;
+		private final int    queueSize;
+		private final int    queueCapacity;
+		private final long   totalCount;
+		private final long   successCount;
+		private final long   failedCount;
+		private final long   stashedCount;
+
+		DestinationHealth(AuditQueue queue) {
+			this.name          = queue.getFinalPath();
+			this.queueSize     = queue.getQueueSize();
+			this.queueCapacity = queue.getQueueCapacity();
+			this.totalCount    = queue.getTotalCount();
+			this.successCount  = queue.getTotalSuccessCount();
+			this.failedCount   = queue.getTotalFailedCount();
+			this.stashedCount  = queue.getTotalStashedCount();
+		}
+
+		public String getName() { return name; }
+
+		public int getQueueSize() { return queueSize; }
+
+		public int getQueueCapacity() { return queueCapacity; }
+
+		public long getTotalCount() { return totalCount; }
+
+		public long getSuccessCount() { return successCount; }
+
+		public long getFailedCount() { return failedCount; }
+
+		public long getStashedCount() { return stashedCount; }
+
+		@Override
+		public String toString() {
+			return "DestinationHealth={name=" + name + ", queueSize=" + queueSize + ", queueCapacity=" + queueCapacity
+					+ ", totalCount=" + totalCount + ", successCount=" + successCount + ", failedCount=" + failedCount
+					+ ", stashedCount=" + stashedCount + "}";
+		}
+	}
 }
@@ -0,0 +1,680 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.MDC;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Aggregates repeated audit events, like AuditSummaryQueue, sending one event per key with the number of events and the
+ * time from the first to the last one. The key is made of the repository and the configured dimensions of the event.
+ *
+ * Events are partitioned by the hash of their key to aggregation.threads threads, each with its own queue and table of
+ * keys; so the consumer must support concurrent calls. A thread sends its events every aggregation.interval.ms, or
+ * when its table has aggregation.max.keys keys. The count of an aggregated event is the sum of the counts of the events
+ * aggregated, as an event may itself be an aggregate.
+ *
+ * An event is not aggregated when the queue of its thread is full: it is stashed in the file spool when enabled, to be
+ * sent to the consumer as is; else it is dropped and counted as failed.
+ */
+public class AuditAggregationQueue extends AuditQueue {
+	private static final Log logger = LogFactory.getLog(AuditAggregationQueue.class);
+
+	public static final String PROP_AGGREGATION_DIMENSIONS = "aggregation.dimensions";
+	public static final String PROP_AGGREGATION_INTERVAL   = "aggregation.interval.ms";
+	public static final String PROP_AGGREGATION_MAX_KEYS   = "aggregation.max.keys";
+	public static final String PROP_AGGREGATION_THREADS    = "aggregation.threads";
+
+	public enum Dimension { USER, RESOURCE, ACCESS, RESULT, POLICY, CLIENT }
+
+	static int threadCount = 0;
+	static final String DEFAULT_NAME = "aggregation";
+
+	private static final int MAX_DRAIN = 100000;
+
+	private EnumSet<Dimension> dimensions = EnumSet.of(Dimension.USER, Dimension.RESOURCE, Dimension.ACCESS, Dimension.RESULT, Dimension.POLICY);
+	private int maxAggregationIntervalMs = 5000;
+	private int maxKeys = 10000;
+	private int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+	private volatile Aggregator[] aggregators = null;
+
+	private final AtomicInteger runningCount = new AtomicInteger();
+	private final AtomicLong receivedCount = new AtomicLong();
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong spilledCount = new AtomicLong();
+	private long reportedDroppedCount = 0;
+	private long reportedSpilledCount = 0;
+
+	public AuditAggregationQueue(AuditHandler consumer) {
+		super(consumer);
+		setName(DEFAULT_NAME);
+	}
+
+	@Override
+	public void init(Properties props, String propPrefix) {
+		super.init(props, propPrefix);
+
+		String dimensionsProp = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_AGGREGATION_DIMENSIONS);
+
+		if (StringUtils.isNotBlank(dimensionsProp)) {
+			EnumSet<Dimension> configured = EnumSet.noneOf(Dimension.class);
+
+			for (String dimension : dimensionsProp.split(",")) {
+				if (StringUtils.isNotBlank(dimension)) {
+					try {
+						configured.add(Dimension.valueOf(dimension.trim().toUpperCase()));
+					} catch (IllegalArgumentException excp) {
+						logger.warn("Ignoring unknown aggregation dimension " + dimension + ". name=" + getName());
+					}
+				}
+			}
+
+			dimensions = configured;
+		}
+
+		maxAggregationIntervalMs = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_AGGREGATION_INTERVAL, maxAggregationIntervalMs);
+		maxKeys = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_AGGREGATION_MAX_KEYS, maxKeys));
+		threads = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_AGGREGATION_THREADS, threads));
+
+		logger.info("dimensions=" + dimensions + ", maxAggregationInterval=" + maxAggregationIntervalMs
+				+ ", maxKeys=" + maxKeys + ", threads=" + threads + ", name=" + getName());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.apache.ranger.audit.provider.AuditProvider#log(org.apache.ranger.
+	 * audit.model.AuditEventBase)
+	 */
+	@Override
+	public boolean log(AuditEventBase event) {
+		Aggregator[] aggregators = getAggregators();
+		long         hash        = hash(event);
+
+		if (aggregators[(int) ((hash >>> 1) % aggregators.length)].queue.offer(event)) {
+			receivedCount.incrementAndGet();
+
+			return true;
+		}
+
+		boolean ret = false;
+
+		if (fileSpoolerEnabled) {
+			fileSpooler.stashLogs(event);
+			spilledCount.incrementAndGet();
+			ret = true;
+		} else {
+			droppedCount.incrementAndGet();
+			logFailedEvent(event, "queue " + getName() + " is full");
+		}
+
+		return ret;
+	}
+
+	@Override
+	public boolean log(Collection<AuditEventBase> events) {
+		boolean ret = true;
+		for (AuditEventBase event : events) {
+			ret = log(event);
+			if (!ret) {
+				break;
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#start()
+	 */
+	@Override
+	public void start() {
+		if (consumer != null) {
+			consumer.start();
+		}
+
+		if (fileSpoolerEnabled) {
+			fileSpooler.start();
+		}
+
+		runningCount.set(getAggregators().length);
+
+		for (Aggregator aggregator : getAggregators()) {
+			aggregator.thread = new Thread(aggregator, this.getClass().getName() + (threadCount++));
+			aggregator.thread.setDaemon(true);
+			aggregator.thread.start();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#stop()
+	 */
+	@Override
+	public void stop() {
+		logger.info("Stop called. name=" + getName() + ", received=" + getReceivedCount() + ", sent=" + getSentCount()
+				+ ", spilled=" + getSpilledCount() + ", dropped=" + getDroppedCount());
+		AuditMetricsRegistry.getInstance().unregister(this);
+		setDrain(true);
+		for (Aggregator aggregator : getAggregators()) {
+			try {
+				if (aggregator.thread != null) {
+					logger.info("Interrupting aggregator thread. name=" + getName()
+							+ ", consumer="
+							+ (consumer == null ? null : consumer.getName()));
+
+					aggregator.thread.interrupt();
+				}
+			} catch (Throwable t) {
+				// ignore any exception
+			}
+		}
+	}
+
+	@Override
+	public void waitToComplete() {
+		waitToComplete(-1);
+	}
+
+	@Override
+	public void waitToComplete(long timeout) {
+		setDrain(true);
+
+		long startTime = System.currentTimeMillis();
+
+		for (Aggregator aggregator : getAggregators()) {
+			Thread thread = aggregator.thread;
+
+			if (thread != null) {
+				// to send the aggregated events without waiting for the interval
+				thread.interrupt();
+			}
+
+			while (thread != null && thread.isAlive() && (timeout < 0 || System.currentTimeMillis() - startTime < timeout)) {
+				try {
+					thread.join(timeout < 0 ? 1000 : Math.max(1, timeout - (System.currentTimeMillis() - startTime)));
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+
+		super.waitToComplete(timeout);
+	}
+
+	/**
+	 * @return number of events received by this queue
+	 */
+	public long getReceivedCount() {
+		return receivedCount.get();
+	}
+
+	/**
+	 * @return number of aggregated events sent to the consumer
+	 */
+	public long getSentCount() {
+		return sentCount.get();
+	}
+
+	/**
+	 * @return number of events stashed in the file spool, without aggregation, as the queue was full
+	 */
+	public long getSpilledCount() {
+		return spilledCount.get();
+	}
+
+	/**
+	 * @return number of events dropped as the queue was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	@Override
+	public int getQueueSize() {
+		Aggregator[] aggregators = this.aggregators;
+		int          ret         = 0;
+
+		if (aggregators != null) {
+			for (Aggregator aggregator : aggregators) {
+				ret += aggregator.queue.size();
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		Aggregator[] aggregators = this.aggregators;
+		int          ret         = 0;
+
+		if (aggregators != null) {
+			for (Aggregator aggregator : aggregators) {
+				ret += aggregator.queue.size() + aggregator.queue.remainingCapacity();
+			}
+		}
+
+		return ret;
+	}
+
+	public EnumSet<Dimension> getDimensions() {
+		return dimensions;
+	}
+
+	private Aggregator[] getAggregators() {
+		Aggregator[] ret = aggregators;
+
+		if (ret == null) {
+			synchronized (this) {
+				ret = aggregators;
+
+				if (ret == null) {
+					int queueSize = Math.max(1, getMaxQueueSize() / threads);
+
+					ret = new Aggregator[threads];
+
+					for (int i = 0; i < threads; i++) {
+						ret[i] = new Aggregator(queueSize);
+					}
+
+					aggregators = ret;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	long hash(AuditEventBase event) {
+		long ret = 0;
+
+		if (event instanceof AuthzAuditEvent) {
+			AuthzAuditEvent authzEvent = (AuthzAuditEvent) event;
+
+			ret = mix(ret, hashCode(authzEvent.getRepositoryName()));
+
+			for (Dimension dimension : dimensions) {
+				switch (dimension) {
+					case USER:
+						ret = mix(ret, hashCode(authzEvent.getUser()));
+					break;
+
+					case RESOURCE:
+						ret = mix(mix(ret, hashCode(authzEvent.getResourcePath())), hashCode(authzEvent.getResourceType()));
+					break;
+
+					case ACCESS:
+						ret = mix(mix(ret, hashCode(authzEvent.getAccessType())), hashCode(authzEvent.getAction()));
+					break;
+
+					case RESULT:
+						ret = mix(ret, authzEvent.getAccessResult());
+					break;
+
+					case POLICY:
+						ret = mix(ret, authzEvent.getPolicyId());
+					break;
+
+					case CLIENT:
+						ret = mix(mix(ret, hashCode(authzEvent.getClientIP())), hashCode(authzEvent.getSessionId()));
+					break;
+				}
+			}
+		} else if (event != null) {
+			ret = mix(ret, hashCode(event.getEventKey()));
+		}
+
+		// finalizer of MurmurHash3, to spread the bits used to pick the thread and the table slot
+		ret ^= ret >>> 33;
+		ret *= 0xff51afd7ed558ccdL;
+		ret ^= ret >>> 33;
+		ret *= 0xc4ceb9fe1a85ec53L;
+		ret ^= ret >>> 33;
+
+		return ret;
+	}
+
+	boolean isSameKey(AuditEventBase event1, AuditEventBase event2) {
+		if (!(event1 instanceof AuthzAuditEvent) || !(event2 instanceof AuthzAuditEvent)) {
+			return !(event1 instanceof AuthzAuditEvent) && !(event2 instanceof AuthzAuditEvent) && Objects.equals(event1.getEventKey(), event2.getEventKey());
+		}
+
+		AuthzAuditEvent authzEvent1 = (AuthzAuditEvent) event1;
+		AuthzAuditEvent authzEvent2 = (AuthzAuditEvent) event2;
+
+		if (!Objects.equals(authzEvent1.getRepositoryName(), authzEvent2.getRepositoryName())) {
+			return false;
+		}
+
+		for (Dimension dimension : dimensions) {
+			final boolean isSame;
+
+			switch (dimension) {
+				case USER:
+					isSame = Objects.equals(authzEvent1.getUser(), authzEvent2.getUser());
+				break;
+
+				case RESOURCE:
+					isSame = Objects.equals(authzEvent1.getResourcePath(), authzEvent2.getResourcePath()) && Objects.equals(authzEvent1.getResourceType(), authzEvent2.getResourceType());
+				break;
+
+				case ACCESS:
+					isSame = Objects.equals(authzEvent1.getAccessType(), authzEvent2.getAccessType()) && Objects.equals(authzEvent1.getAction(), authzEvent2.getAction());
+				break;
+
+				case RESULT:
+					isSame = authzEvent1.getAccessResult() == authzEvent2.getAccessResult();
+				break;
+
+				case POLICY:
+					isSame = authzEvent1.getPolicyId() == authzEvent2.getPolicyId();
+				break;
+
+				case CLIENT:
+					isSame = Objects.equals(authzEvent1.getClientIP(), authzEvent2.getClientIP()) && Objects.equals(authzEvent1.getSessionId(), authzEvent2.getSessionId());
+				break;
+
+				default:
+					isSame = true;
+				break;
+			}
+
+			if (!isSame) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static long mix(long hash, long value) {
+		return (hash ^ value) * 0x9e3779b97f4a7c15L;
+	}
+
+	private static int hashCode(String str) {
+		// String caches its hash code, so no allocation and no hashing of repeated values
+		return str == null ? 0 : str.hashCode();
+	}
+
+	private static long getCount(AuditEventBase event) {
+		long count = event instanceof AuthzAuditEvent ? ((AuthzAuditEvent) event).getEventCount() : 1;
+
+		return Math.max(1, count);
+	}
+
+	private static long getTime(AuditEventBase event) {
+		Date eventTime = event.getEventTime();
+
+		return eventTime != null ? eventTime.getTime() : System.currentTimeMillis();
+	}
+
+	// counts of the events not queued, added to the handler's counts by the aggregator threads
+	private synchronized void updateProducerCounts() {
+		long dropped    = droppedCount.get();
+		long spilled    = spilledCount.get();
+		int  newDropped = (int) (dropped - reportedDroppedCount);
+		int  newSpilled = (int) (spilled - reportedSpilledCount);
+
+		if (newDropped > 0 || newSpilled > 0) {
+			addTotalCount(newDropped + newSpilled);
+			addFailedCount(newDropped);
+			addStashedCount(newSpilled);
+
+			reportedDroppedCount = dropped;
+			reportedSpilledCount = spilled;
+		}
+	}
+
+	/*
+	 * Aggregates the events of one partition of the keys
+	 */
+	class Aggregator implements Runnable {
+		final BlockingQueue<AuditEventBase> queue;
+		final AggregationTable              table = new AggregationTable(maxKeys);
+		Thread                              thread = null;
+
+		Aggregator(int queueSize) {
+			this.queue = new ArrayBlockingQueue<AuditEventBase>(queueSize);
+		}
+
+		@Override
+		public void run() {
+			try {
+				//This is done to clear the MDC context to avoid issue with Ranger Auditing for Knox
+				MDC.clear();
+				runAggregation();
+			} catch (Throwable t) {
+				logger.fatal("Exited thread abnormaly. queue=" + getName(), t);
+			}
+		}
+
+		void runAggregation() {
+			List<AuditEventBase> eventList = new ArrayList<AuditEventBase>();
+			long lastDispatchTime = System.currentTimeMillis();
+
+			while (true) {
+				// Time to next dispatch
+				long nextDispatchDuration = lastDispatchTime - System.currentTimeMillis() + maxAggregationIntervalMs;
+
+				try {
+					AuditEventBase event;
+
+					if (!isDrain() && nextDispatchDuration > 0) {
+						event = queue.poll(nextDispatchDuration, TimeUnit.MILLISECONDS);
+					} else {
+						// For poll() is non blocking
+						event = queue.poll();
+					}
+
+					if (event != null) {
+						eventList.add(event);
+						queue.drainTo(eventList, MAX_DRAIN - 1);
+					}
+				} catch (InterruptedException e) {
+					logger.info("Caught exception in aggregator thread. Shutdown might be in progress");
+				} catch (Throwable t) {
+					logger.error("Caught error during processing request.", t);
+				}
+
+				for (AuditEventBase event : eventList) {
+					if (!table.add(event)) {
+						// the table is full
+						dispatch();
+						table.add(event);
+					}
+				}
+				eventList.clear();
+
+				nextDispatchDuration = lastDispatchTime - System.currentTimeMillis() + maxAggregationIntervalMs;
+
+				// when draining, aggregate the events left in the queue before sending, instead of sending each poll
+				if ((isDrain() && (queue.isEmpty() || isDrainMaxTimeElapsed())) || nextDispatchDuration <= 0) {
+					// Reset time just before sending the logs
+					lastDispatchTime = System.currentTimeMillis();
+
+					dispatch();
+				}
+
+				if (isDrain()) {
+					if (table.size == 0 && queue.isEmpty()) {
+						break;
+					}
+					if (isDrainMaxTimeElapsed()) {
+						logger.warn("Exiting polling loop because max time allowed reached. name="
+								+ getName()
+								+ ", waited for "
+								+ (stopTime - System.currentTimeMillis()) + " ms");
+						break;
+					}
+				}
+			}
+
+			updateProducerCounts();
+
+			if (runningCount.decrementAndGet() == 0) {
+				try {
+					// Call stop on the consumer, after the last thread sent its events
+					logger.info("Calling to stop consumer. name=" + getName()
+							+ ", consumer.name=" + consumer.getName());
+					consumer.stop();
+					if (fileSpoolerEnabled) {
+						fileSpooler.stop();
+					}
+				} catch (Throwable t) {
+					logger.error("Error while calling stop on consumer.", t);
+				}
+			}
+
+			logger.info("Exiting aggregator thread. name=" + getName());
+		}
+
+		void dispatch() {
+			updateProducerCounts();
+
+			if (table.size > 0) {
+				List<AuditEventBase> events = table.drain();
+
+				sentCount.addAndGet(events.size());
+				addBatch(events.size());
+
+				boolean ret = consumer.log(events);
+				if (!ret) {
+					// We need to drop these events
+					logFailedEvent(events);
+				} else {
+					addDelivered(events);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Open addressing hash table of the aggregated events, keyed by the hash of their dimensions; used by one thread
+	 */
+	class AggregationTable {
+		final long[]         hashes;
+		final AggregateEntry[] entries;
+		final int            mask;
+		final int            maxSize;
+		int                  size = 0;
+
+		AggregationTable(int maxSize) {
+			int capacity = Integer.highestOneBit(Math.max(2, maxSize * 2 - 1)) << 1;
+
+			this.hashes  = new long[capacity];
+			this.entries = new AggregateEntry[capacity];
+			this.mask    = capacity - 1;
+			this.maxSize = maxSize;
+		}
+
+		/*
+		 * Returns false if the event has a new key, and the table is full
+		 */
+		boolean add(AuditEventBase event) {
+			long hash = hash(event);
+			int  idx  = (int) hash & mask;
+
+			for (AggregateEntry entry = entries[idx]; entry != null; entry = entries[idx]) {
+				if (hashes[idx] == hash && isSameKey(entry.event, event)) {
+					long eventTime = getTime(event);
+
+					entry.count += getCount(event);
+					entry.firstTime = Math.min(entry.firstTime, eventTime);
+					entry.lastTime  = Math.max(entry.lastTime, eventTime);
+
+					return true;
+				}
+
+				idx = (idx + 1) & mask;
+			}
+
+			if (size >= maxSize) {
+				return false;
+			}
+
+			hashes[idx]  = hash;
+			entries[idx] = new AggregateEntry(event, getCount(event), getTime(event));
+			size++;
+
+			return true;
+		}
+
+		List<AuditEventBase> drain() {
+			List<AuditEventBase> ret = new ArrayList<AuditEventBase>(size);
+
+			for (AggregateEntry entry : entries) {
+				if (entry != null) {
+					long timeDiff = entry.lastTime - entry.firstTime;
+
+					entry.event.setEventCount(entry.count);
+					entry.event.setEventDurationMS(timeDiff > 0 ? timeDiff : 1);
+
+					ret.add(entry.event);
+				}
+			}
+
+			Arrays.fill(entries, null);
+			size = 0;
+
+			return ret;
+		}
+	}
+
+	static class AggregateEntry {
+		final AuditEventBase event;
+		long firstTime;
+		long lastTime;
+		long count;
+
+		AggregateEntry(AuditEventBase event, long count, long eventTime) {
+			this.event     = event;
+			this.count     = count;
+			this.firstTime = eventTime;
+			this.lastTime  = eventTime;
+		}
+	}
+}
@@ -28,6 +28,7 @@
 import org.apache.log4j.MDC;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
 
 /**
  * This is a non-blocking queue with no limit on capacity.
@@ -76,6 +77,11 @@ public boolean log(Collection<AuditEventBase> events) {
 		return ret;
 	}
 
+	@Override
+	public int getQueueSize() {
+		return queue.size();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -104,6 +110,7 @@ public void start() {
 	@Override
 	public void stop() {
 		logger.info("Stop called. name=" + getName());
+		AuditMetricsRegistry.getInstance().unregister(this);
 		setDrain(true);
 		try {
 			if (consumerThread != null) {
@@ -149,7 +156,10 @@ public void runLogAudit() {
 					Collection<AuditEventBase> eventList = new ArrayList<AuditEventBase>();
 					eventList.add(event);
 					queue.drainTo(eventList, MAX_DRAIN - 1);
-					consumer.log(eventList);
+					addBatch(eventList.size());
+					if (consumer.log(eventList)) {
+						addDelivered(eventList);
+					}
 				}
 			} catch (InterruptedException e) {
 				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
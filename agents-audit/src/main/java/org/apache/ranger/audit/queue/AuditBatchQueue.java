@@ -31,6 +31,7 @@
 import org.apache.log4j.MDC;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
 
 public class AuditBatchQueue extends AuditQueue implements Runnable {
 	private static final Log logger = LogFactory.getLog(AuditBatchQueue.class);
@@ -73,6 +74,11 @@ public boolean log(Collection<AuditEventBase> events) {
 		return ret;
 	}
 
+	@Override
+	public int getQueueSize() {
+		return queue != null ? queue.size() : 0;
+	}
+
 	@Override
 	public void init(Properties prop, String basePropertyName) {
 		String propPrefix = "xasecure.audit.batch";
@@ -123,6 +129,7 @@ synchronized public void start() {
 	@Override
 	public void stop() {
 		logger.info("Stop called. name=" + getName());
+		AuditMetricsRegistry.getInstance().unregister(this);
 		setDrain(true);
 		flush();
 		try {
@@ -264,11 +271,16 @@ public void runLogAudit() {
 				}
 
 				if (event != null) {
+					int prevBatchSize = localBatchBuffer.size();
+
 					localBatchBuffer.add(event);
 					if (getMaxBatchSize() >= localBatchBuffer.size()) {
 						queue.drainTo(localBatchBuffer, getMaxBatchSize()
 								- localBatchBuffer.size());
 					}
+					// count the events when taken from the queue; events
+					// waiting in localBatchBuffer are not counted again
+					addTotalCount(localBatchBuffer.size() - prevBatchSize);
 				} else {
 					// poll returned due to timeout, so reseting clock
 					nextDispatchDuration = lastDispatchTime
@@ -284,7 +296,6 @@ public void runLogAudit() {
 				logger.error("Caught error during processing request.", t);
 			}
 
-			addTotalCount(localBatchBuffer.size());
 			if (localBatchBuffer.size() > 0 && isToSpool) {
 				// Let spool to the file directly
 				if (isDestActive) {
@@ -294,6 +305,7 @@ public void runLogAudit() {
 				isDestActive = false;
 				// Just before stashing
 				lastDispatchTime = System.currentTimeMillis();
+				addBatch(localBatchBuffer.size());
 				fileSpooler.stashLogs(localBatchBuffer);
 				addStashedCount(localBatchBuffer.size());
 				localBatchBuffer.clear();
@@ -306,6 +318,7 @@ public void runLogAudit() {
 				}
 				// Reset time just before sending the logs
 				lastDispatchTime = System.currentTimeMillis();
+				addBatch(localBatchBuffer.size());
 				boolean ret = consumer.log(localBatchBuffer);
 				if (!ret) {
 					if (fileSpoolerEnabled) {
@@ -323,6 +336,7 @@ public void runLogAudit() {
 				} else {
 					isDestActive = true;
 					addSuccessCount(localBatchBuffer.size());
+					addDelivered(localBatchBuffer);
 				}
 				localBatchBuffer.clear();
 			}
@@ -65,6 +65,7 @@ public enum SPOOL_FILE_STATUS {
 
     BlockingQueue<AuditIndexRecord> indexQueue 		= new LinkedBlockingQueue<AuditIndexRecord>();
     List<AuditIndexRecord> 			indexRecords	= new ArrayList<AuditIndexRecord>();
+    AuditSpoolBacklog               backlog		= new AuditSpoolBacklog();
 
     // Folder and File attributes
     File 	logFolder 			= null;
@@ -395,6 +396,14 @@ public long getLastAttemptTimeDelta() {
         return System.currentTimeMillis() - lastAttemptTime;
     }
 
+    /**
+     * Backlog of the spool for AuditMetricsRegistry, kept up to date as files
+     * are written and sent, so it is read without the lock of the spool
+     */
+    public Map<String, Object> getMetrics() {
+        return backlog.getMetrics();
+    }
+
     synchronized public void stashLogs(AuditEventBase event) {
 
         if (isDrain) {
@@ -409,6 +418,7 @@ synchronized public void stashLogs(AuditEventBase event) {
             // Convert event to json
             String jsonStr = MiscUtil.stringify(event);
             logOut.println(jsonStr);
+            currentWriterIndexRecord.fileBytes += backlog.addLine(jsonStr);
             logOut.flush();
             isPending = true;
             isSpoolingSuccessful = true;
@@ -439,6 +449,7 @@ synchronized public void stashLogsString(String event) {
             isWriting = true;
             PrintWriter logOut = getLogFileStream();
             logOut.println(event);
+            currentWriterIndexRecord.fileBytes += backlog.addLine(event);
         } catch (Exception ex) {
             logger.error("Error writing to file. event=" + event, ex);
         } finally {
@@ -513,6 +524,7 @@ synchronized private PrintWriter getLogFileStream() throws Exception {
             tmpIndexRecord.lastAttempt = true;
             currentWriterIndexRecord = tmpIndexRecord;
             indexRecords.add(currentWriterIndexRecord);
+            backlog.addFile(currentWriterIndexRecord.fileCreateTime, 0);
             saveIndexFile();
 
         } else {
@@ -546,6 +558,7 @@ synchronized private void closeFileIfNeeded() throws FileNotFoundException,
                     closeFile = false;
                 }
                 currentWriterIndexRecord.status = SPOOL_FILE_STATUS.pending;
+                currentWriterIndexRecord.fileBytes = backlog.updateFileBytes(currentWriterIndexRecord.fileBytes, new File(currentWriterIndexRecord.filePath));
                 currentWriterIndexRecord.writeCompleteTime = new Date();
                 saveIndexFile();
                 logger.info("Adding file to queue. queueName="
@@ -578,12 +591,15 @@ void loadIndexFile() throws IOException {
         try {
              br = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
             indexRecords.clear();
+            backlog.clear();
             String line;
             while ((line = br.readLine()) != null) {
                 if (!line.isEmpty() && !line.startsWith("#")) {
                     AuditIndexRecord record = gson.fromJson(line,
                             AuditIndexRecord.class);
                     indexRecords.add(record);
+                    record.fileBytes = new File(record.filePath).length();
+                    backlog.addFile(record.fileCreateTime, record.fileBytes);
                 }
             }
         } finally {
@@ -615,6 +631,7 @@ synchronized void removeIndexRecord(AuditIndexRecord indexRecord)
                         + ", consumer=" + consumerProvider.getName());
 
                 iter.remove();
+                backlog.removeFile(record.fileCreateTime, record.fileBytes);
                 appendToDoneFile(record);
             }
         }
@@ -742,6 +759,7 @@ class AuditIndexRecord {
         Date lastFailedTime;
         int failedAttemptCount = 0;
         boolean lastAttempt = false;
+        transient long fileBytes = 0; // counted in backlog; not saved in the index file
 
         @Override
         public String toString() {
@@ -22,9 +22,12 @@
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Properties;
 
 /*
@@ -34,8 +37,8 @@
 public class AuditFileQueue extends BaseAuditHandler {
     private static final Log    logger = LogFactory.getLog(AuditFileQueue.class);
 
-    AuditFileQueueSpool fileSpooler = null;
-    AuditHandler        consumer    = null;
+    AuditSpool   fileSpooler = null;
+    AuditHandler consumer    = null;
 
     static final String DEFAULT_NAME = "batch";
 
@@ -51,7 +54,13 @@ public void init(Properties prop, String basePropertyName) {
         super.init(prop, propPrefix);
 
         //init AuditFileQueueSpooler thread to send Local logs to destination
-        fileSpooler = new AuditFileQueueSpool(consumer);
+        if (AuditSegmentSpool.isBinaryFormat(prop, propPrefix)) {
+            int replayBatchSize = MiscUtil.getIntProperty(prop, propPrefix + "." + AuditFileQueueSpool.PROP_FILE_SPOOL_BATCH_SIZE, 1000);
+
+            fileSpooler = new AuditSegmentSpool(consumer, AuditFileQueueSpool.FILE_QUEUE_PROVIDER_NAME + "_" + consumer.getName(), false, replayBatchSize);
+        } else {
+            fileSpooler = new AuditFileQueueSpool(consumer);
+        }
         fileSpooler.init(prop,propPrefix);
     }
 
@@ -79,6 +88,15 @@ public boolean log(Collection<AuditEventBase> events) {
     }
 
 
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> ret = super.getMetrics();
+        if (fileSpooler != null) {
+            ret.put("spool", fileSpooler.getMetrics());
+        }
+        return ret;
+    }
+
     @Override
     public void start() {
         // Start the consumer thread
@@ -94,6 +112,7 @@ public void start() {
     @Override
     public void stop() {
         logger.info("Stop called. name=" + getName());
+        AuditMetricsRegistry.getInstance().unregister(this);
         if (consumer != null) {
             consumer.stop();
         }
@@ -46,6 +46,7 @@
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -57,7 +58,7 @@
  * When AuditFileCacheProvider is enabled all the logs are stored in local file system before sent to destination.
  */
 
-public class AuditFileQueueSpool implements Runnable {
+public class AuditFileQueueSpool implements AuditSpool, Runnable {
     private static final Log logger = LogFactory.getLog(AuditFileQueueSpool.class);
 
     public enum SPOOL_FILE_STATUS {
@@ -79,6 +80,7 @@ public enum SPOOL_FILE_STATUS {
     AuditHandler                    consumerProvider = null;
     BlockingQueue<AuditIndexRecord> indexQueue 		 = new LinkedBlockingQueue<AuditIndexRecord>();
     List<AuditIndexRecord> 			indexRecords	 = new ArrayList<AuditIndexRecord>();
+    AuditSpoolBacklog               backlog		 = new AuditSpoolBacklog();
 
     // Folder and File attributes
     File 	logFolder 			= null;
@@ -414,6 +416,14 @@ public long getLastAttemptTimeDelta() {
         return System.currentTimeMillis() - lastAttemptTime;
     }
 
+    /**
+     * Backlog of the spool for AuditMetricsRegistry, kept up to date as files
+     * are written and sent, so it is read without the lock of the spool
+     */
+    public Map<String, Object> getMetrics() {
+        return backlog.getMetrics();
+    }
+
     synchronized public void stashLogs(AuditEventBase event) {
 
         if (isDrain) {
@@ -428,6 +438,7 @@ synchronized public void stashLogs(AuditEventBase event) {
             // Convert event to json
             String jsonStr = MiscUtil.stringify(event);
             logOut.println(jsonStr);
+            currentWriterIndexRecord.fileBytes += backlog.addLine(jsonStr);
             logOut.flush();
             isPending = true;
             isSpoolingSuccessful = true;
@@ -458,6 +469,7 @@ synchronized public void stashLogsString(String event) {
             isWriting = true;
             PrintWriter logOut = getLogFileStream();
             logOut.println(event);
+            currentWriterIndexRecord.fileBytes += backlog.addLine(event);
         } catch (Exception ex) {
             logger.error("Error writing to file. event=" + event, ex);
         } finally {
@@ -532,6 +544,7 @@ synchronized private PrintWriter getLogFileStream() throws Exception {
             tmpIndexRecord.lastAttempt = true;
             currentWriterIndexRecord = tmpIndexRecord;
             indexRecords.add(currentWriterIndexRecord);
+            backlog.addFile(currentWriterIndexRecord.fileCreateTime, 0);
             saveIndexFile();
 
         } else {
@@ -565,6 +578,7 @@ synchronized private void closeFileIfNeeded() throws FileNotFoundException,
                     closeFile = false;
                 }
                 currentWriterIndexRecord.status = SPOOL_FILE_STATUS.pending;
+                currentWriterIndexRecord.fileBytes = backlog.updateFileBytes(currentWriterIndexRecord.fileBytes, new File(currentWriterIndexRecord.filePath));
                 currentWriterIndexRecord.writeCompleteTime = new Date();
                 saveIndexFile();
                 logger.info("Adding file to queue. queueName="
@@ -597,12 +611,15 @@ void loadIndexFile() throws IOException {
         try {
             br = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
             indexRecords.clear();
+            backlog.clear();
             String line;
             while ((line = br.readLine()) != null) {
                 if (!line.isEmpty() && !line.startsWith("#")) {
                     AuditIndexRecord record = gson.fromJson(line,
                             AuditIndexRecord.class);
                     indexRecords.add(record);
+                    record.fileBytes = new File(record.filePath).length();
+                    backlog.addFile(record.fileCreateTime, record.fileBytes);
                 }
             }
         } finally {
@@ -634,6 +651,7 @@ synchronized void removeIndexRecord(AuditIndexRecord indexRecord)
                         + ", consumer=" + consumerProvider.getName());
 
                 iter.remove();
+                backlog.removeFile(record.fileCreateTime, record.fileBytes);
                 appendToDoneFile(record);
             }
         }
@@ -761,6 +779,7 @@ class AuditIndexRecord {
         Date lastFailedTime;
         int failedAttemptCount = 0;
         boolean lastAttempt = false;
+        transient long fileBytes = 0; // counted in backlog; not saved in the index file
 
         @Override
         public String toString() {
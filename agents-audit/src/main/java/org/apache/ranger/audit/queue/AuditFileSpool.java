@@ -33,6 +33,7 @@
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -52,7 +53,7 @@
  * This class temporarily stores logs in file system if the destination is
  * overloaded or down
  */
-public class AuditFileSpool implements Runnable {
+public class AuditFileSpool implements AuditSpool, Runnable {
 	private static final Log logger = LogFactory.getLog(AuditFileSpool.class);
 
 	public enum SPOOL_FILE_STATUS {
@@ -93,6 +94,8 @@ public enum SPOOL_FILE_STATUS {
 
 	List<AuditIndexRecord> indexRecords = new ArrayList<AuditIndexRecord>();
 
+	AuditSpoolBacklog backlog = new AuditSpoolBacklog();
+
 	boolean isPending = false;
 	long lastAttemptTime = 0;
 	boolean initDone = false;
@@ -108,6 +111,7 @@ public enum SPOOL_FILE_STATUS {
 	boolean isWriting = true;
 	boolean isDrain = false;
 	boolean isDestDown = false;
+	boolean isSpoolingSuccessful = true;
 
 	private Gson gson = null;
 
@@ -399,6 +403,14 @@ public long getLastAttemptTimeDelta() {
 		return System.currentTimeMillis() - lastAttemptTime;
 	}
 
+	/**
+	 * Backlog of the spool for AuditMetricsRegistry, kept up to date as files
+	 * are written and sent, so it is read without the lock of the spool
+	 */
+	public Map<String, Object> getMetrics() {
+		return backlog.getMetrics();
+	}
+
 	synchronized public void stashLogs(AuditEventBase event) {
 		if (isDrain) {
 			// Stop has been called, so this method shouldn't be called
@@ -412,8 +424,11 @@ synchronized public void stashLogs(AuditEventBase event) {
 			// Convert event to json
 			String jsonStr = MiscUtil.stringify(event);
 			logOut.println(jsonStr);
+			currentWriterIndexRecord.fileBytes += backlog.addLine(jsonStr);
 			isPending = true;
+			isSpoolingSuccessful = true;
 		} catch (Exception ex) {
+			isSpoolingSuccessful = false;
 			logger.error("Error writing to file. event=" + event, ex);
 		} finally {
 			isWriting = false;
@@ -439,7 +454,10 @@ synchronized public void stashLogsString(String event) {
 			isWriting = true;
 			PrintWriter logOut = getLogFileStream();
 			logOut.println(event);
+			currentWriterIndexRecord.fileBytes += backlog.addLine(event);
+			isSpoolingSuccessful = true;
 		} catch (Exception ex) {
+			isSpoolingSuccessful = false;
 			logger.error("Error writing to file. event=" + event, ex);
 		} finally {
 			isWriting = false;
@@ -447,6 +465,10 @@ synchronized public void stashLogsString(String event) {
 
 	}
 
+	synchronized public boolean isSpoolingSuccessful() {
+		return isSpoolingSuccessful;
+	}
+
 	synchronized public void stashLogsString(Collection<String> events) {
 		for (String event : events) {
 			stashLogsString(event);
@@ -510,6 +532,7 @@ synchronized private PrintWriter getLogFileStream() throws Exception {
 			tmpIndexRecord.lastAttempt = true;
 			currentWriterIndexRecord = tmpIndexRecord;
 			indexRecords.add(currentWriterIndexRecord);
+			backlog.addFile(currentWriterIndexRecord.fileCreateTime, 0);
 			saveIndexFile();
 
 		} else {
@@ -553,6 +576,7 @@ synchronized private void closeFileIfNeeded() throws FileNotFoundException,
 					logWriter = null;
 				}
 				currentWriterIndexRecord.status = SPOOL_FILE_STATUS.pending;
+				currentWriterIndexRecord.fileBytes = backlog.updateFileBytes(currentWriterIndexRecord.fileBytes, new File(currentWriterIndexRecord.filePath));
 				currentWriterIndexRecord.writeCompleteTime = new Date();
 				saveIndexFile();
 				logger.info("Adding file to queue. queueName="
@@ -573,12 +597,15 @@ void loadIndexFile() throws IOException {
 		logger.info("Loading index file. fileName=" + indexFile.getPath());
 		BufferedReader br = new BufferedReader(new FileReader(indexFile));
 		indexRecords.clear();
+		backlog.clear();
 		String line;
 		while ((line = br.readLine()) != null) {
 			if (!line.isEmpty() && !line.startsWith("#")) {
 				AuditIndexRecord record = gson.fromJson(line,
 						AuditIndexRecord.class);
 				indexRecords.add(record);
+				record.fileBytes = new File(record.filePath).length();
+				backlog.addFile(record.fileCreateTime, record.fileBytes);
 			}
 		}
 		br.close();
@@ -606,6 +633,7 @@ synchronized void removeIndexRecord(AuditIndexRecord indexRecord)
 						+ ", consumer=" + consumerProvider.getName());
 
 				iter.remove();
+				backlog.removeFile(record.fileCreateTime, record.fileBytes);
 				appendToDoneFile(record);
 			}
 		}
@@ -723,6 +751,7 @@ class AuditIndexRecord {
 		Date lastFailedTime;
 		int failedAttemptCount = 0;
 		boolean lastAttempt = false;
+		transient long fileBytes = 0; // counted in backlog; not saved in the index file
 
 		@Override
 		public String toString() {
@@ -19,6 +19,7 @@
 
 package org.apache.ranger.audit.queue;
 
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
@@ -54,7 +55,7 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	public static final String PROP_FILE_SPOOL_QUEUE_THRESHOLD = "filespool.drain.threshold.percent";
 
 	final protected AuditHandler consumer;
-	protected AuditFileSpool fileSpooler = null;
+	protected AuditSpool fileSpooler = null;
 
 	private boolean isDrain = false;
 
@@ -111,7 +112,11 @@ public void init(Properties props, String basePropertyName) {
 			fileSpoolDrainThresholdPercent = MiscUtil.getIntProperty(props,
 					propPrefix + "." + PROP_FILE_SPOOL_QUEUE_THRESHOLD,
 					fileSpoolDrainThresholdPercent);
-			fileSpooler = new AuditFileSpool(this, consumer);
+			if (AuditSegmentSpool.isBinaryFormat(props, basePropertyName)) {
+				fileSpooler = new AuditSegmentSpool(consumer, getName() + "_" + consumer.getName(), true, getMaxBatchSize());
+			} else {
+				fileSpooler = new AuditFileSpool(this, consumer);
+			}
 			if (!fileSpooler.init(props, basePropertyName)) {
 				fileSpoolerEnabled = false;
 				LOG.fatal("Couldn't initialize file spooler. Disabling it. queue="
@@ -196,6 +201,36 @@ public void setMaxBatchSize(int maxBatchSize) {
 		this.maxBatchSize = maxBatchSize;
 	}
 
+	/**
+	 * @return number of events waiting in memory to be sent to the consumer;
+	 *         -1 if this queue doesn't keep events in memory
+	 */
+	public int getQueueSize() {
+		return -1;
+	}
+
+	public int getQueueCapacity() {
+		return getMaxQueueSize();
+	}
+
+	@Override
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> ret = super.getMetrics();
+
+		int queueSize = getQueueSize();
+
+		if (queueSize >= 0) {
+			ret.put("queueDepth", queueSize);
+			ret.put("queueCapacity", getQueueCapacity());
+		}
+
+		if (fileSpoolerEnabled && fileSpooler != null) {
+			ret.put("spool", fileSpooler.getMetrics());
+		}
+
+		return ret;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
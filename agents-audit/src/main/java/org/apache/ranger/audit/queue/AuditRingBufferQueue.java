@@ -0,0 +1,616 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.log4j.MDC;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Bounded queue of audit events, for many producer threads and one consumer
+ * thread. Slots are allocated once, at start(); a producer claims a slot with
+ * a compare-and-set on the tail sequence and publishes the event by writing it
+ * to the slot, so logging an event takes neither a lock nor a queue node. The
+ * consumer thread drains published events in batches of up to batch.size and
+ * sends a batch to the destination when it is full, when its oldest event is
+ * batch.interval.ms old, or on drain.
+ *
+ * Properties, in addition to those of AuditQueue:
+ * <ul>
+ * <li>wait.strategy: how the consumer thread waits for events - block (park
+ * until a producer signals; default), sleep (park for 1ms), yield or spin</li>
+ * <li>full.policy: what log() does when the queue is full - spill (stash to the
+ * file spool when enabled, otherwise drop; default), drop or block (wait for
+ * free slots)</li>
+ * </ul>
+ */
+public class AuditRingBufferQueue extends AuditQueue implements Runnable {
+	private static final Log logger = LogFactory.getLog(AuditRingBufferQueue.class);
+
+	public static final String PROP_WAIT_STRATEGY = "wait.strategy";
+	public static final String PROP_FULL_POLICY   = "full.policy";
+
+	public static final int AUDIT_RING_BUFFER_SIZE_DEFAULT = 64 * 1024;
+
+	private static final int  MAX_CAPACITY        = 1 << 30;
+	private static final long MAX_IDLE_WAIT_MS    = 1000;
+	private static final long SLEEP_WAIT_NANOS    = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long PRODUCER_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	public enum WaitStrategy { BLOCK, SLEEP, YIELD, SPIN }
+
+	public enum FullPolicy { SPILL, DROP, BLOCK }
+
+	private volatile AtomicReferenceArray<AuditEventBase> slots = null;
+	private int                                           mask  = 0;
+
+	// next sequence to be claimed by producers
+	private final AtomicLong tail = new AtomicLong();
+	// next sequence to be read by the consumer; slots before head are free
+	private volatile long head = 0;
+
+	private volatile boolean consumerWaiting = false;
+
+	// updated by producers; added to the counts of the queue by the consumer thread
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong spilledCount = new AtomicLong();
+
+	private final List<AuditEventBase> localBatchBuffer = new ArrayList<AuditEventBase>();
+
+	private WaitStrategy waitStrategy = WaitStrategy.BLOCK;
+	private FullPolicy   fullPolicy   = FullPolicy.SPILL;
+
+	volatile Thread consumerThread = null;
+	static int threadCount = 0;
+	static final String DEFAULT_NAME = "ringbuffer";
+
+	public AuditRingBufferQueue(AuditHandler consumer) {
+		super(consumer);
+		setName(DEFAULT_NAME);
+		setMaxQueueSize(AUDIT_RING_BUFFER_SIZE_DEFAULT);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.apache.ranger.audit.provider.AuditProvider#log(org.apache.ranger.
+	 * audit.model.AuditEventBase)
+	 */
+	@Override
+	public boolean log(AuditEventBase event) {
+		if (event == null) { // an empty slot marks an unpublished event, hence null events can't be queued
+			logger.warn("log(): ignoring null audit event. queue=" + getName());
+			return false;
+		}
+
+		if (offer(event)) {
+			return true;
+		}
+
+		boolean ret = false;
+
+		switch (fullPolicy) {
+			case BLOCK:
+				while (!isDrain()) {
+					LockSupport.parkNanos(this, PRODUCER_WAIT_NANOS);
+
+					if (offer(event)) {
+						ret = true;
+						break;
+					}
+				}
+				break;
+
+			case SPILL:
+				if (fileSpoolerEnabled) {
+					fileSpooler.stashLogs(event);
+					spilledCount.incrementAndGet();
+					ret = true;
+				}
+				break;
+
+			case DROP:
+			default:
+				break;
+		}
+
+		if (!ret) {
+			droppedCount.incrementAndGet();
+			logFailedEvent(event, "queue " + getName() + " is full");
+		}
+
+		return ret;
+	}
+
+	@Override
+	public boolean log(Collection<AuditEventBase> events) {
+		boolean ret = true;
+		for (AuditEventBase event : events) {
+			if (event == null) {
+				continue;
+			}
+
+			ret = log(event);
+			if (!ret) {
+				break;
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public void init(Properties prop, String basePropertyName) {
+		String propPrefix = "xasecure.audit.ringbuffer";
+		if (basePropertyName != null) {
+			propPrefix = basePropertyName;
+		}
+
+		super.init(prop, propPrefix);
+
+		String strWaitStrategy = MiscUtil.getStringProperty(prop, propPrefix + "." + PROP_WAIT_STRATEGY, waitStrategy.name());
+		String strFullPolicy   = MiscUtil.getStringProperty(prop, propPrefix + "." + PROP_FULL_POLICY, fullPolicy.name());
+
+		try {
+			waitStrategy = WaitStrategy.valueOf(strWaitStrategy.trim().toUpperCase());
+		} catch (IllegalArgumentException excp) {
+			logger.error("Invalid " + propPrefix + "." + PROP_WAIT_STRATEGY + "=" + strWaitStrategy + ". Using " + waitStrategy);
+		}
+
+		try {
+			fullPolicy = FullPolicy.valueOf(strFullPolicy.trim().toUpperCase());
+		} catch (IllegalArgumentException excp) {
+			logger.error("Invalid " + propPrefix + "." + PROP_FULL_POLICY + "=" + strFullPolicy + ". Using " + fullPolicy);
+		}
+
+		if (fullPolicy == FullPolicy.SPILL && !fileSpoolerEnabled) {
+			logger.info("File spool is not enabled for " + getName() + ". Events will be dropped when the queue is full");
+		}
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	public FullPolicy getFullPolicy() {
+		return fullPolicy;
+	}
+
+	public int size() {
+		return (int) (tail.get() - head);
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	@Override
+	public int getQueueSize() {
+		return size();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return getCapacity();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#start()
+	 */
+	@Override
+	synchronized public void start() {
+		if (consumerThread != null) {
+			logger.error("Provider is already started. name=" + getName());
+			return;
+		}
+
+		int capacity = 1;
+		while (capacity < getMaxQueueSize() && capacity < MAX_CAPACITY) {
+			capacity <<= 1;
+		}
+
+		logger.info("Creating ring buffer with capacity=" + capacity
+				+ ", waitStrategy=" + waitStrategy + ", fullPolicy="
+				+ fullPolicy);
+
+		// mask is set before slots are published to producers
+		mask  = capacity - 1;
+		slots = new AtomicReferenceArray<AuditEventBase>(capacity);
+
+		// Start the consumer first
+		consumer.start();
+
+		// Then the FileSpooler
+		if (fileSpoolerEnabled) {
+			fileSpooler.start();
+		}
+
+		// Finally the queue listener
+		consumerThread = new Thread(this, this.getClass().getName()
+				+ (threadCount++));
+		consumerThread.setDaemon(true);
+		consumerThread.start();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#stop()
+	 */
+	@Override
+	public void stop() {
+		logger.info("Stop called. name=" + getName());
+		AuditMetricsRegistry.getInstance().unregister(this);
+		setDrain(true);
+		flush();
+		try {
+			if (consumerThread != null) {
+				logger.info("Interrupting consumerThread. name=" + getName()
+						+ ", consumer="
+						+ (consumer == null ? null : consumer.getName()));
+
+				consumerThread.interrupt();
+			}
+		} catch (Throwable t) {
+			// ignore any exception
+		}
+		consumerThread = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#waitToComplete()
+	 */
+	@Override
+	public void waitToComplete() {
+		int defaultTimeOut = -1;
+		waitToComplete(defaultTimeOut);
+		consumer.waitToComplete(defaultTimeOut);
+	}
+
+	@Override
+	public void waitToComplete(long timeout) {
+		setDrain(true);
+		flush();
+		long sleepTime = 1000;
+		long startTime = System.currentTimeMillis();
+		int prevQueueSize = -1;
+		int staticLoopCount = 0;
+		while (slots != null && (size() > 0 || !localBatchBuffer.isEmpty())) {
+			if (prevQueueSize == size()) {
+				logger.error("Queue size is not changing. " + getName()
+						+ ".size=" + size());
+				staticLoopCount++;
+				if (staticLoopCount > 5) {
+					logger.error("Aborting writing to consumer. Some logs will be discarded."
+							+ getName() + ".size=" + size());
+					break;
+				}
+			} else {
+				staticLoopCount = 0;
+				prevQueueSize = size();
+			}
+			Thread thread = consumerThread;
+			if (thread != null) {
+				LockSupport.unpark(thread);
+			}
+			try {
+				Thread.sleep(sleepTime);
+				if (timeout > 0
+						&& (System.currentTimeMillis() - startTime > timeout)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+		consumer.waitToComplete(timeout);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.ranger.audit.provider.AuditProvider#flush()
+	 */
+	@Override
+	public void flush() {
+		if (fileSpoolerEnabled) {
+			fileSpooler.flush();
+		}
+		consumer.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			//This is done to clear the MDC context to avoid issue with Ranger Auditing for Knox
+			MDC.clear();
+			runLogAudit();
+		} catch (Throwable t) {
+			logger.fatal("Exited thread abnormaly. queue=" + getName(), t);
+		}
+	}
+
+	public void runLogAudit() {
+		long batchStartTime = 0;
+		boolean isDestActive = true;
+		while (true) {
+			updateProducerCounts();
+			logStatusIfRequired();
+
+			boolean isToSpool = false;
+			boolean isSpoolPending = false;
+
+			if (fileSpoolerEnabled && fileSpooler.isPending()) {
+				int percentUsed = size() * 100 / getCapacity();
+				boolean fileSpoolDrain = fileSpooler.getLastAttemptTimeDelta() > fileSpoolMaxWaitTime;
+
+				// Since some files are still under progress and it is not in
+				// drain mode, don't read from the queue until the spool is
+				// sent or the queue is filling up
+				isSpoolPending = !isDrain() && !fileSpoolDrain && percentUsed < fileSpoolDrainThresholdPercent;
+				isToSpool      = !isSpoolPending;
+			}
+
+			int drained = 0;
+			if (!isSpoolPending) {
+				boolean wasEmpty = localBatchBuffer.isEmpty();
+
+				drained = drainTo(localBatchBuffer, getMaxBatchSize() - localBatchBuffer.size());
+
+				if (wasEmpty && drained > 0) {
+					batchStartTime = System.currentTimeMillis();
+				}
+			}
+
+			long nextDispatchDuration = batchStartTime - System.currentTimeMillis() + getMaxBatchInterval();
+
+			if (!localBatchBuffer.isEmpty()
+					&& (isToSpool || isDrain() || localBatchBuffer.size() >= getMaxBatchSize() || nextDispatchDuration <= 0)) {
+				addTotalCount(localBatchBuffer.size());
+				isDestActive = dispatch(isToSpool, isDestActive);
+				continue;
+			}
+
+			if (isDrain()) {
+				if (size() > 0 || !localBatchBuffer.isEmpty()) {
+					logger.info("Queue is not empty. Will retry. queue.size()="
+							+ size() + ", localBatchBuffer.size()="
+							+ localBatchBuffer.size());
+				} else {
+					break;
+				}
+				if (isDrainMaxTimeElapsed()) {
+					logger.warn("Exiting polling loop because max time allowed reached. name="
+							+ getName()
+							+ ", waited for "
+							+ (stopTime - System.currentTimeMillis()) + " ms");
+				}
+			}
+
+			if (isSpoolPending) {
+				// events are not read until the spool is sent, so don't wait
+				// for them to be published
+				try {
+					Thread.sleep(Math.min(getMaxBatchInterval(), MAX_IDLE_WAIT_MS));
+				} catch (InterruptedException e) {
+					logger.info("Caught exception in consumer thread. Shutdown might be in progress");
+					setDrain(true);
+				}
+			} else if (drained == 0) {
+				long maxWaitMs = localBatchBuffer.isEmpty() ? MAX_IDLE_WAIT_MS : nextDispatchDuration;
+
+				waitForEvents(TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+
+				if (Thread.interrupted()) {
+					logger.info("Consumer thread interrupted. Shutdown might be in progress");
+					setDrain(true);
+				}
+			}
+		}
+
+		updateProducerCounts();
+
+		logger.info("Exiting consumerThread. Queue=" + getName() + ", dest="
+				+ consumer.getName());
+		try {
+			// Call stop on the consumer
+			logger.info("Calling to stop consumer. name=" + getName()
+					+ ", consumer.name=" + consumer.getName());
+
+			consumer.stop();
+			if (fileSpoolerEnabled) {
+				fileSpooler.stop();
+			}
+		} catch (Throwable t) {
+			logger.error("Error while calling stop on consumer.", t);
+		}
+		logStatus();
+		logger.info("Exiting consumerThread.run() method. name=" + getName());
+	}
+
+	private boolean offer(AuditEventBase event) {
+		final AtomicReferenceArray<AuditEventBase> slots = this.slots;
+
+		if (slots == null) {
+			logger.error("log() called before start(). queue=" + getName());
+			return false;
+		}
+
+		long seq;
+		do {
+			seq = tail.get();
+
+			if (seq - head > mask) {
+				return false;
+			}
+		} while (!tail.compareAndSet(seq, seq + 1));
+
+		slots.set((int) seq & mask, event);
+
+		if (consumerWaiting) {
+			LockSupport.unpark(consumerThread);
+		}
+
+		return true;
+	}
+
+	/*
+	 * Moves up to maxEvents published events to the given buffer, in sequence
+	 * order. A claimed slot whose event is not yet written stops the drain, so
+	 * events are always handed over in the order they were claimed.
+	 */
+	private int drainTo(Collection<AuditEventBase> buffer, int maxEvents) {
+		long next  = head;
+		int  count = 0;
+
+		while (count < maxEvents) {
+			int            idx   = (int) next & mask;
+			AuditEventBase event = slots.get(idx);
+
+			if (event == null) {
+				break;
+			}
+
+			slots.lazySet(idx, null);
+			buffer.add(event);
+			next++;
+			count++;
+		}
+
+		if (count > 0) {
+			head = next; // frees the slots, after they are cleared
+		}
+
+		return count;
+	}
+
+	private void waitForEvents(long maxWaitNanos) {
+		if (maxWaitNanos <= 0) {
+			return;
+		}
+
+		switch (waitStrategy) {
+			case SPIN:
+				break;
+
+			case YIELD:
+				Thread.yield();
+				break;
+
+			case SLEEP:
+				LockSupport.parkNanos(this, Math.min(maxWaitNanos, SLEEP_WAIT_NANOS));
+				break;
+
+			case BLOCK:
+			default:
+				consumerWaiting = true;
+				try {
+					// an event published before consumerWaiting was set won't
+					// signal, so look for one before parking
+					if (slots.get((int) head & mask) == null) {
+						LockSupport.parkNanos(this, maxWaitNanos);
+					}
+				} finally {
+					consumerWaiting = false;
+				}
+				break;
+		}
+	}
+
+	private boolean dispatch(boolean isToSpool, boolean isDestActive) {
+		addBatch(localBatchBuffer.size());
+
+		if (isToSpool) {
+			// Let spool to the file directly
+			if (isDestActive) {
+				logger.info("Switching to file spool. Queue=" + getName()
+						+ ", dest=" + consumer.getName());
+			}
+			isDestActive = false;
+			fileSpooler.stashLogs(localBatchBuffer);
+			addStashedCount(localBatchBuffer.size());
+		} else {
+			if (fileSpoolerEnabled && !isDestActive) {
+				logger.info("Switching to writing to destination. Queue="
+						+ getName() + ", dest=" + consumer.getName());
+			}
+			boolean ret = false;
+			try {
+				ret = consumer.log(localBatchBuffer);
+			} catch (Throwable t) {
+				logger.error("Caught error during processing request.", t);
+			}
+			if (!ret) {
+				if (fileSpoolerEnabled) {
+					logger.info("Switching to file spool. Queue="
+							+ getName() + ", dest=" + consumer.getName());
+					// Transient error. Stash and move on
+					fileSpooler.stashLogs(localBatchBuffer);
+					isDestActive = false;
+					addStashedCount(localBatchBuffer.size());
+				} else {
+					// We need to drop this event
+					addFailedCount(localBatchBuffer.size());
+					logFailedEvent(localBatchBuffer);
+				}
+			} else {
+				isDestActive = true;
+				addSuccessCount(localBatchBuffer.size());
+				addDelivered(localBatchBuffer);
+			}
+		}
+		localBatchBuffer.clear();
+
+		return isDestActive;
+	}
+
+	private void updateProducerCounts() {
+		int dropped = (int) droppedCount.getAndSet(0);
+		int spilled = (int) spilledCount.getAndSet(0);
+
+		if (dropped > 0 || spilled > 0) {
+			addTotalCount(dropped + spilled);
+			addFailedCount(dropped);
+			addStashedCount(spilled);
+		}
+	}
+}
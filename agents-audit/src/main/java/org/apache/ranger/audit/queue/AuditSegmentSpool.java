@@ -0,0 +1,1060 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.util.CleanerUtil;
+import org.apache.log4j.MDC;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+/**
+ * Write-ahead spool of audit events in binary segment files, used by
+ * AuditFileSpool and AuditFileQueueSpool when filespool.format=binary.
+ *
+ * <ul>
+ * <li>a segment starts with a magic number and a version, followed by records
+ * of: length, CRC32 of the event, the event as JSON. A segment is sealed when
+ * it reaches filespool.segment.size.bytes, on rollover, or - when the
+ * destination thread finds no other segment to send - once it has been open
+ * for filespool.segment.linger.ms</li>
+ * <li>writes are buffered and synced to disk together (group commit) every
+ * filespool.fsync.interval.ms; with 0, every stash call is synced. Events are
+ * serialized before the writer lock is taken, and the sync to disk is done
+ * outside of it</li>
+ * <li>sealed segments are memory-mapped and sent to the destination in batches
+ * of filespool.replay.batch.size events. After each batch, the position sent
+ * is appended to a journal, which is read on restart to resume from there.
+ * The journal is compacted to its last entry when it grows larger than
+ * JOURNAL_MAX_SIZE</li>
+ * <li>a record with an invalid length or CRC - as left by a crash in the middle
+ * of a write - is dropped, along with the bytes up to the next valid record;
+ * the number of bytes dropped is logged. A record that is not a valid event is
+ * skipped</li>
+ * </ul>
+ */
+public class AuditSegmentSpool implements AuditSpool, Runnable {
+	private static final Log logger = LogFactory.getLog(AuditSegmentSpool.class);
+
+	public static final String PROP_FILE_SPOOL_FORMAT = "filespool.format";
+	public static final String PROP_FILE_SPOOL_SEGMENT_SIZE = "filespool.segment.size.bytes";
+	public static final String PROP_FILE_SPOOL_SEGMENT_LINGER_MS = "filespool.segment.linger.ms";
+	public static final String PROP_FILE_SPOOL_FSYNC_INTERVAL_MS = "filespool.fsync.interval.ms";
+	public static final String PROP_FILE_SPOOL_REPLAY_BATCH_SIZE = "filespool.replay.batch.size";
+
+	public static final String FILE_SPOOL_FORMAT_JSON = "json";
+	public static final String FILE_SPOOL_FORMAT_BINARY = "binary";
+
+	static final int SEGMENT_MAGIC = 0x52415331; // RAS1
+	static final int SEGMENT_VERSION = 1;
+	static final int SEGMENT_HEADER_SIZE = 8; // magic, version
+	static final int RECORD_HEADER_SIZE = 8; // length, crc
+	static final int JOURNAL_ENTRY_SIZE = 20; // segmentId, offset, crc
+	static final long JOURNAL_MAX_SIZE = 1024 * 1024;
+	static final int MIN_IDLE_WAIT_MS = 100;
+	static final String SEGMENT_FILE_SUFFIX = ".seg";
+	static final String JOURNAL_FILE_SUFFIX = ".journal";
+
+	private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+	final AuditHandler consumerProvider;
+	final String name;
+	final boolean sendAsJSON;
+
+	File logFolder = null;
+	File archiveFolder = null;
+	String fileNamePrefix = null;
+	File journalFile = null;
+	long maxSegmentSize = 64L * 1024 * 1024;
+	int fileRolloverSec = 24 * 60 * 60; // In seconds
+	int segmentLingerMS = 5 * 1000; // Default 5 seconds
+	int fsyncIntervalMS = 1000;
+	int replayBatchSize = 1000;
+	int retryDestinationMS = 30 * 1000; // Default 30 seconds
+	int maxArchiveFiles = 100;
+
+	int errorLogIntervalMS = 30 * 1000; // Every 30 seconds
+	long lastErrorLogMS = 0;
+
+	// segments to be sent to the destination, in the order written
+	final BlockingQueue<Long> sealedSegments = new LinkedBlockingQueue<Long>();
+
+	// writer state; guarded by writeLock
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private long nextSegmentId = 1;
+	private long writeSegmentId = -1;
+	private FileChannel writeChannel = null;
+	private long writeSegmentSize = 0;
+	private long writeSegmentCreateTime = 0;
+	private boolean isWriteDirty = false;
+	private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+	private final CRC32 writeCrc = new CRC32();
+
+	// reader state; used by the destination thread
+	private long readSegmentId = -1;
+	private long readOffset = 0;
+	private FileChannel journalChannel = null;
+	private volatile boolean isJournalDirty = false;
+	private final ByteBuffer journalEntry = ByteBuffer.allocate(JOURNAL_ENTRY_SIZE);
+	private final CRC32 readCrc = new CRC32();
+	private byte[] readBuffer = new byte[4096];
+
+	volatile boolean isPending = false;
+	volatile boolean isDrain = false;
+	volatile boolean isDestDown = false;
+	volatile boolean isSpoolingSuccessful = true;
+	volatile long lastAttemptTime = 0;
+	boolean initDone = false;
+
+	Thread destinationThread = null;
+	Thread syncThread = null;
+	// wakes up the spool threads on stop(); they are not interrupted, as an interrupt closes a FileChannel in use
+	private final CountDownLatch stopSignal = new CountDownLatch(1);
+
+	/**
+	 * @param consumerProvider destination of the events
+	 * @param name             used in the name of files and threads
+	 * @param sendAsJSON       whether events are sent to the destination with
+	 *                         logJSON(), or as AuthzAuditEvent with log()
+	 * @param replayBatchSize  default number of events sent to the destination
+	 *                         at a time
+	 */
+	public AuditSegmentSpool(AuditHandler consumerProvider, String name, boolean sendAsJSON, int replayBatchSize) {
+		this.consumerProvider = consumerProvider;
+		this.name = name;
+		this.sendAsJSON = sendAsJSON;
+		this.replayBatchSize = replayBatchSize;
+	}
+
+	public static boolean isBinaryFormat(Properties props, String propPrefix) {
+		String format = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_FILE_SPOOL_FORMAT);
+
+		return FILE_SPOOL_FORMAT_BINARY.equalsIgnoreCase(format);
+	}
+
+	public boolean init(Properties props, String propPrefix) {
+		if (initDone) {
+			logger.error("init() called more than once. name=" + name);
+			return true;
+		}
+
+		try {
+			String logFolderProp = MiscUtil.getStringProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR);
+			String archiveFolderProp = MiscUtil.getStringProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_ARCHIVE_DIR);
+
+			fileNamePrefix = MiscUtil.getStringProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_FILENAME_PREFIX);
+			retryDestinationMS = MiscUtil.getIntProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, retryDestinationMS);
+			fileRolloverSec = MiscUtil.getIntProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_FILE_ROLLOVER, fileRolloverSec);
+			maxArchiveFiles = MiscUtil.getIntProperty(props, propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_ARCHIVE_MAX_FILES_COUNT, maxArchiveFiles);
+			maxSegmentSize = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_FILE_SPOOL_SEGMENT_SIZE, maxSegmentSize);
+			segmentLingerMS = Math.max(0, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_FILE_SPOOL_SEGMENT_LINGER_MS, segmentLingerMS));
+			fsyncIntervalMS = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_FILE_SPOOL_FSYNC_INTERVAL_MS, fsyncIntervalMS);
+			replayBatchSize = Math.max(1, MiscUtil.getIntProperty(props, propPrefix + "." + PROP_FILE_SPOOL_REPLAY_BATCH_SIZE, replayBatchSize));
+
+			// segments are memory-mapped for replay
+			maxSegmentSize = Math.min(maxSegmentSize, Integer.MAX_VALUE);
+
+			logger.info("name=" + name + ", maxSegmentSize=" + maxSegmentSize
+					+ ", fileRolloverSec=" + fileRolloverSec
+					+ ", segmentLingerMS=" + segmentLingerMS
+					+ ", fsyncIntervalMS=" + fsyncIntervalMS
+					+ ", replayBatchSize=" + replayBatchSize
+					+ ", retryDestinationMS=" + retryDestinationMS
+					+ ", maxArchiveFiles=" + maxArchiveFiles);
+
+			if (logFolderProp == null || logFolderProp.isEmpty()) {
+				logger.fatal("Audit spool folder is not configured. Please set "
+						+ propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR
+						+ ". name=" + name);
+				return false;
+			}
+
+			logFolder = new File(logFolderProp);
+			archiveFolder = (archiveFolderProp == null || archiveFolderProp.isEmpty()) ? new File(logFolder, "archive") : new File(archiveFolderProp);
+
+			for (File folder : Arrays.asList(logFolder, archiveFolder)) {
+				if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+					logger.fatal("File Spool folder not found and can't be created. folder="
+							+ folder.getAbsolutePath() + ", name=" + name);
+					return false;
+				}
+			}
+
+			if (fileNamePrefix == null || fileNamePrefix.isEmpty()) {
+				fileNamePrefix = name;
+			}
+
+			journalFile = new File(logFolder, "journal_" + fileNamePrefix + JOURNAL_FILE_SUFFIX);
+
+			recover();
+		} catch (Throwable t) {
+			logger.fatal("Error initializing File Spooler. name=" + name, t);
+			return false;
+		}
+
+		initDone = true;
+		return true;
+	}
+
+	public void start() {
+		if (!initDone) {
+			logger.error("Cannot start Audit File Spooler. Initilization not done yet. name=" + name);
+			return;
+		}
+
+		logger.info("Starting destination thread. name=" + name + ", consumer=" + consumerProvider.getName());
+
+		destinationThread = new Thread(this, name + "_destWriter");
+		destinationThread.setDaemon(true);
+		destinationThread.start();
+
+		if (fsyncIntervalMS > 0) {
+			syncThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					runSync();
+				}
+			}, name + "_sync");
+			syncThread.setDaemon(true);
+			syncThread.start();
+		}
+	}
+
+	public void stop() {
+		if (!initDone) {
+			logger.error("Cannot stop Audit File Spooler. Initilization not done. name=" + name);
+			return;
+		}
+		logger.info("Stop called, name=" + name + ", consumer=" + consumerProvider.getName());
+
+		isDrain = true;
+
+		writeLock.lock();
+		try {
+			flushWriteBuffer();
+
+			if (writeChannel != null) {
+				writeChannel.force(false);
+				writeChannel.close();
+				writeChannel = null;
+				isWriteDirty = false;
+			}
+		} catch (Throwable t) {
+			logger.error("Error closing spool segment. name=" + name, t);
+		} finally {
+			writeLock.unlock();
+		}
+
+		stopSignal.countDown();
+
+		destinationThread = null;
+		syncThread = null;
+	}
+
+	/**
+	 * Writes buffered events to the segment file, without syncing it to disk
+	 */
+	public void flush() {
+		writeLock.lock();
+		try {
+			flushWriteBuffer();
+		} catch (IOException excp) {
+			logError("Error flushing spool segment. name=" + name, excp);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	public boolean isPending() {
+		return isPending;
+	}
+
+	public long getLastAttemptTimeDelta() {
+		if (lastAttemptTime == 0) {
+			return 0;
+		}
+		return System.currentTimeMillis() - lastAttemptTime;
+	}
+
+	public boolean isSpoolingSuccessful() {
+		return isSpoolingSuccessful;
+	}
+
+	/**
+	 * Backlog of the spool for AuditMetricsRegistry: bytes and segments not
+	 * yet sent to the destination, and milliseconds since the oldest of them
+	 * was written. A sealed segment doesn't record its create time, so its
+	 * last-modified time is used - the time it was sealed
+	 */
+	public Map<String, Object> getMetrics() {
+		long spoolBytes = 0;
+		long oldestSegmentTime = 0;
+		int spoolFiles = 0;
+
+		for (Long segmentId : sealedSegments) {
+			File file = getSegmentFile(logFolder, segmentId);
+
+			spoolBytes += file.length();
+			spoolFiles++;
+
+			if (oldestSegmentTime == 0 && file.exists()) {
+				oldestSegmentTime = file.lastModified();
+			}
+		}
+
+		writeLock.lock();
+		try {
+			if (writeChannel != null && writeSegmentSize > SEGMENT_HEADER_SIZE) {
+				spoolBytes += writeSegmentSize;
+				spoolFiles++;
+
+				if (oldestSegmentTime == 0) {
+					oldestSegmentTime = writeSegmentCreateTime;
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+
+		ret.put("spoolBytes", spoolBytes);
+		ret.put("spoolFiles", spoolFiles);
+		ret.put("replayLagMS", oldestSegmentTime == 0 ? 0 : System.currentTimeMillis() - oldestSegmentTime);
+
+		return ret;
+	}
+
+	public void stashLogs(AuditEventBase event) {
+		stashLogsString(MiscUtil.stringify(event));
+	}
+
+	public void stashLogs(Collection<AuditEventBase> events) {
+		List<String> jsonEvents = new ArrayList<String>(events.size());
+
+		for (AuditEventBase event : events) {
+			jsonEvents.add(MiscUtil.stringify(event));
+		}
+
+		stashLogsString(jsonEvents);
+	}
+
+	public void stashLogsString(String event) {
+		// a single event stays in the write buffer until the next batch or sync
+		stash(Collections.singletonList(event), false);
+	}
+
+	public void stashLogsString(Collection<String> events) {
+		// a batch is written to the segment at once, and synced together with other batches
+		stash(events, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			//This is done to clear the MDC context to avoid issue with Ranger Auditing for Knox
+			MDC.clear();
+			runLogAudit();
+		} catch (Throwable t) {
+			logger.fatal("Exited thread abnormaly. name=" + name, t);
+		}
+	}
+
+	public void runLogAudit() {
+		while (!isDrain) {
+			try {
+				if (isDestDown) {
+					logger.info("Destination is down. sleeping for "
+							+ retryDestinationMS + " milli seconds. segments="
+							+ sealedSegments.size() + ", name=" + name
+							+ ", consumer=" + consumerProvider.getName());
+					stopSignal.await(retryDestinationMS, TimeUnit.MILLISECONDS);
+				}
+
+				Long segmentId = sealedSegments.peek();
+
+				if (segmentId == null) {
+					// send the events being written once the segment has lingered, without waiting for it to fill or roll over
+					long waitMS = sealWriteSegmentIfLingered();
+
+					if (waitMS > 0) {
+						stopSignal.await(waitMS, TimeUnit.MILLISECONDS);
+					}
+					continue;
+				}
+
+				if (sendSegment(segmentId)) {
+					sealedSegments.poll();
+					archiveSegment(segmentId);
+					updatePending();
+				} else if (!isDrain) {
+					isDestDown = true;
+					lastAttemptTime = System.currentTimeMillis();
+					logError("Destination down. name=" + name + ", consumer=" + consumerProvider.getName(), null);
+				}
+			} catch (InterruptedException e) {
+				logger.info("Caught exception in consumer thread. Shutdown might be in progress");
+				break;
+			} catch (Throwable t) {
+				logger.error("Exception in destination writing thread.", t);
+			}
+		}
+
+		try {
+			syncJournal();
+		} catch (Throwable t) {
+			logger.error("Error syncing journal. name=" + name, t);
+		}
+
+		logger.info("Exiting file spooler. name=" + name + ", consumer=" + consumerProvider.getName());
+	}
+
+	private boolean isStashAllowed(int count) {
+		if (isDrain) {
+			// Stop has been called, so this method shouldn't be called
+			logger.error("stashLogs() is called after stop is called. name=" + name + ", events=" + count);
+		}
+		return !isDrain;
+	}
+
+	private void stash(Collection<String> events, boolean flushBuffer) {
+		if (!isStashAllowed(events.size())) {
+			return;
+		}
+
+		try {
+			writeLock.lock();
+			try {
+				for (String event : events) {
+					append(event);
+				}
+
+				if (flushBuffer) {
+					flushWriteBuffer();
+				}
+			} finally {
+				writeLock.unlock();
+			}
+
+			if (fsyncIntervalMS <= 0) {
+				sync();
+			}
+
+			isSpoolingSuccessful = true;
+		} catch (Exception ex) {
+			isSpoolingSuccessful = false;
+			logError("Error writing to spool segment. name=" + name, ex);
+		}
+	}
+
+	private void append(String event) throws IOException {
+		byte[] payload = event.getBytes(StandardCharsets.UTF_8);
+		int recordSize = RECORD_HEADER_SIZE + payload.length;
+
+		if (writeChannel != null
+				&& ((writeSegmentSize + recordSize > maxSegmentSize && writeSegmentSize > SEGMENT_HEADER_SIZE)
+					|| System.currentTimeMillis() - writeSegmentCreateTime > fileRolloverSec * 1000L)) {
+			sealWriteSegment();
+		}
+
+		if (writeChannel == null) {
+			openWriteSegment();
+		}
+
+		writeCrc.reset();
+		writeCrc.update(payload, 0, payload.length);
+
+		if (writeBuffer.remaining() < recordSize) {
+			flushWriteBuffer();
+		}
+
+		if (recordSize > writeBuffer.capacity()) {
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+			header.putInt(payload.length).putInt((int) writeCrc.getValue()).flip();
+
+			writeFully(writeChannel, header);
+			writeFully(writeChannel, ByteBuffer.wrap(payload));
+		} else {
+			writeBuffer.putInt(payload.length).putInt((int) writeCrc.getValue()).put(payload);
+		}
+
+		writeSegmentSize += recordSize;
+		isWriteDirty = true;
+		isPending = true;
+	}
+
+	private void openWriteSegment() throws IOException {
+		long segmentId = nextSegmentId++;
+		File file = getSegmentFile(logFolder, segmentId);
+
+		logger.info("Creating new segment. name=" + name + ", fileName=" + file.getName());
+
+		writeChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		writeSegmentId = segmentId;
+		writeSegmentCreateTime = System.currentTimeMillis();
+
+		writeBuffer.clear();
+		writeBuffer.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION);
+
+		writeSegmentSize = SEGMENT_HEADER_SIZE;
+	}
+
+	private void sealWriteSegment() throws IOException {
+		flushWriteBuffer();
+		writeChannel.force(false);
+		writeChannel.close();
+
+		writeChannel = null;
+		isWriteDirty = false;
+
+		sealedSegments.add(writeSegmentId);
+	}
+
+	/*
+	 * Seals the segment being written if it has events and has been open for segmentLingerMS. Returns 0 if the segment
+	 * was sealed, else the milliseconds to wait before checking again.
+	 */
+	long sealWriteSegmentIfLingered() throws IOException {
+		long ret;
+
+		writeLock.lock();
+		try {
+			if (writeChannel != null && writeSegmentSize > SEGMENT_HEADER_SIZE) {
+				long lingerLeftMS = writeSegmentCreateTime + segmentLingerMS - System.currentTimeMillis();
+
+				if (lingerLeftMS <= 0) {
+					sealWriteSegment();
+					ret = 0;
+				} else {
+					ret = Math.min(lingerLeftMS, retryDestinationMS);
+				}
+			} else {
+				ret = Math.min(Math.max(segmentLingerMS, MIN_IDLE_WAIT_MS), retryDestinationMS);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+
+		return ret;
+	}
+
+	private void flushWriteBuffer() throws IOException {
+		if (writeChannel != null && writeBuffer.position() > 0) {
+			writeBuffer.flip();
+			writeFully(writeChannel, writeBuffer);
+			writeBuffer.clear();
+		}
+	}
+
+	void sync() throws IOException {
+		FileChannel channel = null;
+
+		writeLock.lock();
+		try {
+			flushWriteBuffer();
+
+			if (writeChannel != null && isWriteDirty) {
+				channel = writeChannel;
+				isWriteDirty = false;
+			}
+		} finally {
+			writeLock.unlock();
+		}
+
+		if (channel != null) {
+			try {
+				channel.force(false);
+			} catch (ClosedChannelException excp) {
+				// the segment was sealed meanwhile, which syncs it
+			} catch (IOException excp) {
+				writeLock.lock();
+				try {
+					if (writeChannel == channel) {
+						isWriteDirty = true;
+					}
+				} finally {
+					writeLock.unlock();
+				}
+
+				throw excp;
+			}
+		}
+	}
+
+	void runSync() {
+		while (!isDrain) {
+			try {
+				if (stopSignal.await(fsyncIntervalMS, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+
+				sync();
+				syncJournal();
+			} catch (InterruptedException e) {
+				break;
+			} catch (Throwable t) {
+				logError("Error syncing spool. name=" + name, t);
+			}
+		}
+	}
+
+	private void updatePending() {
+		writeLock.lock();
+		try {
+			isPending = !sealedSegments.isEmpty() || (writeChannel != null && writeSegmentSize > SEGMENT_HEADER_SIZE);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/*
+	 * Sends the segment from the position in the journal. Returns false if the destination failed, or if stop() was
+	 * called before the whole segment was sent.
+	 */
+	boolean sendSegment(long segmentId) throws IOException {
+		File file = getSegmentFile(logFolder, segmentId);
+
+		if (!file.exists()) {
+			logger.error("Segment file=" + file.getPath() + " not found. name=" + name);
+			return true;
+		}
+
+		final MappedByteBuffer segment;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			return sendSegment(segmentId, segment, file);
+		} finally {
+			unmap(segment, file);
+		}
+	}
+
+	private boolean sendSegment(long segmentId, MappedByteBuffer segment, File file) throws IOException {
+		if (segment.limit() < SEGMENT_HEADER_SIZE || segment.getInt(0) != SEGMENT_MAGIC || segment.getInt(4) != SEGMENT_VERSION) {
+			logger.error("Invalid segment file=" + file.getPath() + ". Skipping it. name=" + name);
+			return true;
+		}
+
+		long position = (readSegmentId == segmentId) ? readOffset : SEGMENT_HEADER_SIZE;
+
+		if (position < SEGMENT_HEADER_SIZE || position > segment.limit()) {
+			// the journal doesn't match the segment; sending it again may duplicate events, but doesn't lose them
+			logger.error("Invalid journal offset " + position + " for " + file.getName() + " of size " + segment.limit() + ". Sending the segment from the start. name=" + name);
+			position = SEGMENT_HEADER_SIZE;
+		}
+
+		segment.position((int) position);
+
+		List<String>         lines  = sendAsJSON ? new ArrayList<String>(replayBatchSize) : null;
+		List<AuditEventBase> events = sendAsJSON ? null : new ArrayList<AuditEventBase>(replayBatchSize);
+
+		while (true) {
+			String event = readRecord(segment, file);
+
+			if (event != null) {
+				if (sendAsJSON) {
+					lines.add(event);
+				} else {
+					AuditEventBase auditEvent = toAuditEvent(event);
+
+					if (auditEvent != null) {
+						events.add(auditEvent);
+					} else {
+						logger.error("Invalid event in " + file.getName() + " before offset " + segment.position() + ". Skipping it. name=" + name);
+					}
+				}
+			}
+
+			int count = sendAsJSON ? lines.size() : events.size();
+
+			if (count == replayBatchSize || (event == null && count > 0)) {
+				if (!send(lines, events)) {
+					return false;
+				}
+
+				appendToJournal(segmentId, segment.position());
+
+				if (sendAsJSON) {
+					lines.clear();
+				} else {
+					events.clear();
+				}
+
+				if (isDestDown) {
+					isDestDown = false;
+					logger.info("Destination up now. name=" + name + ", consumer=" + consumerProvider.getName());
+				}
+
+				if (isDrain) { // the rest of the segment is sent after a restart, from the position in the journal
+					return false;
+				}
+			}
+
+			if (event == null) {
+				break;
+			}
+		}
+
+		logger.info("Done reading segment. file=" + file.getName() + ", name=" + name + ", consumer=" + consumerProvider.getName());
+
+		return true;
+	}
+
+	/*
+	 * Reads the record at the position of the segment. Returns null at the end of the segment. A record that is
+	 * incomplete or doesn't match its CRC is skipped, along with the bytes up to the next valid record
+	 */
+	private String readRecord(MappedByteBuffer segment, File file) {
+		int position = segment.position();
+
+		if (!segment.hasRemaining()) {
+			return null;
+		}
+
+		int length = readValidRecord(segment, position);
+
+		if (length < 0) {
+			int next = position + 1;
+
+			while (next < segment.limit() && (length = readValidRecord(segment, next)) < 0) {
+				next++;
+			}
+
+			if (length < 0) {
+				logger.warn("Invalid record at offset " + position + " of " + file.getName() + ". Dropped the remaining " + (segment.limit() - position) + " bytes of the segment. name=" + name);
+				segment.position(segment.limit());
+				return null;
+			}
+
+			logger.warn("Invalid record at offset " + position + " of " + file.getName() + ". Dropped " + (next - position) + " bytes, up to the next valid record. name=" + name);
+		}
+
+		return new String(readBuffer, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Reads the record at the given offset into readBuffer, and moves the position of the segment after it. Returns
+	 * the length of the event, or -1 if there is no complete record with a matching CRC at the offset
+	 */
+	private int readValidRecord(MappedByteBuffer segment, int offset) {
+		if (segment.limit() - offset < RECORD_HEADER_SIZE) {
+			return -1;
+		}
+
+		int length = segment.getInt(offset);
+		int crc = segment.getInt(offset + 4);
+
+		if (length < 0 || length > segment.limit() - offset - RECORD_HEADER_SIZE) {
+			return -1;
+		}
+
+		if (readBuffer.length < length) {
+			readBuffer = new byte[Math.max(length, readBuffer.length * 2)];
+		}
+
+		segment.position(offset + RECORD_HEADER_SIZE);
+		segment.get(readBuffer, 0, length);
+
+		readCrc.reset();
+		readCrc.update(readBuffer, 0, length);
+
+		if ((int) readCrc.getValue() != crc) {
+			segment.position(offset);
+			return -1;
+		}
+
+		return length;
+	}
+
+	private AuditEventBase toAuditEvent(String event) {
+		try {
+			return MiscUtil.fromJson(event, AuthzAuditEvent.class);
+		} catch (Throwable t) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Error parsing audit event: " + event, t);
+			}
+			return null;
+		}
+	}
+
+	/*
+	 * Releases the mapping of a segment that is no longer read, instead of waiting for the buffer to be garbage
+	 * collected; until then, the file can't be moved to the archive on some platforms and its disk space is held
+	 */
+	private void unmap(MappedByteBuffer segment, File file) {
+		if (CleanerUtil.UNMAP_SUPPORTED) {
+			try {
+				CleanerUtil.getCleaner().freeBuffer(segment);
+			} catch (Throwable t) {
+				logger.warn("Error unmapping segment file=" + file.getName() + ". name=" + name, t);
+			}
+		} else if (logger.isDebugEnabled()) {
+			logger.debug("Segment file=" + file.getName() + " will be unmapped on garbage collection: " + CleanerUtil.UNMAP_NOT_SUPPORTED_REASON);
+		}
+	}
+
+	private boolean send(List<String> lines, List<AuditEventBase> events) {
+		boolean ret = false;
+		try {
+			ret = sendAsJSON ? consumerProvider.logJSON(lines) : consumerProvider.log(events);
+			if (!ret) {
+				// Need to log error after fixed interval
+				logError("Error sending logs to consumer. name=" + name + ", consumer=" + consumerProvider.getName(), null);
+			}
+		} catch (Throwable t) {
+			logger.error("Error while sending logs to consumer. name=" + name + ", consumer=" + consumerProvider.getName(), t);
+		}
+		return ret;
+	}
+
+	private void appendToJournal(long segmentId, long offset) throws IOException {
+		if (journalChannel.size() + JOURNAL_ENTRY_SIZE > JOURNAL_MAX_SIZE) {
+			compactJournal(segmentId, offset);
+		} else {
+			writeJournalEntry(journalChannel, segmentId, offset);
+
+			if (fsyncIntervalMS <= 0) {
+				journalChannel.force(false);
+			} else {
+				isJournalDirty = true;
+			}
+		}
+
+		readSegmentId = segmentId;
+		readOffset = offset;
+	}
+
+	private void writeJournalEntry(FileChannel channel, long segmentId, long offset) throws IOException {
+		journalEntry.clear();
+		journalEntry.putLong(segmentId).putLong(offset);
+
+		readCrc.reset();
+		readCrc.update(journalEntry.array(), 0, 16);
+
+		journalEntry.putInt((int) readCrc.getValue());
+		journalEntry.flip();
+
+		writeFully(channel, journalEntry);
+	}
+
+	/*
+	 * Replaces the journal with one that has only the given entry
+	 */
+	private void compactJournal(long segmentId, long offset) throws IOException {
+		File tmpFile = new File(logFolder, journalFile.getName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			writeJournalEntry(channel, segmentId, offset);
+			channel.force(true);
+		}
+
+		journalChannel.close();
+
+		Files.move(tmpFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		journalChannel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		isJournalDirty = false;
+	}
+
+	void syncJournal() throws IOException {
+		FileChannel channel = journalChannel;
+
+		if (isJournalDirty && channel != null && channel.isOpen()) {
+			isJournalDirty = false;
+			channel.force(false);
+		}
+	}
+
+	/*
+	 * Finds the position sent from the journal, and the segments left to send
+	 */
+	private void recover() throws IOException {
+		long journalSegmentId = -1;
+		long journalOffset = 0;
+
+		if (journalFile.exists()) {
+			byte[] journal = Files.readAllBytes(journalFile.toPath());
+			ByteBuffer buffer = ByteBuffer.wrap(journal);
+
+			while (buffer.remaining() >= JOURNAL_ENTRY_SIZE) {
+				int entryStart = buffer.position();
+				long segmentId = buffer.getLong();
+				long offset = buffer.getLong();
+				int crc = buffer.getInt();
+
+				readCrc.reset();
+				readCrc.update(journal, entryStart, 16);
+
+				if ((int) readCrc.getValue() != crc) {
+					logger.warn("Invalid journal entry at offset " + entryStart + " of " + journalFile.getName() + ". Ignoring rest of the journal");
+					break;
+				}
+
+				journalSegmentId = segmentId;
+				journalOffset = offset;
+			}
+		}
+
+		List<Long> segmentIds = listSegmentIds(logFolder);
+
+		for (Long segmentId : segmentIds) {
+			if (segmentId < journalSegmentId) {
+				// sent before the process stopped, but not archived
+				archiveSegment(segmentId);
+			} else {
+				sealedSegments.add(segmentId);
+			}
+
+			nextSegmentId = Math.max(nextSegmentId, segmentId + 1);
+		}
+
+		// ids of new segments must be larger than the one in the journal, even when all segments were archived
+		nextSegmentId = Math.max(nextSegmentId, journalSegmentId + 1);
+
+		for (Long segmentId : listSegmentIds(archiveFolder)) {
+			nextSegmentId = Math.max(nextSegmentId, segmentId + 1);
+		}
+
+		readSegmentId = journalSegmentId;
+		readOffset = journalOffset;
+		isPending = !sealedSegments.isEmpty();
+
+		logger.info("Recovered spool. name=" + name + ", segments=" + sealedSegments + ", journalSegmentId=" + journalSegmentId + ", journalOffset=" + journalOffset);
+
+		journalChannel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+		if (journalChannel.size() > JOURNAL_MAX_SIZE || journalChannel.size() % JOURNAL_ENTRY_SIZE != 0) {
+			compactJournal(journalSegmentId, journalOffset);
+		}
+	}
+
+	private List<Long> listSegmentIds(File folder) {
+		final String prefix = "spool_" + fileNamePrefix + "_";
+		List<Long> ret = new ArrayList<Long>();
+		File[] files = folder.listFiles(new FileFilter() {
+			public boolean accept(File pathname) {
+				return pathname.getName().startsWith(prefix) && pathname.getName().endsWith(SEGMENT_FILE_SUFFIX);
+			}
+		});
+
+		if (files != null) {
+			for (File file : files) {
+				String id = file.getName().substring(prefix.length(), file.getName().length() - SEGMENT_FILE_SUFFIX.length());
+
+				try {
+					ret.add(Long.parseLong(id));
+				} catch (NumberFormatException excp) {
+					logger.warn("Ignoring unexpected file " + file + " in spool folder");
+				}
+			}
+		}
+
+		Collections.sort(ret);
+
+		return ret;
+	}
+
+	private void archiveSegment(long segmentId) {
+		File segmentFile = getSegmentFile(logFolder, segmentId);
+		File archiveFile = getSegmentFile(archiveFolder, segmentId);
+
+		try {
+			if (maxArchiveFiles > 0) {
+				Files.move(segmentFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+				List<Long> archivedIds = listSegmentIds(archiveFolder);
+
+				for (int i = 0; i < archivedIds.size() - maxArchiveFiles; i++) {
+					File oldFile = getSegmentFile(archiveFolder, archivedIds.get(i));
+
+					logger.info("Deleting archive file " + oldFile);
+
+					if (!oldFile.delete()) {
+						logger.error("Error deleting archive file. archiveFile=" + oldFile);
+					}
+				}
+			} else if (!segmentFile.delete()) {
+				logger.error("Error deleting segment file. file=" + segmentFile);
+			}
+		} catch (Throwable t) {
+			logger.error("Error moving segment file to archive folder. file=" + segmentFile + ", archiveFile=" + archiveFile, t);
+		}
+	}
+
+	private File getSegmentFile(File folder, long segmentId) {
+		return new File(folder, String.format("spool_%s_%020d%s", fileNamePrefix, segmentId, SEGMENT_FILE_SUFFIX));
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	void logError(String msg, Throwable excp) {
+		long currTimeMS = System.currentTimeMillis();
+		if (currTimeMS - lastErrorLogMS > errorLogIntervalMS) {
+			if (excp != null) {
+				logger.error(msg, excp);
+			} else {
+				logger.error(msg);
+			}
+			lastErrorLogMS = currTimeMS;
+		}
+	}
+}
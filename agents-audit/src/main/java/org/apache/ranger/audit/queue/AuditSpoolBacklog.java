@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.File;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backlog of a file spool for AuditMetricsRegistry: bytes and files not yet
+ * sent to the destination, and the create time of the oldest of them. The
+ * spool updates it as files are added, written and removed, so that metrics
+ * are read without the lock of the spool.
+ */
+public class AuditSpoolBacklog {
+	private static final int LINE_SEPARATOR_LENGTH = System.lineSeparator().length();
+
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicInteger files = new AtomicInteger();
+	private final ConcurrentSkipListMap<Long, Integer> fileCountByCreateTime = new ConcurrentSkipListMap<Long, Integer>();
+
+	public void addFile(Date fileCreateTime, long fileBytes) {
+		files.incrementAndGet();
+		bytes.addAndGet(fileBytes);
+
+		if (fileCreateTime != null) {
+			fileCountByCreateTime.merge(fileCreateTime.getTime(), 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Counts a line written to the file being written. Characters are
+	 * counted, as audit events are mostly ASCII; updateFileBytes() corrects
+	 * the count when the file is closed
+	 *
+	 * @return bytes counted for the line
+	 */
+	public long addLine(String line) {
+		long ret = line.length() + LINE_SEPARATOR_LENGTH;
+
+		bytes.addAndGet(ret);
+
+		return ret;
+	}
+
+	/**
+	 * @param countedBytes bytes counted for the file so far
+	 * @return size of the file, which replaces countedBytes in the backlog
+	 */
+	public long updateFileBytes(long countedBytes, File file) {
+		long ret = file.length();
+
+		bytes.addAndGet(ret - countedBytes);
+
+		return ret;
+	}
+
+	public void removeFile(Date fileCreateTime, long fileBytes) {
+		files.decrementAndGet();
+		bytes.addAndGet(-fileBytes);
+
+		if (fileCreateTime != null) {
+			fileCountByCreateTime.computeIfPresent(fileCreateTime.getTime(), (time, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	public void clear() {
+		files.set(0);
+		bytes.set(0);
+		fileCountByCreateTime.clear();
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map.Entry<Long, Integer> oldest = fileCountByCreateTime.firstEntry();
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+
+		ret.put("spoolBytes", bytes.get());
+		ret.put("spoolFiles", files.get());
+		ret.put("replayLagMS", oldest == null ? 0 : System.currentTimeMillis() - oldest.getKey());
+
+		return ret;
+	}
+}
@@ -33,6 +33,7 @@
 import org.apache.log4j.MDC;
 import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
 import org.apache.ranger.audit.provider.MiscUtil;
 
 /**
@@ -99,6 +100,11 @@ public boolean log(Collection<AuditEventBase> events) {
 		return ret;
 	}
 
+	@Override
+	public int getQueueSize() {
+		return queue.size();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -124,6 +130,7 @@ public void start() {
 	@Override
 	public void stop() {
 		logger.info("Stop called. name=" + getName());
+		AuditMetricsRegistry.getInstance().unregister(this);
 		setDrain(true);
 		try {
 			if (consumerThread != null) {
@@ -65,7 +65,12 @@ public abstract class AbstractRangerAuditWriter implements RangerAuditWriter {
     public int                    fileRolloverSec			       = 24 * 60 * 60; // In seconds
     public boolean                rollOverByDuration               = false;
     public volatile FSDataOutputStream ostream                     = null;   // output stream wrapped in logWriter
+    public PrintWriter            nextLogWriter                    = null;   // opened ahead of the next rollover
+    public FSDataOutputStream     nextOstream                      = null;   // output stream wrapped in nextLogWriter
+    public String                 nextFileName                     = null;
     private boolean               isHFlushCapableStream            = false;
+    private boolean               isNextHFlushCapableStream        = false;
+    private boolean               isRolledOver                     = false;  // logWriter was closed by a rollover
 
     @Override
     public void init(Properties props, String propPrefix, String auditProviderName, Map<String,String> auditConfigs) {
@@ -81,14 +86,17 @@ public void init(Properties props, String propPrefix, String auditProviderName,
     }
 
     public void createFileSystemFolders() throws Exception {
+        createFileSystemFolders(System.currentTimeMillis());
+    }
+
+    public void createFileSystemFolders(long fileTime) throws Exception {
 
         if (logger.isDebugEnabled()) {
-            logger.debug("==> AbstractRangerAuditWriter.createFileSystemFolders()");
+            logger.debug("==> AbstractRangerAuditWriter.createFileSystemFolders(" + fileTime + ")");
         }
         // Create a new file
-        Date   currentTime    = new Date();
-        String fileName       = MiscUtil.replaceTokens(logFileNameFormat,	currentTime.getTime());
-        parentFolder   		  = MiscUtil.replaceTokens(logFolder,	currentTime.getTime());
+        String fileName       = MiscUtil.replaceTokens(logFileNameFormat,	fileTime);
+        parentFolder   		  = MiscUtil.replaceTokens(logFolder,	fileTime);
         fullPath              = parentFolder + Path.SEPARATOR + fileName;
         String defaultPath    = fullPath;
         conf                  = createConfiguration();
@@ -230,6 +238,7 @@ public void closeFileIfNeeded() throws IOException {
             logWriter = null;
             ostream   = null;
             currentFileName = null;
+            isRolledOver    = true;
 
             if (!rollOverByDuration) {
                 try {
@@ -261,6 +270,21 @@ public PrintWriter createWriter() throws Exception {
             logger.debug("==> AbstractRangerAuditWriter.createWriter()");
         }
 
+        // the file opened ahead is for the next period; it is not used when logWriter was closed after a write error
+        if (logWriter == null && isRolledOver && nextLogWriter != null) {
+            // Use the file opened ahead of the rollover
+            logger.info("Using log file opened ahead of rollover. auditPath=" + nextFileName);
+            fullPath              = nextFileName;
+            auditPath             = new Path(nextFileName);
+            currentFileName       = nextFileName;
+            ostream               = nextOstream;
+            logWriter             = nextLogWriter;
+            isHFlushCapableStream = isNextHFlushCapableStream;
+            nextLogWriter         = null;
+            nextOstream           = null;
+            nextFileName          = null;
+        }
+
         if (logWriter == null) {
             // Create the file to write
             logger.info("Creating new log file. auditPath=" + fullPath);
@@ -270,6 +294,8 @@ public PrintWriter createWriter() throws Exception {
             isHFlushCapableStream = ostream.hasCapability(StreamCapabilities.HFLUSH);
         }
 
+        isRolledOver = false;
+
         if (logger.isDebugEnabled()) {
             logger.debug("<== AbstractRangerAuditWriter.createWriter()");
         }
@@ -277,6 +303,71 @@ public PrintWriter createWriter() throws Exception {
         return logWriter;
     }
 
+    /**
+     * Opens the file for the next rollover period, if the rollover is due within the given time, so that the rollover
+     * doesn't have to wait for the file to be created. createWriter() uses this file after closeFileIfNeeded() closes
+     * the current one.
+     *
+     * @return true if the file was opened
+     */
+    synchronized public boolean openNextFileIfNeeded(long aheadMillis) throws Exception {
+        if (logWriter == null || nextLogWriter != null || nextRollOverTime == null
+                || System.currentTimeMillis() + aheadMillis < nextRollOverTime.getTime()) {
+            return false;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("==> AbstractRangerAuditWriter.openNextFileIfNeeded()");
+        }
+
+        // createFileSystemFolders() updates the fields for the current file; restore them after creating the next one
+        String savedFullPath        = fullPath;
+        Path   savedAuditPath       = auditPath;
+        String savedParentFolder    = parentFolder;
+        String savedCurrentFileName = currentFileName;
+
+        try {
+            createFileSystemFolders(nextRollOverTime.getTime());
+
+            logger.info("Creating log file ahead of rollover. auditPath=" + fullPath);
+
+            nextOstream               = fileSystem.create(auditPath);
+            nextLogWriter             = new PrintWriter(nextOstream);
+            nextFileName              = fullPath;
+            isNextHFlushCapableStream = nextOstream.hasCapability(StreamCapabilities.HFLUSH);
+        } finally {
+            fullPath        = savedFullPath;
+            auditPath       = savedAuditPath;
+            parentFolder    = savedParentFolder;
+            currentFileName = savedCurrentFileName;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("<== AbstractRangerAuditWriter.openNextFileIfNeeded(): nextFileName=" + nextFileName);
+        }
+
+        return true;
+    }
+
+    /**
+     * Closes and deletes the file opened by openNextFileIfNeeded(), if it was not used.
+     */
+    synchronized public void closeNextFile() {
+        if (nextLogWriter != null) {
+            try {
+                nextLogWriter.close();
+                fileSystem.delete(new Path(nextFileName), false);
+            } catch (Throwable t) {
+                logger.error("Error on closing unused log file. Exception will be ignored. name="
+                        + auditProviderName + ", fileName=" + nextFileName, t);
+            }
+
+            nextLogWriter = null;
+            nextOstream   = null;
+            nextFileName  = null;
+        }
+    }
+
     public void closeWriter() {
         if (logger.isDebugEnabled()) {
             logger.debug("==> AbstractRangerAuditWriter.closeWriter()");
@@ -106,6 +106,33 @@ public Writer createWriter(Configuration conf, FileSystem fs, String path) throw
         return ret;
     }
 
+    /**
+     * Creates a writer for the given schema, with the buffer size, stripe size and compression of this instance.
+     * ORC row indexes for bloomFilterColumns (comma separated) will include bloom filters with the given fpp.
+     */
+    public Writer createWriter(Configuration conf, FileSystem fs, String path, TypeDescription schema, String bloomFilterColumns, double bloomFilterFpp) throws Exception {
+        if (logger.isDebugEnabled()) {
+            logger.debug("==> ORCFileUtil.createWriter(path=" + path + ", bloomFilterColumns=" + bloomFilterColumns + ")");
+        }
+        Writer ret  = null;
+        WriterOptions writeOptions = OrcFile.writerOptions(conf)
+                .fileSystem(fs)
+                .setSchema(schema)
+                .bufferSize(orcBufferSize)
+                .stripeSize(orcStripeSize)
+                .compress(compressionKind);
+
+        if (bloomFilterColumns != null && !bloomFilterColumns.isEmpty()) {
+            writeOptions.bloomFilterColumns(bloomFilterColumns).bloomFilterFpp(bloomFilterFpp);
+        }
+
+        ret = OrcFile.createWriter(new Path(path), writeOptions);
+        if (logger.isDebugEnabled()) {
+            logger.debug("<== ORCFileUtil.createWriter(path=" + path + ")");
+        }
+        return ret;
+    }
+
     public void close(Writer writer) throws  Exception {
         if (logger.isDebugEnabled()) {
             logger.debug("==> ORCFileUtil.close()");
@@ -404,7 +431,8 @@ protected CompressionKind getORCCompression(String compression) {
             case "lzo":
                 ret = CompressionKind.LZO;
                 break;
-            case "zlip":
+            case "zlib":
+            case "zlip": // misspelling accepted by earlier versions
                 ret = CompressionKind.ZLIB;
                 break;
             case "none":
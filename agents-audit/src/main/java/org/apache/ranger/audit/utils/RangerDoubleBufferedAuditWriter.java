@@ -0,0 +1,377 @@
+package org.apache.ranger.audit.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditSpool;
+
+import java.io.File;
+import java.security.PrivilegedAction;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Writes audits through another RangerAuditWriter from a background thread, so that file creation, rollover and HDFS
+ * calls are made outside the audit consumer thread.
+ *
+ * log() adds the events to the active buffer and returns. The background thread swaps the active buffer with the
+ * second buffer and writes it, while log() continues to fill the active one. With AbstractRangerAuditWriter, the
+ * background thread also opens the file for the next rollover period ahead of time.
+ *
+ * When the active buffer is full, log() waits up to async.max.wait.ms for it to be swapped and then returns false, so
+ * that the caller can spool the events. A failed write is retried after async.retry.interval.ms. After stop() the
+ * write is not retried: the events are stashed in the file spool given to setFileSpool(), to be replayed when the
+ * destination is started again. Without a file spool they are dropped.
+ *
+ * Enabled with filewriter.async=true in the HDFS destination properties.
+ */
+public class RangerDoubleBufferedAuditWriter implements RangerAuditWriter, Runnable {
+    private static final Log logger = LogFactory.getLog(RangerDoubleBufferedAuditWriter.class);
+
+    public static final String PROP_ASYNC_ENABLED        = "filewriter.async";
+    public static final String PROP_BUFFER_SIZE          = "async.buffer.size";
+    public static final String PROP_FLUSH_INTERVAL_MS    = "async.flush.interval.ms";
+    public static final String PROP_MAX_WAIT_MS          = "async.max.wait.ms";
+    public static final String PROP_RETRY_INTERVAL_MS    = "async.retry.interval.ms";
+    public static final String PROP_OPEN_AHEAD_MS        = "async.open.ahead.ms";
+    public static final String PROP_FILE_SPOOL_PREFIX    = "async"; // async.filespool.dir, async.filespool.format, ...
+
+    private final RangerAuditWriter writer;
+    private final Object            lock                 = new Object();
+    private AuditSpool              fileSpool            = null;
+    private List<String>            activeBuffer         = new ArrayList<>();
+    private List<String>            writeBuffer          = new ArrayList<>();
+    private String                  auditProviderName    = null;
+    private Thread                  writerThread         = null;
+    private int                     bufferSize           = 10000;
+    private long                    flushIntervalMs      = 1000;
+    private long                    maxWaitMs            = 1000;
+    private long                    retryIntervalMs      = 5000;
+    private long                    openAheadMs          = 60 * 1000;
+    private long                    lastWriteTime        = System.currentTimeMillis();
+    private long                    writtenCount         = 0;
+    private long                    failedWriteCount     = 0;
+    private boolean                 isFlushRequested     = false;
+    private volatile boolean        isStopped            = false;
+
+    public RangerDoubleBufferedAuditWriter(RangerAuditWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void init(Properties props, String propPrefix, String auditProviderName, Map<String, String> auditConfigs) {
+        logger.info("==> RangerDoubleBufferedAuditWriter.init()");
+
+        this.auditProviderName = auditProviderName;
+
+        writer.init(props, propPrefix, auditProviderName, auditConfigs);
+
+        bufferSize      = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_BUFFER_SIZE, bufferSize);
+        flushIntervalMs = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_FLUSH_INTERVAL_MS, flushIntervalMs);
+        maxWaitMs       = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_MAX_WAIT_MS, maxWaitMs);
+        retryIntervalMs = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_RETRY_INTERVAL_MS, retryIntervalMs);
+        openAheadMs     = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_OPEN_AHEAD_MS, openAheadMs);
+
+        logger.info("writer=" + writer.getClass().getName() + ", bufferSize=" + bufferSize + ", flushIntervalMs=" + flushIntervalMs
+                + ", maxWaitMs=" + maxWaitMs + ", retryIntervalMs=" + retryIntervalMs + ", openAheadMs=" + openAheadMs
+                + ", name=" + auditProviderName);
+
+        // HDFSAuditDestination doesn't call start() on its writer
+        startWriterThread();
+
+        logger.info("<== RangerDoubleBufferedAuditWriter.init()");
+    }
+
+    @Override
+    public boolean log(Collection<String> events) throws Exception {
+        synchronized (lock) {
+            long waitUntil = System.currentTimeMillis() + maxWaitMs;
+
+            while (!isStopped && !activeBuffer.isEmpty() && activeBuffer.size() + events.size() > bufferSize) {
+                long waitMs = waitUntil - System.currentTimeMillis();
+
+                if (waitMs <= 0) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Audit buffer is full. Returning failure for " + events.size() + " events. name=" + auditProviderName);
+                    }
+
+                    return false;
+                }
+
+                lock.notifyAll();
+                lock.wait(waitMs);
+            }
+
+            if (isStopped) {
+                return false;
+            }
+
+            activeBuffer.addAll(events);
+
+            if (activeBuffer.size() >= bufferSize / 2) {
+                lock.notifyAll();
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean logFile(File file) throws Exception {
+        return writer.logFile(file);
+    }
+
+    @Override
+    public void start() {
+        writer.start();
+
+        startWriterThread();
+    }
+
+    /**
+     * Requests the background thread to write the buffered events; doesn't wait for them to be written.
+     */
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            isFlushRequested = true;
+
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the buffered events to be written, and stops the underlying writer.
+     */
+    @Override
+    public void stop() {
+        logger.info("==> RangerDoubleBufferedAuditWriter.stop(): name=" + auditProviderName);
+
+        Thread thread;
+
+        synchronized (lock) {
+            isStopped = true;
+            thread    = writerThread;
+
+            lock.notifyAll();
+        }
+
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException excp) {
+                logger.warn("Interrupted while waiting for audit writer thread to complete. name=" + auditProviderName);
+
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        writer.stop();
+
+        logger.info("<== RangerDoubleBufferedAuditWriter.stop(): name=" + auditProviderName + ", writtenCount=" + getWrittenCount()
+                + ", failedWriteCount=" + getFailedWriteCount());
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            List<String> events;
+
+            try {
+                synchronized (lock) {
+                    while (!isStopped && writeBuffer.isEmpty() && !isReadyToWrite()) {
+                        lock.wait(flushIntervalMs);
+
+                        if (activeBuffer.isEmpty()) { // nothing to write; check whether to open the next file
+                            break;
+                        }
+                    }
+
+                    if (writeBuffer.isEmpty() && (!activeBuffer.isEmpty() || isStopped)) {
+                        List<String> tmp = writeBuffer;
+
+                        writeBuffer      = activeBuffer;
+                        activeBuffer     = tmp;
+                        isFlushRequested = false;
+                        lastWriteTime    = System.currentTimeMillis();
+
+                        lock.notifyAll(); // let log() callers waiting for space continue
+                    }
+
+                    if (isStopped && writeBuffer.isEmpty()) {
+                        break;
+                    }
+
+                    events = writeBuffer;
+                }
+            } catch (InterruptedException excp) {
+                logger.info("Audit writer thread interrupted. name=" + auditProviderName);
+
+                break;
+            }
+
+            if (!events.isEmpty()) {
+                boolean isWritten = write(events);
+
+                synchronized (lock) {
+                    if (isWritten) {
+                        writtenCount += events.size();
+
+                        writeBuffer.clear();
+                    } else {
+                        failedWriteCount++;
+
+                        if (isStopped) {
+                            spool(writeBuffer);
+
+                            writeBuffer.clear();
+                        }
+                    }
+                }
+
+                if (!isWritten && !isStopped) {
+                    try {
+                        Thread.sleep(retryIntervalMs);
+                    } catch (InterruptedException excp) {
+                        logger.info("Audit writer thread interrupted. name=" + auditProviderName);
+
+                        break;
+                    }
+                }
+            }
+
+            openNextFileIfNeeded();
+        }
+
+        logger.info("Audit writer thread exiting. name=" + auditProviderName);
+    }
+
+    public int getBufferedCount() {
+        synchronized (lock) {
+            return activeBuffer.size() + writeBuffer.size();
+        }
+    }
+
+    public long getWrittenCount() {
+        synchronized (lock) {
+            return writtenCount;
+        }
+    }
+
+    public long getFailedWriteCount() {
+        synchronized (lock) {
+            return failedWriteCount;
+        }
+    }
+
+    public RangerAuditWriter getWriter() {
+        return writer;
+    }
+
+    public AuditSpool getFileSpool() {
+        return fileSpool;
+    }
+
+    /**
+     * Sets the file spool for events that couldn't be written after stop() was called. The caller starts and stops it.
+     */
+    public void setFileSpool(AuditSpool fileSpool) {
+        this.fileSpool = fileSpool;
+    }
+
+    private void startWriterThread() {
+        synchronized (lock) {
+            if (writerThread == null && !isStopped) {
+                writerThread = new Thread(this, "RangerDoubleBufferedAuditWriter_" + auditProviderName);
+
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+        }
+    }
+
+    // called with lock held
+    private boolean isReadyToWrite() {
+        return !activeBuffer.isEmpty()
+                && (isFlushRequested || activeBuffer.size() >= bufferSize / 2 || System.currentTimeMillis() - lastWriteTime >= flushIntervalMs);
+    }
+
+    private boolean write(final List<String> events) {
+        boolean ret = false;
+
+        try {
+            ret = writer.log(events);
+
+            if (ret) {
+                MiscUtil.executePrivilegedAction(new PrivilegedAction<Void>() {
+                    @Override
+                    public Void run() {
+                        writer.flush();
+                        return null;
+                    }
+                });
+            } else {
+                logger.warn("Failed to write " + events.size() + " audit events. Will retry after " + retryIntervalMs + "ms. name=" + auditProviderName);
+            }
+        } catch (Throwable t) {
+            logger.error("Error writing " + events.size() + " audit events. Will retry after " + retryIntervalMs + "ms. name=" + auditProviderName, t);
+        }
+
+        return ret;
+    }
+
+    // called with lock held, after stop was requested
+    private void spool(List<String> events) {
+        if (fileSpool != null) {
+            logger.warn("Write failed after stop was requested. Stashing " + events.size() + " audit events in the file spool. name=" + auditProviderName);
+
+            fileSpool.stashLogsString(events);
+
+            if (fileSpool.isSpoolingSuccessful()) {
+                return;
+            }
+        }
+
+        logger.error("Dropping " + events.size() + " audit events, as write failed after stop was requested. name=" + auditProviderName);
+    }
+
+    private void openNextFileIfNeeded() {
+        if (writer instanceof AbstractRangerAuditWriter && !isStopped) {
+            final AbstractRangerAuditWriter fileWriter = (AbstractRangerAuditWriter) writer;
+
+            try {
+                MiscUtil.executePrivilegedAction(new PrivilegedExceptionAction<Boolean>() {
+                    @Override
+                    public Boolean run() throws Exception {
+                        return fileWriter.openNextFileIfNeeded(openAheadMs);
+                    }
+                });
+            } catch (Throwable t) {
+                logger.warn("Error opening log file ahead of rollover. Will be opened at rollover. name=" + auditProviderName, t);
+            }
+        }
+    }
+}
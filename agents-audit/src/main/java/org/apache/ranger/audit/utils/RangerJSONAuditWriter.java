@@ -168,6 +168,7 @@ synchronized public void stop() {
             logWriter = null;
             ostream = null;
         }
+        closeNextFile();
         if (logger.isDebugEnabled()) {
             logger.debug("<== JSONWriter.stop()");
         }
@@ -0,0 +1,301 @@
+package org.apache.ranger.audit.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+
+/**
+ * Predicates and paging for RangerLocalAuditStore.query(). Predicates that are not set (null or empty) match all
+ * events. Matching events are returned in descending order of event time.
+ */
+public class RangerLocalAuditQuery {
+    private Long               startTime;           // inclusive, epoch millis
+    private Long               endTime;             // inclusive, epoch millis
+    private Collection<String> users;
+    private Collection<String> excludeUsers;
+    private String             resourcePath;        // exact match
+    private String             resourceContains;    // substring match
+    private Integer            accessResult;
+    private String             repoName;
+    private String             accessType;
+    private String             eventId;
+    private Long               policyId;
+    private Integer            repoType;
+    private Integer            excludeRepoType;
+    private String             resourceType;
+    private String             action;
+    private String             resultReason;
+    private String             aclEnforcer;
+    private String             agentId;
+    private String             agentHostContains;   // substring match
+    private String             clientIP;
+    private String             sessionId;
+    private String             requestDataContains; // substring match
+    private String             logType;
+    private String             cluster;
+    private Collection<String> zoneNames;
+    private String             tagsContains;        // substring match of the comma-separated tags
+    private int                startIndex = 0;
+    private int                maxRows    = 25;
+    private boolean            sortAscending = false; // by event time; latest event first unless set
+
+    public Long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Long startTime) {
+        this.startTime = startTime;
+    }
+
+    public Long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Long endTime) {
+        this.endTime = endTime;
+    }
+
+    public Collection<String> getUsers() {
+        return users;
+    }
+
+    public void setUsers(Collection<String> users) {
+        this.users = users;
+    }
+
+    public Collection<String> getExcludeUsers() {
+        return excludeUsers;
+    }
+
+    public void setExcludeUsers(Collection<String> excludeUsers) {
+        this.excludeUsers = excludeUsers;
+    }
+
+    public String getResourcePath() {
+        return resourcePath;
+    }
+
+    public void setResourcePath(String resourcePath) {
+        this.resourcePath = resourcePath;
+    }
+
+    public String getResourceContains() {
+        return resourceContains;
+    }
+
+    public void setResourceContains(String resourceContains) {
+        this.resourceContains = resourceContains;
+    }
+
+    public Integer getAccessResult() {
+        return accessResult;
+    }
+
+    public void setAccessResult(Integer accessResult) {
+        this.accessResult = accessResult;
+    }
+
+    public String getRepoName() {
+        return repoName;
+    }
+
+    public void setRepoName(String repoName) {
+        this.repoName = repoName;
+    }
+
+    public String getAccessType() {
+        return accessType;
+    }
+
+    public void setAccessType(String accessType) {
+        this.accessType = accessType;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+
+    public Long getPolicyId() {
+        return policyId;
+    }
+
+    public void setPolicyId(Long policyId) {
+        this.policyId = policyId;
+    }
+
+    public Integer getRepoType() {
+        return repoType;
+    }
+
+    public void setRepoType(Integer repoType) {
+        this.repoType = repoType;
+    }
+
+    public Integer getExcludeRepoType() {
+        return excludeRepoType;
+    }
+
+    public void setExcludeRepoType(Integer excludeRepoType) {
+        this.excludeRepoType = excludeRepoType;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public void setResourceType(String resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public String getResultReason() {
+        return resultReason;
+    }
+
+    public void setResultReason(String resultReason) {
+        this.resultReason = resultReason;
+    }
+
+    public String getAclEnforcer() {
+        return aclEnforcer;
+    }
+
+    public void setAclEnforcer(String aclEnforcer) {
+        this.aclEnforcer = aclEnforcer;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public void setAgentId(String agentId) {
+        this.agentId = agentId;
+    }
+
+    public String getAgentHostContains() {
+        return agentHostContains;
+    }
+
+    public void setAgentHostContains(String agentHostContains) {
+        this.agentHostContains = agentHostContains;
+    }
+
+    public String getClientIP() {
+        return clientIP;
+    }
+
+    public void setClientIP(String clientIP) {
+        this.clientIP = clientIP;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getRequestDataContains() {
+        return requestDataContains;
+    }
+
+    public void setRequestDataContains(String requestDataContains) {
+        this.requestDataContains = requestDataContains;
+    }
+
+    public String getLogType() {
+        return logType;
+    }
+
+    public void setLogType(String logType) {
+        this.logType = logType;
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(String cluster) {
+        this.cluster = cluster;
+    }
+
+    public Collection<String> getZoneNames() {
+        return zoneNames;
+    }
+
+    public void setZoneNames(Collection<String> zoneNames) {
+        this.zoneNames = zoneNames;
+    }
+
+    public String getTagsContains() {
+        return tagsContains;
+    }
+
+    public void setTagsContains(String tagsContains) {
+        this.tagsContains = tagsContains;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    public void setStartIndex(int startIndex) {
+        this.startIndex = startIndex;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    public boolean isSortAscending() {
+        return sortAscending;
+    }
+
+    public void setSortAscending(boolean sortAscending) {
+        this.sortAscending = sortAscending;
+    }
+
+    @Override
+    public String toString() {
+        return "RangerLocalAuditQuery={startTime=" + startTime + ", endTime=" + endTime + ", users=" + users + ", excludeUsers=" + excludeUsers
+                + ", resourcePath=" + resourcePath + ", resourceContains=" + resourceContains + ", accessResult=" + accessResult
+                + ", repoName=" + repoName + ", accessType=" + accessType + ", eventId=" + eventId + ", policyId=" + policyId + ", repoType=" + repoType
+                + ", excludeRepoType=" + excludeRepoType + ", resourceType=" + resourceType + ", action=" + action + ", resultReason=" + resultReason
+                + ", aclEnforcer=" + aclEnforcer + ", agentId=" + agentId + ", agentHostContains=" + agentHostContains + ", clientIP=" + clientIP
+                + ", sessionId=" + sessionId + ", requestDataContains=" + requestDataContains + ", logType=" + logType + ", cluster=" + cluster
+                + ", zoneNames=" + zoneNames + ", tagsContains=" + tagsContains + ", startIndex=" + startIndex + ", maxRows=" + maxRows + ", sortAscending=" + sortAscending + "}";
+    }
+}
@@ -0,0 +1,1020 @@
+package org.apache.ranger.audit.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.sarg.PredicateLeaf;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgumentFactory;
+import org.apache.orc.ColumnStatistics;
+import org.apache.orc.IntegerColumnStatistics;
+import org.apache.orc.OrcConf;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.apache.orc.util.BloomFilter;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores audit events in ORC segments on the local filesystem, and queries them.
+ *
+ * Segments are rolled over every segment.rollover.sec or segment.max.events, and are kept in one directory per day
+ * (yyyyMMdd) for retention.days. A segment is written with a .inprogress suffix and is visible to queries once it is
+ * closed. ORC dictionary-encodes string columns with few distinct values per stripe, like user, access type and
+ * resource, and keeps min/max statistics and, for reqUser and resource, bloom filters in the row indexes. Segments are
+ * compressed with zlib by default; the snappy codec of ORC needs access to java.nio internals, which JDK 9 and later
+ * deny unless java.nio is opened to it.
+ *
+ * Each closed segment also carries bloom filters of all its users and resources in the ORC footer. query() uses these
+ * and the evtTime statistics to skip whole segments, after which ORC uses the same predicates to skip row groups.
+ */
+public class RangerLocalAuditStore {
+    private static final Log logger = LogFactory.getLog(RangerLocalAuditStore.class);
+
+    public static final String PROP_SEGMENT_ROLLOVER_SEC = "segment.rollover.sec";
+    public static final String PROP_SEGMENT_MAX_EVENTS   = "segment.max.events";
+    public static final String PROP_RETENTION_DAYS       = "retention.days";
+    public static final String PROP_COMPRESSION          = "compression";
+    public static final String PROP_BUFFER_SIZE          = "buffersize";
+    public static final String PROP_STRIPE_SIZE          = "stripesize";
+    public static final String PROP_BLOOM_FILTER_FPP     = "bloomfilter.fpp";
+    public static final String PROP_DICTIONARY_THRESHOLD = "dictionary.key.threshold";
+
+    static final String SEGMENT_FILE_PREFIX = "audit_";
+    static final String SEGMENT_FILE_SUFFIX = ".orc";
+    static final String INPROGRESS_SUFFIX   = ".inprogress";
+
+    private static final String META_USER_BLOOM      = "ranger.audit.user.bloom";
+    private static final String META_RESOURCE_BLOOM  = "ranger.audit.resource.bloom";
+    private static final String BLOOM_FILTER_COLUMNS = "reqUser,resource";
+    private static final int    MAX_BLOOM_ENTRIES    = 100000;
+    private static final String PARTITION_FORMAT     = "yyyyMMdd";
+    private static final String SEGMENT_TIME_FORMAT  = "yyyyMMdd-HHmmss";
+
+    private static final String[] COLUMN_NAMES = { "id", "evtTime", "repoType", "repo", "reqUser", "access", "action", "resource", "resType",
+                                                   "result", "policy", "policyVersion", "reason", "enforcer", "agent", "agentHost", "cliType",
+                                                   "cliIP", "sess", "reqData", "logType", "cluster", "zoneName", "tags", "seqNum", "eventCount",
+                                                   "eventDurMs", "additionalInfo", "reqEntityGuid" };
+    private static final String[] COLUMN_TYPES = { "string", "bigint", "int", "string", "string", "string", "string", "string", "string",
+                                                   "int", "bigint", "bigint", "string", "string", "string", "string", "string",
+                                                   "string", "string", "string", "string", "string", "string", "string", "bigint", "bigint",
+                                                   "bigint", "string", "string" };
+
+    private static final int COL_ID              = 0;
+    private static final int COL_EVT_TIME        = 1;
+    private static final int COL_REPO_TYPE       = 2;
+    private static final int COL_REPO            = 3;
+    private static final int COL_USER            = 4;
+    private static final int COL_ACCESS          = 5;
+    private static final int COL_ACTION          = 6;
+    private static final int COL_RESOURCE        = 7;
+    private static final int COL_RES_TYPE        = 8;
+    private static final int COL_RESULT          = 9;
+    private static final int COL_POLICY          = 10;
+    private static final int COL_POLICY_VERSION  = 11;
+    private static final int COL_REASON          = 12;
+    private static final int COL_ENFORCER        = 13;
+    private static final int COL_AGENT           = 14;
+    private static final int COL_AGENT_HOST      = 15;
+    private static final int COL_CLI_TYPE        = 16;
+    private static final int COL_CLI_IP          = 17;
+    private static final int COL_SESS            = 18;
+    private static final int COL_REQ_DATA        = 19;
+    private static final int COL_LOG_TYPE        = 20;
+    private static final int COL_CLUSTER         = 21;
+    private static final int COL_ZONE            = 22;
+    private static final int COL_TAGS            = 23;
+    private static final int COL_SEQ_NUM         = 24;
+    private static final int COL_EVENT_COUNT     = 25;
+    private static final int COL_EVENT_DUR       = 26;
+    private static final int COL_ADDITIONAL_INFO = 27;
+    private static final int COL_ENTITY_GUID     = 28;
+
+    private static final Comparator<AuthzAuditEvent> EVENT_TIME_ASC = new Comparator<AuthzAuditEvent>() {
+        @Override
+        public int compare(AuthzAuditEvent e1, AuthzAuditEvent e2) {
+            return Long.compare(e1.getEventTime().getTime(), e2.getEventTime().getTime());
+        }
+    };
+
+    private final File                     baseDir;
+    private final Configuration            conf;
+    private final FileSystem               fs;
+    private final TypeDescription          schema           = TypeDescription.fromString(getSchema());
+    private final ORCFileUtil              orcFileUtil      = new ORCFileUtil();
+    private final Map<String, SegmentInfo> segmentInfoCache = new ConcurrentHashMap<>();
+
+    private long   segmentRolloverMs = TimeUnit.MINUTES.toMillis(10);
+    private long   segmentMaxEvents  = 1000000;
+    private int    retentionDays     = 30;
+    private double bloomFilterFpp    = 0.01;
+
+    // segment being written
+    private Writer             writer            = null;
+    private VectorizedRowBatch batch             = null;
+    private File               segmentFile       = null;
+    private File               inProgressFile    = null;
+    private long               segmentStartTime  = 0;
+    private long               segmentEventCount = 0;
+    private Set<String>        segmentUsers      = null;
+    private Set<String>        segmentResources  = null;
+
+    public RangerLocalAuditStore(String dir) throws IOException {
+        this.baseDir = new File(dir);
+        this.conf    = new Configuration();
+        this.fs      = FileSystem.getLocal(conf).getRawFileSystem(); // no .crc files
+    }
+
+    /**
+     * Initializes the store for writing; not needed to query.
+     */
+    public void init(Properties props, String propPrefix) throws Exception {
+        logger.info("==> RangerLocalAuditStore.init(dir=" + baseDir + ")");
+
+        int    rolloverSec         = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_SEGMENT_ROLLOVER_SEC, (int) TimeUnit.MILLISECONDS.toSeconds(segmentRolloverMs));
+        int    bufferSize          = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_BUFFER_SIZE, 256 * 1024);
+        long   stripeSize          = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_STRIPE_SIZE, 16 * 1024 * 1024L);
+        String compression         = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_COMPRESSION, "zlib");
+        String dictionaryThreshold = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_DICTIONARY_THRESHOLD);
+        String bloomFilterFppStr   = MiscUtil.getStringProperty(props, propPrefix + "." + PROP_BLOOM_FILTER_FPP);
+
+        segmentRolloverMs = TimeUnit.SECONDS.toMillis(rolloverSec);
+        segmentMaxEvents  = MiscUtil.getLongProperty(props, propPrefix + "." + PROP_SEGMENT_MAX_EVENTS, segmentMaxEvents);
+        retentionDays     = MiscUtil.getIntProperty(props, propPrefix + "." + PROP_RETENTION_DAYS, retentionDays);
+
+        if (StringUtils.isNotBlank(bloomFilterFppStr)) {
+            bloomFilterFpp = Double.parseDouble(bloomFilterFppStr.trim());
+        }
+
+        if (StringUtils.isNotBlank(dictionaryThreshold)) {
+            OrcConf.DICTIONARY_KEY_SIZE_THRESHOLD.setDouble(conf, Double.parseDouble(dictionaryThreshold.trim()));
+        }
+
+        orcFileUtil.init(bufferSize, stripeSize, compression);
+
+        if (!baseDir.isDirectory() && !baseDir.mkdirs()) {
+            throw new IOException("Failed to create audit store directory " + baseDir);
+        }
+
+        logger.info("<== RangerLocalAuditStore.init(dir=" + baseDir + "): segmentRolloverMs=" + segmentRolloverMs + ", segmentMaxEvents=" + segmentMaxEvents
+                + ", retentionDays=" + retentionDays + ", compression=" + compression + ", bloomFilterFpp=" + bloomFilterFpp);
+    }
+
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    public synchronized void write(Collection<AuthzAuditEvent> events) throws Exception {
+        long now = System.currentTimeMillis();
+
+        try {
+            for (AuthzAuditEvent event : events) {
+                if (writer == null || isRolloverNeeded(now)) {
+                    closeSegment();
+                    openSegment(now);
+                }
+
+                addRow(event);
+
+                if (batch.size == batch.getMaxSize()) {
+                    writer.addRowBatch(batch);
+                    batch.reset();
+                }
+            }
+
+            if (batch != null && batch.size > 0) {
+                writer.addRowBatch(batch);
+                batch.reset();
+            }
+        } catch (Exception excp) {
+            logger.error("Error writing " + events.size() + " audit events to " + inProgressFile, excp);
+
+            discardBatch();
+
+            throw excp;
+        }
+    }
+
+    /**
+     * Closes the current segment if it is due for rollover, so that it becomes visible to queries even when no more
+     * events are written.
+     */
+    public synchronized void rolloverIfNeeded() throws Exception {
+        if (writer != null && isRolloverNeeded(System.currentTimeMillis())) {
+            closeSegment();
+        }
+    }
+
+    public synchronized void close() throws Exception {
+        closeSegment();
+    }
+
+    public QueryResult query(RangerLocalAuditQuery query) throws IOException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("==> RangerLocalAuditStore.query(" + query + ")");
+        }
+
+        QueryResult                    ret        = new QueryResult();
+        int                            startIndex = Math.max(0, query.getStartIndex());
+        int                            limit      = startIndex + Math.max(0, query.getMaxRows());
+        boolean                        ascending  = query.isSortAscending();
+        // the head of top is the event to drop first: the oldest when the latest events are returned first
+        PriorityQueue<AuthzAuditEvent> top        = new PriorityQueue<>(Math.max(1, limit), ascending ? Collections.reverseOrder(EVENT_TIME_ASC) : EVENT_TIME_ASC);
+        QueryMatcher                   matcher    = new QueryMatcher(query);
+        SearchArgument                 sarg       = createSearchArgument(query);
+
+        for (SegmentInfo segment : getSegments()) {
+            if (!segment.mayMatch(query)) {
+                ret.prunedSegmentCount++;
+
+                continue;
+            }
+
+            ret.scannedSegmentCount++;
+            ret.totalCount += scanSegment(segment, matcher, sarg, top, limit, ascending);
+        }
+
+        List<AuthzAuditEvent> events = new ArrayList<>(top);
+
+        Collections.sort(events, ascending ? EVENT_TIME_ASC : Collections.reverseOrder(EVENT_TIME_ASC));
+
+        ret.events = startIndex < events.size() ? new ArrayList<>(events.subList(startIndex, events.size())) : new ArrayList<AuthzAuditEvent>();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("<== RangerLocalAuditStore.query(" + query + "): " + ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return closed segments, in descending order of their latest event time
+     */
+    List<SegmentInfo> getSegments() throws IOException {
+        List<SegmentInfo> ret          = new ArrayList<>();
+        Set<String>       segmentPaths = new HashSet<>();
+        File[]            partitions   = baseDir.listFiles();
+
+        if (partitions != null) {
+            for (File partition : partitions) {
+                File[] files = partition.isDirectory() ? partition.listFiles() : null;
+
+                if (files == null) {
+                    continue;
+                }
+
+                for (File file : files) {
+                    if (!file.getName().startsWith(SEGMENT_FILE_PREFIX) || !file.getName().endsWith(SEGMENT_FILE_SUFFIX)) {
+                        continue;
+                    }
+
+                    String      path    = file.getPath();
+                    SegmentInfo segment = segmentInfoCache.get(path);
+
+                    if (segment == null) {
+                        try {
+                            segment = loadSegmentInfo(path);
+                        } catch (IOException excp) {
+                            logger.warn("Failed to read audit segment " + path + ". Will be ignored", excp);
+
+                            continue;
+                        }
+
+                        segmentInfoCache.put(path, segment);
+                    }
+
+                    segmentPaths.add(path);
+                    ret.add(segment);
+                }
+            }
+        }
+
+        segmentInfoCache.keySet().retainAll(segmentPaths);
+
+        Collections.sort(ret, new Comparator<SegmentInfo>() {
+            @Override
+            public int compare(SegmentInfo s1, SegmentInfo s2) {
+                return Long.compare(s2.maxTime, s1.maxTime);
+            }
+        });
+
+        return ret;
+    }
+
+    private boolean isRolloverNeeded(long now) {
+        return now - segmentStartTime >= segmentRolloverMs || segmentEventCount >= segmentMaxEvents;
+    }
+
+    private void openSegment(long now) throws Exception {
+        deleteExpiredPartitions(now);
+
+        File partitionDir = new File(baseDir, new SimpleDateFormat(PARTITION_FORMAT).format(new Date(now)));
+
+        if (!partitionDir.isDirectory() && !partitionDir.mkdirs()) {
+            throw new IOException("Failed to create audit store directory " + partitionDir);
+        }
+
+        String fileName = SEGMENT_FILE_PREFIX + new SimpleDateFormat(SEGMENT_TIME_FORMAT).format(new Date(now)) + "_" + MiscUtil.generateUniqueId() + SEGMENT_FILE_SUFFIX;
+
+        segmentFile       = new File(partitionDir, fileName);
+        inProgressFile    = new File(partitionDir, fileName + INPROGRESS_SUFFIX);
+        writer            = orcFileUtil.createWriter(conf, fs, inProgressFile.getPath(), schema, BLOOM_FILTER_COLUMNS, bloomFilterFpp);
+        batch             = schema.createRowBatch();
+        segmentStartTime  = now;
+        segmentEventCount = 0;
+        segmentUsers      = new HashSet<>();
+        segmentResources  = new HashSet<>();
+
+        logger.info("Opened audit segment " + inProgressFile);
+    }
+
+    private void closeSegment() throws Exception {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            if (batch.size > 0) {
+                writer.addRowBatch(batch);
+                batch.reset();
+            }
+
+            if (segmentUsers != null) {
+                writer.addUserMetadata(META_USER_BLOOM, toByteBuffer(segmentUsers));
+            }
+
+            if (segmentResources != null) {
+                writer.addUserMetadata(META_RESOURCE_BLOOM, toByteBuffer(segmentResources));
+            }
+
+            orcFileUtil.close(writer);
+
+            if (!inProgressFile.renameTo(segmentFile)) {
+                throw new IOException("Failed to rename " + inProgressFile + " to " + segmentFile);
+            }
+
+            logger.info("Closed audit segment " + segmentFile + ": events=" + segmentEventCount);
+        } finally {
+            writer           = null;
+            batch            = null;
+            segmentUsers     = null;
+            segmentResources = null;
+        }
+    }
+
+    /**
+     * Drops the events of the failed write that are not yet handed to the writer, and closes the segment with the
+     * events written earlier; the next write opens a new segment. Events of the failed write handed to the writer
+     * earlier - a full row batch, or a segment rolled over during the write - stay in the store.
+     */
+    private void discardBatch() {
+        if (writer != null) {
+            segmentEventCount -= batch.size;
+
+            batch.reset();
+
+            try {
+                closeSegment();
+            } catch (Throwable t) {
+                logger.warn("Error closing audit segment " + inProgressFile + ". Exception will be ignored", t);
+            }
+        }
+    }
+
+    private void deleteExpiredPartitions(long now) {
+        if (retentionDays <= 0) {
+            return;
+        }
+
+        File[] partitions = baseDir.listFiles();
+
+        if (partitions == null) {
+            return;
+        }
+
+        long             expiryTime = now - TimeUnit.DAYS.toMillis(retentionDays);
+        SimpleDateFormat format     = new SimpleDateFormat(PARTITION_FORMAT);
+
+        format.setLenient(false);
+
+        for (File partition : partitions) {
+            Date partitionDate;
+
+            try {
+                partitionDate = partition.isDirectory() && partition.getName().length() == PARTITION_FORMAT.length() ? format.parse(partition.getName()) : null;
+            } catch (ParseException excp) {
+                partitionDate = null;
+            }
+
+            // the partition holds segments opened until the end of the day
+            if (partitionDate != null && partitionDate.getTime() + TimeUnit.DAYS.toMillis(1) < expiryTime) {
+                logger.info("Deleting expired audit partition " + partition);
+
+                File[] files = partition.listFiles();
+
+                if (files != null) {
+                    for (File file : files) {
+                        if (!file.delete()) {
+                            logger.warn("Failed to delete " + file);
+                        }
+                    }
+                }
+
+                if (!partition.delete()) {
+                    logger.warn("Failed to delete " + partition);
+                }
+            }
+        }
+    }
+
+    private void addRow(AuthzAuditEvent event) {
+        int    row  = batch.size;
+        Date   time = event.getEventTime();
+        String user = event.getUser();
+        String res  = event.getResourcePath();
+
+        setString(COL_ID, row, event.getEventId());
+        setLong(COL_EVT_TIME, row, time != null ? time.getTime() : 0L);
+        setLong(COL_REPO_TYPE, row, (long) event.getRepositoryType());
+        setString(COL_REPO, row, event.getRepositoryName());
+        setString(COL_USER, row, user);
+        setString(COL_ACCESS, row, event.getAccessType());
+        setString(COL_ACTION, row, event.getAction());
+        setString(COL_RESOURCE, row, res);
+        setString(COL_RES_TYPE, row, event.getResourceType());
+        setLong(COL_RESULT, row, (long) event.getAccessResult());
+        setLong(COL_POLICY, row, event.getPolicyId());
+        setLong(COL_POLICY_VERSION, row, event.getPolicyVersion());
+        setString(COL_REASON, row, event.getResultReason());
+        setString(COL_ENFORCER, row, event.getAclEnforcer());
+        setString(COL_AGENT, row, event.getAgentId());
+        setString(COL_AGENT_HOST, row, event.getAgentHostname());
+        setString(COL_CLI_TYPE, row, event.getClientType());
+        setString(COL_CLI_IP, row, event.getClientIP());
+        setString(COL_SESS, row, event.getSessionId());
+        setString(COL_REQ_DATA, row, event.getRequestData());
+        setString(COL_LOG_TYPE, row, event.getLogType());
+        setString(COL_CLUSTER, row, event.getClusterName());
+        setString(COL_ZONE, row, event.getZoneName());
+        setString(COL_TAGS, row, event.getTags() == null || event.getTags().isEmpty() ? null : StringUtils.join(event.getTags(), ","));
+        setLong(COL_SEQ_NUM, row, event.getSeqNum());
+        setLong(COL_EVENT_COUNT, row, event.getEventCount());
+        setLong(COL_EVENT_DUR, row, event.getEventDurationMS());
+        setString(COL_ADDITIONAL_INFO, row, event.getAdditionalInfo());
+        setString(COL_ENTITY_GUID, row, event.getEntityGuid());
+
+        batch.size++;
+        segmentEventCount++;
+
+        // segment-level bloom filters are skipped for segments with too many distinct values
+        if (segmentUsers != null && user != null && segmentUsers.add(user) && segmentUsers.size() > MAX_BLOOM_ENTRIES) {
+            segmentUsers = null;
+        }
+
+        if (segmentResources != null && res != null && segmentResources.add(res) && segmentResources.size() > MAX_BLOOM_ENTRIES) {
+            segmentResources = null;
+        }
+    }
+
+    private void setString(int col, int row, String value) {
+        BytesColumnVector vector = (BytesColumnVector) batch.cols[col];
+
+        if (value == null) {
+            vector.noNulls     = false;
+            vector.isNull[row] = true;
+        } else {
+            vector.setVal(row, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void setLong(int col, int row, Long value) {
+        LongColumnVector vector = (LongColumnVector) batch.cols[col];
+
+        if (value == null) {
+            vector.noNulls     = false;
+            vector.isNull[row] = true;
+        } else {
+            vector.vector[row] = value;
+        }
+    }
+
+    private long scanSegment(SegmentInfo segment, QueryMatcher matcher, SearchArgument sarg, PriorityQueue<AuthzAuditEvent> top, int limit, boolean ascending) throws IOException {
+        long           ret     = 0;
+        Reader         reader  = OrcFile.createReader(new Path(segment.path), OrcFile.readerOptions(conf).filesystem(fs));
+        Reader.Options options = reader.options();
+
+        if (sarg != null) {
+            options.searchArgument(sarg, COLUMN_NAMES);
+        }
+
+        try (RecordReader rows = reader.rows(options)) {
+            VectorizedRowBatch rowBatch = reader.getSchema().createRowBatch();
+
+            while (rows.nextBatch(rowBatch)) {
+                for (int row = 0; row < rowBatch.size; row++) {
+                    if (!matcher.matches(rowBatch, row)) {
+                        continue;
+                    }
+
+                    ret++;
+
+                    if (limit > 0) {
+                        long eventTime = getLong(rowBatch, COL_EVT_TIME, row);
+
+                        if (top.size() < limit) {
+                            top.add(toEvent(rowBatch, row));
+                        } else if (ascending ? eventTime < top.peek().getEventTime().getTime() : eventTime > top.peek().getEventTime().getTime()) {
+                            top.poll();
+                            top.add(toEvent(rowBatch, row));
+                        }
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private SegmentInfo loadSegmentInfo(String path) throws IOException {
+        Reader             reader = OrcFile.createReader(new Path(path), OrcFile.readerOptions(conf).filesystem(fs));
+        ColumnStatistics[] stats  = reader.getStatistics();
+        SegmentInfo        ret    = new SegmentInfo(path);
+
+        ret.eventCount = reader.getNumberOfRows();
+
+        // column 0 is the root struct
+        if (stats.length > COL_EVT_TIME + 1 && stats[COL_EVT_TIME + 1] instanceof IntegerColumnStatistics && stats[COL_EVT_TIME + 1].getNumberOfValues() > 0) {
+            IntegerColumnStatistics timeStats = (IntegerColumnStatistics) stats[COL_EVT_TIME + 1];
+
+            ret.minTime = timeStats.getMinimum();
+            ret.maxTime = timeStats.getMaximum();
+        }
+
+        if (reader.hasMetadataValue(META_USER_BLOOM)) {
+            ret.userBloomFilter = toBloomFilter(reader.getMetadataValue(META_USER_BLOOM));
+        }
+
+        if (reader.hasMetadataValue(META_RESOURCE_BLOOM)) {
+            ret.resourceBloomFilter = toBloomFilter(reader.getMetadataValue(META_RESOURCE_BLOOM));
+        }
+
+        return ret;
+    }
+
+    private ByteBuffer toByteBuffer(Collection<String> values) {
+        BloomFilter bloomFilter = new BloomFilter(Math.max(1, values.size()), bloomFilterFpp);
+
+        for (String value : values) {
+            bloomFilter.addString(value);
+        }
+
+        long[]     bits = bloomFilter.getBitSet();
+        ByteBuffer ret  = ByteBuffer.allocate(4 + 8 * bits.length);
+
+        ret.putInt(bloomFilter.getNumHashFunctions());
+
+        for (long bit : bits) {
+            ret.putLong(bit);
+        }
+
+        ret.flip();
+
+        return ret;
+    }
+
+    private static BloomFilter toBloomFilter(ByteBuffer buffer) {
+        ByteBuffer buf      = buffer.duplicate();
+        int        numFuncs = buf.getInt();
+        long[]     bits     = new long[buf.remaining() / 8];
+
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buf.getLong();
+        }
+
+        return new BloomFilter(bits, numFuncs);
+    }
+
+    private static SearchArgument createSearchArgument(RangerLocalAuditQuery query) {
+        SearchArgument.Builder builder   = SearchArgumentFactory.newBuilder().startAnd();
+        int                    numLeaves = 0;
+
+        if (query.getStartTime() != null) {
+            builder.startNot().lessThan(COLUMN_NAMES[COL_EVT_TIME], PredicateLeaf.Type.LONG, query.getStartTime()).end();
+            numLeaves++;
+        }
+
+        if (query.getEndTime() != null) {
+            builder.lessThanEquals(COLUMN_NAMES[COL_EVT_TIME], PredicateLeaf.Type.LONG, query.getEndTime());
+            numLeaves++;
+        }
+
+        if (query.getUsers() != null && !query.getUsers().isEmpty()) {
+            builder.in(COLUMN_NAMES[COL_USER], PredicateLeaf.Type.STRING, query.getUsers().toArray());
+            numLeaves++;
+        }
+
+        if (query.getResourcePath() != null) {
+            builder.equals(COLUMN_NAMES[COL_RESOURCE], PredicateLeaf.Type.STRING, query.getResourcePath());
+            numLeaves++;
+        }
+
+        if (query.getAccessResult() != null) {
+            builder.equals(COLUMN_NAMES[COL_RESULT], PredicateLeaf.Type.LONG, query.getAccessResult().longValue());
+            numLeaves++;
+        }
+
+        if (query.getRepoName() != null) {
+            builder.equals(COLUMN_NAMES[COL_REPO], PredicateLeaf.Type.STRING, query.getRepoName());
+            numLeaves++;
+        }
+
+        if (query.getAccessType() != null) {
+            builder.equals(COLUMN_NAMES[COL_ACCESS], PredicateLeaf.Type.STRING, query.getAccessType());
+            numLeaves++;
+        }
+
+        if (query.getPolicyId() != null) {
+            builder.equals(COLUMN_NAMES[COL_POLICY], PredicateLeaf.Type.LONG, query.getPolicyId());
+            numLeaves++;
+        }
+
+        if (query.getRepoType() != null) {
+            builder.equals(COLUMN_NAMES[COL_REPO_TYPE], PredicateLeaf.Type.LONG, query.getRepoType().longValue());
+            numLeaves++;
+        }
+
+        if (query.getCluster() != null) {
+            builder.equals(COLUMN_NAMES[COL_CLUSTER], PredicateLeaf.Type.STRING, query.getCluster());
+            numLeaves++;
+        }
+
+        if (query.getZoneNames() != null && !query.getZoneNames().isEmpty()) {
+            builder.in(COLUMN_NAMES[COL_ZONE], PredicateLeaf.Type.STRING, query.getZoneNames().toArray());
+            numLeaves++;
+        }
+
+        return numLeaves > 0 ? builder.end().build() : null;
+    }
+
+    private static AuthzAuditEvent toEvent(VectorizedRowBatch rowBatch, int row) {
+        AuthzAuditEvent ret  = new AuthzAuditEvent();
+        String          tags = getString(rowBatch, COL_TAGS, row);
+
+        ret.setEventId(getString(rowBatch, COL_ID, row));
+        ret.setEventTime(new Date(getLong(rowBatch, COL_EVT_TIME, row)));
+        ret.setRepositoryType((int) getLong(rowBatch, COL_REPO_TYPE, row));
+        ret.setRepositoryName(getString(rowBatch, COL_REPO, row));
+        ret.setUser(getString(rowBatch, COL_USER, row));
+        ret.setAccessType(getString(rowBatch, COL_ACCESS, row));
+        ret.setAction(getString(rowBatch, COL_ACTION, row));
+        ret.setResourcePath(getString(rowBatch, COL_RESOURCE, row));
+        ret.setResourceType(getString(rowBatch, COL_RES_TYPE, row));
+        ret.setAccessResult((short) getLong(rowBatch, COL_RESULT, row));
+        ret.setPolicyId(getLong(rowBatch, COL_POLICY, row));
+        ret.setPolicyVersion(isNull(rowBatch, COL_POLICY_VERSION, row) ? null : getLong(rowBatch, COL_POLICY_VERSION, row));
+        ret.setResultReason(getString(rowBatch, COL_REASON, row));
+        ret.setAclEnforcer(getString(rowBatch, COL_ENFORCER, row));
+        ret.setAgentId(getString(rowBatch, COL_AGENT, row));
+        ret.setAgentHostname(getString(rowBatch, COL_AGENT_HOST, row));
+        ret.setClientType(getString(rowBatch, COL_CLI_TYPE, row));
+        ret.setClientIP(getString(rowBatch, COL_CLI_IP, row));
+        ret.setSessionId(getString(rowBatch, COL_SESS, row));
+        ret.setRequestData(getString(rowBatch, COL_REQ_DATA, row));
+        ret.setLogType(getString(rowBatch, COL_LOG_TYPE, row));
+        ret.setClusterName(getString(rowBatch, COL_CLUSTER, row));
+        ret.setZoneName(getString(rowBatch, COL_ZONE, row));
+        ret.setTags(tags == null ? new HashSet<String>() : new HashSet<>(Arrays.asList(tags.split(","))));
+        ret.setSeqNum(getLong(rowBatch, COL_SEQ_NUM, row));
+        ret.setEventCount(getLong(rowBatch, COL_EVENT_COUNT, row));
+        ret.setEventDurationMS(getLong(rowBatch, COL_EVENT_DUR, row));
+        ret.setAdditionalInfo(getString(rowBatch, COL_ADDITIONAL_INFO, row));
+        ret.setEntityGuid(getString(rowBatch, COL_ENTITY_GUID, row));
+
+        return ret;
+    }
+
+    private static boolean isNull(VectorizedRowBatch rowBatch, int col, int row) {
+        ColumnVector vector = rowBatch.cols[col];
+        int          idx    = vector.isRepeating ? 0 : row;
+
+        return !vector.noNulls && vector.isNull[idx];
+    }
+
+    private static long getLong(VectorizedRowBatch rowBatch, int col, int row) {
+        LongColumnVector vector = (LongColumnVector) rowBatch.cols[col];
+        int              idx    = vector.isRepeating ? 0 : row;
+
+        return !vector.noNulls && vector.isNull[idx] ? 0 : vector.vector[idx];
+    }
+
+    private static String getString(VectorizedRowBatch rowBatch, int col, int row) {
+        BytesColumnVector vector = (BytesColumnVector) rowBatch.cols[col];
+        int               idx    = vector.isRepeating ? 0 : row;
+
+        return !vector.noNulls && vector.isNull[idx] ? null : new String(vector.vector[idx], vector.start[idx], vector.length[idx], StandardCharsets.UTF_8);
+    }
+
+    private static String getSchema() {
+        StringBuilder sb = new StringBuilder("struct<");
+
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            sb.append(COLUMN_NAMES[i]).append(':').append(COLUMN_TYPES[i]);
+        }
+
+        return sb.append('>').toString();
+    }
+
+    // row-level predicates; compares string columns without decoding them
+    private static class QueryMatcher {
+        private final long           startTime;
+        private final long           endTime;
+        private final Integer        accessResult;
+        private final Long           policyId;
+        private final Integer        repoType;
+        private final Integer        excludeRepoType;
+        private final byte[][]       excludeUsers;
+        private final ColumnFilter[] filters;
+
+        QueryMatcher(RangerLocalAuditQuery query) {
+            startTime       = query.getStartTime() != null ? query.getStartTime() : Long.MIN_VALUE;
+            endTime         = query.getEndTime() != null ? query.getEndTime() : Long.MAX_VALUE;
+            accessResult    = query.getAccessResult();
+            policyId        = query.getPolicyId();
+            repoType        = query.getRepoType();
+            excludeRepoType = query.getExcludeRepoType();
+            excludeUsers    = toBytes(query.getExcludeUsers());
+
+            List<ColumnFilter> filters = new ArrayList<>();
+
+            // exact matches first, as these are cheaper than substring matches
+            addFilter(filters, COL_USER, toBytes(query.getUsers()));
+            addFilter(filters, COL_RESOURCE, toBytes(query.getResourcePath()));
+            addFilter(filters, COL_REPO, toBytes(query.getRepoName()));
+            addFilter(filters, COL_ACCESS, toBytes(query.getAccessType()));
+            addFilter(filters, COL_ID, toBytes(query.getEventId()));
+            addFilter(filters, COL_RES_TYPE, toBytes(query.getResourceType()));
+            addFilter(filters, COL_ACTION, toBytes(query.getAction()));
+            addFilter(filters, COL_REASON, toBytes(query.getResultReason()));
+            addFilter(filters, COL_ENFORCER, toBytes(query.getAclEnforcer()));
+            addFilter(filters, COL_AGENT, toBytes(query.getAgentId()));
+            addFilter(filters, COL_CLI_IP, toBytes(query.getClientIP()));
+            addFilter(filters, COL_SESS, toBytes(query.getSessionId()));
+            addFilter(filters, COL_LOG_TYPE, toBytes(query.getLogType()));
+            addFilter(filters, COL_CLUSTER, toBytes(query.getCluster()));
+            addFilter(filters, COL_ZONE, toBytes(query.getZoneNames()));
+            addSubstringFilter(filters, COL_RESOURCE, query.getResourceContains());
+            addSubstringFilter(filters, COL_AGENT_HOST, query.getAgentHostContains());
+            addSubstringFilter(filters, COL_REQ_DATA, query.getRequestDataContains());
+            addSubstringFilter(filters, COL_TAGS, query.getTagsContains());
+
+            this.filters = filters.toArray(new ColumnFilter[filters.size()]);
+        }
+
+        boolean matches(VectorizedRowBatch rowBatch, int row) {
+            long eventTime = getLong(rowBatch, COL_EVT_TIME, row);
+
+            if (eventTime < startTime || eventTime > endTime) {
+                return false;
+            }
+
+            if (accessResult != null && getLong(rowBatch, COL_RESULT, row) != accessResult) {
+                return false;
+            }
+
+            if (policyId != null && getLong(rowBatch, COL_POLICY, row) != policyId) {
+                return false;
+            }
+
+            if (repoType != null && getLong(rowBatch, COL_REPO_TYPE, row) != repoType) {
+                return false;
+            }
+
+            if (excludeRepoType != null && getLong(rowBatch, COL_REPO_TYPE, row) == excludeRepoType) {
+                return false;
+            }
+
+            if (excludeUsers != null && equalsAny(rowBatch, COL_USER, row, excludeUsers)) {
+                return false;
+            }
+
+            for (ColumnFilter filter : filters) {
+                if (filter.values != null) {
+                    if (!equalsAny(rowBatch, filter.col, row, filter.values)) {
+                        return false;
+                    }
+                } else {
+                    String value = getString(rowBatch, filter.col, row);
+
+                    if (value == null || !value.contains(filter.substring)) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        private static void addFilter(List<ColumnFilter> filters, int col, byte[][] values) {
+            if (values != null) {
+                filters.add(new ColumnFilter(col, values, null));
+            }
+        }
+
+        private static void addSubstringFilter(List<ColumnFilter> filters, int col, String substring) {
+            if (StringUtils.isNotEmpty(substring)) {
+                filters.add(new ColumnFilter(col, null, substring));
+            }
+        }
+
+        private static boolean equalsAny(VectorizedRowBatch rowBatch, int col, int row, byte[]... values) {
+            BytesColumnVector vector = (BytesColumnVector) rowBatch.cols[col];
+            int               idx    = vector.isRepeating ? 0 : row;
+
+            if (!vector.noNulls && vector.isNull[idx]) {
+                return false;
+            }
+
+            byte[] bytes  = vector.vector[idx];
+            int    start  = vector.start[idx];
+            int    length = vector.length[idx];
+
+            for (byte[] value : values) {
+                if (value.length == length && equals(bytes, start, value)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static boolean equals(byte[] bytes, int start, byte[] value) {
+            for (int i = 0; i < value.length; i++) {
+                if (bytes[start + i] != value[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static byte[][] toBytes(String value) {
+            return value != null ? new byte[][] { value.getBytes(StandardCharsets.UTF_8) } : null;
+        }
+
+        private static byte[][] toBytes(Collection<String> values) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+
+            List<byte[]> ret = new ArrayList<>(values.size());
+
+            for (String value : values) {
+                if (value != null) {
+                    ret.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            return ret.toArray(new byte[ret.size()][]);
+        }
+    }
+
+    private static class ColumnFilter {
+        final int      col;
+        final byte[][] values;    // the column must equal one of these; null for a substring match
+        final String   substring; // the column must contain this
+
+        ColumnFilter(int col, byte[][] values, String substring) {
+            this.col       = col;
+            this.values    = values;
+            this.substring = substring;
+        }
+    }
+
+    static class SegmentInfo {
+        final String path;
+        long         eventCount          = 0;
+        long         minTime             = Long.MIN_VALUE;
+        long         maxTime             = Long.MAX_VALUE;
+        BloomFilter  userBloomFilter     = null;
+        BloomFilter  resourceBloomFilter = null;
+
+        SegmentInfo(String path) {
+            this.path = path;
+        }
+
+        boolean mayMatch(RangerLocalAuditQuery query) {
+            if (query.getStartTime() != null && maxTime < query.getStartTime()) {
+                return false;
+            }
+
+            if (query.getEndTime() != null && minTime > query.getEndTime()) {
+                return false;
+            }
+
+            if (userBloomFilter != null && query.getUsers() != null && !query.getUsers().isEmpty()) {
+                boolean mayHaveUser = false;
+
+                for (String user : query.getUsers()) {
+                    if (user != null && userBloomFilter.testString(user)) {
+                        mayHaveUser = true;
+
+                        break;
+                    }
+                }
+
+                if (!mayHaveUser) {
+                    return false;
+                }
+            }
+
+            if (resourceBloomFilter != null && query.getResourcePath() != null && !resourceBloomFilter.testString(query.getResourcePath())) {
+                return false;
+            }
+
+            return true;
+        }
+    }
+
+    public static class QueryResult {
+        private List<AuthzAuditEvent> events              = Collections.emptyList();
+        private long                  totalCount          = 0;
+        private int                   scannedSegmentCount = 0;
+        private int                   prunedSegmentCount  = 0;
+
+        public List<AuthzAuditEvent> getEvents() {
+            return events;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public int getScannedSegmentCount() {
+            return scannedSegmentCount;
+        }
+
+        public int getPrunedSegmentCount() {
+            return prunedSegmentCount;
+        }
+
+        @Override
+        public String toString() {
+            return "QueryResult={events=" + events.size() + ", totalCount=" + totalCount + ", scannedSegmentCount=" + scannedSegmentCount
+                    + ", prunedSegmentCount=" + prunedSegmentCount + "}";
+        }
+    }
+}
@@ -52,6 +52,11 @@ public ServicePolicies getServicePoliciesIfUpdated(long lastKnownVersion, long l
         return null;
     }
 
+    @Override
+    public ServicePolicies getCompactServicePoliciesIfUpdated(long lastKnownVersion, long lastActivationTimeInMillis) throws Exception {
+        return getServicePoliciesIfUpdated(lastKnownVersion, lastActivationTimeInMillis);
+    }
+
     @Override
     public RangerRoles getRolesIfUpdated(long lastKnownRoleVersion, long lastActivationTimeInMillis) throws Exception {
         return null;
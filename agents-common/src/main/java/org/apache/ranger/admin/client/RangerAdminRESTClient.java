@@ -57,6 +57,7 @@ public class RangerAdminRESTClient extends AbstractRangerAdminClient {
 	private RangerRESTUtils  restUtils   = new RangerRESTUtils();
 	private boolean 		 supportsPolicyDeltas;
 	private boolean 		 supportsTagDeltas;
+	private boolean          isInternStringsEnabled;
 	private boolean			 isRangerCookieEnabled;
 	private String			 rangerAdminCookieName;
 	private Cookie 			 policyDownloadSessionId            = null;
@@ -113,6 +114,8 @@ public void init(String serviceName, String appId, String propertyPrefix, Config
 		supportsTagDeltas               = config.getBoolean(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_TAG_DELTA, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_TAG_DELTA_DEFAULT);
 		isRangerCookieEnabled			= config.getBoolean(propertyPrefix + ".policy.rest.client.cookie.enabled", RangerCommonConstants.POLICY_REST_CLIENT_SESSION_COOKIE_ENABLED);
 		rangerAdminCookieName			= config.get(propertyPrefix + ".policy.rest.client.session.cookie.name", RangerCommonConstants.DEFAULT_COOKIE_NAME);
+		isInternStringsEnabled          = config.getBoolean(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_INTERN_STRINGS, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_INTERN_STRINGS_DEFAULT);
+		boolean isGzipEnabled           = config.getBoolean(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_GZIP_DOWNLOAD, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_GZIP_DOWNLOAD_DEFAULT);
 
         if (!StringUtil.isEmpty(tmpUrl)) {
             url = tmpUrl.trim();
@@ -123,6 +126,8 @@ public void init(String serviceName, String appId, String propertyPrefix, Config
 
 		init(url, sslConfigFileName, restClientConnTimeOutMs , restClientReadTimeOutMs, config);
 
+		restClient.setGzipEnabled(isGzipEnabled);
+
         try {
             this.serviceNameUrlParam = URLEncoderUtil.encodeURIParam(serviceName);
         } catch (UnsupportedEncodingException e) {
@@ -140,9 +145,9 @@ public ServicePolicies getServicePoliciesIfUpdated(final long lastKnownVersion,
 		final ServicePolicies ret;
 
 		if (isRangerCookieEnabled && policyDownloadSessionId != null && isValidPolicyDownloadSessionCookie) {
-			ret = getServicePoliciesIfUpdatedWithCookie(lastKnownVersion, lastActivationTimeInMillis);
+			ret = getServicePoliciesIfUpdatedWithCookie(lastKnownVersion, lastActivationTimeInMillis, false);
 		} else {
-			ret = getServicePoliciesIfUpdatedWithCred(lastKnownVersion, lastActivationTimeInMillis);
+			ret = getServicePoliciesIfUpdatedWithCred(lastKnownVersion, lastActivationTimeInMillis, false);
 		}
 
 		if (LOG.isDebugEnabled()) {
@@ -152,6 +157,27 @@ public ServicePolicies getServicePoliciesIfUpdated(final long lastKnownVersion,
 		return ret;
 	}
 
+	@Override
+	public ServicePolicies getCompactServicePoliciesIfUpdated(final long lastKnownVersion, final long lastActivationTimeInMillis) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerAdminRESTClient.getCompactServicePoliciesIfUpdated(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ")");
+		}
+
+		final ServicePolicies ret;
+
+		if (isRangerCookieEnabled && policyDownloadSessionId != null && isValidPolicyDownloadSessionCookie) {
+			ret = getServicePoliciesIfUpdatedWithCookie(lastKnownVersion, lastActivationTimeInMillis, true);
+		} else {
+			ret = getServicePoliciesIfUpdatedWithCred(lastKnownVersion, lastActivationTimeInMillis, true);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerAdminRESTClient.getCompactServicePoliciesIfUpdated(" + lastKnownVersion + ", " + lastActivationTimeInMillis + "): " + ret);
+		}
+
+		return ret;
+	}
+
 	@Override
 	public RangerRoles getRolesIfUpdated(final long lastKnownRoleVersion, final long lastActivationTimeInMillis) throws Exception {
 		if (LOG.isDebugEnabled()) {
@@ -767,16 +793,16 @@ public RangerUserStore getUserStoreIfUpdated(long lastKnownUserStoreVersion, lon
 	}
 
 	/* Policies Download ranger admin rest call methods */
-	private ServicePolicies getServicePoliciesIfUpdatedWithCred(final long lastKnownVersion, final long lastActivationTimeInMillis) throws Exception {
+	private ServicePolicies getServicePoliciesIfUpdatedWithCred(final long lastKnownVersion, final long lastActivationTimeInMillis, final boolean isCompact) throws Exception {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCred(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ")");
+			LOG.debug("==> RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCred(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ", " + isCompact + ")");
 		}
 
 		final ServicePolicies ret;
 
 		final UserGroupInformation user         = MiscUtil.getUGILoginUser();
 		final boolean              isSecureMode = user != null && UserGroupInformation.isSecurityEnabled();
-		final ClientResponse       response     = getRangerAdminPolicyDownloadResponse(lastKnownVersion, lastActivationTimeInMillis, user, isSecureMode);
+		final ClientResponse       response     = getRangerAdminPolicyDownloadResponse(lastKnownVersion, lastActivationTimeInMillis, user, isSecureMode, isCompact);
 
 		if (response == null || response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED || response.getStatus() == HttpServletResponse.SC_NO_CONTENT) {
 			if (response == null) {
@@ -792,7 +818,7 @@ private ServicePolicies getServicePoliciesIfUpdatedWithCred(final long lastKnown
 			ret = null;
 		} else if (response.getStatus() == HttpServletResponse.SC_OK) {
 			setCookieReceivedFromCredSession(response);
-			ret = response.getEntity(ServicePolicies.class);
+			ret = getServicePolicies(response, isCompact);
 		} else if (response.getStatus() == HttpServletResponse.SC_NOT_FOUND) {
 			policyDownloadSessionId = null;
 			ret       = null;
@@ -811,22 +837,22 @@ private ServicePolicies getServicePoliciesIfUpdatedWithCred(final long lastKnown
 		}
 
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCred(" + lastKnownVersion + ", " + lastActivationTimeInMillis + "): " + ret);
+			LOG.debug("<== RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCred(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ", " + isCompact + "): " + ret);
 		}
 
 		return ret;
 	}
 
-	private ServicePolicies getServicePoliciesIfUpdatedWithCookie(final long lastKnownVersion, final long lastActivationTimeInMillis) throws Exception {
+	private ServicePolicies getServicePoliciesIfUpdatedWithCookie(final long lastKnownVersion, final long lastActivationTimeInMillis, final boolean isCompact) throws Exception {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCookie(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ")");
+			LOG.debug("==> RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCookie(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ", " + isCompact + ")");
 		}
 
 		final ServicePolicies ret;
 
 		final UserGroupInformation user         = MiscUtil.getUGILoginUser();
 		final boolean              isSecureMode = user != null && UserGroupInformation.isSecurityEnabled();
-		final ClientResponse       response     = getRangerAdminPolicyDownloadResponse(lastKnownVersion, lastActivationTimeInMillis, user, isSecureMode);
+		final ClientResponse       response     = getRangerAdminPolicyDownloadResponse(lastKnownVersion, lastActivationTimeInMillis, user, isSecureMode, isCompact);
 
 		if (response == null || response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED || response.getStatus() == HttpServletResponse.SC_NO_CONTENT) {
 			if (response == null) {
@@ -843,7 +869,7 @@ private ServicePolicies getServicePoliciesIfUpdatedWithCookie(final long lastKno
 			ret = null;
 		} else if (response.getStatus() == HttpServletResponse.SC_OK) {
 			checkAndResetSessionCookie(response);
-			ret = response.getEntity(ServicePolicies.class);
+			ret = getServicePolicies(response, isCompact);
 		} else if (response.getStatus() == HttpServletResponse.SC_NOT_FOUND) {
 			policyDownloadSessionId = null;
 			isValidPolicyDownloadSessionCookie = false;
@@ -864,18 +890,33 @@ private ServicePolicies getServicePoliciesIfUpdatedWithCookie(final long lastKno
 		}
 
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCookie(" + lastKnownVersion + ", " + lastActivationTimeInMillis + "): " + ret);
+			LOG.debug("<== RangerAdminRESTClient.getServicePoliciesIfUpdatedWithCookie(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ", " + isCompact + "): " + ret);
+		}
+
+		return ret;
+	}
+
+	private ServicePolicies getServicePolicies(ClientResponse response, boolean isCompact) throws Exception {
+		final ServicePolicies ret;
+
+		if (isCompact) {
+			ret = CompactServicePolicies.fromByteArray(response.getEntity(byte[].class));
+		} else if (isInternStringsEnabled) {
+			ret = RangerJsonStreamReader.read(response.getEntityInputStream(), ServicePolicies.class);
+		} else {
+			ret = response.getEntity(ServicePolicies.class);
 		}
 
 		return ret;
 	}
 
-	private ClientResponse getRangerAdminPolicyDownloadResponse(final long lastKnownVersion, final long lastActivationTimeInMillis, final UserGroupInformation user, final boolean isSecureMode) throws Exception {
+	private ClientResponse getRangerAdminPolicyDownloadResponse(final long lastKnownVersion, final long lastActivationTimeInMillis, final UserGroupInformation user, final boolean isSecureMode, final boolean isCompact) throws Exception {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> RangerAdminRESTClient.getRangerAdminPolicyDownloadResponse(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ")");
+			LOG.debug("==> RangerAdminRESTClient.getRangerAdminPolicyDownloadResponse(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ", " + isCompact + ")");
 		}
 
 		final ClientResponse ret;
+		final String         acceptType = isCompact ? CompactServicePolicies.MIME_TYPE : RangerRESTUtils.REST_EXPECTED_MIME_TYPE;
 
 		Map<String, String> queryParams = new HashMap<String, String>();
 		queryParams.put(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, Long.toString(lastKnownVersion));
@@ -891,10 +932,10 @@ private ClientResponse getRangerAdminPolicyDownloadResponse(final long lastKnown
 			}
 			PrivilegedAction<ClientResponse> action = new PrivilegedAction<ClientResponse>() {
 				public ClientResponse run() {
-					String relativeURL = RangerRESTUtils.REST_URL_POLICY_GET_FOR_SECURE_SERVICE_IF_UPDATED + serviceNameUrlParam;
+					String relativeURL = (isCompact ? RangerRESTUtils.REST_URL_POLICY_COMPACT_GET_FOR_SECURE_SERVICE_IF_UPDATED : RangerRESTUtils.REST_URL_POLICY_GET_FOR_SECURE_SERVICE_IF_UPDATED) + serviceNameUrlParam;
 					ClientResponse clientResp = null;
 					try {
-						clientResp = restClient.get(relativeURL, queryParams, policyDownloadSessionId);
+						clientResp = restClient.get(relativeURL, queryParams, policyDownloadSessionId, acceptType);
 					} catch (Exception e) {
 						LOG.error("Failed to get response, Error is : "+e.getMessage());
 					}
@@ -906,12 +947,12 @@ public ClientResponse run() {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("Checking Service policy if updated with old api call");
 			}
-			String relativeURL = RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED + serviceNameUrlParam;
-			ret = restClient.get(relativeURL, queryParams, policyDownloadSessionId);
+			String relativeURL = (isCompact ? RangerRESTUtils.REST_URL_POLICY_COMPACT_GET_FOR_SERVICE_IF_UPDATED : RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED) + serviceNameUrlParam;
+			ret = restClient.get(relativeURL, queryParams, policyDownloadSessionId, acceptType);
 		}
 
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerAdminRESTClient.getRangerAdminPolicyDownloadResponse(" + lastKnownVersion + ", " + lastActivationTimeInMillis + "): " + ret);
+			LOG.debug("<== RangerAdminRESTClient.getRangerAdminPolicyDownloadResponse(" + lastKnownVersion + ", " + lastActivationTimeInMillis + ", " + isCompact + "): " + ret);
 		}
 
 		return ret;
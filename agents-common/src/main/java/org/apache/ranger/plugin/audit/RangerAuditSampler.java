@@ -0,0 +1,516 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+
+/**
+ * Reduces the volume of audit events for allowed accesses, as configured in the service config:
+ * <ul>
+ * <li>ranger.plugin.audit.sample.rate: fraction of allowed accesses to audit, between 0 and 1</li>
+ * <li>ranger.plugin.audit.rate.limit.per.user: maximum audit events per second for a user</li>
+ * <li>ranger.plugin.audit.rate.limit.per.resource: maximum audit events per second for a resource</li>
+ * <li>ranger.plugin.audit.rate.limit.burst: number of events allowed in a burst above the rate; defaults to the rate</li>
+ * </ul>
+ * Denied accesses are always audited. The number of events suppressed for a user/resource/access-type is added to the
+ * event_count of the next audited event for it. Counts not carried by an audited event within a minute are logged, by a
+ * timer, with the last suppressed event; as are all counts of a sampler when it is removed. Hence the event counts of
+ * audits add up to the number of accesses.
+ *
+ * Samplers are kept per audit provider and service, and are removed when the plugin is cleaned up.
+ *
+ * The state is kept in fixed-size hash tables, so the memory used doesn't depend on the number of users or resources.
+ * A key takes a free slot among the few slots of its hash; a token bucket is reused for another key only after it refilled
+ * to capacity, when it no longer limits its key. When all slots are in use, the new key is not rate-limited and its events
+ * are audited rather than suppressed, so that collisions don't reset rate limits or lose suppressed counts.
+ */
+public class RangerAuditSampler {
+	private static final Log LOG = LogFactory.getLog(RangerAuditSampler.class);
+
+	private static final int  TABLE_SIZE        = 4096;
+	private static final int  WAYS              = 8; // slots a key can take
+	private static final int  LOCK_STRIPES      = 64;
+	private static final long FLUSH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+	// audit provider -> service name -> sampler; updated while holding the class lock
+	private static final Map<AuditHandler, Map<String, RangerAuditSampler>> samplers = new ConcurrentHashMap<>();
+
+	private static Timer flushTimer = null; // runs while there are samplers; guarded by the class lock
+
+	private final double          sampleRate;
+	private final double          userRateLimit;
+	private final double          resourceRateLimit;
+	private final double          burst;
+	private final TokenBuckets    userBuckets;
+	private final TokenBuckets    resourceBuckets;
+	private final Counters        suppressedCounts = new Counters(TABLE_SIZE);
+	private final AtomicLong      totalSuppressed  = new AtomicLong();
+
+	public RangerAuditSampler(double sampleRate, double userRateLimit, double resourceRateLimit, double burst) {
+		this.sampleRate        = sampleRate;
+		this.userRateLimit     = userRateLimit;
+		this.resourceRateLimit = resourceRateLimit;
+		this.burst             = burst;
+		this.userBuckets       = userRateLimit > 0 ? new TokenBuckets(TABLE_SIZE, userRateLimit, burst > 0 ? burst : userRateLimit) : null;
+		this.resourceBuckets   = resourceRateLimit > 0 ? new TokenBuckets(TABLE_SIZE, resourceRateLimit, burst > 0 ? burst : resourceRateLimit) : null;
+	}
+
+	/**
+	 * @return the sampler for the service, or null if sampling and rate limits are not configured for the service
+	 */
+	public static RangerAuditSampler getSampler(AuditHandler auditProvider, String serviceName) {
+		Map<String, RangerAuditSampler> serviceSamplers = (auditProvider != null && serviceName != null) ? samplers.get(auditProvider) : null;
+
+		return serviceSamplers != null ? serviceSamplers.get(serviceName) : null;
+	}
+
+	/**
+	 * Creates the sampler for the service from the given service config. The existing sampler, along with its state,
+	 * is retained if the configuration didn't change.
+	 */
+	public static synchronized void setServiceConfig(AuditHandler auditProvider, String serviceName, Map<String, String> svcConfig) {
+		if (auditProvider == null || serviceName == null) {
+			return;
+		}
+
+		RangerAuditSampler sampler = createSampler(svcConfig);
+
+		if (sampler == null) {
+			if (removeSampler(auditProvider, serviceName)) {
+				LOG.info("RangerAuditSampler: audit sampling and rate limits disabled for service " + serviceName);
+			}
+		} else {
+			Map<String, RangerAuditSampler> serviceSamplers = samplers.get(auditProvider);
+
+			if (serviceSamplers == null) {
+				serviceSamplers = new ConcurrentHashMap<>();
+
+				samplers.put(auditProvider, serviceSamplers);
+			}
+
+			RangerAuditSampler existing = serviceSamplers.get(serviceName);
+
+			if (existing == null || !existing.hasSameConfig(sampler)) {
+				serviceSamplers.put(serviceName, sampler);
+
+				LOG.info("RangerAuditSampler: service=" + serviceName + ", " + sampler);
+
+				if (existing != null) {
+					existing.flushSuppressed(auditProvider, 0);
+				}
+			}
+
+			if (flushTimer == null) {
+				flushTimer = new Timer("auditSamplerFlushTimer", true);
+
+				flushTimer.schedule(new FlushTask(), FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS);
+			}
+		}
+	}
+
+	/**
+	 * Removes the sampler of the service, after logging its suppressed counts; called when the plugin is cleaned up.
+	 *
+	 * @return true if the service had a sampler
+	 */
+	public static synchronized boolean removeSampler(AuditHandler auditProvider, String serviceName) {
+		Map<String, RangerAuditSampler> serviceSamplers = (auditProvider != null && serviceName != null) ? samplers.get(auditProvider) : null;
+		RangerAuditSampler              sampler         = serviceSamplers != null ? serviceSamplers.remove(serviceName) : null;
+
+		if (sampler != null) {
+			sampler.flushSuppressed(auditProvider, 0);
+		}
+
+		if (serviceSamplers != null && serviceSamplers.isEmpty()) {
+			samplers.remove(auditProvider);
+		}
+
+		if (samplers.isEmpty() && flushTimer != null) {
+			flushTimer.cancel();
+
+			flushTimer = null;
+		}
+
+		return sampler != null;
+	}
+
+	/**
+	 * @return true if the event should be audited; false if it should be suppressed
+	 */
+	public boolean isAudited(AuthzAuditEvent event) {
+		if (event.getAccessResult() == 0) { // denied accesses are always audited
+			return true;
+		}
+
+		long    now = System.nanoTime();
+		boolean ret = sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+
+		if (ret) {
+			ret = (userBuckets == null || userBuckets.tryAcquire(event.getUser(), now))
+			      && (resourceBuckets == null || resourceBuckets.tryAcquire(event.getResourcePath(), now));
+		}
+
+		if (ret) {
+			long suppressed = suppressedCounts.getAndReset(event);
+
+			if (suppressed > 0) {
+				event.setEventCount(event.getEventCount() + suppressed);
+			}
+		} else if (suppressedCounts.add(event, now)) {
+			totalSuppressed.addAndGet(event.getEventCount());
+		} else { // no slot to keep the count in
+			ret = true;
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Logs, to the given audit provider, the last suppressed event of each user/resource/access-type whose events were
+	 * all suppressed for at least minIdleMs, with the number of suppressed events as its event_count.
+	 *
+	 * @return number of events logged
+	 */
+	int flushSuppressed(AuditHandler auditProvider, long minIdleMs) {
+		List<AuthzAuditEvent> events = suppressedCounts.removeIdle(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(minIdleMs));
+
+		if (!events.isEmpty()) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerAuditSampler.flushSuppressed(): logging " + events.size() + " events with suppressed counts");
+			}
+
+			if (!auditProvider.log(new ArrayList<>(events))) {
+				LOG.warn("RangerAuditSampler: failed to log " + events.size() + " events with suppressed counts");
+			}
+		}
+
+		return events.size();
+	}
+
+	public long getTotalSuppressedCount() {
+		return totalSuppressed.get();
+	}
+
+	@Override
+	public String toString() {
+		return "RangerAuditSampler={sampleRate=" + sampleRate + ", userRateLimit=" + userRateLimit + ", resourceRateLimit=" + resourceRateLimit
+		       + ", burst=" + burst + ", totalSuppressed=" + totalSuppressed.get() + "}";
+	}
+
+	static RangerAuditSampler createSampler(Map<String, String> svcConfig) {
+		RangerAuditSampler ret = null;
+
+		if (svcConfig != null) {
+			double sampleRate        = getDouble(svcConfig, RangerPolicyEngine.PLUGIN_AUDIT_SAMPLE_RATE, 1);
+			double userRateLimit     = getDouble(svcConfig, RangerPolicyEngine.PLUGIN_AUDIT_RATE_LIMIT_PER_USER, 0);
+			double resourceRateLimit = getDouble(svcConfig, RangerPolicyEngine.PLUGIN_AUDIT_RATE_LIMIT_PER_RESOURCE, 0);
+			double burst             = getDouble(svcConfig, RangerPolicyEngine.PLUGIN_AUDIT_RATE_LIMIT_BURST, 0);
+
+			if (sampleRate < 1 || userRateLimit > 0 || resourceRateLimit > 0) {
+				ret = new RangerAuditSampler(Math.max(0, sampleRate), userRateLimit, resourceRateLimit, burst);
+			}
+		}
+
+		return ret;
+	}
+
+	private boolean hasSameConfig(RangerAuditSampler other) {
+		return sampleRate == other.sampleRate && userRateLimit == other.userRateLimit && resourceRateLimit == other.resourceRateLimit && burst == other.burst;
+	}
+
+	private static double getDouble(Map<String, String> svcConfig, String name, double defaultValue) {
+		String value = svcConfig.get(name);
+		double ret   = defaultValue;
+
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				ret = Double.parseDouble(value.trim());
+			} catch (NumberFormatException excp) {
+				LOG.warn("RangerAuditSampler: invalid value for " + name + ": " + value + ". Will use " + defaultValue);
+			}
+		}
+
+		return ret;
+	}
+
+	private static long hash(String value) {
+		return mix(Objects.hashCode(value));
+	}
+
+	private static long hash(String value1, String value2, String value3) {
+		long ret = Objects.hashCode(value1);
+
+		ret = ret * 31 + Objects.hashCode(value2);
+		ret = ret * 31 + Objects.hashCode(value3);
+
+		return mix(ret);
+	}
+
+	// murmur3 finalizer; 0 is used to mark empty slots
+	private static long mix(long value) {
+		long ret = value;
+
+		ret ^= ret >>> 33;
+		ret *= 0xff51afd7ed558ccdL;
+		ret ^= ret >>> 33;
+		ret *= 0xc4ceb9fe1a85ec53L;
+		ret ^= ret >>> 33;
+
+		return ret == 0 ? 1 : ret;
+	}
+
+	private static final class FlushTask extends TimerTask {
+		@Override
+		public void run() {
+			for (Map.Entry<AuditHandler, Map<String, RangerAuditSampler>> entry : samplers.entrySet()) {
+				for (RangerAuditSampler sampler : entry.getValue().values()) {
+					try {
+						sampler.flushSuppressed(entry.getKey(), FLUSH_INTERVAL_MS);
+					} catch (Throwable excp) {
+						LOG.error("RangerAuditSampler: failed to log suppressed counts", excp);
+					}
+				}
+			}
+		}
+	}
+
+	// a key takes one of the WAYS slots starting at firstSlot(hash); keys[] holds the hash of the key in a slot, 0 if free
+	private static abstract class StripedTable {
+		protected final long[]   keys;
+		protected final Object[] locks = new Object[LOCK_STRIPES];
+		protected final int      mask;
+
+		StripedTable(int size) {
+			keys = new long[size];
+			mask = size - 1;
+
+			for (int i = 0; i < locks.length; i++) {
+				locks[i] = new Object();
+			}
+		}
+
+		int firstSlot(long hash) {
+			return (int) (hash ^ (hash >>> 32)) & mask & ~(WAYS - 1);
+		}
+
+		Object lock(int firstSlot) {
+			return locks[(firstSlot / WAYS) & (LOCK_STRIPES - 1)];
+		}
+	}
+
+	// token bucket per key; tokens are kept in millionths to avoid floating point state
+	private static final class TokenBuckets extends StripedTable {
+		private final String[] names;
+		private final long[]   tokens;
+		private final long[]   refillTimes;
+		private final double   microTokensPerNano;
+		private final long     capacity;
+
+		TokenBuckets(int size, double ratePerSecond, double burst) {
+			super(size);
+
+			names              = new String[size];
+			tokens             = new long[size];
+			refillTimes        = new long[size];
+			microTokensPerNano = ratePerSecond / 1000d;
+			capacity           = (long) (Math.max(1, burst) * 1_000_000L);
+		}
+
+		boolean tryAcquire(String name, long now) {
+			long hash      = hash(name);
+			int  firstSlot = firstSlot(hash);
+
+			synchronized (lock(firstSlot)) {
+				int slot = -1;
+
+				for (int i = firstSlot; i < firstSlot + WAYS; i++) {
+					if (keys[i] == hash && Objects.equals(names[i], name)) {
+						slot = i;
+
+						break;
+					} else if (slot == -1 && (keys[i] == 0 || refill(i, now) == capacity)) {
+						slot = i; // free, or a bucket at capacity, which can be taken over without loss
+					}
+				}
+
+				if (slot == -1) { // all buckets are limiting their keys
+					return true;
+				}
+
+				if (keys[slot] != hash || !Objects.equals(names[slot], name)) {
+					keys[slot]        = hash;
+					names[slot]       = name;
+					tokens[slot]      = capacity;
+					refillTimes[slot] = now;
+				} else {
+					refill(slot, now);
+				}
+
+				if (tokens[slot] >= 1_000_000L) {
+					tokens[slot] -= 1_000_000L;
+
+					return true;
+				}
+
+				return false;
+			}
+		}
+
+		// adds the tokens accrued since the last refill; returns the tokens in the bucket
+		private long refill(int slot, long now) {
+			long refill = (long) ((now - refillTimes[slot]) * microTokensPerNano);
+
+			if (refill > 0) {
+				tokens[slot]      = Math.min(capacity, tokens[slot] + refill);
+				refillTimes[slot] = now;
+			}
+
+			return tokens[slot];
+		}
+	}
+
+	// suppressed count per user/resource/access-type, along with the last suppressed event
+	private static final class Counters extends StripedTable {
+		private final long[]            counts;
+		private final long[]            times;
+		private final AuthzAuditEvent[] events;
+
+		Counters(int size) {
+			super(size);
+
+			counts = new long[size];
+			times  = new long[size];
+			events = new AuthzAuditEvent[size];
+		}
+
+		/**
+		 * @return false if all slots of the key are taken by other keys
+		 */
+		boolean add(AuthzAuditEvent event, long now) {
+			long hash      = hash(event.getUser(), event.getResourcePath(), event.getAccessType());
+			int  firstSlot = firstSlot(hash);
+
+			synchronized (lock(firstSlot)) {
+				int slot = find(firstSlot, hash, event);
+
+				if (slot == -1) {
+					for (int i = firstSlot; i < firstSlot + WAYS; i++) {
+						if (keys[i] == 0) {
+							slot         = i;
+							keys[slot]   = hash;
+							counts[slot] = 0;
+
+							break;
+						}
+					}
+
+					if (slot == -1) {
+						return false;
+					}
+				}
+
+				counts[slot] += event.getEventCount();
+				times[slot]  = now;
+				events[slot] = event;
+
+				return true;
+			}
+		}
+
+		long getAndReset(AuthzAuditEvent event) {
+			long hash      = hash(event.getUser(), event.getResourcePath(), event.getAccessType());
+			int  firstSlot = firstSlot(hash);
+
+			synchronized (lock(firstSlot)) {
+				int  slot = find(firstSlot, hash, event);
+				long ret  = 0;
+
+				if (slot != -1) {
+					ret = counts[slot];
+
+					clear(slot);
+				}
+
+				return ret;
+			}
+		}
+
+		/**
+		 * Removes the keys last suppressed at least minIdleNanos before now.
+		 *
+		 * @return the last suppressed event of each removed key, with the suppressed count as its event count
+		 */
+		List<AuthzAuditEvent> removeIdle(long now, long minIdleNanos) {
+			List<AuthzAuditEvent> ret = new ArrayList<>();
+
+			for (int firstSlot = 0; firstSlot < keys.length; firstSlot += WAYS) {
+				synchronized (lock(firstSlot)) {
+					for (int i = firstSlot; i < firstSlot + WAYS; i++) {
+						if (keys[i] != 0 && now - times[i] >= minIdleNanos) {
+							AuthzAuditEvent event = events[i];
+
+							event.setEventCount(counts[i]);
+
+							ret.add(event);
+
+							clear(i);
+						}
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		private int find(int firstSlot, long hash, AuthzAuditEvent event) {
+			for (int i = firstSlot; i < firstSlot + WAYS; i++) {
+				if (keys[i] == hash && Objects.equals(events[i].getUser(), event.getUser())
+				    && Objects.equals(events[i].getResourcePath(), event.getResourcePath())
+				    && Objects.equals(events[i].getAccessType(), event.getAccessType())) {
+					return i;
+				}
+			}
+
+			return -1;
+		}
+
+		private void clear(int slot) {
+			keys[slot]   = 0;
+			counts[slot] = 0;
+			events[slot] = null;
+		}
+	}
+}
@@ -190,11 +190,19 @@ public void logAuthzAudit(AuthzAuditEvent auditEvent) {
 		}
 
 		if(auditEvent != null) {
-			populateDefaults(auditEvent);
+			AuditHandler       auditProvider = RangerBasePlugin.getAuditProvider(auditEvent.getRepositoryName());
+			RangerAuditSampler sampler       = RangerAuditSampler.getSampler(auditProvider, auditEvent.getRepositoryName());
 
-			AuditHandler auditProvider = RangerBasePlugin.getAuditProvider(auditEvent.getRepositoryName());
-			if (auditProvider == null || !auditProvider.log(auditEvent)) {
-				MiscUtil.logErrorMessageByInterval(LOG, "fail to log audit event " + auditEvent);
+			populateDefaults(auditEvent); // before sampling, as the sampler logs the last suppressed event later
+
+			if (sampler != null && !sampler.isAudited(auditEvent)) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("RangerDefaultAuditHandler.logAuthzAudit(): audit suppressed by sampling/rate-limit");
+				}
+			} else {
+				if (auditProvider == null || !auditProvider.log(auditEvent)) {
+					MiscUtil.logErrorMessageByInterval(LOG, "fail to log audit event " + auditEvent);
+				}
 			}
 		}
 
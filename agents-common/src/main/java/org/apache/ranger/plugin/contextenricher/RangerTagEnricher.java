@@ -44,6 +44,7 @@
 import org.apache.ranger.plugin.service.RangerAuthContext;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerCommonConstants;
+import org.apache.ranger.plugin.util.RangerCompactJsonCodec;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.apache.ranger.plugin.util.RangerReadWriteLock;
 import org.apache.ranger.plugin.util.RangerServiceNotFoundException;
@@ -51,10 +52,6 @@
 import org.apache.ranger.plugin.util.ServiceTags;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.Reader;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -130,6 +127,7 @@ public void init() {
 				String propertyPrefix    = "ranger.plugin." + serviceDef.getName();
 				disableCacheIfServiceNotFound = getBooleanConfig(propertyPrefix + ".disable.cache.if.servicenotfound", true);
 				String cacheDir      = getConfig(propertyPrefix + ".policy.cache.dir", null);
+				boolean cacheCompact = getBooleanConfig(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT_DEFAULT);
 				String cacheFilename = String.format("%s_%s_tag.json", appId, serviceName);
 
 				cacheFilename = cacheFilename.replace(File.separatorChar,  '_');
@@ -146,7 +144,7 @@ public void init() {
 				tagRetriever.setPluginContext(getPluginContext());
 				tagRetriever.init(enricherDef.getEnricherOptions());
 
-				tagRefresher = new RangerTagRefresher(tagRetriever, this, -1L, tagDownloadQueue, cacheFile);
+				tagRefresher = new RangerTagRefresher(tagRetriever, this, -1L, tagDownloadQueue, cacheFile, cacheCompact);
 				LOG.info("Created RangerTagRefresher Thread(" + tagRefresher.getName() + ")");
 
 				try {
@@ -467,7 +465,7 @@ private void processServiceTags(ServiceTags serviceTags) {
 					serviceResourceTrie = new HashMap<>();
 
 					for (RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
-						serviceResourceTrie.put(resourceDef.getName(), new RangerResourceTrie(resourceDef, resourceMatchers, getPolicyEngineOptions().optimizeTrieForRetrieval, null));
+						serviceResourceTrie.put(resourceDef.getName(), new RangerResourceTrie(resourceDef, resourceMatchers, getPolicyEngineOptions().optimizeTrieForRetrieval, getPolicyEngineOptions().optimizeTrieForSpace, null));
 					}
 				}
 				enrichedServiceTags = new EnrichedServiceTags(serviceTags, resourceMatchers, serviceResourceTrie);
@@ -925,17 +923,19 @@ static class RangerTagRefresher extends Thread {
 		private long lastActivationTimeInMillis;
 
 		private final String cacheFile;
+		private final boolean cacheCompact;
 		private boolean hasProvidedTagsToReceiver;
 		private Gson gson;
 
-		RangerTagRefresher(RangerTagRetriever tagRetriever, RangerTagEnricher tagEnricher, long lastKnownVersion, BlockingQueue<DownloadTrigger> tagDownloadQueue, String cacheFile) {
+		RangerTagRefresher(RangerTagRetriever tagRetriever, RangerTagEnricher tagEnricher, long lastKnownVersion, BlockingQueue<DownloadTrigger> tagDownloadQueue, String cacheFile, boolean cacheCompact) {
 			this.tagRetriever = tagRetriever;
 			this.tagEnricher = tagEnricher;
 			this.lastKnownVersion = lastKnownVersion;
 			this.tagDownloadQueue = tagDownloadQueue;
 			this.cacheFile = cacheFile;
+			this.cacheCompact = cacheCompact;
 			try {
-				gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+				gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").registerTypeAdapterFactory(RangerCompactJsonCodec.MAP_ADAPTER_FACTORY).create();
 			} catch(Throwable excp) {
 				LOG.fatal("failed to create GsonBuilder object", excp);
 			}
@@ -1093,12 +1093,8 @@ final ServiceTags loadFromCache() {
 			File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
 
 			if (cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-				Reader reader = null;
-
 				try {
-					reader = new FileReader(cacheFile);
-
-					serviceTags = gson.fromJson(reader, ServiceTags.class);
+					serviceTags = RangerCompactJsonCodec.readFile(gson, cacheFile, ServiceTags.class);
 
 					if (serviceTags != null && !StringUtils.equals(tagEnricher.getServiceName(), serviceTags.getServiceName())) {
 						LOG.warn("ignoring unexpected serviceName '" + serviceTags.getServiceName() + "' in cache file '" + cacheFile.getAbsolutePath() + "'");
@@ -1107,14 +1103,6 @@ final ServiceTags loadFromCache() {
 					}
 				} catch (Exception excp) {
 					LOG.error("failed to load service-tags from cache file " + cacheFile.getAbsolutePath(), excp);
-				} finally {
-					if (reader != null) {
-						try {
-							reader.close();
-						} catch (Exception excp) {
-							LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-						}
-					}
 				}
 			} else {
 				LOG.warn("cache file does not exist or not readable '" + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + "'");
@@ -1136,22 +1124,10 @@ final void saveToCache(ServiceTags serviceTags) {
 				File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
 
 				if (cacheFile != null) {
-					Writer writer = null;
-
 					try {
-						writer = new FileWriter(cacheFile);
-
-						gson.toJson(serviceTags, writer);
+						RangerCompactJsonCodec.writeFile(gson, cacheFile, serviceTags, cacheCompact);
 					} catch (Exception excp) {
 						LOG.error("failed to save service-tags to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-					} finally {
-						if (writer != null) {
-							try {
-								writer.close();
-							} catch (Exception excp) {
-								LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-							}
-						}
 					}
 				}
 			} else {
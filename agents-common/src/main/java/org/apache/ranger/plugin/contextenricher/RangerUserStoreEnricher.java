@@ -194,6 +194,9 @@ public void setRangerUserStore(final RangerUserStore rangerUserStore) {
                 perf = RangerPerfTracer.getPerfTracer(PERF_SET_USERSTORE_LOG, "RangerUserStoreEnricher.setRangerUserStore(newUserStoreVersion=" + rangerUserStore.getUserStoreVersion() + ")");
             }
 
+            // per-request lookups in the mappings then go through the index
+            rangerUserStore.buildUserStoreIndex();
+
             this.rangerUserStore = rangerUserStore;
             RangerPerfTracer.logAlways(perf);
         }
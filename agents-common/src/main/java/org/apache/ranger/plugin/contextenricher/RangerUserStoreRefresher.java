@@ -31,6 +31,7 @@
 import org.apache.ranger.plugin.util.DownloadTrigger;
 import org.apache.ranger.plugin.util.RangerRESTClient;
 import org.apache.ranger.plugin.util.RangerUserStore;
+import org.apache.ranger.plugin.util.RangerUserStoreDeltaUtil;
 import org.apache.ranger.plugin.util.RangerServiceNotFoundException;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
 
@@ -130,6 +131,10 @@ public RangerUserStore populateUserStoreInfo() throws InterruptedException {
             try {
                 rangerUserStore = userStoreRetriever.retrieveUserStoreInfo(lastKnownVersion, lastActivationTimeInMillis);
 
+                if (RangerUserStoreDeltaUtil.hasUserStoreDeltas(rangerUserStore)) {
+                    rangerUserStore = applyUserStoreDeltas(rangerUserStore);
+                }
+
                 if (rangerUserStore == null) {
                     if (!hasProvidedUserStoreToReceiver) {
                         rangerUserStore = loadFromCache();
@@ -250,6 +255,28 @@ public void stopRefresher() {
     }
 
 
+    private RangerUserStore applyUserStoreDeltas(RangerUserStore userStoreDeltas) {
+        RangerUserStore currentUserStore = userStoreEnricher.getRangerUserStore();
+        Long            currentVersion   = currentUserStore != null ? currentUserStore.getUserStoreVersion() : null;
+        RangerUserStore ret;
+
+        if (currentVersion != null && currentVersion == lastKnownVersion) {
+            ret = RangerUserStoreDeltaUtil.applyDeltas(currentUserStore, userStoreDeltas);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("RangerUserStoreRefresher.applyUserStoreDeltas(): applied " + userStoreDeltas.getUserStoreDeltas().size() + " userstore deltas to version " + currentVersion);
+            }
+        } else {
+            // the userstore the deltas are for is not available; download the complete userstore in the next call
+            LOG.warn("RangerUserStoreRefresher.applyUserStoreDeltas(): received userstore deltas for version " + lastKnownVersion + ", but userstore in enricher is of version " + currentVersion + ". Will download complete userstore");
+
+            lastKnownVersion = -1L;
+            ret              = null;
+        }
+
+        return ret;
+    }
+
     private RangerUserStore loadFromCache() {
         RangerUserStore rangerUserStore = null;
 
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.model;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+@JsonAutoDetect(fieldVisibility=Visibility.ANY)
+@JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class RangerRoleDelta implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int CHANGE_TYPE_ROLE_CREATE = 0;
+    public static final int CHANGE_TYPE_ROLE_UPDATE = 1;
+    public static final int CHANGE_TYPE_ROLE_DELETE = 2;
+
+    private static String[] changeTypeNames = { "ROLE_CREATE", "ROLE_UPDATE", "ROLE_DELETE" };
+
+    private Integer    changeType;
+    private Long       roleVersion;
+    private RangerRole role;
+
+    public RangerRoleDelta() {
+        this(null, null, null);
+    }
+
+    public RangerRoleDelta(final Integer changeType, final Long roleVersion, final RangerRole role) {
+        setChangeType(changeType);
+        setRoleVersion(roleVersion);
+        setRole(role);
+    }
+
+    public Integer getChangeType() { return changeType; }
+
+    public Long getRoleVersion() { return roleVersion; }
+
+    @JsonIgnore
+    public String getRoleName() { return role != null ? role.getName() : null; }
+
+    public RangerRole getRole() { return role; }
+
+    private void setChangeType(Integer changeType) { this.changeType = changeType; }
+
+    private void setRoleVersion(Long roleVersion) { this.roleVersion = roleVersion; }
+
+    public void setRole(RangerRole role) { this.role = role; }
+
+    @Override
+    public String toString() {
+        return "changeType:" + (changeType != null ? changeTypeNames[changeType] : null)
+                + ", roleVersion:" + roleVersion
+                + ", roleName:" + getRoleName();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.model;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonAutoDetect.Visibility;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * Change to one user or group of a RangerUserStore. An update has the complete state of the user or group after the
+ * change: attributes and, for users, groups; null for either means the user is not in that mapping.
+ */
+@JsonAutoDetect(fieldVisibility=Visibility.ANY)
+@JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class RangerUserStoreDelta implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int CHANGE_TYPE_USER_UPDATE  = 0;
+    public static final int CHANGE_TYPE_USER_DELETE  = 1;
+    public static final int CHANGE_TYPE_GROUP_UPDATE = 2;
+    public static final int CHANGE_TYPE_GROUP_DELETE = 3;
+
+    private static String[] changeTypeNames = { "USER_UPDATE", "USER_DELETE", "GROUP_UPDATE", "GROUP_DELETE" };
+
+    private Integer             changeType;
+    private String              name;
+    private Map<String, String> attributes;
+    private Set<String>         groups;
+
+    public RangerUserStoreDelta() {
+        this(null, null, null, null);
+    }
+
+    public RangerUserStoreDelta(final Integer changeType, final String name, final Map<String, String> attributes, final Set<String> groups) {
+        setChangeType(changeType);
+        setName(name);
+        setAttributes(attributes);
+        setGroups(groups);
+    }
+
+    public Integer getChangeType() { return changeType; }
+
+    public String getName() { return name; }
+
+    public Map<String, String> getAttributes() { return attributes; }
+
+    public Set<String> getGroups() { return groups; }
+
+    private void setChangeType(Integer changeType) { this.changeType = changeType; }
+
+    private void setName(String name) { this.name = name; }
+
+    public void setAttributes(Map<String, String> attributes) { this.attributes = attributes; }
+
+    public void setGroups(Set<String> groups) { this.groups = groups; }
+
+    @Override
+    public String toString() {
+        return "changeType:" + (changeType != null && changeType >= 0 && changeType < changeTypeNames.length ? changeTypeNames[changeType] : changeType)
+                + ", name:" + name
+                + ", attributes:" + attributes
+                + ", groups:" + groups;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A memory-efficient map keyed by primitive char, used to hold the children of RangerResourceTrie nodes.
+ *
+ * Entries are kept in a pair of sorted arrays (char[] keys, Object[] values) while the number of entries is small;
+ * once the number of entries exceeds SORTED_ARRAY_MAX_SIZE, the map switches to an open-addressed hash table
+ * with linear probing. Unlike HashMap<Character, V>, lookups using get(char) do not box the key, and a map
+ * with a single entry costs two one-element arrays instead of a HashMap, its table and a Node.
+ *
+ * null values are not supported. Iterators do not support remove().
+ */
+class CompactCharMap<V> extends AbstractMap<Character, V> {
+    static final int SORTED_ARRAY_MAX_SIZE = 8;
+
+    private static final char[]   EMPTY_KEYS   = new char[0];
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    private char[]   keys     = EMPTY_KEYS;
+    private Object[] values   = EMPTY_VALUES;
+    private int      size     = 0;
+    private boolean  isHashed = false;
+
+    CompactCharMap() {
+    }
+
+    CompactCharMap(Map<Character, ? extends V> other) {
+        putAll(other);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Character && get(((Character) key).charValue()) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Character ? get(((Character) key).charValue()) : null;
+    }
+
+    @Override
+    public V put(Character key, V value) {
+        return put(key.charValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Character ? remove(((Character) key).charValue()) : null;
+    }
+
+    @Override
+    public void clear() {
+        keys     = EMPTY_KEYS;
+        values   = EMPTY_VALUES;
+        size     = 0;
+        isHashed = false;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(char key) {
+        final V ret;
+
+        if (isHashed) {
+            int idx = findSlot(keys, values, key);
+
+            ret = (V) values[idx];
+        } else {
+            int idx = findSorted(key);
+
+            ret = idx >= 0 ? (V) values[idx] : null;
+        }
+
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(char key, V value) {
+        if (value == null) {
+            throw new NullPointerException("CompactCharMap does not support null values");
+        }
+
+        final V ret;
+
+        if (isHashed) {
+            int idx = findSlot(keys, values, key);
+
+            ret = (V) values[idx];
+
+            if (ret == null) {
+                keys[idx] = key;
+                size++;
+            }
+
+            values[idx] = value;
+
+            if (size * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+        } else {
+            int idx = findSorted(key);
+
+            if (idx >= 0) {
+                ret = (V) values[idx];
+
+                values[idx] = value;
+            } else {
+                ret = null;
+
+                if (size == SORTED_ARRAY_MAX_SIZE) {
+                    rehash(tableSizeFor(size + 1));
+
+                    return put(key, value);
+                }
+
+                int      insertAt  = -(idx + 1);
+                char[]   newKeys   = new char[size + 1];
+                Object[] newValues = new Object[size + 1];
+
+                System.arraycopy(keys, 0, newKeys, 0, insertAt);
+                System.arraycopy(values, 0, newValues, 0, insertAt);
+                System.arraycopy(keys, insertAt, newKeys, insertAt + 1, size - insertAt);
+                System.arraycopy(values, insertAt, newValues, insertAt + 1, size - insertAt);
+
+                newKeys[insertAt]   = key;
+                newValues[insertAt] = value;
+
+                keys   = newKeys;
+                values = newValues;
+                size++;
+            }
+        }
+
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(char key) {
+        V ret = null;
+
+        if (isHashed) {
+            int idx = findSlot(keys, values, key);
+
+            if (values[idx] != null) {
+                ret = (V) values[idx];
+
+                deleteSlot(idx);
+
+                size--;
+
+                if (size <= SORTED_ARRAY_MAX_SIZE / 2) {
+                    toSortedArrays();
+                }
+            }
+        } else {
+            int idx = findSorted(key);
+
+            if (idx >= 0) {
+                ret = (V) values[idx];
+
+                if (size == 1) {
+                    keys   = EMPTY_KEYS;
+                    values = EMPTY_VALUES;
+                } else {
+                    char[]   newKeys   = new char[size - 1];
+                    Object[] newValues = new Object[size - 1];
+
+                    System.arraycopy(keys, 0, newKeys, 0, idx);
+                    System.arraycopy(values, 0, newValues, 0, idx);
+                    System.arraycopy(keys, idx + 1, newKeys, idx, size - idx - 1);
+                    System.arraycopy(values, idx + 1, newValues, idx, size - idx - 1);
+
+                    keys   = newKeys;
+                    values = newValues;
+                }
+
+                size--;
+            }
+        }
+
+        return ret;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<V>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    V valueAt(int idx) {
+                        return (V) values[idx];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Character, V>> entrySet() {
+        return new AbstractSet<Entry<Character, V>>() {
+            @Override
+            public Iterator<Entry<Character, V>> iterator() {
+                return new SlotIterator<Entry<Character, V>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    Entry<Character, V> valueAt(int idx) {
+                        return new SimpleImmutableEntry<>(keys[idx], (V) values[idx]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    boolean isHashed() {
+        return isHashed;
+    }
+
+    private int findSorted(char key) {
+        int low  = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int  mid    = (low + high) >>> 1;
+            char midKey = keys[mid];
+
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    // returns index of the slot holding the key, or of the empty slot where it should be inserted
+    private static int findSlot(char[] keys, Object[] values, char key) {
+        final int mask = keys.length - 1;
+        int       idx  = hash(key) & mask;
+
+        while (values[idx] != null && keys[idx] != key) {
+            idx = (idx + 1) & mask;
+        }
+
+        return idx;
+    }
+
+    // backward-shift deletion, so that no tombstones are needed for linear probing
+    private void deleteSlot(int idx) {
+        final int mask = keys.length - 1;
+        int       hole = idx;
+        int       next = (hole + 1) & mask;
+
+        while (values[next] != null) {
+            int home = hash(keys[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole]   = keys[next];
+                values[hole] = values[next];
+                hole         = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        keys[hole]   = 0;
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        char[]   newKeys   = new char[capacity];
+        Object[] newValues = new Object[capacity];
+
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                int idx = findSlot(newKeys, newValues, keys[i]);
+
+                newKeys[idx]   = keys[i];
+                newValues[idx] = values[i];
+            }
+        }
+
+        keys     = newKeys;
+        values   = newValues;
+        isHashed = true;
+    }
+
+    private void toSortedArrays() {
+        char[]   newKeys   = new char[size];
+        Object[] newValues = new Object[size];
+        int      count     = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                newKeys[count++] = keys[i];
+            }
+        }
+
+        Arrays.sort(newKeys);
+
+        for (int i = 0; i < size; i++) {
+            newValues[i] = values[findSlot(keys, values, newKeys[i])];
+        }
+
+        keys     = newKeys;
+        values   = newValues;
+        isHashed = false;
+    }
+
+    private static int hash(char key) {
+        int h = key * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int count) {
+        int ret = Integer.highestOneBit(count * 2 - 1) << 1;
+
+        return Math.max(ret, 16);
+    }
+
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        private int next = advance(0);
+
+        abstract E valueAt(int idx);
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public E next() {
+            if (next >= values.length) {
+                throw new NoSuchElementException();
+            }
+
+            E ret = valueAt(next);
+
+            next = advance(next + 1);
+
+            return ret;
+        }
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+
+            return from;
+        }
+    }
+}
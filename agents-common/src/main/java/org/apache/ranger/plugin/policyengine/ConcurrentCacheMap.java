@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache that can be used in place of Collections.synchronizedMap(new CacheMap<>(capacity)).
+ *
+ * Entries are spread over independently locked segments. Each segment holds its entries in a ConcurrentHashMap,
+ * so get() takes no lock and does not reorder anything; it only sets the 'referenced' flag of the entry. When a
+ * segment is full, put() evicts an entry using the CLOCK algorithm (an approximation of LRU): the clock hand sweeps
+ * over the entries of the segment, clearing the 'referenced' flag, and evicts the first entry found not referenced.
+ *
+ * null keys and null values are not supported.
+ */
+public class ConcurrentCacheMap<K, V> extends AbstractMap<K, V> {
+    private static final Log LOG = LogFactory.getLog(ConcurrentCacheMap.class);
+
+    private static final int MAX_SEGMENT_COUNT   = 64;
+    private static final int MIN_SEGMENT_ENTRIES = 16;
+
+    private final int             capacity;
+    private final Segment<K, V>[] segments;
+    private final int             segmentMask;
+    private final LongAdder       hitCount      = new LongAdder();
+    private final LongAdder       missCount     = new LongAdder();
+    private final LongAdder       evictionCount = new LongAdder();
+
+    public ConcurrentCacheMap(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentCacheMap(int capacity, int concurrencyLevel) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        int segmentCount = 1;
+
+        while (segmentCount < concurrencyLevel && segmentCount < MAX_SEGMENT_COUNT && (segmentCount * 2) * MIN_SEGMENT_ENTRIES <= capacity) {
+            segmentCount *= 2;
+        }
+
+        int segmentCapacity = (capacity + segmentCount - 1) / segmentCount;
+
+        this.capacity    = capacity;
+        this.segments    = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentCapacity);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("ConcurrentCacheMap(capacity=" + capacity + ", concurrencyLevel=" + concurrencyLevel + "): segmentCount=" + segmentCount + ", segmentCapacity=" + segmentCapacity);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = key != null ? segmentFor(key).map.get(key) : null;
+        V          ret  = null;
+
+        if (node != null) {
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+
+            ret = node.value;
+        }
+
+        if (ret != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+
+        return ret;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && segmentFor(key).map.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("ConcurrentCacheMap does not support null keys or values");
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            Node<K, V> node = segment.map.get(key);
+
+            if (node != null) {
+                V ret = node.value;
+
+                node.value      = value;
+                node.referenced = true;
+
+                return ret;
+            }
+
+            node = new Node<>(key, value);
+
+            if (segment.count < segment.ring.length) {
+                node.slot = segment.count;
+
+                segment.ring[segment.count++] = node;
+            } else {
+                int        slot   = segment.advanceClockHand();
+                Node<K, V> victim = segment.ring[slot];
+
+                segment.map.remove(victim.key);
+                evictionCount.increment();
+
+                node.slot = slot;
+
+                segment.ring[slot] = node;
+            }
+
+            segment.map.put(key, node);
+        }
+
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) {
+            return null;
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            Node<K, V> node = segment.map.remove(key);
+
+            if (node == null) {
+                return null;
+            }
+
+            // move the last entry of the ring into the freed slot, to keep the ring dense
+            int        last     = --segment.count;
+            Node<K, V> lastNode = segment.ring[last];
+
+            segment.ring[node.slot] = lastNode;
+            lastNode.slot           = node.slot;
+            segment.ring[last]      = null;
+
+            return node.value;
+        }
+    }
+
+    @Override
+    public int size() {
+        int ret = 0;
+
+        for (Segment<K, V> segment : segments) {
+            ret += segment.map.size();
+        }
+
+        return ret;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+
+                for (int i = 0; i < segment.count; i++) {
+                    segment.ring[i] = null;
+                }
+
+                segment.count = 0;
+                segment.hand  = 0;
+            }
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentCacheMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentCacheMap={capacity=" + capacity + ", size=" + size() + ", segmentCount=" + segments.length +
+               ", hitCount=" + getHitCount() + ", missCount=" + getMissCount() + ", evictionCount=" + getEvictionCount() + "}";
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+
+        h ^= (h >>> 16);
+
+        return segments[(h * 0x9E3779B9 >>> 16) & segmentMask];
+    }
+
+    private static class Node<K, V> {
+        final    K       key;
+        volatile V       value;
+        volatile boolean referenced;
+        int              slot;
+
+        Node(K key, V value) {
+            this.key   = key;
+            this.value = value;
+        }
+    }
+
+    private static class Segment<K, V> {
+        final ConcurrentHashMap<K, Node<K, V>> map;
+        final Node<K, V>[]                     ring;
+        int                                    count;
+        int                                    hand;
+
+        @SuppressWarnings("unchecked")
+        Segment(int capacity) {
+            this.map  = new ConcurrentHashMap<>(capacity);
+            this.ring = new Node[capacity];
+        }
+
+        // called with the segment lock held, when all slots are used
+        int advanceClockHand() {
+            while (true) {
+                Node<K, V> node = ring[hand];
+                int        slot = hand;
+
+                hand = (hand + 1) % ring.length;
+
+                if (node.referenced) {
+                    node.referenced = false;
+                } else {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        private int                  segmentIdx = 0;
+        private Iterator<Node<K, V>> nodes      = segments[0].map.values().iterator();
+        private Entry<K, V>          next       = advance();
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            Entry<K, V> ret = next;
+
+            next = advance();
+
+            return ret;
+        }
+
+        private Entry<K, V> advance() {
+            while (true) {
+                if (nodes.hasNext()) {
+                    Node<K, V> node = nodes.next();
+
+                    return new SimpleImmutableEntry<>(node.key, node.value);
+                }
+
+                if (++segmentIdx >= segments.length) {
+                    return null;
+                }
+
+                nodes = segments[segmentIdx].map.values().iterator();
+            }
+        }
+    }
+}
@@ -434,6 +434,27 @@ public boolean isResourceZoneAssociatedWithTagService(String resourceZoneName) {
         return ret;
     }
 
+    /*
+     * Returns true if result of access evaluation can depend on request attributes other than user, groups, roles,
+     * resource and access-type - like access-time or client IP address; i.e. when a resource/tag policy has
+     * validity-schedules, policy-conditions or policy-item-conditions
+     */
+    public boolean hasContextSensitivePolicies() {
+        boolean ret = hasContextSensitivePolicies(policyRepository) || hasContextSensitivePolicies(tagPolicyRepository);
+
+        if (!ret) {
+            for (RangerPolicyRepository zonePolicyRepository : zonePolicyRepositories.values()) {
+                if (hasContextSensitivePolicies(zonePolicyRepository)) {
+                    ret = true;
+
+                    break;
+                }
+            }
+        }
+
+        return ret;
+    }
+
     public void preCleanup(boolean isForced) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("==> PolicyEngine.preCleanup(isForced=" + isForced + ")");
@@ -926,5 +947,31 @@ private void getDeltasSortedByZones(PolicyEngine current, ServicePolicies servic
             LOG.debug("<== getDeltasSortedByZones()");
         }
     }
+
+    private static boolean hasContextSensitivePolicies(RangerPolicyRepository policyRepository) {
+        if (policyRepository != null && policyRepository.getPolicies() != null) {
+            for (RangerPolicy policy : policyRepository.getPolicies()) {
+                if (CollectionUtils.isNotEmpty(policy.getValiditySchedules()) || CollectionUtils.isNotEmpty(policy.getConditions())
+                        || hasConditions(policy.getPolicyItems()) || hasConditions(policy.getDenyPolicyItems())
+                        || hasConditions(policy.getAllowExceptions()) || hasConditions(policy.getDenyExceptions())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasConditions(List<RangerPolicy.RangerPolicyItem> policyItems) {
+        if (policyItems != null) {
+            for (RangerPolicy.RangerPolicyItem policyItem : policyItems) {
+                if (CollectionUtils.isNotEmpty(policyItem.getConditions())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
 }
 
@@ -19,8 +19,17 @@
 
 package org.apache.ranger.plugin.policyengine;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public interface RangerAccessRequestProcessor {
     void preProcess(RangerAccessRequest request);
 
+    // rolesCache is used to share roles computed for a user and groups across requests in a batch
+    default void preProcess(RangerAccessRequest request, Map<List<Object>, Set<String>> rolesCache) {
+        preProcess(request);
+    }
+
     default void enrich(RangerAccessRequest request) {}
 }
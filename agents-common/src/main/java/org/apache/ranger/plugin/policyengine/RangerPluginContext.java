@@ -28,6 +28,13 @@
 import org.apache.ranger.plugin.service.RangerAuthContext;
 import org.apache.ranger.plugin.service.RangerAuthContextListener;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class RangerPluginContext {
 	private static final Log LOG = LogFactory.getLog(RangerPluginContext.class);
 
@@ -35,6 +42,7 @@ public class RangerPluginContext {
 	private       RangerAuthContext         authContext;
 	private       RangerAuthContextListener authContextListener;
 	private 	  RangerAdminClient         adminClient;
+	private volatile ExecutorService        batchEvaluationExecutor;
 
 
 	public RangerPluginContext(RangerPluginConfig config) {
@@ -65,6 +73,39 @@ public void notifyAuthContextChanged() {
 		}
 	}
 
+	/*
+	 * Returns the pool used to evaluate large batches of requests in parallel; null if parallel evaluation is not enabled.
+	 * Threads of the pool are daemon threads, and exit when idle. Tasks submitted when the pool is busy are discarded,
+	 * as the thread submitting the batch also evaluates the requests until the batch is completed.
+	 */
+	public ExecutorService getBatchEvaluationExecutor() {
+		ExecutorService ret = batchEvaluationExecutor;
+
+		if (ret == null && config.getPolicyEngineOptions().enableParallelBatchEvaluation) {
+			synchronized (this) {
+				ret = batchEvaluationExecutor;
+
+				if (ret == null) {
+					int threadCount = config.getPolicyEngineOptions().parallelBatchEvaluationThreads;
+
+					if (threadCount <= 0) {
+						threadCount = Runtime.getRuntime().availableProcessors();
+					}
+
+					LOG.info("Creating pool of " + threadCount + " threads for parallel evaluation of request batches");
+
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(threadCount * 4), new BatchEvaluatorThreadFactory(config.getServiceName()), new ThreadPoolExecutor.DiscardPolicy());
+
+					executor.allowCoreThreadTimeOut(true);
+
+					ret = batchEvaluationExecutor = executor;
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	public RangerAdminClient getAdminClient() {
 		return adminClient;
 	}
@@ -115,4 +156,22 @@ public RangerAdminClient createAdminClient(RangerPluginConfig pluginConfig) {
 
 		return ret;
 	}
+
+	private static class BatchEvaluatorThreadFactory implements ThreadFactory {
+		private final String        namePrefix;
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		BatchEvaluatorThreadFactory(String serviceName) {
+			this.namePrefix = "RangerBatchEvaluator-" + serviceName + "-";
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread ret = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+
+			ret.setDaemon(true);
+
+			return ret;
+		}
+	}
 }
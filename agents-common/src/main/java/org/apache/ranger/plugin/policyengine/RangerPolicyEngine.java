@@ -47,6 +47,11 @@ public interface RangerPolicyEngine {
 	String PLUGIN_AUDIT_FILTER         = "ranger.plugin.audit.filters";
 	String PLUGIN_SERVICE_ADMINS	   = "ranger.plugin.service.admins";
 
+	String PLUGIN_AUDIT_SAMPLE_RATE             = "ranger.plugin.audit.sample.rate";
+	String PLUGIN_AUDIT_RATE_LIMIT_PER_USER     = "ranger.plugin.audit.rate.limit.per.user";
+	String PLUGIN_AUDIT_RATE_LIMIT_PER_RESOURCE = "ranger.plugin.audit.rate.limit.per.resource";
+	String PLUGIN_AUDIT_RATE_LIMIT_BURST        = "ranger.plugin.audit.rate.limit.burst";
+
 	String USER_CURRENT   = "{" + RangerAccessRequestUtil.KEY_USER + "}";
 	String RESOURCE_OWNER = "{OWNER}";
 
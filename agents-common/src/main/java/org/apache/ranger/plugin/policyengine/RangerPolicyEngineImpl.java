@@ -48,6 +48,7 @@
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -56,6 +57,11 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator.ACCESS_CONDITIONAL;
 
@@ -95,8 +101,11 @@ public RangerPolicyEngineImpl(ServicePolicies servicePolicies, RangerPluginConte
 		Configuration config = pluginContext != null ? pluginContext.getConfig() : null;
 
 		if (config != null) {
-			boolean isDeltasSupported = config.getBoolean(pluginContext.getConfig().getPropertyPrefix() + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_POLICY_DELTA, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_POLICY_DELTA_DEFAULT);
-			isUseReadWriteLock = isDeltasSupported && config.getBoolean(pluginContext.getConfig().getPropertyPrefix() + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_IN_PLACE_POLICY_UPDATES, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_IN_PLACE_POLICY_UPDATES_DEFAULT);
+			RangerPolicyEngineOptions options           = pluginContext.getConfig().getPolicyEngineOptions();
+			boolean                   isDeltasSupported = config.getBoolean(pluginContext.getConfig().getPropertyPrefix() + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_POLICY_DELTA, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_POLICY_DELTA_DEFAULT);
+			boolean                   isCopyOnWrite     = options != null && options.enableCopyOnWritePolicyUpdates; // deltas are applied to a copy that shares unchanged parts, hence no need to lock
+
+			isUseReadWriteLock = isDeltasSupported && !isCopyOnWrite && config.getBoolean(pluginContext.getConfig().getPropertyPrefix() + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_IN_PLACE_POLICY_UPDATES, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_IN_PLACE_POLICY_UPDATES_DEFAULT);
 		} else {
 			isUseReadWriteLock = false;
 		}
@@ -179,12 +188,20 @@ public Collection<RangerAccessResult> evaluatePolicies(Collection<RangerAccessRe
 				}
 			}
 			if (requests != null) {
-				for (RangerAccessRequest request : requests) {
-					requestProcessor.preProcess(request);
+				ExecutorService executor = getBatchEvaluationExecutor(requests.size());
+
+				if (executor != null) {
+					ret = evaluatePoliciesInParallel(requests, policyType, executor);
+				} else {
+					Map<List<Object>, Set<String>> rolesCache = new HashMap<>();
 
-					RangerAccessResult result = zoneAwareAccessEvaluationWithNoAudit(request, policyType);
+					for (RangerAccessRequest request : requests) {
+						requestProcessor.preProcess(request, rolesCache);
 
-					ret.add(result);
+						RangerAccessResult result = zoneAwareAccessEvaluationWithNoAudit(request, policyType);
+
+						ret.add(result);
+					}
 				}
 			}
 
@@ -516,6 +533,20 @@ public List<RangerPolicy> getTagPolicies() {
 		return ret;
 	}
 
+	public boolean hasContextSensitivePolicies() {
+		boolean ret;
+
+		try (RangerReadWriteLock.RangerLock readLock = policyEngine.getReadLock()) {
+			if (LOG.isDebugEnabled()) {
+				if (readLock.isLockingEnabled()) {
+					LOG.debug("Acquired lock - " + readLock);
+				}
+			}
+			ret = policyEngine.hasContextSensitivePolicies();
+		}
+		return ret;
+	}
+
 	// This API is used only used by test code
 	@Override
 	public RangerResourceAccessInfo getResourceAccessInfo(RangerAccessRequest request) {
@@ -585,6 +616,89 @@ PolicyEngine getPolicyEngine() {
 		return policyEngine;
 	}
 
+	private ExecutorService getBatchEvaluationExecutor(int batchSize) {
+		RangerPluginContext       pluginContext = policyEngine.getPluginContext();
+		RangerPolicyEngineOptions options       = pluginContext != null ? pluginContext.getConfig().getPolicyEngineOptions() : null;
+
+		return options != null && options.enableParallelBatchEvaluation && batchSize >= Math.max(options.parallelBatchEvaluationMinSize, 2) ? pluginContext.getBatchEvaluationExecutor() : null;
+	}
+
+	/*
+	 * Requests are evaluated by the calling thread along with threads of the executor: each thread picks the next
+	 * request to evaluate from the batch, until all requests are evaluated. The calling thread continues to hold the
+	 * read-lock on the policy-engine until all requests are evaluated, hence the evaluator threads must not acquire it.
+	 * Results are returned in the same order as the requests.
+	 */
+	private Collection<RangerAccessResult> evaluatePoliciesInParallel(Collection<RangerAccessRequest> requests, final int policyType, ExecutorService executor) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicyEngineImpl.evaluatePoliciesInParallel(requestCount=" + requests.size() + ", policyType=" + policyType + ")");
+		}
+
+		final RangerPolicyEngineOptions      options     = policyEngine.getPluginContext().getConfig().getPolicyEngineOptions();
+		final RangerAccessRequest[]          batch       = requests.toArray(new RangerAccessRequest[requests.size()]);
+		final RangerAccessResult[]           results     = new RangerAccessResult[batch.length];
+		final AtomicInteger                  nextIndex   = new AtomicInteger();
+		final CountDownLatch                 pending     = new CountDownLatch(batch.length);
+		final AtomicReference<Throwable>     failure     = new AtomicReference<>();
+		final Map<List<Object>, Set<String>> rolesCache  = new ConcurrentHashMap<>();
+		final int                            threadCount = options.parallelBatchEvaluationThreads > 0 ? options.parallelBatchEvaluationThreads : Runtime.getRuntime().availableProcessors();
+		final int                            helperCount = Math.min(batch.length / Math.max(options.parallelBatchEvaluationMinSize, 1), threadCount + 1) - 1;
+
+		Runnable evaluator = new Runnable() {
+			@Override
+			public void run() {
+				for (int i = nextIndex.getAndIncrement(); i < batch.length; i = nextIndex.getAndIncrement()) {
+					try {
+						requestProcessor.preProcess(batch[i], rolesCache);
+
+						results[i] = zoneAwareAccessEvaluationWithNoAudit(batch[i], policyType);
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						pending.countDown();
+					}
+				}
+			}
+		};
+
+		for (int i = 0; i < helperCount; i++) {
+			executor.execute(evaluator);
+		}
+
+		evaluator.run();
+
+		boolean isInterrupted = false;
+
+		while (pending.getCount() > 0) {
+			try {
+				pending.await();
+			} catch (InterruptedException excp) {
+				// requests being evaluated by other threads will complete shortly; preserve the interrupt for the caller
+				isInterrupted = true;
+			}
+		}
+
+		if (isInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		Throwable t = failure.get();
+
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		} else if (t != null) {
+			throw new RuntimeException(t);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicyEngineImpl.evaluatePoliciesInParallel(requestCount=" + requests.size() + ", policyType=" + policyType + "): helperCount=" + Math.max(helperCount, 0));
+		}
+
+		return new ArrayList<>(Arrays.asList(results));
+	}
+
 	private RangerPolicyEngineImpl(final PolicyEngine policyEngine, RangerPolicyEngineImpl other) {
 		this.policyEngine     = policyEngine;
 		this.requestProcessor = new RangerDefaultRequestProcessor(policyEngine);
@@ -36,7 +36,12 @@ public class RangerPolicyEngineOptions {
 	public boolean enableTagEnricherWithLocalRefresher = false;
 	public boolean disableAccessEvaluationWithPolicyACLSummary = true;
 	public boolean optimizeTrieForRetrieval = false;
+	public boolean optimizeTrieForSpace = false;
 	public boolean disableRoleResolution = true;
+	public boolean enableParallelBatchEvaluation = false;
+	public int     parallelBatchEvaluationThreads = 0; // 0: number of available processors
+	public int     parallelBatchEvaluationMinSize = 32;
+	public boolean enableCopyOnWritePolicyUpdates = false;
 
 	private RangerServiceDefHelper serviceDefHelper;
 
@@ -54,7 +59,12 @@ public RangerPolicyEngineOptions(final RangerPolicyEngineOptions other) {
 		this.enableTagEnricherWithLocalRefresher = other.enableTagEnricherWithLocalRefresher;
 		this.disableAccessEvaluationWithPolicyACLSummary = other.disableAccessEvaluationWithPolicyACLSummary;
 		this.optimizeTrieForRetrieval = other.optimizeTrieForRetrieval;
+		this.optimizeTrieForSpace = other.optimizeTrieForSpace;
 		this.disableRoleResolution = other.disableRoleResolution;
+		this.enableParallelBatchEvaluation = other.enableParallelBatchEvaluation;
+		this.parallelBatchEvaluationThreads = other.parallelBatchEvaluationThreads;
+		this.parallelBatchEvaluationMinSize = other.parallelBatchEvaluationMinSize;
+		this.enableCopyOnWritePolicyUpdates = other.enableCopyOnWritePolicyUpdates;
 		this.serviceDefHelper = null;
 	}
 
@@ -75,7 +85,12 @@ public void configureForPlugin(Configuration conf, String propertyPrefix) {
 		enableTagEnricherWithLocalRefresher = false;
 		disableAccessEvaluationWithPolicyACLSummary = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.access.evaluation.with.policy.acl.summary", true);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
 		disableRoleResolution = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.role.resolution", true);
+		enableParallelBatchEvaluation = conf.getBoolean(propertyPrefix + ".policyengine.option.enable.parallel.batch.evaluation", false);
+		parallelBatchEvaluationThreads = conf.getInt(propertyPrefix + ".policyengine.option.parallel.batch.evaluation.threads", 0);
+		parallelBatchEvaluationMinSize = conf.getInt(propertyPrefix + ".policyengine.option.parallel.batch.evaluation.min.size", 32);
+		enableCopyOnWritePolicyUpdates = conf.getBoolean(propertyPrefix + ".policyengine.option.enable.copy.on.write.policy.updates", false);
 
 	}
 
@@ -92,7 +107,10 @@ public void configureDefaultRangerAdmin(Configuration conf, String propertyPrefi
 		enableTagEnricherWithLocalRefresher = false;
 		disableAccessEvaluationWithPolicyACLSummary = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.access.evaluation.with.policy.acl.summary", true);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
 		disableRoleResolution = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.role.resolution", true);
+		enableParallelBatchEvaluation = false;
+		enableCopyOnWritePolicyUpdates = false;
 
 	}
 
@@ -104,11 +122,14 @@ public void configureDelegateAdmin(Configuration conf, String propertyPrefix) {
 		disablePolicyRefresher = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.policy.refresher", true);
 		disableTagRetriever = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.tag.retriever", true);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
 
 
 		cacheAuditResults = false;
 		evaluateDelegateAdminOnly = true;
 		enableTagEnricherWithLocalRefresher = false;
+		enableParallelBatchEvaluation = false;
+		enableCopyOnWritePolicyUpdates = false;
 
 	}
 
@@ -120,11 +141,14 @@ public void configureRangerAdminForPolicySearch(Configuration conf, String prope
 		disablePolicyRefresher = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.policy.refresher", true);
 		disableTagRetriever = conf.getBoolean(propertyPrefix + ".policyengine.option.disable.tag.retriever", false);
 		optimizeTrieForRetrieval = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.retrieval", false);
+		optimizeTrieForSpace = conf.getBoolean(propertyPrefix + ".policyengine.option.optimize.trie.for.space", false);
 
 
 		cacheAuditResults = false;
 		evaluateDelegateAdminOnly = false;
 		enableTagEnricherWithLocalRefresher = true;
+		enableParallelBatchEvaluation = false;
+		enableCopyOnWritePolicyUpdates = false;
 	}
 
 	public RangerServiceDefHelper getServiceDefHelper() {
@@ -155,7 +179,12 @@ public boolean equals(Object other) {
 					&& this.evaluateDelegateAdminOnly == that.evaluateDelegateAdminOnly
 					&& this.enableTagEnricherWithLocalRefresher == that.enableTagEnricherWithLocalRefresher
 					&& this.optimizeTrieForRetrieval == that.optimizeTrieForRetrieval
-					&& this.disableRoleResolution == that.disableRoleResolution;
+					&& this.optimizeTrieForSpace == that.optimizeTrieForSpace
+					&& this.disableRoleResolution == that.disableRoleResolution
+					&& this.enableParallelBatchEvaluation == that.enableParallelBatchEvaluation
+					&& this.parallelBatchEvaluationThreads == that.parallelBatchEvaluationThreads
+					&& this.parallelBatchEvaluationMinSize == that.parallelBatchEvaluationMinSize
+					&& this.enableCopyOnWritePolicyUpdates == that.enableCopyOnWritePolicyUpdates;
 		}
 		return ret;
 	}
@@ -183,8 +212,17 @@ public int hashCode() {
 		ret *= 2;
 		ret += optimizeTrieForRetrieval ? 1 : 0;
 		ret *= 2;
+		ret += optimizeTrieForSpace ? 1 : 0;
+		ret *= 2;
 		ret += disableRoleResolution ? 1 : 0;
-		ret *= 2;		return ret;
+		ret *= 2;
+		ret += enableParallelBatchEvaluation ? 1 : 0;
+		ret *= 2;
+		ret = ret * 31 + parallelBatchEvaluationThreads;
+		ret = ret * 31 + parallelBatchEvaluationMinSize;
+		ret *= 2;
+		ret += enableCopyOnWritePolicyUpdates ? 1 : 0;
+		return ret;
 	}
 
 	@Override
@@ -200,8 +238,13 @@ public String toString() {
 				", enableTagEnricherWithLocalRefresher: " + enableTagEnricherWithLocalRefresher +
 				", disableTrieLookupPrefilter: " + disableTrieLookupPrefilter +
 				", optimizeTrieForRetrieval: " + optimizeTrieForRetrieval +
+				", optimizeTrieForSpace: " + optimizeTrieForSpace +
 				", cacheAuditResult: " + cacheAuditResults +
 				", disableRoleResolution: " + disableRoleResolution +
+				", enableParallelBatchEvaluation: " + enableParallelBatchEvaluation +
+				", parallelBatchEvaluationThreads: " + parallelBatchEvaluationThreads +
+				", parallelBatchEvaluationMinSize: " + parallelBatchEvaluationMinSize +
+				", enableCopyOnWritePolicyUpdates: " + enableCopyOnWritePolicyUpdates +
 				" }";
 
 	}
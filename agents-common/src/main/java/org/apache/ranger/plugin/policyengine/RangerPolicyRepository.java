@@ -79,7 +79,7 @@ enum AuditModeEnum {
     private final long                              policyVersion;
     private /*final*/ List<RangerContextEnricher>       contextEnrichers;
     private final AuditModeEnum                     auditModeEnum;
-    private final Map<String, AuditInfo>            accessAuditCache;
+    private final ConcurrentCacheMap<String, AuditInfo> accessAuditCache;
     private final String                            componentServiceName;
     private final RangerServiceDef                  componentServiceDef;
     private final Map<String, RangerResourceTrie>   policyResourceTrie;
@@ -111,11 +111,13 @@ enum AuditModeEnum {
         this.componentServiceDef       = other.componentServiceDef;
         this.policyEvaluatorsMap       = new HashMap<>(other.policyEvaluatorsMap);
 
+        final boolean isCopyOnWrite = options.enableCopyOnWritePolicyUpdates; // tries of other are shared, not copied
+
         if (other.policyResourceTrie != null) {
             this.policyResourceTrie = new HashMap<>();
 
             for (Map.Entry<String, RangerResourceTrie> entry : other.policyResourceTrie.entrySet()) {
-                policyResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue()));
+                policyResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue(), isCopyOnWrite));
             }
         } else {
             this.policyResourceTrie = null;
@@ -125,7 +127,7 @@ enum AuditModeEnum {
             this.dataMaskResourceTrie = new HashMap<>();
 
             for (Map.Entry<String, RangerResourceTrie> entry : other.dataMaskResourceTrie.entrySet()) {
-                dataMaskResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue()));
+                dataMaskResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue(), isCopyOnWrite));
             }
         } else {
             this.dataMaskResourceTrie = null;
@@ -135,7 +137,7 @@ enum AuditModeEnum {
             this.rowFilterResourceTrie = new HashMap<>();
 
             for (Map.Entry<String, RangerResourceTrie> entry : other.rowFilterResourceTrie.entrySet()) {
-                rowFilterResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue()));
+                rowFilterResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue(), isCopyOnWrite));
             }
         } else {
             this.rowFilterResourceTrie = null;
@@ -145,16 +147,16 @@ enum AuditModeEnum {
             this.auditFilterResourceTrie = new HashMap<>();
 
             for (Map.Entry<String, RangerResourceTrie> entry : other.auditFilterResourceTrie.entrySet()) {
-                auditFilterResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue()));
+                auditFilterResourceTrie.put(entry.getKey(), new RangerResourceTrie(entry.getValue(), isCopyOnWrite));
             }
         } else {
             this.auditFilterResourceTrie = null;
         }
 
         if (other.accessAuditCache != null) {
-            int auditResultCacheSize = other.accessAuditCache.size();
+            int auditResultCacheSize = other.accessAuditCache.getCapacity();
 
-            this.accessAuditCache = Collections.synchronizedMap(new CacheMap<String, AuditInfo>(auditResultCacheSize));
+            this.accessAuditCache = new ConcurrentCacheMap<>(auditResultCacheSize);
         } else {
             this.accessAuditCache = null;
         }
@@ -214,7 +216,9 @@ public RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginConte
                 final int RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64 * 1024;
 
                 int auditResultCacheSize = pluginContext.getConfig().getInt(propertyName, RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
-                accessAuditCache = Collections.synchronizedMap(new CacheMap<String, AuditInfo>(auditResultCacheSize));
+
+                // a size of 0 or less disables the cache
+                accessAuditCache = auditResultCacheSize > 0 ? new ConcurrentCacheMap<>(auditResultCacheSize) : null;
             } else {
                 accessAuditCache = null;
             }
@@ -458,6 +462,9 @@ void cleanup() {
             }
         }
         if (LOG.isDebugEnabled()) {
+            if (accessAuditCache != null) {
+                LOG.debug("accessAuditCache for service[" + serviceName + "], zone[" + zoneName + "]: " + accessAuditCache);
+            }
             LOG.debug("<== cleanup()");
         }
     }
@@ -24,7 +24,7 @@
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.hadoop.conf.Configuration;
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceEvaluator;
@@ -60,19 +60,31 @@
     private final boolean           optWildcard;
     private final String            wildcardChars;
     private final boolean           isOptimizedForRetrieval;
-    private final Character         separatorChar;
+    private final boolean           isOptimizedForSpace;
+    private final char              separatorChar;
+    private final int               generation;
+    private final boolean           isSharingNodes;
     private       Set<T>            inheritedEvaluators;
-    private final TrieNode<T>       root;
+    private       TrieNode<T>       root;
 
     public RangerResourceTrie(RangerResourceDef resourceDef, List<T> evaluators) {
         this(resourceDef, evaluators, true, null);
     }
 
     public RangerResourceTrie(RangerResourceTrie<T> other) {
+        this(other, false);
+    }
+
+    /*
+     * With isCopyOnWrite, the copy initially shares all nodes with other: a node is copied only when it is updated,
+     * along with the path from root to it, so that the cost of the copy is proportional to the size of the update
+     * instead of the size of the trie. other is not modified and can continue to be used for lookups.
+     */
+    public RangerResourceTrie(RangerResourceTrie<T> other, boolean isCopyOnWrite) {
         RangerPerfTracer perf = null;
 
         if(RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
-            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.copyTrie(name=" + other.resourceDef.getName() + ")");
+            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.copyTrie(name=" + other.resourceDef.getName() + ", isCopyOnWrite=" + isCopyOnWrite + ")");
         }
 
         this.resourceDef             = other.resourceDef;
@@ -80,9 +92,12 @@ public RangerResourceTrie(RangerResourceTrie<T> other) {
         this.optWildcard             = other.optWildcard;
         this.wildcardChars           = other.wildcardChars;
         this.isOptimizedForRetrieval = false;
+        this.isOptimizedForSpace     = other.isOptimizedForSpace;
         this.separatorChar           = other.separatorChar;
+        this.generation              = other.generation + 1;
+        this.isSharingNodes          = isCopyOnWrite;
         this.inheritedEvaluators     = other.inheritedEvaluators != null ? new HashSet<>(other.inheritedEvaluators) : null;
-        this.root                    = copyTrieSubtree(other.root, null);
+        this.root                    = isCopyOnWrite ? other.root : copyTrieSubtree(other.root, null);
 
         RangerPerfTracer.logAlways(perf);
 
@@ -98,8 +113,12 @@ public RangerResourceTrie(RangerResourceTrie<T> other) {
     }
 
     public RangerResourceTrie(RangerResourceDef resourceDef, List<T> evaluators, boolean isOptimizedForRetrieval, RangerPluginContext pluginContext) {
+        this(resourceDef, evaluators, isOptimizedForRetrieval, isOptimizedForSpace(pluginContext), pluginContext);
+    }
+
+    public RangerResourceTrie(RangerResourceDef resourceDef, List<T> evaluators, boolean isOptimizedForRetrieval, boolean isOptimizedForSpace, RangerPluginContext pluginContext) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerResourceTrie(" + resourceDef.getName() + ", evaluatorCount=" + evaluators.size() + ", isOptimizedForRetrieval=" + isOptimizedForRetrieval + ")");
+            LOG.debug("==> RangerResourceTrie(" + resourceDef.getName() + ", evaluatorCount=" + evaluators.size() + ", isOptimizedForRetrieval=" + isOptimizedForRetrieval + ", isOptimizedForSpace=" + isOptimizedForSpace + ")");
         }
 
         RangerPerfTracer perf = null;
@@ -108,8 +127,8 @@ public RangerResourceTrie(RangerResourceDef resourceDef, List<T> evaluators, boo
             perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(name=" + resourceDef.getName() + ")");
         }
 
-        Configuration config             = pluginContext != null ? pluginContext.getConfig() : null;
-        int           builderThreadCount = config != null ? config.getInt(TRIE_BUILDER_THREAD_COUNT, 1) : 1;
+        RangerPluginConfig config             = pluginContext != null ? pluginContext.getConfig() : null;
+        int                builderThreadCount = config != null ? config.getInt(TRIE_BUILDER_THREAD_COUNT, 1) : 1;
 
         if (builderThreadCount < 1) {
             builderThreadCount = 1;
@@ -138,7 +157,10 @@ public RangerResourceTrie(RangerResourceDef resourceDef, List<T> evaluators, boo
         this.optWildcard             = RangerAbstractResourceMatcher.getOptionWildCard(matcherOptions);
         this.wildcardChars           = optWildcard ? DEFAULT_WILDCARD_CHARS + tokenReplaceSpecialChars : "" + tokenReplaceSpecialChars;
         this.isOptimizedForRetrieval = isOptimizedForRetrieval;
+        this.isOptimizedForSpace     = isOptimizedForSpace;
         this.separatorChar           = ServiceDefUtil.getCharOption(matcherOptions, OPTION_PATH_SEPARATOR, DEFAULT_PATH_SEPARATOR_CHAR);
+        this.generation              = 0;
+        this.isSharingNodes          = false;
 
         TrieNode<T> tmpRoot = buildTrie(resourceDef, evaluators, builderThreadCount);
 
@@ -209,7 +231,7 @@ public void add(RangerPolicyResource resource, T evaluator) {
             } else {
                 if (CollectionUtils.isNotEmpty(resource.getValues())) {
                     for (String value : resource.getValues()) {
-                        insert(root, value, resource.getIsRecursive(), evaluator);
+                        insert(getOwnedRoot(), value, resource.getIsRecursive(), evaluator);
                     }
                 }
             }
@@ -239,10 +261,18 @@ public void delete(RangerPolicyResource resource, T evaluator) {
             removeInheritedEvaluator(evaluator);
         } else {
             for (String value : resource.getValues()) {
-                TrieNode<T> node = getNodeForResource(value);
-                if (node != null) {
-                    node.removeEvaluatorFromSubtree(evaluator);
+                List<TrieNode<T>> path   = getPathForResource(value);
+                TrieNode<T>       node   = path.get(path.size() - 1);
+                TrieNode<T>       parent = path.size() > 1 ? path.get(path.size() - 2) : null;
+
+                if (CollectionUtils.isNotEmpty(node.getWildcardEvaluators()) && node.getWildcardEvaluators().contains(evaluator)) {
+                    prepareForWildcardUpdate(node, parent);
+                    node.removeWildcardEvaluator(evaluator);
+                } else {
+                    node.removeEvaluator(evaluator);
                 }
+
+                node.removeSelfFromTrie(parent);
             }
         }
 
@@ -257,7 +287,22 @@ public void delete(RangerPolicyResource resource, T evaluator) {
 
     public void wrapUpUpdate() {
         if (root != null) {
-            root.wrapUpUpdate();
+            if (isOptimizedForSpace && root.getGeneration() == generation) { // root shared with another trie implies no updates to this trie
+                root.compactSubtree(null, generation);
+            }
+
+            if (isOptimizedForRetrieval) {
+                RangerPerfTracer postSetupPerf = null;
+
+                if (RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
+                    postSetupPerf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(name=" + resourceDef.getName() + "-postSetup)");
+                }
+
+                root.postSetup(null);
+
+                RangerPerfTracer.logAlways(postSetupPerf);
+            }
+
             if (TRACE_LOG.isTraceEnabled()) {
                 StringBuilder sb = new StringBuilder();
                 root.toString("", sb);
@@ -266,10 +311,30 @@ public void wrapUpUpdate() {
         }
     }
 
+    boolean isOptimizedForSpace() {
+        return isOptimizedForSpace;
+    }
+
     TrieNode<T> getRoot() {
         return root;
     }
 
+    boolean isSharingNodes() {
+        return isSharingNodes;
+    }
+
+    // number of nodes not shared with the trie this trie was copied from
+    int getOwnedNodeCount() {
+        return root.getGeneration() == generation ? root.getOwnedNodeCount(generation) : 0;
+    }
+
+    private static boolean isOptimizedForSpace(RangerPluginContext pluginContext) {
+        RangerPluginConfig        config  = pluginContext != null ? pluginContext.getConfig() : null;
+        RangerPolicyEngineOptions options = config != null ? config.getPolicyEngineOptions() : null;
+
+        return options != null && options.optimizeTrieForSpace;
+    }
+
     private void addInheritedEvaluator(T evaluator) {
         if (inheritedEvaluators == null) {
             inheritedEvaluators = new HashSet<>();
@@ -294,40 +359,7 @@ private TrieNode<T> copyTrieSubtree(final TrieNode<T> source, final TrieNode<T>
             TRACE_LOG.trace("==> copyTrieSubtree(" + sb + ")");
         }
 
-        TrieNode<T> dest = new TrieNode<>(source.str);
-
-        if (parent != null) {
-            parent.addChild(dest);
-        }
-
-        synchronized (source.children) {
-            dest.isSetup                           = source.isSetup;
-            dest.isSharingParentWildcardEvaluators = source.isSharingParentWildcardEvaluators;
-
-            if (source.isSharingParentWildcardEvaluators) {
-                if (dest.getParent() != null) {
-                    dest.wildcardEvaluators = dest.getParent().getWildcardEvaluators();
-                } else {
-                    dest.wildcardEvaluators = null;
-                }
-            } else {
-                if (source.wildcardEvaluators != null) {
-                    dest.wildcardEvaluators = new HashSet<>(source.wildcardEvaluators);
-                } else {
-                    dest.wildcardEvaluators = null;
-                }
-            }
-
-            if (source.evaluators != null) {
-                if (source.evaluators == source.wildcardEvaluators) {
-                    dest.evaluators = dest.wildcardEvaluators;
-                } else {
-                    dest.evaluators = new HashSet<>(source.evaluators);
-                }
-            } else {
-                dest.evaluators = null;
-            }
-        }
+        TrieNode<T> dest = source.copy(parent, generation);
 
         Map<Character, TrieNode<T>> children = source.getChildren();
 
@@ -357,7 +389,7 @@ private TrieNode<T> buildTrie(RangerResourceDef resourceDef, List<T> evaluators,
             perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(resourceDef=" + resourceDef.getName() + ")");
         }
 
-        TrieNode<T>                           ret             = new TrieNode<>(null);
+        TrieNode<T>                           ret             = newTrieNode(null);
         final boolean                         isMultiThreaded = builderThreadCount > 1;
         final List<ResourceTrieBuilderThread> builderThreads;
         final Map<Character, Integer>         builderThreadMap;
@@ -488,11 +520,45 @@ private int getMaxDepth() {
         return root.getMaxDepth();
     }
 
-    private Character getLookupChar(char ch) {
+    private TrieNode<T> newTrieNode(String str) {
+        return new TrieNode<>(str, optIgnoreCase, isOptimizedForSpace, generation);
+    }
+
+    private TrieNode<T> getOwnedRoot() {
+        if (root.getGeneration() != generation) {
+            root = root.copyForUpdate(null, generation);
+        }
+
+        return root;
+    }
+
+    /*
+     * Readies node, owned by this trie, for an update to its wildcard evaluators. Nodes in its subtree that are shared
+     * with other tries are copied first, as their setup depends on the wildcard evaluators of node.
+     */
+    private void prepareForWildcardUpdate(TrieNode<T> node, TrieNode<T> parent) {
+        if (isSharingNodes) {
+            copySharedSubtrees(node);
+        }
+
+        node.undoSetup(parent == null ? null : parent.getWildcardEvaluators());
+    }
+
+    private void copySharedSubtrees(TrieNode<T> node) {
+        for (TrieNode<T> child : new ArrayList<>(node.getChildren().values())) {
+            if (child.getGeneration() != generation) {
+                copyTrieSubtree(child, node);
+            } else {
+                copySharedSubtrees(child);
+            }
+        }
+    }
+
+    private char getLookupChar(char ch) {
         return optIgnoreCase ? Character.toLowerCase(ch) : ch;
     }
 
-    private Character getLookupChar(String str, int index) {
+    private char getLookupChar(String str, int index) {
         return getLookupChar(str.charAt(index));
     }
 
@@ -523,10 +589,16 @@ private void insert(TrieNode<T> currentRoot, String resource, boolean isRecursiv
         final boolean isWildcard = prefix.length() != resource.length();
 
         if (StringUtils.isNotEmpty(prefix)) {
-            curr = curr.getOrCreateChild(prefix);
+            curr = curr.getOrCreateChild(prefix, generation);
         }
 
         if(isWildcard || isRecursive) {
+            if (curr.isSetup() || isSharingNodes) {
+                List<TrieNode<T>> path = curr == currentRoot ? null : getPathForResource(prefix);
+
+                prepareForWildcardUpdate(curr, path != null && path.size() > 1 ? path.get(path.size() - 2) : null);
+            }
+
             curr.addWildcardEvaluator(evaluator);
         } else {
             curr.addEvaluator(evaluator);
@@ -600,13 +672,15 @@ private Set<T> getEvaluatorsForResource(String resource, RangerAccessRequest.Res
             final boolean resourceEndsWithSep = resource.charAt(resource.length() - 1) == separatorChar;
 
             if (isSelfMatch) { // resource == path(curr)
+                final TrieNode<T> self = curr;
+
                 if (resourceEndsWithSep) { // ex: resource=/tmp/
-                    curr.getChildren().values().stream().forEach(c -> c.collectChildEvaluators(separatorChar, 0, childEvalautors));
+                    self.getChildren().values().stream().forEach(c -> c.collectChildEvaluators(self, separatorChar, 0, childEvalautors));
                 } else { // ex: resource=/tmp
-                    curr = curr.getChild(separatorChar);
+                    child = self.getChild(separatorChar);
 
-                    if (curr != null) {
-                        curr.collectChildEvaluators(separatorChar, 1, childEvalautors);
+                    if (child != null) {
+                        child.collectChildEvaluators(self, separatorChar, 1, childEvalautors);
                     }
                 }
             } else if (child != null) { // resource != path(child) ex: (resource=/tmp, path(child)=/tmp/test.txt or path(child)=/tmpdir)
@@ -615,9 +689,9 @@ private Set<T> getEvaluatorsForResource(String resource, RangerAccessRequest.Res
 
                 if (isPrefixMatch) {
                     if (resourceEndsWithSep) { // ex: resource=/tmp/
-                        child.collectChildEvaluators(separatorChar, remainingLen, childEvalautors);
+                        child.collectChildEvaluators(curr, separatorChar, remainingLen, childEvalautors);
                     } else if (child.getStr().charAt(remainingLen) == separatorChar) { //  ex: resource=/tmp
-                        child.collectChildEvaluators(separatorChar, remainingLen + 1, childEvalautors);
+                        child.collectChildEvaluators(curr, separatorChar, remainingLen + 1, childEvalautors);
                     }
                 }
             }
@@ -640,23 +714,31 @@ private Set<T> getEvaluatorsForResource(String resource, RangerAccessRequest.Res
         return ret;
     }
 
-    private TrieNode<T> getNodeForResource(String resource) {
+    /*
+     * Returns the nodes from root to the node that matches the longest prefix of resource. Nodes in the path that are
+     * shared with other tries are replaced with copies owned by this trie, so that the returned nodes can be updated.
+     */
+    private List<TrieNode<T>> getPathForResource(String resource) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerResourceTrie.getNodeForResource(" + resource + ")");
+            LOG.debug("==> RangerResourceTrie.getPathForResource(" + resource + ")");
         }
 
         RangerPerfTracer perf = null;
 
         if(RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_OP_LOG)) {
-            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_OP_LOG, "RangerResourceTrie.getNodeForResource(resource=" + resource + ")");
+            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_OP_LOG, "RangerResourceTrie.getPathForResource(resource=" + resource + ")");
         }
 
-        TrieNode<T> curr = root;
-        final int   len  = resource.length();
-        int         i    = 0;
+        List<TrieNode<T>> ret  = new ArrayList<>();
+        TrieNode<T>       curr = getOwnedRoot();
+        final int         len  = resource.length();
+        int               i    = 0;
+
+        ret.add(curr);
 
         while (i < len) {
-            final TrieNode<T> child = curr.getChild(getLookupChar(resource, i));
+            final char        ch    = getLookupChar(resource, i);
+            final TrieNode<T> child = curr.getChild(ch);
 
             if (child == null) {
                 break;
@@ -668,17 +750,19 @@ private TrieNode<T> getNodeForResource(String resource) {
                 break;
             }
 
-            curr = child;
+            curr = curr.getOwnedChild(ch, generation);
             i    += childStr.length();
+
+            ret.add(curr);
         }
 
         RangerPerfTracer.logAlways(perf);
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("<== RangerResourceTrie.getNodeForResource(" + resource + ")");
+            LOG.debug("<== RangerResourceTrie.getPathForResource(" + resource + ")");
         }
 
-        return curr;
+        return ret;
     }
 
     private Set<T> getEvaluatorsForResources(Collection<String> resources, RangerAccessRequest.ResourceMatchingScope scope) {
@@ -738,6 +822,9 @@ public String toString() {
         sb.append("; optIgnoreCase=").append(optIgnoreCase);
         sb.append("; optWildcard=").append(optWildcard);
         sb.append("; wildcardChars=").append(wildcardChars);
+        sb.append("; isOptimizedForSpace=").append(isOptimizedForSpace);
+        sb.append("; generation=").append(generation);
+        sb.append("; isSharingNodes=").append(isSharingNodes);
         sb.append("; nodeCount=").append(trieData.nodeCount);
         sb.append("; leafNodeCount=").append(trieData.leafNodeCount);
         sb.append("; singleChildNodeCount=").append(trieData.singleChildNodeCount);
@@ -772,7 +859,7 @@ public String toString() {
             }
         }
 
-        private final TrieNode<T>             thisRoot  = new TrieNode<>(null);
+        private final TrieNode<T>             thisRoot  = newTrieNode(null);
         private final BlockingQueue<WorkItem> workQueue = new LinkedBlockingQueue<>();
 
         ResourceTrieBuilderThread() {
@@ -829,17 +916,28 @@ static class TrieData {
         int wildcardEvaluatorListRefCount;
     }
 
-    class TrieNode<U extends T> {
+    /*
+     * Nodes don't refer to their parent or to the trie, as nodes can be shared by multiple copies of a trie (see
+     * RangerResourceTrie(other, isCopyOnWrite)): such references would keep earlier copies from being collected. A node
+     * is updated only by the trie of its generation; other tries copy the node before updating it.
+     */
+    static class TrieNode<U extends RangerPolicyResourceEvaluator> {
         private          String                      str;
-        private          TrieNode<U>                 parent;
-        private final    Map<Character, TrieNode<U>> children = new HashMap<>();
+        private final    Map<Character, TrieNode<U>> children;
         private          Set<U>                      evaluators;
         private          Set<U>                      wildcardEvaluators;
         private          boolean                     isSharingParentWildcardEvaluators;
         private volatile boolean                     isSetup = false;
+        private final    boolean                     optIgnoreCase;
+        private final    boolean                     isOptimizedForSpace;
+        private final    int                         generation;
 
-        TrieNode(String str) {
-            this.str = str;
+        TrieNode(String str, boolean optIgnoreCase, boolean isOptimizedForSpace, int generation) {
+            this.str                 = str;
+            this.children            = isOptimizedForSpace ? new CompactCharMap<>() : new HashMap<>();
+            this.optIgnoreCase       = optIgnoreCase;
+            this.isOptimizedForSpace = isOptimizedForSpace;
+            this.generation          = generation;
         }
 
         String getStr() {
@@ -850,14 +948,6 @@ void setStr(String str) {
             this.str = str;
         }
 
-        TrieNode<U> getParent() {
-            return parent;
-        }
-
-        void setParent(TrieNode<U> parent) {
-            this.parent = parent;
-        }
-
         Map<Character, TrieNode<U>> getChildren() {
             return children;
         }
@@ -870,8 +960,83 @@ Set<U> getWildcardEvaluators() {
             return wildcardEvaluators;
         }
 
-        TrieNode<U> getChild(Character ch) {
-            return children.get(ch);
+        boolean isSetup() {
+            return isSetup;
+        }
+
+        int getGeneration() {
+            return generation;
+        }
+
+        @SuppressWarnings("unchecked")
+        TrieNode<U> getChild(char ch) {
+            return isOptimizedForSpace ? ((CompactCharMap<TrieNode<U>>) children).get(ch) : children.get(ch);
+        }
+
+        /*
+         * Returns the child for ch, after replacing it with a copy of the given generation if it is of a different one
+         */
+        TrieNode<U> getOwnedChild(char ch, int generation) {
+            TrieNode<U> ret = getChild(ch);
+
+            if (ret != null && ret.generation != generation) {
+                ret = ret.copyForUpdate(this, generation);
+            }
+
+            return ret;
+        }
+
+        /*
+         * Copies this node, without its children, into the given generation; the copy is added as a child of parent
+         */
+        TrieNode<U> copy(TrieNode<U> parent, int generation) {
+            TrieNode<U> ret = new TrieNode<>(str, optIgnoreCase, isOptimizedForSpace, generation);
+
+            if (parent != null) {
+                parent.addChild(ret);
+            }
+
+            synchronized (children) {
+                ret.isSetup                           = isSetup;
+                ret.isSharingParentWildcardEvaluators = isSharingParentWildcardEvaluators;
+
+                if (isSharingParentWildcardEvaluators) {
+                    ret.wildcardEvaluators = parent != null ? parent.getWildcardEvaluators() : null;
+                } else {
+                    ret.wildcardEvaluators = wildcardEvaluators != null ? new HashSet<>(wildcardEvaluators) : null;
+                }
+
+                if (evaluators != null) {
+                    ret.evaluators = evaluators == wildcardEvaluators ? ret.wildcardEvaluators : new HashSet<>(evaluators);
+                } else {
+                    ret.evaluators = null;
+                }
+            }
+
+            return ret;
+        }
+
+        /*
+         * Copies this node into the given generation, sharing the children with this node
+         */
+        TrieNode<U> copyForUpdate(TrieNode<U> parent, int generation) {
+            TrieNode<U> ret = copy(parent, generation);
+
+            ret.children.putAll(children);
+
+            return ret;
+        }
+
+        int getOwnedNodeCount(int generation) {
+            int ret = 1;
+
+            for (TrieNode<U> child : children.values()) {
+                if (child.generation == generation) {
+                    ret += child.getOwnedNodeCount(generation);
+                }
+            }
+
+            return ret;
         }
 
         void populateTrieData(RangerResourceTrie.TrieData trieData) {
@@ -924,12 +1089,12 @@ int getMaxDepth() {
             return ret + 1;
         }
 
-        TrieNode<U> getOrCreateChild(String str) {
+        TrieNode<U> getOrCreateChild(String str, int generation) {
             int         len   = str.length();
-            TrieNode<U> child = children.get(getLookupChar(str, 0));
+            TrieNode<U> child = getOwnedChild(getLookupChar(str, 0), generation);
 
             if (child == null) {
-                child = new TrieNode<>(str);
+                child = new TrieNode<>(str, optIgnoreCase, isOptimizedForSpace, generation);
 
                 addChild(child);
             } else {
@@ -951,7 +1116,7 @@ TrieNode<U> getOrCreateChild(String str) {
                         // Matched all
                         if (childStrLen > len) {
                             // Existing node has longer string, need to break up this node
-                            TrieNode<U> newChild = new TrieNode<>(str);
+                            TrieNode<U> newChild = new TrieNode<>(str, optIgnoreCase, isOptimizedForSpace, generation);
 
                             this.addChild(newChild);
                             child.setStr(childStr.substring(index));
@@ -960,18 +1125,18 @@ TrieNode<U> getOrCreateChild(String str) {
                             child = newChild;
                         } else {
                             // This is a longer string, build a child with leftover string
-                            child = child.getOrCreateChild(str.substring(index));
+                            child = child.getOrCreateChild(str.substring(index), generation);
                         }
                     } else {
                         // Partial match for both; both have leftovers
                         String      matchedPart = str.substring(0, index);
-                        TrieNode<U> newChild    = new TrieNode<>(matchedPart);
+                        TrieNode<U> newChild    = new TrieNode<>(matchedPart, optIgnoreCase, isOptimizedForSpace, generation);
 
                         this.addChild(newChild);
                         child.setStr(childStr.substring(index));
                         newChild.addChild(child);
 
-                        child = newChild.getOrCreateChild(str.substring(index));
+                        child = newChild.getOrCreateChild(str.substring(index), generation);
                     }
                 }
             }
@@ -981,20 +1146,25 @@ TrieNode<U> getOrCreateChild(String str) {
 
         private void addChild(TrieNode<U> child) {
             children.put(getLookupChar(child.getStr(), 0), child);
-            child.setParent(this);
+        }
+
+        private char getLookupChar(String str, int index) {
+            final char ch = str.charAt(index);
+
+            return optIgnoreCase ? Character.toLowerCase(ch) : ch;
         }
 
         void addEvaluator(U evaluator) {
             if (evaluators == null) {
                 evaluators = new HashSet<>();
+            } else if (evaluators == wildcardEvaluators) { // don't add to the wildcard evaluators shared with this node
+                evaluators = new HashSet<>(wildcardEvaluators);
             }
 
             evaluators.add(evaluator);
         }
 
         void addWildcardEvaluator(U evaluator) {
-            undoSetup();
-
             if (wildcardEvaluators == null) {
                 wildcardEvaluators = new HashSet<>();
             }
@@ -1024,10 +1194,10 @@ void removeWildcardEvaluator(U evaluator) {
             }
         }
 
-        void undoSetup() {
+        void undoSetup(Set<U> parentWildcardEvaluators) {
             if (isSetup) {
                 for (TrieNode<U> child : children.values()) {
-                    child.undoSetup();
+                    child.undoSetup(wildcardEvaluators);
                 }
 
                 if (evaluators != null) {
@@ -1048,8 +1218,6 @@ void undoSetup() {
                     if (isSharingParentWildcardEvaluators) {
                         wildcardEvaluators = null;
                     } else {
-                        Set<U> parentWildcardEvaluators = getParent() == null ? null : getParent().getWildcardEvaluators();
-
                         if (parentWildcardEvaluators != null) {
                             wildcardEvaluators.removeAll(parentWildcardEvaluators);
 
@@ -1065,27 +1233,52 @@ void undoSetup() {
             }
         }
 
-        void removeSelfFromTrie() {
+        void removeSelfFromTrie(TrieNode<U> parent) {
             if (evaluators == null && wildcardEvaluators == null && children.size() == 0) {
-                TrieNode<U> parent = getParent();
                 if (parent != null) {
-                    parent.children.remove(str.charAt(0));
+                    parent.children.remove(getLookupChar(str, 0));
                 }
             }
         }
 
-        void wrapUpUpdate() {
-            if (isOptimizedForRetrieval) {
-                RangerPerfTracer postSetupPerf = null;
+        /*
+         * Merges chains of nodes that carry no evaluators and have a single child (which can be left behind after
+         * evaluators are removed by policy deltas) into their child. Only nodes that have not been set up are merged,
+         * as set up nodes share evaluator sets with their parent. Nodes of other generations are not visited, as
+         * they are shared with other tries and haven't been updated since they were compacted.
+         *
+         * Returns the node that should replace this node in its parent.
+         */
+        TrieNode<U> compactSubtree(TrieNode<U> parent, int generation) {
+            for (TrieNode<U> child : children.values()) {
+                if (child.generation != generation) {
+                    continue;
+                }
 
-                if (RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
-                    postSetupPerf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(name=" + resourceDef.getName() + "-postSetup)");
+                TrieNode<U> compacted = child.compactSubtree(this, generation);
+
+                if (compacted != child) {
+                    children.put(getLookupChar(compacted.getStr(), 0), compacted);
                 }
+            }
 
-                postSetup(null);
+            TrieNode<U> ret = this;
 
-                RangerPerfTracer.logAlways(postSetupPerf);
+            if (parent != null && !isSetup && evaluators == null && wildcardEvaluators == null && children.size() == 1) {
+                TrieNode<U> child = children.values().iterator().next();
+
+                if (!child.isSetup) {
+                    if (child.generation != generation) {
+                        child = getOwnedChild(getLookupChar(child.getStr(), 0), generation);
+                    }
+
+                    child.setStr(str + child.getStr());
+
+                    ret = child;
+                }
             }
+
+            return ret;
         }
 
         void postSetup(Set<U> parentWildcardEvaluators) {
@@ -1148,8 +1341,8 @@ void setup(Set<U> parentWildcardEvaluators) {
             }
         }
 
-        void collectChildEvaluators(Character sep, int startIdx, Set<U> childEvaluators) {
-            setupIfNeeded(getParent());
+        void collectChildEvaluators(TrieNode<U> parent, char sep, int startIdx, Set<U> childEvaluators) {
+            setupIfNeeded(parent);
 
             final int sepPos = startIdx < str.length() ? str.indexOf(sep, startIdx) : -1;
 
@@ -1158,7 +1351,7 @@ void collectChildEvaluators(Character sep, int startIdx, Set<U> childEvaluators)
                     childEvaluators.addAll(this.evaluators);
                 }
 
-                children.values().stream().forEach(c -> c.collectChildEvaluators(sep, 0, childEvaluators));
+                children.values().stream().forEach(c -> c.collectChildEvaluators(this, sep, 0, childEvaluators));
             } else if (sepPos == (str.length() - 1)) { // ex: str=/tmp/test/, startIdx=5
                 if (this.evaluators != null) {
                     childEvaluators.addAll(this.evaluators);
@@ -1166,16 +1359,6 @@ void collectChildEvaluators(Character sep, int startIdx, Set<U> childEvaluators)
             }
         }
 
-        private void removeEvaluatorFromSubtree(U evaluator) {
-            if (CollectionUtils.isNotEmpty(wildcardEvaluators) && wildcardEvaluators.contains(evaluator)) {
-                undoSetup();
-                removeWildcardEvaluator(evaluator);
-            } else {
-                removeEvaluator(evaluator);
-            }
-            removeSelfFromTrie();
-        }
-
         void toString(StringBuilder sb) {
             String nodeValue = this.str;
 
@@ -41,6 +41,7 @@
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerRolesIndex;
 
 
 public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEvaluator {
@@ -51,6 +52,7 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 
 	private boolean hasCurrentUser;
 	private boolean hasResourceOwner;
+	private RangerRolesIndex.RoleMatcher roleMatcher;
 
 	public RangerDefaultPolicyItemEvaluator(RangerServiceDef serviceDef, RangerPolicy policy, RangerPolicyItem policyItem, int policyItemType, int policyItemIndex, RangerPolicyEngineOptions options) {
 		super(serviceDef, policy, policyItem, policyItemType, policyItemIndex, options);
@@ -68,6 +70,7 @@ public void init() {
 		List<String> users = policyItem.getUsers();
 		this.hasCurrentUser = CollectionUtils.isNotEmpty(users) && users.contains(RangerPolicyEngine.USER_CURRENT);
 		this.hasResourceOwner = CollectionUtils.isNotEmpty(users) && users.contains(RangerPolicyEngine.RESOURCE_OWNER);
+		this.roleMatcher = CollectionUtils.isNotEmpty(policyItem.getRoles()) ? new RangerRolesIndex.RoleMatcher(policyItem.getRoles()) : null;
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerDefaultPolicyItemEvaluator(policyId=" + policyId + ", conditionsCount=" + getConditionEvaluators().size() + ")");
@@ -139,7 +142,8 @@ public boolean matchUserGroupAndOwner(String user, Set<String> userGroups, Set<S
 						!Collections.disjoint(policyItem.getGroups(), userGroups);
 			}
 			if (!ret && CollectionUtils.isNotEmpty(roles) && CollectionUtils.isNotEmpty(policyItem.getRoles())) {
-				ret = !Collections.disjoint(policyItem.getRoles(), roles);
+				// roles resolved by RangerAuthContext are matched by role IDs
+				ret = roleMatcher != null ? roleMatcher.matchesAny(roles) : !Collections.disjoint(policyItem.getRoles(), roles);
 			}
 			if (!ret && hasResourceOwner) {
 				ret = user != null && user.equals(owner);
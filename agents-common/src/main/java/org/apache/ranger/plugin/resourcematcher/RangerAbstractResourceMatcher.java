@@ -515,44 +515,68 @@ boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
 }
 
 final class CaseSensitiveWildcardMatcher extends ResourceMatcher {
+	private final WildcardPattern pattern;
+
 	CaseSensitiveWildcardMatcher(String value) {
 		super(value);
+
+		this.pattern = new WildcardPattern(value, false);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.SENSITIVE);
+		if (getNeedsDynamicEval()) {
+			return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.SENSITIVE);
+		}
+
+		return pattern.isMatch(resourceValue);
 	}
 	int getPriority() { return 5 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
 }
 
 
 final class CaseInsensitiveWildcardMatcher extends ResourceMatcher {
+	private final WildcardPattern pattern;
+
 	CaseInsensitiveWildcardMatcher(String value) {
 		super(value);
+
+		this.pattern = new WildcardPattern(value, true);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.INSENSITIVE);
+		if (getNeedsDynamicEval()) {
+			return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), IOCase.INSENSITIVE);
+		}
+
+		return pattern.isMatch(resourceValue);
 	}
 	int getPriority() {return 6 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
 }
 
 final class QuotedCaseSensitiveWildcardMatcher extends ResourceMatcher {
-	private final String quoteChars;
+	private final String          quoteChars;
+	private final WildcardPattern caseSensitivePattern;
+	private final WildcardPattern caseInsensitivePattern;
 
 	QuotedCaseSensitiveWildcardMatcher(String value, String quoteChars) {
 		super(value);
 
-		this.quoteChars = quoteChars;
+		this.quoteChars             = quoteChars;
+		this.caseSensitivePattern   = new WildcardPattern(value, false);
+		this.caseInsensitivePattern = new WildcardPattern(value, true);
 	}
 
 	@Override
 	boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
-		IOCase caseSensitivity = startsWithAnyChar(resourceValue, quoteChars) ? IOCase.SENSITIVE : IOCase.INSENSITIVE;
+		boolean isQuoted = startsWithAnyChar(resourceValue, quoteChars);
+
+		if (getNeedsDynamicEval()) {
+			return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), isQuoted ? IOCase.SENSITIVE : IOCase.INSENSITIVE);
+		}
 
-		return FilenameUtils.wildcardMatch(resourceValue, getExpandedValue(evalContext), caseSensitivity);
+		return isQuoted ? caseSensitivePattern.isMatch(resourceValue) : caseInsensitivePattern.isMatch(resourceValue);
 	}
 
 	int getPriority() {return 6 + (getNeedsDynamicEval() ? DYNAMIC_EVALUATION_PENALTY : 0); }
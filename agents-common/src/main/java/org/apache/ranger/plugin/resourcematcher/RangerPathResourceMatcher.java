@@ -176,6 +176,39 @@ static boolean isRecursiveWildCardMatch(String pathToCheck, String wildcardPath,
 		return ret;
 	}
 
+	/*
+	 * Same as isRecursiveWildCardMatch(pathToCheck, pattern.getPattern(), ...), but matches the parent paths as
+	 * regions of pathToCheck instead of building them; falls back to the former when pathToCheck has consecutive
+	 * pathSeparatorChars, since those are collapsed while building the parent paths.
+	 */
+	static boolean isRecursiveWildCardMatch(String pathToCheck, WildcardPattern pattern, char pathSeparatorChar) {
+		final int len = pathToCheck != null ? pathToCheck.length() : 0;
+
+		if (len == 0) {
+			return false;
+		}
+
+		for (int i = 1; i < len; i++) {
+			if (pathToCheck.charAt(i) == pathSeparatorChar && pathToCheck.charAt(i - 1) == pathSeparatorChar) {
+				return isRecursiveWildCardMatch(pathToCheck, pattern.getPattern(), pathSeparatorChar, pattern.isIgnoreCase() ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+			}
+		}
+
+		if (len == 1 && pathToCheck.charAt(0) == pathSeparatorChar) { // pathToCheck consists of only pathSeparatorChar
+			return pattern.isMatch(pathToCheck);
+		}
+
+		int start = pathToCheck.charAt(0) == pathSeparatorChar ? 1 : 0; // preserve the initial pathSeparatorChar
+
+		for (int i = start + 1; i < len; i++) {
+			if (pathToCheck.charAt(i) == pathSeparatorChar && pattern.isMatch(pathToCheck, i)) {
+				return true;
+			}
+		}
+
+		return pathToCheck.charAt(len - 1) != pathSeparatorChar && pattern.isMatch(pathToCheck, len);
+	}
+
 	public StringBuilder toString(StringBuilder sb) {
 		sb.append("RangerPathResourceMatcher={");
 
@@ -312,11 +345,13 @@ boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
 	static class WildcardResourceMatcher extends PathResourceMatcher {
 		final TriFunction<String, String, IOCase, Boolean> function;
 		final IOCase ioCase;
+		final WildcardPattern pattern;
 
 		WildcardResourceMatcher(String value, char pathSeparatorChar, boolean optIgnoreCase, TriFunction<String, String, IOCase, Boolean> function, int priority) {
 			super(value, pathSeparatorChar, priority);
 			this.function = function;
 			this.ioCase   = optIgnoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE;
+			this.pattern  = new WildcardPattern(value, optIgnoreCase);
 		}
 		@Override
 		boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
@@ -324,7 +359,7 @@ boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
 				LOG.debug("==> WildcardResourceMatcher.isMatch(resourceValue=" + resourceValue + ", evalContext=" + evalContext + ")");
 			}
 			String expandedValue = getExpandedValue(evalContext);
-			boolean ret = function.apply(resourceValue, expandedValue, ioCase);
+			boolean ret = getNeedsDynamicEval() ? function.apply(resourceValue, expandedValue, ioCase) : pattern.isMatch(resourceValue);
 			if (!ret) {
 				RangerAccessRequest.ResourceMatchingScope scope = MapUtils.isNotEmpty(evalContext) ? (RangerAccessRequest.ResourceMatchingScope) evalContext.get(RangerAccessRequest.RANGER_ACCESS_REQUEST_SCOPE_STRING) : null;
 				if (scope == RangerAccessRequest.ResourceMatchingScope.SELF_OR_CHILD) {
@@ -348,11 +383,13 @@ boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
 	static class RecursiveWildcardResourceMatcher extends PathResourceMatcher {
 		final QuadFunction<String, String, Character, IOCase, Boolean> function;
 		final IOCase ioCase;
+		final WildcardPattern pattern;
 
 		RecursiveWildcardResourceMatcher(String value, char pathSeparatorChar, boolean optIgnoreCase, QuadFunction<String, String, Character, IOCase, Boolean> function, int priority) {
 			super(value, pathSeparatorChar, priority);
 			this.function = function;
 			this.ioCase   = optIgnoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE;
+			this.pattern  = new WildcardPattern(value, optIgnoreCase);
 		}
 		@Override
 		boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
@@ -360,7 +397,7 @@ boolean isMatch(String resourceValue, Map<String, Object> evalContext) {
 				LOG.debug("==> RecursiveWildcardResourceMatcher.isMatch(resourceValue=" + resourceValue + ", evalContext=" + evalContext + ")");
 			}
 			String expandedValue = getExpandedValue(evalContext);
-			boolean ret = function.apply(resourceValue, expandedValue, pathSeparatorChar, ioCase);
+			boolean ret = getNeedsDynamicEval() ? function.apply(resourceValue, expandedValue, pathSeparatorChar, ioCase) : isRecursiveWildCardMatch(resourceValue, pattern, pathSeparatorChar);
 			if (!ret) {
 				RangerAccessRequest.ResourceMatchingScope scope = MapUtils.isNotEmpty(evalContext) ? (RangerAccessRequest.ResourceMatchingScope) evalContext.get(RangerAccessRequest.RANGER_ACCESS_REQUEST_SCOPE_STRING) : null;
 				if (scope == RangerAccessRequest.ResourceMatchingScope.SELF_OR_CHILD) {
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A wildcard pattern, with the same semantics as FilenameUtils.wildcardMatch(), that is parsed once and can then be
+ * matched any number of times without allocations.
+ *
+ * The pattern is split at '*' into literal segments (which may contain '?'): the first and the last segments are
+ * matched at the start and at the end of the value, and the segments in between are searched left to right. For
+ * case-insensitive patterns, the segments are case-folded once here, in the same way as String.regionMatches(true, ...).
+ *
+ * FilenameUtils.wildcardMatch() does not let a '*' that is immediately followed by '?' match more than the empty
+ * string; patterns having "*?" are therefore matched with FilenameUtils, so that the access decisions don't change.
+ */
+final class WildcardPattern {
+    private static final char WILDCARD_ANY  = '*';
+    private static final char WILDCARD_CHAR = '?';
+
+    private final String   pattern;
+    private final boolean  ignoreCase;
+    private final char[][] segments;      // upper-cased when ignoreCase is true
+    private final char[][] lowerSegments; // lower-case of segments, only when ignoreCase is true
+    private final boolean  hasWildcardAny;
+    private final boolean  startsWithWildcardAny;
+    private final boolean  endsWithWildcardAny;
+    private final int      minLength;
+    private final boolean  useFilenameUtils;
+
+    WildcardPattern(String pattern, boolean ignoreCase) {
+        List<char[]> segments  = new ArrayList<>();
+        int          minLength = 0;
+        int          segStart  = 0;
+
+        for (int i = 0; i <= pattern.length(); i++) {
+            if (i == pattern.length() || pattern.charAt(i) == WILDCARD_ANY) {
+                if (i > segStart) {
+                    char[] segment = pattern.substring(segStart, i).toCharArray();
+
+                    if (ignoreCase) {
+                        for (int j = 0; j < segment.length; j++) {
+                            segment[j] = Character.toUpperCase(segment[j]);
+                        }
+                    }
+
+                    segments.add(segment);
+
+                    minLength += segment.length;
+                }
+
+                segStart = i + 1;
+            }
+        }
+
+        this.pattern               = pattern;
+        this.ignoreCase            = ignoreCase;
+        this.segments              = segments.toArray(new char[segments.size()][]);
+        this.hasWildcardAny        = pattern.indexOf(WILDCARD_ANY) != -1;
+        this.startsWithWildcardAny = hasWildcardAny && pattern.charAt(0) == WILDCARD_ANY;
+        this.endsWithWildcardAny   = hasWildcardAny && pattern.charAt(pattern.length() - 1) == WILDCARD_ANY;
+        this.minLength             = minLength;
+        this.useFilenameUtils      = pattern.contains("*?");
+
+        if (ignoreCase) {
+            lowerSegments = new char[this.segments.length][];
+
+            for (int i = 0; i < this.segments.length; i++) {
+                lowerSegments[i] = new char[this.segments[i].length];
+
+                for (int j = 0; j < this.segments[i].length; j++) {
+                    lowerSegments[i][j] = Character.toLowerCase(this.segments[i][j]);
+                }
+            }
+        } else {
+            lowerSegments = null;
+        }
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    boolean isMatch(String str) {
+        return str != null && isMatch(str, str.length());
+    }
+
+    /*
+     * matches the first len characters of str against this pattern
+     */
+    boolean isMatch(String str, int len) {
+        if (str == null || len < minLength) {
+            return false;
+        }
+
+        if (useFilenameUtils) {
+            return FilenameUtils.wildcardMatch(len == str.length() ? str : str.substring(0, len), pattern, ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+        }
+
+        if (!hasWildcardAny) {
+            return segments.length == 0 ? len == 0 : (len == segments[0].length && regionMatches(str, 0, 0));
+        }
+
+        int pos          = 0;
+        int firstSegment = 0;
+        int lastSegment  = segments.length - 1;
+
+        if (!startsWithWildcardAny) {
+            if (!regionMatches(str, 0, firstSegment)) {
+                return false;
+            }
+
+            pos = segments[firstSegment].length;
+
+            firstSegment++;
+        }
+
+        if (!endsWithWildcardAny) {
+            int end = len - segments[lastSegment].length;
+
+            if (end < pos || !regionMatches(str, end, lastSegment)) {
+                return false;
+            }
+
+            len = end;
+
+            lastSegment--;
+        }
+
+        for (int i = firstSegment; i <= lastSegment; i++) {
+            pos = indexOf(str, pos, len, i);
+
+            if (pos == -1) {
+                return false;
+            }
+
+            pos += segments[i].length;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "WildcardPattern(" + pattern + ", ignoreCase=" + ignoreCase + ")";
+    }
+
+    private int indexOf(String str, int fromIndex, int endIndex, int segmentIdx) {
+        for (int i = fromIndex, last = endIndex - segments[segmentIdx].length; i <= last; i++) {
+            if (regionMatches(str, i, segmentIdx)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean regionMatches(String str, int offset, int segmentIdx) {
+        final char[] segment = segments[segmentIdx];
+
+        for (int i = 0; i < segment.length; i++) {
+            final char c = str.charAt(offset + i);
+            final char p = segment[i];
+
+            if (c == p || p == WILDCARD_CHAR) {
+                continue;
+            }
+
+            if (!ignoreCase) {
+                return false;
+            }
+
+            final char u = Character.toUpperCase(c);
+
+            if (u != p && Character.toLowerCase(u) != lowerSegments[segmentIdx][i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.service;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
+import org.apache.ranger.plugin.contextenricher.RangerTagForEval;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.policyengine.ConcurrentCacheMap;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResource;
+import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerMutableResource;
+import org.apache.ranger.plugin.policyengine.RangerPluginContext;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.apache.ranger.plugin.util.ServiceTags;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of access results, used by RangerBasePlugin to skip policy evaluation for requests already evaluated
+ * for the same user, groups, roles, resource and access-type.
+ *
+ * Cached results belong to a generation, identified by the policy-engine, its policy-version, the RangerAuthContext
+ * and its version - which changes on every update to roles, tags and user-store. When any of these change, a new
+ * generation is started with an empty cache; results of the earlier generation are never returned afterwards.
+ *
+ * Caching is disabled for a generation having resource/tag policies with validity-schedules or conditions, or tags
+ * with validity-periods, as results of such policies depend on access-time or other attributes of the request.
+ */
+public class RangerAccessResultCache {
+    private static final Log LOG = LogFactory.getLog(RangerAccessResultCache.class);
+
+    private final RangerPluginContext         pluginContext;
+    private final int                         capacity;
+    private final LongAdder                   hitCount    = new LongAdder();
+    private final LongAdder                   missCount   = new LongAdder();
+    private final LongAdder                   bypassCount = new LongAdder();
+    private final AtomicReference<Generation> generation  = new AtomicReference<>();
+
+    public RangerAccessResultCache(RangerPluginContext pluginContext, int capacity) {
+        this.pluginContext = pluginContext;
+        this.capacity      = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getBypassCount() {
+        return bypassCount.sum();
+    }
+
+    // ratio of requests served from the cache, out of all requests that were eligible for caching
+    public double getHitRatio() {
+        long hits   = getHitCount();
+        long misses = getMissCount();
+
+        return (hits + misses) > 0 ? ((double) hits) / (hits + misses) : 0;
+    }
+
+    public int size() {
+        Generation generation = this.generation.get();
+
+        return generation != null && generation.results != null ? generation.results.size() : 0;
+    }
+
+    public void invalidate() {
+        this.generation.set(null);
+    }
+
+    public RangerAccessResult evaluatePolicies(RangerPolicyEngine policyEngine, RangerAccessRequest request) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerAccessResultCache.evaluatePolicies(" + request + ")");
+        }
+
+        final RangerAccessResult ret;
+        final Generation         generation = getGeneration(policyEngine);
+        final CacheKey           key        = generation.results != null ? getCacheKey(policyEngine, request) : null;
+
+        if (key == null) {
+            bypassCount.increment();
+
+            ret = policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null);
+        } else {
+            CachedResult cached = generation.results.get(key);
+
+            if (cached != null) {
+                hitCount.increment();
+
+                ret = cached.toResult(request);
+
+                setRequestAttributes(request);
+            } else {
+                missCount.increment();
+
+                ret = policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null);
+
+                if (ret != null) {
+                    generation.results.put(key.copy(), new CachedResult(ret, RangerAccessRequestUtil.getRequestTagsFromContext(request.getContext())));
+                }
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerAccessResultCache.evaluatePolicies(" + request + "): " + ret);
+        }
+
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "RangerAccessResultCache={capacity=" + capacity + ", size=" + size() + ", hitCount=" + getHitCount() +
+               ", missCount=" + getMissCount() + ", bypassCount=" + getBypassCount() + ", hitRatio=" + getHitRatio() + "}";
+    }
+
+    private Generation getGeneration(RangerPolicyEngine policyEngine) {
+        RangerAuthContext authContext = pluginContext.getAuthContext();
+
+        // version of authContext is read before the policy-version, and before evaluation of the request; this ensures
+        // that results computed while an update is in progress will only be added to the generation being replaced
+        long authContextVersion = authContext != null ? authContext.getVersion() : -1;
+        long policyVersion      = policyEngine.getPolicyVersion();
+
+        while (true) {
+            Generation current = this.generation.get();
+
+            if (current != null && current.policyEngine == policyEngine && current.authContext == authContext && current.authContextVersion == authContextVersion && current.policyVersion == policyVersion) {
+                return current;
+            }
+
+            boolean    isCacheable = policyEngine instanceof RangerPolicyEngineImpl && !((RangerPolicyEngineImpl) policyEngine).hasContextSensitivePolicies() && !hasTagsWithValidityPeriods(authContext);
+            Generation ret         = new Generation(policyEngine, policyVersion, authContext, authContextVersion, isCacheable ? new ConcurrentCacheMap<CacheKey, CachedResult>(capacity) : null);
+
+            // a request that read the policy-engine or authContext before an update must not replace the generation
+            // started by a request that read them after the update; it is evaluated without the cache instead
+            if (current != null && current.isNewerThan(ret)) {
+                return new Generation(policyEngine, policyVersion, authContext, authContextVersion, null);
+            }
+
+            if (this.generation.compareAndSet(current, ret)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("RangerAccessResultCache: started new generation(policyVersion=" + policyVersion + ", authContextVersion=" + authContextVersion + ", isCacheable=" + isCacheable + "). Previous generation: " + this);
+                }
+
+                return ret;
+            }
+        }
+    }
+
+    private CacheKey getCacheKey(RangerPolicyEngine policyEngine, RangerAccessRequest request) {
+        // results of requests for accessors, or with tags set by the caller, can't be reused for other requests
+        if (request.isAccessorsRequested() || request.getContext() == null || request.getContext().containsKey(RangerAccessRequestUtil.KEY_CONTEXT_TAGS)) {
+            return null;
+        }
+
+        RangerAccessResource resource = request.getResource();
+
+        if (resource == null) {
+            return null;
+        }
+
+        if (resource.getServiceDef() == null && resource instanceof RangerMutableResource) {
+            ((RangerMutableResource) resource).setServiceDef(policyEngine.getServiceDef());
+        }
+
+        String resourceKey = resource.getCacheKey();
+
+        return resourceKey != null ? new CacheKey(request, resourceKey) : null;
+    }
+
+    // sets attributes of the request that policy-engine would have set during evaluation, as these are used in audit logs
+    private void setRequestAttributes(RangerAccessRequest request) {
+        if (request instanceof RangerAccessRequestImpl) {
+            RangerAccessRequestImpl reqImpl = (RangerAccessRequestImpl) request;
+
+            if (reqImpl.getClientIPAddress() == null) {
+                reqImpl.extractAndSetClientIPAddress(pluginContext.getConfig().isUseForwardedIPAddress(), pluginContext.getConfig().getTrustedProxyAddresses());
+            }
+
+            if (reqImpl.getClusterName() == null) {
+                reqImpl.setClusterName(pluginContext.getClusterName());
+            }
+
+            if (reqImpl.getClusterType() == null) {
+                reqImpl.setClusterType(pluginContext.getClusterType());
+            }
+        }
+    }
+
+    private static boolean hasTagsWithValidityPeriods(RangerAuthContext authContext) {
+        if (authContext != null) {
+            for (Object database : authContext.getRequestContextEnrichers().values()) {
+                if (database instanceof RangerTagEnricher.EnrichedServiceTags) {
+                    ServiceTags serviceTags = ((RangerTagEnricher.EnrichedServiceTags) database).getServiceTags();
+
+                    if (serviceTags != null && MapUtils.isNotEmpty(serviceTags.getTags())) {
+                        for (RangerTag tag : serviceTags.getTags().values()) {
+                            if (CollectionUtils.isNotEmpty(tag.getValidityPeriods())) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static final class Generation {
+        final RangerPolicyEngine                           policyEngine;
+        final long                                         policyVersion;
+        final RangerAuthContext                            authContext;
+        final long                                         authContextVersion;
+        final ConcurrentCacheMap<CacheKey, CachedResult>   results; // null when results in this generation can't be cached
+
+        Generation(RangerPolicyEngine policyEngine, long policyVersion, RangerAuthContext authContext, long authContextVersion, ConcurrentCacheMap<CacheKey, CachedResult> results) {
+            this.policyEngine       = policyEngine;
+            this.policyVersion      = policyVersion;
+            this.authContext        = authContext;
+            this.authContextVersion = authContextVersion;
+            this.results            = results;
+        }
+
+        boolean isNewerThan(Generation other) {
+            if (policyVersion != other.policyVersion) {
+                return policyVersion > other.policyVersion;
+            }
+
+            return authContext == other.authContext && authContextVersion > other.authContextVersion;
+        }
+    }
+
+    private static final class CachedResult {
+        final RangerAccessResult    result;
+        final Set<RangerTagForEval> tags;
+
+        CachedResult(RangerAccessResult result, Set<RangerTagForEval> tags) {
+            // keep a copy detached from the request, so that the request is not retained by the cache
+            this.result = new RangerAccessResult(result.getPolicyType(), result.getServiceName(), result.getServiceDef(), null);
+            this.tags   = CollectionUtils.isEmpty(tags) ? null : Collections.unmodifiableSet(new HashSet<>(tags));
+
+            this.result.setAccessResultFrom(result);
+            this.result.setAuditResultFrom(result);
+        }
+
+        RangerAccessResult toResult(RangerAccessRequest request) {
+            RangerAccessResult ret = new RangerAccessResult(result.getPolicyType(), result.getServiceName(), result.getServiceDef(), request);
+
+            ret.setAccessResultFrom(result);
+            ret.setAuditResultFrom(result);
+
+            // tags are used in audit logs
+            if (tags != null) {
+                RangerAccessRequestUtil.setRequestTagsInContext(request.getContext(), tags);
+            }
+
+            return ret;
+        }
+    }
+
+    private static final class CacheKey {
+        private final String                                    user;
+        private final Set<String>                               userGroups;
+        private final Set<String>                               userRoles;
+        private final String                                    accessType;
+        private final String                                    resource;
+        private final String                                    ownerUser;
+        private final RangerAccessRequest.ResourceMatchingScope scope;
+        private final int                                       hashCode;
+
+        CacheKey(RangerAccessRequest request, String resource) {
+            this(request.getUser(), request.getUserGroups(), request.getUserRoles(), request.getAccessType(), resource, request.getResource().getOwnerUser(), request.getResourceMatchingScope());
+        }
+
+        private CacheKey(String user, Set<String> userGroups, Set<String> userRoles, String accessType, String resource, String ownerUser, RangerAccessRequest.ResourceMatchingScope scope) {
+            this.user       = user;
+            this.userGroups = userGroups != null ? userGroups : Collections.<String>emptySet();
+            this.userRoles  = userRoles != null ? userRoles : Collections.<String>emptySet();
+            this.accessType = accessType;
+            this.resource   = resource;
+            this.ownerUser  = ownerUser;
+            this.scope      = scope;
+            this.hashCode   = Objects.hash(user, this.userGroups, this.userRoles, accessType, resource, ownerUser, scope);
+        }
+
+        // keys added to the cache must not share collections with the request, as the caller could modify them later
+        CacheKey copy() {
+            return new CacheKey(user, new HashSet<>(userGroups), new HashSet<>(userRoles), accessType, resource, ownerUser, scope);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+
+            CacheKey other = (CacheKey) obj;
+
+            return hashCode == other.hashCode &&
+                   StringUtils.equals(user, other.user) &&
+                   StringUtils.equals(accessType, other.accessType) &&
+                   StringUtils.equals(resource, other.resource) &&
+                   StringUtils.equals(ownerUser, other.ownerUser) &&
+                   scope == other.scope &&
+                   userGroups.equals(other.userGroups) &&
+                   userRoles.equals(other.userRoles);
+        }
+    }
+}
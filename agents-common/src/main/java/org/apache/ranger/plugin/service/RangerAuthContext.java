@@ -19,22 +19,21 @@
 
 package org.apache.ranger.plugin.service;
 
-import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.MapUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
-import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.util.RangerRoles;
+import org.apache.ranger.plugin.util.RangerRolesIndex;
 import org.apache.ranger.plugin.util.RangerRolesUtil;
 
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RangerAuthContext {
     private final Map<RangerContextEnricher, Object> requestContextEnrichers;
     private       RangerRolesUtil                    rolesUtil;
+    private final AtomicLong                         version = new AtomicLong();
 
 
     public RangerAuthContext(Map<RangerContextEnricher, Object> requestContextEnrichers, RangerRoles roles) {
@@ -51,53 +50,47 @@ public void addOrReplaceRequestContextEnricher(RangerContextEnricher enricher, O
         // concurrentHashMap does not allow null to be inserted into it, so insert a dummy which is checked
         // when enrich() is called
         requestContextEnrichers.put(enricher, database != null ? database : enricher);
+
+        version.incrementAndGet();
     }
 
     public void cleanupRequestContextEnricher(RangerContextEnricher enricher) {
         requestContextEnrichers.remove(enricher);
+
+        version.incrementAndGet();
     }
 
     public void setRoles(RangerRoles roles) {
-        this.rolesUtil = roles != null ? new RangerRolesUtil(roles) : new RangerRolesUtil(null);
+        // mappings of roles that are unchanged since the current roles, like after a delta download, are reused
+        RangerRolesUtil rolesUtil = new RangerRolesUtil(roles, this.rolesUtil);
+
+        rolesUtil.getRolesIndex(); // build before the first request needs it
+
+        this.rolesUtil = rolesUtil;
+
+        version.incrementAndGet();
     }
 
+    /**
+     * @return roles of the user and groups, including roles of the public group, in a new set
+     */
     public Set<String> getRolesForUserAndGroups(String user, Set<String> groups) {
-        RangerRolesUtil          rolesUtil        = this.rolesUtil;
-        Map<String, Set<String>> userRoleMapping  = rolesUtil.getUserRoleMapping();
-        Map<String, Set<String>> groupRoleMapping = rolesUtil.getGroupRoleMapping();
-        Set<String>              allRoles         = new HashSet<>();
-
-        if (MapUtils.isNotEmpty(userRoleMapping) && StringUtils.isNotEmpty(user)) {
-            Set<String> userRoles = userRoleMapping.get(user);
-
-            if (CollectionUtils.isNotEmpty(userRoles)) {
-                allRoles.addAll(userRoles);
-            }
-        }
-
-        if (MapUtils.isNotEmpty(groupRoleMapping)) {
-            if (CollectionUtils.isNotEmpty(groups)) {
-                for (String group : groups) {
-                    Set<String> groupRoles = groupRoleMapping.get(group);
-
-                    if (CollectionUtils.isNotEmpty(groupRoles)) {
-                        allRoles.addAll(groupRoles);
-                    }
-                }
-            }
-
-            Set<String> publicGroupRoles = groupRoleMapping.get(RangerPolicyEngine.GROUP_PUBLIC);
-
-            if (CollectionUtils.isNotEmpty(publicGroupRoles)) {
-                allRoles.addAll(publicGroupRoles);
-            }
-        }
-
-        return allRoles;
+        return new HashSet<>(getRoleSetForUserAndGroups(user, groups));
+    }
+
+    /**
+     * @return roles of the user and groups, including roles of the public group. The returned set is immutable, and
+     *         the same instance can be returned for calls with the same user and groups
+     */
+    public RangerRolesIndex.RoleSet getRoleSetForUserAndGroups(String user, Set<String> groups) {
+        return this.rolesUtil.getRolesIndex().getRolesForUserAndGroups(user, groups);
     }
 
     public long getRoleVersion() { return this.rolesUtil.getRoleVersion(); }
 
+    // incremented after every update to roles or to data of context enrichers (like tags, user-store)
+    public long getVersion() { return version.get(); }
+
     public RangerRolesUtil getRangerRolesUtil() {
         return this.rolesUtil;
     }
@@ -28,14 +28,17 @@
 import org.apache.ranger.admin.client.RangerAdminClient;
 import org.apache.ranger.admin.client.RangerAdminRESTClient;
 import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
 import org.apache.ranger.audit.provider.AuditProviderFactory;
 import org.apache.ranger.audit.provider.StandAloneAuditProviderFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerAuditConfig;
 import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
 import org.apache.ranger.authorization.utils.StringUtil;
+import org.apache.ranger.plugin.audit.RangerAuditSampler;
 import org.apache.ranger.plugin.conditionevaluator.RangerScriptExecutionContext;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
 import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
+import org.apache.ranger.plugin.model.RangerMetrics;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerRole;
 import org.apache.ranger.plugin.model.RangerServiceDef;
@@ -63,12 +66,13 @@ public class RangerBasePlugin {
 	private final int                         logInterval    = 30000; // 30 seconds
 	private final DownloadTrigger             accessTrigger  = new DownloadTrigger();
 	private       PolicyRefresher             refresher;
-	private       RangerPolicyEngine          policyEngine;
+	private volatile RangerPolicyEngine        policyEngine;
 	private       RangerAuthContext           currentAuthContext;
 	private       RangerAccessResultProcessor resultProcessor;
 	private       RangerRoles                 roles;
 	private       RangerUserStore             userStore;
 	private final List<RangerChainedPlugin>   chainedPlugins;
+	private final RangerAccessResultCache     accessResultCache;
 
 
 	public RangerBasePlugin(String serviceType, String appId) {
@@ -97,7 +101,8 @@ public RangerBasePlugin(RangerPluginConfig pluginConfig) {
 
 		RangerScriptExecutionContext.init(pluginConfig);
 
-		this.chainedPlugins = initChainedPlugins();
+		this.chainedPlugins    = initChainedPlugins();
+		this.accessResultCache = initAccessResultCache();
 	}
 
 	public RangerBasePlugin(RangerPluginConfig pluginConfig, ServicePolicies policies, ServiceTags tags, RangerRoles roles) {
@@ -150,6 +155,8 @@ public RangerPluginContext getPluginContext() {
 
 	public List<RangerChainedPlugin> getChainedPlugins() { return chainedPlugins; }
 
+	public RangerAccessResultCache getAccessResultCache() { return accessResultCache; }
+
 	// For backward compatibility
 	public RangerAuthContext createRangerAuthContext() { return currentAuthContext; }
 
@@ -187,18 +194,26 @@ public void setUserStore(RangerUserStore userStore) {
 
 	public void setAuditExcludedUsersGroupsRoles(Set<String> users, Set<String> groups, Set<String> roles) {
 		pluginConfig.setAuditExcludedUsersGroupsRoles(users, groups, roles);
+
+		invalidateAccessResultCache();
 	}
 
 	public void setSuperUsersAndGroups(Set<String> users, Set<String> groups) {
 		pluginConfig.setSuperUsersGroups(users, groups);
+
+		invalidateAccessResultCache();
 	}
 
 	public void setIsFallbackSupported(boolean isFallbackSupported) {
 		pluginConfig.setIsFallbackSupported(isFallbackSupported);
+
+		invalidateAccessResultCache();
 	}
 
 	public void setServiceAdmins(Set<String> users) {
 		pluginConfig.setServiceAdmins(users);
+
+		invalidateAccessResultCache();
 	}
 
 	public RangerServiceDef getServiceDef() {
@@ -219,6 +234,19 @@ public String getServiceName() {
 
 	public AuditProviderFactory getAuditProviderFactory() { return RangerBasePlugin.getAuditProviderFactory(getServiceName()); }
 
+	/**
+	 * Point-in-time metrics of the audit queues, spools and destinations in this JVM - like queue depth, batch sizes,
+	 * delivery latency and spool backlog - for the plugin to report. The same metrics are available over JMX; see
+	 * AuditMetricsRegistry.
+	 */
+	public RangerMetrics getAuditMetrics() {
+		Map<String, Object> data = new LinkedHashMap<>();
+
+		data.put("audit", AuditMetricsRegistry.getInstance().getSnapshot());
+
+		return new RangerMetrics(data);
+	}
+
 	public void init() {
 		cleanup();
 
@@ -388,6 +416,10 @@ public void setPolicies(ServicePolicies policies) {
 
 					pluginContext.notifyAuthContextChanged();
 
+					if (!usePolicyDeltas || policies.getServiceConfig() != null) {
+						RangerAuditSampler.setServiceConfig(getAuditProvider(getServiceName()), getServiceName(), policies.getServiceConfig());
+					}
+
 					if (oldPolicyEngine != null && oldPolicyEngine != newPolicyEngine) {
 						((RangerPolicyEngineImpl) oldPolicyEngine).releaseResources(!isPolicyEngineShared);
 					}
@@ -425,6 +457,16 @@ public void cleanup() {
 		if (policyEngine != null) {
 			((RangerPolicyEngineImpl) policyEngine).releaseResources(true);
 		}
+
+		RangerAuditSampler.removeSampler(getAuditProvider(getServiceName()), getServiceName());
+
+		if (accessResultCache != null) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("cleanup(): " + accessResultCache);
+			}
+
+			accessResultCache.invalidate();
+		}
 	}
 
 	public void setResultProcessor(RangerAccessResultProcessor resultProcessor) {
@@ -444,11 +486,16 @@ public Collection<RangerAccessResult> isAccessAllowed(Collection<RangerAccessReq
 	}
 
 	public RangerAccessResult isAccessAllowed(RangerAccessRequest request, RangerAccessResultProcessor resultProcessor) {
-		RangerAccessResult ret          = null;
-		RangerPolicyEngine policyEngine = this.policyEngine;
+		RangerAccessResult      ret               = null;
+		RangerPolicyEngine      policyEngine      = this.policyEngine;
+		RangerAccessResultCache accessResultCache = this.accessResultCache;
 
 		if (policyEngine != null) {
-			ret = policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null);
+			if (accessResultCache != null) {
+				ret = accessResultCache.evaluatePolicies(policyEngine, request);
+			} else {
+				ret = policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null);
+			}
 		}
 
 		if (ret != null) {
@@ -1080,6 +1127,39 @@ private List<RangerChainedPlugin> initChainedPlugins() {
 		return ret;
 	}
 
+	private RangerAccessResultCache initAccessResultCache() {
+		final RangerAccessResultCache ret;
+
+		if (pluginConfig.getBoolean(pluginConfig.getPropertyPrefix() + ".policyengine.option.cache.access.results", false)) {
+			final int RANGER_POLICYENGINE_ACCESSRESULT_CACHE_SIZE = 64 * 1024;
+
+			int cacheSize = pluginConfig.getInt(pluginConfig.getPropertyPrefix() + ".policyengine.accessresultcachesize", RANGER_POLICYENGINE_ACCESSRESULT_CACHE_SIZE);
+
+			// a size of 0 or less disables the cache
+			if (cacheSize > 0) {
+				LOG.info("Access results will be cached: cacheSize=" + cacheSize);
+
+				ret = new RangerAccessResultCache(pluginContext, cacheSize);
+			} else {
+				LOG.info("Access results will not be cached: cacheSize=" + cacheSize);
+
+				ret = null;
+			}
+		} else {
+			ret = null;
+		}
+
+		return ret;
+	}
+
+	private void invalidateAccessResultCache() {
+		RangerAccessResultCache accessResultCache = this.accessResultCache;
+
+		if (accessResultCache != null) {
+			accessResultCache.invalidate();
+		}
+	}
+
 	private void updateResultFromChainedResult(RangerAccessResult result, RangerAccessResult chainedResult) {
 		boolean overrideResult = false;
 
@@ -30,7 +30,9 @@
 import org.apache.ranger.plugin.policyengine.RangerMutableResource;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class RangerDefaultRequestProcessor implements RangerAccessRequestProcessor {
@@ -43,6 +45,11 @@ public RangerDefaultRequestProcessor(PolicyEngine policyEngine) {
 
     @Override
     public void preProcess(RangerAccessRequest request) {
+        preProcess(request, null);
+    }
+
+    @Override
+    public void preProcess(RangerAccessRequest request, Map<List<Object>, Set<String>> rolesCache) {
 
         setResourceServiceDef(request);
         if (request instanceof RangerAccessRequestImpl) {
@@ -73,7 +80,7 @@ public void preProcess(RangerAccessRequest request) {
 
         Set<String> roles = request.getUserRoles();
         if (CollectionUtils.isEmpty(roles)) {
-            roles = policyEngine.getPluginContext().getAuthContext().getRolesForUserAndGroups(request.getUser(), request.getUserGroups());
+            roles = getRolesForUserAndGroups(request.getUser(), request.getUserGroups(), rolesCache);
         }
 
         if (CollectionUtils.isNotEmpty(roles)) {
@@ -94,6 +101,27 @@ public void enrich(RangerAccessRequest request) {
         }
     }
 
+    private Set<String> getRolesForUserAndGroups(String user, Set<String> groups, Map<List<Object>, Set<String>> rolesCache) {
+        final Set<String> ret;
+
+        if (rolesCache != null) {
+            List<Object> key   = Arrays.asList(user, groups);
+            Set<String>  roles = rolesCache.get(key);
+
+            if (roles == null) {
+                roles = policyEngine.getPluginContext().getAuthContext().getRoleSetForUserAndGroups(user, groups);
+
+                rolesCache.put(key, roles);
+            }
+
+            ret = roles;
+        } else {
+            ret = policyEngine.getPluginContext().getAuthContext().getRoleSetForUserAndGroups(user, groups);
+        }
+
+        return ret;
+    }
+
     private void setResourceServiceDef(RangerAccessRequest request) {
         RangerAccessResource resource = request.getResource();
 
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+
+/*
+ * Compact payload of a policy download: the ServicePolicies returned by the JSON download endpoints - full policies
+ * or policy deltas, with security-zones and tag policies - encoded with RangerCompactJsonCodec, in which each distinct
+ * string is stored once.
+ */
+public class CompactServicePolicies {
+	public static final String MIME_TYPE = "application/octet-stream";
+
+	private static final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").registerTypeAdapterFactory(RangerCompactJsonCodec.MAP_ADAPTER_FACTORY).create();
+
+	private CompactServicePolicies() {
+	}
+
+	public static byte[] toByteArray(ServicePolicies servicePolicies) throws IOException {
+		return RangerCompactJsonCodec.toByteArray(gson, servicePolicies);
+	}
+
+	public static ServicePolicies fromByteArray(byte[] bytes) throws IOException {
+		return RangerCompactJsonCodec.fromByteArray(gson, bytes, ServicePolicies.class);
+	}
+}
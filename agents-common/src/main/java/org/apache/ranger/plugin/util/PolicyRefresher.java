@@ -20,10 +20,6 @@
 package org.apache.ranger.plugin.util;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.Reader;
-import java.io.Writer;
 import java.util.Timer;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -55,6 +51,8 @@ public class PolicyRefresher extends Thread {
 	private final String                         cacheFileName;
 	private final String                         cacheDir;
 	private final Gson                           gson;
+	private final boolean                        downloadCompact;
+	private final boolean                        cacheCompact;
 	private final BlockingQueue<DownloadTrigger> policyDownloadQueue = new LinkedBlockingQueue<>();
 	private       Timer                          policyDownloadTimer;
 	private       long                           lastKnownVersion    = -1L;
@@ -86,7 +84,7 @@ public PolicyRefresher(RangerBasePlugin plugIn) {
 
 		Gson gson = null;
 		try {
-			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").registerTypeAdapterFactory(RangerCompactJsonCodec.MAP_ADAPTER_FACTORY).create();
 		} catch(Throwable excp) {
 			LOG.fatal("PolicyRefresher(): failed to create GsonBuilder object", excp);
 		}
@@ -98,6 +96,8 @@ public PolicyRefresher(RangerBasePlugin plugIn) {
 		this.rolesProvider                 = new RangerRolesProvider(getServiceType(), appId, getServiceName(), rangerAdmin,  cacheDir, pluginConfig);
 		this.userStoreProvider             = new RangerUserStoreProvider(getServiceType(), appId, getServiceName(), rangerAdmin,  cacheDir, pluginConfig);
 		this.pollingIntervalMs             = pluginConfig.getLong(propertyPrefix + ".policy.pollIntervalMs", 30 * 1000);
+		this.downloadCompact               = pluginConfig.getBoolean(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_POLICY_COMPACT, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_POLICY_COMPACT_DEFAULT);
+		this.cacheCompact                  = pluginConfig.getBoolean(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT_DEFAULT);
 
 		setName("PolicyRefresher(serviceName=" + serviceName + ")-" + getId());
 
@@ -308,7 +308,11 @@ private ServicePolicies loadPolicyfromPolicyAdmin() throws RangerServiceNotFound
 		}
 
 		try {
-			svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(lastKnownVersion, lastActivationTimeInMillis);
+			if (downloadCompact) {
+				svcPolicies = rangerAdmin.getCompactServicePoliciesIfUpdated(lastKnownVersion, lastActivationTimeInMillis);
+			} else {
+				svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(lastKnownVersion, lastActivationTimeInMillis);
+			}
 
 			boolean isUpdated = svcPolicies != null;
 
@@ -355,8 +359,6 @@ private ServicePolicies loadFromCache() {
 		File cacheFile = cacheDir == null ? null : new File(cacheDir + File.separator + cacheFileName);
 
     	if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-    		Reader reader = null;
-
     		RangerPerfTracer perf = null;
 
     		if(RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
@@ -364,9 +366,7 @@ private ServicePolicies loadFromCache() {
     		}
 
     		try {
-	        	reader = new FileReader(cacheFile);
-
-		        policies = gson.fromJson(reader, ServicePolicies.class);
+		        policies = RangerCompactJsonCodec.readFile(gson, cacheFile, ServicePolicies.class);
 
 		        if(policies != null) {
 		        	if(!StringUtils.equals(serviceName, policies.getServiceName())) {
@@ -381,14 +381,6 @@ private ServicePolicies loadFromCache() {
 	        	LOG.error("failed to load policies from cache file " + cacheFile.getAbsolutePath(), excp);
 	        } finally {
 	        	RangerPerfTracer.log(perf);
-
-	        	if(reader != null) {
-	        		try {
-	        			reader.close();
-	        		} catch(Exception excp) {
-	        			LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-	        		}
-	        	}
 	        }
 		} else {
 			LOG.warn("cache file does not exist or not readable '" + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + "'");
@@ -430,22 +422,10 @@ public void saveToCache(ServicePolicies policies) {
 					perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "PolicyRefresher.saveToCache(serviceName=" + serviceName + ")");
 				}
 
-				Writer writer = null;
-	
 				try {
-					writer = new FileWriter(cacheFile);
-	
-			        gson.toJson(policies, writer);
+			        RangerCompactJsonCodec.writeFile(gson, cacheFile, policies, cacheCompact);
 		        } catch (Exception excp) {
 		        	LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        } finally {
-		        	if(writer != null) {
-		        		try {
-		        			writer.close();
-		        		} catch(Exception excp) {
-		        			LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        		}
-		        	}
 		        }
 
 				RangerPerfTracer.log(perf);
@@ -30,24 +30,40 @@ public class RangerCommonConstants {
 	public static final String RANGER_ADMIN_SUFFIX_TAG_DELTA                = ".supports.tag.deltas";
 	public static final String PLUGIN_CONFIG_SUFFIX_TAG_DELTA               = ".supports.tag.deltas";
 
+	public static final String RANGER_ADMIN_SUFFIX_ROLE_DELTA               = ".supports.role.deltas";
+	public static final String RANGER_ADMIN_SUFFIX_USERSTORE_DELTA          = ".supports.userstore.deltas";
+
 	public static final String RANGER_ADMIN_SUFFIX_IN_PLACE_POLICY_UPDATES  = ".supports.in.place.policy.updates";
 	public static final String PLUGIN_CONFIG_SUFFIX_IN_PLACE_POLICY_UPDATES = ".supports.in.place.policy.updates";
 
 	public static final String RANGER_ADMIN_SUFFIX_IN_PLACE_TAG_UPDATES     = ".supports.in.place.tag.updates";
 	public static final String PLUGIN_CONFIG_SUFFIX_IN_PLACE_TAG_UPDATES    = ".supports.in.place.tag.updates";
 
+	public static final String PLUGIN_CONFIG_SUFFIX_POLICY_COMPACT          = ".policy.download.compact";
+	public static final String PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT           = ".policy.cache.compact";
+	public static final String PLUGIN_CONFIG_SUFFIX_INTERN_STRINGS          = ".policy.rest.client.intern.strings";
+	public static final String PLUGIN_CONFIG_SUFFIX_GZIP_DOWNLOAD           = ".policy.rest.client.gzip.enabled";
+
 	public static final boolean RANGER_ADMIN_SUFFIX_POLICY_DELTA_DEFAULT             = false;
 	public static final boolean PLUGIN_CONFIG_SUFFIX_POLICY_DELTA_DEFAULT            = false;
 
 	public static final boolean RANGER_ADMIN_SUFFIX_TAG_DELTA_DEFAULT                = false;
 	public static final boolean PLUGIN_CONFIG_SUFFIX_TAG_DELTA_DEFAULT               = false;
 
+	public static final boolean RANGER_ADMIN_SUFFIX_ROLE_DELTA_DEFAULT               = false;
+	public static final boolean RANGER_ADMIN_SUFFIX_USERSTORE_DELTA_DEFAULT          = false;
+
 	public static final boolean RANGER_ADMIN_SUFFIX_IN_PLACE_POLICY_UPDATES_DEFAULT  = false;
 	public static final boolean PLUGIN_CONFIG_SUFFIX_IN_PLACE_POLICY_UPDATES_DEFAULT = false;
 
 	public static final boolean RANGER_ADMIN_SUFFIX_IN_PLACE_TAG_UPDATES_DEFAULT     = false;
 	public static final boolean PLUGIN_CONFIG_SUFFIX_IN_PLACE_TAG_UPDATES_DEFAULT    = false;
 
+	public static final boolean PLUGIN_CONFIG_SUFFIX_POLICY_COMPACT_DEFAULT          = false;
+	public static final boolean PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT_DEFAULT           = false;
+	public static final boolean PLUGIN_CONFIG_SUFFIX_INTERN_STRINGS_DEFAULT          = false;
+	public static final boolean PLUGIN_CONFIG_SUFFIX_GZIP_DOWNLOAD_DEFAULT           = false;
+
 	public static final boolean POLICY_REST_CLIENT_SESSION_COOKIE_ENABLED            = true;
 
 	public static final String SCRIPT_OPTION_ENABLE_JSON_CTX        = "enableJsonCtx";
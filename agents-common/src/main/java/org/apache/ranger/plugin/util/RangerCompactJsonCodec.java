@@ -0,0 +1,796 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Compact binary form of the JSON of an object - like ServicePolicies - sent by Ranger admin to plugins:
+ *   magic, format-version, string-count, strings, value
+ * Each string is a varint length followed by UTF-8 bytes. A value is a tag byte followed by: the varint index of a
+ * string (for strings and non-integral numbers), a zigzag varint (for integral numbers), or a varint count followed by
+ * the elements (for arrays) or by pairs of name-index and value (for objects).
+ *
+ * Each distinct string - field names, users, groups, resource values, access types - is stored once. Each string is
+ * decoded once, and the objects read share a single instance of it. Objects are encoded from the gson JsonElement tree
+ * of the object. They are decoded by gson from a JsonReader over the compact form, without building a tree, when
+ * MAP_ADAPTER_FACTORY is registered with the Gson used; otherwise through a JsonElement tree.
+ *
+ * Plugins write their cache files - policies, tags, roles, user-store - in this format when
+ * ranger.plugin.<service-type>.policy.cache.compact is true. Cache files are read in either format, detected from the
+ * magic, so that a cache file written before the configuration changed is still loaded.
+ */
+public class RangerCompactJsonCodec {
+	static final int MAGIC          = 0x52424346; // "RBCF"
+	static final int FORMAT_VERSION = 1;
+
+	private static final byte TAG_NULL   = 0;
+	private static final byte TAG_TRUE   = 1;
+	private static final byte TAG_FALSE  = 2;
+	private static final byte TAG_STRING = 3;
+	private static final byte TAG_LONG   = 4;
+	private static final byte TAG_NUMBER = 5;
+	private static final byte TAG_ARRAY  = 6;
+	private static final byte TAG_OBJECT = 7;
+
+	private static final TypeToken<Map<String, String>> STRING_MAP_TYPE = new TypeToken<Map<String, String>>() {};
+
+	/**
+	 * Map adapter for Gson instances that read the compact form. gson's own map adapter promotes names to keys only in
+	 * the readers of gson, so maps read from the compact form are read by this adapter; other maps by gson's adapter.
+	 */
+	public static final TypeAdapterFactory MAP_ADAPTER_FACTORY = new MapAdapterFactory();
+
+	private RangerCompactJsonCodec() {
+	}
+
+	public static byte[] toByteArray(Gson gson, Object obj) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			encode(gson.toJsonTree(obj), out);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	public static <T> T fromByteArray(Gson gson, byte[] bytes, Class<T> cls) throws IOException {
+		return decode(gson, ByteBuffer.wrap(bytes), cls);
+	}
+
+	public static void writeFile(Gson gson, File file, Object obj, boolean compact) throws IOException {
+		if (compact) {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+				encode(gson.toJsonTree(obj), out);
+			}
+		} else {
+			try (Writer writer = new FileWriter(file)) {
+				gson.toJson(obj, writer);
+			}
+		}
+	}
+
+	public static <T> T readFile(Gson gson, File file, Class<T> cls) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4);
+
+			if (channel.read(magic, 0) == magic.capacity() && magic.getInt(0) == MAGIC) {
+				if (channel.size() > Integer.MAX_VALUE) {
+					throw new IOException("compact JSON file too large: " + channel.size() + " bytes");
+				}
+
+				return decode(gson, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), cls);
+			}
+		}
+
+		try (Reader reader = new FileReader(file)) {
+			return gson.fromJson(reader, cls);
+		}
+	}
+
+	private static void encode(JsonElement value, DataOutputStream out) throws IOException {
+		Map<String, Integer> strings = new LinkedHashMap<>();
+
+		collectStrings(value, strings);
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		writeVarInt(out, strings.size());
+
+		for (String str : strings.keySet()) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+
+		writeValue(out, value, strings);
+	}
+
+	private static <T> T decode(Gson gson, ByteBuffer buffer, Class<T> cls) throws IOException {
+		if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+			throw new IOException("not in compact JSON format");
+		}
+
+		int version = buffer.getInt();
+
+		if (version != FORMAT_VERSION) {
+			throw new IOException("unsupported compact JSON format version " + version + "; expected " + FORMAT_VERSION);
+		}
+
+		try {
+			String[] strings = readStrings(buffer);
+
+			if (gson.getAdapter(STRING_MAP_TYPE) instanceof CompactMapAdapter) {
+				return gson.fromJson(new CompactJsonReader(buffer, strings), cls);
+			} else {
+				return gson.fromJson(readValue(buffer, strings), cls);
+			}
+		} catch (BufferUnderflowException excp) {
+			throw new IOException("truncated compact JSON", excp);
+		} catch (JsonParseException excp) {
+			throw new IOException("invalid compact JSON", excp);
+		}
+	}
+
+	private static void collectStrings(JsonElement value, Map<String, Integer> strings) {
+		if (value.isJsonObject()) {
+			for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+				addString(entry.getKey(), strings);
+				collectStrings(entry.getValue(), strings);
+			}
+		} else if (value.isJsonArray()) {
+			for (JsonElement element : value.getAsJsonArray()) {
+				collectStrings(element, strings);
+			}
+		} else if (value.isJsonPrimitive()) {
+			JsonPrimitive primitive = value.getAsJsonPrimitive();
+
+			if (primitive.isString() || (primitive.isNumber() && !isIntegral(primitive.getAsNumber()))) {
+				addString(primitive.getAsString(), strings);
+			}
+		}
+	}
+
+	private static void addString(String str, Map<String, Integer> strings) {
+		if (!strings.containsKey(str)) {
+			strings.put(str, strings.size());
+		}
+	}
+
+	private static boolean isIntegral(Number number) {
+		return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+	}
+
+	private static void writeValue(DataOutputStream out, JsonElement value, Map<String, Integer> strings) throws IOException {
+		if (value == null || value.isJsonNull()) {
+			out.writeByte(TAG_NULL);
+		} else if (value.isJsonObject()) {
+			JsonObject object = value.getAsJsonObject();
+
+			out.writeByte(TAG_OBJECT);
+			writeVarInt(out, object.entrySet().size());
+
+			for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+				writeVarInt(out, strings.get(entry.getKey()));
+				writeValue(out, entry.getValue(), strings);
+			}
+		} else if (value.isJsonArray()) {
+			JsonArray array = value.getAsJsonArray();
+
+			out.writeByte(TAG_ARRAY);
+			writeVarInt(out, array.size());
+
+			for (JsonElement element : array) {
+				writeValue(out, element, strings);
+			}
+		} else {
+			JsonPrimitive primitive = value.getAsJsonPrimitive();
+
+			if (primitive.isBoolean()) {
+				out.writeByte(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+			} else if (primitive.isNumber() && isIntegral(primitive.getAsNumber())) {
+				long val = primitive.getAsLong();
+
+				out.writeByte(TAG_LONG);
+				writeVarLong(out, (val << 1) ^ (val >> 63));
+			} else {
+				out.writeByte(primitive.isNumber() ? TAG_NUMBER : TAG_STRING);
+				writeVarInt(out, strings.get(primitive.getAsString()));
+			}
+		}
+	}
+
+	private static JsonElement readValue(ByteBuffer buffer, String[] strings) throws IOException {
+		final JsonElement ret;
+		final byte        tag = buffer.get();
+
+		switch (tag) {
+			case TAG_NULL:
+				ret = JsonNull.INSTANCE;
+			break;
+
+			case TAG_TRUE:
+				ret = new JsonPrimitive(Boolean.TRUE);
+			break;
+
+			case TAG_FALSE:
+				ret = new JsonPrimitive(Boolean.FALSE);
+			break;
+
+			case TAG_STRING:
+				ret = new JsonPrimitive(getString(strings, readVarInt(buffer)));
+			break;
+
+			case TAG_LONG: {
+				long val = readVarLong(buffer);
+
+				ret = new JsonPrimitive((val >>> 1) ^ -(val & 1));
+			}
+			break;
+
+			case TAG_NUMBER:
+				ret = new JsonPrimitive(toNumber(getString(strings, readVarInt(buffer))));
+			break;
+
+			case TAG_ARRAY: {
+				int       count = readVarInt(buffer);
+				JsonArray array = new JsonArray();
+
+				for (int i = 0; i < count; i++) {
+					array.add(readValue(buffer, strings));
+				}
+
+				ret = array;
+			}
+			break;
+
+			case TAG_OBJECT: {
+				int        count  = readVarInt(buffer);
+				JsonObject object = new JsonObject();
+
+				for (int i = 0; i < count; i++) {
+					String name = getString(strings, readVarInt(buffer));
+
+					object.add(name, readValue(buffer, strings));
+				}
+
+				ret = object;
+			}
+			break;
+
+			default:
+				throw new IOException("invalid tag " + tag + " at offset " + (buffer.position() - 1));
+		}
+
+		return ret;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int val) throws IOException {
+		writeVarLong(out, val & 0xFFFFFFFFL);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long val) throws IOException {
+		while ((val & ~0x7FL) != 0) {
+			out.writeByte((int) ((val & 0x7F) | 0x80));
+
+			val >>>= 7;
+		}
+
+		out.writeByte((int) val);
+	}
+
+	private static int readVarInt(ByteBuffer buffer) throws IOException {
+		long ret = readVarLong(buffer);
+
+		if (ret < 0 || ret > Integer.MAX_VALUE) {
+			throw new IOException("invalid length/index " + ret + " at offset " + buffer.position());
+		}
+
+		return (int) ret;
+	}
+
+	private static long readVarLong(ByteBuffer buffer) throws IOException {
+		long ret   = 0;
+		int  shift = 0;
+
+		while (true) {
+			byte b = buffer.get();
+
+			ret |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				break;
+			}
+
+			shift += 7;
+
+			if (shift > 63) {
+				throw new IOException("malformed varint at offset " + buffer.position());
+			}
+		}
+
+		return ret;
+	}
+
+	private static String[] readStrings(ByteBuffer buffer) throws IOException {
+		int      count = readVarInt(buffer);
+		String[] ret   = new String[count];
+		byte[]   bytes = new byte[256];
+
+		for (int i = 0; i < count; i++) {
+			int length = readVarInt(buffer);
+
+			if (bytes.length < length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+
+			buffer.get(bytes, 0, length);
+
+			ret[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+
+		return ret;
+	}
+
+	private static Number toNumber(String value) throws IOException {
+		try {
+			return new BigDecimal(value);
+		} catch (NumberFormatException excp) {
+			throw new IOException("invalid number " + value, excp);
+		}
+	}
+
+		private static String getString(String[] strings, int index) throws IOException {
+		if (index >= strings.length) {
+			throw new IOException("invalid string index " + index + "; string count " + strings.length);
+		}
+
+		return strings[index];
+	}
+
+	private static class MapAdapterFactory implements TypeAdapterFactory {
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+			if (!Map.class.isAssignableFrom(type.getRawType())) {
+				return null;
+			}
+
+			Type[] keyAndValueTypes = getMapKeyAndValueTypes(type.getType());
+
+			TypeAdapter<Map<Object, Object>> delegate     = (TypeAdapter<Map<Object, Object>>) gson.getDelegateAdapter(this, type);
+			TypeAdapter<Object>              keyAdapter   = (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(keyAndValueTypes[0]));
+			TypeAdapter<Object>              valueAdapter = (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(keyAndValueTypes[1]));
+
+			return (TypeAdapter<T>) new CompactMapAdapter<>(delegate, keyAdapter, valueAdapter, keyAndValueTypes[0] == String.class);
+		}
+
+		// key and value types of Map<K, V>, or of a class extending it with concrete types; Object for a raw Map
+		private static Type[] getMapKeyAndValueTypes(Type type) {
+			if (type instanceof ParameterizedType) {
+				ParameterizedType parameterizedType = (ParameterizedType) type;
+
+				if (parameterizedType.getRawType() instanceof Class && Map.class.isAssignableFrom((Class<?>) parameterizedType.getRawType()) && parameterizedType.getActualTypeArguments().length == 2) {
+					return parameterizedType.getActualTypeArguments();
+				}
+			} else if (type instanceof Class && ((Class<?>) type).getTypeParameters().length == 0) {
+				Class<?> clazz = (Class<?>) type;
+
+				if (clazz.getGenericSuperclass() != null) {
+					Type[] ret = getMapKeyAndValueTypes(clazz.getGenericSuperclass());
+
+					if (ret[0] != Object.class || ret[1] != Object.class) {
+						return ret;
+					}
+				}
+
+				for (Type genericInterface : clazz.getGenericInterfaces()) {
+					Type[] ret = getMapKeyAndValueTypes(genericInterface);
+
+					if (ret[0] != Object.class || ret[1] != Object.class) {
+						return ret;
+					}
+				}
+			}
+
+			return new Type[] { Object.class, Object.class };
+		}
+	}
+
+	private static class CompactMapAdapter<K, V> extends TypeAdapter<Map<K, V>> {
+		private final TypeAdapter<Map<K, V>> delegate;
+		private final TypeAdapter<K>         keyAdapter;
+		private final TypeAdapter<V>         valueAdapter;
+		private final boolean                stringKeys;
+
+		CompactMapAdapter(TypeAdapter<Map<K, V>> delegate, TypeAdapter<K> keyAdapter, TypeAdapter<V> valueAdapter, boolean stringKeys) {
+			this.delegate     = delegate;
+			this.keyAdapter   = keyAdapter;
+			this.valueAdapter = valueAdapter;
+			this.stringKeys   = stringKeys;
+		}
+
+		@Override
+		public void write(JsonWriter out, Map<K, V> value) throws IOException {
+			delegate.write(out, value);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Map<K, V> read(JsonReader in) throws IOException {
+			if (!(in instanceof CompactJsonReader)) {
+				return delegate.read(in);
+			}
+
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+
+				return null;
+			}
+
+			Map<K, V> ret = delegate.fromJsonTree(new JsonObject()); // empty map, of the type gson creates for the field
+
+			in.beginObject();
+
+			while (in.hasNext()) {
+				String name = in.nextName();
+				K      key  = stringKeys ? (K) name : keyAdapter.fromJsonTree(new JsonPrimitive(name));
+
+				ret.put(key, valueAdapter.read(in));
+			}
+
+			in.endObject();
+
+			return ret;
+		}
+	}
+
+	/*
+	 * Reads the value of the compact form as a stream of JSON tokens. Strings are returned from the string table, so that
+	 * the objects read share a single instance of each string.
+	 */
+	private static final class CompactJsonReader extends JsonReader {
+		private static final byte NO_TAG = -1;
+
+		private final ByteBuffer buffer;
+		private final String[]   strings;
+		private int[]            remaining = new int[16];     // elements, or name-value pairs, left in each open array/object
+		private boolean[]        inObject  = new boolean[16];
+		private boolean[]        valueNext = new boolean[16]; // the name of the next value in the object has been read
+		private int              depth     = 0;
+		private byte             tag       = NO_TAG;
+		private boolean          done      = false;
+
+		CompactJsonReader(ByteBuffer buffer, String[] strings) {
+			super(new StringReader(""));
+
+			this.buffer  = buffer;
+			this.strings = strings;
+		}
+
+		@Override
+		public JsonToken peek() throws IOException {
+			if (tag == NO_TAG) {
+				if (depth == 0) {
+					if (done) {
+						return JsonToken.END_DOCUMENT;
+					}
+				} else if (inObject[depth - 1]) {
+					if (!valueNext[depth - 1]) {
+						return remaining[depth - 1] == 0 ? JsonToken.END_OBJECT : JsonToken.NAME;
+					}
+				} else if (remaining[depth - 1] == 0) {
+					return JsonToken.END_ARRAY;
+				}
+
+				tag = buffer.get();
+			}
+
+			switch (tag) {
+				case TAG_NULL:
+					return JsonToken.NULL;
+
+				case TAG_TRUE:
+				case TAG_FALSE:
+					return JsonToken.BOOLEAN;
+
+				case TAG_STRING:
+					return JsonToken.STRING;
+
+				case TAG_LONG:
+				case TAG_NUMBER:
+					return JsonToken.NUMBER;
+
+				case TAG_ARRAY:
+					return JsonToken.BEGIN_ARRAY;
+
+				case TAG_OBJECT:
+					return JsonToken.BEGIN_OBJECT;
+
+				default:
+					throw new IOException("invalid tag " + tag + " at offset " + (buffer.position() - 1));
+			}
+		}
+
+		@Override
+		public boolean hasNext() throws IOException {
+			JsonToken token = peek();
+
+			return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+		}
+
+		@Override
+		public void beginArray() throws IOException {
+			nextTag(JsonToken.BEGIN_ARRAY);
+			push(false, readVarInt(buffer));
+		}
+
+		@Override
+		public void endArray() throws IOException {
+			pop(JsonToken.END_ARRAY);
+		}
+
+		@Override
+		public void beginObject() throws IOException {
+			nextTag(JsonToken.BEGIN_OBJECT);
+			push(true, readVarInt(buffer));
+		}
+
+		@Override
+		public void endObject() throws IOException {
+			pop(JsonToken.END_OBJECT);
+		}
+
+		@Override
+		public String nextName() throws IOException {
+			expect(JsonToken.NAME);
+
+			String ret = getString(strings, readVarInt(buffer));
+
+			valueNext[depth - 1] = true;
+
+			return ret;
+		}
+
+		@Override
+		public String nextString() throws IOException {
+			String ret = nextNumberTag("a string") ? Long.toString(readLong()) : getString(strings, readVarInt(buffer));
+
+			valueRead();
+
+			return ret;
+		}
+
+		@Override
+		public boolean nextBoolean() throws IOException {
+			boolean ret = nextTag(JsonToken.BOOLEAN) == TAG_TRUE;
+
+			valueRead();
+
+			return ret;
+		}
+
+		@Override
+		public void nextNull() throws IOException {
+			nextTag(JsonToken.NULL);
+			valueRead();
+		}
+
+		@Override
+		public double nextDouble() throws IOException {
+			double ret = nextNumberTag("a double") ? readLong() : Double.parseDouble(getString(strings, readVarInt(buffer)));
+
+			valueRead();
+
+			return ret;
+		}
+
+		@Override
+		public long nextLong() throws IOException {
+			long ret = nextNumberTag("a long") ? readLong() : parseLong(getString(strings, readVarInt(buffer)));
+
+			valueRead();
+
+			return ret;
+		}
+
+		@Override
+		public int nextInt() throws IOException {
+			long ret = nextLong();
+
+			if ((int) ret != ret) {
+				throw new NumberFormatException("Expected an int but was " + ret);
+			}
+
+			return (int) ret;
+		}
+
+		@Override
+		public void skipValue() throws IOException {
+			switch (peek()) {
+				case BEGIN_ARRAY:
+					beginArray();
+
+					while (hasNext()) {
+						skipValue();
+					}
+
+					endArray();
+				break;
+
+				case BEGIN_OBJECT:
+					beginObject();
+
+					while (hasNext()) {
+						nextName();
+						skipValue();
+					}
+
+					endObject();
+				break;
+
+				case BOOLEAN:
+					nextBoolean();
+				break;
+
+				case NULL:
+					nextNull();
+				break;
+
+				case NAME:
+					nextName();
+				break;
+
+				default:
+					nextString();
+				break;
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public String toString() {
+			return "CompactJsonReader(offset=" + buffer.position() + ", depth=" + depth + ")";
+		}
+
+		private void expect(JsonToken expected) throws IOException {
+			JsonToken token = peek();
+
+			if (token != expected) {
+				throw new IllegalStateException("Expected " + expected + " but was " + token + " at offset " + buffer.position());
+			}
+		}
+
+		private byte nextTag(JsonToken expected) throws IOException {
+			expect(expected);
+
+			byte ret = tag;
+
+			tag = NO_TAG;
+
+			return ret;
+		}
+
+		// consumes the tag of a string or number value; returns true for an integral number, false for a string index
+		private boolean nextNumberTag(String expected) throws IOException {
+			JsonToken token = peek();
+
+			if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+				throw new IllegalStateException("Expected " + expected + " but was " + token + " at offset " + buffer.position());
+			}
+
+			boolean ret = tag == TAG_LONG;
+
+			tag = NO_TAG;
+
+			return ret;
+		}
+
+		private long readLong() throws IOException {
+			long val = readVarLong(buffer);
+
+			return (val >>> 1) ^ -(val & 1);
+		}
+
+		private void push(boolean isObject, int count) {
+			if (depth == remaining.length) {
+				remaining = Arrays.copyOf(remaining, depth * 2);
+				inObject  = Arrays.copyOf(inObject, depth * 2);
+				valueNext = Arrays.copyOf(valueNext, depth * 2);
+			}
+
+			remaining[depth] = count;
+			inObject[depth]  = isObject;
+			valueNext[depth] = false;
+
+			depth++;
+		}
+
+		private void pop(JsonToken expected) throws IOException {
+			expect(expected);
+
+			depth--;
+
+			valueRead();
+		}
+
+		private void valueRead() {
+			if (depth == 0) {
+				done = true;
+			} else {
+				remaining[depth - 1]--;
+				valueNext[depth - 1] = false;
+			}
+		}
+
+		private static long parseLong(String str) {
+			try {
+				return Long.parseLong(str);
+			} catch (NumberFormatException excp) {
+				double val = Double.parseDouble(str);
+
+				if ((long) val != val) {
+					throw new NumberFormatException("Expected a long but was " + str);
+				}
+
+				return (long) val;
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/*
+ * Reads objects downloaded from Ranger admin - like ServicePolicies - with string values interned, so that users,
+ * groups, resource values and access-types repeated across policies, and across downloads, share one String instance.
+ *
+ * Dates are read as written by Ranger admin, that is as milliseconds since epoch.
+ */
+public class RangerJsonStreamReader {
+	private static final Log LOG = LogFactory.getLog(RangerJsonStreamReader.class);
+
+	public static <T> T read(InputStream in, Class<T> cls) throws IOException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerJsonStreamReader.read(" + cls.getSimpleName() + ")");
+		}
+
+		final T    ret;
+		final Gson gson = new GsonBuilder().registerTypeAdapter(String.class, new InternedStringTypeAdapter())
+		                                   .registerTypeAdapter(Date.class, new EpochDateTypeAdapter())
+		                                   .create();
+
+		try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+			ret = gson.fromJson(new JsonReader(reader), cls);
+		} catch (JsonSyntaxException excp) {
+			throw new IOException("failed to read " + cls.getSimpleName(), excp);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerJsonStreamReader.read(" + cls.getSimpleName() + ")");
+		}
+
+		return ret;
+	}
+
+	private static class InternedStringTypeAdapter extends TypeAdapter<String> {
+		@Override
+		public void write(JsonWriter out, String value) throws IOException {
+			out.value(value);
+		}
+
+		@Override
+		public String read(JsonReader in) throws IOException {
+			final String ret;
+			final JsonToken token = in.peek();
+
+			if (token == JsonToken.NULL) {
+				in.nextNull();
+
+				ret = null;
+			} else if (token == JsonToken.BOOLEAN) {
+				ret = Boolean.toString(in.nextBoolean());
+			} else {
+				ret = in.nextString().intern();
+			}
+
+			return ret;
+		}
+	}
+
+	private static class EpochDateTypeAdapter extends TypeAdapter<Date> {
+		@Override
+		public void write(JsonWriter out, Date value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+			} else {
+				out.value(value.getTime());
+			}
+		}
+
+		@Override
+		public Date read(JsonReader in) throws IOException {
+			final Date ret;
+
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+
+				ret = null;
+			} else {
+				String value = in.nextString();
+
+				try {
+					ret = new Date(Long.parseLong(value));
+				} catch (NumberFormatException excp) {
+					throw new JsonSyntaxException("invalid date '" + value + "'; expected milliseconds since epoch", excp);
+				}
+			}
+
+			return ret;
+		}
+	}
+}
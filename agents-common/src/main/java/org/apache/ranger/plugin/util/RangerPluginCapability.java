@@ -47,6 +47,8 @@ public class RangerPluginCapability {
 	- Super-user permission
 	- UserStore download
 	- Audit-policies
+	- Role deltas
+	- UserStore deltas
      */
     private final long pluginCapabilities;
     private static final String baseRangerCapabilities = computeBaseCapabilities();
@@ -69,7 +71,9 @@ public enum RangerPluginFeature {
         RANGER_PLUGIN_CAPABILITY_CHAINED_PLUGINS("Chained Plugins"),
         RANGER_PLUGIN_CAPABILITY_SUPERUSER_PERMISSIONS("Super-user Permissions"),
         RANGER_PLUGIN_CAPABILITY_USERSTORE_DOWNLOAD("UserStore Download"),
-        RANGER_PLUGIN_CAPABILITY_AUDIT_POLICY("Audit Policy");
+        RANGER_PLUGIN_CAPABILITY_AUDIT_POLICY("Audit Policy"),
+        RANGER_PLUGIN_CAPABILITY_ROLE_DELTAS("Role Deltas"),
+        RANGER_PLUGIN_CAPABILITY_USERSTORE_DELTAS("UserStore Deltas");
 
         private final String name;
         RangerPluginFeature(String name) {
@@ -112,6 +116,28 @@ public long getPluginCapabilities() {
         return pluginCapabilities;
     }
 
+    public boolean isSupported(RangerPluginFeature feature) {
+        return (pluginCapabilities & (1L << feature.ordinal())) != 0;
+    }
+
+    /**
+     * @param pluginCapabilities capabilities as sent by plugins, a hex string
+     * @return false if the capabilities are empty or invalid
+     */
+    public static boolean isSupported(String pluginCapabilities, RangerPluginFeature feature) {
+        boolean ret = false;
+
+        if (pluginCapabilities != null && !pluginCapabilities.isEmpty()) {
+            try {
+                ret = new RangerPluginCapability(Long.parseUnsignedLong(pluginCapabilities, 16)).isSupported(feature);
+            } catch (NumberFormatException excp) {
+                // Ignore
+            }
+        }
+
+        return ret;
+    }
+
     public List<String> compare(RangerPluginCapability other) {
         final List<String> ret;
 
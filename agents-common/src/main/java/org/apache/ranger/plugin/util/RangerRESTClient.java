@@ -62,6 +62,7 @@
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
@@ -106,6 +107,7 @@ public class RangerRESTClient {
 	private int    mRestClientConnTimeOutMs;
 	private int    mRestClientReadTimeOutMs;
 	private int    lastKnownActiveUrlIndex;
+	private boolean mIsGzipEnabled;
 
 	private final List<String> configuredURLs;
 
@@ -154,6 +156,18 @@ public void setRestClientReadTimeOutMs(int mRestClientReadTimeOutMs) {
 		this.mRestClientReadTimeOutMs = mRestClientReadTimeOutMs;
 	}
 
+	public boolean isGzipEnabled() {
+		return mIsGzipEnabled;
+	}
+
+	/*
+	 * When enabled, responses are requested with Accept-Encoding: gzip and decompressed as they are read. Should be
+	 * set before the first request, as the client is built then.
+	 */
+	public void setGzipEnabled(boolean isGzipEnabled) {
+		this.mIsGzipEnabled = isGzipEnabled;
+	}
+
 	public void setBasicAuthInfo(String username, String password) {
 		mUsername = username;
 		mPassword = password;
@@ -222,6 +236,10 @@ public boolean verify(String urlHostName, SSLSession session) {
 			client.addFilter(new HTTPBasicAuthFilter(mUsername, mPassword));
 		}
 
+		if (mIsGzipEnabled) {
+			client.addFilter(new GZIPContentEncodingFilter(false));
+		}
+
 		// Set Connection Timeout and ReadTime for the PolicyRefresh
 		client.setConnectTimeout(mRestClientConnTimeOutMs);
 		client.setReadTimeout(mRestClientReadTimeOutMs);
@@ -473,6 +491,10 @@ public ClientResponse get(String relativeUrl, Map<String, String> params) throws
 	}
 
 	public ClientResponse get(String relativeUrl, Map<String, String> params, Cookie sessionId) throws Exception{
+		return get(relativeUrl, params, sessionId, RangerRESTUtils.REST_EXPECTED_MIME_TYPE);
+	}
+
+	public ClientResponse get(String relativeUrl, Map<String, String> params, Cookie sessionId, String acceptType) throws Exception{
 		ClientResponse finalResponse = null;
 		int startIndex = this.lastKnownActiveUrlIndex;
 		int currentIndex = 0;
@@ -484,7 +506,7 @@ public ClientResponse get(String relativeUrl, Map<String, String> params, Cookie
 				WebResource webResource = createWebResourceForCookieAuth(currentIndex, relativeUrl);
 				webResource = setQueryParams(webResource, params);
 				WebResource.Builder br = webResource.getRequestBuilder().cookie(sessionId);
-				finalResponse = br.accept(RangerRESTUtils.REST_EXPECTED_MIME_TYPE).type(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
+				finalResponse = br.accept(acceptType).type(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
 
 				if (finalResponse != null) {
 					setLastKnownActiveUrlIndex(currentIndex);
@@ -44,6 +44,9 @@ public class RangerRESTUtils {
 	public static final String REST_URL_SECURE_SERVICE_GRANT_ACCESS              = "/service/plugins/secure/services/grant/";
 	public static final String REST_URL_SECURE_SERVICE_REVOKE_ACCESS             = "/service/plugins/secure/services/revoke/";
 
+	public static final String REST_URL_POLICY_COMPACT_GET_FOR_SERVICE_IF_UPDATED        = "/service/plugins/policies/compact/download/";
+	public static final String REST_URL_POLICY_COMPACT_GET_FOR_SECURE_SERVICE_IF_UPDATED = "/service/plugins/secure/policies/compact/download/";
+
 	public static final String REST_URL_SERVICE_CREATE_ROLE              = "/service/public/v2/api/roles/";
 	public static final String REST_URL_SERVICE_DROP_ROLE         = "/service/public/v2/api/roles/name/";
 	public static final String REST_URL_SERVICE_GET_ALL_ROLES         = "/service/public/v2/api/roles/names/";
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRoleDelta;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class RangerRoleDeltaUtil {
+
+    private static final Log LOG = LogFactory.getLog(RangerRoleDeltaUtil.class);
+
+    private static final Log PERF_ROLE_DELTA_LOG = RangerPerfTracer.getPerfLogger("role.delta");
+
+    public static boolean hasRoleDeltas(RangerRoles roles) {
+        return roles != null && roles.getRoleDeltas() != null;
+    }
+
+    /**
+     * @param roles  roles of the version the deltas were requested for
+     * @param deltas roles with changes since that version, as returned by Ranger admin
+     * @return roles of the version of deltas. Roles not changed by the deltas are the same instances as in roles, so
+     *         that RangerRolesUtil recomputes mappings only for the changed roles. null if roles is null
+     */
+    public static RangerRoles applyDeltas(RangerRoles roles, RangerRoles deltas) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerRoleDeltaUtil.applyDeltas(rolesVersion=" + (roles != null ? roles.getRoleVersion() : null) + ", deltasVersion=" + deltas.getRoleVersion() + ")");
+        }
+
+        RangerRoles      ret  = null;
+        RangerPerfTracer perf = null;
+
+        if (RangerPerfTracer.isPerfTraceEnabled(PERF_ROLE_DELTA_LOG)) {
+            perf = RangerPerfTracer.getPerfTracer(PERF_ROLE_DELTA_LOG, "RangerRoleDeltaUtil.applyDeltas()");
+        }
+
+        if (roles != null) {
+            Map<String, RangerRole> changedRoles = new HashMap<>(); // role name -> role after the deltas; null if deleted
+
+            if (deltas.getRoleDeltas() != null) {
+                for (RangerRoleDelta delta : deltas.getRoleDeltas()) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("applying role delta: " + delta);
+                    }
+
+                    if (delta.getRole() == null || delta.getChangeType() == null) {
+                        LOG.warn("ignoring invalid role delta: " + delta);
+
+                        continue;
+                    }
+
+                    switch (delta.getChangeType()) {
+                        case RangerRoleDelta.CHANGE_TYPE_ROLE_CREATE:
+                        case RangerRoleDelta.CHANGE_TYPE_ROLE_UPDATE:
+                            changedRoles.put(delta.getRoleName(), delta.getRole());
+                            break;
+
+                        case RangerRoleDelta.CHANGE_TYPE_ROLE_DELETE:
+                            changedRoles.put(delta.getRoleName(), null);
+                            break;
+
+                        default:
+                            LOG.warn("ignoring role delta of unknown type: " + delta);
+                            break;
+                    }
+                }
+            }
+
+            // unchanged roles are kept as is, including roles sharing a name, which RangerRolesUtil merges
+            Set<RangerRole> rangerRoles = new HashSet<>();
+
+            if (roles.getRangerRoles() != null) {
+                for (RangerRole role : roles.getRangerRoles()) {
+                    if (!changedRoles.containsKey(role.getName())) {
+                        rangerRoles.add(role);
+                    }
+                }
+            }
+
+            for (RangerRole role : changedRoles.values()) {
+                if (role != null) {
+                    rangerRoles.add(role);
+                }
+            }
+
+            ret = new RangerRoles();
+
+            ret.setServiceName(deltas.getServiceName() != null ? deltas.getServiceName() : roles.getServiceName());
+            ret.setRoleVersion(deltas.getRoleVersion());
+            ret.setRoleUpdateTime(deltas.getRoleUpdateTime());
+            ret.setRangerRoles(rangerRoles);
+        }
+
+        RangerPerfTracer.log(perf);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerRoleDeltaUtil.applyDeltas(): roleCount=" + (ret != null ? ret.getRangerRoles().size() : null));
+        }
+
+        return ret;
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.ranger.plugin.util;
 
 import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRoleDelta;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
@@ -29,6 +30,7 @@
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 @JsonAutoDetect(fieldVisibility= JsonAutoDetect.Visibility.ANY)
@@ -39,10 +41,11 @@
 public class RangerRoles implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private String           serviceName;
-    private Long             roleVersion;
-    private Date             roleUpdateTime;
-    private Set<RangerRole>  rangerRoles;
+    private String                serviceName;
+    private Long                  roleVersion;
+    private Date                  roleUpdateTime;
+    private Set<RangerRole>       rangerRoles;
+    private List<RangerRoleDelta> roleDeltas; // when set, changes since the requested version; rangerRoles is then not set
 
     public String getServiceName() {
         return serviceName;
@@ -75,4 +78,12 @@ public Set<RangerRole> getRangerRoles(){
     public void setRangerRoles(Set<RangerRole> rangerRoles){
         this.rangerRoles = rangerRoles;
     }
+
+    public List<RangerRoleDelta> getRoleDeltas() {
+        return this.roleDeltas;
+    }
+
+    public void setRoleDeltas(List<RangerRoleDelta> roleDeltas) {
+        this.roleDeltas = roleDeltas;
+    }
 }
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Role membership of users and groups as bitsets over interned role IDs, built from the mappings in RangerRolesUtil.
+ * User, group and role names are interned to int IDs; each user and group has the bitset of the roles it is a member
+ * of, directly or through contained roles. The roles of a user and groups are then the OR of a few bitsets.
+ *
+ * Results are cached by (user, groups), and returned as RoleSet - an immutable Set of role names backed by the bitset.
+ * Instances are immutable apart from the cache; an instance is replaced, with its cache, when roles change.
+ */
+public class RangerRolesIndex {
+    static final int ROLES_CACHE_MAX_SIZE = 10000;
+
+    private final Map<String, Integer>        roleIds;
+    private final String[]                    roleNames;
+    private final Map<String, Integer>        userIds;
+    private final BitSet[]                    userRoles;
+    private final Map<String, Integer>        groupIds;
+    private final BitSet[]                    groupRoles;
+    private final BitSet                      publicGroupRoles;
+    private final RoleSet                     emptyRoleSet;
+    private final Map<PrincipalKey, RoleSet>  rolesCache = new ConcurrentHashMap<>();
+
+    public RangerRolesIndex(Map<String, Set<String>> userRoleMapping, Map<String, Set<String>> groupRoleMapping, Collection<String> allRoleNames) {
+        Map<String, Integer> roleIds = new HashMap<>();
+
+        if (allRoleNames != null) {
+            for (String roleName : allRoleNames) {
+                internRole(roleIds, roleName);
+            }
+        }
+
+        for (Set<String> roles : userRoleMapping.values()) {
+            for (String roleName : roles) {
+                internRole(roleIds, roleName);
+            }
+        }
+
+        for (Set<String> roles : groupRoleMapping.values()) {
+            for (String roleName : roles) {
+                internRole(roleIds, roleName);
+            }
+        }
+
+        this.roleIds   = roleIds;
+        this.roleNames = new String[roleIds.size()];
+
+        for (Map.Entry<String, Integer> entry : roleIds.entrySet()) {
+            roleNames[entry.getValue()] = entry.getKey();
+        }
+
+        this.userIds    = new HashMap<>();
+        this.userRoles  = buildRoleBitSets(userRoleMapping, userIds);
+        this.groupIds   = new HashMap<>();
+        this.groupRoles = buildRoleBitSets(groupRoleMapping, groupIds);
+
+        Integer publicGroupId = groupIds.get(RangerPolicyEngine.GROUP_PUBLIC);
+
+        this.publicGroupRoles = publicGroupId != null ? groupRoles[publicGroupId] : new BitSet();
+        this.emptyRoleSet     = new RoleSet(this, publicGroupRoles);
+    }
+
+    public int getRoleCount() { return roleNames.length; }
+
+    /**
+     * @return ID of the role, or -1 if there is no role by the name
+     */
+    public int getRoleId(String roleName) {
+        Integer ret = roleName != null ? roleIds.get(roleName) : null;
+
+        return ret != null ? ret : -1;
+    }
+
+    public String getRoleName(int roleId) {
+        return roleId >= 0 && roleId < roleNames.length ? roleNames[roleId] : null;
+    }
+
+    /**
+     * @return ID of the user, or -1 if the user is not a member of any role
+     */
+    public int getUserId(String userName) {
+        Integer ret = userName != null ? userIds.get(userName) : null;
+
+        return ret != null ? ret : -1;
+    }
+
+    /**
+     * @return ID of the group, or -1 if the group is not a member of any role
+     */
+    public int getGroupId(String groupName) {
+        Integer ret = groupName != null ? groupIds.get(groupName) : null;
+
+        return ret != null ? ret : -1;
+    }
+
+    /**
+     * @return bitset of IDs of the given roles; roles not known to this index are ignored
+     */
+    public BitSet getRoleIds(Collection<String> roleNames) {
+        BitSet ret = new BitSet(this.roleNames.length);
+
+        if (roleNames != null) {
+            for (String roleName : roleNames) {
+                int roleId = getRoleId(roleName);
+
+                if (roleId != -1) {
+                    ret.set(roleId);
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return roles of the user, the groups and the public group
+     */
+    public RoleSet getRolesForUserAndGroups(String user, Set<String> groups) {
+        int   userId      = StringUtils.isNotEmpty(user) ? getUserId(user) : -1;
+        int[] groupIdList = null;
+        int   groupCount  = 0;
+
+        if (CollectionUtils.isNotEmpty(groups) && !groupIds.isEmpty()) {
+            for (String group : groups) {
+                int groupId = getGroupId(group);
+
+                if (groupId != -1) {
+                    if (groupIdList == null) {
+                        groupIdList = new int[groups.size()];
+                    }
+
+                    groupIdList[groupCount++] = groupId;
+                }
+            }
+        }
+
+        if (userId == -1 && groupCount == 0) {
+            return emptyRoleSet;
+        }
+
+        // groups that are not members of any role don't affect the result, so are not part of the key
+        int[] keyGroupIds = groupCount == 0 ? new int[0] : Arrays.copyOf(groupIdList, groupCount);
+
+        Arrays.sort(keyGroupIds);
+
+        PrincipalKey key = new PrincipalKey(userId, keyGroupIds);
+        RoleSet      ret = rolesCache.get(key);
+
+        if (ret == null) {
+            BitSet roles = (BitSet) publicGroupRoles.clone();
+
+            if (userId != -1) {
+                roles.or(userRoles[userId]);
+            }
+
+            for (int groupId : keyGroupIds) {
+                roles.or(groupRoles[groupId]);
+            }
+
+            ret = new RoleSet(this, roles);
+
+            if (rolesCache.size() >= ROLES_CACHE_MAX_SIZE) {
+                rolesCache.clear();
+            }
+
+            rolesCache.put(key, ret);
+        }
+
+        return ret;
+    }
+
+    int getRolesCacheSize() { return rolesCache.size(); }
+
+    private static void internRole(Map<String, Integer> roleIds, String roleName) {
+        if (roleName != null && !roleIds.containsKey(roleName)) {
+            roleIds.put(roleName, roleIds.size());
+        }
+    }
+
+    private BitSet[] buildRoleBitSets(Map<String, Set<String>> roleMapping, Map<String, Integer> principalIds) {
+        BitSet[] ret = new BitSet[roleMapping.size()];
+
+        for (Map.Entry<String, Set<String>> entry : roleMapping.entrySet()) {
+            int principalId = principalIds.size();
+
+            principalIds.put(entry.getKey(), principalId);
+
+            ret[principalId] = getRoleIds(entry.getValue());
+        }
+
+        return ret;
+    }
+
+    /**
+     * Immutable set of role names, backed by a bitset of role IDs of a RangerRolesIndex.
+     */
+    public static final class RoleSet extends AbstractSet<String> {
+        private final RangerRolesIndex index;
+        private final BitSet           roleIds;
+        private final int              size;
+        private       int              hashCode = -1;
+
+        RoleSet(RangerRolesIndex index, BitSet roleIds) {
+            this.index   = index;
+            this.roleIds = roleIds;
+            this.size    = roleIds.cardinality();
+        }
+
+        public RangerRolesIndex getIndex() { return index; }
+
+        /**
+         * @param roleIds IDs of roles in the index of this set
+         */
+        public boolean containsAny(BitSet roleIds) {
+            return this.roleIds.intersects(roleIds);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int roleId = o instanceof String ? index.getRoleId((String) o) : -1;
+
+            return roleId != -1 && roleIds.get(roleId);
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next = roleIds.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() { return next != -1; }
+
+                @Override
+                public String next() {
+                    if (next == -1) {
+                        throw new NoSuchElementException();
+                    }
+
+                    String ret = index.roleNames[next];
+
+                    next = roleIds.nextSetBit(next + 1);
+
+                    return ret;
+                }
+            };
+        }
+
+        @Override
+        public int hashCode() {
+            int ret = hashCode;
+
+            if (ret == -1) {
+                ret      = super.hashCode();
+                hashCode = ret;
+            }
+
+            return ret;
+        }
+    }
+
+    /**
+     * Matches role names of a policy item against a RoleSet using role IDs. IDs are looked up once for each
+     * RangerRolesIndex, i.e. once after every change to roles.
+     */
+    public static final class RoleMatcher {
+        private final Collection<String> roleNames;
+        private volatile IndexedRoleIds  indexedRoleIds = null;
+
+        public RoleMatcher(Collection<String> roleNames) {
+            this.roleNames = roleNames != null ? roleNames : Collections.<String>emptySet();
+        }
+
+        public boolean matchesAny(Set<String> roles) {
+            final boolean ret;
+
+            if (roles instanceof RoleSet) {
+                RoleSet        roleSet = (RoleSet) roles;
+                IndexedRoleIds roleIds = indexedRoleIds;
+
+                if (roleIds == null || roleIds.index != roleSet.index) {
+                    roleIds        = new IndexedRoleIds(roleSet.index, roleSet.index.getRoleIds(roleNames));
+                    indexedRoleIds = roleIds;
+                }
+
+                ret = roleSet.containsAny(roleIds.roleIds);
+            } else {
+                ret = roles != null && !Collections.disjoint(roleNames, roles);
+            }
+
+            return ret;
+        }
+
+        private static final class IndexedRoleIds {
+            final RangerRolesIndex index;
+            final BitSet           roleIds;
+
+            IndexedRoleIds(RangerRolesIndex index, BitSet roleIds) {
+                this.index   = index;
+                this.roleIds = roleIds;
+            }
+        }
+    }
+
+    private static final class PrincipalKey {
+        private final int   userId;
+        private final int[] groupIds;
+        private final int   hashCode;
+
+        PrincipalKey(int userId, int[] groupIds) {
+            this.userId   = userId;
+            this.groupIds = groupIds;
+            this.hashCode = 31 * userId + Arrays.hashCode(groupIds);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof PrincipalKey)) {
+                return false;
+            }
+
+            PrincipalKey other = (PrincipalKey) obj;
+
+            return userId == other.userId && Arrays.equals(groupIds, other.groupIds);
+        }
+    }
+}
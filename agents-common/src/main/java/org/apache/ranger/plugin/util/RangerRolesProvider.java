@@ -29,10 +29,6 @@
 import org.apache.ranger.plugin.service.RangerBasePlugin;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.Reader;
-import java.io.Writer;
 import java.util.Date;
 import java.util.HashSet;
 
@@ -50,6 +46,7 @@ public class RangerRolesProvider {
 	private final String			cacheFileNamePrefix;
 	private final String            cacheDir;
 	private final Gson              gson;
+	private final boolean           cacheCompact;
 	private final boolean           disableCacheIfServiceNotFound;
 
 	private long	lastActivationTimeInMillis;
@@ -81,7 +78,7 @@ public RangerRolesProvider(String serviceType, String appId, String serviceName,
 
 		Gson gson = null;
 		try {
-			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").registerTypeAdapterFactory(RangerCompactJsonCodec.MAP_ADAPTER_FACTORY).create();
 		} catch (Throwable excp) {
 			LOG.fatal("RangerRolesProvider(): failed to create GsonBuilder object", excp);
 		}
@@ -89,6 +86,7 @@ public RangerRolesProvider(String serviceType, String appId, String serviceName,
 
 		String propertyPrefix = "ranger.plugin." + serviceType;
 		disableCacheIfServiceNotFound = config.getBoolean(propertyPrefix + ".disable.cache.if.servicenotfound", true);
+		cacheCompact                  = config.getBoolean(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT_DEFAULT);
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerRolesProvider(serviceName=" + serviceName + ").RangerRolesProvider()");
@@ -120,7 +118,7 @@ public void loadUserGroupRoles(RangerBasePlugin plugIn) {
 
 		try {
 			//load userGroupRoles from ranger admin
-			RangerRoles roles = loadUserGroupRolesFromAdmin();
+			RangerRoles roles = loadUserGroupRolesFromAdmin(plugIn);
 
 			if (roles == null) {
 				//if userGroupRoles fetch from ranger Admin Fails, load from cache
@@ -165,7 +163,7 @@ public void loadUserGroupRoles(RangerBasePlugin plugIn) {
 		}
 	}
 
-	private RangerRoles loadUserGroupRolesFromAdmin() throws RangerServiceNotFoundException {
+	private RangerRoles loadUserGroupRolesFromAdmin(RangerBasePlugin plugIn) throws RangerServiceNotFoundException {
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerRolesProvider(serviceName=" + serviceName + ").loadUserGroupRolesFromAdmin()");
@@ -182,6 +180,10 @@ private RangerRoles loadUserGroupRolesFromAdmin() throws RangerServiceNotFoundEx
 		try {
 			roles = rangerAdmin.getRolesIfUpdated(lastKnownRoleVersion, lastActivationTimeInMillis);
 
+			if (RangerRoleDeltaUtil.hasRoleDeltas(roles)) {
+				roles = applyRoleDeltas(plugIn, roles);
+			}
+
 			boolean isUpdated = roles != null;
 
 			if(isUpdated) {
@@ -210,6 +212,28 @@ private RangerRoles loadUserGroupRolesFromAdmin() throws RangerServiceNotFoundEx
 		 return roles;
 	}
 
+	private RangerRoles applyRoleDeltas(RangerBasePlugin plugIn, RangerRoles roleDeltas) {
+		RangerRoles currentRoles   = plugIn.getRoles();
+		Long        currentVersion = currentRoles != null ? currentRoles.getRoleVersion() : null;
+		RangerRoles ret;
+
+		if (currentVersion != null && currentVersion == lastKnownRoleVersion) {
+			ret = RangerRoleDeltaUtil.applyDeltas(currentRoles, roleDeltas);
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerRolesProvider(serviceName=" + serviceName + "): applied " + roleDeltas.getRoleDeltas().size() + " role deltas to version " + currentVersion);
+			}
+		} else {
+			// the roles the deltas are for are not available; download all roles in the next call
+			LOG.warn("RangerRolesProvider(serviceName=" + serviceName + "): received role deltas for version " + lastKnownRoleVersion + ", but roles in plugin are of version " + currentVersion + ". Will download all roles");
+
+			lastKnownRoleVersion = -1L;
+			ret                  = null;
+		}
+
+		return ret;
+	}
+
 	private RangerRoles loadUserGroupRolesFromCache() {
 
 		RangerRoles roles = null;
@@ -221,8 +245,6 @@ private RangerRoles loadUserGroupRolesFromCache() {
 		File cacheFile = cacheDir == null ? null : new File(cacheDir + File.separator + cacheFileName);
 
 		if (cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-			Reader reader = null;
-
 			RangerPerfTracer perf = null;
 
 			if (RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
@@ -230,9 +252,7 @@ private RangerRoles loadUserGroupRolesFromCache() {
 			}
 
 			try {
-				reader = new FileReader(cacheFile);
-
-				roles = gson.fromJson(reader, RangerRoles.class);
+				roles = RangerCompactJsonCodec.readFile(gson, cacheFile, RangerRoles.class);
 
 				if (roles != null) {
 					if (!StringUtils.equals(serviceName, roles.getServiceName())) {
@@ -247,14 +267,6 @@ private RangerRoles loadUserGroupRolesFromCache() {
 				LOG.error("failed to load userGroupRoles from cache file " + cacheFile.getAbsolutePath(), excp);
 			} finally {
 				RangerPerfTracer.log(perf);
-
-				if (reader != null) {
-					try {
-						reader.close();
-					} catch (Exception excp) {
-						LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-					}
-				}
 			}
 		} else {
 			roles = new RangerRoles();
@@ -302,23 +314,11 @@ public void saveToCache(RangerRoles roles) {
 					perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "RangerRolesProvider.saveToCache(serviceName=" + serviceName + ")");
 				}
 
-				Writer writer = null;
-
 				try {
-					writer = new FileWriter(cacheFile);
-
-			        gson.toJson(roles, writer);
+			        RangerCompactJsonCodec.writeFile(gson, cacheFile, roles, cacheCompact);
 		        } catch (Exception excp) {
 					LOG.error("failed to save roles to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        } finally {
-					if(writer != null) {
-						try {
-							writer.close();
-						} catch(Exception excp) {
-							LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-						}
-					}
-				}
+		        }
 
 				RangerPerfTracer.log(perf);
 			}
@@ -23,55 +23,162 @@
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.plugin.model.RangerRole;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Role mappings - users, groups and roles to the roles they are members of, directly or through contained roles - built
+ * from a DAG of roles indexed by name.
+ *
+ * Contained roles of each role are computed once, children before parents, from the contained roles of its members;
+ * roles in a cycle share the same contained roles. When built from a previous version of roles, roles that are the same
+ * instance in both versions are considered unchanged, and contained roles and mappings are recomputed only for the
+ * changed roles and the roles that contain them.
+ */
 public class RangerRolesUtil {
     private final long                     roleVersion;
-    private final Map<String, Set<String>> userRoleMapping = new HashMap<>();
-    private final Map<String, Set<String>> groupRoleMapping = new HashMap<>();
-    private final Map<String, Set<String>> roleRoleMapping  = new HashMap<>();
+    private final Map<String, Set<String>> userRoleMapping;
+    private final Map<String, Set<String>> groupRoleMapping;
+    private final Map<String, Set<String>> roleRoleMapping;
 
-    private final Map<String, Set<String>> roleToUserMapping = new HashMap<>();
-    private final Map<String, Set<String>> roleToGroupMapping = new HashMap<>();
+    private final Map<String, Set<String>> roleToUserMapping;
+    private final Map<String, Set<String>> roleToGroupMapping;
+    private final Map<String, Set<String>> roleToRoleMapping;
+
+    private final Map<String, RangerRole>  roleByName;
+    private final Map<String, Set<String>> roleParents;    // role name -> names of roles having it as a member
+    private final Map<String, Set<String>> containedRoles; // role name -> names of roles contained in it, including itself
 
     private RangerRoles                    roles            = null;
+    private volatile RangerRolesIndex      rolesIndex       = null;
     public  enum  ROLES_FOR {USER, GROUP, ROLE}
 
     public RangerRolesUtil(RangerRoles roles) {
+        this(roles, null);
+    }
+
+    /**
+     * @param previous role mappings of the previous version of roles, to recompute only the changed roles; can be null
+     */
+    public RangerRolesUtil(RangerRoles roles, RangerRolesUtil previous) {
+        this.roleByName = new HashMap<>();
+
         if (roles != null) {
             this.roles  = roles;
             roleVersion = roles.getRoleVersion();
 
             if (CollectionUtils.isNotEmpty(roles.getRangerRoles())) {
                 for (RangerRole role : roles.getRangerRoles()) {
-                    Set<RangerRole> containedRoles = getAllContainedRoles(roles.getRangerRoles(), role);
+                    if (role != null && role.getName() != null) {
+                        roleByName.merge(role.getName(), role, RangerRolesUtil::mergeRoles);
+                    }
+                }
+            }
+        } else {
+            roleVersion = -1L;
+        }
 
-                    buildMap(userRoleMapping, role, containedRoles, ROLES_FOR.USER);
-                    buildMap(groupRoleMapping, role, containedRoles, ROLES_FOR.GROUP);
-                    buildMap(roleRoleMapping, role, containedRoles, ROLES_FOR.ROLE);
+        Set<String> changedRoles  = new HashSet<>();
+        boolean     isIncremental = previous != null;
 
-                    Set<String> roleUsers  = new HashSet<>();
-                    Set<String> roleGroups = new HashSet<>();
+        if (isIncremental) {
+            for (RangerRole role : roleByName.values()) {
+                if (previous.roleByName.get(role.getName()) != role) {
+                    changedRoles.add(role.getName());
+                }
+            }
 
-                    addMemberNames(role.getUsers(), roleUsers);
-                    addMemberNames(role.getGroups(), roleGroups);
+            for (String roleName : previous.roleByName.keySet()) {
+                if (!roleByName.containsKey(roleName)) {
+                    changedRoles.add(roleName);
+                }
+            }
 
-                    for (RangerRole containedRole : containedRoles) {
-                        addMemberNames(containedRole.getUsers(), roleUsers);
-                        addMemberNames(containedRole.getGroups(), roleGroups);
-                    }
+            // rebuild when most roles changed, as after a download of all roles
+            isIncremental = changedRoles.size() * 2 <= roleByName.size();
+        }
+
+        final RangerRolesUtil old = isIncremental ? previous : null;
 
-                    roleToUserMapping.put(role.getName(), roleUsers);
-                    roleToGroupMapping.put(role.getName(), roleGroups);
+        if (old == null) {
+            changedRoles = roleByName.keySet();
+        }
+
+        this.userRoleMapping    = copyOf(old == null ? null : old.userRoleMapping);
+        this.groupRoleMapping   = copyOf(old == null ? null : old.groupRoleMapping);
+        this.roleRoleMapping    = copyOf(old == null ? null : old.roleRoleMapping);
+        this.roleToUserMapping  = copyOf(old == null ? null : old.roleToUserMapping);
+        this.roleToGroupMapping = copyOf(old == null ? null : old.roleToGroupMapping);
+        this.roleToRoleMapping  = copyOf(old == null ? null : old.roleToRoleMapping);
+        this.roleParents        = copyOf(old == null ? null : old.roleParents);
+        this.containedRoles     = copyOf(old == null ? null : old.containedRoles);
+
+        for (String roleName : changedRoles) {
+            RangerRole oldRole = old == null ? null : old.roleByName.get(roleName);
+            RangerRole newRole = roleByName.get(roleName);
+
+            if (oldRole != null) {
+                for (String memberRole : getMemberNames(oldRole.getRoles())) {
+                    removeFromMapping(roleParents, old.roleParents, memberRole, roleName);
                 }
+            }
 
+            if (newRole != null) {
+                for (String memberRole : getMemberNames(newRole.getRoles())) {
+                    addToMapping(roleParents, old == null ? null : old.roleParents, memberRole, roleName);
+                }
             }
+        }
+
+        // contained roles change for the changed roles and the roles containing them, before and after the change
+        final Set<String> affectedRoles;
+
+        if (old == null) {
+            affectedRoles = changedRoles;
         } else {
-            roleVersion = -1L;
+            affectedRoles = new HashSet<>(changedRoles);
+
+            affectedRoles.addAll(getAncestors(changedRoles, old.roleParents));
+            affectedRoles.addAll(getAncestors(changedRoles, roleParents));
+
+            containedRoles.keySet().removeAll(affectedRoles);
+        }
+
+        computeContainedRoles(affectedRoles);
+
+        for (String roleName : affectedRoles) {
+            Set<String> contained = containedRoles.get(roleName);
+            Set<String> users     = null;
+            Set<String> groups    = null;
+            Set<String> roleNames = null;
+
+            if (contained != null) {
+                users     = new HashSet<>();
+                groups    = new HashSet<>();
+                roleNames = new HashSet<>();
+
+                for (String containedRoleName : contained) {
+                    RangerRole containedRole = roleByName.get(containedRoleName);
+
+                    users.addAll(getMemberNames(containedRole.getUsers()));
+                    groups.addAll(getMemberNames(containedRole.getGroups()));
+                    roleNames.addAll(getMemberNames(containedRole.getRoles()));
+                }
+            }
+
+            updateMapping(roleName, users, roleToUserMapping, userRoleMapping, old == null ? null : old.userRoleMapping);
+            updateMapping(roleName, groups, roleToGroupMapping, groupRoleMapping, old == null ? null : old.groupRoleMapping);
+            updateMapping(roleName, roleNames, roleToRoleMapping, roleRoleMapping, old == null ? null : old.roleRoleMapping);
         }
     }
 
@@ -101,72 +208,263 @@ public Map<String, Set<String>> getRoleToGroupMapping() {
         return this.roleToGroupMapping;
     }
 
-    private Set<RangerRole> getAllContainedRoles(Set<RangerRole> roles, RangerRole role) {
-        Set<RangerRole> allRoles = new HashSet<>();
+    /**
+     * @return names of roles contained in the role, directly or transitively, including the role itself; null if there
+     *         is no role by the name
+     */
+    public Set<String> getContainedRoles(String roleName) {
+        Set<String> ret = containedRoles.get(roleName);
+
+        return ret != null ? Collections.unmodifiableSet(ret) : null;
+    }
+
+    /**
+     * @return role membership of users and groups as bitsets of interned role IDs; built on first call
+     */
+    public RangerRolesIndex getRolesIndex() {
+        RangerRolesIndex ret = rolesIndex;
 
-        allRoles.add(role);
-        addContainedRoles(allRoles, roles, role);
+        if (ret == null) {
+            synchronized (this) {
+                ret = rolesIndex;
 
-        return allRoles;
+                if (ret == null) {
+                    ret        = new RangerRolesIndex(userRoleMapping, groupRoleMapping, roleToUserMapping.keySet());
+                    rolesIndex = ret;
+                }
+            }
+        }
+
+        return ret;
     }
 
-    private void addContainedRoles(Set<RangerRole> allRoles, Set<RangerRole> roles, RangerRole role) {
-        List<RangerRole.RoleMember> roleMembers = role.getRoles();
+    /*
+     * Computes contained roles of the given roles with an iterative Tarjan's strongly-connected-components walk: a
+     * component is complete only after all components reachable from it, so contained roles of each component are the
+     * union of its members and the already computed contained roles of its member roles. Roles not in the given set
+     * must already have their contained roles computed.
+     */
+    private void computeContainedRoles(Set<String> roleNames) {
+        Map<String, Integer> indexes  = new HashMap<>();
+        Map<String, Integer> lowLinks = new HashMap<>();
+        Deque<String>        stack    = new ArrayDeque<>();
+        Set<String>          onStack  = new HashSet<>();
+        Deque<WalkFrame>     walk     = new ArrayDeque<>();
+
+        for (String roleName : roleNames) {
+            if (!roleByName.containsKey(roleName) || indexes.containsKey(roleName) || containedRoles.containsKey(roleName)) {
+                continue;
+            }
+
+            walk.push(visit(roleName, indexes, lowLinks, stack, onStack));
+
+            while (!walk.isEmpty()) {
+                WalkFrame frame = walk.peek();
+
+                if (frame.memberRoles.hasNext()) {
+                    String memberRole = frame.memberRoles.next();
+
+                    if (!roleByName.containsKey(memberRole) || containedRoles.containsKey(memberRole)) {
+                        continue;
+                    }
+
+                    if (!indexes.containsKey(memberRole)) {
+                        walk.push(visit(memberRole, indexes, lowLinks, stack, onStack));
+                    } else if (onStack.contains(memberRole)) {
+                        lowLinks.put(frame.roleName, Math.min(lowLinks.get(frame.roleName), indexes.get(memberRole)));
+                    }
+                } else {
+                    walk.pop();
+
+                    int lowLink = lowLinks.get(frame.roleName);
+
+                    if (!walk.isEmpty()) {
+                        String parent = walk.peek().roleName;
+
+                        lowLinks.put(parent, Math.min(lowLinks.get(parent), lowLink));
+                    }
+
+                    if (lowLink == indexes.get(frame.roleName)) {
+                        Set<String> component = new HashSet<>();
+                        String      member;
 
-        for (RangerRole.RoleMember roleMember : roleMembers) {
-            RangerRole containedRole = getContainedRole(roles, roleMember.getName());
+                        do {
+                            member = stack.pop();
 
-            if (containedRole!= null && !allRoles.contains(containedRole)) {
-                allRoles.add(containedRole);
-                addContainedRoles(allRoles, roles, containedRole);
+                            onStack.remove(member);
+                            component.add(member);
+                        } while (!member.equals(frame.roleName));
+
+                        Set<String> contained = new HashSet<>(component);
+
+                        for (String componentRole : component) {
+                            for (String memberRole : getMemberNames(roleByName.get(componentRole).getRoles())) {
+                                Set<String> memberContained = component.contains(memberRole) ? null : containedRoles.get(memberRole);
+
+                                if (memberContained != null) {
+                                    contained.addAll(memberContained);
+                                }
+                            }
+                        }
+
+                        for (String componentRole : component) {
+                            containedRoles.put(componentRole, contained);
+                        }
+                    }
+                }
             }
         }
     }
 
-    private void buildMap(Map<String, Set<String>> map, RangerRole role, Set<RangerRole> containedRoles, ROLES_FOR roleFor) {
-        buildMap(map, role, role.getName(), roleFor);
+    private WalkFrame visit(String roleName, Map<String, Integer> indexes, Map<String, Integer> lowLinks, Deque<String> stack, Set<String> onStack) {
+        int index = indexes.size();
 
-        for (RangerRole containedRole : containedRoles) {
-            buildMap(map, containedRole, role.getName(), roleFor);
+        indexes.put(roleName, index);
+        lowLinks.put(roleName, index);
+        stack.push(roleName);
+        onStack.add(roleName);
+
+        return new WalkFrame(roleName, getMemberNames(roleByName.get(roleName).getRoles()).iterator());
+    }
+
+    private static Set<String> getAncestors(Collection<String> roleNames, Map<String, Set<String>> roleParents) {
+        Set<String>   ret   = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(roleNames);
+
+        while (!queue.isEmpty()) {
+            Set<String> parents = roleParents.get(queue.poll());
+
+            if (parents != null) {
+                for (String parent : parents) {
+                    if (ret.add(parent)) {
+                        queue.add(parent);
+                    }
+                }
+            }
         }
+
+        return ret;
     }
 
-    private void buildMap(Map<String, Set<String>> map, RangerRole role, String roleName, ROLES_FOR roles_for) {
-        List<RangerRole.RoleMember> userOrGroupOrRole = null;
-        switch(roles_for) {
-            case USER:
-                userOrGroupOrRole = role.getUsers();
-                break;
-            case GROUP:
-                userOrGroupOrRole = role.getGroups();
-                break;
-            case ROLE:
-                userOrGroupOrRole = role.getRoles();
-                break;
+    /*
+     * Replaces members of the role in roleToMembers, and updates memberToRoles for members that were added or removed.
+     */
+    private static void updateMapping(String roleName, Set<String> members, Map<String, Set<String>> roleToMembers, Map<String, Set<String>> memberToRoles, Map<String, Set<String>> oldMemberToRoles) {
+        Set<String> oldMembers = roleToMembers.get(roleName);
+
+        if (oldMembers != null) {
+            for (String member : oldMembers) {
+                if ((members == null || !members.contains(member)) && StringUtils.isNotEmpty(member)) {
+                    removeFromMapping(memberToRoles, oldMemberToRoles, member, roleName);
+                }
+            }
         }
-        if (CollectionUtils.isNotEmpty(userOrGroupOrRole)) {
-            getRoleMap(map, roleName, userOrGroupOrRole);
+
+        if (members != null) {
+            for (String member : members) {
+                if ((oldMembers == null || !oldMembers.contains(member)) && StringUtils.isNotEmpty(member)) {
+                    addToMapping(memberToRoles, oldMemberToRoles, member, roleName);
+                }
+            }
+
+            roleToMembers.put(roleName, members);
+        } else {
+            roleToMembers.remove(roleName);
         }
     }
 
-    private void getRoleMap(Map<String, Set<String>> map, String roleName, List<RangerRole.RoleMember> userOrGroupOrRole) {
-        for (RangerRole.RoleMember roleMember : userOrGroupOrRole) {
-            if (StringUtils.isNotEmpty(roleMember.getName())) {
-                Set<String> roleNames = map.computeIfAbsent(roleMember.getName(), k -> new HashSet<>());
-                roleNames.add(roleName);
+    // values in mapping that are the same instance as in oldMapping are shared with the previous version, so are copied before update
+    private static void addToMapping(Map<String, Set<String>> mapping, Map<String, Set<String>> oldMapping, String key, String value) {
+        Set<String> values = mapping.get(key);
+
+        if (values == null) {
+            values = new HashSet<>();
+
+            mapping.put(key, values);
+        } else if (oldMapping != null && values == oldMapping.get(key)) {
+            if (values.contains(value)) {
+                return;
             }
+
+            values = new HashSet<>(values);
+
+            mapping.put(key, values);
         }
+
+        values.add(value);
     }
 
-    private RangerRole getContainedRole(Set<RangerRole> roles, String role) {
-        return (roles.stream().filter(containedRole -> role.equals(containedRole.getName())).findAny().orElse(null));
+    private static void removeFromMapping(Map<String, Set<String>> mapping, Map<String, Set<String>> oldMapping, String key, String value) {
+        Set<String> values = mapping.get(key);
+
+        if (values == null || !values.contains(value)) {
+            return;
+        }
+
+        if (values.size() == 1) {
+            mapping.remove(key);
+        } else {
+            if (oldMapping != null && values == oldMapping.get(key)) {
+                values = new HashSet<>(values);
+
+                mapping.put(key, values);
+            }
+
+            values.remove(value);
+        }
+    }
+
+    /*
+     * Roles having the same name are treated as one role with the members of all of them. The merged role is a new
+     * instance, hence is always considered changed when building from a previous version of roles.
+     */
+    private static RangerRole mergeRoles(RangerRole role, RangerRole other) {
+        RangerRole ret = new RangerRole(role.getName(), role.getDescription(), role.getOptions(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+        for (RangerRole source : Arrays.asList(role, other)) {
+            if (source.getUsers() != null) {
+                ret.getUsers().addAll(source.getUsers());
+            }
+
+            if (source.getGroups() != null) {
+                ret.getGroups().addAll(source.getGroups());
+            }
+
+            if (source.getRoles() != null) {
+                ret.getRoles().addAll(source.getRoles());
+            }
+        }
+
+        return ret;
     }
 
-    private void addMemberNames(List<RangerRole.RoleMember> members, Set<String> names) {
-        for (RangerRole.RoleMember member : members) {
-            names.add(member.getName());
+    private static <T> Map<String, T> copyOf(Map<String, T> map) {
+        return map != null ? new HashMap<>(map) : new HashMap<>();
+    }
+
+    private static Set<String> getMemberNames(List<RangerRole.RoleMember> members) {
+        final Set<String> ret;
+
+        if (CollectionUtils.isEmpty(members)) {
+            ret = Collections.emptySet();
+        } else {
+            ret = new HashSet<>();
+
+            for (RangerRole.RoleMember member : members) {
+                ret.add(member.getName());
+            }
         }
+
+        return ret;
     }
-}
 
+    private static final class WalkFrame {
+        final String           roleName;
+        final Iterator<String> memberRoles;
 
+        WalkFrame(String roleName, Iterator<String> memberRoles) {
+            this.roleName    = roleName;
+            this.memberRoles = memberRoles;
+        }
+    }
+}
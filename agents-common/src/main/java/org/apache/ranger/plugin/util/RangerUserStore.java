@@ -23,8 +23,10 @@
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.plugin.model.GroupInfo;
+import org.apache.ranger.plugin.model.RangerUserStoreDelta;
 import org.apache.ranger.plugin.model.UserInfo;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 
@@ -34,6 +36,7 @@
 import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -54,6 +57,8 @@ public class RangerUserStore implements Serializable {
     private Map<String, String>              userCloudIdMapping;
     private Map<String, String>              groupCloudIdMapping;
     private String                           serviceName;
+    private List<RangerUserStoreDelta>       userStoreDeltas;
+    private transient RangerUserStoreIndex   userStoreIndex;
 
     public RangerUserStore() {this(-1L, null, null, null);}
 
@@ -128,6 +133,47 @@ public void setGroupCloudIdMapping(Map<String, String> groupCloudIdMapping) {
         this.groupCloudIdMapping = groupCloudIdMapping;
     }
 
+    public List<RangerUserStoreDelta> getUserStoreDeltas() {
+        return userStoreDeltas;
+    }
+
+    public void setUserStoreDeltas(List<RangerUserStoreDelta> userStoreDeltas) {
+        this.userStoreDeltas = userStoreDeltas;
+    }
+
+    @JsonIgnore
+    public RangerUserStoreIndex getUserStoreIndex() {
+        return userStoreIndex;
+    }
+
+    /**
+     * Replaces the attribute, user-group and cloud-id mappings with read-only views of the given index
+     */
+    @JsonIgnore
+    public void setUserStoreIndex(RangerUserStoreIndex userStoreIndex) {
+        this.userStoreIndex = userStoreIndex;
+
+        if (userStoreIndex != null) {
+            this.userAttrMapping     = userStoreIndex.getUserAttrMapping();
+            this.groupAttrMapping    = userStoreIndex.getGroupAttrMapping();
+            this.userGroupMapping    = userStoreIndex.getUserGroupMapping();
+            this.userCloudIdMapping  = userStoreIndex.getUserCloudIdMapping();
+            this.groupCloudIdMapping = userStoreIndex.getGroupCloudIdMapping();
+        }
+    }
+
+    /**
+     * Builds the index of the mappings of this store, if not built already. Plugins call this once for each downloaded
+     * store; the mappings are then backed by the index instead of the HashMaps read from the download.
+     */
+    public RangerUserStoreIndex buildUserStoreIndex() {
+        if (userStoreIndex == null && userStoreDeltas == null) {
+            setUserStoreIndex(new RangerUserStoreIndex(userAttrMapping, groupAttrMapping, userGroupMapping));
+        }
+
+        return userStoreIndex;
+    }
+
     @Override
     public String toString( ) {
         StringBuilder sb = new StringBuilder();
@@ -141,6 +187,9 @@ public StringBuilder toString(StringBuilder sb) {
         sb.append("RangerUserStore={")
                 .append("userStoreVersion=").append(userStoreVersion).append(", ")
                 .append("userStoreUpdateTime=").append(userStoreUpdateTime).append(", ");
+        if (userStoreDeltas != null) {
+            sb.append("userStoreDeltas=").append(userStoreDeltas.size()).append(", ");
+        }
         sb.append("users={");
         if(MapUtils.isNotEmpty(userAttrMapping)) {
             for(String user : userAttrMapping.keySet()) {
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+public class RangerUserStoreDeltaUtil {
+
+    private static final Log LOG = LogFactory.getLog(RangerUserStoreDeltaUtil.class);
+
+    private static final Log PERF_USERSTORE_DELTA_LOG = RangerPerfTracer.getPerfLogger("userstore.delta");
+
+    public static boolean hasUserStoreDeltas(RangerUserStore userStore) {
+        return userStore != null && userStore.getUserStoreDeltas() != null;
+    }
+
+    /**
+     * @param userStore userstore of the version the deltas were requested for
+     * @param deltas    userstore with changes since that version, as returned by Ranger admin
+     * @return userstore of the version of deltas, with mappings backed by a RangerUserStoreIndex that is derived from
+     *         the index of userStore by applying the deltas. null if userStore is null
+     */
+    public static RangerUserStore applyDeltas(RangerUserStore userStore, RangerUserStore deltas) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerUserStoreDeltaUtil.applyDeltas(userStoreVersion=" + (userStore != null ? userStore.getUserStoreVersion() : null) + ", deltasVersion=" + deltas.getUserStoreVersion() + ")");
+        }
+
+        RangerUserStore  ret  = null;
+        RangerPerfTracer perf = null;
+
+        if (RangerPerfTracer.isPerfTraceEnabled(PERF_USERSTORE_DELTA_LOG)) {
+            perf = RangerPerfTracer.getPerfTracer(PERF_USERSTORE_DELTA_LOG, "RangerUserStoreDeltaUtil.applyDeltas()");
+        }
+
+        if (userStore != null && !hasUserStoreDeltas(userStore)) {
+            RangerUserStoreIndex index = userStore.buildUserStoreIndex();
+
+            ret = new RangerUserStore();
+
+            ret.setServiceName(deltas.getServiceName() != null ? deltas.getServiceName() : userStore.getServiceName());
+            ret.setUserStoreVersion(deltas.getUserStoreVersion());
+            ret.setUserStoreUpdateTime(deltas.getUserStoreUpdateTime());
+            ret.setUserStoreIndex(index.applyDeltas(deltas.getUserStoreDeltas()));
+        }
+
+        RangerPerfTracer.log(perf);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerUserStoreDeltaUtil.applyDeltas(): deltaCount=" + (deltas.getUserStoreDeltas() != null ? deltas.getUserStoreDeltas().size() : 0) + ", userCount=" + (ret != null ? ret.getUserStoreIndex().getUserCount() : null));
+        }
+
+        return ret;
+    }
+}
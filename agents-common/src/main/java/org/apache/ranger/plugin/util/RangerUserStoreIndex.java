@@ -0,0 +1,825 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.plugin.model.RangerUserStoreDelta;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable, int-indexed form of the user and group mappings of a RangerUserStore, for use in plugins.
+ *
+ * User, group, attribute-name and attribute-value strings are interned to dense int IDs, each string stored once.
+ * Mappings are kept in columns indexed by user or group ID: attributes as an int[] of alternating name and value IDs,
+ * groups of a user as a sorted int[] of group IDs. Lookups by name go through open-addressing hash tables of int
+ * slots.
+ *
+ * getUserAttrMapping() and the other mapping methods return read-only Map views, so that existing users of
+ * RangerUserStore mappings work unchanged. applyDeltas() returns a new index that shares no mutable state with this one.
+ */
+public class RangerUserStoreIndex {
+    private static final int[] EMPTY_IDS = new int[0];
+
+    private final StringTable users;
+    private final StringTable groups;
+    private final StringTable attrNames;
+    private final StringTable attrValues;
+    private final CloudIdTable userCloudIds;
+    private final CloudIdTable groupCloudIds;
+    private final int[][]      userAttrs;      // by user ID: name and value IDs; null if the user has no attributes
+    private final int[][]      userGroups;     // by user ID: sorted group IDs; null if the user is not in the user-group mapping
+    private final int[][]      groupAttrs;     // by group ID: name and value IDs; null if the group has no attributes
+    private final int          userAttrCount;
+    private final int          userGroupCount;
+    private final int          groupAttrCount;
+    private final int          staleCount;     // entries replaced by deltas since the index was built from mappings
+
+    public RangerUserStoreIndex(Map<String, Map<String, String>> userAttrMapping, Map<String, Map<String, String>> groupAttrMapping, Map<String, Set<String>> userGroupMapping) {
+        this(new Builder(userAttrMapping, groupAttrMapping, userGroupMapping));
+    }
+
+    private RangerUserStoreIndex(Builder builder) {
+        builder.trim();
+
+        this.users          = builder.users;
+        this.groups         = builder.groups;
+        this.attrNames      = builder.attrNames;
+        this.attrValues     = builder.attrValues;
+        this.userCloudIds   = builder.userCloudIds;
+        this.groupCloudIds  = builder.groupCloudIds;
+        this.userAttrs      = builder.userAttrs;
+        this.userGroups     = builder.userGroups;
+        this.groupAttrs     = builder.groupAttrs;
+        this.userAttrCount  = builder.userAttrCount;
+        this.userGroupCount = builder.userGroupCount;
+        this.groupAttrCount = builder.groupAttrCount;
+        this.staleCount     = builder.staleCount;
+    }
+
+    /**
+     * @return index with the deltas applied, in order. Only the changed users and groups are processed; when many
+     *         entries have been replaced since the last full build, the index is rebuilt to drop them
+     */
+    public RangerUserStoreIndex applyDeltas(Collection<RangerUserStoreDelta> deltas) {
+        Builder builder = new Builder(this);
+
+        if (deltas != null) {
+            for (RangerUserStoreDelta delta : deltas) {
+                builder.apply(delta);
+            }
+        }
+
+        RangerUserStoreIndex ret = new RangerUserStoreIndex(builder);
+
+        if (ret.staleCount > (ret.users.size() + ret.groups.size()) / 2) {
+            ret = new RangerUserStoreIndex(ret.getUserAttrMapping(), ret.getGroupAttrMapping(), ret.getUserGroupMapping());
+        }
+
+        return ret;
+    }
+
+    public int getUserCount() { return users.size(); }
+
+    public int getGroupCount() { return groups.size(); }
+
+    public int getAttrNameCount() { return attrNames.size(); }
+
+    public int getAttrValueCount() { return attrValues.size(); }
+
+    public Map<String, String> getUserAttributes(String userName) {
+        int[] attrs = getColumnValue(userAttrs, users, userName);
+
+        return attrs != null ? new AttrsView(attrs) : null;
+    }
+
+    public Map<String, String> getGroupAttributes(String groupName) {
+        int[] attrs = getColumnValue(groupAttrs, groups, groupName);
+
+        return attrs != null ? new AttrsView(attrs) : null;
+    }
+
+    public Set<String> getUserGroups(String userName) {
+        int[] groupIds = getColumnValue(userGroups, users, userName);
+
+        return groupIds != null ? new GroupsView(groupIds) : null;
+    }
+
+    public Map<String, Map<String, String>> getUserAttrMapping() { return new AttrMappingView(users, userAttrs, userAttrCount); }
+
+    public Map<String, Map<String, String>> getGroupAttrMapping() { return new AttrMappingView(groups, groupAttrs, groupAttrCount); }
+
+    public Map<String, Set<String>> getUserGroupMapping() { return new GroupMappingView(); }
+
+    public Map<String, String> getUserCloudIdMapping() { return new CloudIdMappingView(userCloudIds, users); }
+
+    public Map<String, String> getGroupCloudIdMapping() { return new CloudIdMappingView(groupCloudIds, groups); }
+
+    private static int[] getColumnValue(int[][] column, StringTable names, Object name) {
+        int id = name instanceof String ? names.getId((String) name) : -1;
+
+        return id != -1 ? column[id] : null;
+    }
+
+    private String getAttrValue(int valueId) {
+        return valueId != -1 ? attrValues.get(valueId) : null;
+    }
+
+    /*
+     * Mutable copy of the columns of an index, from which a new index is created.
+     */
+    private static final class Builder {
+        private final StringTable users;
+        private final StringTable groups;
+        private final StringTable attrNames;
+        private final StringTable attrValues;
+        private final CloudIdTable userCloudIds;
+        private final CloudIdTable groupCloudIds;
+        private       int[][]      userAttrs;
+        private       int[][]      userGroups;
+        private       int[][]      groupAttrs;
+        private       int          userAttrCount;
+        private       int          userGroupCount;
+        private       int          groupAttrCount;
+        private       int          staleCount;
+
+        Builder(Map<String, Map<String, String>> userAttrMapping, Map<String, Map<String, String>> groupAttrMapping, Map<String, Set<String>> userGroupMapping) {
+            int userCount  = (userAttrMapping != null ? userAttrMapping.size() : 0) + (userGroupMapping != null ? userGroupMapping.size() : 0);
+            int groupCount = groupAttrMapping != null ? groupAttrMapping.size() : 0;
+
+            users          = new StringTable(userCount);
+            groups         = new StringTable(groupCount);
+            attrNames      = new StringTable(16);
+            attrValues     = new StringTable(userCount + groupCount);
+            userCloudIds   = new CloudIdTable(null);
+            groupCloudIds  = new CloudIdTable(null);
+            userAttrs      = new int[Math.max(userCount, 16)][];
+            userGroups     = new int[userAttrs.length][];
+            groupAttrs     = new int[Math.max(groupCount, 16)][];
+
+            if (userAttrMapping != null) {
+                for (Map.Entry<String, Map<String, String>> entry : userAttrMapping.entrySet()) {
+                    if (entry.getKey() != null) {
+                        setUserAttrs(users.intern(entry.getKey()), entry.getValue());
+                    }
+                }
+            }
+
+            if (userGroupMapping != null) {
+                for (Map.Entry<String, Set<String>> entry : userGroupMapping.entrySet()) {
+                    if (entry.getKey() != null) {
+                        setUserGroups(users.intern(entry.getKey()), entry.getValue());
+                    }
+                }
+            }
+
+            if (groupAttrMapping != null) {
+                for (Map.Entry<String, Map<String, String>> entry : groupAttrMapping.entrySet()) {
+                    if (entry.getKey() != null) {
+                        setGroupAttrs(groups.intern(entry.getKey()), entry.getValue());
+                    }
+                }
+            }
+        }
+
+        Builder(RangerUserStoreIndex other) {
+            users             = new StringTable(other.users);
+            groups            = new StringTable(other.groups);
+            attrNames         = new StringTable(other.attrNames);
+            attrValues        = new StringTable(other.attrValues);
+            userCloudIds      = new CloudIdTable(other.userCloudIds);
+            groupCloudIds     = new CloudIdTable(other.groupCloudIds);
+            userAttrs         = other.userAttrs.clone();
+            userGroups        = other.userGroups.clone();
+            groupAttrs        = other.groupAttrs.clone();
+            userAttrCount     = other.userAttrCount;
+            userGroupCount    = other.userGroupCount;
+            groupAttrCount    = other.groupAttrCount;
+            staleCount        = other.staleCount;
+        }
+
+        void apply(RangerUserStoreDelta delta) {
+            if (delta == null || delta.getChangeType() == null || delta.getName() == null) {
+                return;
+            }
+
+            switch (delta.getChangeType()) {
+                case RangerUserStoreDelta.CHANGE_TYPE_USER_UPDATE: {
+                    int userId = users.intern(delta.getName());
+
+                    setUserAttrs(userId, delta.getAttributes());
+                    setUserGroups(userId, delta.getGroups());
+                }
+                break;
+
+                case RangerUserStoreDelta.CHANGE_TYPE_USER_DELETE: {
+                    int userId = users.getId(delta.getName());
+
+                    if (userId != -1) {
+                        setUserAttrs(userId, null);
+                        setUserGroups(userId, null);
+                    }
+                }
+                break;
+
+                case RangerUserStoreDelta.CHANGE_TYPE_GROUP_UPDATE:
+                    setGroupAttrs(groups.intern(delta.getName()), delta.getAttributes());
+                break;
+
+                case RangerUserStoreDelta.CHANGE_TYPE_GROUP_DELETE: {
+                    // the group is kept in the table, as users can still be in the group
+                    int groupId = groups.getId(delta.getName());
+
+                    if (groupId != -1) {
+                        setGroupAttrs(groupId, null);
+                    }
+                }
+                break;
+
+                default:
+                break;
+            }
+        }
+
+        void trim() {
+            users.trim();
+            groups.trim();
+            attrNames.trim();
+            attrValues.trim();
+            userCloudIds.trim();
+            groupCloudIds.trim();
+
+            userAttrs  = Arrays.copyOf(userAttrs, users.size());
+            userGroups = Arrays.copyOf(userGroups, users.size());
+            groupAttrs = Arrays.copyOf(groupAttrs, groups.size());
+        }
+
+        private void setUserAttrs(int userId, Map<String, String> attrs) {
+            ensureUserCapacity(userId);
+
+            int[] oldAttrs = userAttrs[userId];
+            int[] newAttrs = replaceAttrs(oldAttrs, attrs, userId, userCloudIds);
+
+            userAttrs[userId] = newAttrs;
+            userAttrCount    += (newAttrs != null ? 1 : 0) - (oldAttrs != null ? 1 : 0);
+        }
+
+        private void setGroupAttrs(int groupId, Map<String, String> attrs) {
+            ensureGroupCapacity(groupId);
+
+            int[] oldAttrs = groupAttrs[groupId];
+            int[] newAttrs = replaceAttrs(oldAttrs, attrs, groupId, groupCloudIds);
+
+            groupAttrs[groupId] = newAttrs;
+            groupAttrCount     += (newAttrs != null ? 1 : 0) - (oldAttrs != null ? 1 : 0);
+        }
+
+        private int[] replaceAttrs(int[] oldAttrs, Map<String, String> attrs, int ownerId, CloudIdTable cloudIds) {
+            if (oldAttrs != null) {
+                staleCount++;
+
+                cloudIds.remove(getCloudId(oldAttrs), ownerId);
+            }
+
+            int[] ret = attrs != null ? toAttrIds(attrs) : null;
+
+            if (ret != null) {
+                cloudIds.put(getCloudId(ret), ownerId);
+            }
+
+            return ret;
+        }
+
+        private void setUserGroups(int userId, Set<String> groupNames) {
+            ensureUserCapacity(userId);
+
+            if (userGroups[userId] != null) {
+                userGroupCount--;
+                staleCount++;
+            }
+
+            int[] groupIds = null;
+
+            if (groupNames != null) {
+                groupIds = groupNames.isEmpty() ? EMPTY_IDS : new int[groupNames.size()];
+
+                int count = 0;
+
+                for (String groupName : groupNames) {
+                    if (groupName != null) {
+                        int groupId = groups.intern(groupName);
+
+                        ensureGroupCapacity(groupId);
+
+                        groupIds[count++] = groupId;
+                    }
+                }
+
+                if (count < groupIds.length) {
+                    groupIds = Arrays.copyOf(groupIds, count);
+                }
+
+                Arrays.sort(groupIds);
+
+                userGroupCount++;
+            }
+
+            userGroups[userId] = groupIds;
+        }
+
+        private int[] toAttrIds(Map<String, String> attrs) {
+            int[] ret   = attrs.isEmpty() ? EMPTY_IDS : new int[attrs.size() * 2];
+            int   count = 0;
+
+            for (Map.Entry<String, String> entry : attrs.entrySet()) {
+                if (entry.getKey() != null) {
+                    ret[count++] = attrNames.intern(entry.getKey());
+                    ret[count++] = entry.getValue() != null ? attrValues.intern(entry.getValue()) : -1;
+                }
+            }
+
+            return count < ret.length ? Arrays.copyOf(ret, count) : ret;
+        }
+
+        private String getCloudId(int[] attrs) {
+            int nameId = attrNames.getId(RangerUserStore.CLOUD_IDENTITY_NAME);
+
+            if (nameId != -1) {
+                for (int i = 0; i < attrs.length; i += 2) {
+                    if (attrs[i] == nameId) {
+                        String ret = attrs[i + 1] != -1 ? attrValues.get(attrs[i + 1]) : null;
+
+                        return StringUtils.isNotEmpty(ret) ? ret : null;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        private void ensureUserCapacity(int userId) {
+            if (userId >= userAttrs.length) {
+                int capacity = Math.max(userId + 1, userAttrs.length * 2);
+
+                userAttrs  = Arrays.copyOf(userAttrs, capacity);
+                userGroups = Arrays.copyOf(userGroups, capacity);
+            }
+        }
+
+        private void ensureGroupCapacity(int groupId) {
+            if (groupId >= groupAttrs.length) {
+                groupAttrs = Arrays.copyOf(groupAttrs, Math.max(groupId + 1, groupAttrs.length * 2));
+            }
+        }
+    }
+
+    /*
+     * Interned strings with dense IDs, in the order they were added. Strings are only added, and only by a Builder;
+     * the table is not modified after the index is created.
+     */
+    private static final class StringTable {
+        private String[] strings;
+        private int[]    slots; // ID + 1 of the string at each slot of the hash table; 0 for an empty slot
+        private int      size;
+
+        StringTable(int capacity) {
+            this.strings = new String[Math.max(capacity, 4)];
+            this.slots   = new int[tableSizeFor(strings.length)];
+            this.size    = 0;
+        }
+
+        StringTable(StringTable other) {
+            this.strings = Arrays.copyOf(other.strings, Math.max(other.size + 16, other.size + (other.size >> 4)));
+            this.slots   = other.slots.clone();
+            this.size    = other.size;
+        }
+
+        int size() { return size; }
+
+        String get(int id) { return strings[id]; }
+
+        /**
+         * @return ID of the string, or -1 if it is not in the table
+         */
+        int getId(String str) {
+            if (str != null) {
+                int mask = slots.length - 1;
+
+                for (int i = hash(str) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                    int id = slots[i] - 1;
+
+                    if (str.equals(strings[id])) {
+                        return id;
+                    }
+                }
+            }
+
+            return -1;
+        }
+
+        int intern(String str) {
+            int ret = getId(str);
+
+            if (ret == -1) {
+                if (size == strings.length) {
+                    strings = Arrays.copyOf(strings, size * 2);
+                }
+
+                if ((size + 1) * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                }
+
+                ret = size++;
+
+                strings[ret] = str;
+
+                insert(slots, str, ret);
+            }
+
+            return ret;
+        }
+
+        void trim() {
+            if (strings.length != size) {
+                strings = Arrays.copyOf(strings, size);
+            }
+        }
+
+        private void rehash(int tableSize) {
+            int[] newSlots = new int[tableSize];
+
+            for (int id = 0; id < size; id++) {
+                insert(newSlots, strings[id], id);
+            }
+
+            slots = newSlots;
+        }
+
+        private static void insert(int[] slots, String str, int id) {
+            int mask = slots.length - 1;
+            int i    = hash(str) & mask;
+
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+
+            slots[i] = id + 1;
+        }
+
+        private static int hash(String str) {
+            int h = str.hashCode();
+
+            return h ^ (h >>> 16);
+        }
+
+        private static int tableSizeFor(int capacity) {
+            int ret = 16;
+
+            while (ret < capacity * 2) {
+                ret <<= 1;
+            }
+
+            return ret;
+        }
+    }
+
+    /*
+     * Cloud IDs of users or groups - the value of attribute cloud_id - with the user or group ID of each. A cloud ID
+     * that is no longer used keeps its ID, with owner -1.
+     */
+    private static final class CloudIdTable {
+        private final StringTable ids;
+        private       int[]       owners;
+        private       int         count;
+
+        CloudIdTable(CloudIdTable other) {
+            this.ids    = other != null ? new StringTable(other.ids) : new StringTable(16);
+            this.owners = other != null ? Arrays.copyOf(other.owners, Math.max(other.owners.length, 16)) : new int[16];
+            this.count  = other != null ? other.count : 0;
+        }
+
+        int getOwner(String cloudId) {
+            int id = ids.getId(cloudId);
+
+            return id != -1 ? owners[id] : -1;
+        }
+
+        void put(String cloudId, int ownerId) {
+            if (cloudId != null) {
+                int idCount = ids.size();
+                int id      = ids.intern(cloudId);
+
+                if (id >= owners.length) {
+                    owners = Arrays.copyOf(owners, Math.max(id + 1, owners.length * 2));
+                }
+
+                if (id == idCount || owners[id] == -1) {
+                    count++;
+                }
+
+                owners[id] = ownerId;
+            }
+        }
+
+        void remove(String cloudId, int ownerId) {
+            int id = cloudId != null ? ids.getId(cloudId) : -1;
+
+            if (id != -1 && owners[id] == ownerId) {
+                owners[id] = -1;
+                count--;
+            }
+        }
+
+        void trim() {
+            ids.trim();
+
+            owners = Arrays.copyOf(owners, ids.size());
+        }
+    }
+
+    /*
+     * Iterates over IDs that have a value in a column
+     */
+    private abstract static class ColumnIterator<T> implements Iterator<T> {
+        private final int size;
+        private       int next;
+
+        ColumnIterator(int size) {
+            this.size = size;
+            this.next = findNext(0);
+        }
+
+        abstract boolean hasValue(int id);
+
+        abstract T get(int id);
+
+        @Override
+        public boolean hasNext() { return next < size; }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+
+            T ret = get(next);
+
+            next = findNext(next + 1);
+
+            return ret;
+        }
+
+        @Override
+        public void remove() { throw new UnsupportedOperationException(); }
+
+        private int findNext(int from) {
+            int ret = from;
+
+            while (ret < size && !hasValue(ret)) {
+                ret++;
+            }
+
+            return ret;
+        }
+    }
+
+    private final class AttrMappingView extends AbstractMap<String, Map<String, String>> implements Serializable {
+        private final StringTable names;
+        private final int[][]     attrs;
+        private final int         count;
+
+        AttrMappingView(StringTable names, int[][] attrs, int count) {
+            this.names = names;
+            this.attrs = attrs;
+            this.count = count;
+        }
+
+        @Override
+        public Map<String, String> get(Object name) {
+            int[] value = getColumnValue(attrs, names, name);
+
+            return value != null ? new AttrsView(value) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object name) { return getColumnValue(attrs, names, name) != null; }
+
+        @Override
+        public int size() { return count; }
+
+        @Override
+        public Set<Entry<String, Map<String, String>>> entrySet() {
+            return new AbstractSet<Entry<String, Map<String, String>>>() {
+                @Override
+                public int size() { return count; }
+
+                @Override
+                public Iterator<Entry<String, Map<String, String>>> iterator() {
+                    return new ColumnIterator<Entry<String, Map<String, String>>>(names.size()) {
+                        @Override
+                        boolean hasValue(int id) { return attrs[id] != null; }
+
+                        @Override
+                        Entry<String, Map<String, String>> get(int id) { return new SimpleImmutableEntry<String, Map<String, String>>(names.get(id), new AttrsView(attrs[id])); }
+                    };
+                }
+            };
+        }
+
+        private Object writeReplace() { return new HashMap<>(this); }
+    }
+
+    private final class AttrsView extends AbstractMap<String, String> implements Serializable {
+        private final int[] attrs;
+
+        AttrsView(int[] attrs) {
+            this.attrs = attrs;
+        }
+
+        @Override
+        public String get(Object name) {
+            int i = indexOf(name);
+
+            return i != -1 ? getAttrValue(attrs[i + 1]) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object name) { return indexOf(name) != -1; }
+
+        @Override
+        public int size() { return attrs.length / 2; }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public int size() { return attrs.length / 2; }
+
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new ColumnIterator<Entry<String, String>>(attrs.length / 2) {
+                        @Override
+                        boolean hasValue(int i) { return true; }
+
+                        @Override
+                        Entry<String, String> get(int i) { return new SimpleImmutableEntry<>(attrNames.get(attrs[i * 2]), getAttrValue(attrs[i * 2 + 1])); }
+                    };
+                }
+            };
+        }
+
+        private int indexOf(Object name) {
+            int nameId = name instanceof String ? attrNames.getId((String) name) : -1;
+
+            if (nameId != -1) {
+                for (int i = 0; i < attrs.length; i += 2) {
+                    if (attrs[i] == nameId) {
+                        return i;
+                    }
+                }
+            }
+
+            return -1;
+        }
+
+        private Object writeReplace() { return new HashMap<>(this); }
+    }
+
+    private final class GroupMappingView extends AbstractMap<String, Set<String>> implements Serializable {
+        @Override
+        public Set<String> get(Object userName) {
+            int[] groupIds = getColumnValue(userGroups, users, userName);
+
+            return groupIds != null ? new GroupsView(groupIds) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object userName) { return getColumnValue(userGroups, users, userName) != null; }
+
+        @Override
+        public int size() { return userGroupCount; }
+
+        @Override
+        public Set<Entry<String, Set<String>>> entrySet() {
+            return new AbstractSet<Entry<String, Set<String>>>() {
+                @Override
+                public int size() { return userGroupCount; }
+
+                @Override
+                public Iterator<Entry<String, Set<String>>> iterator() {
+                    return new ColumnIterator<Entry<String, Set<String>>>(users.size()) {
+                        @Override
+                        boolean hasValue(int id) { return userGroups[id] != null; }
+
+                        @Override
+                        Entry<String, Set<String>> get(int id) { return new SimpleImmutableEntry<String, Set<String>>(users.get(id), new GroupsView(userGroups[id])); }
+                    };
+                }
+            };
+        }
+
+        private Object writeReplace() { return new HashMap<>(this); }
+    }
+
+    private final class GroupsView extends AbstractSet<String> implements Serializable {
+        private final int[] groupIds;
+
+        GroupsView(int[] groupIds) {
+            this.groupIds = groupIds;
+        }
+
+        @Override
+        public boolean contains(Object groupName) {
+            int groupId = groupName instanceof String ? groups.getId((String) groupName) : -1;
+
+            return groupId != -1 && Arrays.binarySearch(groupIds, groupId) >= 0;
+        }
+
+        @Override
+        public int size() { return groupIds.length; }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new ColumnIterator<String>(groupIds.length) {
+                @Override
+                boolean hasValue(int i) { return true; }
+
+                @Override
+                String get(int i) { return groups.get(groupIds[i]); }
+            };
+        }
+
+        private Object writeReplace() { return new HashSet<>(this); }
+    }
+
+    private static final class CloudIdMappingView extends AbstractMap<String, String> implements Serializable {
+        private final CloudIdTable cloudIds;
+        private final StringTable  ownerNames;
+
+        CloudIdMappingView(CloudIdTable cloudIds, StringTable ownerNames) {
+            this.cloudIds   = cloudIds;
+            this.ownerNames = ownerNames;
+        }
+
+        @Override
+        public String get(Object cloudId) {
+            int ownerId = cloudId instanceof String ? cloudIds.getOwner((String) cloudId) : -1;
+
+            return ownerId != -1 ? ownerNames.get(ownerId) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object cloudId) { return get(cloudId) != null; }
+
+        @Override
+        public int size() { return cloudIds.count; }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public int size() { return cloudIds.count; }
+
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new ColumnIterator<Entry<String, String>>(cloudIds.ids.size()) {
+                        @Override
+                        boolean hasValue(int id) { return cloudIds.owners[id] != -1; }
+
+                        @Override
+                        Entry<String, String> get(int id) { return new SimpleImmutableEntry<>(cloudIds.ids.get(id), ownerNames.get(cloudIds.owners[id])); }
+                    };
+                }
+            };
+        }
+
+        private Object writeReplace() { return new HashMap<>(this); }
+    }
+}
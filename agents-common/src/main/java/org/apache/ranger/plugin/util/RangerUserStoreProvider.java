@@ -28,10 +28,6 @@
 import org.apache.ranger.admin.client.RangerAdminClient;
 import org.apache.ranger.plugin.service.RangerBasePlugin;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.Reader;
-import java.io.Writer;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Set;
@@ -50,6 +46,7 @@ public class RangerUserStoreProvider {
 	private final String			cacheFileNamePrefix;
 	private final String            cacheDir;
 	private final Gson              gson;
+	private final boolean           cacheCompact;
 	private final boolean           disableCacheIfServiceNotFound;
 
 	private long	lastActivationTimeInMillis;
@@ -81,7 +78,7 @@ public RangerUserStoreProvider(String serviceType, String appId, String serviceN
 
 		Gson gson = null;
 		try {
-			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").registerTypeAdapterFactory(RangerCompactJsonCodec.MAP_ADAPTER_FACTORY).create();
 		} catch (Throwable excp) {
 			LOG.fatal("RangerUserStoreProvider(): failed to create GsonBuilder object", excp);
 		}
@@ -89,6 +86,7 @@ public RangerUserStoreProvider(String serviceType, String appId, String serviceN
 
 		String propertyPrefix = "ranger.plugin." + serviceType;
 		disableCacheIfServiceNotFound = config.getBoolean(propertyPrefix + ".disable.cache.if.servicenotfound", true);
+		cacheCompact                  = config.getBoolean(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_CACHE_COMPACT_DEFAULT);
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerUserStoreProvider(serviceName=" + serviceName + ").RangerUserStoreProvider()");
@@ -120,7 +118,7 @@ public void loadUserStore(RangerBasePlugin plugIn) {
 
 		try {
 			//load userGroupRoles from ranger admin
-			RangerUserStore userStore = loadUserStoreFromAdmin();
+			RangerUserStore userStore = loadUserStoreFromAdmin(plugIn);
 
 			if (userStore == null) {
 				//if userGroupRoles fetch from ranger Admin Fails, load from cache
@@ -136,6 +134,8 @@ public void loadUserStore(RangerBasePlugin plugIn) {
 			}
 
 			if (userStore != null) {
+				userStore.buildUserStoreIndex();
+
 				plugIn.setUserStore(userStore);
 				rangerUserStoreSetInPlugin = true;
 				setLastActivationTimeInMillis(System.currentTimeMillis());
@@ -165,7 +165,7 @@ public void loadUserStore(RangerBasePlugin plugIn) {
 		}
 	}
 
-	private RangerUserStore loadUserStoreFromAdmin() throws RangerServiceNotFoundException {
+	private RangerUserStore loadUserStoreFromAdmin(RangerBasePlugin plugIn) throws RangerServiceNotFoundException {
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerUserStoreProvider(serviceName=" + serviceName + ").loadUserStoreFromAdmin()");
@@ -182,6 +182,10 @@ private RangerUserStore loadUserStoreFromAdmin() throws RangerServiceNotFoundExc
 		try {
 			userStore = rangerAdmin.getUserStoreIfUpdated(lastKnownUserStoreVersion, lastActivationTimeInMillis);
 
+			if (RangerUserStoreDeltaUtil.hasUserStoreDeltas(userStore)) {
+				userStore = applyUserStoreDeltas(plugIn, userStore);
+			}
+
 			boolean isUpdated = userStore != null;
 
 			if(isUpdated) {
@@ -210,6 +214,28 @@ private RangerUserStore loadUserStoreFromAdmin() throws RangerServiceNotFoundExc
 		 return userStore;
 	}
 
+	private RangerUserStore applyUserStoreDeltas(RangerBasePlugin plugIn, RangerUserStore userStoreDeltas) {
+		RangerUserStore currentUserStore = plugIn.getUserStore();
+		Long            currentVersion   = currentUserStore != null ? currentUserStore.getUserStoreVersion() : null;
+		RangerUserStore ret;
+
+		if (currentVersion != null && currentVersion == lastKnownUserStoreVersion) {
+			ret = RangerUserStoreDeltaUtil.applyDeltas(currentUserStore, userStoreDeltas);
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerUserStoreProvider(serviceName=" + serviceName + "): applied " + userStoreDeltas.getUserStoreDeltas().size() + " userstore deltas to version " + currentVersion);
+			}
+		} else {
+			// the userstore the deltas are for is not available; download the complete userstore in the next call
+			LOG.warn("RangerUserStoreProvider(serviceName=" + serviceName + "): received userstore deltas for version " + lastKnownUserStoreVersion + ", but userstore in plugin is of version " + currentVersion + ". Will download complete userstore");
+
+			lastKnownUserStoreVersion = -1L;
+			ret                       = null;
+		}
+
+		return ret;
+	}
+
 	private RangerUserStore loadUserStoreFromCache() {
 
 		RangerUserStore userStore = null;
@@ -221,8 +247,6 @@ private RangerUserStore loadUserStoreFromCache() {
 		File cacheFile = cacheDir == null ? null : new File(cacheDir + File.separator + cacheFileName);
 
 		if (cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-			Reader reader = null;
-
 			RangerPerfTracer perf = null;
 
 			if (RangerPerfTracer.isPerfTraceEnabled(PERF_POLICYENGINE_INIT_LOG)) {
@@ -230,9 +254,7 @@ private RangerUserStore loadUserStoreFromCache() {
 			}
 
 			try {
-				reader = new FileReader(cacheFile);
-
-				userStore = gson.fromJson(reader, RangerUserStore.class);
+				userStore = RangerCompactJsonCodec.readFile(gson, cacheFile, RangerUserStore.class);
 
 				if (userStore != null) {
 					if (!StringUtils.equals(serviceName, userStore.getServiceName())) {
@@ -247,14 +269,6 @@ private RangerUserStore loadUserStoreFromCache() {
 				LOG.error("failed to load userStore from cache file " + cacheFile.getAbsolutePath(), excp);
 			} finally {
 				RangerPerfTracer.log(perf);
-
-				if (reader != null) {
-					try {
-						reader.close();
-					} catch (Exception excp) {
-						LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-					}
-				}
 			}
 		} else {
 			userStore = new RangerUserStore();
@@ -302,23 +316,11 @@ public void saveToCache(RangerUserStore userStore) {
 					perf = RangerPerfTracer.getPerfTracer(PERF_POLICYENGINE_INIT_LOG, "RangerUserStoreProvider.saveToCache(serviceName=" + serviceName + ")");
 				}
 
-				Writer writer = null;
-
 				try {
-					writer = new FileWriter(cacheFile);
-
-			        gson.toJson(userStore, writer);
+			        RangerCompactJsonCodec.writeFile(gson, cacheFile, userStore, cacheCompact);
 		        } catch (Exception excp) {
 					LOG.error("failed to save userStore to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        } finally {
-					if(writer != null) {
-						try {
-							writer.close();
-						} catch(Exception excp) {
-							LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-						}
-					}
-				}
+		        }
 
 				RangerPerfTracer.log(perf);
 			}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.audit;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuditHandler;
+import org.apache.ranger.audit.provider.DummyAuditProvider;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerAuditSampler {
+
+	@Test
+	public void testServiceConfig() {
+		String              serviceName   = "testServiceConfig";
+		AuditHandler        auditProvider = new DummyAuditProvider();
+		Map<String, String> svcConfig     = new HashMap<>();
+
+		RangerAuditSampler.setServiceConfig(auditProvider, serviceName, svcConfig);
+		assertNull("sampler without config", RangerAuditSampler.getSampler(auditProvider, serviceName));
+
+		svcConfig.put(RangerPolicyEngine.PLUGIN_AUDIT_SAMPLE_RATE, "0.5");
+		RangerAuditSampler.setServiceConfig(auditProvider, serviceName, svcConfig);
+
+		RangerAuditSampler sampler = RangerAuditSampler.getSampler(auditProvider, serviceName);
+
+		assertNotNull("sampler with sample-rate", sampler);
+
+		RangerAuditSampler.setServiceConfig(auditProvider, serviceName, new HashMap<>(svcConfig));
+		assertSame("sampler retained for unchanged config", sampler, RangerAuditSampler.getSampler(auditProvider, serviceName));
+
+		svcConfig.put(RangerPolicyEngine.PLUGIN_AUDIT_SAMPLE_RATE, "invalid");
+		RangerAuditSampler.setServiceConfig(auditProvider, serviceName, svcConfig);
+		assertNull("sampler with invalid sample-rate", RangerAuditSampler.getSampler(auditProvider, serviceName));
+	}
+
+	@Test
+	public void testSamplerPerAuditProvider() {
+		String              serviceName    = "testSamplerPerAuditProvider";
+		AuditHandler        auditProvider1 = new DummyAuditProvider();
+		AuditHandler        auditProvider2 = new DummyAuditProvider();
+		Map<String, String> svcConfig      = new HashMap<>();
+
+		svcConfig.put(RangerPolicyEngine.PLUGIN_AUDIT_SAMPLE_RATE, "0.5");
+
+		RangerAuditSampler.setServiceConfig(auditProvider1, serviceName, svcConfig);
+
+		assertNotNull("sampler of provider1", RangerAuditSampler.getSampler(auditProvider1, serviceName));
+		assertNull("sampler of provider2", RangerAuditSampler.getSampler(auditProvider2, serviceName));
+
+		RangerAuditSampler.setServiceConfig(auditProvider2, serviceName, svcConfig);
+
+		assertNotSame("samplers of provider1 and provider2", RangerAuditSampler.getSampler(auditProvider1, serviceName), RangerAuditSampler.getSampler(auditProvider2, serviceName));
+
+		// removed when the plugin is cleaned up
+		assertTrue("removed", RangerAuditSampler.removeSampler(auditProvider1, serviceName));
+		assertNull("sampler of provider1 after remove", RangerAuditSampler.getSampler(auditProvider1, serviceName));
+		assertNotNull("sampler of provider2 after remove", RangerAuditSampler.getSampler(auditProvider2, serviceName));
+		assertFalse("removed again", RangerAuditSampler.removeSampler(auditProvider1, serviceName));
+
+		RangerAuditSampler.removeSampler(auditProvider2, serviceName);
+	}
+
+	@Test
+	public void testSampleRate() {
+		RangerAuditSampler sampler = new RangerAuditSampler(0.1, 0, 0, 0);
+		long               audited = 0;
+		long               total   = 0;
+
+		for (int i = 0; i < 100000; i++) {
+			AuthzAuditEvent event = createEvent("user1", "db1/table1", 1);
+
+			if (sampler.isAudited(event)) {
+				audited++;
+				total += event.getEventCount();
+			}
+		}
+
+		assertTrue("audited=" + audited, audited > 8000 && audited < 12000);
+		assertEquals("suppressed", 100000 - audited, sampler.getTotalSuppressedCount());
+		assertTrue("event counts", total <= 100000 && total > 100000 - 1000);
+	}
+
+	@Test
+	public void testDeniesAlwaysAudited() {
+		RangerAuditSampler sampler = new RangerAuditSampler(0, 0, 0, 0);
+
+		for (int i = 0; i < 1000; i++) {
+			assertFalse("allowed", sampler.isAudited(createEvent("user1", "db1/table1", 1)));
+			assertTrue("denied", sampler.isAudited(createEvent("user1", "db1/table1", 0)));
+		}
+	}
+
+	@Test
+	public void testRateLimitPerUser() {
+		RangerAuditSampler sampler = new RangerAuditSampler(1, 1, 0, 5);
+		int                audited = 0;
+
+		for (int i = 0; i < 100; i++) {
+			if (sampler.isAudited(createEvent("user1", "db1/table" + i, 1))) {
+				audited++;
+			}
+		}
+
+		assertEquals("audited within burst", 5, audited);
+		assertTrue("other user", sampler.isAudited(createEvent("user2", "db1/table1", 1)));
+		assertEquals("suppressed", 95, sampler.getTotalSuppressedCount());
+	}
+
+	@Test
+	public void testRateLimitPerResource() throws Exception {
+		RangerAuditSampler sampler = new RangerAuditSampler(1, 0, 10, 1);
+
+		assertTrue("first", sampler.isAudited(createEvent("user1", "db1/table1", 1)));
+
+		for (int i = 0; i < 9; i++) {
+			assertFalse("within rate-limit", sampler.isAudited(createEvent("user1", "db1/table1", 1)));
+		}
+
+		assertTrue("other resource", sampler.isAudited(createEvent("user1", "db1/table2", 1)));
+
+		Thread.sleep(150); // refill one token
+
+		AuthzAuditEvent event = createEvent("user1", "db1/table1", 1);
+
+		assertTrue("after refill", sampler.isAudited(event));
+		assertEquals("suppressed count included in event", 10, event.getEventCount());
+	}
+
+	@Test
+	public void testCollisionsKeepRateLimit() {
+		RangerAuditSampler sampler = new RangerAuditSampler(1, 0.001, 0, 1);
+
+		assertTrue("first", sampler.isAudited(createEvent("user0", "db1/table1", 1)));
+		assertFalse("within rate-limit", sampler.isAudited(createEvent("user0", "db1/table1", 1)));
+
+		// more users than slots: buckets that are limiting their users must not be reset
+		for (int i = 1; i < 20000; i++) {
+			sampler.isAudited(createEvent("user" + i, "db1/table1", 1));
+		}
+
+		assertFalse("rate-limit retained", sampler.isAudited(createEvent("user0", "db1/table1", 1)));
+	}
+
+	@Test
+	public void testFlushSuppressed() {
+		final List<AuditEventBase> flushed       = new ArrayList<>();
+		AuditHandler               auditProvider = new DummyAuditProvider() {
+			@Override
+			public boolean log(AuditEventBase event) {
+				return flushed.add(event);
+			}
+		};
+		RangerAuditSampler sampler = new RangerAuditSampler(0.5, 0.001, 0, 2);
+		long               total   = 0;
+
+		// more keys than slots, most of them never audited again after being suppressed
+		for (int i = 0; i < 50000; i++) {
+			AuthzAuditEvent event = createEvent("user" + (i % 100), "db1/table" + (i % 300), 1);
+
+			if (sampler.isAudited(event)) {
+				total += event.getEventCount();
+			}
+		}
+
+		assertTrue("suppressed", sampler.getTotalSuppressedCount() > 0);
+		assertEquals("not idle", 0, sampler.flushSuppressed(auditProvider, 60 * 1000));
+
+		int flushedCount = sampler.flushSuppressed(auditProvider, 0);
+
+		assertTrue("flushed", flushedCount > 0);
+		assertEquals("flushed events", flushedCount, flushed.size());
+
+		for (AuditEventBase event : flushed) {
+			total += ((AuthzAuditEvent) event).getEventCount();
+		}
+
+		assertEquals("event counts", 50000, total);
+		assertEquals("nothing left to flush", 0, sampler.flushSuppressed(auditProvider, 0));
+	}
+
+	private AuthzAuditEvent createEvent(String user, String resource, int accessResult) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setUser(user);
+		ret.setResourcePath(resource);
+		ret.setAccessType("select");
+		ret.setAccessResult((short) accessResult);
+
+		return ret;
+	}
+}
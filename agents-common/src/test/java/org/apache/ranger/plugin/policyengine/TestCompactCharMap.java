@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestCompactCharMap {
+
+	@Test
+	public void testSortedArrayMode() {
+		CompactCharMap<String> map = new CompactCharMap<>();
+
+		assertTrue(map.isEmpty());
+		assertNull(map.get('a'));
+
+		map.put('c', "c");
+		map.put('a', "a");
+		map.put('b', "b");
+
+		assertFalse(map.isHashed());
+		assertEquals(3, map.size());
+		assertEquals("a", map.get('a'));
+		assertEquals("b", map.get(Character.valueOf('b')));
+		assertEquals("c", map.put('c', "C"));
+		assertEquals("C", map.get('c'));
+		assertEquals(3, map.size());
+
+		assertEquals("b", map.remove('b'));
+		assertNull(map.remove('b'));
+		assertEquals(2, map.size());
+		assertNull(map.get('b'));
+		assertEquals("a", map.get('a'));
+		assertEquals("C", map.get('c'));
+	}
+
+	@Test
+	public void testSwitchToHashedMode() {
+		CompactCharMap<Integer> map = new CompactCharMap<>();
+
+		for (char ch = 'a'; ch <= 'z'; ch++) {
+			map.put(ch, Integer.valueOf(ch));
+		}
+
+		assertTrue(map.isHashed());
+		assertEquals(26, map.size());
+
+		for (char ch = 'a'; ch <= 'z'; ch++) {
+			assertEquals(Integer.valueOf(ch), map.get(ch));
+		}
+
+		for (char ch = 'a'; ch <= 'v'; ch++) {
+			assertEquals(Integer.valueOf(ch), map.remove(ch));
+		}
+
+		assertFalse(map.isHashed());
+		assertEquals(4, map.size());
+
+		for (char ch = 'w'; ch <= 'z'; ch++) {
+			assertEquals(Integer.valueOf(ch), map.get(ch));
+		}
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		Random                  random   = new Random(1234);
+		CompactCharMap<Integer> map      = new CompactCharMap<>();
+		Map<Character, Integer> expected = new HashMap<>();
+
+		for (int i = 0; i < 100_000; i++) {
+			char ch = (char) random.nextInt(64);
+
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(ch), map.remove(ch));
+			} else {
+				assertEquals(expected.put(ch, i), map.put(ch, Integer.valueOf(i)));
+			}
+
+			assertEquals(expected.size(), map.size());
+		}
+
+		assertEquals(expected, map);
+		assertEquals(expected, new CompactCharMap<>(expected));
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullValueIsRejected() {
+		new CompactCharMap<String>().put('a', null);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConcurrentCacheMap {
+
+	@Test
+	public void testGetPutRemove() {
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<>(16);
+
+		assertNull(cache.put("a", "1"));
+		assertEquals("1", cache.put("a", "2"));
+		assertEquals("2", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		assertEquals("2", cache.remove("a"));
+		assertNull(cache.remove("a"));
+		assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testSizeIsBounded() {
+		final int capacity = 64;
+
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<>(capacity, 1);
+
+		for (int i = 0; i < 10 * capacity; i++) {
+			String key = String.valueOf(i);
+
+			cache.put(key, key);
+
+			assertTrue(cache.size() <= capacity);
+		}
+
+		assertEquals(capacity, cache.size());
+		assertEquals(9 * capacity, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testReferencedEntriesAreRetained() {
+		final int capacity = 16;
+
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<>(capacity, 1);
+
+		for (int i = 0; i < capacity; i++) {
+			String key = String.valueOf(i);
+
+			cache.put(key, key);
+		}
+
+		// reference the first entry, so that it survives the next eviction
+		cache.get("0");
+		cache.put("new", "new");
+
+		assertEquals("0", cache.get("0"));
+		assertEquals("new", cache.get("new"));
+		assertFalse(cache.containsKey("1"));
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final int                                capacity = 1024;
+		final ConcurrentCacheMap<String, String> cache    = new ConcurrentCacheMap<>(capacity);
+		final AtomicBoolean                      failed   = new AtomicBoolean(false);
+		final List<Thread>                       threads  = new ArrayList<>();
+
+		for (int t = 0; t < 8; t++) {
+			final int seed = t;
+
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 50_000; i++) {
+					String key   = String.valueOf((i * 31 + seed) % (4 * capacity));
+					String value = cache.get(key);
+
+					if (value == null) {
+						cache.put(key, key);
+					} else if (!value.equals(key)) {
+						failed.set(true);
+					}
+
+					if (i % 100 == 0) {
+						cache.remove(key);
+					}
+				}
+			}));
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertFalse(failed.get());
+		assertTrue(cache.size() <= capacity + 64);
+	}
+}
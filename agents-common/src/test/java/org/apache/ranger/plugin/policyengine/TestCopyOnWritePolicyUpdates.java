@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestCopyOnWritePolicyUpdates {
+	private static final String[] DATABASES = { "db1", "db2" };
+	private static final String[] TABLES    = { "tbl0", "tbl5", "tbl7", "tbl12", "tbl19", "tbl5_new", "tblx", "sales_q1", "sales_2020_q1", "orders", "customers" };
+	private static final String[] USERS     = { "user0", "user1", "user2", "analyst", "etl", "u31" };
+
+	@Test
+	public void testDeltasOnSharedTries() throws Exception {
+		testDeltasOnSharedTries(false);
+	}
+
+	@Test
+	public void testDeltasOnSharedTriesOptimizedForSpace() throws Exception {
+		testDeltasOnSharedTries(true);
+	}
+
+	private void testDeltasOnSharedTries(boolean optimizeTrieForSpace) throws Exception {
+		List<RangerPolicy>     policies  = createPolicies();
+		RangerPolicyEngineImpl oldEngine = createPolicyEngine(policies, 1L, optimizeTrieForSpace);
+
+		List<Boolean> oldResults = evaluate(oldEngine); // lookups set up trie nodes, which are then shared with the copy
+
+		List<RangerPolicyDelta> deltas      = new ArrayList<>();
+		List<RangerPolicy>      newPolicies = new ArrayList<>(policies);
+
+		RangerPolicy updated  = createPolicy(5L, "db1", "tbl5_new", "user2");
+		RangerPolicy deleted  = policies.get(7);
+		RangerPolicy wildcard = createPolicy(30L, "db1", "tbl*", "etl");
+		RangerPolicy created  = createPolicy(31L, "db2", "orders", "u31");
+		RangerPolicy sales    = createPolicy(21L, "db1", "sales_2020*", "analyst");
+
+		deltas.add(new RangerPolicyDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 2L, updated));
+		deltas.add(new RangerPolicyDelta(2L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 2L, deleted));
+		deltas.add(new RangerPolicyDelta(3L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 2L, wildcard));
+		deltas.add(new RangerPolicyDelta(4L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 2L, created));
+		deltas.add(new RangerPolicyDelta(5L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 2L, sales));
+
+		newPolicies.set(5, updated);
+		newPolicies.remove(deleted);
+		newPolicies.set(newPolicies.indexOf(policies.get(21)), sales);
+		newPolicies.add(wildcard);
+		newPolicies.add(created);
+
+		RangerPolicyEngineImpl newEngine = (RangerPolicyEngineImpl) RangerPolicyEngineImpl.getPolicyEngine(oldEngine, createServicePolicies(null, deltas, 2L));
+
+		assertNotNull(newEngine);
+		assertNotSame(oldEngine, newEngine);
+
+		assertEquals(evaluate(createPolicyEngine(newPolicies, 2L, optimizeTrieForSpace)), evaluate(newEngine));
+		assertEquals(oldResults, evaluate(oldEngine));
+		assertEquals(evaluate(createPolicyEngine(policies, 1L, optimizeTrieForSpace)), oldResults);
+
+		// table 'customers' is not updated by the deltas above, hence its node is shared by both the engines
+		RangerResourceTrie oldTrie = oldEngine.getPolicyEngine().getPolicyRepository().getTrie(RangerPolicy.POLICY_TYPE_ACCESS).get("table");
+		RangerResourceTrie newTrie = newEngine.getPolicyEngine().getPolicyRepository().getTrie(RangerPolicy.POLICY_TYPE_ACCESS).get("table");
+
+		assertTrue(newTrie.isSharingNodes());
+		assertNotSame(oldTrie.getRoot(), newTrie.getRoot());
+		assertSame(oldTrie.getRoot().getChild('c'), newTrie.getRoot().getChild('c'));
+
+		// deltas applied to the updated engine, which is itself a copy
+		deltas = Collections.singletonList(new RangerPolicyDelta(6L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 3L, wildcard));
+
+		RangerPolicyEngineImpl nextEngine = (RangerPolicyEngineImpl) RangerPolicyEngineImpl.getPolicyEngine(newEngine, createServicePolicies(null, deltas, 3L));
+
+		newPolicies.remove(wildcard);
+
+		assertEquals(evaluate(createPolicyEngine(newPolicies, 3L, optimizeTrieForSpace)), evaluate(nextEngine));
+		assertEquals(evaluate(createPolicyEngine(policies, 1L, optimizeTrieForSpace)), evaluate(oldEngine));
+	}
+
+	/*
+	 * The trie nodes copied to apply a delta depend on the delta, not on the number of policies. The copy of the
+	 * policy repository itself still copies its policy and evaluator lists.
+	 */
+	@Test
+	public void testTrieNodesCopiedForDelta() throws Exception {
+		int nodesCopiedFor100Policies  = getTrieNodesCopiedForDelta(100);
+		int nodesCopiedFor5000Policies = getTrieNodesCopiedForDelta(5000);
+
+		assertTrue("nodes copied for 100 policies: " + nodesCopiedFor100Policies, nodesCopiedFor100Policies > 0);
+		assertEquals(nodesCopiedFor100Policies, nodesCopiedFor5000Policies);
+	}
+
+	private int getTrieNodesCopiedForDelta(int policyCount) throws Exception {
+		List<RangerPolicy> policies = new ArrayList<>();
+
+		for (int i = 0; i < policyCount; i++) {
+			policies.add(createPolicy(i, "db1", "tbl" + i, "user" + (i % 3)));
+		}
+
+		RangerPolicyEngineImpl  oldEngine = createPolicyEngine(policies, 1L, false);
+		List<RangerPolicyDelta> deltas    = Collections.singletonList(new RangerPolicyDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 2L, createPolicy(policyCount, "db2", "orders", "u31")));
+		RangerPolicyEngineImpl  newEngine = (RangerPolicyEngineImpl) RangerPolicyEngineImpl.getPolicyEngine(oldEngine, createServicePolicies(null, deltas, 2L));
+		int                     ret       = 0;
+
+		for (RangerResourceTrie trie : newEngine.getPolicyEngine().getPolicyRepository().getTrie(RangerPolicy.POLICY_TYPE_ACCESS).values()) {
+			ret += trie.getOwnedNodeCount();
+		}
+
+		return ret;
+	}
+
+	private RangerPolicyEngineImpl createPolicyEngine(List<RangerPolicy> policies, long policyVersion, boolean optimizeTrieForSpace) throws Exception {
+		RangerPolicyEngineOptions options = new RangerPolicyEngineOptions();
+
+		options.enableCopyOnWritePolicyUpdates = true;
+		options.optimizeTrieForSpace           = optimizeTrieForSpace;
+
+		RangerPluginContext pluginContext = new RangerPluginContext(new RangerPluginConfig("hive", "cl1_hive", "TestCopyOnWritePolicyUpdates", "cl1", "on-prem", options));
+
+		return new RangerPolicyEngineImpl(createServicePolicies(policies, null, policyVersion), pluginContext, null);
+	}
+
+	private ServicePolicies createServicePolicies(List<RangerPolicy> policies, List<RangerPolicyDelta> deltas, long policyVersion) throws Exception {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("cl1_hive");
+		ret.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME));
+		ret.setPolicyVersion(policyVersion);
+		ret.setPolicies(policies);
+		ret.setPolicyDeltas(deltas);
+
+		return ret;
+	}
+
+	private List<RangerPolicy> createPolicies() {
+		List<RangerPolicy> ret = new ArrayList<>();
+
+		for (int i = 0; i < 20; i++) {
+			ret.add(createPolicy(i, "db1", "tbl" + i, "user" + (i % 3)));
+		}
+
+		ret.add(createPolicy(20L, "db2", "orders", "user0"));
+		ret.add(createPolicy(21L, "db1", "sales_*", "analyst"));
+		ret.add(createPolicy(22L, "db2", "customers", "user1"));
+
+		return ret;
+	}
+
+	private RangerPolicy createPolicy(long id, String database, String table, String user) {
+		Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+		resources.put("database", new RangerPolicyResource(database));
+		resources.put("table", new RangerPolicyResource(table));
+		resources.put("column", new RangerPolicyResource("*"));
+
+		RangerPolicyItem policyItem = new RangerPolicyItem(Collections.singletonList(new RangerPolicyItemAccess("select")), Collections.singletonList(user), null, null, null, false);
+		RangerPolicy     ret        = new RangerPolicy("cl1_hive", "policy-" + id, RangerPolicy.POLICY_TYPE_ACCESS, RangerPolicy.POLICY_PRIORITY_NORMAL, null, resources, Collections.singletonList(policyItem), null, null, null, null);
+
+		ret.setId(id);
+		ret.setVersion(1L);
+		ret.setIsEnabled(true);
+		ret.setServiceType(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME);
+
+		return ret;
+	}
+
+	private List<Boolean> evaluate(RangerPolicyEngine policyEngine) {
+		List<Boolean> ret = new ArrayList<>();
+
+		for (String database : DATABASES) {
+			for (String table : TABLES) {
+				for (String user : USERS) {
+					RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+					resource.setValue("database", database);
+					resource.setValue("table", table);
+					resource.setValue("column", "col1");
+
+					RangerAccessRequest request = new RangerAccessRequestImpl(resource, "select", user, new HashSet<>(Arrays.asList("group1")), null);
+
+					ret.add(policyEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null).getIsAllowed());
+				}
+			}
+		}
+
+		return ret;
+	}
+}
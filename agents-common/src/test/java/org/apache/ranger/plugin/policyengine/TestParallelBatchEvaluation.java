@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class TestParallelBatchEvaluation {
+	private static final int TABLE_COUNT   = 20;
+	private static final int REQUEST_COUNT = 500;
+
+	@Test
+	public void testParallelBatchEvaluation() throws Exception {
+		RangerPolicyEngineImpl parallelEngine   = createPolicyEngine(true);
+		RangerPolicyEngineImpl sequentialEngine = createPolicyEngine(false);
+
+		assertNotNull(parallelEngine.getPluginContext().getBatchEvaluationExecutor());
+
+		List<RangerAccessRequest>      requests = createRequests();
+		Collection<RangerAccessResult> results  = parallelEngine.evaluatePolicies(requests, RangerPolicy.POLICY_TYPE_ACCESS, null);
+
+		assertEquals(requests.size(), results.size());
+
+		Iterator<RangerAccessResult> iter = results.iterator();
+
+		for (RangerAccessRequest request : requests) {
+			RangerAccessResult result   = iter.next();
+			RangerAccessResult expected = sequentialEngine.evaluatePolicies(request, RangerPolicy.POLICY_TYPE_ACCESS, null);
+
+			assertSame(request, result.getAccessRequest());
+			assertEquals(request.toString(), expected.getIsAllowed(), result.getIsAllowed());
+			assertEquals(request.toString(), expected.getPolicyId(), result.getPolicyId());
+			assertEquals(request.toString(), expected.getIsAudited(), result.getIsAudited());
+		}
+	}
+
+	private RangerPolicyEngineImpl createPolicyEngine(boolean enableParallelBatchEvaluation) throws Exception {
+		RangerPolicyEngineOptions options = new RangerPolicyEngineOptions();
+
+		options.enableParallelBatchEvaluation  = enableParallelBatchEvaluation;
+		options.parallelBatchEvaluationThreads = 4;
+		options.parallelBatchEvaluationMinSize = 8;
+
+		RangerPluginContext pluginContext = new RangerPluginContext(new RangerPluginConfig("hive", "cl1_hive", "TestParallelBatchEvaluation", "cl1", "on-prem", options));
+		ServicePolicies     policies      = new ServicePolicies();
+
+		policies.setServiceName("cl1_hive");
+		policies.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME));
+		policies.setPolicyVersion(1L);
+		policies.setPolicies(new ArrayList<RangerPolicy>());
+
+		for (int i = 0; i < TABLE_COUNT; i++) {
+			Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+			resources.put("database", new RangerPolicyResource("db1"));
+			resources.put("table", new RangerPolicyResource("tbl" + i));
+			resources.put("column", new RangerPolicyResource("*"));
+
+			RangerPolicyItem policyItem = new RangerPolicyItem(Collections.singletonList(new RangerPolicyItemAccess("select")), Collections.singletonList("user" + (i % 3)), null, null, null, false);
+			RangerPolicy     policy     = new RangerPolicy("cl1_hive", "policy-" + i, RangerPolicy.POLICY_TYPE_ACCESS, RangerPolicy.POLICY_PRIORITY_NORMAL, null, resources, Collections.singletonList(policyItem), null, null, null, null);
+
+			policy.setId((long) i);
+			policy.setVersion(1L);
+			policy.setIsEnabled(true);
+
+			policies.getPolicies().add(policy);
+		}
+
+		return new RangerPolicyEngineImpl(policies, pluginContext, null);
+	}
+
+	private List<RangerAccessRequest> createRequests() {
+		List<RangerAccessRequest> ret = new ArrayList<>();
+
+		for (int i = 0; i < REQUEST_COUNT; i++) {
+			RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+			resource.setValue("database", "db1");
+			resource.setValue("table", "tbl" + (i % (TABLE_COUNT + 5)));
+			resource.setValue("column", "col" + i);
+
+			ret.add(new RangerAccessRequestImpl(resource, "select", "user" + (i % 4), new HashSet<>(Collections.singletonList("group1")), null));
+		}
+
+		return ret;
+	}
+}
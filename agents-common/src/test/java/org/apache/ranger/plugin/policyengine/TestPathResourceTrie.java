@@ -69,6 +69,7 @@ public class TestPathResourceTrie {
 																						);
 
 	private final RangerResourceTrie<RangerPolicyResourceEvaluator> trie = new RangerResourceTrie<>(PATH_RESOURCE_DEF, EVALUATORS);
+	private final RangerResourceTrie<RangerPolicyResourceEvaluator> spaceOptimizedTrie = new RangerResourceTrie<>(PATH_RESOURCE_DEF, EVALUATORS, true, true, null);
 
 	@Test
 	public void testChildrenScope() {
@@ -105,6 +106,7 @@ private void verifyEvaluators(String resource, RangerAccessRequest.ResourceMatch
 		Set<RangerPolicyResourceEvaluator> result   = trie.getEvaluatorsForResource(resource, scope);
 
 		assertEquals("incorrect evaluators for resource "  + resource, expected, result);
+		assertEquals("incorrect evaluators for resource "  + resource + " in space-optimized trie", expected, spaceOptimizedTrie.getEvaluatorsForResource(resource, scope));
 	}
 
 	private static RangerResourceDef getPathResourceDef() {
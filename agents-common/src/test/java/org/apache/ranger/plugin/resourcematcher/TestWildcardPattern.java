@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestWildcardPattern {
+	private static final String[] PATTERNS = {
+		"", "*", "**", "?", "a", "abc", "a*", "*a", "*a*", "a*b", "a?c", "a*b*c", "*b*", "?*?", "a**b", "*?b?*",
+		"/app/*/data", "/app/hive/*.db/t?l*", "db_*", "tbl_?", "*_tmp", "Sales*2020*", "*SALES*", "?a?a?a?",
+	};
+
+	private static final String[] VALUES = {
+		"", "a", "b", "ab", "abc", "aabbcc", "acb", "abcabc", "ba", "aXc", "aXXc", "a/b/c", "/app/hive/data",
+		"/app/hive/sales.db/tbl1", "/app/hive/Sales.DB/TBL", "db_1", "DB_finance", "tbl_1", "tbl_12", "x_tmp", "x_TMP",
+		"sales_2020_q1", "SALES_2020", "q1sales2021", "babaca", "BABACA", "aaaaaaa",
+	};
+
+	@Test
+	public void testMatchesFilenameUtils() {
+		for (String pattern : PATTERNS) {
+			WildcardPattern caseSensitive   = new WildcardPattern(pattern, false);
+			WildcardPattern caseInsensitive = new WildcardPattern(pattern, true);
+
+			for (String value : VALUES) {
+				assertEquals(pattern + " ~ " + value, FilenameUtils.wildcardMatch(value, pattern, IOCase.SENSITIVE), caseSensitive.isMatch(value));
+				assertEquals(pattern + " ~i " + value, FilenameUtils.wildcardMatch(value, pattern, IOCase.INSENSITIVE), caseInsensitive.isMatch(value));
+			}
+
+			assertFalse(caseSensitive.isMatch(null));
+		}
+	}
+
+	@Test
+	public void testRandomPatterns() {
+		Random random = new Random(20200601L);
+		char[] chars  = { 'a', 'b', 'A', '/', '*', '?' };
+
+		for (int i = 0; i < 20000; i++) {
+			String pattern = randomString(random, chars, 6);
+			String value   = randomString(random, chars, 8).replace('*', 'b').replace('?', 'a');
+
+			assertEquals(pattern + " ~ " + value, FilenameUtils.wildcardMatch(value, pattern, IOCase.SENSITIVE), new WildcardPattern(pattern, false).isMatch(value));
+			assertEquals(pattern + " ~i " + value, FilenameUtils.wildcardMatch(value, pattern, IOCase.INSENSITIVE), new WildcardPattern(pattern, true).isMatch(value));
+		}
+	}
+
+	@Test
+	public void testRecursiveWildcardMatch() {
+		String[] paths = { "/", "/app", "/app/hive", "/app/hive/", "/app//hive/data", "app/hive/data", "/tmp/x", "//app/hive" };
+
+		for (String pattern : new String[] { "/app/h*", "/ap?", "*/hive", "/app/*/data", "app*", "/" }) {
+			WildcardPattern wildcardPattern = new WildcardPattern(pattern, false);
+
+			for (String path : paths) {
+				assertEquals(pattern + " ~ " + path, RangerPathResourceMatcher.isRecursiveWildCardMatch(path, pattern, '/', IOCase.SENSITIVE), RangerPathResourceMatcher.isRecursiveWildCardMatch(path, wildcardPattern, '/'));
+			}
+		}
+
+		assertTrue(RangerPathResourceMatcher.isRecursiveWildCardMatch("/app/hive/warehouse/t1", new WildcardPattern("/app/h*e", false), '/'));
+		assertFalse(RangerPathResourceMatcher.isRecursiveWildCardMatch("/app/hive/warehouse/t1", new WildcardPattern("/APP/h*e", false), '/'));
+		assertTrue(RangerPathResourceMatcher.isRecursiveWildCardMatch("/app/hive/warehouse/t1", new WildcardPattern("/APP/h*e", true), '/'));
+	}
+
+	private static String randomString(Random random, char[] chars, int maxLength) {
+		StringBuilder sb  = new StringBuilder();
+		int           len = random.nextInt(maxLength + 1);
+
+		for (int i = 0; i < len; i++) {
+			sb.append(chars[random.nextInt(chars.length)]);
+		}
+
+		return sb.toString();
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.service;
+
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerValiditySchedule;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.plugin.util.RangerRoles;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerAccessResultCache {
+	private RangerBasePlugin        plugin;
+	private RangerAccessResultCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		RangerPolicyEngineOptions options = new RangerPolicyEngineOptions();
+
+		options.disablePolicyRefresher = true;
+
+		RangerPluginConfig pluginConfig = new RangerPluginConfig("hive", "cl1_hive", "TestRangerAccessResultCache", "cl1", "on-prem", options);
+
+		pluginConfig.setBoolean(pluginConfig.getPropertyPrefix() + ".policyengine.option.cache.access.results", true);
+
+		plugin = new RangerBasePlugin(pluginConfig);
+		cache  = plugin.getAccessResultCache();
+
+		assertNotNull(cache);
+	}
+
+	@Test
+	public void testCachedResults() throws Exception {
+		plugin.setPolicies(createServicePolicies(1L, createPolicy(1L, "user1", null)));
+
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+
+		assertFalse(plugin.isAccessAllowed(createRequest("user2", "tbl1")).getIsAllowed());
+		assertFalse(plugin.isAccessAllowed(createRequest("user2", "tbl1")).getIsAllowed());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+
+		RangerAccessResult result = plugin.isAccessAllowed(createRequest("user1", "tbl1"));
+
+		assertTrue(result.getIsAllowed());
+		assertEquals(1L, result.getPolicyId());
+		assertNotNull(result.getAccessRequest());
+		assertEquals(3, cache.getHitCount());
+		assertEquals(0.6, cache.getHitRatio(), 0.001);
+	}
+
+	@Test
+	public void testInvalidationOnPolicyChange() throws Exception {
+		plugin.setPolicies(createServicePolicies(1L, createPolicy(1L, "user1", null)));
+
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertFalse(plugin.isAccessAllowed(createRequest("user2", "tbl1")).getIsAllowed());
+
+		plugin.setPolicies(createServicePolicies(2L, createPolicy(1L, "user2", null)));
+
+		assertFalse(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertTrue(plugin.isAccessAllowed(createRequest("user2", "tbl1")).getIsAllowed());
+		assertEquals(4, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void testInvalidationOnRolesChange() throws Exception {
+		plugin.setPolicies(createServicePolicies(1L, createPolicy(1L, "user1", null)));
+
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+
+		RangerRoles roles = new RangerRoles();
+
+		roles.setRoleVersion(2L);
+		roles.setRangerRoles(Collections.emptySet());
+
+		plugin.setRoles(roles);
+
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testStaleEngineKeepsNewerGeneration() throws Exception {
+		RangerPolicyEngine oldEngine = new RangerPolicyEngineImpl(createServicePolicies(1L, createPolicy(1L, "user1", null)), plugin.getPluginContext(), null);
+		RangerPolicyEngine newEngine = new RangerPolicyEngineImpl(createServicePolicies(2L, createPolicy(1L, "user2", null)), plugin.getPluginContext(), null);
+
+		assertTrue(cache.evaluatePolicies(newEngine, createRequest("user2", "tbl1")).getIsAllowed());
+
+		// a request still holding the previous engine is evaluated without the cache, and leaves the newer generation in place
+		assertTrue(cache.evaluatePolicies(oldEngine, createRequest("user1", "tbl1")).getIsAllowed());
+		assertEquals(1, cache.getBypassCount());
+
+		assertTrue(cache.evaluatePolicies(newEngine, createRequest("user2", "tbl1")).getIsAllowed());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testBypassForValiditySchedules() throws Exception {
+		RangerValiditySchedule schedule = new RangerValiditySchedule("2000/01/01 00:00:00", "2100/01/01 00:00:00", null, null);
+
+		plugin.setPolicies(createServicePolicies(1L, createPolicy(1L, "user1", schedule)));
+
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertTrue(plugin.isAccessAllowed(createRequest("user1", "tbl1")).getIsAllowed());
+		assertEquals(0, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getBypassCount());
+	}
+
+	private ServicePolicies createServicePolicies(long policyVersion, RangerPolicy... policies) throws Exception {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("cl1_hive");
+		ret.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME));
+		ret.setPolicyVersion(policyVersion);
+		ret.setPolicies(new ArrayList<>());
+
+		Collections.addAll(ret.getPolicies(), policies);
+
+		return ret;
+	}
+
+	private RangerPolicy createPolicy(long id, String user, RangerValiditySchedule validitySchedule) {
+		Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+		resources.put("database", new RangerPolicyResource("db1"));
+		resources.put("table", new RangerPolicyResource("tbl1"));
+		resources.put("column", new RangerPolicyResource("*"));
+
+		RangerPolicyItem policyItem = new RangerPolicyItem(Collections.singletonList(new RangerPolicyItemAccess("select")), Collections.singletonList(user), null, null, null, false);
+
+		List<RangerValiditySchedule> validitySchedules = validitySchedule != null ? Collections.singletonList(validitySchedule) : null;
+
+		RangerPolicy ret = new RangerPolicy("cl1_hive", "policy-" + id, RangerPolicy.POLICY_TYPE_ACCESS, RangerPolicy.POLICY_PRIORITY_NORMAL, null, resources, Collections.singletonList(policyItem), null, null, validitySchedules, null);
+
+		ret.setId(id);
+		ret.setVersion(1L);
+		ret.setIsEnabled(true);
+
+		return ret;
+	}
+
+	private RangerAccessRequest createRequest(String user, String table) {
+		RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+		resource.setValue("database", "db1");
+		resource.setValue("table", table);
+		resource.setValue("column", "col1");
+
+		return new RangerAccessRequestImpl(resource, "select", user, new HashSet<>(Collections.singletonList("group1")), null);
+	}
+}
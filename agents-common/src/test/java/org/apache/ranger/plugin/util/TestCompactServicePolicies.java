@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestCompactServicePolicies {
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	@Test
+	public void testPolicies() throws Exception {
+		ServicePolicies policies = createServicePolicies();
+
+		for (int i = 0; i < 3; i++) {
+			policies.getPolicies().add(createPolicy(i));
+		}
+
+		ServicePolicies.TagPolicies tagPolicies = new ServicePolicies.TagPolicies();
+
+		tagPolicies.setServiceName("cl1_tag");
+		tagPolicies.setPolicyVersion(3L);
+		tagPolicies.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_TAG_NAME));
+		tagPolicies.setPolicies(Collections.singletonList(createPolicy(100)));
+
+		policies.setTagPolicies(tagPolicies);
+		policies.setSecurityZones(Collections.singletonMap("sales", createZone("sales", createPolicy(200))));
+
+		assertRoundTrip(policies);
+	}
+
+	@Test
+	public void testPolicyDeltas() throws Exception {
+		ServicePolicies         policies = createServicePolicies();
+		List<RangerPolicyDelta> deltas   = new ArrayList<>();
+
+		deltas.add(new RangerPolicyDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 8L, createPolicy(1)));
+		deltas.add(new RangerPolicyDelta(2L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 8L, createPolicy(2)));
+
+		policies.setPolicies(null);
+		policies.setPolicyDeltas(deltas);
+		policies.setSecurityZones(Collections.singletonMap("sales", createZone("sales", null)));
+
+		ServicePolicies loaded = assertRoundTrip(policies);
+
+		assertNull(loaded.getPolicies());
+		assertEquals(Integer.valueOf(RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE), loaded.getPolicyDeltas().get(1).getChangeType());
+	}
+
+	// the compact payload carries the same ServicePolicies as the JSON download, unchanged
+	private ServicePolicies assertRoundTrip(ServicePolicies policies) throws Exception {
+		String          original = gson.toJson(policies);
+		ServicePolicies loaded   = CompactServicePolicies.fromByteArray(CompactServicePolicies.toByteArray(policies));
+
+		assertEquals(original, gson.toJson(policies));
+		assertEquals(gson.toJsonTree(policies), gson.toJsonTree(loaded));
+
+		return loaded;
+	}
+
+	private ServicePolicies createServicePolicies() throws Exception {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("cl1_hive");
+		ret.setServiceId(1L);
+		ret.setPolicyVersion(8L);
+		ret.setPolicyUpdateTime(new Date());
+		ret.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME));
+		ret.setPolicies(new ArrayList<RangerPolicy>());
+
+		return ret;
+	}
+
+	private ServicePolicies.SecurityZoneInfo createZone(String zoneName, RangerPolicy policy) {
+		ServicePolicies.SecurityZoneInfo ret       = new ServicePolicies.SecurityZoneInfo();
+		HashMap<String, List<String>>    resources = new HashMap<>();
+
+		resources.put("database", Collections.singletonList(zoneName + "_db"));
+
+		ret.setZoneName(zoneName);
+		ret.setResources(new ArrayList<>(Collections.singletonList(resources)));
+		ret.setPolicies(policy != null ? Collections.singletonList(policy) : null);
+		ret.setContainsAssociatedTagService(false);
+
+		return ret;
+	}
+
+	private RangerPolicy createPolicy(int id) {
+		RangerPolicyItem policyItem = new RangerPolicyItem(Collections.singletonList(new RangerPolicyItemAccess("select")), Collections.singletonList("user" + id), null, null, null, false);
+		RangerPolicy     ret        = new RangerPolicy("cl1_hive", "policy-" + id, RangerPolicy.POLICY_TYPE_ACCESS, RangerPolicy.POLICY_PRIORITY_NORMAL, null, Collections.singletonMap("database", new RangerPolicyResource("db" + id)), Collections.singletonList(policyItem), null, null, null, null);
+
+		ret.setId((long) id);
+
+		return ret;
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestRangerCompactJsonCodec {
+	private final Gson gson          = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+	private final Gson streamingGson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").registerTypeAdapterFactory(RangerCompactJsonCodec.MAP_ADAPTER_FACTORY).create();
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testServicePolicies() throws Exception {
+		ServicePolicies policies = createServicePolicies();
+		byte[]          bytes    = RangerCompactJsonCodec.toByteArray(gson, policies);
+
+		for (Gson decodeGson : Arrays.asList(gson, streamingGson)) {
+			ServicePolicies decoded = RangerCompactJsonCodec.fromByteArray(decodeGson, bytes, ServicePolicies.class);
+
+			assertEquals(gson.toJsonTree(policies), gson.toJsonTree(decoded));
+
+			// each distinct string is decoded once, and shared by all the decoded objects
+			String user1 = decoded.getPolicies().get(1).getPolicyItems().get(0).getUsers().get(0);
+			String user2 = decoded.getPolicies().get(4).getPolicyItems().get(0).getUsers().get(0);
+
+			assertEquals("user1", user1);
+			assertSame(user1, user2);
+		}
+
+		// fields unknown to the class read are skipped
+		RangerRoles roles = RangerCompactJsonCodec.fromByteArray(streamingGson, bytes, RangerRoles.class);
+
+		assertEquals("cl1_hive", roles.getServiceName());
+	}
+
+	@Test
+	public void testServiceTags() throws Exception {
+		ServiceTags           tags     = new ServiceTags();
+		Map<Long, RangerTag>  tagMap   = new HashMap<>();
+		Map<Long, List<Long>> tagIds   = new HashMap<>();
+		Map<String, String>   attrs    = new HashMap<>();
+		RangerServiceResource resource = new RangerServiceResource("cl1_hive", Collections.singletonMap("database", new RangerPolicyResource("finance")));
+
+		attrs.put("level", "high");
+		attrs.put("score", "-1.5e3");
+
+		resource.setId(3L);
+		tagMap.put(1L, new RangerTag("PII", attrs));
+		tagIds.put(3L, Collections.singletonList(1L));
+
+		tags.setServiceName("cl1_hive");
+		tags.setTagVersion(Long.MIN_VALUE);
+		tags.setTagUpdateTime(new Date());
+		tags.setTags(tagMap);
+		tags.setServiceResources(Collections.singletonList(resource));
+		tags.setResourceToTagIds(tagIds);
+
+		for (Gson decodeGson : Arrays.asList(gson, streamingGson)) {
+			ServiceTags decoded = RangerCompactJsonCodec.fromByteArray(decodeGson, RangerCompactJsonCodec.toByteArray(gson, tags), ServiceTags.class);
+
+			assertEquals(gson.toJsonTree(tags), gson.toJsonTree(decoded));
+			assertEquals(Long.MIN_VALUE, decoded.getTagVersion().longValue());
+			assertEquals("high", decoded.getTags().get(1L).getAttributes().get("level"));
+		}
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		NumberHolder holder = new NumberHolder();
+
+		holder.ratio = -1.5e3;
+		holder.count = 7;
+		holder.scores.put("a", 0.25);
+		holder.scores.put("b", 3.0);
+
+		for (Gson decodeGson : Arrays.asList(gson, streamingGson)) {
+			NumberHolder decoded = RangerCompactJsonCodec.fromByteArray(decodeGson, RangerCompactJsonCodec.toByteArray(gson, holder), NumberHolder.class);
+
+			assertEquals(-1.5e3, decoded.ratio, 0);
+			assertEquals(7, decoded.count);
+			assertEquals(holder.scores, decoded.scores);
+		}
+	}
+
+	@Test
+	public void testCacheFile() throws Exception {
+		ServicePolicies policies    = createServicePolicies();
+		File            compactFile = tempFolder.newFile("hive_cl1_hive.json");
+		File            jsonFile    = tempFolder.newFile("hive_cl1_hive_json.json");
+
+		RangerCompactJsonCodec.writeFile(streamingGson, compactFile, policies, true);
+		RangerCompactJsonCodec.writeFile(streamingGson, jsonFile, policies, false);
+
+		assertEquals(RangerCompactJsonCodec.MAGIC, ByteBuffer.wrap(Files.readAllBytes(compactFile.toPath())).getInt());
+		assertNotEquals(RangerCompactJsonCodec.MAGIC, ByteBuffer.wrap(Files.readAllBytes(jsonFile.toPath())).getInt());
+
+		// either format is read, whatever the configured one; JSON files are in the platform charset, as before
+		ServicePolicies fromJsonFile = RangerCompactJsonCodec.readFile(streamingGson, jsonFile, ServicePolicies.class);
+
+		assertEquals(gson.toJsonTree(policies), gson.toJsonTree(RangerCompactJsonCodec.readFile(streamingGson, compactFile, ServicePolicies.class)));
+		assertEquals(policies.getPolicyVersion(), fromJsonFile.getPolicyVersion());
+		assertEquals(policies.getPolicies().size(), fromJsonFile.getPolicies().size());
+		assertNull(RangerCompactJsonCodec.readFile(streamingGson, tempFolder.newFile("empty.json"), ServicePolicies.class));
+	}
+
+	@Test
+	public void testInvalidInput() throws Exception {
+		byte[] bytes = RangerCompactJsonCodec.toByteArray(gson, createServicePolicies());
+
+		assertNotDecoded(Arrays.copyOf(bytes, bytes.length / 2)); // truncated
+		assertNotDecoded(Arrays.copyOf(bytes, bytes.length - 3)); // truncated value
+		assertNotDecoded("{\"serviceName\": \"cl1_hive\"}".getBytes(StandardCharsets.UTF_8)); // JSON
+		assertNotDecoded(new byte[0]);
+	}
+
+	private void assertNotDecoded(byte[] bytes) {
+		for (Gson decodeGson : Arrays.asList(gson, streamingGson)) {
+			try {
+				RangerCompactJsonCodec.fromByteArray(decodeGson, bytes, ServicePolicies.class);
+
+				fail("decoded invalid input of " + bytes.length + " bytes");
+			} catch (IOException excp) {
+				// expected
+			}
+		}
+	}
+
+	private ServicePolicies createServicePolicies() throws Exception {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("cl1_hive");
+		ret.setServiceId(1L);
+		ret.setPolicyVersion(42L);
+		ret.setPolicyUpdateTime(new Date());
+		ret.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME));
+		ret.setPolicies(new ArrayList<RangerPolicy>());
+
+		for (int i = 0; i < 10; i++) {
+			Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+			resources.put("database", new RangerPolicyResource("db" + (i % 2)));
+			resources.put("table", new RangerPolicyResource("tbl_été_" + i));
+			resources.put("column", new RangerPolicyResource("*"));
+
+			RangerPolicyItem policyItem = new RangerPolicyItem(Collections.singletonList(new RangerPolicyItemAccess("select")), Collections.singletonList("user" + (i % 3)), null, null, null, i % 2 == 0);
+			RangerPolicy     policy     = new RangerPolicy("cl1_hive", "policy-" + i, RangerPolicy.POLICY_TYPE_ACCESS, RangerPolicy.POLICY_PRIORITY_NORMAL, null, resources, Collections.singletonList(policyItem), null, null, null, null);
+
+			policy.setId((long) i);
+			policy.setVersion(1L);
+			policy.setIsEnabled(true);
+			policy.setCreateTime(new Date());
+
+			ret.getPolicies().add(policy);
+		}
+
+		return ret;
+	}
+
+	private static class NumberHolder {
+		double              ratio;
+		int                 count;
+		Map<String, Double> scores = new HashMap<>();
+	}
+}
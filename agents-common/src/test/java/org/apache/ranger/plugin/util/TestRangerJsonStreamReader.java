@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestRangerJsonStreamReader {
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	@Test
+	public void testReadAsWrittenByAdmin() throws Exception {
+		ServicePolicies policies = createServicePolicies();
+		String          json     = JsonUtilsV2.objToJson(policies); // as serialized by Ranger admin
+
+		ServicePolicies expected = JsonUtilsV2.jsonToObj(json, ServicePolicies.class);
+		ServicePolicies actual   = RangerJsonStreamReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), ServicePolicies.class);
+
+		assertEquals(gson.toJsonTree(expected), gson.toJsonTree(actual));
+		assertEquals(policies.getPolicyUpdateTime(), actual.getPolicyUpdateTime());
+		assertNull(actual.getTagPolicies());
+
+		// string values are interned
+		String user1 = actual.getPolicies().get(1).getPolicyItems().get(0).getUsers().get(0);
+		String user2 = actual.getPolicies().get(4).getPolicyItems().get(0).getUsers().get(0);
+
+		assertEquals("user1", user1);
+		assertSame(user1, user2);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidDate() throws Exception {
+		String json = "{\"serviceName\": \"cl1_hive\", \"policyUpdateTime\": \"yesterday\"}";
+
+		RangerJsonStreamReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), ServicePolicies.class);
+	}
+
+	private ServicePolicies createServicePolicies() throws Exception {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("cl1_hive");
+		ret.setServiceId(1L);
+		ret.setPolicyVersion(42L);
+		ret.setPolicyUpdateTime(new Date());
+		ret.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME));
+		ret.setPolicies(new ArrayList<RangerPolicy>());
+
+		for (int i = 0; i < 10; i++) {
+			Map<String, RangerPolicyResource> resources = new HashMap<>();
+
+			resources.put("database", new RangerPolicyResource("db" + (i % 2)));
+			resources.put("table", new RangerPolicyResource("tbl_été_" + i));
+			resources.put("column", new RangerPolicyResource("*"));
+
+			RangerPolicyItem policyItem = new RangerPolicyItem(Collections.singletonList(new RangerPolicyItemAccess("select")), Collections.singletonList("user" + (i % 3)), null, null, null, i % 2 == 0);
+			RangerPolicy     policy     = new RangerPolicy("cl1_hive", "policy-" + i, RangerPolicy.POLICY_TYPE_ACCESS, RangerPolicy.POLICY_PRIORITY_NORMAL, null, resources, Collections.singletonList(policyItem), null, null, null, null);
+
+			policy.setId((long) i);
+			policy.setVersion(1L);
+			policy.setIsEnabled(true);
+			policy.setCreateTime(new Date());
+
+			ret.getPolicies().add(policy);
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRole.RoleMember;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.service.RangerAuthContext;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerRolesIndex {
+
+	@Test
+	public void testRolesForUserAndGroups() {
+		RangerAuthContext authContext = new RangerAuthContext(null, createRoles(1L));
+
+		assertEquals(asSet("r_user1", "r_parent", "r_public"), authContext.getRolesForUserAndGroups("user1", null));
+		assertEquals(asSet("r_group1", "r_parent", "r_public"), authContext.getRolesForUserAndGroups("unknown", asSet("group1", "unknownGroup")));
+		assertEquals(asSet("r_user1", "r_group1", "r_group2", "r_parent", "r_public"), authContext.getRolesForUserAndGroups("user1", asSet("group1", "group2")));
+		assertEquals(asSet("r_public"), authContext.getRolesForUserAndGroups(null, null));
+		assertEquals(asSet("r_public"), authContext.getRolesForUserAndGroups("unknown", Collections.<String>emptySet()));
+
+		// same user and groups, in a different order and with groups that are not members of any role
+		Set<String> roles1 = authContext.getRoleSetForUserAndGroups("user1", new HashSet<>(Arrays.asList("group1", "group2")));
+		Set<String> roles2 = authContext.getRoleSetForUserAndGroups("user1", new HashSet<>(Arrays.asList("group2", "other", "group1")));
+
+		assertSame("cached roles", roles1, roles2);
+		assertTrue("contains", roles1.contains("r_group2"));
+		assertFalse("contains", roles1.contains("r_user2"));
+		assertFalse("contains", roles1.contains(null));
+		assertEquals("hashCode", asSet("r_user1", "r_group1", "r_group2", "r_parent", "r_public").hashCode(), roles1.hashCode());
+
+		try {
+			roles1.add("r_user2");
+			assertTrue("roles should be immutable", false);
+		} catch (UnsupportedOperationException excp) {
+			// expected
+		}
+
+		// roles returned to callers outside the policy engine can be modified, without affecting the cached roles
+		Set<String> roles3 = authContext.getRolesForUserAndGroups("user1", asSet("group1", "group2"));
+
+		roles3.add("r_user2");
+
+		assertFalse("contains", authContext.getRoleSetForUserAndGroups("user1", asSet("group1", "group2")).contains("r_user2"));
+
+		authContext.setRoles(createRoles(2L));
+
+		assertNotSame("roles after update", roles1, authContext.getRoleSetForUserAndGroups("user1", asSet("group1", "group2")));
+	}
+
+	@Test
+	public void testRoleMatcher() {
+		RangerRolesUtil              rolesUtil = new RangerRolesUtil(createRoles(1L));
+		RangerRolesIndex             index     = rolesUtil.getRolesIndex();
+		RangerRolesIndex.RoleMatcher parent    = new RangerRolesIndex.RoleMatcher(Arrays.asList("r_parent", "r_unknown"));
+		RangerRolesIndex.RoleMatcher user2     = new RangerRolesIndex.RoleMatcher(Collections.singletonList("r_user2"));
+
+		Set<String> roles = index.getRolesForUserAndGroups("user1", null);
+
+		assertTrue("match by role IDs", parent.matchesAny(roles));
+		assertFalse("match by role IDs", user2.matchesAny(roles));
+		assertTrue("match by names", parent.matchesAny(asSet("r_parent")));
+		assertFalse("match by names", user2.matchesAny(asSet("r_parent")));
+		assertFalse("no roles", user2.matchesAny(null));
+
+		// role IDs are looked up again for a new index
+		RangerRolesIndex newIndex = new RangerRolesUtil(createRoles(2L)).getRolesIndex();
+
+		assertTrue("match after update", user2.matchesAny(newIndex.getRolesForUserAndGroups("user2", null)));
+		assertEquals("role name of id", "r_parent", index.getRoleName(index.getRoleId("r_parent")));
+		assertEquals("unknown role", -1, index.getRoleId("r_unknown"));
+	}
+
+	@Test
+	public void testManyGroups() {
+		List<RangerRole> roles = new ArrayList<>();
+
+		for (int i = 0; i < 500; i++) {
+			roles.add(new RangerRole("role" + i, null, null, Collections.<RoleMember>emptyList(), members("group" + (i % 50)), Collections.<RoleMember>emptyList()));
+		}
+
+		RangerRoles rangerRoles = new RangerRoles();
+
+		rangerRoles.setRoleVersion(1L);
+		rangerRoles.setRangerRoles(new HashSet<>(roles));
+
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(rangerRoles);
+		Set<String>     groups    = new HashSet<>();
+
+		for (int i = 0; i < 60; i++) {
+			groups.add("group" + i);
+		}
+
+		Set<String> expected = new HashSet<>();
+
+		for (String group : groups) {
+			Set<String> groupRoles = rolesUtil.getGroupRoleMapping().get(group);
+
+			if (groupRoles != null) {
+				expected.addAll(groupRoles);
+			}
+		}
+
+		assertEquals("roles of 60 groups", 500, expected.size());
+		assertEquals("roles of 60 groups", expected, rolesUtil.getRolesIndex().getRolesForUserAndGroups("user", groups));
+	}
+
+	private RangerRoles createRoles(long version) {
+		Set<RangerRole> roles = new HashSet<>();
+
+		roles.add(new RangerRole("r_user1", null, null, members("user1"), Collections.<RoleMember>emptyList(), Collections.<RoleMember>emptyList()));
+		roles.add(new RangerRole("r_user2", null, null, members("user2"), Collections.<RoleMember>emptyList(), Collections.<RoleMember>emptyList()));
+		roles.add(new RangerRole("r_group1", null, null, Collections.<RoleMember>emptyList(), members("group1"), Collections.<RoleMember>emptyList()));
+		roles.add(new RangerRole("r_group2", null, null, Collections.<RoleMember>emptyList(), members("group2"), Collections.<RoleMember>emptyList()));
+		roles.add(new RangerRole("r_public", null, null, Collections.<RoleMember>emptyList(), members(RangerPolicyEngine.GROUP_PUBLIC), Collections.<RoleMember>emptyList()));
+		// r_parent contains r_user1 and r_group1, so their members are members of r_parent
+		roles.add(new RangerRole("r_parent", null, null, Collections.<RoleMember>emptyList(), Collections.<RoleMember>emptyList(), members("r_user1", "r_group1")));
+
+		RangerRoles ret = new RangerRoles();
+
+		ret.setRoleVersion(version);
+		ret.setRangerRoles(roles);
+
+		return ret;
+	}
+
+	private static List<RoleMember> members(String... names) {
+		List<RoleMember> ret = new ArrayList<>();
+
+		for (String name : names) {
+			ret.add(new RoleMember(name, false));
+		}
+
+		return ret;
+	}
+
+	private static Set<String> asSet(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRole.RoleMember;
+import org.apache.ranger.plugin.model.RangerRoleDelta;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestRangerRolesUtil {
+
+	@Test
+	public void testContainedRoles() {
+		Set<RangerRole> roles = new HashSet<>();
+
+		roles.add(createRole("r1", members("u1"), members("g1"), members("r2")));
+		roles.add(createRole("r2", members("u2"), members(), members("r3", "r_unknown")));
+		roles.add(createRole("r3", members("u3"), members(), members()));
+		// r4 and r5 contain each other
+		roles.add(createRole("r4", members("u4"), members(), members("r5")));
+		roles.add(createRole("r5", members("u5"), members("g5"), members("r4", "r1")));
+
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(createRoles(1L, roles));
+
+		assertEquals(asSet("r1", "r2", "r3"), rolesUtil.getContainedRoles("r1"));
+		assertEquals(asSet("r3"), rolesUtil.getContainedRoles("r3"));
+		assertEquals(asSet("r1", "r2", "r3", "r4", "r5"), rolesUtil.getContainedRoles("r4"));
+		assertEquals(asSet("r1", "r2", "r3", "r4", "r5"), rolesUtil.getContainedRoles("r5"));
+		assertNull(rolesUtil.getContainedRoles("r_unknown"));
+
+		assertEquals(asSet("r1", "r2", "r3", "r4", "r5"), rolesUtil.getUserRoleMapping().get("u3"));
+		assertEquals(asSet("r4", "r5"), rolesUtil.getUserRoleMapping().get("u4"));
+		assertEquals(asSet("r1", "r4", "r5"), rolesUtil.getGroupRoleMapping().get("g1"));
+		assertEquals(asSet("r1", "r2", "r4", "r5"), rolesUtil.getRoleRoleMapping().get("r3"));
+		assertEquals(asSet("r1", "r2", "r4", "r5"), rolesUtil.getRoleRoleMapping().get("r_unknown"));
+		assertEquals(asSet("u1", "u2", "u3"), rolesUtil.getRoleToUserMapping().get("r1"));
+		assertEquals(asSet("g1", "g5"), rolesUtil.getRoleToGroupMapping().get("r4"));
+	}
+
+	@Test
+	public void testDeepNesting() {
+		final int       depth = 2000;
+		Set<RangerRole> roles = new HashSet<>();
+
+		// role_i contains role_(i+1); only the innermost role has a user
+		for (int i = 0; i < depth; i++) {
+			roles.add(createRole("role_" + i, i == depth - 1 ? members("user") : members(), members(), i == depth - 1 ? members() : members("role_" + (i + 1))));
+		}
+
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(createRoles(1L, roles));
+
+		assertEquals(depth, rolesUtil.getUserRoleMapping().get("user").size());
+		assertEquals(depth, rolesUtil.getContainedRoles("role_0").size());
+		assertEquals(asSet("user"), rolesUtil.getRoleToUserMapping().get("role_0"));
+	}
+
+	@Test
+	public void testSameNamedRoles() {
+		Set<RangerRole> roles = new HashSet<>();
+
+		roles.add(createRole("r1", members("u1"), members(), members()));
+		roles.add(createRole("r1", members(), members("g1"), members()));
+		roles.add(createRole("r1", members(), members(), members("r2")));
+		roles.add(createRole("r2", members("u2"), members(), members()));
+
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(createRoles(1L, roles));
+
+		assertEquals(asSet("r1", "r2"), rolesUtil.getContainedRoles("r1"));
+		assertEquals(asSet("r1"), rolesUtil.getUserRoleMapping().get("u1"));
+		assertEquals(asSet("r1", "r2"), rolesUtil.getUserRoleMapping().get("u2"));
+		assertEquals(asSet("r1"), rolesUtil.getGroupRoleMapping().get("g1"));
+		assertEquals(asSet("r1"), rolesUtil.getRoleRoleMapping().get("r2"));
+		assertEquals(asSet("u1", "u2"), rolesUtil.getRoleToUserMapping().get("r1"));
+	}
+
+	@Test
+	public void testRoleDeltas() {
+		Random          random    = new Random(20201018L);
+		RangerRoles     roles     = createRoles(1L, createRandomRoles(random, 200));
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(roles);
+
+		for (long version = 2; version < 30; version++) {
+			RangerRoles roleDeltas = createRandomDeltas(random, roles, version);
+			RangerRoles newRoles   = RangerRoleDeltaUtil.applyDeltas(roles, roleDeltas);
+
+			assertNotNull(newRoles);
+			assertEquals(Long.valueOf(version), newRoles.getRoleVersion());
+
+			Map<String, Map<String, Set<String>>> previousMappings = getMappings(rolesUtil);
+			RangerRolesUtil                       updated          = new RangerRolesUtil(newRoles, rolesUtil);
+
+			assertEquals("version " + version, getMappings(new RangerRolesUtil(newRoles)), getMappings(updated));
+			assertEquals("previous version is unchanged", previousMappings, getMappings(rolesUtil));
+
+			roles     = newRoles;
+			rolesUtil = updated;
+		}
+	}
+
+	private static RangerRoles createRandomDeltas(Random random, RangerRoles roles, long version) {
+		List<RangerRole>      existing = new ArrayList<>(roles.getRangerRoles());
+		List<RangerRoleDelta> deltas   = new ArrayList<>();
+
+		for (int i = random.nextInt(5); i >= 0; i--) {
+			RangerRole role = existing.get(random.nextInt(existing.size()));
+
+			switch (random.nextInt(3)) {
+				case 0:
+					deltas.add(new RangerRoleDelta(RangerRoleDelta.CHANGE_TYPE_ROLE_CREATE, version, createRandomRole(random, "role_" + version + "_" + i, existing.size())));
+					break;
+
+				case 1:
+					deltas.add(new RangerRoleDelta(RangerRoleDelta.CHANGE_TYPE_ROLE_UPDATE, version, createRandomRole(random, role.getName(), existing.size())));
+					break;
+
+				default:
+					deltas.add(new RangerRoleDelta(RangerRoleDelta.CHANGE_TYPE_ROLE_DELETE, version, role));
+					break;
+			}
+		}
+
+		RangerRoles ret = new RangerRoles();
+
+		ret.setRoleVersion(version);
+		ret.setRoleDeltas(deltas);
+
+		return ret;
+	}
+
+	private static Set<RangerRole> createRandomRoles(Random random, int count) {
+		Set<RangerRole> ret = new HashSet<>();
+
+		for (int i = 0; i < count; i++) {
+			ret.add(createRandomRole(random, "role_" + i, count));
+		}
+
+		return ret;
+	}
+
+	// contained roles are mostly roles with higher index, with a few back-references that create cycles
+	private static RangerRole createRandomRole(Random random, String name, int roleCount) {
+		List<RoleMember> users  = new ArrayList<>();
+		List<RoleMember> groups = new ArrayList<>();
+		List<RoleMember> roles  = new ArrayList<>();
+
+		for (int i = random.nextInt(3); i > 0; i--) {
+			users.add(new RoleMember("user_" + random.nextInt(50), false));
+		}
+
+		for (int i = random.nextInt(2); i > 0; i--) {
+			groups.add(new RoleMember("group_" + random.nextInt(20), false));
+		}
+
+		for (int i = random.nextInt(3); i > 0; i--) {
+			roles.add(new RoleMember("role_" + random.nextInt(roleCount), false));
+		}
+
+		return createRole(name, users, groups, roles);
+	}
+
+	private static Map<String, Map<String, Set<String>>> getMappings(RangerRolesUtil rolesUtil) {
+		Map<String, Map<String, Set<String>>> ret = new HashMap<>();
+
+		ret.put("userRoles", deepCopy(rolesUtil.getUserRoleMapping()));
+		ret.put("groupRoles", deepCopy(rolesUtil.getGroupRoleMapping()));
+		ret.put("roleRoles", deepCopy(rolesUtil.getRoleRoleMapping()));
+		ret.put("roleUsers", deepCopy(rolesUtil.getRoleToUserMapping()));
+		ret.put("roleGroups", deepCopy(rolesUtil.getRoleToGroupMapping()));
+
+		return ret;
+	}
+
+	private static Map<String, Set<String>> deepCopy(Map<String, Set<String>> map) {
+		Map<String, Set<String>> ret = new HashMap<>();
+
+		for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+			ret.put(entry.getKey(), new HashSet<>(entry.getValue()));
+		}
+
+		return ret;
+	}
+
+	private static RangerRoles createRoles(long version, Set<RangerRole> roles) {
+		RangerRoles ret = new RangerRoles();
+
+		ret.setRoleVersion(version);
+		ret.setRangerRoles(roles);
+
+		return ret;
+	}
+
+	private static RangerRole createRole(String name, List<RoleMember> users, List<RoleMember> groups, List<RoleMember> roles) {
+		return new RangerRole(name, null, null, users, groups, roles);
+	}
+
+	private static List<RoleMember> members(String... names) {
+		List<RoleMember> ret = new ArrayList<>();
+
+		for (String name : names) {
+			ret.add(new RoleMember(name, false));
+		}
+
+		return ret;
+	}
+
+	private static Set<String> asSet(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.ranger.plugin.model.RangerUserStoreDelta;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRangerUserStoreIndex {
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	@Test
+	public void testMappings() {
+		Map<String, Map<String, String>> userAttrs  = new HashMap<>();
+		Map<String, Map<String, String>> groupAttrs = new HashMap<>();
+		Map<String, Set<String>>         userGroups = new HashMap<>();
+
+		userAttrs.put("user1", attrs("dept", "sales", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1"));
+		userAttrs.put("user2", attrs("dept", "sales", "location", null));
+		userAttrs.put("user3", Collections.<String, String>emptyMap());
+		groupAttrs.put("group1", attrs(RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-group1"));
+		userGroups.put("user1", asSet("group1", "group2"));
+		userGroups.put("user4", Collections.<String>emptySet());
+
+		RangerUserStore userStore = createUserStore(userAttrs, groupAttrs, userGroups);
+
+		RangerUserStoreIndex index = userStore.buildUserStoreIndex();
+
+		assertNotNull(index);
+		assertSame("index is built once", index, userStore.buildUserStoreIndex());
+		assertEquals(userAttrs, userStore.getUserAttrMapping());
+		assertEquals(groupAttrs, userStore.getGroupAttrMapping());
+		assertEquals(userGroups, userStore.getUserGroupMapping());
+		assertEquals(Collections.singletonMap("cloud-user1", "user1"), userStore.getUserCloudIdMapping());
+		assertEquals(Collections.singletonMap("cloud-group1", "group1"), userStore.getGroupCloudIdMapping());
+
+		assertEquals("sales", userStore.getUserAttrMapping().get("user2").get("dept"));
+		assertTrue(userStore.getUserAttrMapping().get("user2").containsKey("location"));
+		assertNull(userStore.getUserAttrMapping().get("user2").get("location"));
+		assertNull(userStore.getUserAttrMapping().get("user2").get("unknown"));
+		assertNull(userStore.getUserAttrMapping().get("user4"));
+		assertFalse(userStore.getUserAttrMapping().containsKey("user4"));
+		assertTrue(userStore.getUserGroupMapping().containsKey("user4"));
+		assertTrue(userStore.getUserGroupMapping().get("user1").contains("group2"));
+		assertFalse(userStore.getUserGroupMapping().get("user1").contains("group3"));
+		assertEquals("sales", RangerUserStoreUtil.getAttrVal(userStore.getUserAttrMapping(), "user1", "dept"));
+		assertEquals(index.getUserAttributes("user1"), userAttrs.get("user1"));
+		assertEquals(index.getUserGroups("user1"), userGroups.get("user1"));
+		assertEquals("attribute values are interned", 3, index.getAttrValueCount());
+
+		try {
+			userStore.getUserAttrMapping().put("user5", attrs("dept", "sales"));
+			assertTrue("mappings should be read-only", false);
+		} catch (UnsupportedOperationException excp) {
+			// expected
+		}
+
+		// mappings backed by the index are saved to cache files as any other map
+		RangerUserStore loaded   = gson.fromJson(gson.toJson(userStore), RangerUserStore.class);
+		RangerUserStore expected = gson.fromJson(gson.toJson(createUserStore(userAttrs, groupAttrs, userGroups)), RangerUserStore.class);
+
+		assertEquals(expected.getUserAttrMapping(), loaded.getUserAttrMapping());
+		assertEquals(expected.getGroupAttrMapping(), loaded.getGroupAttrMapping());
+		assertEquals(expected.getUserGroupMapping(), loaded.getUserGroupMapping());
+		assertEquals(expected.getUserCloudIdMapping(), loaded.getUserCloudIdMapping());
+	}
+
+	@Test
+	public void testDeltas() {
+		Map<String, Map<String, String>> userAttrs  = new HashMap<>();
+		Map<String, Map<String, String>> groupAttrs = new HashMap<>();
+		Map<String, Set<String>>         userGroups = new HashMap<>();
+
+		userAttrs.put("user1", attrs("dept", "sales", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1"));
+		userAttrs.put("user2", attrs("dept", "hr"));
+		groupAttrs.put("group1", attrs("owner", "user1"));
+		userGroups.put("user1", asSet("group1"));
+		userGroups.put("user2", asSet("group1", "group2"));
+
+		RangerUserStore      userStore = createUserStore(userAttrs, groupAttrs, userGroups);
+		RangerUserStore      deltas    = new RangerUserStore();
+		RangerUserStoreIndex index     = userStore.buildUserStoreIndex();
+
+		deltas.setUserStoreVersion(2L);
+		deltas.setUserStoreDeltas(Arrays.asList(
+				new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_UPDATE, "user1", attrs("dept", "finance", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1b"), asSet("group3")),
+				new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_DELETE, "user2", null, null),
+				new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_UPDATE, "user3", attrs("dept", "hr"), null),
+				new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_GROUP_DELETE, "group1", null, null),
+				new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_GROUP_UPDATE, "group3", attrs("owner", "user3"), null)));
+
+		assertTrue(RangerUserStoreDeltaUtil.hasUserStoreDeltas(deltas));
+
+		RangerUserStore updated = RangerUserStoreDeltaUtil.applyDeltas(userStore, deltas);
+
+		assertEquals(Long.valueOf(2L), updated.getUserStoreVersion());
+		assertNull(updated.getUserStoreDeltas());
+		assertEquals(new HashSet<>(Arrays.asList("user1", "user3")), updated.getUserAttrMapping().keySet());
+		assertEquals(attrs("dept", "finance", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1b"), updated.getUserAttrMapping().get("user1"));
+		assertEquals(Collections.singletonMap("user1", asSet("group3")), updated.getUserGroupMapping());
+		assertEquals(Collections.singletonMap("group3", attrs("owner", "user3")), updated.getGroupAttrMapping());
+		assertEquals(Collections.singletonMap("cloud-user1b", "user1"), updated.getUserCloudIdMapping());
+
+		// the userstore the deltas were applied to is not modified
+		assertSame(index, userStore.getUserStoreIndex());
+		assertEquals(userAttrs, userStore.getUserAttrMapping());
+		assertEquals(userGroups, userStore.getUserGroupMapping());
+		assertEquals(groupAttrs, userStore.getGroupAttrMapping());
+		assertEquals(Collections.singletonMap("cloud-user1", "user1"), userStore.getUserCloudIdMapping());
+	}
+
+	@Test
+	public void testRandomDeltas() {
+		Random                           random     = new Random(7);
+		Map<String, Map<String, String>> userAttrs  = new HashMap<>();
+		Map<String, Map<String, String>> groupAttrs = new HashMap<>();
+		Map<String, Set<String>>         userGroups = new HashMap<>();
+
+		for (int i = 0; i < 200; i++) {
+			updateUser(random, "user" + i, userAttrs, userGroups);
+		}
+
+		for (int i = 0; i < 20; i++) {
+			groupAttrs.put("group" + i, attrs("owner", "user" + random.nextInt(200)));
+		}
+
+		RangerUserStore userStore = createUserStore(userAttrs, groupAttrs, userGroups);
+
+		userStore.buildUserStoreIndex();
+
+		for (long version = 2; version < 50; version++) {
+			List<RangerUserStoreDelta> deltas = new ArrayList<>();
+
+			for (int i = 0; i < 10; i++) {
+				String user = "user" + random.nextInt(250);
+
+				if (random.nextInt(4) == 0) {
+					userAttrs.remove(user);
+					userGroups.remove(user);
+
+					deltas.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_DELETE, user, null, null));
+				} else {
+					updateUser(random, user, userAttrs, userGroups);
+
+					deltas.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_UPDATE, user, userAttrs.get(user), userGroups.get(user)));
+				}
+			}
+
+			String group = "group" + random.nextInt(30);
+
+			if (random.nextBoolean()) {
+				groupAttrs.put(group, attrs("owner", "user" + random.nextInt(200)));
+
+				deltas.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_GROUP_UPDATE, group, groupAttrs.get(group), null));
+			} else {
+				groupAttrs.remove(group);
+
+				deltas.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_GROUP_DELETE, group, null, null));
+			}
+
+			RangerUserStore userStoreDeltas = new RangerUserStore();
+
+			userStoreDeltas.setUserStoreVersion(version);
+			userStoreDeltas.setUserStoreDeltas(deltas);
+
+			userStore = RangerUserStoreDeltaUtil.applyDeltas(userStore, userStoreDeltas);
+
+			RangerUserStore expected = createUserStore(userAttrs, groupAttrs, userGroups);
+
+			assertEquals("version " + version, userAttrs, userStore.getUserAttrMapping());
+			assertEquals("version " + version, groupAttrs, userStore.getGroupAttrMapping());
+			assertEquals("version " + version, userGroups, userStore.getUserGroupMapping());
+			assertEquals("version " + version, expected.getUserCloudIdMapping(), userStore.getUserCloudIdMapping());
+		}
+	}
+
+	private static void updateUser(Random random, String user, Map<String, Map<String, String>> userAttrs, Map<String, Set<String>> userGroups) {
+		if (random.nextInt(5) != 0) {
+			userAttrs.put(user, attrs("dept", "dept" + random.nextInt(10), RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-" + user + "-" + random.nextInt(3)));
+		} else {
+			userAttrs.remove(user);
+		}
+
+		if (random.nextInt(5) != 0) {
+			userGroups.put(user, asSet("group" + random.nextInt(30), "group" + random.nextInt(30)));
+		} else {
+			userGroups.remove(user);
+		}
+	}
+
+	private static RangerUserStore createUserStore(Map<String, Map<String, String>> userAttrs, Map<String, Map<String, String>> groupAttrs, Map<String, Set<String>> userGroups) {
+		RangerUserStore     ret           = new RangerUserStore();
+		Map<String, String> userCloudIds  = new HashMap<>();
+		Map<String, String> groupCloudIds = new HashMap<>();
+
+		for (Map.Entry<String, Map<String, String>> entry : userAttrs.entrySet()) {
+			if (entry.getValue().get(RangerUserStore.CLOUD_IDENTITY_NAME) != null) {
+				userCloudIds.put(entry.getValue().get(RangerUserStore.CLOUD_IDENTITY_NAME), entry.getKey());
+			}
+		}
+
+		for (Map.Entry<String, Map<String, String>> entry : groupAttrs.entrySet()) {
+			if (entry.getValue().get(RangerUserStore.CLOUD_IDENTITY_NAME) != null) {
+				groupCloudIds.put(entry.getValue().get(RangerUserStore.CLOUD_IDENTITY_NAME), entry.getKey());
+			}
+		}
+
+		ret.setUserStoreVersion(1L);
+		ret.setUserAttrMapping(new HashMap<>(userAttrs));
+		ret.setGroupAttrMapping(new HashMap<>(groupAttrs));
+		ret.setUserGroupMapping(new HashMap<>(userGroups));
+		ret.setUserCloudIdMapping(userCloudIds);
+		ret.setGroupCloudIdMapping(groupCloudIds);
+
+		return ret;
+	}
+
+	private static Map<String, String> attrs(String... nameValues) {
+		Map<String, String> ret = new HashMap<>();
+
+		for (int i = 0; i < nameValues.length; i += 2) {
+			ret.put(nameValues[i], nameValues[i + 1]);
+		}
+
+		return ret;
+	}
+
+	private static Set<String> asSet(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+}
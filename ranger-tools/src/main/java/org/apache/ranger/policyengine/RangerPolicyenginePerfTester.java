@@ -62,6 +62,7 @@ public static void main(String[] args) {
             policyEngineOptions.cacheAuditResults = false;
             policyEngineOptions.disableTrieLookupPrefilter = perfTestOptions.getIsTrieLookupPrefixDisabled();
             policyEngineOptions.optimizeTrieForRetrieval = perfTestOptions.getIsOnDemandTriePostSetupDisabled();
+            policyEngineOptions.optimizeTrieForSpace = perfTestOptions.getIsTrieOptimizedForSpace();
 
             URL configurationFileURL = perfTestOptions.getPerfConfigurationFileURL();
 
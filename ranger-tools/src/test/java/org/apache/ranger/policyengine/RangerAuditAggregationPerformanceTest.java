@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.queue.AuditAggregationQueue;
+import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditSummaryQueue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares AuditSummaryQueue with AuditAggregationQueue, with 1 and 4 threads, for a stream of events with the given
+ * number of distinct users/resources: the number of events sent to the destination for the events logged, the time to
+ * send all of them and the CPU time used by the process.
+ * Results are written to target/ranger-audit-aggregation-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerAuditAggregationPerformanceTest {
+	private static final int EVENTS      = 2_000_000;
+	private static final int INTERVAL_MS = 1000;
+
+	@Parameter(0)
+	public String queueType;
+
+	@Parameter(1)
+	public Integer distinctKeys;
+
+	@Parameters(name = "{index}: auditAggregation(type: {0}, distinct keys: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer distinctKeys : Lists.newArrayList(10, 1_000, 100_000)) {
+			ret.add(new Object[] { "summary", distinctKeys });
+			ret.add(new Object[] { "aggregation-1", distinctKeys });
+			ret.add(new Object[] { "aggregation-4", distinctKeys });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("queue-type;distinct-keys;events-in;events-out;reduction-percent;total-millis;cpu-millis;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void aggregationTest() throws Exception {
+		String              propPrefix  = "xasecure.audit.perftest." + queueType.replace('-', '_');
+		Properties          props       = new Properties();
+		CountingDestination destination = new CountingDestination();
+
+		props.put(propPrefix + "." + AuditSummaryQueue.PROP_SUMMARY_INTERVAL, String.valueOf(INTERVAL_MS));
+		props.put(propPrefix + "." + AuditAggregationQueue.PROP_AGGREGATION_INTERVAL, String.valueOf(INTERVAL_MS));
+		props.put(propPrefix + "." + AuditQueue.PROP_QUEUE_SIZE, String.valueOf(EVENTS));
+
+		final AuditQueue queue;
+
+		if (queueType.equals("summary")) {
+			queue = new AuditSummaryQueue(destination);
+		} else {
+			props.put(propPrefix + "." + AuditAggregationQueue.PROP_AGGREGATION_THREADS, queueType.substring("aggregation-".length()));
+
+			queue = new AuditAggregationQueue(destination);
+		}
+
+		queue.init(props, propPrefix);
+
+		AuthzAuditEvent[] templates = new AuthzAuditEvent[distinctKeys];
+
+		for (int i = 0; i < distinctKeys; i++) {
+			templates[i] = createEvent(i);
+		}
+
+		long startCpuTime = processCpuTime();
+		long startTime    = System.currentTimeMillis();
+
+		queue.start();
+
+		for (int i = 0; i < EVENTS; i++) {
+			queue.log(copy(templates[i % distinctKeys]));
+		}
+
+		queue.stop();
+		queue.waitToComplete();
+
+		while (destination.getEventCount() < EVENTS) {
+			Thread.sleep(1);
+		}
+
+		long totalMillis = System.currentTimeMillis() - startTime;
+		long cpuMillis   = (processCpuTime() - startCpuTime) / 1_000_000;
+		long eventsOut   = destination.getCount();
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;%s;\n", queueType, distinctKeys, EVENTS, eventsOut, 100 - (eventsOut * 100 / EVENTS), totalMillis, cpuMillis), outputFile(), Charsets.UTF_8);
+	}
+
+	private static AuthzAuditEvent createEvent(int i) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setRepositoryName("dev_atlas");
+		ret.setUser("user" + (i % 1000));
+		ret.setAccessType("entity-read");
+		ret.setAction("entity-read");
+		ret.setResourcePath("entity-type=hive_table;entity=db" + i + ".table");
+		ret.setResourceType("@entity");
+		ret.setAccessResult((short) 1);
+		ret.setPolicyId(i % 50);
+		ret.setClientIP("10.0.0.1");
+
+		return ret;
+	}
+
+	private static AuthzAuditEvent copy(AuthzAuditEvent template) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setRepositoryName(template.getRepositoryName());
+		ret.setUser(template.getUser());
+		ret.setAccessType(template.getAccessType());
+		ret.setAction(template.getAction());
+		ret.setResourcePath(template.getResourcePath());
+		ret.setResourceType(template.getResourceType());
+		ret.setAccessResult(template.getAccessResult());
+		ret.setPolicyId(template.getPolicyId());
+		ret.setClientIP(template.getClientIP());
+		ret.setEventTime(new Date());
+
+		return ret;
+	}
+
+	private static long processCpuTime() {
+		return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-audit-aggregation-performance.csv");
+	}
+
+	private static class CountingDestination extends AuditDestination {
+		private final AtomicLong count      = new AtomicLong();
+		private final AtomicLong eventCount = new AtomicLong();
+
+		@Override
+		public boolean log(AuditEventBase event) {
+			count.incrementAndGet();
+			eventCount.addAndGet(((AuthzAuditEvent) event).getEventCount());
+
+			return true;
+		}
+
+		@Override
+		public boolean log(Collection<AuditEventBase> events) {
+			for (AuditEventBase event : events) {
+				log(event);
+			}
+
+			return true;
+		}
+
+		long getCount() {
+			return count.get();
+		}
+
+		long getEventCount() {
+			return eventCount.get();
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.ranger.plugin.policyengine.CacheMap;
+import org.apache.ranger.plugin.policyengine.ConcurrentCacheMap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Measures contention on the audit-result cache used by RangerPolicyRepository: concurrent threads perform a mix of
+ * get() and put() calls (mostly hits, as seen by authorizers repeatedly accessing the same resources) on
+ * Collections.synchronizedMap(new CacheMap<>()) and on ConcurrentCacheMap.
+ * Results are written to target/ranger-audit-cache-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerAuditCachePerformanceTest {
+	private static final int CACHE_CAPACITY        = 64 * 1024;
+	private static final int KEY_COUNT             = 96 * 1024;
+	private static final int OPERATIONS_PER_THREAD = 2_000_000;
+	private static final int WARM_UP__ITERATIONS   = 1_000_000;
+
+	private static final String[] KEYS = createKeys();
+
+	@Parameter(0)
+	public String cacheType;
+
+	@Parameter(1)
+	public Integer concurrency;
+
+	@Parameters(name = "{index}: auditCache(type: {0}, concurrent calls: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer concurrency : Lists.newArrayList(1, 4, 16, 64)) {
+			ret.add(new Object[] { "CacheMap", concurrency });
+			ret.add(new Object[] { "ConcurrentCacheMap", concurrency });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("cache-type;concurrency;total-millis;operations-per-second;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void auditCacheContentionTest() throws Exception {
+		final Map<String, Boolean> cache = "CacheMap".equals(cacheType) ? Collections.synchronizedMap(new CacheMap<String, Boolean>(CACHE_CAPACITY)) : new ConcurrentCacheMap<String, Boolean>(CACHE_CAPACITY);
+
+		runOperations(cache, 0, WARM_UP__ITERATIONS);
+
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch doneLatch  = new CountDownLatch(concurrency);
+
+		for (int i = 0; i < concurrency; i++) {
+			final int seed = i;
+
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+
+						runOperations(cache, seed, OPERATIONS_PER_THREAD);
+					} catch (InterruptedException excp) {
+						Thread.currentThread().interrupt();
+					} finally {
+						doneLatch.countDown();
+					}
+				}
+			}, String.format("Client #%s", i)).start();
+		}
+
+		long startTime = System.nanoTime();
+
+		startLatch.countDown();
+		doneLatch.await();
+
+		long totalMillis      = (System.nanoTime() - startTime) / 1_000_000;
+		long operationsPerSec = (long) concurrency * OPERATIONS_PER_THREAD * 1000 / Math.max(totalMillis, 1);
+
+		Files.append(String.format("%s;%s;%s;%s;\n", cacheType, concurrency, totalMillis, operationsPerSec), outputFile(), Charsets.UTF_8);
+	}
+
+	private static void runOperations(Map<String, Boolean> cache, int seed, int count) {
+		int idx = seed * 7919;
+
+		for (int i = 0; i < count; i++) {
+			// skew the access towards a smaller set of hot keys
+			idx = (idx * 1103515245 + 12345) & 0x7fffffff;
+
+			String key = KEYS[(i & 3) == 0 ? idx % KEY_COUNT : idx % (KEY_COUNT / 8)];
+
+			if (cache.get(key) == null) {
+				cache.put(key, Boolean.TRUE);
+			}
+		}
+	}
+
+	private static String[] createKeys() {
+		String[] ret = new String[KEY_COUNT];
+
+		for (int i = 0; i < KEY_COUNT; i++) {
+			ret[i] = "db_" + (i % 100) + "/table_" + i + "/column_" + (i % 17);
+		}
+
+		return ret;
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-audit-cache-performance.csv");
+	}
+}
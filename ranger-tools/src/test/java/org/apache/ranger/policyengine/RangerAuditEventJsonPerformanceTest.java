@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares Gson with AuthzAuditEventJson for MiscUtil.stringify() and MiscUtil.fromJson() of AuthzAuditEvent, with the
+ * given number of threads: events per second and bytes allocated per event, after a warm-up run of the same size.
+ * Results are written to target/ranger-audit-event-json-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerAuditEventJsonPerformanceTest {
+	private static final int EVENTS_PER_THREAD = 500_000;
+	private static final int DISTINCT_EVENTS   = 1000;
+
+	@Parameter(0)
+	public String serializer;
+
+	@Parameter(1)
+	public String operation;
+
+	@Parameter(2)
+	public Integer threads;
+
+	@Parameters(name = "{index}: auditEventJson(serializer: {0}, operation: {1}, threads: {2})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer threads : Lists.newArrayList(1, 4)) {
+			for (String operation : Lists.newArrayList("stringify", "fromJson")) {
+				ret.add(new Object[] { "gson", operation, threads });
+				ret.add(new Object[] { "fast", operation, threads });
+			}
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("serializer;operation;threads;events;millis;events-per-second;allocated-bytes-per-event;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@After
+	public void tearDown() {
+		MiscUtil.setFastAuditEventJson(false);
+	}
+
+	@Test
+	public void jsonTest() throws Exception {
+		final AuthzAuditEvent[] events = new AuthzAuditEvent[DISTINCT_EVENTS];
+		final String[]          jsons  = new String[DISTINCT_EVENTS];
+
+		for (int i = 0; i < DISTINCT_EVENTS; i++) {
+			events[i] = createEvent(i);
+			jsons[i]  = MiscUtil.stringify(events[i]);
+		}
+
+		MiscUtil.setFastAuditEventJson(serializer.equals("fast"));
+
+		run(events, jsons); // warm-up
+
+		long startTime = System.nanoTime();
+		long allocated = run(events, jsons);
+
+		long millis      = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+		long totalEvents = (long) EVENTS_PER_THREAD * threads;
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;%s;\n", serializer, operation, threads, totalEvents, millis, totalEvents * 1000L / millis, allocated / totalEvents), outputFile(), Charsets.UTF_8);
+	}
+
+	// returns the number of bytes allocated by the threads
+	private long run(final AuthzAuditEvent[] events, final String[] jsons) throws InterruptedException {
+		final boolean        isStringify = operation.equals("stringify");
+		final CountDownLatch done        = new CountDownLatch(threads);
+		final long[]         checksums   = new long[threads];
+		final long[]         allocated   = new long[threads];
+
+		for (int t = 0; t < threads; t++) {
+			final int threadIdx = t;
+
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					long startAllocated = currentThreadAllocatedBytes();
+					long checksum       = 0;
+
+					for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+						if (isStringify) {
+							checksum += MiscUtil.stringify(events[i % DISTINCT_EVENTS]).length();
+						} else {
+							checksum += MiscUtil.fromJson(jsons[i % DISTINCT_EVENTS], AuthzAuditEvent.class).getSeqNum();
+						}
+					}
+
+					checksums[threadIdx] = checksum;
+					allocated[threadIdx] = currentThreadAllocatedBytes() - startAllocated;
+
+					done.countDown();
+				}
+			}).start();
+		}
+
+		done.await();
+
+		long ret = 0;
+
+		for (long threadAllocated : allocated) {
+			ret += threadAllocated;
+		}
+
+		return ret;
+	}
+
+	private static AuthzAuditEvent createEvent(int i) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setEventId(MiscUtil.generateUniqueId());
+		ret.setEventTime(new Date(System.currentTimeMillis() + i));
+		ret.setRepositoryType(3);
+		ret.setRepositoryName("dev_hive");
+		ret.setUser("user" + (i % 100));
+		ret.setAccessType("select");
+		ret.setAction("select");
+		ret.setResourcePath("db" + (i % 10) + "/table" + i + "/column" + (i % 20));
+		ret.setResourceType("@column");
+		ret.setAccessResult((short) (i % 10 == 0 ? 0 : 1));
+		ret.setAgentId("hiveServer2");
+		ret.setPolicyId(i % 50);
+		ret.setAclEnforcer("ranger-acl");
+		ret.setClientIP("10.0.0." + (i % 250));
+		ret.setClientType("HIVESERVER2");
+		ret.setRequestData("select column" + (i % 20) + " from db" + (i % 10) + ".table" + i + " where id < 100");
+		ret.setAgentHostname("host1.example.com");
+		ret.setLogType("RangerAudit");
+		ret.setSeqNum(i);
+		ret.setClusterName("cl1");
+		ret.setPolicyVersion(1L);
+		ret.getTags().add("PII");
+
+		return ret;
+	}
+
+	private static long currentThreadAllocatedBytes() {
+		java.lang.management.ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+
+		if (mxBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) mxBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		return 0;
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-audit-event-json-performance.csv");
+	}
+}
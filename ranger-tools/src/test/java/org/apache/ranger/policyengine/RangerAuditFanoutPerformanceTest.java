@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MultiDestAuditProvider;
+import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditRingBufferQueue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Measures how much one slow destination affects the others and the caller, with MultiDestAuditProvider calling the
+ * destinations in sequence and with fan-out: events are logged to three destinations, one of which sleeps for the given
+ * time for each batch of events. Measures the time for the other destinations to receive all events, the time until the
+ * slow one received them, and the latency of log() calls.
+ * Results are written to target/ranger-audit-fanout-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerAuditFanoutPerformanceTest {
+	private static final int EVENTS            = 200_000;
+	private static final int EVENTS_PER_CALL   = 100;
+	private static final int DESTINATIONS      = 3;
+	private static final int QUEUE_SIZE        = 256 * 1024;
+	private static final int BATCH_INTERVAL_MS = 100;
+
+	@Parameter(0)
+	public String mode;
+
+	@Parameter(1)
+	public Integer slowDownMs;
+
+	@Parameters(name = "{index}: auditFanout(mode: {0}, slow destination sleep ms: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer slowDownMs : Lists.newArrayList(0, 1, 10)) {
+			ret.add(new Object[] { "sequential", slowDownMs });
+			ret.add(new Object[] { "fanout", slowDownMs });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("mode;slow-destination-sleep-millis;events;fast-destinations-millis;slow-destination-millis;log-p50-nanos;log-p99-nanos;log-max-nanos;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void fanoutTest() throws Exception {
+		Properties props = new Properties();
+
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "." + MultiDestAuditProvider.PROP_FANOUT_ENABLED, String.valueOf(mode.equals("fanout")));
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "." + AuditQueue.PROP_QUEUE_SIZE, String.valueOf(QUEUE_SIZE));
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "." + AuditQueue.PROP_BATCH_INTERVAL, String.valueOf(BATCH_INTERVAL_MS));
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "." + AuditRingBufferQueue.PROP_FULL_POLICY, "block");
+
+		CountingDestination[]  destinations = new CountingDestination[DESTINATIONS];
+		MultiDestAuditProvider multiDest    = new MultiDestAuditProvider();
+
+		multiDest.init(props);
+
+		for (int i = 0; i < DESTINATIONS; i++) {
+			destinations[i] = new CountingDestination(i == 0 ? slowDownMs : 0);
+
+			multiDest.addAuditProvider(destinations[i]);
+		}
+
+		multiDest.start();
+
+		int    calls     = EVENTS / EVENTS_PER_CALL;
+		long[] latencies = new long[calls];
+		long   startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < calls; i++) {
+			List<AuditEventBase> events = Lists.newArrayListWithCapacity(EVENTS_PER_CALL);
+
+			for (int j = 0; j < EVENTS_PER_CALL; j++) {
+				events.add(new AuthzAuditEvent());
+			}
+
+			long callStart = System.nanoTime();
+
+			multiDest.log(events);
+
+			latencies[i] = System.nanoTime() - callStart;
+		}
+
+		long fastMillis = -1;
+		long slowMillis = -1;
+
+		while (fastMillis == -1 || slowMillis == -1) {
+			boolean isFastDone = true;
+
+			for (int i = 1; i < DESTINATIONS; i++) {
+				isFastDone = isFastDone && destinations[i].getCount() >= EVENTS;
+			}
+
+			if (isFastDone && fastMillis == -1) {
+				fastMillis = System.currentTimeMillis() - startTime;
+			}
+
+			if (destinations[0].getCount() >= EVENTS && slowMillis == -1) {
+				slowMillis = System.currentTimeMillis() - startTime;
+			}
+
+			Thread.sleep(1);
+		}
+
+		multiDest.stop();
+		multiDest.waitToComplete();
+
+		Arrays.sort(latencies);
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;%s;%s;\n", mode, slowDownMs, EVENTS, fastMillis, slowMillis,
+		                           latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.99)], latencies[latencies.length - 1]), outputFile(), Charsets.UTF_8);
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-audit-fanout-performance.csv");
+	}
+
+	private static class CountingDestination extends AuditDestination {
+		private final AtomicLong count = new AtomicLong();
+		private final int        slowDownMs;
+
+		CountingDestination(int slowDownMs) {
+			this.slowDownMs = slowDownMs;
+		}
+
+		@Override
+		public boolean log(Collection<AuditEventBase> events) {
+			if (slowDownMs > 0) {
+				try {
+					Thread.sleep(slowDownMs);
+				} catch (InterruptedException excp) {
+					// ignore
+				}
+			}
+
+			count.addAndGet(events.size());
+
+			return true;
+		}
+
+		long getCount() {
+			return count.get();
+		}
+	}
+}
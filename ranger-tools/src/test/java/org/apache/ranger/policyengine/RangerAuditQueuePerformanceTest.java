@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.queue.AuditAsyncQueue;
+import org.apache.ranger.audit.queue.AuditBatchQueue;
+import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditRingBufferQueue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares the audit queues as seen by authorizer threads: concurrent threads log events to AuditAsyncQueue,
+ * AuditBatchQueue and AuditRingBufferQueue (with each of its wait strategies), which send them to a destination that
+ * only counts them. Measures the throughput, from the first event logged to the last one received by the destination,
+ * and the latency of log() calls.
+ * Results are written to target/ranger-audit-queue-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerAuditQueuePerformanceTest {
+	private static final int EVENTS_PER_THREAD   = 250_000;
+	private static final int WARM_UP__ITERATIONS = 100_000;
+	private static final int QUEUE_SIZE          = 256 * 1024;
+	private static final int BATCH_SIZE          = 1000;
+	private static final int BATCH_INTERVAL_MS   = 100;
+
+	@Parameter(0)
+	public String queueType;
+
+	@Parameter(1)
+	public Integer concurrency;
+
+	@Parameters(name = "{index}: auditQueue(type: {0}, concurrent calls: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer concurrency : Lists.newArrayList(1, 4, 16, 64)) {
+			ret.add(new Object[] { "async", concurrency });
+			ret.add(new Object[] { "batch", concurrency });
+
+			for (AuditRingBufferQueue.WaitStrategy waitStrategy : AuditRingBufferQueue.WaitStrategy.values()) {
+				ret.add(new Object[] { "ringbuffer-" + waitStrategy.name().toLowerCase(), concurrency });
+			}
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("queue-type;concurrency;events;rejected-events;total-millis;events-per-second;log-p50-nanos;log-p99-nanos;log-p999-nanos;log-max-nanos;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void queueTest() throws Exception {
+		warmUp();
+
+		final CountingDestination destination = new CountingDestination();
+		final AuditQueue          queue       = createQueue(destination);
+		final long[][]            latencies   = new long[concurrency][EVENTS_PER_THREAD];
+		final AtomicLong          rejected    = new AtomicLong();
+		final CountDownLatch      startLatch  = new CountDownLatch(1);
+		final CountDownLatch      doneLatch   = new CountDownLatch(concurrency);
+
+		queue.start();
+
+		for (int i = 0; i < concurrency; i++) {
+			final long[] threadLatencies = latencies[i];
+
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+
+						for (int j = 0; j < EVENTS_PER_THREAD; j++) {
+							AuthzAuditEvent event = new AuthzAuditEvent();
+							long            start = System.nanoTime();
+
+							if (!log(queue, event)) {
+								rejected.incrementAndGet();
+							}
+
+							threadLatencies[j] = System.nanoTime() - start;
+						}
+					} catch (InterruptedException excp) {
+						// ignore
+					} finally {
+						doneLatch.countDown();
+					}
+				}
+			}.start();
+		}
+
+		long startTime    = System.currentTimeMillis();
+		long expectedEvts = (long) concurrency * EVENTS_PER_THREAD;
+
+		startLatch.countDown();
+		doneLatch.await();
+
+		while (destination.getCount() + rejected.get() < expectedEvts) {
+			Thread.sleep(1);
+		}
+
+		long totalMillis = Math.max(1, System.currentTimeMillis() - startTime);
+
+		queue.stop();
+		queue.waitToComplete();
+
+		long[] allLatencies = new long[(int) expectedEvts];
+
+		for (int i = 0; i < concurrency; i++) {
+			System.arraycopy(latencies[i], 0, allLatencies, i * EVENTS_PER_THREAD, EVENTS_PER_THREAD);
+		}
+
+		Arrays.sort(allLatencies);
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;\n", queueType, concurrency, expectedEvts, rejected.get(), totalMillis, expectedEvts * 1000 / totalMillis,
+		                           percentile(allLatencies, 50), percentile(allLatencies, 99), percentile(allLatencies, 99.9), allLatencies[allLatencies.length - 1]), outputFile(), Charsets.UTF_8);
+	}
+
+	private void warmUp() throws Exception {
+		CountingDestination destination = new CountingDestination();
+		AuditQueue          queue       = createQueue(destination);
+
+		queue.start();
+
+		for (int i = 0; i < WARM_UP__ITERATIONS; i++) {
+			log(queue, new AuthzAuditEvent());
+		}
+
+		queue.stop();
+		queue.waitToComplete();
+	}
+
+	private AuditQueue createQueue(CountingDestination destination) {
+		String     propPrefix = "xasecure.audit.perftest." + queueType;
+		Properties props      = new Properties();
+
+		props.put(propPrefix + "." + AuditQueue.PROP_QUEUE_SIZE, String.valueOf(QUEUE_SIZE));
+		props.put(propPrefix + "." + AuditQueue.PROP_BATCH_SIZE, String.valueOf(BATCH_SIZE));
+		props.put(propPrefix + "." + AuditQueue.PROP_BATCH_INTERVAL, String.valueOf(BATCH_INTERVAL_MS));
+
+		final AuditQueue ret;
+
+		if (queueType.equals("async")) {
+			ret = new AuditAsyncQueue(destination);
+		} else if (queueType.equals("batch")) {
+			ret = new AuditBatchQueue(destination);
+		} else {
+			props.put(propPrefix + "." + AuditRingBufferQueue.PROP_WAIT_STRATEGY, queueType.substring("ringbuffer-".length()));
+			props.put(propPrefix + "." + AuditRingBufferQueue.PROP_FULL_POLICY, "block");
+
+			ret = new AuditRingBufferQueue(destination);
+		}
+
+		ret.init(props, propPrefix);
+
+		return ret;
+	}
+
+	private static boolean log(AuditQueue queue, AuditEventBase event) {
+		try {
+			return queue.log(event);
+		} catch (IllegalStateException excp) { // AuditBatchQueue, when full
+			return false;
+		}
+	}
+
+	private static long percentile(long[] sortedValues, double percentile) {
+		int idx = (int) Math.ceil(percentile / 100 * sortedValues.length) - 1;
+
+		return sortedValues[Math.max(0, Math.min(idx, sortedValues.length - 1))];
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-audit-queue-performance.csv");
+	}
+
+	private static class CountingDestination extends AuditDestination {
+		private final AtomicLong count = new AtomicLong();
+
+		@Override
+		public boolean log(Collection<AuditEventBase> events) {
+			count.addAndGet(events.size());
+
+			return true;
+		}
+
+		long getCount() {
+			return count.get();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditBatchQueue;
+import org.apache.ranger.audit.queue.AuditFileSpool;
+import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditSegmentSpool;
+import org.apache.ranger.audit.queue.AuditSpool;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares AuditFileSpool with the JSON lines format and with the binary segment format (AuditSegmentSpool): the rate
+ * at which events are spilled to the spool, with batches of the given size, and the rate at which the spooled events
+ * are replayed to a destination that only counts them. The binary format is measured with fsync on every batch and
+ * with fsync once per second.
+ * Results are written to target/ranger-audit-spool-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerAuditSpoolPerformanceTest {
+	private static final int EVENTS     = 500_000;
+	private static final int BATCH_SIZE = 1000;
+
+	@Parameter(0)
+	public String format;
+
+	@Parameter(1)
+	public Integer stashBatchSize;
+
+	@Parameters(name = "{index}: auditSpool(format: {0}, events per stash: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer stashBatchSize : Lists.newArrayList(1, 100)) {
+			ret.add(new Object[] { "json", stashBatchSize });
+			ret.add(new Object[] { "binary-fsync-0", stashBatchSize });
+			ret.add(new Object[] { "binary-fsync-1000", stashBatchSize });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("format;events-per-stash;events;spill-millis;spill-events-per-second;replay-millis;replay-events-per-second;spool-bytes;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void spoolTest() throws Exception {
+		String              propPrefix  = "xasecure.audit.perftest." + format.replace('-', '_');
+		File                spoolDir    = new File("target", "audit-spool-perftest-" + MiscUtil.generateUniqueId());
+		Properties          props       = new Properties();
+		CountingDestination destination = new CountingDestination();
+
+		props.put(propPrefix + "." + AuditQueue.PROP_BATCH_SIZE, String.valueOf(BATCH_SIZE));
+		props.put(propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, spoolDir.getPath());
+		props.put(propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, "100");
+
+		if (format.startsWith("binary")) {
+			props.put(propPrefix + "." + AuditSegmentSpool.PROP_FILE_SPOOL_FORMAT, AuditSegmentSpool.FILE_SPOOL_FORMAT_BINARY);
+			props.put(propPrefix + "." + AuditSegmentSpool.PROP_FILE_SPOOL_FSYNC_INTERVAL_MS, format.substring("binary-fsync-".length()));
+			props.put(propPrefix + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_LINGER_MS, "0");
+		}
+
+		AuditBatchQueue queue = new AuditBatchQueue(destination);
+
+		queue.init(props, propPrefix);
+
+		AuditSpool spool;
+
+		if (format.startsWith("binary")) {
+			spool = new AuditSegmentSpool(destination, queue.getName() + "_" + destination.getName(), true, queue.getMaxBatchSize());
+		} else {
+			spool = new AuditFileSpool(queue, destination);
+		}
+
+		spool.init(props, propPrefix);
+
+		List<AuditEventBase> batch = Lists.newArrayListWithCapacity(stashBatchSize);
+
+		long startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < EVENTS; i++) {
+			batch.add(createEvent(i));
+
+			if (batch.size() == stashBatchSize) {
+				if (stashBatchSize == 1) {
+					spool.stashLogs(batch.get(0));
+				} else {
+					spool.stashLogs(batch);
+				}
+
+				batch.clear();
+			}
+		}
+
+		spool.flush();
+
+		long spillMillis = Math.max(1, System.currentTimeMillis() - startTime);
+		long spoolBytes  = directorySize(spoolDir);
+
+		startTime = System.currentTimeMillis();
+
+		spool.start();
+
+		while (destination.getCount() < EVENTS) {
+			Thread.sleep(1);
+		}
+
+		long replayMillis = Math.max(1, System.currentTimeMillis() - startTime);
+
+		spool.stop();
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;%s;%s;\n", format, stashBatchSize, EVENTS, spillMillis, EVENTS * 1000L / spillMillis, replayMillis, EVENTS * 1000L / replayMillis, spoolBytes), outputFile(), Charsets.UTF_8);
+	}
+
+	private static AuthzAuditEvent createEvent(int i) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setEventId(MiscUtil.generateUniqueId());
+		ret.setEventTime(new Date());
+		ret.setRepositoryName("dev_hive");
+		ret.setUser("user" + (i % 100));
+		ret.setAccessType("select");
+		ret.setAction("select");
+		ret.setResourcePath("db" + (i % 10) + "/table" + (i % 1000) + "/column" + (i % 20));
+		ret.setAccessResult((short) (i % 10 == 0 ? 0 : 1));
+		ret.setAclEnforcer("ranger-acl");
+		ret.setClientIP("10.0.0." + (i % 250));
+
+		return ret;
+	}
+
+	private static long directorySize(File dir) {
+		long   ret   = 0;
+		File[] files = dir.listFiles();
+
+		if (files != null) {
+			for (File file : files) {
+				ret += file.isDirectory() ? directorySize(file) : file.length();
+			}
+		}
+
+		return ret;
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-audit-spool-performance.csv");
+	}
+
+	private static class CountingDestination extends AuditDestination {
+		private final AtomicLong count = new AtomicLong();
+
+		@Override
+		public boolean log(Collection<AuditEventBase> events) {
+			count.addAndGet(events.size());
+
+			return true;
+		}
+
+		long getCount() {
+			return count.get();
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.AbstractRangerAuditWriter;
+import org.apache.ranger.audit.utils.RangerAuditWriter;
+import org.apache.ranger.audit.utils.RangerDoubleBufferedAuditWriter;
+import org.apache.ranger.audit.utils.RangerJSONAuditWriter;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares RangerJSONAuditWriter called directly with RangerJSONAuditWriter behind RangerDoubleBufferedAuditWriter,
+ * writing to the local filesystem with the file rolled over every few seconds. To simulate a slow NameNode, every 100th
+ * write to the JSON writer can be delayed by the given time. Measures the throughput seen by the caller, the latency of
+ * log() calls and the time until all events are written.
+ * Results are written to target/ranger-audit-writer-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerAuditWriterPerformanceTest {
+	private static final String PROP_PREFIX     = "xasecure.audit.destination.hdfs";
+	private static final int    EVENTS          = 1_000_000;
+	private static final int    EVENTS_PER_CALL = 100;
+	private static final int    STALL_EVERY     = 100;
+
+	@Parameter(0)
+	public String mode;
+
+	@Parameter(1)
+	public Integer stallMs;
+
+	@Parameters(name = "{index}: auditWriter(mode: {0}, stall ms: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer stallMs : Lists.newArrayList(0, 100)) {
+			ret.add(new Object[] { "sync", stallMs });
+			ret.add(new Object[] { "async", stallMs });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("mode;stall-millis;events;log-millis;log-events-per-second;total-millis;log-p50-nanos;log-p99-nanos;log-max-nanos;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void writerTest() throws Exception {
+		File       dir   = new File("target", "audit-writer-perftest-" + MiscUtil.generateUniqueId()).getAbsoluteFile();
+		Properties props = new Properties();
+
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_DIR, "file://" + dir.getPath());
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_SUBDIR, mode);
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_FILE_NAME_FORMAT, "audit_%time:yyyyMMddHHmmss%.log");
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_FILE_ROLLOVER, "5");
+		props.put(PROP_PREFIX + "." + RangerDoubleBufferedAuditWriter.PROP_BUFFER_SIZE, "100000");
+
+		RangerAuditWriter jsonWriter = new StallingJSONWriter(stallMs);
+		RangerAuditWriter writer     = mode.equals("async") ? new RangerDoubleBufferedAuditWriter(jsonWriter) : jsonWriter;
+
+		writer.init(props, PROP_PREFIX, "hdfs", new HashMap<String, String>());
+
+		List<String> events = Lists.newArrayListWithCapacity(EVENTS_PER_CALL);
+
+		for (int i = 0; i < EVENTS_PER_CALL; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setEventTime(new Date());
+			event.setUser("user" + i);
+			event.setRepositoryName("dev_hive");
+			event.setAccessType("select");
+			event.setResourcePath("db1/table" + i + "/column1");
+			event.setAccessResult((short) 1);
+
+			events.add(MiscUtil.stringify(event));
+		}
+
+		int    calls     = EVENTS / EVENTS_PER_CALL;
+		long[] latencies = new long[calls];
+		long   startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < calls; i++) {
+			long callStart = System.nanoTime();
+
+			// as HDFSAuditDestination.logJSON() does
+			while (!writer.log(events)) {
+				Thread.sleep(1);
+			}
+
+			writer.flush();
+
+			latencies[i] = System.nanoTime() - callStart;
+		}
+
+		long logMillis = Math.max(1, System.currentTimeMillis() - startTime);
+
+		writer.stop();
+
+		long totalMillis = System.currentTimeMillis() - startTime;
+
+		Arrays.sort(latencies);
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;%s;%s;%s;\n", mode, stallMs, EVENTS, logMillis, EVENTS * 1000L / logMillis, totalMillis,
+		                           latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.99)], latencies[latencies.length - 1]), outputFile(), Charsets.UTF_8);
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-audit-writer-performance.csv");
+	}
+
+	// a JSON writer that stalls every STALL_EVERY writes
+	private static class StallingJSONWriter extends RangerJSONAuditWriter {
+		private final int stallMs;
+		private       int writeCount = 0;
+
+		StallingJSONWriter(int stallMs) {
+			this.stallMs = stallMs;
+		}
+
+		@Override
+		public boolean log(Collection<String> events) throws Exception {
+			if (stallMs > 0 && ++writeCount % STALL_EVERY == 0) {
+				Thread.sleep(stallMs);
+			}
+
+			return super.log(events);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyengine.RangerResourceTrie;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceEvaluator;
+import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerResourceMatcher;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares heap retained by a path resource trie alone, and the time taken to look up a path, with the default
+ * (HashMap based) trie nodes and with space-optimized trie nodes. Each path is unique - /data/dept_N/project_N/warehouse
+ * - so that the trie has many nodes, unlike the tries of RangerResourceTriePerformanceTest, whose heap is mostly in
+ * policy evaluators. Results are written to target/ranger-path-trie-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerPathTriePerformanceTest {
+	private static final int WARM_UP__ITERATIONS = 1_000;
+
+	private static final RangerResourceDef PATH_RESOURCE_DEF = createPathResourceDef();
+
+	@Parameter(0)
+	public Integer numberOfPaths;
+
+	@Parameter(1)
+	public Boolean optimizeTrieForSpace;
+
+	@Parameters(name = "{index}: trie(paths: {0}, optimizeTrieForSpace: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer numberOfPaths : Lists.newArrayList(20_000, 40_000, 100_000)) {
+			ret.add(new Object[] { numberOfPaths, Boolean.FALSE });
+			ret.add(new Object[] { numberOfPaths, Boolean.TRUE });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("paths;optimizeTrieForSpace;retained-bytes;average-nanos-per-lookup;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void pathTrieMemoryAndLookupTest() throws IOException {
+		List<RangerPolicyResourceEvaluator> evaluators = new ArrayList<>(numberOfPaths);
+
+		for (int i = 0; i < numberOfPaths; i++) {
+			evaluators.add(new PathEvaluator(i, new RangerPolicyResource(getPath(i), false, false)));
+		}
+
+		// heap released while the first trie is built, like objects left over by earlier runs, is not counted against the
+		// measured trie: it is the second one, built while the first is still referenced
+		RangerResourceTrie<RangerPolicyResourceEvaluator> firstTrie  = new RangerResourceTrie<>(PATH_RESOURCE_DEF, evaluators, true, optimizeTrieForSpace, null);
+		long                                              usedBefore = getUsedMemory();
+		RangerResourceTrie<RangerPolicyResourceEvaluator> trie       = new RangerResourceTrie<>(PATH_RESOURCE_DEF, evaluators, true, optimizeTrieForSpace, null);
+		long                                              usedAfter  = getUsedMemory();
+
+		for (int i = 0; i < WARM_UP__ITERATIONS; i++) {
+			System.identityHashCode(trie.getEvaluatorsForResource(getPath(i % numberOfPaths)));
+		}
+
+		long startTime = System.nanoTime();
+
+		for (int i = 0; i < numberOfPaths; i++) {
+			System.identityHashCode(trie.getEvaluatorsForResource(getPath(i)));
+		}
+
+		long averageNanos = (System.nanoTime() - startTime) / numberOfPaths;
+
+		Files.append(String.format("%s;%s;%s;%s;\n", numberOfPaths, optimizeTrieForSpace, usedAfter - usedBefore, averageNanos), outputFile(), Charsets.UTF_8);
+
+		System.identityHashCode(firstTrie);
+		System.identityHashCode(trie);
+		System.identityHashCode(evaluators);
+	}
+
+	private static String getPath(int index) {
+		return "/data/dept_" + (index % 50) + "/project_" + index + "/warehouse";
+	}
+
+	private static RangerResourceDef createPathResourceDef() {
+		RangerResourceDef   ret            = new RangerResourceDef();
+		Map<String, String> matcherOptions = new HashMap<>();
+
+		matcherOptions.put("wildCard", "true");
+		matcherOptions.put("ignoreCase", "true");
+		matcherOptions.put("pathSeparatorChar", "/");
+
+		ret.setItemId(1L);
+		ret.setName("path");
+		ret.setType("path");
+		ret.setLevel(10);
+		ret.setParent("");
+		ret.setMatcher(RangerPathResourceMatcher.class.getName());
+		ret.setMatcherOptions(matcherOptions);
+
+		return ret;
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			runtime.gc();
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-path-trie-performance.csv");
+	}
+
+	private static class PathEvaluator implements RangerPolicyResourceEvaluator {
+		private final long                  id;
+		private final RangerPolicyResource  policyResource;
+		private final RangerResourceMatcher resourceMatcher;
+
+		PathEvaluator(long id, RangerPolicyResource policyResource) {
+			this.id              = id;
+			this.policyResource  = policyResource;
+			this.resourceMatcher = new RangerPathResourceMatcher();
+
+			resourceMatcher.setResourceDef(PATH_RESOURCE_DEF);
+			resourceMatcher.setPolicyResource(policyResource);
+			resourceMatcher.init();
+		}
+
+		@Override
+		public long getId() {
+			return id;
+		}
+
+		@Override
+		public RangerPolicyResourceMatcher getPolicyResourceMatcher() {
+			return null;
+		}
+
+		@Override
+		public Map<String, RangerPolicyResource> getPolicyResource() {
+			return Collections.singletonMap(PATH_RESOURCE_DEF.getName(), policyResource);
+		}
+
+		@Override
+		public RangerResourceMatcher getResourceMatcher(String resourceName) {
+			return resourceMatcher;
+		}
+
+		@Override
+		public boolean isAncestorOf(RangerResourceDef resourceDef) {
+			return false;
+		}
+	}
+}
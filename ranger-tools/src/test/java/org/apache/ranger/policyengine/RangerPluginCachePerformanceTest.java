@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.util.RangerCompactJsonCodec;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Measures the plugin startup cost of the policy cache file, as written by PolicyRefresher, in JSON and in compact
+ * format: the size of the file, the time to load it, and the memory retained by the loaded ServicePolicies.
+ * Each policy has a unique path, 5 of 1000 users, 2 of 200 groups and 3 access types. Results are written to
+ * target/ranger-plugin-cache-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerPluginCachePerformanceTest {
+	private static final int      ITERATIONS          = 5;
+	private static final int      WARM_UP__ITERATIONS = 2;
+	private static final int      NUMBER_OF_USERS     = 1_000;
+	private static final int      NUMBER_OF_GROUPS    = 200;
+	private static final String[] ACCESS_TYPES        = { "read", "write", "execute" };
+
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").registerTypeAdapterFactory(RangerCompactJsonCodec.MAP_ADAPTER_FACTORY).create();
+
+	@Parameter(0)
+	public Integer numberOfPolicies;
+
+	@Parameter(1)
+	public Boolean compact;
+
+	@Parameters(name = "{index}: policies(count: {0}, compact: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer numberOfPolicies : Lists.newArrayList(10_000, 100_000)) {
+			for (Boolean compact : Lists.newArrayList(false, true)) {
+				ret.add(new Object[] { numberOfPolicies, compact });
+			}
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("policies;compact;file-bytes;save-millis;load-millis;loaded-bytes;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void policyCacheTest() throws IOException {
+		File cacheFile = new File("target", "ranger-plugin-cache-perf_" + numberOfPolicies + (compact ? "_compact" : "") + ".json");
+
+		long startTime = System.nanoTime();
+
+		RangerCompactJsonCodec.writeFile(gson, cacheFile, createServicePolicies(), compact);
+
+		long saveNanos = System.nanoTime() - startTime;
+
+		for (int i = 0; i < WARM_UP__ITERATIONS; i++) {
+			RangerCompactJsonCodec.readFile(gson, cacheFile, ServicePolicies.class);
+		}
+
+		long loadNanos = 0;
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			startTime = System.nanoTime();
+
+			RangerCompactJsonCodec.readFile(gson, cacheFile, ServicePolicies.class);
+
+			loadNanos += System.nanoTime() - startTime;
+		}
+
+		long            usedMemory  = getUsedMemory();
+		ServicePolicies policies    = RangerCompactJsonCodec.readFile(gson, cacheFile, ServicePolicies.class);
+		long            loadedBytes = getUsedMemory() - usedMemory;
+
+		Assert.assertEquals(numberOfPolicies.intValue(), policies.getPolicies().size());
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;\n", numberOfPolicies, compact, cacheFile.length(), saveNanos / 1_000_000, loadNanos / ITERATIONS / 1_000_000, loadedBytes), outputFile(), Charsets.UTF_8);
+
+		cacheFile.delete();
+	}
+
+	private ServicePolicies createServicePolicies() {
+		List<RangerPolicy> policies = new ArrayList<>(numberOfPolicies);
+
+		for (int i = 0; i < numberOfPolicies; i++) {
+			Map<String, RangerPolicyResource> resources = new HashMap<>();
+			List<RangerPolicyItemAccess>      accesses  = new ArrayList<>();
+			List<String>                      users     = new ArrayList<>();
+			List<String>                      groups    = new ArrayList<>();
+
+			resources.put("path", new RangerPolicyResource("/data/dept_" + (i % 50) + "/project_" + i, false, true));
+
+			for (String accessType : ACCESS_TYPES) {
+				accesses.add(new RangerPolicyItemAccess(accessType));
+			}
+
+			for (int j = 0; j < 5; j++) {
+				users.add("user_" + ((i + j * 197) % NUMBER_OF_USERS));
+			}
+
+			for (int j = 0; j < 2; j++) {
+				groups.add("group_" + ((i + j * 61) % NUMBER_OF_GROUPS));
+			}
+
+			RangerPolicyItem policyItem = new RangerPolicyItem(accesses, users, groups, null, null, false);
+			RangerPolicy     policy     = new RangerPolicy("cl1_hdfs", "policy-" + i, RangerPolicy.POLICY_TYPE_ACCESS, RangerPolicy.POLICY_PRIORITY_NORMAL, null, resources, Collections.singletonList(policyItem), null, null, null, null);
+
+			policy.setId((long) i);
+			policy.setVersion(1L);
+			policy.setIsEnabled(true);
+			policy.setServiceType("hdfs");
+			policy.setCreateTime(new Date());
+
+			policies.add(policy);
+		}
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("cl1_hdfs");
+		ret.setServiceId(1L);
+		ret.setPolicyVersion(1L);
+		ret.setPolicyUpdateTime(new Date());
+		ret.setPolicies(policies);
+
+		return ret;
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-plugin-cache-performance.csv");
+	}
+}
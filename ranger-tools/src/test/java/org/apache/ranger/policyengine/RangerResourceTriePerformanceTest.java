@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerPluginContext;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.apache.ranger.policyengine.perftest.v2.RangerPolicyFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares heap retained by a policy engine, and the time taken to evaluate requests, with the default
+ * (HashMap based) trie nodes and with space-optimized trie nodes (RangerPolicyEngineOptions.optimizeTrieForSpace).
+ * Results are written to target/ranger-resource-trie-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerResourceTriePerformanceTest {
+	private static final int WARM_UP__ITERATIONS = 1_000;
+	private static final int LOOKUP__ITERATIONS  = 10_000;
+	private static final int REQUEST_COUNT       = 100;
+
+	@Parameter(0)
+	public Integer numberOfPolicies;
+
+	@Parameter(1)
+	public Boolean optimizeTrieForSpace;
+
+	@Parameters(name = "{index}: trie(policies: {0}, optimizeTrieForSpace: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer numberOfPolicies : Lists.newArrayList(1_000, 2_000, 5_000)) {
+			ret.add(new Object[] { numberOfPolicies, Boolean.FALSE });
+			ret.add(new Object[] { numberOfPolicies, Boolean.TRUE });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("policies;optimizeTrieForSpace;retained-bytes;average-nanos-per-request;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void trieMemoryAndLookupTest() throws IOException {
+		ServicePolicies           servicePolicies = RangerPolicyFactory.createServicePolicy(numberOfPolicies);
+		List<RangerAccessRequest> requests        = RangerPolicyFactory.createAccessRequests(REQUEST_COUNT);
+		RangerPolicyEngineOptions options         = RangerPolicyFactory.createPolicyEngineOption();
+
+		options.disableTrieLookupPrefilter = false;
+		options.optimizeTrieForRetrieval   = true;
+		options.optimizeTrieForSpace       = optimizeTrieForSpace;
+
+		RangerPluginContext pluginContext = new RangerPluginContext(new RangerPluginConfig("hive", null, "perf-test", "cl1", "on-prem", options));
+
+		long                   usedBefore   = getUsedMemory();
+		RangerPolicyEngineImpl policyEngine = new RangerPolicyEngineImpl(servicePolicies, pluginContext, null);
+		long                   usedAfter    = getUsedMemory();
+
+		for (int i = 0; i < WARM_UP__ITERATIONS; i++) {
+			System.identityHashCode(policyEngine.evaluatePolicies(requests.get(i % REQUEST_COUNT), RangerPolicy.POLICY_TYPE_ACCESS, null));
+		}
+
+		long startTime = System.nanoTime();
+
+		for (int i = 0; i < LOOKUP__ITERATIONS; i++) {
+			System.identityHashCode(policyEngine.evaluatePolicies(requests.get(i % REQUEST_COUNT), RangerPolicy.POLICY_TYPE_ACCESS, null));
+		}
+
+		long averageNanos = (System.nanoTime() - startTime) / LOOKUP__ITERATIONS;
+
+		Files.append(String.format("%s;%s;%s;%s;\n", numberOfPolicies, optimizeTrieForSpace, usedAfter - usedBefore, averageNanos), outputFile(), Charsets.UTF_8);
+
+		System.identityHashCode(policyEngine);
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			runtime.gc();
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-resource-trie-performance.csv");
+	}
+}
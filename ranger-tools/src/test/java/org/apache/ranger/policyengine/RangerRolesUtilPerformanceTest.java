@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRole.RoleMember;
+import org.apache.ranger.plugin.model.RangerRoleDelta;
+import org.apache.ranger.plugin.util.RangerRoleDeltaUtil;
+import org.apache.ranger.plugin.util.RangerRoles;
+import org.apache.ranger.plugin.util.RangerRolesUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Measures building role mappings in RangerRolesUtil for many nested roles: building from all roles, as after a full
+ * download, and updating after a role delta download that changes a few roles.
+ * Roles are in chains of the given depth - each role contains the next role of its chain - with 2 users and a group each.
+ * Results are written to target/ranger-roles-util-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerRolesUtilPerformanceTest {
+	private static final int ITERATIONS          = 5;
+	private static final int WARM_UP__ITERATIONS = 2;
+	private static final int CHANGED_ROLES       = 10;
+
+	@Parameter(0)
+	public Integer numberOfRoles;
+
+	@Parameter(1)
+	public Integer nestingDepth;
+
+	@Parameters(name = "{index}: roles(count: {0}, depth: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer nestingDepth : Lists.newArrayList(1, 10, 50)) {
+			ret.add(new Object[] { 50_000, nestingDepth });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("roles;depth;changed-roles;full-build-millis;delta-update-millis;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void rolesUtilTest() throws IOException {
+		RangerRoles roles  = createRoles();
+		RangerRoles deltas = createDeltas(roles);
+
+		for (int i = 0; i < WARM_UP__ITERATIONS; i++) {
+			RangerRolesUtil rolesUtil = new RangerRolesUtil(roles);
+
+			new RangerRolesUtil(RangerRoleDeltaUtil.applyDeltas(roles, deltas), rolesUtil);
+		}
+
+		long            fullBuildNanos   = 0;
+		long            deltaUpdateNanos = 0;
+		RangerRolesUtil rolesUtil        = null;
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			long startTime = System.nanoTime();
+
+			rolesUtil = new RangerRolesUtil(roles);
+
+			fullBuildNanos += System.nanoTime() - startTime;
+			startTime       = System.nanoTime();
+
+			rolesUtil = new RangerRolesUtil(RangerRoleDeltaUtil.applyDeltas(roles, deltas), rolesUtil);
+
+			deltaUpdateNanos += System.nanoTime() - startTime;
+		}
+
+		// using the mappings built, so that they are not optimized away
+		System.identityHashCode(rolesUtil.getUserRoleMapping());
+
+		Files.append(String.format("%s;%s;%s;%s;%s;\n", numberOfRoles, nestingDepth, CHANGED_ROLES, fullBuildNanos / ITERATIONS / 1_000_000, deltaUpdateNanos / ITERATIONS / 1_000_000), outputFile(), Charsets.UTF_8);
+	}
+
+	private RangerRoles createRoles() {
+		Set<RangerRole> roles = new HashSet<>();
+
+		for (int i = 0; i < numberOfRoles; i++) {
+			roles.add(createRole(i, "user"));
+		}
+
+		RangerRoles ret = new RangerRoles();
+
+		ret.setRoleVersion(1L);
+		ret.setRangerRoles(roles);
+
+		return ret;
+	}
+
+	// changes users of roles at the end of chains, so that contained roles of the whole chain are recomputed
+	private RangerRoles createDeltas(RangerRoles roles) {
+		List<RangerRoleDelta> deltas = new ArrayList<>();
+
+		for (int i = 0; i < CHANGED_ROLES; i++) {
+			int roleIndex = (i + 1) * nestingDepth - 1;
+
+			deltas.add(new RangerRoleDelta(RangerRoleDelta.CHANGE_TYPE_ROLE_UPDATE, 2L, createRole(roleIndex, "updated_user")));
+		}
+
+		RangerRoles ret = new RangerRoles();
+
+		ret.setRoleVersion(2L);
+		ret.setRoleDeltas(deltas);
+
+		return ret;
+	}
+
+	private RangerRole createRole(int index, String userPrefix) {
+		List<RoleMember> users  = Lists.newArrayList(new RoleMember(userPrefix + "_" + index, false), new RoleMember(userPrefix + "_" + (index + 1), false));
+		List<RoleMember> groups = Lists.newArrayList(new RoleMember("group_" + (index % 1_000), false));
+		List<RoleMember> roles  = (index + 1) % nestingDepth == 0 ? Collections.<RoleMember>emptyList() : Lists.newArrayList(new RoleMember("role_" + (index + 1), false));
+
+		return new RangerRole("role_" + index, null, null, users, groups, roles);
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-roles-util-performance.csv");
+	}
+}
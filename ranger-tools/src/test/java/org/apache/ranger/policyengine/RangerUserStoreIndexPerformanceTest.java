@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ranger.plugin.model.RangerUserStoreDelta;
+import org.apache.ranger.plugin.util.RangerUserStore;
+import org.apache.ranger.plugin.util.RangerUserStoreDeltaUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+
+/**
+ * Measures memory used by the mappings of a RangerUserStore, as HashMaps parsed from the downloaded JSON and as a
+ * RangerUserStoreIndex; the time to build the index from the HashMaps, as after a full download; and the time to apply
+ * a userstore delta that changes a few users.
+ * Each user has the given number of attributes - a unique email and cloud_id, others with few distinct values - and is
+ * in 5 of 1000 groups. Memory is reported per 100k users. Results are written to target/ranger-userstore-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerUserStoreIndexPerformanceTest {
+	private static final int ITERATIONS          = 5;
+	private static final int WARM_UP__ITERATIONS = 2;
+	private static final int NUMBER_OF_GROUPS    = 1_000;
+	private static final int CHANGED_USERS       = 10;
+
+	@Parameter(0)
+	public Integer numberOfUsers;
+
+	@Parameter(1)
+	public Integer attributesPerUser;
+
+	@Parameters(name = "{index}: users(count: {0}, attributes: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (Integer numberOfUsers : Lists.newArrayList(100_000, 500_000)) {
+			for (Integer attributesPerUser : Lists.newArrayList(4, 10)) {
+				ret.add(new Object[] { numberOfUsers, attributesPerUser });
+			}
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("users;attributes-per-user;changed-users;hashmap-bytes-per-100k-users;index-bytes-per-100k-users;index-build-millis;delta-apply-millis;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void userStoreIndexTest() throws IOException {
+		String json = new Gson().toJson(createUserStore());
+
+		// mappings parsed from JSON have a String instance for every occurrence of an attribute name or value
+		long            usedMemory = getUsedMemory();
+		RangerUserStore userStore  = new Gson().fromJson(json, RangerUserStore.class);
+		long            mapBytes   = getUsedMemory() - usedMemory;
+
+		json = null;
+
+		RangerUserStore deltas = createDeltas();
+
+		for (int i = 0; i < WARM_UP__ITERATIONS; i++) {
+			RangerUserStore copy = copyOf(userStore);
+
+			copy.buildUserStoreIndex();
+
+			RangerUserStoreDeltaUtil.applyDeltas(copy, deltas);
+		}
+
+		long buildNanos = 0;
+		long deltaNanos = 0;
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			RangerUserStore copy      = copyOf(userStore);
+			long            startTime = System.nanoTime();
+
+			copy.buildUserStoreIndex();
+
+			buildNanos += System.nanoTime() - startTime;
+			startTime   = System.nanoTime();
+
+			RangerUserStoreDeltaUtil.applyDeltas(copy, deltas);
+
+			deltaNanos += System.nanoTime() - startTime;
+		}
+
+		usedMemory = getUsedMemory();
+
+		userStore.buildUserStoreIndex();
+
+		long indexBytes = getUsedMemory() - usedMemory + mapBytes; // the HashMaps replaced by the index are collected
+
+		// using the store, so that it is not collected before the memory is measured
+		System.identityHashCode(userStore.getUserAttrMapping().get("user_0"));
+
+		Files.append(String.format("%s;%s;%s;%s;%s;%s;%s;\n", numberOfUsers, attributesPerUser, CHANGED_USERS, mapBytes * 100_000 / numberOfUsers, indexBytes * 100_000 / numberOfUsers, buildNanos / ITERATIONS / 1_000_000, deltaNanos / ITERATIONS / 1_000_000), outputFile(), Charsets.UTF_8);
+	}
+
+	private RangerUserStore createUserStore() {
+		Map<String, Map<String, String>> userAttrs  = new HashMap<>();
+		Map<String, Map<String, String>> groupAttrs = new HashMap<>();
+		Map<String, Set<String>>         userGroups = new HashMap<>();
+
+		for (int i = 0; i < numberOfUsers; i++) {
+			String user = "user_" + i;
+
+			userAttrs.put(user, createUserAttributes(i, "dept_"));
+			userGroups.put(user, createUserGroups(i));
+		}
+
+		for (int i = 0; i < NUMBER_OF_GROUPS; i++) {
+			Map<String, String> attrs = new HashMap<>();
+
+			attrs.put("owner", "user_" + i);
+			attrs.put("location", "location_" + (i % 20));
+
+			groupAttrs.put("group_" + i, attrs);
+		}
+
+		RangerUserStore ret = new RangerUserStore();
+
+		ret.setUserStoreVersion(1L);
+		ret.setUserAttrMapping(userAttrs);
+		ret.setGroupAttrMapping(groupAttrs);
+		ret.setUserGroupMapping(userGroups);
+
+		return ret;
+	}
+
+	private RangerUserStore createDeltas() {
+		List<RangerUserStoreDelta> deltas = new ArrayList<>();
+
+		for (int i = 0; i < CHANGED_USERS; i++) {
+			int userIndex = i * (numberOfUsers / CHANGED_USERS);
+
+			deltas.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_UPDATE, "user_" + userIndex, createUserAttributes(userIndex, "updated_dept_"), createUserGroups(userIndex + 1)));
+		}
+
+		RangerUserStore ret = new RangerUserStore();
+
+		ret.setUserStoreVersion(2L);
+		ret.setUserStoreDeltas(deltas);
+
+		return ret;
+	}
+
+	private Map<String, String> createUserAttributes(int index, String deptPrefix) {
+		Map<String, String> ret = new HashMap<>();
+
+		ret.put("email", "user_" + index + "@example.com");
+		ret.put(RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-id-" + index);
+		ret.put("dept", deptPrefix + (index % 50));
+		ret.put("location", "location_" + (index % 20));
+
+		for (int i = ret.size(); i < attributesPerUser; i++) {
+			ret.put("attr_" + i, "value_" + (index % (10 * (i + 1))));
+		}
+
+		return ret;
+	}
+
+	private Set<String> createUserGroups(int index) {
+		Set<String> ret = new HashSet<>();
+
+		for (int i = 0; i < 5; i++) {
+			ret.add("group_" + ((index + i * 197) % NUMBER_OF_GROUPS));
+		}
+
+		return ret;
+	}
+
+	private static RangerUserStore copyOf(RangerUserStore userStore) {
+		RangerUserStore ret = new RangerUserStore();
+
+		ret.setUserStoreVersion(userStore.getUserStoreVersion());
+		ret.setUserAttrMapping(userStore.getUserAttrMapping());
+		ret.setGroupAttrMapping(userStore.getGroupAttrMapping());
+		ret.setUserGroupMapping(userStore.getUserGroupMapping());
+
+		return ret;
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-userstore-performance.csv");
+	}
+}
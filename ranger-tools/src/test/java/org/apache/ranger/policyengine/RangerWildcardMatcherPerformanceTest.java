@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.policyengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerResourceMatcher;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Compares FilenameUtils.wildcardMatch(), which parses the pattern on every call, with the resource matchers, which
+ * parse wildcard policy values once at init, over HDFS path and Hive table patterns.
+ * Results are written to target/ranger-wildcard-matcher-performance.csv.
+ */
+@RunWith(Parameterized.class)
+public class RangerWildcardMatcherPerformanceTest {
+	private static final int ITERATIONS          = 200_000;
+	private static final int WARM_UP__ITERATIONS = 50_000;
+
+	private static final String[] HDFS_PATTERNS = {
+		"/data/*/raw/*.csv", "/user/*/warehouse/*", "/app/hive/*.db/t?l*", "/tmp/*/staging/*/part-*", "/data/finance/*/2020*/*.orc",
+	};
+
+	private static final String[] HDFS_PATHS = {
+		"/data/sales/raw/2020-01-01.csv", "/user/hive/warehouse/sales.db/orders", "/app/hive/finance.db/tbl_orders",
+		"/tmp/etl/staging/job_1234/part-00001", "/data/finance/ledger/20200131/000000_0.orc", "/data/sales/curated/summary.parquet",
+	};
+
+	private static final String[] HIVE_PATTERNS = {
+		"sales_*_2020", "*_tmp", "stg_?_*_orders", "dim_*_v?", "fact*daily*",
+	};
+
+	private static final String[] HIVE_TABLES = {
+		"sales_emea_2020", "orders_tmp", "stg_1_emea_orders", "dim_customer_v2", "fact_sales_daily_agg", "customers",
+	};
+
+	@Parameter(0)
+	public String resourceName;
+
+	@Parameter(1)
+	public String matcherType;
+
+	@Parameters(name = "{index}: wildcardMatch(resource: {0}, matcher: {1})")
+	public static Iterable<Object[]> data() {
+		List<Object[]> ret = Lists.newArrayList();
+
+		for (String resourceName : Lists.newArrayList("path", "table")) {
+			ret.add(new Object[] { resourceName, "FilenameUtils" });
+			ret.add(new Object[] { resourceName, "RangerResourceMatcher" });
+		}
+
+		return ret;
+	}
+
+	@BeforeClass
+	public static void init() throws IOException {
+		Files.write("resource;matcher;matches;nanos-per-match;\n", outputFile(), Charsets.UTF_8);
+	}
+
+	@Test
+	public void wildcardMatcherTest() throws Exception {
+		boolean           isPath      = "path".equals(resourceName);
+		RangerResourceDef resourceDef = getResourceDef(isPath ? EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HDFS_NAME : EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HIVE_NAME, resourceName);
+		String[]          patterns    = isPath ? HDFS_PATTERNS : HIVE_PATTERNS;
+		String[]          values      = isPath ? HDFS_PATHS : HIVE_TABLES;
+		IOCase            ioCase      = RangerAbstractResourceMatcher.getOptionIgnoreCase(resourceDef.getMatcherOptions()) ? IOCase.INSENSITIVE : IOCase.SENSITIVE;
+
+		RangerResourceMatcher[] matchers = new RangerResourceMatcher[patterns.length];
+
+		for (int i = 0; i < patterns.length; i++) {
+			matchers[i] = createResourceMatcher(resourceDef, patterns[i]);
+		}
+
+		runMatches(matchers, patterns, values, ioCase, WARM_UP__ITERATIONS);
+
+		long startTime = System.nanoTime();
+		long count     = runMatches(matchers, patterns, values, ioCase, ITERATIONS);
+		long totalNs   = System.nanoTime() - startTime;
+
+		Files.append(String.format("%s;%s;%s;%s;\n", resourceName, matcherType, count, totalNs / ITERATIONS), outputFile(), Charsets.UTF_8);
+	}
+
+	private long runMatches(RangerResourceMatcher[] matchers, String[] patterns, String[] values, IOCase ioCase, int count) {
+		boolean             useFilenameUtils = "FilenameUtils".equals(matcherType);
+		Map<String, Object> evalContext      = Collections.emptyMap();
+		long                ret              = 0;
+
+		for (int i = 0; i < count; i++) {
+			int    idx   = i % patterns.length;
+			String value = values[i % values.length];
+
+			boolean isMatch = useFilenameUtils ? FilenameUtils.wildcardMatch(value, patterns[idx], ioCase) : matchers[idx].isMatch(value, evalContext);
+
+			if (isMatch) {
+				ret++;
+			}
+		}
+
+		return ret;
+	}
+
+	private static RangerResourceMatcher createResourceMatcher(RangerResourceDef resourceDef, String pattern) throws Exception {
+		RangerResourceMatcher ret = (RangerResourceMatcher) Class.forName(resourceDef.getMatcher()).newInstance();
+
+		ret.setResourceDef(resourceDef);
+		ret.setPolicyResource(new RangerPolicyResource(pattern));
+		ret.init();
+
+		return ret;
+	}
+
+	private static RangerResourceDef getResourceDef(String serviceType, String resourceName) throws Exception {
+		RangerServiceDef serviceDef = EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(serviceType);
+
+		for (RangerResourceDef resourceDef : serviceDef.getResources()) {
+			if (resourceDef.getName().equals(resourceName)) {
+				return resourceDef;
+			}
+		}
+
+		throw new IllegalArgumentException(resourceName + ": resource not found in service-def " + serviceType);
+	}
+
+	private static File outputFile() {
+		return new File("target", "ranger-wildcard-matcher-performance.csv");
+	}
+}
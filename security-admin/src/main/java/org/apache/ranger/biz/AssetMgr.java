@@ -55,6 +55,7 @@
 import org.apache.ranger.entity.XXPortalUser;
 import org.apache.ranger.entity.XXTrxLog;
 import org.apache.ranger.entity.XXUser;
+import org.apache.ranger.localaudit.LocalAccessAuditsService;
 import org.apache.ranger.plugin.model.RangerPluginInfo;
 import org.apache.ranger.plugin.util.RangerPluginCapability;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
@@ -113,6 +114,9 @@ public class AssetMgr extends AssetMgrBase {
 	@Autowired
 	ElasticSearchAccessAuditsService elasticSearchAccessAuditsService;
 
+	@Autowired
+	LocalAccessAuditsService localAccessAuditsService;
+
 	@Autowired
 	XPolicyService xPolicyService;
 
@@ -1128,6 +1132,8 @@ public VXAccessAuditList getAccessLogs(SearchCriteria searchCriteria) {
             return solrAccessAuditsService.searchXAccessAudits(searchCriteria);
         } else if (RangerBizUtil.AUDIT_STORE_ElasticSearch.equalsIgnoreCase(xaBizUtil.getAuditDBType())) {
             return elasticSearchAccessAuditsService.searchXAccessAudits(searchCriteria);
+        } else if (RangerBizUtil.AUDIT_STORE_LOCAL.equalsIgnoreCase(xaBizUtil.getAuditDBType())) {
+            return localAccessAuditsService.searchXAccessAudits(searchCriteria);
         } else {
             return xAccessAuditService.searchXAccessAudits(searchCriteria);
         }
@@ -356,15 +356,25 @@ public List<String> getRoleNames(SearchFilter filter) throws Exception {
 
     @Override
     public RangerRoles getRoles(String serviceName, Long lastKnownRoleVersion) throws Exception {
+        return getRoles(serviceName, lastKnownRoleVersion, false);
+    }
+
+    /**
+     * @param isDeltaSupportedByPlugin true to return only the roles changed since lastKnownRoleVersion, when the change
+     *                                 log has them. Role versions are per service when roles are downloaded by service,
+     *                                 so deltas are then not returned
+     */
+    public RangerRoles getRoles(String serviceName, Long lastKnownRoleVersion, boolean isDeltaSupportedByPlugin) throws Exception {
         RangerRoles ret                   = null;
         Long        rangerRoleVersionInDB = getRoleVersion(serviceName);
+        boolean     returnDeltas          = isDeltaSupportedByPlugin && !ServiceDBStore.isSupportsRolesDownloadByService();
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("==> RoleDBStore.getRoles() lastKnownRoleVersion= " + lastKnownRoleVersion + " rangerRoleVersionInDB= " + rangerRoleVersionInDB);
+            LOG.debug("==> RoleDBStore.getRoles() lastKnownRoleVersion= " + lastKnownRoleVersion + " rangerRoleVersionInDB= " + rangerRoleVersionInDB + " returnDeltas= " + returnDeltas);
         }
 
         if (rangerRoleVersionInDB != null) {
-            ret = RangerRoleCache.getInstance().getLatestRangerRoleOrCached(serviceName, this, lastKnownRoleVersion, rangerRoleVersionInDB);
+            ret = RangerRoleCache.getInstance().getLatestRangerRoleOrCached(serviceName, this, lastKnownRoleVersion, rangerRoleVersionInDB, returnDeltas);
         }
 
         if (LOG.isDebugEnabled()) {
@@ -25,6 +25,7 @@
 import org.apache.ranger.common.SearchCriteria;
 import org.apache.ranger.common.UserSessionBase;
 import org.apache.ranger.elasticsearch.ElasticSearchAccessAuditsService;
+import org.apache.ranger.localaudit.LocalAccessAuditsService;
 import org.apache.ranger.solr.SolrAccessAuditsService;
 import org.apache.ranger.view.VXAccessAudit;
 import org.apache.ranger.view.VXAccessAuditList;
@@ -44,6 +45,9 @@ public class XAuditMgr extends XAuditMgrBase {
 	@Autowired
 	ElasticSearchAccessAuditsService elasticSearchAccessAuditsService;
 
+	@Autowired
+	LocalAccessAuditsService localAccessAuditsService;
+
 	@Autowired
 	RangerBizUtil rangerBizUtil;
 
@@ -119,6 +123,8 @@ public VXAccessAuditList searchXAccessAudits(SearchCriteria searchCriteria) {
 			return solrAccessAuditsService.searchXAccessAudits(searchCriteria);
 		} else if (RangerBizUtil.AUDIT_STORE_ElasticSearch.equalsIgnoreCase(auditDBType)) {
 			return elasticSearchAccessAuditsService.searchXAccessAudits(searchCriteria);
+		} else if (RangerBizUtil.AUDIT_STORE_LOCAL.equalsIgnoreCase(auditDBType)) {
+			return localAccessAuditsService.searchXAccessAudits(searchCriteria);
 		} else {
 			return super.searchXAccessAudits(searchCriteria);
 		}
@@ -131,6 +137,8 @@ public VXLong getXAccessAuditSearchCount(SearchCriteria searchCriteria) {
 			return solrAccessAuditsService.getXAccessAuditSearchCount(searchCriteria);
 		} else if (RangerBizUtil.AUDIT_STORE_ElasticSearch.equalsIgnoreCase(auditDBType)) {
 			return elasticSearchAccessAuditsService.getXAccessAuditSearchCount(searchCriteria);
+		} else if (RangerBizUtil.AUDIT_STORE_LOCAL.equalsIgnoreCase(auditDBType)) {
+			return localAccessAuditsService.getXAccessAuditSearchCount(searchCriteria);
 		} else {
 			return super.getXAccessAuditSearchCount(searchCriteria);
 		}
@@ -2679,6 +2679,10 @@ public Map<String, Set<String>> getUserGroups() {
 	}
 
 	public RangerUserStore getRangerUserStore(Long lastKnownUserStoreVersion) throws Exception {
+		return getRangerUserStore(lastKnownUserStoreVersion, false);
+	}
+
+	public RangerUserStore getRangerUserStore(Long lastKnownUserStoreVersion, boolean isDeltaSupportedByPlugin) throws Exception {
 		RangerUserStore ret                   = null;
 		Long        rangerUserStoreVersionInDB = getUserStoreVersion();
 
@@ -2687,7 +2691,7 @@ public RangerUserStore getRangerUserStore(Long lastKnownUserStoreVersion) throws
 		}
 
 		if (rangerUserStoreVersionInDB != null) {
-			ret = RangerUserStoreCache.getInstance().getLatestRangerUserStoreOrCached(this, lastKnownUserStoreVersion, rangerUserStoreVersionInDB);
+			ret = RangerUserStoreCache.getInstance().getLatestRangerUserStoreOrCached(this, lastKnownUserStoreVersion, rangerUserStoreVersionInDB, isDeltaSupportedByPlugin);
 		}
 
 		if (logger.isDebugEnabled()) {
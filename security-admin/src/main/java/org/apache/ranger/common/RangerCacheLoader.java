@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs one load at a time for a download cache: the caller that finds no load in progress runs its loader, and
+ * concurrent callers share the result of that load instead of running their own.
+ *
+ * A caller that already has a cached snapshot to return doesn't need to wait - it passes a wait time of 0, and gets
+ * null while another caller is loading. A caller that has nothing to return waits for the load in progress, up to the
+ * given time.
+ */
+public class RangerCacheLoader<T> {
+	private static final Log LOG = LogFactory.getLog(RangerCacheLoader.class);
+
+	private final String                               name;
+	private final AtomicReference<CompletableFuture<T>> loadInProgress = new AtomicReference<>();
+	private final AtomicLong                           loadCount      = new AtomicLong();
+
+	public RangerCacheLoader(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param loader          called by this thread if no other load is in progress
+	 * @param maxWaitTimeInMs time to wait for a load in progress in another thread; 0 to not wait
+	 * @return value returned by the loader run by this or another thread; null if the load in another thread did not
+	 *         complete in maxWaitTimeInMs, or failed
+	 * @throws Exception thrown by the loader run by this thread
+	 */
+	public T load(Callable<T> loader, long maxWaitTimeInMs) throws Exception {
+		CompletableFuture<T> future   = new CompletableFuture<>();
+		CompletableFuture<T> inFlight = loadInProgress.get();
+
+		while (inFlight == null) {
+			if (loadInProgress.compareAndSet(null, future)) {
+				return runLoader(loader, future);
+			}
+
+			inFlight = loadInProgress.get();
+		}
+
+		T ret = null;
+
+		if (maxWaitTimeInMs > 0) {
+			try {
+				ret = inFlight.get(maxWaitTimeInMs, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException excp) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug(name + ": load in progress did not complete in " + maxWaitTimeInMs + "ms");
+				}
+			} catch (ExecutionException excp) {
+				LOG.warn(name + ": load in progress failed", excp.getCause());
+			}
+		}
+
+		return ret;
+	}
+
+	public boolean isLoadInProgress() { return loadInProgress.get() != null; }
+
+	public long getLoadCount() { return loadCount.get(); }
+
+	private T runLoader(Callable<T> loader, CompletableFuture<T> future) throws Exception {
+		loadCount.incrementAndGet();
+
+		try {
+			T ret = loader.call();
+
+			future.complete(ret);
+
+			return ret;
+		} catch (Throwable excp) {
+			future.completeExceptionally(excp);
+
+			throw excp;
+		} finally {
+			loadInProgress.compareAndSet(future, null);
+		}
+	}
+}
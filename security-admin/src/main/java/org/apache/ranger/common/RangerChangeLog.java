@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Change log of a download cache: for each of the recent versions the cache loaded, the deltas that moved it to the
+ * next version, oldest first.
+ *
+ * Instances are not modified after creation, so can be read without locking; append() returns a new change log.
+ */
+public class RangerChangeLog<D> {
+	private final List<Entry<D>> entries;
+	private final int            deltaCount;
+
+	public RangerChangeLog() {
+		this(Collections.<Entry<D>>emptyList(), 0);
+	}
+
+	private RangerChangeLog(List<Entry<D>> entries, int deltaCount) {
+		this.entries    = entries;
+		this.deltaCount = deltaCount;
+	}
+
+	/**
+	 * @param maxVersions versions to keep; the oldest versions are dropped first
+	 * @param maxDeltas   deltas to keep, in all versions; the oldest versions are dropped first
+	 * @return change log with the deltas from fromVersion to the next version appended
+	 */
+	public RangerChangeLog<D> append(Long fromVersion, List<D> deltas, int maxVersions, int maxDeltas) {
+		List<Entry<D>> entries    = new ArrayList<>(this.entries);
+		int            deltaCount = this.deltaCount + deltas.size();
+
+		entries.add(new Entry<>(fromVersion, deltas));
+
+		while (!entries.isEmpty() && (entries.size() > maxVersions || deltaCount > maxDeltas)) {
+			deltaCount -= entries.remove(0).deltas.size();
+		}
+
+		return new RangerChangeLog<>(Collections.unmodifiableList(entries), deltaCount);
+	}
+
+	/**
+	 * @return deltas of all versions after the given version, in the order they were appended; null if the given version
+	 *         is not in this change log
+	 */
+	public List<D> getDeltasSince(Long version) {
+		List<List<D>> deltasOfVersions = getDeltasOfVersionsSince(version);
+		List<D>       ret              = null;
+
+		if (deltasOfVersions != null) {
+			ret = new ArrayList<>();
+
+			for (List<D> deltas : deltasOfVersions) {
+				ret.addAll(deltas);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return deltas of each version after the given version, oldest first; null if the given version is not in this
+	 *         change log
+	 */
+	public List<List<D>> getDeltasOfVersionsSince(Long version) {
+		List<List<D>> ret = null;
+
+		if (version != null) {
+			for (Entry<D> entry : entries) {
+				if (ret == null && entry.fromVersion.equals(version)) {
+					ret = new ArrayList<>();
+				}
+
+				if (ret != null) {
+					ret.add(entry.deltas);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	public int getVersionCount() { return entries.size(); }
+
+	public int getDeltaCount() { return deltaCount; }
+
+	private static class Entry<D> {
+		final Long    fromVersion;
+		final List<D> deltas;
+
+		Entry(Long fromVersion, List<D> deltas) {
+			this.fromVersion = fromVersion;
+			this.deltas      = deltas;
+		}
+	}
+}
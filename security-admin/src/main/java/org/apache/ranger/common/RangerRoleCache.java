@@ -25,26 +25,43 @@
 import org.apache.ranger.biz.RoleDBStore;
 import org.apache.ranger.plugin.model.RangerRole;
 
+import org.apache.ranger.plugin.model.RangerRoleDelta;
+import org.apache.ranger.plugin.util.RangerCommonConstants;
 import org.apache.ranger.plugin.util.RangerRoles;
 import org.apache.ranger.plugin.util.SearchFilter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Cache of roles for download by plugins. Roles are reloaded from the database when the role version changes.
+ *
+ * Each reload is compared with the previous one, and the changed roles are kept in a change log of recent versions.
+ * When role deltas are enabled, a plugin that knows one of these versions gets only the changes since then. As the
+ * change log is built from what is in the database, it includes changes made through any Ranger admin instance.
+ */
 public class RangerRoleCache {
 	private static final Log LOG = LogFactory.getLog(RangerRoleCache.class);
 
 	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int MAX_ROLE_DELTA_VERSIONS  = 100;
 
 	private static volatile RangerRoleCache sInstance = null;
 
-	private final int           waitTimeInSeconds;
-	private final ReentrantLock lock = new ReentrantLock();
+	private final int                               waitTimeInSeconds;
+	private final boolean                           supportsRoleDeltas;
+	private final int                               maxRoleDeltaVersions;
+	private final RangerCacheLoader<RoleCacheState> loader = new RangerCacheLoader<>("RangerRoleCache");
 
-	RangerRoleCacheWrapper roleCacheWrapper = null;
+	private final RangerRoleCacheWrapper roleCacheWrapper = new RangerRoleCacheWrapper();
 
 	public static RangerRoleCache getInstance() {
 		if (sInstance == null) {
@@ -60,90 +77,209 @@ public static RangerRoleCache getInstance() {
 	private RangerRoleCache() {
 		RangerAdminConfig config = RangerAdminConfig.getInstance();
 
-		waitTimeInSeconds = config.getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		waitTimeInSeconds    = config.getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		supportsRoleDeltas   = config.getBoolean("ranger.admin" + RangerCommonConstants.RANGER_ADMIN_SUFFIX_ROLE_DELTA, RangerCommonConstants.RANGER_ADMIN_SUFFIX_ROLE_DELTA_DEFAULT);
+		maxRoleDeltaVersions = config.getInt("ranger.admin.role.delta.max.versions", MAX_ROLE_DELTA_VERSIONS);
+
+		LOG.info("RangerRoleCache: supportsRoleDeltas=" + supportsRoleDeltas + ", maxRoleDeltaVersions=" + maxRoleDeltaVersions);
+	}
+
+	RangerRoleCache(int waitTimeInSeconds, boolean supportsRoleDeltas, int maxRoleDeltaVersions) {
+		this.waitTimeInSeconds    = waitTimeInSeconds;
+		this.supportsRoleDeltas   = supportsRoleDeltas;
+		this.maxRoleDeltaVersions = maxRoleDeltaVersions;
 	}
 
 	public RangerRoles getLatestRangerRoleOrCached(String serviceName, RoleDBStore roleDBStore, Long lastKnownRoleVersion, Long rangerRoleVersionInDB) throws Exception {
+		return getLatestRangerRoleOrCached(serviceName, roleDBStore, lastKnownRoleVersion, rangerRoleVersionInDB, false);
+	}
+
+	/**
+	 * @param isDeltaSupportedByPlugin true to return only the changes since lastKnownRoleVersion, when available
+	 * @return null if lastKnownRoleVersion is the latest version
+	 */
+	public RangerRoles getLatestRangerRoleOrCached(String serviceName, RoleDBStore roleDBStore, Long lastKnownRoleVersion, Long rangerRoleVersionInDB, boolean isDeltaSupportedByPlugin) throws Exception {
 		final RangerRoles ret;
 
-		if (lastKnownRoleVersion == null || !lastKnownRoleVersion.equals(rangerRoleVersionInDB)) {
-			roleCacheWrapper = new RangerRoleCacheWrapper();
-			ret              = roleCacheWrapper.getLatestRangerRoles(serviceName, roleDBStore, lastKnownRoleVersion, rangerRoleVersionInDB);
-		} else if (lastKnownRoleVersion.equals(rangerRoleVersionInDB)) {
+		if (lastKnownRoleVersion != null && lastKnownRoleVersion.equals(rangerRoleVersionInDB)) {
 			ret = null;
 		} else {
-			ret = roleCacheWrapper.getRoles();
+			ret = roleCacheWrapper.getLatestRangerRoles(serviceName, roleDBStore, lastKnownRoleVersion, rangerRoleVersionInDB, isDeltaSupportedByPlugin && supportsRoleDeltas);
 		}
 
 		return ret;
 	}
 
 	private class RangerRoleCacheWrapper {
-		RangerRoles roles;
-		Long        rolesVersion;
-
-		RangerRoleCacheWrapper() {
-			this.roles        = null;
-			this.rolesVersion = -1L;
-		}
+		private volatile RoleCacheState state = null;
 
 		public RangerRoles getRoles() {
-			return this.roles;
+			RoleCacheState state = this.state;
+
+			return state != null ? state.getRoles(null, false) : null;
 		}
 
 		public Long getRolesVersion() {
-			return this.rolesVersion;
+			RoleCacheState state = this.state;
+
+			return state != null ? state.rolesVersion : -1L;
 		}
 
-		public RangerRoles getLatestRangerRoles(String serviceName, RoleDBStore roleDBStore, Long lastKnownRoleVersion, Long rolesVersionInDB) throws Exception {
-			RangerRoles ret	       = null;
-			boolean     lockResult = false;
+		public RangerRoles getLatestRangerRoles(String serviceName, RoleDBStore roleDBStore, Long lastKnownRoleVersion, Long rolesVersionInDB, boolean returnDeltas) throws Exception {
+			RangerRoles ret = null;
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("==> RangerRoleCache.getLatestRangerRoles(ServiceName= " + serviceName + " lastKnownRoleVersion= " + lastKnownRoleVersion + " rolesVersionInDB= " + rolesVersionInDB + ")");
+				LOG.debug("==> RangerRoleCache.getLatestRangerRoles(ServiceName= " + serviceName + " lastKnownRoleVersion= " + lastKnownRoleVersion + " rolesVersionInDB= " + rolesVersionInDB + " returnDeltas= " + returnDeltas + ")");
 			}
 
-			try {
-				lockResult = lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
+			RoleCacheState state = this.state;
 
-				if (lockResult) {
-					// We are getting all the Roles to be downloaded for now. Should do downloades for each service based on what roles are there in the policies.
-					SearchFilter          searchFilter = null;
-					final Set<RangerRole> rolesInDB    = new HashSet<>(roleDBStore.getRoles(searchFilter));
+			if (state == null || state.rolesVersion < rolesVersionInDB) {
+				// while another request loads roles, return the cached roles; wait for the load only if there are none
+				final long     maxWaitTimeInMs = state == null ? TimeUnit.SECONDS.toMillis(waitTimeInSeconds) : 0;
+				RoleCacheState loaded          = loader.load(() -> load(serviceName, roleDBStore, rolesVersionInDB), maxWaitTimeInMs);
 
-					Date updateTime = new Date();
+				if (loaded != null) {
+					state = loaded;
+				} else {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("RangerRoles are being loaded by another request, returning cached RangerRoles");
+					}
 
-					if (rolesInDB != null) {
-						ret = new RangerRoles();
+					if (state == null) {
+						state = this.state;
+					}
+				}
+			}
+
+			// cached roles can be older than lastKnownRoleVersion, when loading the latest version timed out
+			if (state != null && (lastKnownRoleVersion == null || lastKnownRoleVersion < state.rolesVersion)) {
+				ret = state.getRoles(lastKnownRoleVersion, returnDeltas);
+			}
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("<== RangerRoleCache.getLatestRangerRoles(ServiceName= " + serviceName + " lastKnownRoleVersion= " + lastKnownRoleVersion + " rolesVersionInDB= " + rolesVersionInDB + " RangerRoles= " + ret + ")");
+			}
+
+			return ret;
+		}
 
-						ret.setRangerRoles(rolesInDB);
-						ret.setRoleUpdateTime(updateTime);
-						ret.setRoleVersion(rolesVersionInDB);
+		/*
+		 * Called by one request at a time
+		 */
+		private RoleCacheState load(String serviceName, RoleDBStore roleDBStore, Long rolesVersionInDB) throws Exception {
+			RoleCacheState state = this.state;
 
-						rolesVersion = rolesVersionInDB;
-					} else {
-						LOG.error("Could not get Ranger Roles from database ...");
+			// another request might have loaded this version
+			if (state == null || state.rolesVersion < rolesVersionInDB) {
+				// We are getting all the Roles to be downloaded for now. Should do downloades for each service based on what roles are there in the policies.
+				SearchFilter     searchFilter = null;
+				List<RangerRole> rolesInDB    = roleDBStore.getRoles(searchFilter);
+
+				// roles updated during the load are labelled with the version read before it; deltas to this version,
+				// computed from these roles, would not have these updates in the version they were made
+				Long    rolesVersionAfterLoad = roleDBStore.getRoleVersion(serviceName);
+				boolean isVersionChanged      = rolesVersionAfterLoad != null && rolesVersionAfterLoad > rolesVersionInDB;
+
+				if (rolesInDB != null) {
+					if (isVersionChanged) {
+						LOG.info("RangerRoleCache: roles version changed from " + rolesVersionInDB + " to " + rolesVersionAfterLoad + " during load; deltas to version " + rolesVersionInDB + " are not kept");
 					}
+
+					state      = new RoleCacheState(isVersionChanged ? null : state, rolesInDB, rolesVersionInDB, maxRoleDeltaVersions);
+					this.state = state;
 				} else {
-					if (LOG.isDebugEnabled()) {
-						LOG.debug("Could not get lock in [" + waitTimeInSeconds + "] seconds, returning cached RangerRoles");
+					LOG.error("Could not get Ranger Roles from database ...");
+				}
+			}
+
+			return state;
+		}
+	}
+
+	/*
+	 * Roles of one version, with the changes from recent versions. Instances are not modified after creation, so are
+	 * read without locking.
+	 */
+	static class RoleCacheState {
+		final Long                             rolesVersion;
+		final Date                             updateTime;
+		final Map<String, RangerRole>          roleByName;
+		final Set<RangerRole>                  roles;
+		final RangerChangeLog<RangerRoleDelta> changeLog;
+
+		RoleCacheState(RoleCacheState previous, List<RangerRole> rolesInDB, Long rolesVersion, int maxDeltaVersions) {
+			this.rolesVersion = rolesVersion;
+			this.updateTime   = new Date();
+			this.roleByName   = new HashMap<>();
+
+			for (RangerRole role : rolesInDB) {
+				roleByName.put(role.getName(), role);
+			}
+
+			this.roles = Collections.unmodifiableSet(new HashSet<>(roleByName.values()));
+
+			if (previous != null && maxDeltaVersions > 0) {
+				List<RangerRoleDelta> deltas = new ArrayList<>();
+
+				for (RangerRole role : roleByName.values()) {
+					RangerRole oldRole = previous.roleByName.get(role.getName());
+
+					if (oldRole == null) {
+						deltas.add(new RangerRoleDelta(RangerRoleDelta.CHANGE_TYPE_ROLE_CREATE, rolesVersion, role));
+					} else if (!isSameRole(oldRole, role)) {
+						deltas.add(new RangerRoleDelta(RangerRoleDelta.CHANGE_TYPE_ROLE_UPDATE, rolesVersion, role));
 					}
-					ret = getRoles();
 				}
-			} catch (InterruptedException exception) {
-				LOG.error("RangerRoleCache.getLatestRangerRoles:lock got interrupted..", exception);
-			} finally {
-				if (lockResult) {
-					lock.unlock();
+
+				for (RangerRole oldRole : previous.roleByName.values()) {
+					if (!roleByName.containsKey(oldRole.getName())) {
+						deltas.add(new RangerRoleDelta(RangerRoleDelta.CHANGE_TYPE_ROLE_DELETE, rolesVersion, oldRole));
+					}
 				}
+
+				// drop the oldest versions when there are too many, or when their deltas are more than all roles
+				this.changeLog = previous.changeLog.append(previous.rolesVersion, deltas, maxDeltaVersions, roleByName.size());
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("RangerRoleCache: version " + previous.rolesVersion + " => " + rolesVersion + ": " + deltas.size() + " roles changed; change log has " + changeLog.getVersionCount() + " versions");
+				}
+			} else {
+				this.changeLog = new RangerChangeLog<>();
 			}
+		}
 
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("<== RangerRoleCache.getLatestRangerRoles(ServiceName= " + serviceName + " lastKnownRoleVersion= " + lastKnownRoleVersion + " rolesVersionInDB= " + rolesVersionInDB + " RangerRoles= " + ret + ")");
+		/*
+		 * Deltas are returned only when lastKnownRoleVersion is a version this cache loaded, as the plugin then has the
+		 * same roles the change log was computed from.
+		 */
+		RangerRoles getRoles(Long lastKnownRoleVersion, boolean returnDeltas) {
+			RangerRoles ret = new RangerRoles();
+
+			ret.setRoleVersion(rolesVersion);
+			ret.setRoleUpdateTime(updateTime);
+
+			List<RangerRoleDelta> deltas = returnDeltas ? changeLog.getDeltasSince(lastKnownRoleVersion) : null;
+
+			if (deltas != null) {
+				ret.setRoleDeltas(deltas);
+			} else {
+				ret.setRangerRoles(roles);
 			}
 
 			return ret;
 		}
+
+		private static boolean isSameRole(RangerRole role, RangerRole other) {
+			return Objects.equals(role.getId(), other.getId())
+					&& Objects.equals(role.getUpdateTime(), other.getUpdateTime())
+					&& Objects.equals(role.getIsEnabled(), other.getIsEnabled())
+					&& Objects.equals(role.getDescription(), other.getDescription())
+					&& Objects.equals(role.getOptions(), other.getOptions())
+					&& Objects.equals(role.getUsers(), other.getUsers())
+					&& Objects.equals(role.getGroups(), other.getGroups())
+					&& Objects.equals(role.getRoles(), other.getRoles())
+					&& Objects.equals(role.getCreatedByUser(), other.getCreatedByUser());
+		}
 	}
 }
-
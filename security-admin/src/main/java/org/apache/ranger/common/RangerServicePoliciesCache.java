@@ -23,32 +23,62 @@
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
 import org.apache.ranger.plugin.store.ServiceStore;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.CompactServicePolicies;
 import org.apache.ranger.plugin.util.RangerPolicyDeltaUtil;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Cache of policies of each service for download by plugins.
+ *
+ * Policies of a service are kept as a snapshot that is not modified after it is published, so requests read it without
+ * locking. When the policy version in the database changes, one request reloads the policies and publishes a new
+ * snapshot; concurrent requests for the service return the previous snapshot meanwhile, or wait for the reload when
+ * there is no snapshot yet.
+ *
+ * The policy-deltas the cache applies to move from one version to the next are kept in a change log of recent
+ * versions. A plugin that knows one of these versions gets the deltas since then composed from the change log, one
+ * delta per changed policy, without reading policy-deltas from the database. The change log is limited by the number
+ * of versions and by the number of deltas in it.
+ *
+ * Compact payloads of policy downloads are encoded once for the latest version of each service, for each kind of
+ * download: all policies, or policy-deltas from a version.
+ */
 public class RangerServicePoliciesCache {
 	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesCache.class);
 
-	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int MAX_WAIT_TIME_FOR_UPDATE  = 10;
+	private static final int MAX_POLICY_DELTA_VERSIONS = 100;
+	private static final int MAX_POLICY_DELTAS         = 10000;
+
+	private static final Comparator<RangerPolicyDelta> POLICY_DELTA_ID_COMPARATOR = (me, other) -> Long.compare(me.getId(), other.getId());
 
 	public static volatile RangerServicePoliciesCache sInstance = null;
 	private final int waitTimeInSeconds;
+	private final int maxPolicyDeltaVersions;
+	private final int maxPolicyDeltas;
+
+	private final AtomicLong deltaCacheHitCount  = new AtomicLong();
+	private final AtomicLong deltaCacheMissCount = new AtomicLong();
 
-	private final Map<String, ServicePoliciesWrapper> servicePoliciesMap = new HashMap<>();
+	private final Map<String, ServicePoliciesWrapper> servicePoliciesMap = new ConcurrentHashMap<>();
 
 	public static RangerServicePoliciesCache getInstance() {
 		if (sInstance == null) {
@@ -64,28 +94,48 @@ public static RangerServicePoliciesCache getInstance() {
 	private RangerServicePoliciesCache() {
 		RangerAdminConfig config = RangerAdminConfig.getInstance();
 
-		waitTimeInSeconds = config.getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		waitTimeInSeconds      = config.getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		maxPolicyDeltaVersions = config.getInt("ranger.admin.policy.delta.cache.max.versions", MAX_POLICY_DELTA_VERSIONS);
+		maxPolicyDeltas        = config.getInt("ranger.admin.policy.delta.cache.max.deltas", MAX_POLICY_DELTAS);
+
+		LOG.info("RangerServicePoliciesCache: maxPolicyDeltaVersions=" + maxPolicyDeltaVersions + ", maxPolicyDeltas=" + maxPolicyDeltas);
 	}
 
-	public void dump() {
-		final Set<String> serviceNames;
+	RangerServicePoliciesCache(int waitTimeInSeconds, int maxPolicyDeltaVersions, int maxPolicyDeltas) {
+		this.waitTimeInSeconds      = waitTimeInSeconds;
+		this.maxPolicyDeltaVersions = maxPolicyDeltaVersions;
+		this.maxPolicyDeltas        = maxPolicyDeltas;
+	}
 
-		synchronized (this) {
-			serviceNames = servicePoliciesMap.keySet();
-		}
+	/**
+	 * @return number of requests for policy-deltas served from the change log, or from deltas read earlier for the same version
+	 */
+	public long getDeltaCacheHitCount() { return deltaCacheHitCount.get(); }
 
-		if (CollectionUtils.isNotEmpty(serviceNames)) {
+	/**
+	 * @return number of requests for policy-deltas that read policy-deltas from the database
+	 */
+	public long getDeltaCacheMissCount() { return deltaCacheMissCount.get(); }
 
-			for (String serviceName : serviceNames) {
-				final ServicePoliciesWrapper cachedServicePoliciesWrapper;
+	/**
+	 * @return number of times policies were loaded from the database, for all services
+	 */
+	public long getLoadCount() {
+		long ret = 0;
 
-				synchronized (this) {
-					cachedServicePoliciesWrapper = servicePoliciesMap.get(serviceName);
-				}
-				LOG.debug("serviceName:" + serviceName + ", Cached-MetaData:" + cachedServicePoliciesWrapper);
+		for (ServicePoliciesWrapper servicePoliciesWrapper : servicePoliciesMap.values()) {
+			ret += servicePoliciesWrapper.loader.getLoadCount();
+		}
 
-			}
+		return ret;
+	}
+
+	public void dump() {
+		for (Map.Entry<String, ServicePoliciesWrapper> entry : servicePoliciesMap.entrySet()) {
+			LOG.debug("serviceName:" + entry.getKey() + ", Cached-MetaData:" + entry.getValue());
 		}
+
+		LOG.debug("policy-delta cache: hitCount=" + deltaCacheHitCount.get() + ", missCount=" + deltaCacheMissCount.get());
 	}
 
 	public ServicePolicies getServicePolicies(String serviceName, Long serviceId, Long lastKnownVersion, boolean needsBackwardCompatibility, ServiceStore serviceStore) throws Exception {
@@ -98,27 +148,22 @@ public ServicePolicies getServicePolicies(String serviceName, Long serviceId, Lo
 
 		if (StringUtils.isNotBlank(serviceName) && serviceId != null) {
 
-			ServicePoliciesWrapper servicePoliciesWrapper;
+			ServicePoliciesWrapper servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
 
-			synchronized (this) {
-				servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+			if (servicePoliciesWrapper == null || !serviceId.equals(servicePoliciesWrapper.getServiceId())) {
+				servicePoliciesWrapper = servicePoliciesMap.compute(serviceName, (name, existing) -> {
+					if (existing != null && serviceId.equals(existing.getServiceId())) {
+						return existing;
+					}
 
-				if (servicePoliciesWrapper != null) {
-					if (!serviceId.equals(servicePoliciesWrapper.getServiceId())) {
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Service [" + serviceName + "] changed service-id from " + servicePoliciesWrapper.getServiceId()
-									+ " to " + serviceId);
-							LOG.debug("Recreating servicePoliciesWrapper for serviceName [" + serviceName + "]");
-						}
-						servicePoliciesMap.remove(serviceName);
-						servicePoliciesWrapper = null;
+					if (existing != null && LOG.isDebugEnabled()) {
+						LOG.debug("Service [" + serviceName + "] changed service-id from " + existing.getServiceId()
+								+ " to " + serviceId);
+						LOG.debug("Recreating servicePoliciesWrapper for serviceName [" + serviceName + "]");
 					}
-				}
 
-				if (servicePoliciesWrapper == null) {
-					servicePoliciesWrapper = new ServicePoliciesWrapper(serviceId);
-					servicePoliciesMap.put(serviceName, servicePoliciesWrapper);
-				}
+					return new ServicePoliciesWrapper(serviceId);
+				});
 			}
 
 			if (serviceStore != null) {
@@ -139,105 +184,132 @@ public ServicePolicies getServicePolicies(String serviceName, Long serviceId, Lo
 		return ret;
 	}
 
-	private class ServicePoliciesWrapper {
-		final Long          serviceId;
-		ServicePolicies     servicePolicies;
-		Date                updateTime            = null;
-		long                longestDbLoadTimeInMs = -1;
-		final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * Returns the compact payload of servicePolicies, returned for a policy download of the service from lastKnownVersion.
+	 * A change to anything else in the download, like service config or security zones, changes the policy version.
+	 */
+	public byte[] getCompactServicePolicies(String serviceName, Long lastKnownVersion, boolean needsBackwardCompatibility, ServicePolicies servicePolicies) throws IOException {
+		ServicePoliciesWrapper servicePoliciesWrapper = servicePoliciesMap.get(serviceName);
 
-		ServicePolicyDeltasCache deltaCache;
-
-		class ServicePolicyDeltasCache {
-			final long            fromVersion;
-			final ServicePolicies servicePolicyDeltas;
+		return servicePoliciesWrapper != null ? servicePoliciesWrapper.getCompactServicePolicies(lastKnownVersion, needsBackwardCompatibility, servicePolicies)
+		                                      : CompactServicePolicies.toByteArray(servicePolicies);
+	}
 
-			ServicePolicyDeltasCache(final long fromVersion, ServicePolicies servicePolicyDeltas) {
-				this.fromVersion         = fromVersion;
-				this.servicePolicyDeltas = servicePolicyDeltas;
-			}
-			ServicePolicies getServicePolicyDeltasFromVersion(long fromVersion) {
-				return this.fromVersion == fromVersion ? this.servicePolicyDeltas : null;
-			}
-		}
+	private class ServicePoliciesWrapper {
+		final Long                                       serviceId;
+		final RangerCacheLoader<ServicePoliciesSnapshot> loader;
+		final AtomicLong                                 deltaCacheHits        = new AtomicLong();
+		final AtomicLong                                 deltaCacheMisses      = new AtomicLong();
+		volatile ServicePoliciesSnapshot                 snapshot              = null;
+		volatile CompactPayloads                         compactPayloads       = null;
+		volatile long                                    longestDbLoadTimeInMs = -1;
 
 		ServicePoliciesWrapper(Long serviceId) {
 			this.serviceId = serviceId;
-			servicePolicies = null;
+			this.loader    = new RangerCacheLoader<>("RangerServicePoliciesCache(serviceId=" + serviceId + ")");
 		}
 
 		Long getServiceId() { return serviceId; }
 
 		ServicePolicies getServicePolicies() {
-			return servicePolicies;
+			ServicePoliciesSnapshot snapshot = this.snapshot;
+
+			return snapshot != null ? snapshot.servicePolicies : null;
 		}
 
 		Date getUpdateTime() {
-			return updateTime;
+			ServicePoliciesSnapshot snapshot = this.snapshot;
+
+			return snapshot != null ? snapshot.updateTime : null;
 		}
 
-		ServicePolicies getLatestOrCached(String serviceName, ServiceStore serviceStore, Long lastKnownVersion, boolean needsBackwardCompatibility) throws Exception {
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("==> RangerServicePoliciesCache.getLatestOrCached(lastKnownVersion=" + lastKnownVersion + ", " + needsBackwardCompatibility + ")");
+		byte[] getCompactServicePolicies(Long lastKnownVersion, boolean needsBackwardCompatibility, ServicePolicies servicePolicies) throws IOException {
+			CompactPayloads payloads = this.compactPayloads;
+
+			if (payloads == null || !Objects.equals(payloads.policyVersion, servicePolicies.getPolicyVersion())) {
+				payloads = new CompactPayloads(servicePolicies.getPolicyVersion());
+
+				this.compactPayloads = payloads;
 			}
-			ServicePolicies ret        = null;
-			boolean         lockResult = false;
 
-			try {
-				final boolean isCacheReloadedByDQEvent;
+			// all policies are filtered by ServiceDBStore for plugins that don't know a version, or don't support deltas
+			final String key;
 
-				lockResult = lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
+			if (servicePolicies.getPolicyDeltas() != null) {
+				key = "deltas-from-" + lastKnownVersion;
+			} else if (lastKnownVersion == null || lastKnownVersion == -1L || needsBackwardCompatibility) {
+				key = "policies-filtered";
+			} else {
+				key = "policies";
+			}
 
-				if (lockResult) {
-					isCacheReloadedByDQEvent = getLatest(serviceName, serviceStore, lastKnownVersion);
+			if (payloads.payloads.size() >= Math.max(maxPolicyDeltaVersions, 1) + 2 && !payloads.payloads.containsKey(key)) {
+				payloads.payloads.clear();
+			}
 
-					if (isCacheReloadedByDQEvent) {
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("ServicePolicies cache was completely loaded from database because of a disqualifying event - such as service-definition change!");
-						}
-					}
+			try {
+				return payloads.payloads.computeIfAbsent(key, k -> {
+					try {
+						byte[] ret = CompactServicePolicies.toByteArray(servicePolicies);
 
-					if (needsBackwardCompatibility || isCacheReloadedByDQEvent
-						|| lastKnownVersion == -1L || lastKnownVersion.equals(servicePolicies.getPolicyVersion())) {
-						// Looking for all policies, or Some disqualifying change encountered
 						if (LOG.isDebugEnabled()) {
-							LOG.debug("All policies were requested, returning cached ServicePolicies");
+							LOG.debug("compact payload of service:[" + servicePolicies.getServiceName() + "], version:[" + servicePolicies.getPolicyVersion() + "], " + k + ": size=" + ret.length);
 						}
-						ret = this.servicePolicies;
-					} else {
-						boolean         isDeltaCacheReinitialized = false;
-						ServicePolicies servicePoliciesForDeltas  = this.deltaCache != null ? this.deltaCache.getServicePolicyDeltasFromVersion(lastKnownVersion) : null;
 
-						if (servicePoliciesForDeltas == null) {
-							servicePoliciesForDeltas  = serviceStore.getServicePolicyDeltas(serviceName, lastKnownVersion);
-							isDeltaCacheReinitialized = true;
-						}
-						if (servicePoliciesForDeltas != null && servicePoliciesForDeltas.getPolicyDeltas() != null) {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("Deltas were requested. Returning deltas from lastKnownVersion:[" + lastKnownVersion + "]");
-							}
-							if (isDeltaCacheReinitialized) {
-								this.deltaCache = new ServicePolicyDeltasCache(lastKnownVersion, servicePoliciesForDeltas);
-							}
-							ret = servicePoliciesForDeltas;
-						} else {
-							LOG.warn("Deltas were requested for service:[" + serviceName + "], but could not get them!! lastKnownVersion:[" + lastKnownVersion + "]; Returning cached ServicePolicies:[" + (servicePolicies != null ? servicePolicies.getPolicyVersion() : -1L) + "]");
-
-							this.deltaCache = null;
-							ret = this.servicePolicies;
-						}
+						return ret;
+					} catch (IOException excp) {
+						throw new UncheckedIOException(excp);
 					}
+				});
+			} catch (UncheckedIOException excp) {
+				throw excp.getCause();
+			}
+		}
+
+		ServicePolicies getLatestOrCached(String serviceName, ServiceStore serviceStore, Long lastKnownVersion, boolean needsBackwardCompatibility) throws Exception {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("==> RangerServicePoliciesCache.getLatestOrCached(lastKnownVersion=" + lastKnownVersion + ", " + needsBackwardCompatibility + ")");
+			}
+			ServicePolicies               ret      = null;
+			final ServicePoliciesSnapshot snapshot = getLatest(serviceName, serviceStore);
+
+			if (snapshot == null) {
+				LOG.error("Could not get policies of service:[" + serviceName + "] in [" + waitTimeInSeconds + "] seconds, while loading from database");
+			} else if (needsBackwardCompatibility || snapshot.isReloadedByDQEvent
+					|| lastKnownVersion == -1L || lastKnownVersion.equals(snapshot.getPolicyVersion())) {
+				// Looking for all policies, or Some disqualifying change encountered
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("All policies were requested, returning cached ServicePolicies");
+				}
+				ret = snapshot.servicePolicies;
+			} else {
+				ServicePolicies servicePoliciesForDeltas = snapshot.getCachedDeltas(lastKnownVersion);
+
+				if (servicePoliciesForDeltas != null) {
+					deltaCacheHitCount.incrementAndGet();
+					deltaCacheHits.incrementAndGet();
 				} else {
-					LOG.error("Could not get lock in [" + waitTimeInSeconds + "] seconds, returning cached ServicePolicies and wait Queue Length:[" +lock.getQueueLength() + "], servicePolicies version:[" + servicePolicies.getPolicyVersion() + "]");
-					ret = this.servicePolicies;
+					deltaCacheMissCount.incrementAndGet();
+					deltaCacheMisses.incrementAndGet();
+
+					servicePoliciesForDeltas = serviceStore.getServicePolicyDeltas(serviceName, lastKnownVersion);
+
+					if (servicePoliciesForDeltas != null && servicePoliciesForDeltas.getPolicyDeltas() != null) {
+						snapshot.cacheDeltas(lastKnownVersion, servicePoliciesForDeltas);
+					}
 				}
-			} catch (InterruptedException exception) {
-				LOG.error("getLatestOrCached:lock got interrupted..", exception);
-			} finally {
-				if (lockResult) {
-					lock.unlock();
+				if (servicePoliciesForDeltas != null && servicePoliciesForDeltas.getPolicyDeltas() != null) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Deltas were requested. Returning deltas from lastKnownVersion:[" + lastKnownVersion + "]");
+					}
+					ret = servicePoliciesForDeltas;
+				} else {
+					LOG.warn("Deltas were requested for service:[" + serviceName + "], but could not get them!! lastKnownVersion:[" + lastKnownVersion + "]; Returning cached ServicePolicies:[" + snapshot.getPolicyVersion() + "]");
+
+					ret = snapshot.servicePolicies;
 				}
 			}
+
 			if (LOG.isTraceEnabled()) {
 				LOG.trace("RangerServicePoliciesCache.getLatestOrCached - Returns ServicePolicies:[" + ret +"]");
 			}
@@ -248,113 +320,157 @@ ServicePolicies getLatestOrCached(String serviceName, ServiceStore serviceStore,
 			return ret;
 		}
 
-		boolean getLatest(String serviceName, ServiceStore serviceStore, Long lastKnownVersion) throws Exception {
+		/*
+		 * Returns the snapshot of the version in the database, after loading it if needed. While another request is
+		 * loading, returns the current snapshot; waits for the load only if there is no snapshot yet.
+		 */
+		ServicePoliciesSnapshot getLatest(String serviceName, ServiceStore serviceStore) throws Exception {
+			ServicePoliciesSnapshot ret                      = this.snapshot;
+			final Long              servicePolicyVersionInDb = serviceStore.getServicePolicyVersion(serviceName);
+
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("==> ServicePoliciesWrapper.getLatest(serviceName=" + serviceName + ", lastKnownVersion=" + lastKnownVersion + ")");
+				LOG.debug("ServicePolicies version in cache[" + (ret != null ? ret.getPolicyVersion() : -1L) + "], ServicePolicies version in database[" + servicePolicyVersionInDb + "]");
 			}
 
-			final Long servicePolicyVersionInDb     = serviceStore.getServicePolicyVersion(serviceName);
-			final Long cachedServicePoliciesVersion = servicePolicies != null ? servicePolicies.getPolicyVersion() : -1L;
+			if (ret == null || servicePolicyVersionInDb == null || !servicePolicyVersionInDb.equals(ret.getPolicyVersion())) {
+				final long              maxWaitTimeInMs = ret == null ? TimeUnit.SECONDS.toMillis(waitTimeInSeconds) : 0;
+				ServicePoliciesSnapshot loaded          = loader.load(() -> load(serviceName, serviceStore, servicePolicyVersionInDb), maxWaitTimeInMs);
 
+				if (loaded != null) {
+					ret = loaded;
+				} else {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("ServicePolicies are being loaded by another request; returning cached version:[" + (ret != null ? ret.getPolicyVersion() : -1L) + "]");
+					}
+
+					if (ret == null) {
+						ret = this.snapshot;
+					}
+				}
+			} else {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("ServicePolicies Cache already has the latest version, version:[" + ret.getPolicyVersion() + "]");
+				}
+			}
+
+			return ret;
+		}
+
+		/*
+		 * Called by one request at a time. Builds a new snapshot from the current one and the changes in the database
+		 */
+		private ServicePoliciesSnapshot load(String serviceName, ServiceStore serviceStore, Long servicePolicyVersionInDb) throws Exception {
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("ServicePolicies version in cache[" + cachedServicePoliciesVersion + "], ServicePolicies version in database[" + servicePolicyVersionInDb + "]");
+				LOG.debug("==> ServicePoliciesWrapper.load(serviceName=" + serviceName + ", servicePolicyVersionInDb=" + servicePolicyVersionInDb + ")");
 			}
 
-			boolean isCacheReloadedByDQEvent = false;
+			final ServicePoliciesSnapshot current                      = this.snapshot;
+			final Long                    cachedServicePoliciesVersion = current != null ? current.getPolicyVersion() : -1L;
 
-			if (servicePolicyVersionInDb == null || !servicePolicyVersionInDb.equals(cachedServicePoliciesVersion)) {
+			// another request might have loaded this version
+			if (current != null && servicePolicyVersionInDb != null && servicePolicyVersionInDb.equals(cachedServicePoliciesVersion)) {
+				return current;
+			}
 
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("loading servicePolicies from database");
-				}
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("loading servicePolicies from database");
+			}
+
+			final long            startTimeMs           = System.currentTimeMillis();
+			final ServicePolicies servicePoliciesFromDb = serviceStore.getServicePolicyDeltasOrPolicies(serviceName, cachedServicePoliciesVersion);
+			final long            dbLoadTime            = System.currentTimeMillis() - startTimeMs;
 
-				final long            startTimeMs           = System.currentTimeMillis();
-				final long            dbLoadTime            = System.currentTimeMillis() - startTimeMs;
+			if (dbLoadTime > longestDbLoadTimeInMs) {
+				longestDbLoadTimeInMs = dbLoadTime;
+			}
 
-				ServicePolicies       servicePoliciesFromDb = serviceStore.getServicePolicyDeltasOrPolicies(serviceName, cachedServicePoliciesVersion);
+			ServicePoliciesSnapshot ret = current;
 
-				if (dbLoadTime > longestDbLoadTimeInMs) {
-					longestDbLoadTimeInMs = dbLoadTime;
+			if (servicePoliciesFromDb != null) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Successfully loaded ServicePolicies from database: ServicePolicies:[" + servicePoliciesFromDb + "]");
 				}
-				updateTime = new Date();
+				if (current == null) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Initializing ServicePolicies cache for the first time");
+					}
+					pruneUnusedAttributes(servicePoliciesFromDb);
 
-				if (servicePoliciesFromDb != null) {
+					ret = new ServicePoliciesSnapshot(servicePoliciesFromDb, false, null, null);
+				} else if (servicePoliciesFromDb.getPolicyDeltas() == null) {
+					// service-policies are loaded because service/service-def changed
 					if (LOG.isDebugEnabled()) {
-						LOG.debug("Successfully loaded ServicePolicies from database: ServicePolicies:[" + servicePoliciesFromDb + "]");
+						LOG.debug("Complete set of policies are loaded from database, because of some disqualifying event");
 					}
-					if (servicePolicies == null) {
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Initializing ServicePolicies cache for the first time");
-						}
-						servicePolicies = servicePoliciesFromDb;
-						pruneUnusedAttributes();
-					} else if (servicePoliciesFromDb.getPolicyDeltas() == null) {
-						// service-policies are loaded because service/service-def changed
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Complete set of policies are loaded from database, because of some disqualifying event");
-						}
-						servicePolicies = servicePoliciesFromDb;
-						pruneUnusedAttributes();
-						isCacheReloadedByDQEvent = true;
-					} else { // Previously cached service policies are still valid - no service/service-def change
-						// Rebuild policies cache from original policies and deltas
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Retrieved policy-deltas from database. These will be applied on top of ServicePolicy version:[" + cachedServicePoliciesVersion +"], policy-deltas:[" + servicePoliciesFromDb.getPolicyDeltas() + "]");
-						}
-						servicePolicies.setPolicyVersion(servicePoliciesFromDb.getPolicyVersion());
+					pruneUnusedAttributes(servicePoliciesFromDb);
+
+					ret = new ServicePoliciesSnapshot(servicePoliciesFromDb, true, null, null);
+				} else { // Previously cached service policies are still valid - no service/service-def change
+					// Rebuild policies cache from original policies and deltas
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Retrieved policy-deltas from database. These will be applied on top of ServicePolicy version:[" + cachedServicePoliciesVersion +"], policy-deltas:[" + servicePoliciesFromDb.getPolicyDeltas() + "]");
+					}
+					final ServicePolicies servicePolicies = copyHeader(current.servicePolicies);
+
+					servicePolicies.setPolicyVersion(servicePoliciesFromDb.getPolicyVersion());
+
+					final List<RangerPolicy> policies = current.servicePolicies.getPolicies() == null ? new ArrayList<>() : current.servicePolicies.getPolicies();
+					final List<RangerPolicy> newPolicies = RangerPolicyDeltaUtil.applyDeltas(policies, servicePoliciesFromDb.getPolicyDeltas(), servicePolicies.getServiceDef().getName());
 
-						final List<RangerPolicy> policies = servicePolicies.getPolicies() == null ? new ArrayList<>() : servicePolicies.getPolicies();
-						final List<RangerPolicy> newPolicies = RangerPolicyDeltaUtil.applyDeltas(policies, servicePoliciesFromDb.getPolicyDeltas(), servicePolicies.getServiceDef().getName());
+					servicePolicies.setPolicies(newPolicies);
 
-						servicePolicies.setPolicies(newPolicies);
+					checkCacheSanity(serviceName, serviceStore, servicePolicies, false);
+
+					// Rebuild tag-policies from original tag-policies and deltas
+					if (servicePoliciesFromDb.getTagPolicies() != null) {
+						String tagServiceName = servicePoliciesFromDb.getTagPolicies().getServiceName();
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("This service has associated tag service:[" + tagServiceName + "]. Will compute tagPolicies from corresponding policy-deltas");
+						}
 
-						checkCacheSanity(serviceName, serviceStore, false);
+						final ServicePolicies.TagPolicies currentTagPolicies = current.servicePolicies.getTagPolicies();
 
-						// Rebuild tag-policies from original tag-policies and deltas
-						if (servicePoliciesFromDb.getTagPolicies() != null) {
-							String tagServiceName = servicePoliciesFromDb.getTagPolicies().getServiceName();
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("This service has associated tag service:[" + tagServiceName + "]. Will compute tagPolicies from corresponding policy-deltas");
-							}
+						final List<RangerPolicy> tagPolicies = (currentTagPolicies == null || CollectionUtils.isEmpty(currentTagPolicies.getPolicies())) ? new ArrayList<>() : currentTagPolicies.getPolicies();
+						final List<RangerPolicy> newTagPolicies = RangerPolicyDeltaUtil.applyDeltas(tagPolicies, servicePoliciesFromDb.getPolicyDeltas(), servicePoliciesFromDb.getTagPolicies().getServiceDef().getName());
 
-							final List<RangerPolicy> tagPolicies = (servicePolicies.getTagPolicies() == null || CollectionUtils.isEmpty(servicePolicies.getTagPolicies().getPolicies())) ? new ArrayList<>() : servicePolicies.getTagPolicies().getPolicies();
-							final List<RangerPolicy> newTagPolicies = RangerPolicyDeltaUtil.applyDeltas(tagPolicies, servicePoliciesFromDb.getPolicyDeltas(), servicePoliciesFromDb.getTagPolicies().getServiceDef().getName());
+						if (servicePolicies.getTagPolicies() == null) {
+							servicePolicies.setTagPolicies(copyHeader(servicePoliciesFromDb.getTagPolicies()));
+						}
 
-							servicePolicies.getTagPolicies().setPolicies(newTagPolicies);
-							servicePolicies.getTagPolicies().setPolicyVersion(servicePoliciesFromDb.getTagPolicies().getPolicyVersion());
+						servicePolicies.getTagPolicies().setPolicies(newTagPolicies);
+						servicePolicies.getTagPolicies().setPolicyVersion(servicePoliciesFromDb.getTagPolicies().getPolicyVersion());
 
-							checkCacheSanity(servicePoliciesFromDb.getTagPolicies().getServiceName(), serviceStore, true);
+						checkCacheSanity(servicePoliciesFromDb.getTagPolicies().getServiceName(), serviceStore, servicePolicies, true);
 
-						} else {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("This service has no associated tag service");
-							}
+					} else {
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("This service has no associated tag service");
 						}
 					}
-					this.deltaCache = null;
-				} else {
-					LOG.error("Could not get policies from database, from-version:[" + cachedServicePoliciesVersion + ")");
-				}
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("ServicePolicies old-version:[" + cachedServicePoliciesVersion + "], new-version:[" + servicePolicies.getPolicyVersion() + "]");
+
+					ret = new ServicePoliciesSnapshot(servicePolicies, false, current, servicePoliciesFromDb);
 				}
+
+				this.snapshot = ret;
 			} else {
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("ServicePolicies Cache already has the latest version, version:[" + servicePolicies.getPolicyVersion() + "]");
-				}
+				LOG.error("Could not get policies from database, from-version:[" + cachedServicePoliciesVersion + ")");
+			}
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("ServicePolicies old-version:[" + cachedServicePoliciesVersion + "], new-version:[" + (ret != null ? ret.getPolicyVersion() : null) + "]");
 			}
 
 			if (LOG.isTraceEnabled()) {
-				LOG.trace("Latest Cached ServicePolicies:[" + servicePolicies +"]");
+				LOG.trace("Latest Cached ServicePolicies:[" + (ret != null ? ret.servicePolicies : null) +"]");
 			}
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("<== ServicePoliciesWrapper.getLatest(serviceName=" + serviceName + ", lastKnownVersion=" + lastKnownVersion + ") : " + isCacheReloadedByDQEvent);
+				LOG.debug("<== ServicePoliciesWrapper.load(serviceName=" + serviceName + ", servicePolicyVersionInDb=" + servicePolicyVersionInDb + ") : " + (ret != null && ret.isReloadedByDQEvent));
 			}
-			return isCacheReloadedByDQEvent;
+			return ret;
 		}
 
-		private void checkCacheSanity(String serviceName, ServiceStore serviceStore, boolean isTagService) {
+		private void checkCacheSanity(String serviceName, ServiceStore serviceStore, ServicePolicies servicePolicies, boolean isTagService) {
 			final boolean result;
 			Long dbPolicyVersion = serviceStore.getServicePolicyVersion(serviceName);
 			Long cachedPolicyVersion = isTagService ? servicePolicies.getTagPolicies().getPolicyVersion() : servicePolicies.getPolicyVersion();
@@ -366,7 +482,7 @@ private void checkCacheSanity(String serviceName, ServiceStore serviceStore, boo
 			}
 		}
 
-		private void pruneUnusedAttributes() {
+		private void pruneUnusedAttributes(ServicePolicies servicePolicies) {
 			if (servicePolicies != null) {
 				pruneUnusedPolicyAttributes(servicePolicies.getPolicies());
 				if (servicePolicies.getTagPolicies() != null) {
@@ -394,13 +510,21 @@ private void pruneUnusedPolicyAttributes(List<RangerPolicy> policies) {
 		}
 
 		StringBuilder toString(StringBuilder sb) {
+			ServicePoliciesSnapshot snapshot        = this.snapshot;
+			ServicePolicies         servicePolicies = snapshot != null ? snapshot.servicePolicies : null;
+
 			sb.append("RangerServicePoliciesWrapper={");
 
-			sb.append("updateTime=").append(updateTime)
+			sb.append("updateTime=").append(snapshot != null ? snapshot.updateTime : null)
 					.append(", longestDbLoadTimeInMs=").append(longestDbLoadTimeInMs)
 					.append(", Service-Version:").append(servicePolicies != null ? servicePolicies.getPolicyVersion() : "null")
 					.append(", Number-Of-Policies:").append(servicePolicies != null && servicePolicies.getPolicies() != null ? servicePolicies.getPolicies().size() : 0)
-					.append(", Number-Of-Policy-Deltas:").append(servicePolicies != null && servicePolicies.getPolicyDeltas() != null ? servicePolicies.getPolicyDeltas().size() : 0);
+					.append(", Number-Of-Policy-Deltas:").append(servicePolicies != null && servicePolicies.getPolicyDeltas() != null ? servicePolicies.getPolicyDeltas().size() : 0)
+					.append(", Change-Log-Versions:").append(snapshot != null ? snapshot.changeLog.getVersionCount() : 0)
+					.append(", Change-Log-Deltas:").append(snapshot != null ? snapshot.changeLog.getDeltaCount() : 0)
+					.append(", Delta-Cache-Hits:").append(deltaCacheHits.get())
+					.append(", Delta-Cache-Misses:").append(deltaCacheMisses.get())
+					.append(", Load-Count:").append(loader.getLoadCount());
 
 			sb.append("} ");
 
@@ -416,5 +540,186 @@ public String toString() {
 			return sb.toString();
 		}
 	}
-}
 
+	// compact payloads of downloads of one version of a service, by the kind of download
+	private static class CompactPayloads {
+		final Long                policyVersion;
+		final Map<String, byte[]> payloads = new ConcurrentHashMap<>();
+
+		CompactPayloads(Long policyVersion) {
+			this.policyVersion = policyVersion;
+		}
+	}
+
+	/*
+	 * Policies of one version of a service, with the policy-deltas of recent versions. Instances are not modified after
+	 * they are published, except for adding deltas returned to plugins to deltasByFromVersion.
+	 */
+	private class ServicePoliciesSnapshot {
+		final ServicePolicies                    servicePolicies;
+		final Date                               updateTime;
+		final boolean                            isReloadedByDQEvent;
+		final ServicePolicies                    servicePolicyDeltas; // policy-deltas, as read from the database, applied to move to this version from the previous one
+		final RangerChangeLog<RangerPolicyDelta> changeLog;           // policy-deltas applied to move to each of the recent versions
+
+		// deltas returned to plugins for this version, by the version the plugin had
+		final Map<Long, ServicePolicies> deltasByFromVersion = new ConcurrentHashMap<>();
+
+		ServicePoliciesSnapshot(ServicePolicies servicePolicies, boolean isReloadedByDQEvent, ServicePoliciesSnapshot previous, ServicePolicies servicePolicyDeltas) {
+			this.servicePolicies     = servicePolicies;
+			this.updateTime          = new Date();
+			this.isReloadedByDQEvent = isReloadedByDQEvent;
+			this.servicePolicyDeltas = servicePolicyDeltas;
+
+			if (previous != null && servicePolicyDeltas != null && maxPolicyDeltaVersions > 0 && maxPolicyDeltas > 0) {
+				this.changeLog = previous.changeLog.append(previous.getPolicyVersion(), servicePolicyDeltas.getPolicyDeltas(), maxPolicyDeltaVersions, maxPolicyDeltas);
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("policy-delta change log: versions=" + changeLog.getVersionCount() + ", deltas-count=" + changeLog.getDeltaCount());
+				}
+			} else {
+				this.changeLog = new RangerChangeLog<>();
+			}
+		}
+
+		Long getPolicyVersion() { return servicePolicies.getPolicyVersion(); }
+
+		/*
+		 * Deltas are served from the change log only when lastKnownVersion is a version this cache moved from, as the
+		 * plugin then has the same policies the deltas were applied to.
+		 */
+		ServicePolicies getCachedDeltas(Long lastKnownVersion) {
+			ServicePolicies ret = deltasByFromVersion.get(lastKnownVersion);
+
+			if (ret == null) {
+				List<List<RangerPolicyDelta>> deltasOfVersions = changeLog.getDeltasOfVersionsSince(lastKnownVersion);
+
+				if (deltasOfVersions != null && deltasOfVersions.size() == 1) {
+					ret = servicePolicyDeltas;
+				} else if (deltasOfVersions != null) {
+					List<RangerPolicyDelta> composedDeltas = composeDeltas(deltasOfVersions);
+
+					if (composedDeltas != null) {
+						ret = copyHeader(servicePolicyDeltas);
+
+						ret.setPolicyDeltas(composedDeltas);
+					}
+				}
+
+				if (ret != null) {
+					cacheDeltas(lastKnownVersion, ret);
+
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("policy-deltas from version " + lastKnownVersion + " are from " + deltasOfVersions.size() + " versions in the change log: deltas-count=" + ret.getPolicyDeltas().size());
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		void cacheDeltas(Long fromVersion, ServicePolicies servicePolicyDeltas) {
+			if (deltasByFromVersion.size() >= Math.max(maxPolicyDeltaVersions, 1)) {
+				deltasByFromVersion.clear();
+			}
+
+			deltasByFromVersion.put(fromVersion, servicePolicyDeltas);
+		}
+	}
+
+	/*
+	 * Composes policy-deltas of consecutive versions into one delta for each changed policy: a policy created and then
+	 * deleted is left out; otherwise the delta has the last state of the policy, and is a create if the first delta
+	 * is a create, a delete if the last delta is a delete, or an update.
+	 *
+	 * Returns null if a delta is not for a policy create, update or delete.
+	 */
+	static List<RangerPolicyDelta> composeDeltas(List<List<RangerPolicyDelta>> deltasOfVersions) {
+		Map<Long, RangerPolicyDelta[]> firstAndLastByPolicyId = new LinkedHashMap<>();
+
+		for (List<RangerPolicyDelta> deltas : deltasOfVersions) {
+			for (RangerPolicyDelta delta : deltas) {
+				int  changeType = delta.getChangeType();
+				Long policyId   = delta.getPolicyId();
+
+				if (policyId == null || (changeType != RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE && changeType != RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE && changeType != RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE)) {
+					LOG.warn("composeDeltas(): unexpected policy-delta:[" + delta + "]. Deltas will be read from the database");
+
+					return null;
+				}
+
+				RangerPolicyDelta[] firstAndLast = firstAndLastByPolicyId.get(policyId);
+
+				if (firstAndLast == null) {
+					firstAndLastByPolicyId.put(policyId, new RangerPolicyDelta[] { delta, delta });
+				} else {
+					firstAndLast[1] = delta;
+				}
+			}
+		}
+
+		List<RangerPolicyDelta> ret = new ArrayList<>(firstAndLastByPolicyId.size());
+
+		for (RangerPolicyDelta[] firstAndLast : firstAndLastByPolicyId.values()) {
+			RangerPolicyDelta first = firstAndLast[0];
+			RangerPolicyDelta last  = firstAndLast[1];
+
+			if (first == last) {
+				ret.add(first);
+			} else {
+				boolean isCreated = first.getChangeType() == RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE;
+				boolean isDeleted = last.getChangeType() == RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE;
+
+				if (isCreated && isDeleted) {
+					continue;
+				}
+
+				int changeType = isCreated ? RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE : isDeleted ? RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE : RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE;
+
+				ret.add(new RangerPolicyDelta(last.getId(), changeType, last.getPoliciesVersion(), last.getPolicy()));
+			}
+		}
+
+		ret.sort(POLICY_DELTA_ID_COMPARATOR);
+
+		return ret;
+	}
+
+	/*
+	 * Copy of everything except the policies and policy-deltas
+	 */
+	private static ServicePolicies copyHeader(ServicePolicies source) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceId(source.getServiceId());
+		ret.setServiceName(source.getServiceName());
+		ret.setServiceDef(source.getServiceDef());
+		ret.setPolicyVersion(source.getPolicyVersion());
+		ret.setPolicyUpdateTime(source.getPolicyUpdateTime());
+		ret.setAuditMode(source.getAuditMode());
+		ret.setSecurityZones(source.getSecurityZones());
+		ret.setServiceConfig(source.getServiceConfig());
+		ret.setPolicies(null);
+
+		if (source.getTagPolicies() != null) {
+			ret.setTagPolicies(copyHeader(source.getTagPolicies()));
+		}
+
+		return ret;
+	}
+
+	private static ServicePolicies.TagPolicies copyHeader(ServicePolicies.TagPolicies source) {
+		ServicePolicies.TagPolicies ret = new ServicePolicies.TagPolicies();
+
+		ret.setServiceId(source.getServiceId());
+		ret.setServiceName(source.getServiceName());
+		ret.setServiceDef(source.getServiceDef());
+		ret.setPolicyVersion(source.getPolicyVersion());
+		ret.setPolicyUpdateTime(source.getPolicyUpdateTime());
+		ret.setAuditMode(source.getAuditMode());
+		ret.setServiceConfig(source.getServiceConfig());
+		ret.setPolicies(null);
+
+		return ret;
+	}
+}
@@ -19,9 +19,9 @@
 
 package org.apache.ranger.common;
 
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
+import org.apache.ranger.plugin.model.RangerServiceResource;
 import org.apache.ranger.plugin.store.TagStore;
 
 import org.apache.commons.logging.Log;
@@ -29,23 +29,35 @@
 import org.apache.ranger.plugin.util.RangerServiceTagsDeltaUtil;
 import org.apache.ranger.plugin.util.ServiceTags;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Cache of tags of each service for download by plugins.
+ *
+ * Tags of a service are kept as a snapshot that is not modified after it is published, so requests read it without
+ * locking. When the tag version in the database changes, one request reloads the tags and publishes a new snapshot;
+ * concurrent requests for the service return the previous snapshot meanwhile, or wait for the reload when there is no
+ * snapshot yet.
+ */
 public class RangerServiceTagsCache {
 	private static final Log LOG = LogFactory.getLog(RangerServiceTagsCache.class);
 
 	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int MAX_TAG_DELTA_VERSIONS   = 10;
 
 	private static volatile RangerServiceTagsCache sInstance = null;
 	private final boolean useServiceTagsCache;
 	private final int waitTimeInSeconds;
 
-	private final Map<String, ServiceTagsWrapper> serviceTagsMap = new HashMap<>();
+	private final Map<String, ServiceTagsWrapper> serviceTagsMap = new ConcurrentHashMap<>();
 
 	public static RangerServiceTagsCache getInstance() {
 		if (sInstance == null) {
@@ -65,24 +77,29 @@ private RangerServiceTagsCache() {
 		waitTimeInSeconds   = config.getInt("ranger.admin.tag.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
 	}
 
-	public void dump() {
+	RangerServiceTagsCache(boolean useServiceTagsCache, int waitTimeInSeconds) {
+		this.useServiceTagsCache = useServiceTagsCache;
+		this.waitTimeInSeconds   = waitTimeInSeconds;
+	}
 
-		if (useServiceTagsCache) {
-			final Set<String> serviceNames;
+	/**
+	 * @return number of times tags were loaded from the database, for all services
+	 */
+	public long getLoadCount() {
+		long ret = 0;
 
-			synchronized (this) {
-				serviceNames = serviceTagsMap.keySet();
-			}
+		for (ServiceTagsWrapper serviceTagsWrapper : serviceTagsMap.values()) {
+			ret += serviceTagsWrapper.loader.getLoadCount();
+		}
 
-			if (CollectionUtils.isNotEmpty(serviceNames)) {
-				ServiceTagsWrapper cachedServiceTagsWrapper;
+		return ret;
+	}
 
-				for (String serviceName : serviceNames) {
-					synchronized (this) {
-						cachedServiceTagsWrapper = serviceTagsMap.get(serviceName);
-					}
-					LOG.debug("serviceName:" + serviceName + ", Cached-MetaData:" + cachedServiceTagsWrapper);
-				}
+	public void dump() {
+
+		if (useServiceTagsCache) {
+			for (Map.Entry<String, ServiceTagsWrapper> entry : serviceTagsMap.entrySet()) {
+				LOG.debug("serviceName:" + entry.getKey() + ", Cached-MetaData:" + entry.getValue());
 			}
 		}
 	}
@@ -112,26 +129,22 @@ public ServiceTags getServiceTags(String serviceName, Long serviceId, Long lastK
 					LOG.error("getServiceTags(" + serviceName + "): failed to get latest tags as tag-store is null!");
 				}
 			} else {
-				ServiceTagsWrapper serviceTagsWrapper;
-
-				synchronized (this) {
-					serviceTagsWrapper = serviceTagsMap.get(serviceName);
-
-					if (serviceTagsWrapper != null) {
-						if (!serviceId.equals(serviceTagsWrapper.getServiceId())) {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("Service [" + serviceName + "] changed service-id from " + serviceTagsWrapper.getServiceId()
-										+ " to " + serviceId);
-								LOG.debug("Recreating serviceTagsWrapper for serviceName [" + serviceName + "]");
-							}
-							serviceTagsMap.remove(serviceName);
-							serviceTagsWrapper = null;
+				ServiceTagsWrapper serviceTagsWrapper = serviceTagsMap.get(serviceName);
+
+				if (serviceTagsWrapper == null || !serviceId.equals(serviceTagsWrapper.getServiceId())) {
+					serviceTagsWrapper = serviceTagsMap.compute(serviceName, (name, existing) -> {
+						if (existing != null && serviceId.equals(existing.getServiceId())) {
+							return existing;
 						}
-					}
-					if (serviceTagsWrapper == null) {
-						serviceTagsWrapper = new ServiceTagsWrapper(serviceId);
-						serviceTagsMap.put(serviceName, serviceTagsWrapper);
-					}
+
+						if (existing != null && LOG.isDebugEnabled()) {
+							LOG.debug("Service [" + serviceName + "] changed service-id from " + existing.getServiceId()
+									+ " to " + serviceId);
+							LOG.debug("Recreating serviceTagsWrapper for serviceName [" + serviceName + "]");
+						}
+
+						return new ServiceTagsWrapper(serviceId);
+					});
 				}
 
 				if (tagStore != null) {
@@ -154,103 +167,65 @@ public ServiceTags getServiceTags(String serviceName, Long serviceId, Long lastK
 	}
 
 	private class ServiceTagsWrapper {
-		final Long serviceId;
-		ServiceTags serviceTags;
-		Date updateTime = null;
-		long longestDbLoadTimeInMs = -1;
-
-		ServiceTagsDeltasCache deltaCache;
-
-		class ServiceTagsDeltasCache {
-			final long        		fromVersion;
-			final ServiceTags 		serviceTagsDelta;
-
-			ServiceTagsDeltasCache(final long fromVersion, ServiceTags serviceTagsDelta) {
-				this.fromVersion         = fromVersion;
-				this.serviceTagsDelta    = serviceTagsDelta;
-			}
-			ServiceTags getServiceTagsDeltaFromVersion(long fromVersion) {
-				return this.fromVersion == fromVersion ? this.serviceTagsDelta : null;
-			}
-		}
-		ReentrantLock lock = new ReentrantLock();
+		final Long                                   serviceId;
+		final RangerCacheLoader<ServiceTagsSnapshot> loader;
+		volatile ServiceTagsSnapshot                 snapshot              = null;
+		volatile long                                longestDbLoadTimeInMs = -1;
 
 		ServiceTagsWrapper(Long serviceId) {
 			this.serviceId = serviceId;
-			serviceTags = null;
+			this.loader    = new RangerCacheLoader<>("RangerServiceTagsCache(serviceId=" + serviceId + ")");
 		}
 
 		Long getServiceId() { return serviceId; }
 
 		ServiceTags getServiceTags() {
-			return serviceTags;
+			ServiceTagsSnapshot snapshot = this.snapshot;
+
+			return snapshot != null ? snapshot.serviceTags : null;
 		}
 
 		Date getUpdateTime() {
-			return updateTime;
+			ServiceTagsSnapshot snapshot = this.snapshot;
+
+			return snapshot != null ? snapshot.updateTime : null;
 		}
 
 		ServiceTags getLatestOrCached(String serviceName, TagStore tagStore, Long lastKnownVersion, boolean needsBackwardCompatibility) throws Exception {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("==> RangerServiceTagsCache.getLatestOrCached(lastKnownVersion=" + lastKnownVersion + ", " + needsBackwardCompatibility + ")");
 			}
-			ServiceTags	ret		   = null;
-			boolean		lockResult = false;
-
-			try {
-				final boolean isCacheCompletelyLoaded;
-
-				lockResult = lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
-				if (lockResult) {
+			ServiceTags               ret      = null;
+			final ServiceTagsSnapshot snapshot = getLatest(serviceName, tagStore);
+
+			if (snapshot == null) {
+				LOG.error("Could not get tags of service:[" + serviceName + "] in [" + waitTimeInSeconds + "] seconds, while loading from database");
+			} else if (needsBackwardCompatibility || snapshot.isReloadedByDQEvent
+					|| lastKnownVersion == -1L || lastKnownVersion.equals(snapshot.getTagVersion())) {
+				// Looking for all tags, or Some disqualifying change encountered
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Need to return all cached ServiceTags: [needsBackwardCompatibility:" + needsBackwardCompatibility + ", isReloadedByDQEvent:" + snapshot.isReloadedByDQEvent + ", lastKnownVersion:" + lastKnownVersion + ", serviceTagsVersion:" + snapshot.getTagVersion() + "]");
+				}
+				ret = snapshot.serviceTags;
+			} else {
+				ServiceTags serviceTagsDelta = snapshot.deltasByFromVersion.get(lastKnownVersion);
 
-					isCacheCompletelyLoaded = getLatest(serviceName, tagStore);
+				if (serviceTagsDelta == null) {
+					serviceTagsDelta = tagStore.getServiceTagsDelta(serviceName, lastKnownVersion);
 
-					if (isCacheCompletelyLoaded) {
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("ServiceTags cache was completely loaded from database ");
-						}
+					if (serviceTagsDelta != null) {
+						snapshot.cacheDelta(lastKnownVersion, serviceTagsDelta);
 					}
-					if (needsBackwardCompatibility || isCacheCompletelyLoaded
-							|| lastKnownVersion == -1L || lastKnownVersion.equals(serviceTags.getTagVersion())) {
-						// Looking for all tags, or Some disqualifying change encountered
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Need to return all cached ServiceTags: [needsBackwardCompatibility:" + needsBackwardCompatibility + ", isCacheCompletelyLoaded:" + isCacheCompletelyLoaded + ", lastKnownVersion:" + lastKnownVersion + ", serviceTagsVersion:" + serviceTags.getTagVersion() + "]");
-						}
-						ret = this.serviceTags;
-					} else {
-						boolean isDeltaCacheReinitialized = false;
-						ServiceTags serviceTagsDelta = this.deltaCache != null ? this.deltaCache.getServiceTagsDeltaFromVersion(lastKnownVersion) : null;
-
-						if (serviceTagsDelta == null) {
-							serviceTagsDelta = tagStore.getServiceTagsDelta(serviceName, lastKnownVersion);
-							isDeltaCacheReinitialized = true;
-						}
-						if (serviceTagsDelta != null) {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("Deltas were requested. Returning deltas from lastKnownVersion:[" + lastKnownVersion + "]");
-							}
-							if (isDeltaCacheReinitialized) {
-								this.deltaCache = new ServiceTagsDeltasCache(lastKnownVersion, serviceTagsDelta);
-							}
-							ret = serviceTagsDelta;
-						} else {
-							LOG.warn("Deltas were requested, but could not get them!! lastKnownVersion:[" + lastKnownVersion + "]; Returning cached ServiceTags:[" + (serviceTags != null ? serviceTags.getTagVersion() : -1L) + "]");
-
-							this.deltaCache = null;
-							ret = this.serviceTags;
-						}
-					}
-				} else {
+				}
+				if (serviceTagsDelta != null) {
 					if (LOG.isDebugEnabled()) {
-						LOG.debug("Could not get lock in [" + waitTimeInSeconds + "] seconds, returning cached ServiceTags");
+						LOG.debug("Deltas were requested. Returning deltas from lastKnownVersion:[" + lastKnownVersion + "]");
 					}
-					ret = this.serviceTags;
-				}
-			} catch (InterruptedException exception) {
-				LOG.error("getLatestOrCached:lock got interrupted..", exception);
-			} finally {
-				if (lockResult) {
-					lock.unlock();
+					ret = serviceTagsDelta;
+				} else {
+					LOG.warn("Deltas were requested, but could not get them!! lastKnownVersion:[" + lastKnownVersion + "]; Returning cached ServiceTags:[" + snapshot.getTagVersion() + "]");
+
+					ret = snapshot.serviceTags;
 				}
 			}
 			if (LOG.isDebugEnabled()) {
@@ -260,93 +235,124 @@ ServiceTags getLatestOrCached(String serviceName, TagStore tagStore, Long lastKn
 			return ret;
 		}
 
-		boolean getLatest(String serviceName, TagStore tagStore) throws Exception {
+		/*
+		 * Returns the snapshot of the version in the database, after loading it if needed. While another request is
+		 * loading, returns the current snapshot; waits for the load only if there is no snapshot yet.
+		 */
+		ServiceTagsSnapshot getLatest(String serviceName, TagStore tagStore) throws Exception {
+			ServiceTagsSnapshot ret            = this.snapshot;
+			final Long          tagVersionInDb = tagStore.getTagVersion(serviceName);
+
+			if (ret == null || tagVersionInDb == null || !tagVersionInDb.equals(ret.getTagVersion())) {
+				final long          maxWaitTimeInMs = ret == null ? TimeUnit.SECONDS.toMillis(waitTimeInSeconds) : 0;
+				ServiceTagsSnapshot loaded          = loader.load(() -> load(serviceName, tagStore, tagVersionInDb), maxWaitTimeInMs);
+
+				if (loaded != null) {
+					ret = loaded;
+				} else {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("ServiceTags are being loaded by another request; returning cached version:[" + (ret != null ? ret.getTagVersion() : -1L) + "]");
+					}
+
+					if (ret == null) {
+						ret = this.snapshot;
+					}
+				}
+			} else {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("ServiceTags Cache already has the latest version, version:[" + ret.getTagVersion() + "]");
+				}
+			}
+
+			return ret;
+		}
+
+		/*
+		 * Called by one request at a time. Builds a new snapshot from the current one and the changes in the database
+		 */
+		private ServiceTagsSnapshot load(String serviceName, TagStore tagStore, Long tagVersionInDb) throws Exception {
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("==> ServiceTagsWrapper.getLatest(" + serviceName + ")");
+				LOG.debug("==> ServiceTagsWrapper.load(" + serviceName + ", tagVersionInDb=" + tagVersionInDb + ")");
 			}
 
-			boolean isCacheCompletelyLoaded = false;
+			final ServiceTagsSnapshot current                  = this.snapshot;
+			final Long                cachedServiceTagsVersion = current != null ? current.getTagVersion() : -1L;
 
-			final Long cachedServiceTagsVersion = serviceTags != null ? serviceTags.getTagVersion() : -1L;
+			// another request might have loaded this version
+			if (current != null && tagVersionInDb != null && tagVersionInDb.equals(cachedServiceTagsVersion)) {
+				return current;
+			}
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("Found ServiceTags in-cache : " + (serviceTags != null));
+				LOG.debug("loading serviceTags from db ... cachedServiceTagsVersion=" + cachedServiceTagsVersion + ", tagVersionInDb=" + tagVersionInDb);
 			}
 
-			Long tagVersionInDb = tagStore.getTagVersion(serviceName);
+			long startTimeMs = System.currentTimeMillis();
 
-			if (serviceTags == null || tagVersionInDb == null || !tagVersionInDb.equals(cachedServiceTagsVersion)) {
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("loading serviceTags from db ... cachedServiceTagsVersion=" + cachedServiceTagsVersion + ", tagVersionInDb=" + tagVersionInDb);
-				}
+			ServiceTags serviceTagsFromDb = tagStore.getServiceTags(serviceName, cachedServiceTagsVersion);
 
-				long startTimeMs = System.currentTimeMillis();
+			long dbLoadTime = System.currentTimeMillis() - startTimeMs;
 
-				ServiceTags serviceTagsFromDb = tagStore.getServiceTags(serviceName, cachedServiceTagsVersion);
+			if (dbLoadTime > longestDbLoadTimeInMs) {
+				longestDbLoadTimeInMs = dbLoadTime;
+			}
 
-				long dbLoadTime = System.currentTimeMillis() - startTimeMs;
+			ServiceTagsSnapshot ret = current;
 
-				if (dbLoadTime > longestDbLoadTimeInMs) {
-					longestDbLoadTimeInMs = dbLoadTime;
-				}
-				updateTime = new Date();
+			if (serviceTagsFromDb != null) {
+				if (current == null) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Initializing ServiceTags cache for the first time");
+					}
+					RangerServiceTagsDeltaUtil.pruneUnusedAttributes(serviceTagsFromDb);
 
-				if (serviceTagsFromDb != null) {
-					if (serviceTags == null) {
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Initializing ServiceTags cache for the first time");
-						}
-						serviceTags = serviceTagsFromDb;
-						this.deltaCache = null;
-						pruneUnusedAttributes();
-						isCacheCompletelyLoaded = true;
-					} else if (!serviceTagsFromDb.getIsDelta()) {
-						// service-tags are loaded because of some disqualifying event
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Complete set of tag are loaded from database, because of some disqualifying event or because tag-delta is not supported");
-						}
-						serviceTags = serviceTagsFromDb;
-						this.deltaCache = null;
-						pruneUnusedAttributes();
-						isCacheCompletelyLoaded = true;
-					} else { // Previously cached service tags are still valid - no disqualifying change
-						// Rebuild tags cache from original tags and deltas
-						if (LOG.isDebugEnabled()) {
-							LOG.debug("Retrieved tag-deltas from database. These will be applied on top of ServiceTags version:[" + cachedServiceTagsVersion + "], tag-deltas:[" + serviceTagsFromDb.getTagVersion() + "]");
-						}
-						RangerServiceTagsDeltaUtil.applyDelta(serviceTags, serviceTagsFromDb);
-						this.deltaCache = new ServiceTagsDeltasCache(cachedServiceTagsVersion, serviceTagsFromDb);
+					ret = new ServiceTagsSnapshot(serviceTagsFromDb, false);
+				} else if (!serviceTagsFromDb.getIsDelta()) {
+					// service-tags are loaded because of some disqualifying event
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Complete set of tag are loaded from database, because of some disqualifying event or because tag-delta is not supported");
 					}
-				} else {
-					LOG.error("Could not get tags from database, from-version:[" + cachedServiceTagsVersion + ")");
-				}
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("ServiceTags old-version:[" + cachedServiceTagsVersion + "], new-version:[" + serviceTags.getTagVersion() + "]");
+					RangerServiceTagsDeltaUtil.pruneUnusedAttributes(serviceTagsFromDb);
+
+					ret = new ServiceTagsSnapshot(serviceTagsFromDb, true);
+				} else { // Previously cached service tags are still valid - no disqualifying change
+					// Rebuild tags cache from original tags and deltas
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Retrieved tag-deltas from database. These will be applied on top of ServiceTags version:[" + cachedServiceTagsVersion + "], tag-deltas:[" + serviceTagsFromDb.getTagVersion() + "]");
+					}
+					// applyDelta() updates the tags it is given, so apply to a copy of the current ones
+					ServiceTags serviceTags = copyOf(current.serviceTags, serviceTagsFromDb);
+
+					RangerServiceTagsDeltaUtil.applyDelta(serviceTags, serviceTagsFromDb);
+
+					ret = new ServiceTagsSnapshot(serviceTags, false);
+
+					ret.cacheDelta(cachedServiceTagsVersion, serviceTagsFromDb);
 				}
+
+				this.snapshot = ret;
 			} else {
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("ServiceTags Cache already has the latest version, version:[" + cachedServiceTagsVersion + "]");
-				}
+				LOG.error("Could not get tags from database, from-version:[" + cachedServiceTagsVersion + ")");
 			}
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("<== ServiceTagsWrapper.getLatest(" + serviceName + "): " + isCacheCompletelyLoaded);
+				LOG.debug("<== ServiceTagsWrapper.load(" + serviceName + "): old-version:[" + cachedServiceTagsVersion + "], new-version:[" + (ret != null ? ret.getTagVersion() : null) + "]");
 			}
 
-			return isCacheCompletelyLoaded;
-		}
-
-		private void pruneUnusedAttributes() {
-			RangerServiceTagsDeltaUtil.pruneUnusedAttributes(this.serviceTags);
+			return ret;
 		}
 
 		StringBuilder toString(StringBuilder sb) {
+			ServiceTagsSnapshot snapshot    = this.snapshot;
+			ServiceTags         serviceTags = snapshot != null ? snapshot.serviceTags : null;
+
 			sb.append("RangerServiceTagsWrapper={");
 
-			sb.append("updateTime=").append(updateTime)
+			sb.append("updateTime=").append(snapshot != null ? snapshot.updateTime : null)
 					.append(", longestDbLoadTimeInMs=").append(longestDbLoadTimeInMs)
 					.append(", Service-Version:").append(serviceTags != null ? serviceTags.getTagVersion() : "null")
-					.append(", Number-Of-Tags:").append(serviceTags != null ? serviceTags.getTags().size() : 0);
+					.append(", Number-Of-Tags:").append(serviceTags != null ? serviceTags.getTags().size() : 0)
+					.append(", Load-Count:").append(loader.getLoadCount());
 
 			sb.append("} ");
 
@@ -362,5 +368,72 @@ public String toString() {
 			return sb.toString();
 		}
 	}
-}
 
+	/*
+	 * Tags of one version of a service. Instances are not modified after they are published, except for adding
+	 * deltas returned to plugins to deltasByFromVersion.
+	 */
+	private static class ServiceTagsSnapshot {
+		final ServiceTags serviceTags;
+		final Date        updateTime;
+		final boolean     isReloadedByDQEvent;
+
+		// deltas returned to plugins for this version, by the version the plugin had
+		final Map<Long, ServiceTags> deltasByFromVersion = new ConcurrentHashMap<>();
+
+		ServiceTagsSnapshot(ServiceTags serviceTags, boolean isReloadedByDQEvent) {
+			this.serviceTags         = serviceTags;
+			this.updateTime          = new Date();
+			this.isReloadedByDQEvent = isReloadedByDQEvent;
+		}
+
+		Long getTagVersion() { return serviceTags.getTagVersion(); }
+
+		void cacheDelta(Long fromVersion, ServiceTags serviceTagsDelta) {
+			if (deltasByFromVersion.size() >= MAX_TAG_DELTA_VERSIONS) {
+				deltasByFromVersion.clear();
+			}
+
+			deltasByFromVersion.put(fromVersion, serviceTagsDelta);
+		}
+	}
+
+	/*
+	 * Copy of the tags, with new containers for tags, service-resources and resource-to-tag mapping. applyDelta() clears
+	 * the signature of each service-resource whose signature the delta changes, so these service-resources are copied too;
+	 * the others are shared with the source.
+	 */
+	private static ServiceTags copyOf(ServiceTags source, ServiceTags delta) {
+		Set<Long> changedResourceIds = new HashSet<>();
+
+		for (RangerServiceResource resource : delta.getServiceResources()) {
+			if (StringUtils.isNotEmpty(resource.getResourceSignature())) {
+				changedResourceIds.add(resource.getId());
+			}
+		}
+
+		List<RangerServiceResource> serviceResources = new ArrayList<>(source.getServiceResources().size());
+
+		for (RangerServiceResource resource : source.getServiceResources()) {
+			serviceResources.add(changedResourceIds.contains(resource.getId()) ? copyOf(resource) : resource);
+		}
+
+		return new ServiceTags(source.getOp(), source.getServiceName(), source.getTagVersion(), source.getTagUpdateTime(), source.getTagDefinitions(),
+		                               new HashMap<>(source.getTags()), serviceResources, new HashMap<>(source.getResourceToTagIds()),
+		                               source.getIsDelta(), source.getTagsChangeExtent());
+	}
+
+	private static RangerServiceResource copyOf(RangerServiceResource source) {
+		RangerServiceResource ret = new RangerServiceResource(source.getGuid(), source.getServiceName(), source.getResourceElements(), source.getResourceSignature(), source.getOwnerUser(), source.getAdditionalInfo());
+
+		ret.setId(source.getId());
+		ret.setIsEnabled(source.getIsEnabled());
+		ret.setCreatedBy(source.getCreatedBy());
+		ret.setUpdatedBy(source.getUpdatedBy());
+		ret.setCreateTime(source.getCreateTime());
+		ret.setUpdateTime(source.getUpdateTime());
+		ret.setVersion(source.getVersion());
+
+		return ret;
+	}
+}
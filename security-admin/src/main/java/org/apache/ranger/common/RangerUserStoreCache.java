@@ -24,22 +24,38 @@
 import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
 import org.apache.ranger.biz.XUserMgr;
 import org.apache.ranger.plugin.model.GroupInfo;
+import org.apache.ranger.plugin.model.RangerUserStoreDelta;
 import org.apache.ranger.plugin.model.UserInfo;
+import org.apache.ranger.plugin.util.RangerCommonConstants;
 import org.apache.ranger.plugin.util.RangerUserStore;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Cache of the userstore for download by plugins. The userstore is reloaded from the database when its version changes.
+ *
+ * Each reload is compared with the previous one, and the changed users and groups are kept in a change log of recent
+ * versions. When userstore deltas are enabled, a plugin that knows one of these versions gets only the changes since
+ * then, instead of all users and groups.
+ */
 public class RangerUserStoreCache {
 	private static final Log LOG = LogFactory.getLog(RangerUserStoreCache.class);
 
-	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int MAX_WAIT_TIME_FOR_UPDATE      = 10;
+	private static final int MAX_USERSTORE_DELTA_VERSIONS  = 100;
 
 	public static volatile RangerUserStoreCache 	sInstance = null;
 	private final int 								waitTimeInSeconds;
-	private final ReentrantLock 					lock = new ReentrantLock();
-	private RangerUserStore 						rangerUserStore;
+	private final boolean							supportsUserStoreDeltas;
+	private final int								maxUserStoreDeltaVersions;
+	private final RangerCacheLoader<UserStoreCacheState>	loader = new RangerCacheLoader<>("RangerUserStoreCache");
+	private volatile UserStoreCacheState			state = null;
 
 	public static RangerUserStoreCache getInstance() {
 		if (sInstance == null) {
@@ -54,67 +70,233 @@ public static RangerUserStoreCache getInstance() {
 
 	private RangerUserStoreCache() {
 		RangerAdminConfig config = RangerAdminConfig.getInstance();
-		waitTimeInSeconds = config.getInt("ranger.admin.userstore.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
-		this.rangerUserStore = new RangerUserStore();
+		waitTimeInSeconds         = config.getInt("ranger.admin.userstore.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		supportsUserStoreDeltas   = config.getBoolean("ranger.admin" + RangerCommonConstants.RANGER_ADMIN_SUFFIX_USERSTORE_DELTA, RangerCommonConstants.RANGER_ADMIN_SUFFIX_USERSTORE_DELTA_DEFAULT);
+		maxUserStoreDeltaVersions = config.getInt("ranger.admin.userstore.delta.max.versions", MAX_USERSTORE_DELTA_VERSIONS);
+
+		LOG.info("RangerUserStoreCache: supportsUserStoreDeltas=" + supportsUserStoreDeltas + ", maxUserStoreDeltaVersions=" + maxUserStoreDeltaVersions);
+	}
+
+	RangerUserStoreCache(int waitTimeInSeconds, boolean supportsUserStoreDeltas, int maxUserStoreDeltaVersions) {
+		this.waitTimeInSeconds         = waitTimeInSeconds;
+		this.supportsUserStoreDeltas   = supportsUserStoreDeltas;
+		this.maxUserStoreDeltaVersions = maxUserStoreDeltaVersions;
 	}
 
 	public RangerUserStore getRangerUserStore() {
-		return this.rangerUserStore;
+		UserStoreCacheState state = this.state;
+
+		return state != null ? state.userStore : new RangerUserStore();
 	}
 
 	public RangerUserStore getLatestRangerUserStoreOrCached(XUserMgr xUserMgr, Long lastKnownUserStoreVersion, Long rangerUserStoreVersionInDB) throws Exception {
-		RangerUserStore ret = null;
+		return getLatestRangerUserStoreOrCached(xUserMgr, lastKnownUserStoreVersion, rangerUserStoreVersionInDB, false);
+	}
 
-		if (lastKnownUserStoreVersion == null || !lastKnownUserStoreVersion.equals(rangerUserStoreVersionInDB)) {
-			ret = getLatestRangerUserStore(xUserMgr, lastKnownUserStoreVersion, rangerUserStoreVersionInDB);
-		} else if (lastKnownUserStoreVersion.equals(rangerUserStoreVersionInDB)) {
+	/**
+	 * @param isDeltaSupportedByPlugin true to return only the changes since lastKnownUserStoreVersion, when available
+	 * @return null if lastKnownUserStoreVersion is the latest version
+	 */
+	public RangerUserStore getLatestRangerUserStoreOrCached(XUserMgr xUserMgr, Long lastKnownUserStoreVersion, Long rangerUserStoreVersionInDB, boolean isDeltaSupportedByPlugin) throws Exception {
+		final RangerUserStore ret;
+
+		if (lastKnownUserStoreVersion != null && lastKnownUserStoreVersion.equals(rangerUserStoreVersionInDB)) {
 			ret = null;
 		} else {
-			ret = getRangerUserStore();
+			ret = getLatestRangerUserStore(xUserMgr, lastKnownUserStoreVersion, rangerUserStoreVersionInDB, isDeltaSupportedByPlugin && supportsUserStoreDeltas);
 		}
 
 		return ret;
 	}
 
 	public RangerUserStore getLatestRangerUserStore(XUserMgr xUserMgr, Long lastKnownUserStoreVersion, Long rangerUserStoreVersionInDB) throws Exception {
-		RangerUserStore ret	 = null;
-		boolean         lockResult   = false;
+		return getLatestRangerUserStore(xUserMgr, lastKnownUserStoreVersion, rangerUserStoreVersionInDB, false);
+	}
+
+	private RangerUserStore getLatestRangerUserStore(XUserMgr xUserMgr, Long lastKnownUserStoreVersion, Long rangerUserStoreVersionInDB, boolean returnDeltas) throws Exception {
+		RangerUserStore ret = null;
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> RangerUserStoreCache.getLatestRangerUserStore(lastKnownUserStoreVersion= " + lastKnownUserStoreVersion + " rangerUserStoreVersionInDB= " + rangerUserStoreVersionInDB + ")");
+			LOG.debug("==> RangerUserStoreCache.getLatestRangerUserStore(lastKnownUserStoreVersion= " + lastKnownUserStoreVersion + " rangerUserStoreVersionInDB= " + rangerUserStoreVersionInDB + " returnDeltas= " + returnDeltas + ")");
 		}
 
-		try {
-			lockResult = lock.tryLock(waitTimeInSeconds, TimeUnit.SECONDS);
+		UserStoreCacheState state = this.state;
 
-			if (lockResult) {
-				final Set<UserInfo> rangerUsersInDB = xUserMgr.getUsers();
-				final Set<GroupInfo> rangerGroupsInDB = xUserMgr.getGroups();
-				final Map<String, Set<String>> userGroups = xUserMgr.getUserGroups();
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("No. of users from DB = " + rangerUsersInDB.size() + " and no. of groups from DB = " + rangerGroupsInDB.size());
-					LOG.debug("No. of userGroupMappings = " + userGroups.size());
-				}
+		if (state == null || state.userStoreVersion < rangerUserStoreVersionInDB) {
+			// while another request loads the userstore, return the cached one; wait for the load only if there is none
+			final long          maxWaitTimeInMs = state == null ? TimeUnit.SECONDS.toMillis(waitTimeInSeconds) : 0;
+			UserStoreCacheState loaded          = loader.load(() -> load(xUserMgr, rangerUserStoreVersionInDB), maxWaitTimeInMs);
 
-				ret = new RangerUserStore(rangerUserStoreVersionInDB, rangerUsersInDB, rangerGroupsInDB, userGroups);
-				rangerUserStore = ret;
+			if (loaded != null) {
+				state = loaded;
 			} else {
 				if (LOG.isDebugEnabled()) {
-					LOG.debug("Could not get lock in [" + waitTimeInSeconds + "] seconds, returning cached RangerUserStore");
+					LOG.debug("RangerUserStore is being loaded by another request, returning cached RangerUserStore");
+				}
+
+				if (state == null) {
+					state = this.state;
 				}
-				ret = getRangerUserStore();
-			}
-		} catch (InterruptedException exception) {
-			LOG.error("RangerUserStoreCache.getLatestRangerUserStore:lock got interrupted..", exception);
-		} finally {
-			if (lockResult) {
-				lock.unlock();
 			}
 		}
 
+		// the cached userstore can be older than lastKnownUserStoreVersion, when loading the latest version timed out
+		if (state != null && (lastKnownUserStoreVersion == null || lastKnownUserStoreVersion < state.userStoreVersion)) {
+			ret = state.getUserStore(lastKnownUserStoreVersion, returnDeltas);
+		}
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerUserStoreCache.getLatestRangerUserStore(lastKnownUserStoreVersion= " + lastKnownUserStoreVersion + " rangerUserStoreVersionInDB= " + rangerUserStoreVersionInDB + " RangerUserStore= " + ret + ")");
 		}
 		return ret;
 	}
-}
 
+	/*
+	 * Called by one request at a time
+	 */
+	private UserStoreCacheState load(XUserMgr xUserMgr, Long rangerUserStoreVersionInDB) throws Exception {
+		UserStoreCacheState state = this.state;
+
+		// another request might have loaded this version
+		if (state == null || state.userStoreVersion < rangerUserStoreVersionInDB) {
+			final Set<UserInfo> rangerUsersInDB = xUserMgr.getUsers();
+			final Set<GroupInfo> rangerGroupsInDB = xUserMgr.getGroups();
+			final Map<String, Set<String>> userGroups = xUserMgr.getUserGroups();
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("No. of users from DB = " + rangerUsersInDB.size() + " and no. of groups from DB = " + rangerGroupsInDB.size());
+				LOG.debug("No. of userGroupMappings = " + userGroups.size());
+			}
+
+			// users and groups updated during the load are labelled with the version read before it; deltas to this
+			// version, computed from this userstore, would not have these updates in the version they were made
+			Long    userStoreVersionAfterLoad = xUserMgr.getUserStoreVersion();
+			boolean isVersionChanged          = userStoreVersionAfterLoad != null && userStoreVersionAfterLoad > rangerUserStoreVersionInDB;
+
+			if (isVersionChanged) {
+				LOG.info("RangerUserStoreCache: userstore version changed from " + rangerUserStoreVersionInDB + " to " + userStoreVersionAfterLoad + " during load; deltas to version " + rangerUserStoreVersionInDB + " are not kept");
+			}
+
+			state      = new UserStoreCacheState(isVersionChanged ? null : state, new RangerUserStore(rangerUserStoreVersionInDB, rangerUsersInDB, rangerGroupsInDB, userGroups), maxUserStoreDeltaVersions);
+			this.state = state;
+		}
+
+		return state;
+	}
+
+	/*
+	 * Userstore of one version, with the changes from recent versions. Instances are not modified after creation, so are
+	 * read without locking.
+	 */
+	static class UserStoreCacheState {
+		final Long                                  userStoreVersion;
+		final RangerUserStore                       userStore;
+		final RangerChangeLog<RangerUserStoreDelta> changeLog;
+
+		UserStoreCacheState(UserStoreCacheState previous, RangerUserStore userStore, int maxDeltaVersions) {
+			this.userStoreVersion = userStore.getUserStoreVersion();
+			this.userStore        = userStore;
+
+			if (previous != null && maxDeltaVersions > 0) {
+				List<RangerUserStoreDelta> deltas    = computeDeltas(previous.userStore, userStore);
+				int                        maxDeltas = getUserCount(userStore) + size(userStore.getGroupAttrMapping());
+
+				// drop the oldest versions when there are too many, or when their deltas are more than all users and groups
+				this.changeLog = previous.changeLog.append(previous.userStoreVersion, deltas, maxDeltaVersions, maxDeltas);
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("RangerUserStoreCache: version " + previous.userStoreVersion + " => " + userStoreVersion + ": " + deltas.size() + " users/groups changed; change log has " + changeLog.getVersionCount() + " versions");
+				}
+			} else {
+				this.changeLog = new RangerChangeLog<>();
+			}
+		}
+
+		/*
+		 * Deltas are returned only when lastKnownUserStoreVersion is a version this cache loaded, as the plugin then has
+		 * the same userstore the change log was computed from.
+		 */
+		RangerUserStore getUserStore(Long lastKnownUserStoreVersion, boolean returnDeltas) {
+			List<RangerUserStoreDelta> deltas = returnDeltas ? changeLog.getDeltasSince(lastKnownUserStoreVersion) : null;
+			RangerUserStore            ret;
+
+			if (deltas != null) {
+				ret = new RangerUserStore();
+
+				ret.setUserStoreVersion(userStoreVersion);
+				ret.setUserStoreUpdateTime(userStore.getUserStoreUpdateTime());
+				ret.setUserStoreDeltas(deltas);
+			} else {
+				ret = userStore;
+			}
+
+			return ret;
+		}
+
+		private static List<RangerUserStoreDelta> computeDeltas(RangerUserStore oldStore, RangerUserStore newStore) {
+			List<RangerUserStoreDelta> ret      = new ArrayList<>();
+			Set<String>                oldUsers = getUserNames(oldStore);
+			Set<String>                newUsers = getUserNames(newStore);
+
+			for (String user : newUsers) {
+				Map<String, String> attrs  = get(newStore.getUserAttrMapping(), user);
+				Set<String>         groups = get(newStore.getUserGroupMapping(), user);
+
+				if (!oldUsers.contains(user) || !Objects.equals(attrs, get(oldStore.getUserAttrMapping(), user)) || !Objects.equals(groups, get(oldStore.getUserGroupMapping(), user))) {
+					ret.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_UPDATE, user, attrs, groups));
+				}
+			}
+
+			for (String user : oldUsers) {
+				if (!newUsers.contains(user)) {
+					ret.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_USER_DELETE, user, null, null));
+				}
+			}
+
+			Map<String, Map<String, String>> oldGroupAttrs = oldStore.getGroupAttrMapping();
+			Map<String, Map<String, String>> newGroupAttrs = newStore.getGroupAttrMapping();
+
+			if (newGroupAttrs != null) {
+				for (Map.Entry<String, Map<String, String>> entry : newGroupAttrs.entrySet()) {
+					if (!Objects.equals(entry.getValue(), get(oldGroupAttrs, entry.getKey()))) {
+						ret.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_GROUP_UPDATE, entry.getKey(), entry.getValue(), null));
+					}
+				}
+			}
+
+			if (oldGroupAttrs != null) {
+				for (String group : oldGroupAttrs.keySet()) {
+					if (newGroupAttrs == null || !newGroupAttrs.containsKey(group)) {
+						ret.add(new RangerUserStoreDelta(RangerUserStoreDelta.CHANGE_TYPE_GROUP_DELETE, group, null, null));
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		private static Set<String> getUserNames(RangerUserStore userStore) {
+			Set<String> ret = new HashSet<>();
+
+			if (userStore.getUserAttrMapping() != null) {
+				ret.addAll(userStore.getUserAttrMapping().keySet());
+			}
+
+			if (userStore.getUserGroupMapping() != null) {
+				ret.addAll(userStore.getUserGroupMapping().keySet());
+			}
+
+			return ret;
+		}
+
+		private static int getUserCount(RangerUserStore userStore) {
+			return Math.max(size(userStore.getUserAttrMapping()), size(userStore.getUserGroupMapping()));
+		}
+
+		private static int size(Map<?, ?> map) {
+			return map != null ? map.size() : 0;
+		}
+
+		private static <T> T get(Map<String, T> map, String key) {
+			return map != null ? map.get(key) : null;
+		}
+	}
+}
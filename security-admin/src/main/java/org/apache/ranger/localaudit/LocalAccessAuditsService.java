@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.localaudit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.utils.RangerLocalAuditQuery;
+import org.apache.ranger.audit.utils.RangerLocalAuditStore;
+import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.common.SearchCriteria;
+import org.apache.ranger.entity.XXService;
+import org.apache.ranger.entity.XXServiceDef;
+import org.apache.ranger.view.VXAccessAudit;
+import org.apache.ranger.view.VXAccessAuditList;
+import org.apache.ranger.view.VXLong;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Serves access audits from the ORC segments written by the localstore audit destination, for environments without
+ * Solr or Elasticsearch. The directory is configured with ranger.audit.local.dir; audits written by plugins on other
+ * hosts are visible when the directory is on a shared filesystem.
+ */
+@Service
+@Scope("singleton")
+public class LocalAccessAuditsService extends org.apache.ranger.AccessAuditsService {
+	private static final Logger LOGGER = Logger.getLogger(LocalAccessAuditsService.class);
+
+	public static final String PROP_AUDIT_LOCAL_DIR = "ranger.audit.local.dir";
+
+	private static final int    UUID_LENGTH        = 36;
+	private static final String SORT_BY_EVENT_TIME = "eventTime";
+
+	private volatile RangerLocalAuditStore store = null;
+
+	public VXAccessAuditList searchXAccessAudits(SearchCriteria searchCriteria) {
+		Map<String, Object> paramList = searchCriteria.getParamList();
+
+		updateUserExclusion(paramList);
+
+		RangerLocalAuditQuery query = toQuery(searchCriteria);
+
+		query.setStartIndex(searchCriteria.getStartIndex());
+		query.setMaxRows(searchCriteria.getMaxRows());
+
+		RangerLocalAuditStore.QueryResult result = runQuery(query);
+		List<VXAccessAudit>               audits = new ArrayList<VXAccessAudit>();
+
+		for (AuthzAuditEvent event : result.getEvents()) {
+			audits.add(populateViewBean(event));
+		}
+
+		VXAccessAuditList returnList = new VXAccessAuditList();
+		returnList.setPageSize(searchCriteria.getMaxRows());
+		returnList.setResultSize(audits.size());
+		returnList.setTotalCount(result.getTotalCount());
+		returnList.setStartIndex(searchCriteria.getStartIndex());
+		returnList.setVXAccessAudits(audits);
+		return returnList;
+	}
+
+	public VXLong getXAccessAuditSearchCount(SearchCriteria searchCriteria) {
+		updateUserExclusion(searchCriteria.getParamList());
+
+		RangerLocalAuditQuery query = toQuery(searchCriteria);
+
+		query.setMaxRows(0);
+
+		VXLong vXLong = new VXLong();
+		vXLong.setValue(runQuery(query).getTotalCount());
+		return vXLong;
+	}
+
+	RangerLocalAuditQuery toQuery(SearchCriteria searchCriteria) {
+		RangerLocalAuditQuery ret = new RangerLocalAuditQuery();
+
+		Object startDate = searchCriteria.getParamValue("startDate");
+		Object endDate   = searchCriteria.getParamValue("endDate");
+		String eventId   = toString(searchCriteria.getParamValue("eventId"));
+
+		if (startDate instanceof Date) {
+			ret.setStartTime(((Date) startDate).getTime());
+		}
+
+		if (endDate instanceof Date) {
+			ret.setEndTime(((Date) endDate).getTime());
+		}
+
+		ret.setUsers(toList(searchCriteria.getParamValue("requestUser")));
+
+		List<String> excludeUsers = new ArrayList<String>();
+
+		excludeUsers.addAll(toList(searchCriteria.getParamValue("-requestUser")));
+		excludeUsers.addAll(toList(searchCriteria.getParamValue("excludeUser")));
+
+		ret.setExcludeUsers(excludeUsers);
+		ret.setResourceContains(toString(searchCriteria.getParamValue("resourcePath")));
+		ret.setRepoName(toString(searchCriteria.getParamValue("repoName")));
+		ret.setAccessType(toString(searchCriteria.getParamValue("accessType")));
+		ret.setEventId(eventId != null ? eventId : toString(searchCriteria.getParamValue("id")));
+		ret.setResourceType(toString(searchCriteria.getParamValue("resourceType")));
+		ret.setAction(toString(searchCriteria.getParamValue("action")));
+		ret.setResultReason(toString(searchCriteria.getParamValue("reason")));
+		ret.setAclEnforcer(toString(searchCriteria.getParamValue("aclEnforcer")));
+		ret.setAgentId(toString(searchCriteria.getParamValue("agentId")));
+		ret.setAgentHostContains(toString(searchCriteria.getParamValue("agentHost")));
+		ret.setClientIP(toString(searchCriteria.getParamValue("clientIP")));
+		ret.setSessionId(toString(searchCriteria.getParamValue("sessionId")));
+		ret.setRequestDataContains(toString(searchCriteria.getParamValue("requestData")));
+		ret.setLogType(toString(searchCriteria.getParamValue("auditType")));
+		ret.setCluster(toString(searchCriteria.getParamValue("cluster")));
+		ret.setZoneNames(toList(searchCriteria.getParamValue("zoneName")));
+		ret.setTagsContains(toString(searchCriteria.getParamValue("tags")));
+
+		Long accessResult    = toLong(searchCriteria, "accessResult");
+		Long repoType        = toLong(searchCriteria, "repoType");
+		Long excludeRepoType = toLong(searchCriteria, "-repoType");
+
+		ret.setAccessResult(accessResult != null ? accessResult.intValue() : null);
+		ret.setPolicyId(toLong(searchCriteria, "policyId"));
+		ret.setRepoType(repoType != null ? repoType.intValue() : null);
+		ret.setExcludeRepoType(excludeRepoType != null ? excludeRepoType.intValue() : null);
+
+		// segments are sorted only by event time, the only sort field of access audits
+		String sortBy = searchCriteria.getSortBy();
+
+		if (StringUtils.isNotBlank(sortBy) && !SORT_BY_EVENT_TIME.equalsIgnoreCase(sortBy.trim())) {
+			LOGGER.warn("Unsupported sortBy for local audit store: " + sortBy);
+
+			throw restErrorUtil.createRESTException("Unsupported sortBy: " + sortBy, MessageEnums.INVALID_INPUT_DATA);
+		}
+
+		ret.setSortAscending("asc".equalsIgnoreCase(StringUtils.trim(searchCriteria.getSortType())));
+
+		return ret;
+	}
+
+	private RangerLocalAuditStore.QueryResult runQuery(RangerLocalAuditQuery query) {
+		try {
+			return getStore().query(query);
+		} catch (IOException e) {
+			LOGGER.warn(String.format("Local audit store query failed: %s", e.getMessage()));
+			throw restErrorUtil.createRESTException(
+					"Error querying local audit store",
+					MessageEnums.ERROR_SYSTEM);
+		}
+	}
+
+	private RangerLocalAuditStore getStore() throws IOException {
+		RangerLocalAuditStore ret = store;
+
+		if (ret == null) {
+			String dir = PropertiesUtil.getProperty(PROP_AUDIT_LOCAL_DIR);
+
+			if (StringUtils.isBlank(dir)) {
+				LOGGER.warn(PROP_AUDIT_LOCAL_DIR + " is not configured, so not running the query.");
+				throw restErrorUtil.createRESTException(
+						"Local audit store is not configured",
+						MessageEnums.ERROR_SYSTEM);
+			}
+
+			ret = new RangerLocalAuditStore(dir.trim());
+
+			store = ret;
+		}
+
+		return ret;
+	}
+
+	private VXAccessAudit populateViewBean(AuthzAuditEvent event) {
+		VXAccessAudit accessAudit = new VXAccessAudit();
+
+		if (event.getEventId() != null) {
+			accessAudit.setId(toAuditId(event.getEventId()));
+		}
+
+		accessAudit.setClusterName(event.getClusterName());
+		accessAudit.setZoneName(event.getZoneName());
+		accessAudit.setAgentHost(event.getAgentHostname());
+		accessAudit.setPolicyVersion(event.getPolicyVersion());
+		accessAudit.setAccessType(event.getAccessType());
+		accessAudit.setAclEnforcer(event.getAclEnforcer());
+		accessAudit.setAgentId(event.getAgentId());
+		accessAudit.setRepoName(event.getRepositoryName());
+		accessAudit.setSessionId(event.getSessionId());
+		accessAudit.setRequestUser(event.getUser());
+		accessAudit.setRequestData(event.getRequestData());
+		accessAudit.setResourcePath(event.getResourcePath());
+		accessAudit.setClientIP(event.getClientIP());
+		accessAudit.setAccessResult(event.getAccessResult());
+		accessAudit.setPolicyId(event.getPolicyId());
+		accessAudit.setRepoType(event.getRepositoryType());
+		accessAudit.setResourceType(event.getResourceType());
+		accessAudit.setResultReason(event.getResultReason());
+		accessAudit.setAction(event.getAction());
+		accessAudit.setEventTime(event.getEventTime());
+		accessAudit.setSequenceNumber(event.getSeqNum());
+		accessAudit.setEventCount(event.getEventCount());
+		accessAudit.setEventDuration(event.getEventDurationMS());
+
+		if (!event.getTags().isEmpty()) {
+			accessAudit.setTags(StringUtils.join(event.getTags(), ","));
+		}
+
+		if (event.getRepositoryName() != null && daoManager != null) {
+			XXService xxService = daoManager.getXXService().findByName(event.getRepositoryName());
+
+			if (xxService != null) {
+				accessAudit.setRepoDisplayName(xxService.getDisplayName());
+			}
+
+			XXServiceDef xServiceDef = daoManager.getXXServiceDef().getById((long) event.getRepositoryType());
+
+			if (xServiceDef != null) {
+				accessAudit.setServiceType(xServiceDef.getName());
+				accessAudit.setServiceTypeDisplayName(xServiceDef.getDisplayName());
+			}
+		}
+
+		return accessAudit;
+	}
+
+	/*
+	 * Segments have no numeric ID column, so the ID is derived from the event ID stored with the event: an audit has
+	 * the same ID in every query. Event IDs of plugins are a UUID, or a UUID and a sequence number ("<uuid>-<n>"); these
+	 * are folded to 64 bits, with the sequence number multiplied by an odd constant so that the events of one UUID get
+	 * distinct IDs. Other event IDs use their hash code, which can collide.
+	 */
+	static long toAuditId(String eventId) {
+		long ret;
+
+		try {
+			String uuidStr = eventId;
+			long   seqNum  = 0;
+
+			if (eventId.length() > UUID_LENGTH && eventId.charAt(UUID_LENGTH) == '-') {
+				uuidStr = eventId.substring(0, UUID_LENGTH);
+				seqNum  = Long.parseLong(eventId.substring(UUID_LENGTH + 1));
+			}
+
+			UUID uuid = UUID.fromString(uuidStr);
+
+			ret = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits() ^ (seqNum * 0x9E3779B97F4A7C15L);
+		} catch (IllegalArgumentException excp) { // includes NumberFormatException
+			ret = eventId.hashCode();
+		}
+
+		return ret;
+	}
+
+	private static List<String> toList(Object value) {
+		List<String> ret = new ArrayList<String>();
+
+		if (value instanceof Collection) {
+			for (Object val : (Collection<?>) value) {
+				if (val != null && StringUtils.isNotBlank(val.toString())) {
+					ret.add(val.toString());
+				}
+			}
+		} else if (value != null && StringUtils.isNotBlank(value.toString())) {
+			Collections.addAll(ret, StringUtils.split(value.toString(), ","));
+		}
+
+		return ret;
+	}
+
+	private static String toString(Object value) {
+		return value == null || StringUtils.isBlank(value.toString()) ? null : value.toString();
+	}
+
+	// numeric search fields are set as Integer or Long by SearchUtil, and as String by other callers
+	private Long toLong(SearchCriteria searchCriteria, String name) {
+		Object value = searchCriteria.getParamValue(name);
+		Long   ret   = null;
+
+		if (value instanceof Number) {
+			ret = ((Number) value).longValue();
+		} else if (toString(value) != null) {
+			try {
+				ret = Long.valueOf(value.toString().trim());
+			} catch (NumberFormatException excp) {
+				LOGGER.warn("Invalid value for " + name + ": " + value);
+
+				throw restErrorUtil.createRESTException("Invalid value for " + name + ": " + value, MessageEnums.INVALID_INPUT_DATA);
+			}
+		}
+
+		return ret;
+	}
+}
@@ -60,6 +60,8 @@
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
 import org.apache.ranger.plugin.util.GrantRevokeRoleRequest;
+import org.apache.ranger.plugin.util.RangerPluginCapability;
+import org.apache.ranger.plugin.util.RangerPluginCapability.RangerPluginFeature;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.apache.ranger.plugin.util.RangerRoles;
 import org.apache.ranger.plugin.util.SearchFilter;
@@ -673,7 +675,7 @@ public RangerRoles getRangerRolesIfUpdated(
                 lastKnownRoleVersion = Long.valueOf(-1);
             }
             try {
-                RangerRoles roles = roleStore.getRoles(serviceName, lastKnownRoleVersion);
+                RangerRoles roles = roleStore.getRoles(serviceName, lastKnownRoleVersion, RangerPluginCapability.isSupported(pluginCapabilities, RangerPluginFeature.RANGER_PLUGIN_CAPABILITY_ROLE_DELTAS));
                 if (roles == null) {
                     downloadedVersion = lastKnownRoleVersion;
                     httpCode = HttpServletResponse.SC_NOT_MODIFIED;
@@ -770,7 +772,7 @@ public RangerRoles getSecureRangerRolesIfUpdated(
                 }
 
                 if (isAllowed) {
-                    RangerRoles roles = roleStore.getRoles(serviceName, lastKnownRoleVersion);
+                    RangerRoles roles = roleStore.getRoles(serviceName, lastKnownRoleVersion, RangerPluginCapability.isSupported(pluginCapabilities, RangerPluginFeature.RANGER_PLUGIN_CAPABILITY_ROLE_DELTAS));
                     if (roles == null) {
                         downloadedVersion = lastKnownRoleVersion;
                         httpCode = HttpServletResponse.SC_NOT_MODIFIED;
@@ -82,6 +82,7 @@
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerConstants;
 import org.apache.ranger.common.RangerSearchUtil;
+import org.apache.ranger.common.RangerServicePoliciesCache;
 import org.apache.ranger.common.RangerValidatorFactory;
 import org.apache.ranger.common.ServiceUtil;
 import org.apache.ranger.common.UserSessionBase;
@@ -118,6 +119,7 @@
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
 import org.apache.ranger.plugin.store.PList;
 import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.CompactServicePolicies;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.JsonUtilsV2;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
@@ -3179,6 +3181,59 @@ public ServicePolicies getSecureServicePoliciesIfUpdated(
 		return ret;
 	}
 
+	@GET
+	@Path("/policies/compact/download/{serviceName}")
+	@Produces({ CompactServicePolicies.MIME_TYPE })
+	public byte[] getCompactServicePoliciesIfUpdated(
+			@PathParam("serviceName") String serviceName,
+			@QueryParam("lastKnownVersion") Long lastKnownVersion,
+			@DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime,
+			@QueryParam("pluginId") String pluginId,
+			@DefaultValue("") @QueryParam("clusterName") String clusterName,
+			@DefaultValue("") @QueryParam("zoneName") String zoneName,
+			@DefaultValue("false") @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas,
+			@DefaultValue("") @QueryParam("pluginCapabilities") String pluginCapabilities,
+			@Context HttpServletRequest request) throws Exception {
+		ServicePolicies policies = getServicePoliciesIfUpdated(serviceName, lastKnownVersion, lastActivationTime, pluginId, clusterName, zoneName, supportsPolicyDeltas, pluginCapabilities, request);
+
+		return toCompactServicePolicies(serviceName, lastKnownVersion, supportsPolicyDeltas, policies);
+	}
+
+	@GET
+	@Path("/secure/policies/compact/download/{serviceName}")
+	@Produces({ CompactServicePolicies.MIME_TYPE })
+	public byte[] getSecureCompactServicePoliciesIfUpdated(
+			@PathParam("serviceName") String serviceName,
+			@QueryParam("lastKnownVersion") Long lastKnownVersion,
+			@DefaultValue("0") @QueryParam("lastActivationTime") Long lastActivationTime,
+			@QueryParam("pluginId") String pluginId,
+			@DefaultValue("") @QueryParam("clusterName") String clusterName,
+			@DefaultValue("") @QueryParam("zoneName") String zoneName,
+			@DefaultValue("false") @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas,
+			@DefaultValue("") @QueryParam("pluginCapabilities") String pluginCapabilities,
+			@Context HttpServletRequest request) throws Exception {
+		ServicePolicies policies = getSecureServicePoliciesIfUpdated(serviceName, lastKnownVersion, lastActivationTime, pluginId, clusterName, zoneName, supportsPolicyDeltas, pluginCapabilities, request);
+
+		return toCompactServicePolicies(serviceName, lastKnownVersion, supportsPolicyDeltas, policies);
+	}
+
+	// the payload is encoded once per policy version and kind of download, and kept in RangerServicePoliciesCache
+	private byte[] toCompactServicePolicies(String serviceName, Long lastKnownVersion, Boolean supportsPolicyDeltas, ServicePolicies policies) {
+		try {
+			byte[] ret = RangerServicePoliciesCache.getInstance().getCompactServicePolicies(serviceName, lastKnownVersion, !supportsPolicyDeltas, policies);
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("toCompactServicePolicies(" + serviceName + "): policyVersion=" + policies.getPolicyVersion() + ", size=" + ret.length);
+			}
+
+			return ret;
+		} catch (IOException excp) {
+			LOG.error("toCompactServicePolicies(" + serviceName + ") failed", excp);
+
+			throw restErrorUtil.createRESTException(excp.getMessage());
+		}
+	}
+
 	@DELETE
 	@Path("/server/policydeltas")
 	@PreAuthorize("hasRole('ROLE_SYS_ADMIN')")
@@ -63,6 +63,8 @@
 import org.apache.ranger.plugin.model.RangerPluginInfo;
 import org.apache.ranger.plugin.model.RangerService;
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.plugin.util.RangerPluginCapability;
+import org.apache.ranger.plugin.util.RangerPluginCapability.RangerPluginFeature;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.apache.ranger.plugin.util.RangerUserStore;
 import org.apache.ranger.security.context.RangerAPIList;
@@ -1322,7 +1324,7 @@ public RangerUserStore getSecureRangerUserStoreIfUpdated(@PathParam("serviceName
 				}
 
 				if (isAllowed) {
-					RangerUserStore rangerUserStore = xUserMgr.getRangerUserStore(lastKnownUserStoreVersion);
+					RangerUserStore rangerUserStore = xUserMgr.getRangerUserStore(lastKnownUserStoreVersion, RangerPluginCapability.isSupported(pluginCapabilities, RangerPluginFeature.RANGER_PLUGIN_CAPABILITY_USERSTORE_DELTAS));
 					if (rangerUserStore == null) {
 						downloadedVersion = lastKnownUserStoreVersion;
 						httpCode = HttpServletResponse.SC_NOT_MODIFIED;
@@ -1389,7 +1391,7 @@ public RangerUserStore getRangerUserStoreIfUpdated(@PathParam("serviceName") Str
 					lastKnownUserStoreVersion = Long.valueOf(-1);
 				}
 				try {
-					RangerUserStore rangerUserStore = xUserMgr.getRangerUserStore(lastKnownUserStoreVersion);
+					RangerUserStore rangerUserStore = xUserMgr.getRangerUserStore(lastKnownUserStoreVersion, RangerPluginCapability.isSupported(pluginCapabilities, RangerPluginFeature.RANGER_PLUGIN_CAPABILITY_USERSTORE_DELTAS));
 					if (rangerUserStore == null) {
 						downloadedVersion = lastKnownUserStoreVersion;
 						httpCode = HttpServletResponse.SC_NOT_MODIFIED;
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.service.filter;
+
+import java.util.regex.Pattern;
+
+import com.sun.jersey.api.container.filter.GZIPContentEncodingFilter;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+
+/*
+ * Compresses responses of the policy, tag, role and user-store downloads by plugins, for clients that send
+ * Accept-Encoding: gzip. Responses of all other REST APIs are left as is.
+ */
+public class RangerDownloadGZIPFilter extends GZIPContentEncodingFilter {
+	static final Pattern DOWNLOAD_PATH = Pattern.compile("^/?(plugins/(secure/)?policies/(compact/)?|tags/(secure/)?|roles/(secure/)?|xusers/(secure/)?)download/.*");
+
+	@Override
+	public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+		return isDownload(request.getPath()) ? super.filter(request, response) : response;
+	}
+
+	static boolean isDownload(String path) {
+		return path != null && DOWNLOAD_PATH.matcher(path).matches();
+	}
+}
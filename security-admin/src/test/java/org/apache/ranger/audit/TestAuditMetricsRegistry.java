@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.ObjectName;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuditHistogram;
+import org.apache.ranger.audit.provider.AuditMetricsRegistry;
+import org.apache.ranger.audit.provider.BaseAuditHandler;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditBatchQueue;
+import org.apache.ranger.audit.queue.AuditFileSpool;
+import org.apache.ranger.audit.queue.AuditQueue;
+import org.junit.Test;
+
+public class TestAuditMetricsRegistry {
+
+	@Test
+	public void testHistogram() {
+		AuditHistogram histogram = new AuditHistogram();
+
+		for (int i = 1; i <= 10000; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals("count", 10000, histogram.getCount());
+		assertEquals("max", 10000, histogram.getMax());
+		assertEquals("mean", 5000.5, histogram.getMean(), 0.001);
+		assertEquals("p50", 5000, histogram.getValueAtPercentile(50), 5000 / 32);
+		assertEquals("p99", 9900, histogram.getValueAtPercentile(99), 9900 / 32);
+		assertEquals("p100", 10000, histogram.getValueAtPercentile(100));
+
+		histogram = new AuditHistogram();
+
+		histogram.record(7);
+		histogram.record(-1);
+
+		assertEquals("small values are exact", 7, histogram.getValueAtPercentile(100));
+		assertEquals("negative values are recorded as 0", 0, histogram.getValueAtPercentile(50));
+		assertEquals("empty histogram", 0, new AuditHistogram().getValueAtPercentile(99));
+	}
+
+	@Test
+	public void testQueueMetrics() throws Exception {
+		String     basePropName = "testAuditMetricsQueue_" + MiscUtil.generateUniqueId();
+		Properties props        = new Properties();
+
+		// metrics are looked up by queue name, which is "batch" unless set
+		props.put(basePropName + "." + BaseAuditHandler.PROP_NAME, basePropName);
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, "3");
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "20");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, "1000");
+
+		TestConsumer    testConsumer = new TestConsumer();
+		AuditBatchQueue queue        = new AuditBatchQueue(testConsumer);
+
+		queue.init(props, basePropName);
+		queue.start();
+
+		for (int i = 0; i < 10; i++) {
+			queue.log(createEvent(1000));
+		}
+
+		// Let's wait for second
+		Thread.sleep(2000);
+
+		queue.waitToComplete();
+
+		Map<String, Object> metrics = getMetrics(queue.getName());
+
+		assertEquals("totalCount", 10L, metrics.get("totalCount"));
+		assertEquals("successCount", 10L, metrics.get("successCount"));
+		assertEquals("queueDepth", 0, metrics.get("queueDepth"));
+		assertEquals("queueCapacity", 20, metrics.get("queueCapacity"));
+
+		Map<?, ?> batchSize = (Map<?, ?>) metrics.get("batchSize");
+		Map<?, ?> latency   = (Map<?, ?>) metrics.get("deliveryLatencyMS");
+
+		assertEquals("batch count", 4L, batchSize.get("count"));
+		assertEquals("batch max", 3L, batchSize.get("max"));
+		assertEquals("delivered count", 10L, latency.get("count"));
+		assertTrue("delivery latency includes time before the event was queued", (Long) latency.get("p50") >= 1000);
+
+		Object jmxValue = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(AuditMetricsRegistry.MBEAN_NAME), queue.getName() + ".successCount");
+
+		assertEquals("successCount over JMX", 10L, jmxValue);
+
+		queue.stop();
+		queue.waitToComplete();
+
+		assertNull("unregistered on stop", AuditMetricsRegistry.getInstance().getSnapshot().get(queue.getName()));
+	}
+
+	@Test
+	public void testSameName() throws Exception {
+		String          name   = "testAuditMetricsName_" + MiscUtil.generateUniqueId();
+		AuditBatchQueue queue1 = createQueue(name, 10);
+		AuditBatchQueue queue2 = createQueue(name, 20);
+		AuditBatchQueue queue3 = createQueue(name, 30);
+
+		// names are in the order the queues were registered
+		for (int i = 0; i < 3; i++) {
+			assertEquals(10, getMetrics(name).get("queueCapacity"));
+			assertEquals(20, getMetrics(name + "#2").get("queueCapacity"));
+			assertEquals(30, getMetrics(name + "#3").get("queueCapacity"));
+		}
+
+		queue1.stop();
+
+		assertEquals("replacement takes the name of a stopped queue", 20, getMetrics(name).get("queueCapacity"));
+		assertEquals(30, getMetrics(name + "#2").get("queueCapacity"));
+
+		queue2.stop();
+		queue3.stop();
+	}
+
+	@Test
+	public void testSpoolMetrics() throws Exception {
+		String     basePropName = "testAuditMetricsSpool_" + MiscUtil.generateUniqueId();
+		Properties props        = new Properties();
+
+		// metrics are looked up by queue name, which is "batch" unless set
+		props.put(basePropName + "." + BaseAuditHandler.PROP_NAME, basePropName);
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, "3");
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "20");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, "" + Integer.MAX_VALUE);
+		props.put(basePropName + "." + AuditQueue.PROP_FILE_SPOOL_ENABLE, "true");
+		// spool the events after the first failed batch, without waiting for the queue to fill
+		props.put(basePropName + "." + AuditQueue.PROP_FILE_SPOOL_QUEUE_THRESHOLD, "0");
+		props.put(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, "target");
+		props.put(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, "500");
+
+		TestConsumer testConsumer = new TestConsumer();
+
+		testConsumer.isDown = true;
+
+		AuditBatchQueue queue = new AuditBatchQueue(testConsumer);
+
+		queue.init(props, basePropName);
+		queue.start();
+
+		for (int i = 0; i < 9; i++) {
+			queue.log(createEvent(0));
+		}
+
+		// Let's wait for second
+		Thread.sleep(2000);
+
+		Map<String, Object> metrics = getMetrics(queue.getName());
+		Map<?, ?>           spool   = (Map<?, ?>) metrics.get("spool");
+
+		assertEquals("stashedCount", 9L, metrics.get("stashedCount"));
+		assertNotNull("spool", spool);
+		assertTrue("spoolBytes", (Long) spool.get("spoolBytes") > 0);
+		assertTrue("spoolFiles", (Integer) spool.get("spoolFiles") > 0);
+		assertTrue("replayLagMS", (Long) spool.get("replayLagMS") >= 0);
+		assertNull("nothing delivered", metrics.get("deliveryLatencyMS"));
+
+		testConsumer.isDown = false;
+
+		for (int i = 0; i < 100 && (Integer) spool.get("spoolFiles") > 0; i++) {
+			Thread.sleep(100);
+
+			spool = (Map<?, ?>) getMetrics(queue.getName()).get("spool");
+		}
+
+		assertEquals("spoolFiles after delivery", 0, spool.get("spoolFiles"));
+		assertEquals("spoolBytes after delivery", 0L, spool.get("spoolBytes"));
+		assertEquals("replayLagMS after delivery", 0L, spool.get("replayLagMS"));
+
+		queue.stop();
+		queue.waitToComplete(5000);
+	}
+
+	private AuditBatchQueue createQueue(String name, int queueSize) {
+		String     basePropName = name + "_" + queueSize;
+		Properties props        = new Properties();
+
+		props.put(basePropName + "." + BaseAuditHandler.PROP_NAME, name);
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "" + queueSize);
+
+		AuditBatchQueue ret = new AuditBatchQueue(new TestConsumer());
+
+		ret.init(props, basePropName);
+
+		return ret;
+	}
+
+	private Map<String, Object> getMetrics(String name) {
+		Object ret = AuditMetricsRegistry.getInstance().getSnapshot().get(name);
+
+		assertNotNull("metrics of " + name, ret);
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> metrics = (Map<String, Object>) ret;
+
+		return metrics;
+	}
+
+	private AuthzAuditEvent createEvent(long ageMS) {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setEventTime(new Date(System.currentTimeMillis() - ageMS));
+
+		return event;
+	}
+}
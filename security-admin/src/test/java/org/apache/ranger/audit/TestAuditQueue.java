@@ -25,23 +25,31 @@
 import java.io.File;
 import java.io.FileReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.destination.FileAuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.AuditProviderFactory;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.audit.provider.MultiDestAuditProvider;
+import org.apache.ranger.audit.queue.AuditAggregationQueue;
 import org.apache.ranger.audit.queue.AuditAsyncQueue;
 import org.apache.ranger.audit.queue.AuditBatchQueue;
 import org.apache.ranger.audit.queue.AuditFileSpool;
 import org.apache.ranger.audit.queue.AuditQueue;
+import org.apache.ranger.audit.queue.AuditRingBufferQueue;
+import org.apache.ranger.audit.queue.AuditSegmentSpool;
 import org.apache.ranger.audit.queue.AuditSummaryQueue;
+import org.apache.ranger.plugin.audit.RangerAuditSampler;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -103,6 +111,263 @@ public void testAuditSummaryQueue() {
 		commonTestSummary(testConsumer, queue);
 	}
 
+	@Test
+	public void testAuditAggregationQueue() {
+		logger.debug("testAuditAggregationQueue()...");
+		TestConsumer testConsumer = new TestConsumer();
+		AuditAggregationQueue queue = new AuditAggregationQueue(testConsumer);
+
+		Properties props = new Properties();
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_INTERVAL, "" + 300);
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_THREADS, "" + 1);
+		queue.init(props, BaseAuditHandler.PROP_DEFAULT_PREFIX);
+
+		queue.start();
+
+		commonTestSummary(testConsumer, queue);
+	}
+
+	@Test
+	public void testAuditAggregationQueueDimensions() {
+		logger.debug("testAuditAggregationQueueDimensions()...");
+		TestConsumer testConsumer = new TestConsumer();
+		AuditAggregationQueue queue = new AuditAggregationQueue(testConsumer);
+
+		Properties props = new Properties();
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_DIMENSIONS, "user, result");
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_THREADS, "" + 1);
+		queue.init(props, BaseAuditHandler.PROP_DEFAULT_PREFIX);
+
+		queue.start();
+
+		// resource and access type are not dimensions, so only user and result make the key
+		queue.log(createEvent("john", "select", "xademo/customer_details/imei", true));
+		queue.log(createEvent("john", "update", "xademo/customer_details/imei", true));
+		queue.log(createEvent("john", "select", "xademo/customer_details/phone", true));
+		queue.log(createEvent("john", "select", "xademo/customer_details/phone", false));
+		queue.log(createEvent("jane", "select", "xademo/customer_details/imei", true));
+
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total sum", 5, testConsumer.getSumTotal());
+		assertEquals("Total count", 3, testConsumer.getCountTotal());
+		assertEquals("Received count", 5, queue.getReceivedCount());
+		assertEquals("Sent count", 3, queue.getSentCount());
+	}
+
+	@Test
+	public void testAuditAggregationQueueParallel() {
+		logger.debug("testAuditAggregationQueueParallel()...");
+		final TestConsumer testConsumer = new TestConsumer() {
+			@Override
+			public synchronized boolean log(Collection<AuditEventBase> events) {
+				return super.log(events);
+			}
+		};
+		AuditAggregationQueue queue = new AuditAggregationQueue(testConsumer);
+
+		int keys = 100;
+		int messageToSend = 10000;
+		Properties props = new Properties();
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_THREADS, "" + 4);
+		// Deliberately small, so that events are sent when the table is full
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_MAX_KEYS, "" + 10);
+		queue.init(props, BaseAuditHandler.PROP_DEFAULT_PREFIX);
+
+		queue.start();
+
+		// runs of 10 events per key, so that keys repeat before a table of 10 keys is full
+		for (int i = 0; i < messageToSend; i++) {
+			queue.log(createEvent("user" + ((i / 10) % keys), "select",
+					"xademo/customer_details/imei", true));
+		}
+
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total sum", messageToSend, testConsumer.getSumTotal());
+		assertTrue("Total count", testConsumer.getCountTotal() >= keys);
+		assertTrue("Total count", testConsumer.getCountTotal() < messageToSend);
+	}
+
+	@Test
+	public void testAuditAggregationQueueEventCount() {
+		logger.debug("testAuditAggregationQueueEventCount()...");
+		TestConsumer testConsumer = new TestConsumer();
+		AuditAggregationQueue queue = new AuditAggregationQueue(testConsumer);
+
+		Properties props = new Properties();
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_THREADS, "" + 1);
+		queue.init(props, BaseAuditHandler.PROP_DEFAULT_PREFIX);
+
+		queue.start();
+
+		// events already aggregated upstream count for their event count, not for 1
+		AuthzAuditEvent aggregated = createEvent("john", "select", "xademo/customer_details/imei", true);
+		aggregated.setEventCount(10);
+
+		AuthzAuditEvent unset = createEvent("john", "select", "xademo/customer_details/imei", true);
+		unset.setEventCount(0);
+
+		queue.log(aggregated);
+		queue.log(createEvent("john", "select", "xademo/customer_details/imei", true));
+		queue.log(unset);
+		queue.log(createEvent("jane", "select", "xademo/customer_details/imei", true));
+
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total sum", 13, testConsumer.getSumTotal());
+		assertEquals("Total count", 2, testConsumer.getCountTotal());
+	}
+
+	@Test
+	public void testAuditSamplerAggregationPipeline() throws Exception {
+		logger.debug("testAuditSamplerAggregationPipeline()...");
+		int messageToSend = 1000;
+		String[] users = { "john", "jane", "mary" };
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditAggregationQueue queue = new AuditAggregationQueue(testConsumer);
+
+		Properties props = new Properties();
+		props.put(BaseAuditHandler.PROP_DEFAULT_PREFIX + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_THREADS, "" + 1);
+		queue.init(props, BaseAuditHandler.PROP_DEFAULT_PREFIX);
+
+		queue.start();
+
+		// 10 events/second per user, with a burst of 5
+		RangerAuditSampler sampler = new RangerAuditSampler(1, 10, 0, 5);
+
+		for (int i = 0; i < messageToSend; i++) {
+			AuthzAuditEvent event = createEvent(users[i % users.length], "select",
+					"xademo/customer_details/imei", i % 100 != 0);
+
+			if (sampler.isAudited(event)) {
+				queue.log(event);
+			}
+		}
+
+		// the counts suppressed after the last audited event are carried by
+		// the next audited event of the user
+		Thread.sleep(200);
+
+		for (String user : users) {
+			AuthzAuditEvent event = createEvent(user, "select",
+					"xademo/customer_details/imei", true);
+
+			assertTrue("Audited after refill", sampler.isAudited(event));
+			queue.log(event);
+		}
+
+		queue.stop();
+		queue.waitToComplete();
+
+		assertTrue("Suppressed count", sampler.getTotalSuppressedCount() > 0);
+		assertTrue("Total count", testConsumer.getCountTotal() < messageToSend);
+		assertEquals("Total sum", messageToSend + users.length,
+				testConsumer.getSumTotal());
+	}
+
+	@Test
+	public void testAuditAggregationQueueFull() {
+		logger.debug("testAuditAggregationQueueFull()...");
+		int messageToSend = 5;
+
+		String basePropName = "testAuditAggregationQueueFull_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "1");
+		props.put(basePropName + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_THREADS, "" + 1);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditAggregationQueue queue = new AuditAggregationQueue(testConsumer);
+		queue.init(props, basePropName);
+
+		// not started, so only the first event fits in the queue
+		int logged = 0;
+		for (int i = 0; i < messageToSend; i++) {
+			if (queue.log(createEvent("john", "select", "xademo/customer_details/imei", true))) {
+				logged++;
+			}
+		}
+
+		queue.start();
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Logged count", 1, logged);
+		assertEquals("Dropped count", messageToSend - 1, queue.getDroppedCount());
+		assertEquals("Total failed", messageToSend - 1, queue.getTotalFailedCount());
+		assertEquals("Total sum", 1, testConsumer.getSumTotal());
+	}
+
+	@Test
+	public void testAuditAggregationQueueFullSpill() throws Exception {
+		logger.debug("testAuditAggregationQueueFullSpill()...");
+		int messageToSend = 5;
+
+		String basePropName = "testAuditAggregationQueueFullSpill_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "1");
+		props.put(basePropName + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_THREADS, "" + 1);
+		props.put(basePropName + "."
+				+ AuditAggregationQueue.PROP_AGGREGATION_INTERVAL, "" + 100);
+		props.put(basePropName + "." + AuditQueue.PROP_FILE_SPOOL_ENABLE, "" + true);
+		props.put(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, "target/" + basePropName);
+		props.put(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, "100");
+		props.put(basePropName + "." + AuditSegmentSpool.PROP_FILE_SPOOL_FORMAT, AuditSegmentSpool.FILE_SPOOL_FORMAT_BINARY);
+		props.put(basePropName + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_LINGER_MS, "0");
+
+		TestConsumer testConsumer = new TestConsumer() {
+			@Override
+			public synchronized boolean log(Collection<AuditEventBase> events) {
+				return super.log(events);
+			}
+
+			@Override
+			public synchronized boolean logJSON(Collection<String> events) {
+				return super.logJSON(events);
+			}
+		};
+		AuditAggregationQueue queue = new AuditAggregationQueue(testConsumer);
+		queue.init(props, basePropName);
+
+		// not started, so the events after the first are spilled to the spool, to be sent without aggregation
+		int logged = 0;
+		for (int i = 0; i < messageToSend; i++) {
+			if (queue.log(createEvent("john", "select", "xademo/customer_details/imei", true))) {
+				logged++;
+			}
+		}
+
+		queue.start();
+
+		for (int i = 0; i < 50 && testConsumer.getSumTotal() < messageToSend; i++) {
+			Thread.sleep(100);
+		}
+
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Logged count", messageToSend, logged);
+		assertEquals("Spilled count", messageToSend - 1, queue.getSpilledCount());
+		assertEquals("Dropped count", 0, queue.getDroppedCount());
+		assertEquals("Total sum", messageToSend, testConsumer.getSumTotal());
+	}
+
 	private void commonTestSummary(TestConsumer testConsumer,
 			BaseAuditHandler queue) {
 		int messageToSend = 0;
@@ -245,6 +510,175 @@ public void testMultipleQueue() {
 		}
 	}
 
+	@Test
+	public void testMultipleQueueFanout() {
+		logger.debug("testMultipleQueueFanout()...");
+		int messageToSend = 10;
+		final int slowDownMS = 2000;
+
+		Properties props = new Properties();
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "."
+				+ MultiDestAuditProvider.PROP_FANOUT_ENABLED, "true");
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "."
+				+ AuditQueue.PROP_BATCH_INTERVAL, "" + 100);
+
+		TestConsumer fastConsumer = new TestConsumer();
+		TestConsumer slowConsumer = new TestConsumer() {
+			@Override
+			public boolean log(Collection<AuditEventBase> events) {
+				try {
+					Thread.sleep(slowDownMS);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				return super.log(events);
+			}
+		};
+
+		MultiDestAuditProvider multiQueue = new MultiDestAuditProvider();
+		multiQueue.init(props);
+		multiQueue.addAuditProvider(slowConsumer);
+		multiQueue.addAuditProvider(fastConsumer);
+		multiQueue.start();
+
+		assertTrue("isFanoutEnabled", multiQueue.isFanoutEnabled());
+		assertEquals("destinations", 2, multiQueue.getDestinationHealth().size());
+
+		long startTime = System.currentTimeMillis();
+		for (int i = 0; i < messageToSend; i++) {
+			multiQueue.log(createEvent());
+		}
+		assertTrue("log() waited for the slow destination",
+				System.currentTimeMillis() - startTime < slowDownMS);
+
+		try {
+			Thread.sleep(slowDownMS / 2);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+
+		// the slow destination doesn't delay the other one
+		assertEquals("fast consumer", messageToSend, fastConsumer.getCountTotal());
+		assertEquals("slow consumer", 0, slowConsumer.getCountTotal());
+
+		for (int i = 0; i < 50 && slowConsumer.getCountTotal() < messageToSend; i++) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+
+		multiQueue.stop();
+		multiQueue.waitToComplete();
+
+		assertEquals("slow consumer", messageToSend, slowConsumer.getCountTotal());
+		assertNull("Event not in sequnce", fastConsumer.isInSequence());
+		assertNull("Event not in sequnce", slowConsumer.isInSequence());
+	}
+
+	@Test
+	public void testMultipleQueueFanoutExistingQueue() {
+		logger.debug("testMultipleQueueFanoutExistingQueue()...");
+		int messageToSend = 10;
+
+		Properties props = new Properties();
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "."
+				+ MultiDestAuditProvider.PROP_FANOUT_ENABLED, "true");
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "."
+				+ AuditQueue.PROP_BATCH_INTERVAL, "" + 100);
+		props.put("test.batch." + AuditQueue.PROP_BATCH_INTERVAL, "" + 100);
+
+		TestConsumer batchConsumer = new TestConsumer();
+		AuditBatchQueue batchQueue = new AuditBatchQueue(batchConsumer);
+		batchQueue.setName("test_batch");
+		batchQueue.init(props, "test.batch");
+
+		TestConsumer directConsumer = new TestConsumer();
+
+		MultiDestAuditProvider multiQueue = new MultiDestAuditProvider();
+		multiQueue.init(props);
+		multiQueue.addAuditProvider(batchQueue);
+		multiQueue.addAuditProvider(directConsumer);
+		multiQueue.start();
+
+		// the batch queue is used as the fan-out queue of its destination, instead of being queued again
+		List<MultiDestAuditProvider.DestinationHealth> health = multiQueue.getDestinationHealth();
+
+		assertEquals("destinations", 2, health.size());
+		assertEquals("parent of batch queue", multiQueue.getName(), batchQueue.getParentPath());
+		assertTrue("parent of direct consumer", directConsumer.getParentPath().contains("fanout_"));
+
+		for (int i = 0; i < messageToSend; i++) {
+			multiQueue.log(createEvent());
+		}
+
+		for (int i = 0; i < 50 && (batchConsumer.getCountTotal() < messageToSend || directConsumer.getCountTotal() < messageToSend); i++) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+
+		multiQueue.stop();
+		multiQueue.waitToComplete();
+
+		assertEquals("batch consumer", messageToSend, batchConsumer.getCountTotal());
+		assertEquals("direct consumer", messageToSend, directConsumer.getCountTotal());
+		assertEquals("batch queue", messageToSend, batchQueue.getTotalSuccessCount());
+	}
+
+	@Test
+	public void testMultipleQueueFanoutQueueFailure() {
+		logger.debug("testMultipleQueueFanoutQueueFailure()...");
+		int messageToSend = 10;
+
+		Properties props = new Properties();
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "."
+				+ MultiDestAuditProvider.PROP_FANOUT_ENABLED, "true");
+		props.put(MultiDestAuditProvider.PROP_FANOUT_PREFIX + "."
+				+ AuditQueue.PROP_BATCH_INTERVAL, "" + 100);
+
+		TestConsumer queuedConsumer = new TestConsumer();
+		TestConsumer brokenConsumer = new TestConsumer() {
+			@Override
+			public String getFinalPath() {
+				// fails the creation of the fan-out queue of this consumer
+				throw new IllegalStateException("no path");
+			}
+		};
+
+		MultiDestAuditProvider multiQueue = new MultiDestAuditProvider();
+		multiQueue.init(props);
+		multiQueue.addAuditProvider(brokenConsumer);
+		multiQueue.addAuditProvider(queuedConsumer);
+		multiQueue.start();
+
+		assertEquals("destinations", 1, multiQueue.getDestinationHealth().size());
+
+		for (int i = 0; i < messageToSend; i++) {
+			multiQueue.log(createEvent());
+		}
+
+		// the consumer without a queue is called on the caller's thread
+		assertEquals("consumer without queue", messageToSend, brokenConsumer.getCountTotal());
+
+		for (int i = 0; i < 50 && queuedConsumer.getCountTotal() < messageToSend; i++) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+
+		multiQueue.stop();
+		multiQueue.waitToComplete();
+
+		assertEquals("queued consumer", messageToSend, queuedConsumer.getCountTotal());
+		assertNull("Event not in sequnce", brokenConsumer.isInSequence());
+	}
+
 	@Test
 	public void testAuditBatchQueueBySize() {
 		logger.debug("testAuditBatchQueue()...");
@@ -293,6 +727,182 @@ public void testAuditBatchQueueBySize() {
 
 	}
 
+	@Test
+	public void testAuditRingBufferQueueBySize() {
+		logger.debug("testAuditRingBufferQueueBySize()...");
+		int messageToSend = 10;
+
+		String basePropName = "testAuditRingBufferQueueBySize_"
+				+ MiscUtil.generateUniqueId();
+		int batchSize = messageToSend / 3;
+		int expectedBatchSize = batchSize
+				+ (batchSize * 3 < messageToSend ? 1 : 0);
+		int queueSize = messageToSend * 2;
+		int intervalMS = messageToSend * 100; // Deliberately big interval
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, ""
+				+ batchSize);
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, ""
+				+ queueSize);
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, ""
+				+ intervalMS);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditRingBufferQueue queue = new AuditRingBufferQueue(testConsumer);
+		queue.init(props, basePropName);
+		queue.start();
+
+		assertEquals("Capacity", 32, queue.getCapacity());
+
+		for (int i = 0; i < messageToSend; i++) {
+			queue.log(createEvent());
+
+		}
+		// Let's wait for second
+		try {
+			Thread.sleep(2000);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+
+		queue.waitToComplete();
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total count", messageToSend, testConsumer.getCountTotal());
+		assertEquals("Total sum", messageToSend, testConsumer.getSumTotal());
+		assertEquals("Total batch", expectedBatchSize,
+				testConsumer.getBatchCount());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testAuditRingBufferQueueMultipleProducers() throws Exception {
+		logger.debug("testAuditRingBufferQueueMultipleProducers()...");
+		final int producerCount = 4;
+		final int messageToSend = 1000;
+
+		String basePropName = "testAuditRingBufferQueueMultipleProducers_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "64");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, "16");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, "10");
+		props.put(basePropName + "." + AuditRingBufferQueue.PROP_FULL_POLICY, "block");
+		props.put(basePropName + "." + AuditRingBufferQueue.PROP_WAIT_STRATEGY, "yield");
+
+		TestConsumer testConsumer = new TestConsumer();
+		final AuditRingBufferQueue queue = new AuditRingBufferQueue(testConsumer);
+		queue.init(props, basePropName);
+		queue.start();
+
+		assertEquals(AuditRingBufferQueue.FullPolicy.BLOCK, queue.getFullPolicy());
+		assertEquals(AuditRingBufferQueue.WaitStrategy.YIELD, queue.getWaitStrategy());
+
+		Thread[] producers = new Thread[producerCount];
+		for (int i = 0; i < producerCount; i++) {
+			producers[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < messageToSend; j++) {
+						queue.log(new AuthzAuditEvent());
+					}
+				}
+			};
+			producers[i].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		queue.waitToComplete();
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total count", producerCount * messageToSend, testConsumer.getCountTotal());
+		assertEquals("Total failed", 0, queue.getTotalFailedCount());
+	}
+
+	@Test
+	public void testAuditRingBufferQueueNullEvent() {
+		logger.debug("testAuditRingBufferQueueNullEvent()...");
+		int messageToSend = 10;
+
+		String basePropName = "testAuditRingBufferQueueNullEvent_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "4");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, "2");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_INTERVAL, "10");
+		props.put(basePropName + "." + AuditRingBufferQueue.PROP_FULL_POLICY, "block");
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditRingBufferQueue queue = new AuditRingBufferQueue(testConsumer);
+		queue.init(props, basePropName);
+		queue.start();
+
+		assertFalse("null event logged", queue.log((AuditEventBase) null));
+		assertTrue("events with null logged", queue.log(Arrays.<AuditEventBase>asList(createEvent(), null, createEvent())));
+
+		// more events than the queue holds, which would block if the null event took a slot
+		for (int i = 0; i < messageToSend; i++) {
+			assertTrue(queue.log(createEvent()));
+		}
+
+		queue.waitToComplete();
+		queue.stop();
+		queue.waitToComplete();
+
+		assertEquals("Total count", messageToSend + 2, testConsumer.getCountTotal());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testAuditRingBufferQueueFull() throws Exception {
+		logger.debug("testAuditRingBufferQueueFull()...");
+		int messageToSend = 20;
+
+		String basePropName = "testAuditRingBufferQueueFull_"
+				+ MiscUtil.generateUniqueId();
+		Properties props = new Properties();
+		props.put(basePropName + "." + AuditQueue.PROP_QUEUE_SIZE, "4");
+		props.put(basePropName + "." + AuditQueue.PROP_BATCH_SIZE, "1");
+		props.put(basePropName + "." + AuditRingBufferQueue.PROP_FULL_POLICY, "drop");
+
+		final CountDownLatch destUp = new CountDownLatch(1);
+		TestConsumer testConsumer = new TestConsumer() {
+			@Override
+			public boolean log(Collection<AuditEventBase> events) {
+				try {
+					destUp.await();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				return super.log(events);
+			}
+		};
+		AuditRingBufferQueue queue = new AuditRingBufferQueue(testConsumer);
+		queue.init(props, basePropName);
+		queue.start();
+
+		int logged = 0;
+		for (int i = 0; i < messageToSend; i++) {
+			if (queue.log(createEvent())) {
+				logged++;
+			}
+		}
+		destUp.countDown();
+
+		queue.waitToComplete();
+		queue.stop();
+		queue.waitToComplete();
+
+		// at most a full queue and the batch being sent are logged
+		assertTrue("Logged count=" + logged, logged <= 4 + 1);
+		assertEquals("Total count", logged, testConsumer.getCountTotal());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
 	@Test
 	public void testAuditBatchQueueByTime() {
 		logger.debug("testAuditBatchQueue()...");
@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditFileSpool;
+import org.apache.ranger.audit.queue.AuditSegmentSpool;
+import org.junit.Test;
+
+public class TestAuditSegmentSpool {
+
+	private static int seqNum = 0;
+
+	@Test
+	public void testSegmentSpoolReplayAfterRestart() throws Exception {
+		String basePropName = "testSegmentSpoolReplayAfterRestart";
+		Properties props = createProperties(basePropName);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName);
+
+		spool.stashLogs(createEvents(25));
+		spool.stop();
+
+		assertEquals("Total count", 0, testConsumer.getCountTotal());
+
+		spool = createSpool(testConsumer, props, basePropName);
+		spool.start();
+
+		waitForCount(testConsumer, 25);
+		spool.stop();
+
+		assertEquals("Total count", 25, testConsumer.getCountTotal());
+		assertEquals("Total batch", 3, testConsumer.getBatchCount());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testSegmentSpoolCorruptRecord() throws Exception {
+		String basePropName = "testSegmentSpoolCorruptRecord";
+		Properties props = createProperties(basePropName);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName);
+
+		spool.stashLogs(createEvents(10));
+		spool.stop();
+
+		// change the last byte of the last record, as a write interrupted by a crash could
+		File[] segments = new File(props.getProperty(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR)).listFiles();
+
+		assertNotNull(segments);
+
+		for (File segment : segments) {
+			if (segment.getName().endsWith(".seg")) {
+				try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+					file.seek(file.length() - 1);
+
+					int lastByte = file.read();
+
+					file.seek(file.length() - 1);
+					file.write(lastByte ^ 0xFF);
+				}
+			}
+		}
+
+		spool = createSpool(testConsumer, props, basePropName);
+		spool.start();
+
+		waitForCount(testConsumer, 9);
+		Thread.sleep(500);
+		spool.stop();
+
+		assertEquals("Total count", 9, testConsumer.getCountTotal());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testSegmentSpoolCorruptRecordInTheMiddle() throws Exception {
+		String basePropName = "testSegmentSpoolCorruptRecordInTheMiddle";
+		Properties props = createProperties(basePropName);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName);
+
+		spool.stashLogs(createEvents(10));
+		spool.stop();
+
+		// change a byte of the 5th record; the records after it are still sent
+		File[] segments = new File(props.getProperty(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR)).listFiles();
+
+		assertNotNull(segments);
+
+		for (File segment : segments) {
+			if (segment.getName().endsWith(".seg")) {
+				try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+					long offset = 8; // magic, version
+
+					for (int i = 0; i < 4; i++) {
+						file.seek(offset);
+						offset += 8 + file.readInt(); // length, crc, event
+					}
+
+					file.seek(offset + 8 + 1);
+
+					int b = file.read();
+
+					file.seek(offset + 8 + 1);
+					file.write(b ^ 0xFF);
+				}
+			}
+		}
+
+		spool = createSpool(testConsumer, props, basePropName);
+		spool.start();
+
+		waitForCount(testConsumer, 9);
+		Thread.sleep(500);
+		spool.stop();
+
+		assertEquals("Total count", 9, testConsumer.getCountTotal());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testSegmentSpoolInvalidEvent() throws Exception {
+		String basePropName = "testSegmentSpoolInvalidEvent";
+		Properties props = createProperties(basePropName);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName, false);
+
+		spool.stashLogs(createEvents(3));
+		spool.stashLogsString(Arrays.asList("null", "not an audit event"));
+		spool.stashLogs(createEvents(3));
+		spool.stop();
+
+		spool = createSpool(testConsumer, props, basePropName, false);
+		spool.start();
+
+		waitForCount(testConsumer, 6);
+		Thread.sleep(500);
+		spool.stop();
+
+		// records that are not events are skipped, instead of sending nulls to the destination
+		assertEquals("Total count", 6, testConsumer.getCountTotal());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testSegmentSpoolInvalidJournalOffset() throws Exception {
+		String basePropName = "testSegmentSpoolInvalidJournalOffset";
+		Properties props = createProperties(basePropName);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName);
+
+		spool.stashLogs(createEvents(5));
+		spool.stop();
+
+		// a journal entry with an offset past the end of the segment
+		File[] files = new File(props.getProperty(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR)).listFiles();
+		File   segment = null;
+		File   journal = null;
+
+		assertNotNull(files);
+
+		for (File file : files) {
+			if (file.getName().endsWith(".seg")) {
+				segment = file;
+			} else if (file.getName().startsWith("journal_")) {
+				journal = file;
+			}
+		}
+
+		assertNotNull(segment);
+		assertNotNull(journal);
+
+		String     segmentName = segment.getName();
+		long       segmentId   = Long.parseLong(segmentName.substring(segmentName.lastIndexOf('_') + 1, segmentName.length() - ".seg".length()));
+		ByteBuffer entry       = ByteBuffer.allocate(20);
+		CRC32      crc         = new CRC32();
+
+		entry.putLong(segmentId).putLong(segment.length() + 1024);
+		crc.update(entry.array(), 0, 16);
+		entry.putInt((int) crc.getValue());
+
+		try (FileOutputStream out = new FileOutputStream(journal, true)) {
+			out.write(entry.array());
+		}
+
+		spool = createSpool(testConsumer, props, basePropName);
+		spool.start();
+
+		waitForCount(testConsumer, 5);
+		spool.stop();
+
+		assertEquals("Total count", 5, testConsumer.getCountTotal());
+		assertFalse("isPending", spool.isPending());
+	}
+
+	@Test
+	public void testSegmentSpoolResumeFromJournal() throws Exception {
+		String basePropName = "testSegmentSpoolResumeFromJournal";
+		Properties props = createProperties(basePropName);
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName);
+
+		spool.start();
+		spool.stashLogs(createEvents(10));
+
+		waitForCount(testConsumer, 10);
+		spool.stop();
+
+		// events sent before the restart must not be sent again
+		TestConsumer testConsumer2 = new TestConsumer();
+		List<AuditEventBase> events = createEvents(5);
+
+		spool = createSpool(testConsumer2, props, basePropName);
+		spool.stashLogs(events);
+		spool.start();
+
+		waitForCount(testConsumer2, 5);
+		Thread.sleep(500);
+		spool.stop();
+
+		assertEquals("Total count", 10, testConsumer.getCountTotal());
+		assertEquals("Total count", 5, testConsumer2.getCountTotal());
+		assertEquals("First event", ((AuthzAuditEvent) events.get(0)).getSeqNum(), testConsumer2.eventList.get(0).getSeqNum());
+		assertNull("Event not in sequnce", testConsumer2.isInSequence());
+	}
+
+	@Test
+	public void testSegmentSpoolDestDown() throws Exception {
+		String basePropName = "testSegmentSpoolDestDown";
+		Properties props = createProperties(basePropName);
+
+		TestConsumer testConsumer = new TestConsumer();
+		testConsumer.isDown = true;
+
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName);
+
+		spool.start();
+		spool.stashLogs(createEvents(10));
+
+		Thread.sleep(500);
+
+		assertEquals("Total count", 0, testConsumer.getCountTotal());
+		assertTrue("isPending", spool.isPending());
+
+		testConsumer.isDown = false;
+
+		waitForCount(testConsumer, 10);
+		spool.stop();
+
+		assertEquals("Total count", 10, testConsumer.getCountTotal());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	@Test
+	public void testSegmentSpoolLinger() throws Exception {
+		String basePropName = "testSegmentSpoolLinger";
+		Properties props = createProperties(basePropName);
+
+		props.put(basePropName + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_LINGER_MS, "2000");
+
+		TestConsumer testConsumer = new TestConsumer();
+		AuditSegmentSpool spool = createSpool(testConsumer, props, basePropName);
+
+		spool.start();
+		spool.stashLogs(createEvents(5));
+		spool.stashLogs(createEvents(5));
+
+		// the segment being written is not sent until it has lingered
+		Thread.sleep(500);
+
+		assertEquals("Total count", 0, testConsumer.getCountTotal());
+		assertTrue("isPending", spool.isPending());
+
+		waitForCount(testConsumer, 10);
+		spool.stop();
+
+		assertEquals("Total count", 10, testConsumer.getCountTotal());
+		assertEquals("Total batch", 1, testConsumer.getBatchCount());
+		assertNull("Event not in sequnce", testConsumer.isInSequence());
+	}
+
+	private Properties createProperties(String basePropName) {
+		Properties props = new Properties();
+
+		props.put(basePropName + "." + AuditSegmentSpool.PROP_FILE_SPOOL_FORMAT, AuditSegmentSpool.FILE_SPOOL_FORMAT_BINARY);
+		props.put(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, "target/" + basePropName + "_" + MiscUtil.generateUniqueId());
+		props.put(basePropName + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, "100");
+		props.put(basePropName + "." + AuditSegmentSpool.PROP_FILE_SPOOL_FSYNC_INTERVAL_MS, "0");
+		props.put(basePropName + "." + AuditSegmentSpool.PROP_FILE_SPOOL_REPLAY_BATCH_SIZE, "10");
+		props.put(basePropName + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_LINGER_MS, "0");
+
+		return props;
+	}
+
+	private AuditSegmentSpool createSpool(TestConsumer testConsumer, Properties props, String basePropName) {
+		return createSpool(testConsumer, props, basePropName, true);
+	}
+
+	private AuditSegmentSpool createSpool(TestConsumer testConsumer, Properties props, String basePropName, boolean sendAsJSON) {
+		AuditSegmentSpool ret = new AuditSegmentSpool(testConsumer, basePropName, sendAsJSON, 10);
+
+		assertTrue("init", ret.init(props, basePropName));
+
+		return ret;
+	}
+
+	private List<AuditEventBase> createEvents(int count) {
+		List<AuditEventBase> ret = new ArrayList<AuditEventBase>();
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setSeqNum(++seqNum);
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+
+	private void waitForCount(TestConsumer testConsumer, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && testConsumer.getCountTotal() < count; i++) {
+			Thread.sleep(100);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.AuthzAuditEventJson;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestAuthzAuditEventJson {
+
+	@After
+	public void tearDown() {
+		MiscUtil.setFastAuditEventJson(false);
+	}
+
+	@Test
+	public void testSameAsGson() {
+		AuthzAuditEvent event = createEvent();
+
+		assertEquals(gsonJson(event), AuthzAuditEventJson.toJson(event));
+
+		event = new AuthzAuditEvent();
+
+		assertEquals(gsonJson(event), AuthzAuditEventJson.toJson(event));
+
+		event.setEventTime(null);
+		event.setTags(null);
+
+		assertEquals(gsonJson(event), AuthzAuditEventJson.toJson(event));
+
+		event = createEvent();
+
+		event.setRequestData("select * from t where c1 <> 'a\"b' && c2 = '\\\u0001 \t\r\n\u00e9'");
+
+		assertEquals(gsonJson(event), AuthzAuditEventJson.toJson(event));
+	}
+
+	@Test
+	public void testParse() {
+		AuthzAuditEvent event  = createEvent();
+		AuthzAuditEvent parsed = AuthzAuditEventJson.parse(AuthzAuditEventJson.toJson(event));
+
+		assertNotNull("parse", parsed);
+		assertEquals(gsonJson(event), gsonJson(parsed));
+		assertEquals(event.getEventTime(), parsed.getEventTime());
+		assertEquals(event.getTags(), parsed.getTags());
+		assertEquals(event.getPolicyVersion(), parsed.getPolicyVersion());
+
+		parsed = AuthzAuditEventJson.parse("{ \"reqUser\" : \"user1\", \"policy\" : -5, \"tags\" : null }");
+
+		assertNotNull("parse", parsed);
+		assertEquals("user1", parsed.getUser());
+		assertEquals(-5, parsed.getPolicyId());
+		assertNull(parsed.getTags());
+	}
+
+	@Test
+	public void testParseFallback() {
+		MiscUtil.setFastAuditEventJson(true);
+
+		String[] jsons = {
+			"{\"reqUser\":\"user1\",\"unknown\":1}",
+			"{\"reqUser\":\"user1\",\"policy\":\"10\"}",
+			"{\"reqUser\":\"user1\",\"evtTime\":\"2020-01-01T10:00:00Z\"}",
+			"{reqUser:user1}"
+		};
+
+		for (String json : jsons) {
+			assertNull(json, AuthzAuditEventJson.parse(json));
+
+			AuthzAuditEvent event = MiscUtil.fromJson(json, AuthzAuditEvent.class);
+
+			assertEquals(json, "user1", event.getUser());
+		}
+	}
+
+	@Test
+	public void testMiscUtil() {
+		AuthzAuditEvent event = createEvent();
+		String          json  = MiscUtil.stringify(event);
+
+		MiscUtil.setFastAuditEventJson(true);
+
+		assertEquals(json, MiscUtil.stringify(event));
+		assertEquals(json, MiscUtil.stringify(MiscUtil.fromJson(json, AuthzAuditEvent.class)));
+	}
+
+	private String gsonJson(AuthzAuditEvent event) {
+		boolean isFast = MiscUtil.isFastAuditEventJson();
+
+		MiscUtil.setFastAuditEventJson(false);
+
+		try {
+			return MiscUtil.stringify(event);
+		} finally {
+			MiscUtil.setFastAuditEventJson(isFast);
+		}
+	}
+
+	private AuthzAuditEvent createEvent() {
+		AuthzAuditEvent ret  = new AuthzAuditEvent();
+		Set<String>     tags = new LinkedHashSet<>();
+
+		tags.add("PII");
+		tags.add("<restricted>");
+
+		ret.setRepositoryType(1);
+		ret.setRepositoryName("dev_hive");
+		ret.setUser("user1");
+		ret.setEventTime(new Date(1600000000123L));
+		ret.setAccessType("select");
+		ret.setResourcePath("db1/tbl1/col1");
+		ret.setResourceType("@column");
+		ret.setAction("select");
+		ret.setAccessResult((short) 1);
+		ret.setAgentId("hiveServer2");
+		ret.setPolicyId(42);
+		ret.setAclEnforcer("ranger-acl");
+		ret.setSessionId("session-1");
+		ret.setClientType("HIVESERVER2");
+		ret.setClientIP("10.0.0.1");
+		ret.setRequestData("select col1 from db1.tbl1");
+		ret.setAgentHostname("host1");
+		ret.setLogType("RangerAudit");
+		ret.setEventId(MiscUtil.generateUniqueId());
+		ret.setSeqNum(7);
+		ret.setEventCount(3);
+		ret.setEventDurationMS(1500);
+		ret.setTags(tags);
+		ret.setAdditionalInfo("{\"remote-ip-address\":\"10.0.0.2\"}");
+		ret.setClusterName("cl1");
+		ret.setZoneName("zone1");
+		ret.setPolicyVersion(5L);
+		ret.setEntityGuid("guid-1");
+
+		return ret;
+	}
+}
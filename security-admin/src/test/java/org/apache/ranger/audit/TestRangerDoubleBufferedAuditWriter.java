@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.queue.AuditFileSpool;
+import org.apache.ranger.audit.queue.AuditSegmentSpool;
+import org.apache.ranger.audit.utils.AbstractRangerAuditWriter;
+import org.apache.ranger.audit.utils.RangerAuditWriter;
+import org.apache.ranger.audit.utils.RangerDoubleBufferedAuditWriter;
+import org.apache.ranger.audit.utils.RangerJSONAuditWriter;
+import org.junit.Test;
+
+public class TestRangerDoubleBufferedAuditWriter {
+
+	private static final String PROP_PREFIX = "xasecure.audit.destination.hdfs";
+
+	@Test
+	public void testWriteToLocalFileSystem() throws Exception {
+		File       dir   = new File("target", "testDoubleBufferedWriter_" + MiscUtil.generateUniqueId()).getAbsoluteFile();
+		Properties props = createProperties();
+
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_DIR, "file://" + dir.getPath());
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_SUBDIR, "test");
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_FILE_NAME_FORMAT, "audit_%time:yyyyMMddHHmmss%.log");
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_FILE_ROLLOVER, "2");
+
+		RangerJSONAuditWriter           jsonWriter = new RangerJSONAuditWriter();
+		RangerDoubleBufferedAuditWriter writer     = new RangerDoubleBufferedAuditWriter(jsonWriter);
+
+		writer.init(props, PROP_PREFIX, "hdfs", new HashMap<String, String>());
+
+		assertTrue("log", writer.log(createEvents(100)));
+		writer.flush();
+
+		waitForWrittenCount(writer, 100);
+
+		// the file for the next rollover is opened ahead of time
+		for (int i = 0; i < 50 && jsonWriter.nextFileName == null; i++) {
+			Thread.sleep(100);
+		}
+
+		assertNotNull("next file opened", jsonWriter.nextFileName);
+
+		Thread.sleep(2500); // past the rollover time
+
+		assertTrue("log", writer.log(createEvents(100)));
+		writer.stop();
+
+		assertEquals("written count", 200, writer.getWrittenCount());
+		assertEquals("buffered count", 0, writer.getBufferedCount());
+
+		File[] files = new File(dir, "test").listFiles();
+		int    lines = 0;
+
+		assertNotNull(files);
+		assertTrue("file count", files.length >= 2);
+
+		for (File file : files) {
+			if (file.getName().endsWith(".log")) {
+				List<String> fileLines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+
+				assertFalse("unused file not deleted: " + file, fileLines.isEmpty());
+
+				lines += fileLines.size();
+			}
+		}
+
+		assertEquals("lines", 200, lines);
+	}
+
+	@Test
+	public void testWriteErrorBeforeRollover() throws Exception {
+		File       dir   = new File("target", "testWriteErrorBeforeRollover_" + MiscUtil.generateUniqueId()).getAbsoluteFile();
+		Properties props = createProperties();
+
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_DIR, "file://" + dir.getPath());
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_SUBDIR, "test");
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_FILE_NAME_FORMAT, "audit_%time:yyyyMMddHHmmss%.log");
+		props.put(PROP_PREFIX + "." + AbstractRangerAuditWriter.PROP_FILESYSTEM_FILE_ROLLOVER, "3600");
+
+		RangerJSONAuditWriter jsonWriter = new RangerJSONAuditWriter();
+
+		jsonWriter.init(props, PROP_PREFIX, "hdfs", new HashMap<String, String>());
+
+		assertTrue("log", jsonWriter.log(createEvents(10)));
+		assertTrue("next file opened", jsonWriter.openNextFileIfNeeded(2 * 3600 * 1000L));
+
+		String nextFileName = jsonWriter.nextFileName;
+
+		// fail a write inside the open-ahead window: the writer is closed, but the rollover is not due yet
+		jsonWriter.ostream.close();
+		jsonWriter.log(createEvents(10));
+
+		assertNull("writer closed after write error", jsonWriter.logWriter);
+
+		assertTrue("log", jsonWriter.log(createEvents(10)));
+		jsonWriter.flush();
+
+		assertNotEquals("file opened ahead not used before rollover", nextFileName, jsonWriter.currentFileName);
+		assertEquals("file opened ahead still reserved", nextFileName, jsonWriter.nextFileName);
+		assertEquals("file opened ahead is empty", 0, new File(new URI(nextFileName)).length());
+
+		jsonWriter.stop();
+
+		assertFalse("unused file deleted", new File(new URI(nextFileName)).exists());
+	}
+
+	@Test
+	public void testBufferFull() throws Exception {
+		Properties props = createProperties();
+
+		props.put(PROP_PREFIX + "." + RangerDoubleBufferedAuditWriter.PROP_BUFFER_SIZE, "100");
+		props.put(PROP_PREFIX + "." + RangerDoubleBufferedAuditWriter.PROP_MAX_WAIT_MS, "100");
+
+		TestWriter                      testWriter = new TestWriter();
+		RangerDoubleBufferedAuditWriter writer     = new RangerDoubleBufferedAuditWriter(testWriter);
+
+		testWriter.blocker = new CountDownLatch(1);
+
+		writer.init(props, PROP_PREFIX, "test", new HashMap<String, String>());
+
+		// first batch is being written; the second fills the active buffer
+		assertTrue("log", writer.log(createEvents(100)));
+		writer.flush();
+		waitForWriteStarted(testWriter);
+		assertTrue("log", writer.log(createEvents(100)));
+
+		long startTime = System.currentTimeMillis();
+
+		assertFalse("log when buffer is full", writer.log(createEvents(10)));
+		assertTrue("log waited", System.currentTimeMillis() - startTime >= 90);
+
+		testWriter.blocker.countDown();
+
+		writer.flush();
+		waitForWrittenCount(writer, 200);
+		writer.stop();
+
+		assertEquals("written count", 200, testWriter.getCount());
+		assertTrue("stopped", testWriter.isStopped);
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		Properties props = createProperties();
+
+		TestWriter                      testWriter = new TestWriter();
+		RangerDoubleBufferedAuditWriter writer     = new RangerDoubleBufferedAuditWriter(testWriter);
+
+		testWriter.isDown = true;
+
+		writer.init(props, PROP_PREFIX, "test", new HashMap<String, String>());
+
+		assertTrue("log", writer.log(createEvents(10)));
+		writer.flush();
+
+		Thread.sleep(300);
+
+		assertEquals("written count", 0, testWriter.getCount());
+		assertTrue("failed writes", writer.getFailedWriteCount() > 0);
+		assertEquals("buffered count", 10, writer.getBufferedCount());
+
+		testWriter.isDown = false;
+
+		waitForWrittenCount(writer, 10);
+		writer.stop();
+
+		assertEquals("written count", 10, testWriter.getCount());
+	}
+
+	@Test
+	public void testFailedWriteAfterStopIsSpooled() throws Exception {
+		String     spoolPrefix = PROP_PREFIX + "." + RangerDoubleBufferedAuditWriter.PROP_FILE_SPOOL_PREFIX;
+		Properties props       = createProperties();
+
+		props.put(spoolPrefix + "." + AuditSegmentSpool.PROP_FILE_SPOOL_FORMAT, AuditSegmentSpool.FILE_SPOOL_FORMAT_BINARY);
+		props.put(spoolPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, "target/testDoubleBufferedWriterSpool_" + MiscUtil.generateUniqueId());
+		props.put(spoolPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, "100");
+		props.put(spoolPrefix + "." + AuditSegmentSpool.PROP_FILE_SPOOL_SEGMENT_LINGER_MS, "0");
+
+		TestWriter                      testWriter   = new TestWriter();
+		RangerDoubleBufferedAuditWriter writer       = new RangerDoubleBufferedAuditWriter(testWriter);
+		TestConsumer                    testConsumer = new TestConsumer();
+		AuditSegmentSpool               spool        = new AuditSegmentSpool(testConsumer, "test_async", true, 10);
+
+		assertTrue("init", spool.init(props, spoolPrefix));
+
+		testWriter.isDown = true;
+
+		writer.setFileSpool(spool);
+		writer.init(props, PROP_PREFIX, "test", new HashMap<String, String>());
+
+		assertTrue("log", writer.log(createEvents(10)));
+		writer.stop();
+		spool.stop();
+
+		assertEquals("written count", 0, testWriter.getCount());
+		assertEquals("buffered count", 0, writer.getBufferedCount());
+
+		// the spooled events are sent when the destination is started again
+		spool = new AuditSegmentSpool(testConsumer, "test_async", true, 10);
+
+		assertTrue("init", spool.init(props, spoolPrefix));
+
+		spool.start();
+
+		for (int i = 0; i < 100 && testConsumer.getCountTotal() < 10; i++) {
+			Thread.sleep(100);
+		}
+
+		spool.stop();
+
+		assertEquals("spooled count", 10, testConsumer.getCountTotal());
+	}
+
+	private Properties createProperties() {
+		Properties props = new Properties();
+
+		props.put(PROP_PREFIX + "." + RangerDoubleBufferedAuditWriter.PROP_FLUSH_INTERVAL_MS, "100");
+		props.put(PROP_PREFIX + "." + RangerDoubleBufferedAuditWriter.PROP_RETRY_INTERVAL_MS, "100");
+
+		return props;
+	}
+
+	private List<String> createEvents(int count) {
+		List<String> ret = new ArrayList<String>();
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setSeqNum(i);
+
+			ret.add(MiscUtil.stringify(event));
+		}
+
+		return ret;
+	}
+
+	private void waitForWrittenCount(RangerDoubleBufferedAuditWriter writer, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && writer.getWrittenCount() < count; i++) {
+			Thread.sleep(100);
+		}
+	}
+
+	private void waitForWriteStarted(TestWriter testWriter) throws InterruptedException {
+		for (int i = 0; i < 100 && !testWriter.isWriteStarted; i++) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static class TestWriter implements RangerAuditWriter {
+		volatile boolean        isDown         = false;
+		volatile boolean        isStopped      = false;
+		volatile boolean        isWriteStarted = false;
+		volatile CountDownLatch blocker        = null;
+		private  int            count          = 0;
+
+		@Override
+		public void init(Properties prop, String propPrefix, String auditProviderName, Map<String, String> auditConfigs) {
+		}
+
+		@Override
+		public boolean log(Collection<String> events) throws Exception {
+			isWriteStarted = true;
+
+			if (blocker != null) {
+				blocker.await();
+			}
+
+			if (isDown) {
+				return false;
+			}
+
+			synchronized (this) {
+				count += events.size();
+			}
+
+			return true;
+		}
+
+		@Override
+		public boolean logFile(File file) {
+			return false;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void stop() {
+			isStopped = true;
+		}
+
+		synchronized int getCount() {
+			return count;
+		}
+	}
+}
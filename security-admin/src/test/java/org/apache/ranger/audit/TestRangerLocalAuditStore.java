@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ranger.audit.destination.LocalAuditStoreDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.RangerLocalAuditQuery;
+import org.apache.ranger.audit.utils.RangerLocalAuditStore;
+import org.junit.Test;
+
+public class TestRangerLocalAuditStore {
+
+	private static final String PROP_PREFIX = "xasecure.audit.destination.localstore";
+	private static final long   BASE_TIME   = System.currentTimeMillis() - 60 * 60 * 1000;
+
+	@Test
+	public void testWriteAndQuery() throws Exception {
+		RangerLocalAuditStore store = createStore(1000);
+
+		// 3 segments of 1000 events
+		for (int segment = 0; segment < 3; segment++) {
+			List<AuthzAuditEvent> events = new ArrayList<AuthzAuditEvent>();
+
+			for (int i = 0; i < 1000; i++) {
+				events.add(createEvent(segment * 1000 + i, "user" + (segment * 10 + i % 10), "db1/table" + (i % 100), i % 2));
+			}
+
+			store.write(events);
+		}
+
+		store.close();
+
+		RangerLocalAuditQuery query = new RangerLocalAuditQuery();
+
+		query.setMaxRows(10);
+
+		RangerLocalAuditStore.QueryResult result = store.query(query);
+
+		assertEquals("total count", 3000, result.getTotalCount());
+		assertEquals("events", 10, result.getEvents().size());
+		assertEquals("latest event first", BASE_TIME + 2999, result.getEvents().get(0).getEventTime().getTime());
+		assertEquals("seqNum", 2999, result.getEvents().get(0).getSeqNum());
+		assertEquals("tags", Collections.singleton("PII"), result.getEvents().get(0).getTags());
+
+		// paging
+		query.setStartIndex(2995);
+		result = store.query(query);
+
+		assertEquals("events on last page", 5, result.getEvents().size());
+		assertEquals("earliest event last", BASE_TIME, result.getEvents().get(4).getEventTime().getTime());
+
+		// users of the 2nd segment only; other segments are pruned by their bloom filters
+		query = new RangerLocalAuditQuery();
+		query.setUsers(Arrays.asList("user11", "user12"));
+		query.setAccessResult(1);
+		query.setMaxRows(1000);
+
+		result = store.query(query);
+
+		assertEquals("total count", 100, result.getTotalCount());
+		assertEquals("scanned segments", 1, result.getScannedSegmentCount());
+		assertEquals("pruned segments", 2, result.getPrunedSegmentCount());
+
+		for (AuthzAuditEvent event : result.getEvents()) {
+			assertTrue("user", event.getUser().equals("user11") || event.getUser().equals("user12"));
+			assertEquals("result", 1, event.getAccessResult());
+		}
+
+		// time range within the 3rd segment
+		query = new RangerLocalAuditQuery();
+		query.setStartTime(BASE_TIME + 2500);
+		query.setEndTime(BASE_TIME + 2599);
+		query.setResourceContains("table5");
+		query.setExcludeUsers(Collections.singletonList("user20"));
+
+		result = store.query(query);
+
+		assertEquals("pruned segments", 2, result.getPrunedSegmentCount());
+		assertEquals("total count", 10, result.getTotalCount()); // table5 and table50-59, less table50 of user20
+	}
+
+	@Test
+	public void testExactResourceAndRollover() throws Exception {
+		RangerLocalAuditStore store = createStore(100);
+
+		List<AuthzAuditEvent> events = new ArrayList<AuthzAuditEvent>();
+
+		for (int i = 0; i < 250; i++) {
+			events.add(createEvent(i, "user1", "/data/file" + i, 1));
+		}
+
+		store.write(events);
+		store.close();
+
+		RangerLocalAuditQuery query = new RangerLocalAuditQuery();
+
+		query.setResourcePath("/data/file120");
+
+		RangerLocalAuditStore.QueryResult result = store.query(query);
+
+		assertEquals("total count", 1, result.getTotalCount());
+		assertEquals("resource", "/data/file120", result.getEvents().get(0).getResourcePath());
+		assertEquals("scanned segments", 1, result.getScannedSegmentCount());
+		assertEquals("pruned segments", 2, result.getPrunedSegmentCount());
+	}
+
+	@Test
+	public void testFailedWrite() throws Exception {
+		RangerLocalAuditStore store  = createStore(1000);
+		List<AuthzAuditEvent> events = new ArrayList<AuthzAuditEvent>();
+
+		for (int i = 0; i < 10; i++) {
+			events.add(createEvent(i, "user1", "db1/table1", 1));
+		}
+
+		store.write(events);
+
+		// fails after the 1st event of the batch
+		try {
+			store.write(Arrays.asList(createEvent(10, "user2", "db1/table1", 1), null));
+
+			fail("write of a null event");
+		} catch (NullPointerException excp) {
+			// expected
+		}
+
+		store.write(Collections.singletonList(createEvent(11, "user3", "db1/table1", 1)));
+		store.close();
+
+		RangerLocalAuditQuery query = new RangerLocalAuditQuery();
+
+		query.setMaxRows(100);
+
+		RangerLocalAuditStore.QueryResult result = store.query(query);
+
+		assertEquals("events written before the failed batch are kept", 11, result.getTotalCount());
+		assertEquals("segments", 2, result.getScannedSegmentCount());
+		assertEquals("latest event", "user3", result.getEvents().get(0).getUser());
+		assertEquals("earlier event", "user1", result.getEvents().get(1).getUser());
+
+		query.setUsers(Collections.singletonList("user2"));
+
+		assertEquals("events of the failed batch are discarded", 0, store.query(query).getTotalCount());
+	}
+
+	@Test
+	public void testDestination() throws Exception {
+		File       dir   = new File("target", "testLocalAuditStoreDestination_" + MiscUtil.generateUniqueId()).getAbsoluteFile();
+		Properties props = new Properties();
+
+		props.put(PROP_PREFIX + "." + LocalAuditStoreDestination.PROP_DIR, dir.getPath());
+		props.put(PROP_PREFIX + "." + RangerLocalAuditStore.PROP_COMPRESSION, "none");
+
+		LocalAuditStoreDestination destination = new LocalAuditStoreDestination();
+
+		destination.init(props, PROP_PREFIX);
+
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+		List<String>         jsons  = new ArrayList<String>();
+
+		for (int i = 0; i < 10; i++) {
+			events.add(createEvent(i, "user1", "db1/table1", 0));
+			jsons.add(MiscUtil.stringify(createEvent(i + 10, "user2", "db1/table1", 1)));
+		}
+
+		assertTrue("log", destination.log(events));
+		assertTrue("logJSON", destination.logJSON(jsons));
+
+		destination.stop();
+
+		RangerLocalAuditQuery query = new RangerLocalAuditQuery();
+
+		query.setUsers(Collections.singletonList("user2"));
+
+		assertEquals("total count", 10, destination.getStore().query(query).getTotalCount());
+		assertFalse("log after stop", destination.log(events));
+	}
+
+	private RangerLocalAuditStore createStore(int segmentMaxEvents) throws Exception {
+		File                  dir   = new File("target", "testLocalAuditStore_" + MiscUtil.generateUniqueId()).getAbsoluteFile();
+		Properties            props = new Properties();
+		RangerLocalAuditStore store = new RangerLocalAuditStore(dir.getPath());
+
+		props.put(PROP_PREFIX + "." + RangerLocalAuditStore.PROP_SEGMENT_MAX_EVENTS, Integer.toString(segmentMaxEvents));
+		props.put(PROP_PREFIX + "." + RangerLocalAuditStore.PROP_BLOOM_FILTER_FPP, "0.0001");
+		props.put(PROP_PREFIX + "." + RangerLocalAuditStore.PROP_COMPRESSION, "none");
+
+		store.init(props, PROP_PREFIX);
+
+		return store;
+	}
+
+	private AuthzAuditEvent createEvent(int seqNum, String user, String resource, int accessResult) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setEventId(MiscUtil.generateUniqueId());
+		ret.setEventTime(new Date(BASE_TIME + seqNum));
+		ret.setSeqNum(seqNum);
+		ret.setUser(user);
+		ret.setResourcePath(resource);
+		ret.setAccessResult((short) accessResult);
+		ret.setRepositoryName("dev_hive");
+		ret.setAccessType("select");
+		ret.getTags().add("PII");
+
+		return ret;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.RequestLine;
+import org.apache.http.StatusLine;
+import org.apache.http.entity.StringEntity;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestElasticSearchAuditDestination {
+	private static final Pattern ID_PATTERN = Pattern.compile("\"_id\":\"([^\"]+)\"");
+
+	private ElasticSearchAuditDestination destination;
+	private List<List<String>>            sentBulks;
+
+	@Before
+	public void setUp() {
+		Properties props = new Properties();
+
+		props.setProperty("xasecure.audit.destination.elasticsearch.urls", "localhost");
+		props.setProperty("xasecure.audit.destination.elasticsearch.port", "1");
+		props.setProperty("xasecure.audit.destination.elasticsearch.bulk.streaming.enabled", "true");
+		props.setProperty("xasecure.audit.destination.elasticsearch.bulk.target.latency.ms", "1");
+		props.setProperty("xasecure.audit.destination.elasticsearch.bulk.max.retries", "2");
+
+		destination = new ElasticSearchAuditDestination();
+		sentBulks   = new ArrayList<>();
+
+		destination.init(props, "xasecure.audit.destination.elasticsearch");
+	}
+
+	@Test
+	public void testRetryOnlyFailedItems() throws Exception {
+		// first bulk: id-2 is rejected (429) and id-3 is invalid (400); the retry indexes id-2
+		RestClient client = createClient((ids, attempt) -> attempt == 0 ? itemsResponse(201, 429, 400) : itemsResponse(201));
+
+		assertTrue(destination.logBulks(client, createEvents("id-1", "id-2", "id-3")));
+		assertEquals(Arrays.asList(Arrays.asList("id-1", "id-2", "id-3"), Arrays.asList("id-2")), sentBulks);
+		assertEquals(2, destination.getTotalSuccessCount());
+		assertEquals(1, destination.getTotalFailedCount());
+		assertEquals(0, destination.getTotalDeferredCount());
+	}
+
+	@Test
+	public void testClientErrorIsNotRetried() throws Exception {
+		RestClient client = createClient((ids, attempt) -> { throw responseException(400); });
+
+		assertTrue(destination.logBulks(client, createEvents("id-1", "id-2")));
+		assertEquals(1, sentBulks.size());
+		assertEquals(0, destination.getTotalSuccessCount());
+		assertEquals(2, destination.getTotalFailedCount());
+		assertEquals(0, destination.getTotalDeferredCount());
+	}
+
+	@Test
+	public void testServerErrorIsDeferredAfterRetries() throws Exception {
+		RestClient client = createClient((ids, attempt) -> { throw responseException(503); });
+
+		assertFalse(destination.logBulks(client, createEvents("id-1", "id-2")));
+		assertEquals(3, sentBulks.size());
+		assertEquals(0, destination.getTotalSuccessCount());
+		assertEquals(0, destination.getTotalFailedCount());
+		assertEquals(2, destination.getTotalDeferredCount());
+	}
+
+	private interface BulkHandler {
+		Response handle(List<String> ids, int attempt) throws Exception;
+	}
+
+	private RestClient createClient(BulkHandler handler) {
+		RestClient ret = mock(RestClient.class);
+
+		doAnswer(invocation -> {
+			Request          request  = invocation.getArgument(0);
+			ResponseListener listener = invocation.getArgument(1);
+			List<String>     ids      = new ArrayList<>();
+			Matcher          matcher  = ID_PATTERN.matcher(bodyOf(request.getEntity().getContent()));
+
+			while (matcher.find()) {
+				ids.add(matcher.group(1));
+			}
+
+			int attempt = sentBulks.size();
+
+			sentBulks.add(ids);
+
+			try {
+				listener.onSuccess(handler.handle(ids, attempt));
+			} catch (Exception excp) {
+				listener.onFailure(excp);
+			}
+
+			return null;
+		}).when(ret).performRequestAsync(any(Request.class), any(ResponseListener.class));
+
+		return ret;
+	}
+
+	private static Response itemsResponse(int... statuses) throws Exception {
+		StringBuilder sb = new StringBuilder("{\"took\":1,\"errors\":true,\"items\":[");
+
+		for (int i = 0; i < statuses.length; i++) {
+			sb.append(i > 0 ? "," : "").append("{\"index\":{\"_id\":\"").append(i).append("\",\"status\":").append(statuses[i]).append("}}");
+		}
+
+		sb.append("]}");
+
+		Response ret = mock(Response.class);
+
+		when(ret.getEntity()).thenReturn(new StringEntity(sb.toString(), StandardCharsets.UTF_8));
+
+		return ret;
+	}
+
+	private static ResponseException responseException(int status) throws Exception {
+		Response    response    = mock(Response.class);
+		StatusLine  statusLine  = mock(StatusLine.class);
+		RequestLine requestLine = mock(RequestLine.class);
+
+		when(statusLine.getStatusCode()).thenReturn(status);
+		when(requestLine.getMethod()).thenReturn("POST");
+		when(requestLine.getUri()).thenReturn("/_bulk");
+		when(response.getStatusLine()).thenReturn(statusLine);
+		when(response.getRequestLine()).thenReturn(requestLine);
+
+		return new ResponseException(response);
+	}
+
+	private static List<AuditEventBase> createEvents(String... ids) {
+		List<AuditEventBase> ret = new ArrayList<>();
+
+		for (String id : ids) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setEventId(id);
+			event.setUser("john");
+			event.setAccessType("select");
+			event.setRepositoryName("cl1_hive");
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+
+	private static String bodyOf(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[]                buf = new byte[4096];
+
+		for (int len = in.read(buf); len != -1; len = in.read(buf)) {
+			out.write(buf, 0, len);
+		}
+
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
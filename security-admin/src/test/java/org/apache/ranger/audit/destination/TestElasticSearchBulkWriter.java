@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestElasticSearchBulkWriter {
+
+	@Test
+	public void testSameDocumentAsToDoc() throws Exception {
+		ElasticSearchAuditDestination destination = new ElasticSearchAuditDestination();
+		ElasticSearchBulkWriter writer = new ElasticSearchBulkWriter("ranger_audits");
+
+		AuthzAuditEvent event1 = createEvent("id-1", "john", "db1/\"tbl\"\\été\n\u0001\ud83d\ude00", new Date(1600000000000L));
+		AuthzAuditEvent event2 = createEvent("id-2", null, "db1/tbl2", new Date(1600000001123L));
+		event2.setTags(null);
+		event2.setPolicyVersion(null);
+
+		writer.write(event1);
+		writer.write(event2);
+
+		assertEquals(2, writer.getCount());
+
+		String[] lines = bodyOf(writer.toEntity(false)).split("\n");
+
+		assertEquals(4, lines.length);
+		assertEquals("{\"index\":{\"_index\":\"ranger_audits\",\"_id\":\"id-1\"}}", lines[0]);
+		assertEquals(toDoc(destination, event1), XContentHelper.convertToMap(XContentType.JSON.xContent(), lines[1], false));
+		assertEquals("{\"index\":{\"_index\":\"ranger_audits\",\"_id\":\"id-2\"}}", lines[2]);
+		assertEquals(toDoc(destination, event2), XContentHelper.convertToMap(XContentType.JSON.xContent(), lines[3], false));
+		assertTrue(lines[1].contains("\"evtTime\":\"2020-09-13T12:26:40.000Z\""));
+		assertTrue(lines[3].contains("\"evtTime\":\"2020-09-13T12:26:41.123Z\""));
+
+		// the buffer is reused for the next bulk
+		writer.reset();
+		writer.write(event2);
+
+		String[] gzipLines = bodyOf(writer.toEntity(true)).split("\n");
+
+		assertEquals(1, writer.getCount());
+		assertEquals(Arrays.asList(lines[2], lines[3]), Arrays.asList(gzipLines));
+	}
+
+	@Test
+	public void testReadFailures() throws Exception {
+		String noErrors = "{\"took\":30,\"errors\":false,\"items\":[{\"index\":{\"_index\":\"ranger_audits\",\"_id\":\"1\",\"status\":201}}]}";
+		String errors   = "{\"took\":30,\"errors\":true,\"items\":["
+				+ "{\"index\":{\"_index\":\"ranger_audits\",\"_id\":\"1\",\"status\":201,\"_shards\":{\"total\":2}}},"
+				+ "{\"index\":{\"_index\":\"ranger_audits\",\"_id\":\"2\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"failed to parse\"}}},"
+				+ "{\"index\":{\"_index\":\"ranger_audits\",\"_id\":\"3\",\"status\":429}}]}";
+
+		assertTrue(ElasticSearchBulkWriter.readFailures(toStream(noErrors)).isEmpty());
+
+		Map<Integer, ElasticSearchBulkWriter.ItemFailure> failures = ElasticSearchBulkWriter.readFailures(toStream(errors));
+
+		assertEquals(2, failures.size());
+		assertEquals(400, failures.get(1).getStatus());
+		assertEquals("mapper_parsing_exception: failed to parse", failures.get(1).getReason());
+		assertEquals(429, failures.get(2).getStatus());
+		assertEquals("HTTP 429", failures.get(2).getReason());
+		assertFalse(ElasticSearchBulkWriter.isRetriable(failures.get(1).getStatus()));
+		assertTrue(ElasticSearchBulkWriter.isRetriable(failures.get(2).getStatus()));
+	}
+
+	private Map<String, Object> toDoc(ElasticSearchAuditDestination destination, AuthzAuditEvent event) throws IOException {
+		String json = Strings.toString(XContentFactory.contentBuilder(XContentType.JSON).map(destination.toDoc(event)));
+
+		return XContentHelper.convertToMap(XContentType.JSON.xContent(), json, false);
+	}
+
+	private static String bodyOf(HttpEntity entity) throws Exception {
+		byte[] body = readAll(entity.getContent());
+
+		if (body.length > 2 && body[0] == (byte) 0x1f && body[1] == (byte) 0x8b) { // gzip
+			body = readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+		}
+
+		return new String(body, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] readAll(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[]                buf = new byte[4096];
+
+		for (int len = in.read(buf); len != -1; len = in.read(buf)) {
+			out.write(buf, 0, len);
+		}
+
+		return out.toByteArray();
+	}
+
+	private static InputStream toStream(String str) {
+		return new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static AuthzAuditEvent createEvent(String id, String user, String resource, Date eventTime) {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setEventId(id);
+		event.setUser(user);
+		event.setAccessType("select");
+		event.setResourcePath(resource);
+		event.setResourceType("@table");
+		event.setRepositoryName("cl1_hive");
+		event.setRepositoryType(3);
+		event.setAccessResult((short) 1);
+		event.setPolicyId(42);
+		event.setPolicyVersion(7L);
+		event.setEventTime(eventTime);
+		event.setSeqNum(11);
+		event.setEventCount(1);
+		event.setEventDurationMS(3);
+		event.setClientIP("10.0.0.1");
+		event.setTags(new HashSet<>(Arrays.asList("PII", "PCI")));
+
+		return event;
+	}
+}
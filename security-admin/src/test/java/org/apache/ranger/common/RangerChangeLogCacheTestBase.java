@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Tests of the change log of a download cache, run for each cache that keeps one. A subclass mocks the store to return
+ * versions 1 to 4 of its data, in that order, and tells the deltas expected between these versions.
+ *
+ * @param <C> cache
+ * @param <T> download returned by the cache: all of the data, or the deltas since the plugin's version
+ */
+public abstract class RangerChangeLogCacheTestBase<C, T> {
+	/*
+	 * @return cache, with the store mocked to return versions 1 to 4 of the data
+	 */
+	protected abstract C createCache(int maxDeltaVersions) throws Exception;
+
+	/*
+	 * @return download of versionInDB for a plugin that knows lastKnownVersion and supports deltas
+	 */
+	protected abstract T download(C cache, Long lastKnownVersion, Long versionInDB) throws Exception;
+
+	protected abstract Long getVersion(T download);
+
+	/*
+	 * @return deltas in the download; null if it has all of the data
+	 */
+	protected abstract List<?> getDeltas(T download);
+
+	protected abstract int getExpectedDeltaCount(long fromVersion, long toVersion);
+
+	@Test
+	public void testDeltasFromChangeLog() throws Exception {
+		C cache = createCache(100);
+		T full  = download(cache, -1L, 1L);
+
+		Assert.assertEquals(Long.valueOf(1L), getVersion(full));
+		Assert.assertNull(getDeltas(full));
+
+		for (long version = 2; version <= 4; version++) {
+			T deltas = download(cache, version - 1, version);
+
+			Assert.assertEquals(Long.valueOf(version), getVersion(deltas));
+			Assert.assertEquals("deltas " + (version - 1) + " => " + version, getExpectedDeltaCount(version - 1, version), getDeltas(deltas).size());
+		}
+
+		for (long version = 1; version < 3; version++) {
+			Assert.assertEquals("deltas " + version + " => 4", getExpectedDeltaCount(version, 4), getDeltas(download(cache, version, 4L)).size());
+		}
+
+		Assert.assertNull("version not in change log", getDeltas(download(cache, 0L, 4L)));
+	}
+
+	@Test
+	public void testChangeLogLimit() throws Exception {
+		C cache = createCache(1);
+
+		download(cache, -1L, 1L);
+		download(cache, 1L, 2L);
+
+		Assert.assertEquals(getExpectedDeltaCount(2, 3), getDeltas(download(cache, 2L, 3L)).size());
+		Assert.assertNull("oldest version dropped from change log", getDeltas(download(cache, 1L, 3L)));
+	}
+
+	/*
+	 * @param deltaCounts by version: deltas from the previous version
+	 * @return deltas from fromVersion to toVersion, for caches that return the deltas of all versions in between
+	 */
+	protected static int sumDeltaCounts(int[] deltaCounts, long fromVersion, long toVersion) {
+		int ret = 0;
+
+		for (long version = fromVersion + 1; version <= toVersion; version++) {
+			ret += deltaCounts[(int) version];
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerChangeLog {
+	@Test
+	public void testAppendAndTrim() {
+		RangerChangeLog<String> v1 = new RangerChangeLog<>();
+		RangerChangeLog<String> v2 = v1.append(1L, Arrays.asList("a", "b"), 3, 4);
+		RangerChangeLog<String> v3 = v2.append(2L, Collections.<String>emptyList(), 3, 4);
+		RangerChangeLog<String> v4 = v3.append(3L, Arrays.asList("c"), 3, 4);
+
+		Assert.assertNull("empty change log", v1.getDeltasSince(1L));
+		Assert.assertEquals("append returns a new change log", 0, v1.getVersionCount());
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), v4.getDeltasSince(1L));
+		Assert.assertEquals(Arrays.asList("c"), v4.getDeltasSince(2L));
+		Assert.assertEquals(Arrays.asList("c"), v4.getDeltasSince(3L));
+		Assert.assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.<String>emptyList(), Arrays.asList("c")), v4.getDeltasOfVersionsSince(1L));
+		Assert.assertNull("latest version", v4.getDeltasSince(4L));
+		Assert.assertNull(v4.getDeltasSince(null));
+		Assert.assertEquals(3, v4.getDeltaCount());
+
+		// more versions than maxVersions
+		RangerChangeLog<String> v5 = v4.append(4L, Arrays.asList("d"), 3, 4);
+
+		Assert.assertEquals(3, v5.getVersionCount());
+		Assert.assertNull("oldest version dropped", v5.getDeltasSince(1L));
+		Assert.assertEquals(Arrays.asList("c", "d"), v5.getDeltasSince(2L));
+
+		// more deltas than maxDeltas
+		RangerChangeLog<String> v6 = v5.append(5L, Arrays.asList("e", "f", "g"), 3, 4);
+
+		Assert.assertEquals(2, v6.getVersionCount());
+		Assert.assertEquals(4, v6.getDeltaCount());
+		Assert.assertNull("oldest versions dropped", v6.getDeltasSince(3L));
+		Assert.assertEquals(Arrays.asList("d", "e", "f", "g"), v6.getDeltasSince(4L));
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ranger.biz.RoleDBStore;
+import org.apache.ranger.biz.XUserMgr;
+import org.apache.ranger.plugin.model.GroupInfo;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRole.RoleMember;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.UserInfo;
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.store.TagStore;
+import org.apache.ranger.plugin.util.RangerRoles;
+import org.apache.ranger.plugin.util.RangerUserStore;
+import org.apache.ranger.plugin.util.SearchFilter;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/*
+ * Many plugins downloading from the caches while versions in the database change, with slow database loads
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerDownloadCachesLoad {
+	private static final String SERVICE_NAME     = "svc";
+	private static final Long   SERVICE_ID       = 1L;
+	private static final int    PLUGIN_COUNT     = 1000;
+	private static final int    THREAD_COUNT     = 50;
+	private static final long   VERSION_COUNT    = 5;
+	private static final long   LOAD_TIME_MS     = 20;
+	private static final long   POLL_INTERVAL_MS = 10;
+	private static final int    MAX_ROUNDS       = 1000;
+
+	@Mock
+	ServiceStore serviceStore;
+
+	@Mock
+	TagStore tagStore;
+
+	@Mock
+	RoleDBStore roleDBStore;
+
+	@Mock
+	XUserMgr xUserMgr;
+
+	private final AtomicLong    versionInDB          = new AtomicLong(1L);
+	private final AtomicInteger dbLoads              = new AtomicInteger();
+	private final AtomicInteger dbLoadsInProgress    = new AtomicInteger();
+	private final AtomicInteger maxConcurrentDbLoads = new AtomicInteger();
+
+	@Test
+	public void testPolicyDownloads() throws Exception {
+		Mockito.when(serviceStore.getServicePolicyVersion(SERVICE_NAME)).thenAnswer(invocation -> versionInDB.get());
+		Mockito.when(serviceStore.getServicePolicyDeltasOrPolicies(Mockito.eq(SERVICE_NAME), Mockito.anyLong())).thenAnswer(invocation -> slowLoad(() -> {
+			Long fromVersion = invocation.getArgument(1);
+			long version     = versionInDB.get();
+
+			return fromVersion == -1L ? createServicePolicies(version, createPolicy(version)) : createPolicyDeltas(version);
+		}));
+
+		RangerServicePoliciesCache cache = new RangerServicePoliciesCache(10, 100, 10000);
+
+		runPlugins(lastKnownVersion -> {
+			ServicePolicies servicePolicies = cache.getServicePolicies(SERVICE_NAME, SERVICE_ID, lastKnownVersion, false, serviceStore);
+
+			Assert.assertNotNull(servicePolicies);
+
+			return servicePolicies.getPolicyVersion();
+		});
+
+		assertSingleLoadAtATime();
+	}
+
+	@Test
+	public void testTagDownloads() throws Exception {
+		Mockito.when(tagStore.getTagVersion(SERVICE_NAME)).thenAnswer(invocation -> versionInDB.get());
+		Mockito.when(tagStore.getServiceTags(Mockito.eq(SERVICE_NAME), Mockito.anyLong())).thenAnswer(invocation -> slowLoad(() -> {
+			Long fromVersion = invocation.getArgument(1);
+
+			return createServiceTags(versionInDB.get(), fromVersion != -1L);
+		}));
+
+		RangerServiceTagsCache cache = new RangerServiceTagsCache(true, 10);
+
+		runPlugins(lastKnownVersion -> {
+			ServiceTags serviceTags = cache.getServiceTags(SERVICE_NAME, SERVICE_ID, lastKnownVersion, false, tagStore);
+
+			Assert.assertNotNull(serviceTags);
+
+			return serviceTags.getTagVersion();
+		});
+
+		assertSingleLoadAtATime();
+	}
+
+	@Test
+	public void testRoleDownloads() throws Exception {
+		Mockito.when(roleDBStore.getRoles((SearchFilter) null)).thenAnswer(invocation -> slowLoad(() -> Collections.singletonList(createRole(versionInDB.get()))));
+
+		RangerRoleCache cache = new RangerRoleCache(10, true, 100);
+
+		runPlugins(lastKnownVersion -> {
+			RangerRoles roles = cache.getLatestRangerRoleOrCached(SERVICE_NAME, roleDBStore, lastKnownVersion, versionInDB.get(), true);
+
+			return roles != null ? roles.getRoleVersion() : lastKnownVersion;
+		});
+
+		assertSingleLoadAtATime();
+	}
+
+	@Test
+	public void testUserStoreDownloads() throws Exception {
+		Mockito.when(xUserMgr.getUsers()).thenAnswer(invocation -> slowLoad(() -> Collections.singleton(createUser(versionInDB.get()))));
+		Mockito.when(xUserMgr.getGroups()).thenReturn(Collections.<GroupInfo>emptySet());
+		Mockito.when(xUserMgr.getUserGroups()).thenReturn(Collections.<String, Set<String>>emptyMap());
+
+		RangerUserStoreCache cache = new RangerUserStoreCache(10, true, 100);
+
+		runPlugins(lastKnownVersion -> {
+			RangerUserStore userStore = cache.getLatestRangerUserStoreOrCached(xUserMgr, lastKnownVersion, versionInDB.get(), true);
+
+			return userStore != null ? userStore.getUserStoreVersion() : lastKnownVersion;
+		});
+
+		assertSingleLoadAtATime();
+	}
+
+	private interface Plugin {
+		// downloads from the cache, returns the version the plugin has after the download
+		Long download(Long lastKnownVersion) throws Exception;
+	}
+
+	/*
+	 * Each round, all plugins download once, from up to THREAD_COUNT threads at a time. Rounds continue until the
+	 * last version is in the database and every plugin has it.
+	 */
+	private void runPlugins(Plugin plugin) throws Exception {
+		final long[]          pluginVersions = new long[PLUGIN_COUNT];
+		final ExecutorService executor       = Executors.newFixedThreadPool(THREAD_COUNT);
+		final Thread          versionUpdater = new Thread(() -> {
+			try {
+				for (long version = 2; version <= VERSION_COUNT; version++) {
+					Thread.sleep(LOAD_TIME_MS * 5);
+
+					versionInDB.set(version);
+				}
+			} catch (InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		Arrays.fill(pluginVersions, -1L);
+
+		versionUpdater.start();
+
+		try {
+			int rounds = 0;
+
+			while (versionUpdater.isAlive() || !allPluginsHaveVersion(pluginVersions, VERSION_COUNT)) {
+				Assert.assertTrue("plugins did not get the latest version in " + MAX_ROUNDS + " rounds", ++rounds <= MAX_ROUNDS);
+
+				List<Callable<Void>> downloads = new ArrayList<>(PLUGIN_COUNT);
+
+				for (int i = 0; i < PLUGIN_COUNT; i++) {
+					final int pluginId = i;
+
+					downloads.add(() -> {
+						Long version = plugin.download(pluginVersions[pluginId]);
+
+						Assert.assertTrue("plugin version went back", version >= pluginVersions[pluginId]);
+
+						pluginVersions[pluginId] = version;
+
+						return null;
+					});
+				}
+
+				for (Future<Void> download : executor.invokeAll(downloads)) {
+					download.get();
+				}
+
+				Thread.sleep(POLL_INTERVAL_MS);
+			}
+		} finally {
+			executor.shutdownNow();
+			versionUpdater.join();
+		}
+	}
+
+	private void assertSingleLoadAtATime() {
+		Assert.assertEquals("concurrent loads from the database", 1, maxConcurrentDbLoads.get());
+		// a request that read the version in the database just before a reload completed can start one more load
+		Assert.assertTrue("loads from the database: " + dbLoads.get(), dbLoads.get() <= VERSION_COUNT * 2);
+	}
+
+	private <T> T slowLoad(Callable<T> loader) throws Exception {
+		int inProgress = dbLoadsInProgress.incrementAndGet();
+
+		maxConcurrentDbLoads.accumulateAndGet(inProgress, Math::max);
+
+		try {
+			Thread.sleep(LOAD_TIME_MS);
+
+			dbLoads.incrementAndGet();
+
+			return loader.call();
+		} finally {
+			dbLoadsInProgress.decrementAndGet();
+		}
+	}
+
+	private static boolean allPluginsHaveVersion(long[] pluginVersions, long version) {
+		for (long pluginVersion : pluginVersions) {
+			if (pluginVersion != version) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static ServicePolicies createServicePolicies(Long version, RangerPolicy... policies) {
+		RangerServiceDef serviceDef = new RangerServiceDef();
+
+		serviceDef.setName("hive");
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceId(SERVICE_ID);
+		ret.setServiceName(SERVICE_NAME);
+		ret.setServiceDef(serviceDef);
+		ret.setPolicyVersion(version);
+		ret.setPolicies(new ArrayList<>(Arrays.asList(policies)));
+
+		return ret;
+	}
+
+	private static ServicePolicies createPolicyDeltas(Long version) {
+		ServicePolicies ret = createServicePolicies(version);
+
+		ret.setPolicies(null);
+		ret.setPolicyDeltas(Collections.singletonList(new RangerPolicyDelta(version, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, version, createPolicy(version))));
+
+		return ret;
+	}
+
+	private static RangerPolicy createPolicy(Long version) {
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(1L);
+		ret.setVersion(version);
+		ret.setServiceType("hive");
+		ret.setService(SERVICE_NAME);
+		ret.setName("policy-1");
+
+		return ret;
+	}
+
+	private static ServiceTags createServiceTags(Long version, boolean isDelta) {
+		RangerTag tag = new RangerTag();
+
+		tag.setId(1L);
+		tag.setType("tag-v" + version);
+
+		Map<Long, RangerTag> tags = new HashMap<>();
+
+		tags.put(tag.getId(), tag);
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setServiceName(SERVICE_NAME);
+		ret.setTagVersion(version);
+		ret.setTags(tags);
+		ret.setIsDelta(isDelta);
+
+		return ret;
+	}
+
+	private static RangerRole createRole(Long version) {
+		return new RangerRole("role-v" + version, null, null, Collections.singletonList(new RoleMember("user1", false)), Collections.<RoleMember>emptyList(), Collections.<RoleMember>emptyList());
+	}
+
+	private static UserInfo createUser(Long version) {
+		return new UserInfo("user1", null, Collections.singletonMap("version", "v" + version));
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ranger.biz.RoleDBStore;
+import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRole.RoleMember;
+import org.apache.ranger.plugin.model.RangerRoleDelta;
+import org.apache.ranger.plugin.util.RangerRoleDeltaUtil;
+import org.apache.ranger.plugin.util.RangerRoles;
+import org.apache.ranger.plugin.util.SearchFilter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerRoleCache extends RangerChangeLogCacheTestBase<RangerRoleCache, RangerRoles> {
+
+	@Mock
+	RoleDBStore roleDBStore;
+
+	@Override
+	protected RangerRoleCache createCache(int maxDeltaVersions) throws Exception {
+		List<RangerRole> rolesV1 = new ArrayList<>(Arrays.asList(createRole("r1", "u1"), createRole("r2", "u2"), createRole("r3", "u3")));
+		List<RangerRole> rolesV2 = new ArrayList<>(Arrays.asList(createRole("r1", "u1"), createRole("r2", "u2", "u22"), createRole("r4", "u4")));
+		List<RangerRole> rolesV4 = new ArrayList<>(Arrays.asList(createRole("r1", "u1", "u11"), createRole("r2", "u2", "u22"), createRole("r4", "u4")));
+
+		// roles not changed; the change log keeps versions only while deltas are fewer than roles
+		for (int i = 5; i < 10; i++) {
+			RangerRole role = createRole("r" + i, "u" + i);
+
+			rolesV1.add(role);
+			rolesV2.add(role);
+			rolesV4.add(role);
+		}
+
+		// no changes to roles in version 3
+		Mockito.when(roleDBStore.getRoles((SearchFilter) null)).thenReturn(rolesV1, rolesV2, rolesV2, rolesV4);
+
+		return new RangerRoleCache(10, true, maxDeltaVersions);
+	}
+
+	@Override
+	protected RangerRoles download(RangerRoleCache cache, Long lastKnownVersion, Long versionInDB) throws Exception {
+		return cache.getLatestRangerRoleOrCached("svc", roleDBStore, lastKnownVersion, versionInDB, true);
+	}
+
+	@Override
+	protected Long getVersion(RangerRoles download) {
+		return download.getRoleVersion();
+	}
+
+	@Override
+	protected List<?> getDeltas(RangerRoles download) {
+		Assert.assertTrue("roles or deltas", download.getRangerRoles() == null ^ download.getRoleDeltas() == null);
+
+		return download.getRoleDeltas();
+	}
+
+	@Override
+	protected int getExpectedDeltaCount(long fromVersion, long toVersion) {
+		return sumDeltaCounts(new int[] { 0, 0, 3, 0, 1 }, fromVersion, toVersion);
+	}
+
+	@Test
+	public void testRoleDeltas() throws Exception {
+		RangerRoleCache cache  = createCache(100);
+		RangerRoles     fullV1 = download(cache, -1L, 1L);
+
+		Assert.assertEquals(8, fullV1.getRangerRoles().size());
+		Assert.assertNull("no change", download(cache, 1L, 1L));
+
+		RangerRoles deltasV2 = download(cache, 1L, 2L);
+
+		Assert.assertNull(deltasV2.getRangerRoles());
+
+		for (RangerRoleDelta delta : deltasV2.getRoleDeltas()) {
+			switch (delta.getRoleName()) {
+				case "r2":
+					Assert.assertEquals(Integer.valueOf(RangerRoleDelta.CHANGE_TYPE_ROLE_UPDATE), delta.getChangeType());
+					break;
+				case "r3":
+					Assert.assertEquals(Integer.valueOf(RangerRoleDelta.CHANGE_TYPE_ROLE_DELETE), delta.getChangeType());
+					break;
+				case "r4":
+					Assert.assertEquals(Integer.valueOf(RangerRoleDelta.CHANGE_TYPE_ROLE_CREATE), delta.getChangeType());
+					break;
+				default:
+					Assert.fail("unexpected delta: " + delta);
+			}
+		}
+
+		Assert.assertEquals(getRoleNames(cache.getLatestRangerRoleOrCached("svc", roleDBStore, 1L, 2L, false)), getRoleNames(RangerRoleDeltaUtil.applyDeltas(fullV1, deltasV2)));
+		Assert.assertEquals("plugin without delta support", 8, cache.getLatestRangerRoleOrCached("svc", roleDBStore, 1L, 2L, false).getRangerRoles().size());
+
+		Mockito.verify(roleDBStore, Mockito.times(2)).getRoles((SearchFilter) null);
+	}
+
+	@Test
+	public void testVersionChangedDuringLoad() throws Exception {
+		RangerRoleCache cache = createCache(100);
+
+		// version 3 is created while the roles of version 2 are loaded
+		Mockito.when(roleDBStore.getRoleVersion("svc")).thenReturn(1L, 3L, 3L);
+
+		download(cache, -1L, 1L);
+
+		Assert.assertNull("no deltas to a version loaded with later changes", getDeltas(download(cache, 1L, 2L)));
+		Assert.assertEquals(0, getDeltas(download(cache, 2L, 3L)).size());
+		Assert.assertNull("version not in change log", getDeltas(download(cache, 1L, 3L)));
+	}
+
+	private static Set<String> getRoleNames(RangerRoles roles) {
+		Set<String> ret = new HashSet<>();
+
+		for (RangerRole role : roles.getRangerRoles()) {
+			ret.add(role.getName());
+		}
+
+		return ret;
+	}
+
+	private static RangerRole createRole(String name, String... users) {
+		List<RoleMember> members = new ArrayList<>();
+
+		for (String user : users) {
+			members.add(new RoleMember(user, false));
+		}
+
+		return new RangerRole(name, null, null, members, null, null);
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicyDelta;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.CompactServicePolicies;
+import org.apache.ranger.plugin.util.RangerPolicyDeltaUtil;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerServicePoliciesCache extends RangerChangeLogCacheTestBase<RangerServicePoliciesCache, ServicePolicies> {
+	private static final String SERVICE_NAME = "svc";
+	private static final Long   SERVICE_ID   = 1L;
+
+	@Mock
+	ServiceStore serviceStore;
+
+	private final Map<Long, ServicePolicies> deltasFromVersion = new HashMap<>();
+	private       long                       versionInDB       = 1L;
+
+	@Before
+	public void setup() throws Exception {
+		// v1: p1, p2; v2: p1 updated; v3: p3 created; v4: p3 deleted, p2 and p1 updated
+		deltasFromVersion.put(1L, createDeltas(2L, createDelta(10L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 2L, 1L)));
+		deltasFromVersion.put(2L, createDeltas(3L, createDelta(11L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 3L, 3L)));
+		deltasFromVersion.put(3L, createDeltas(4L, createDelta(12L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 4L, 3L),
+		                                           createDelta(13L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 4L, 2L),
+		                                           createDelta(14L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 4L, 1L)));
+	}
+
+	@Override
+	protected RangerServicePoliciesCache createCache(int maxDeltaVersions) throws Exception {
+		Mockito.when(serviceStore.getServicePolicyVersion(SERVICE_NAME)).thenAnswer(invocation -> versionInDB);
+		Mockito.when(serviceStore.getServicePolicyDeltasOrPolicies(Mockito.eq(SERVICE_NAME), Mockito.anyLong())).thenAnswer(invocation -> {
+			Long fromVersion = invocation.getArgument(1);
+
+			return fromVersion == -1L ? createServicePolicies(1L, createPolicy(1L, 1L), createPolicy(2L, 1L)) : deltasFromVersion.get(fromVersion);
+		});
+
+		return new RangerServicePoliciesCache(10, maxDeltaVersions, 10000);
+	}
+
+	@Override
+	protected ServicePolicies download(RangerServicePoliciesCache cache, Long lastKnownVersion, Long versionInDB) throws Exception {
+		this.versionInDB = versionInDB;
+
+		return getServicePolicies(cache, lastKnownVersion);
+	}
+
+	@Override
+	protected Long getVersion(ServicePolicies download) {
+		return download.getPolicyVersion();
+	}
+
+	@Override
+	protected List<?> getDeltas(ServicePolicies download) {
+		Assert.assertTrue("policies or deltas", download.getPolicies() == null ^ download.getPolicyDeltas() == null);
+
+		return download.getPolicyDeltas();
+	}
+
+	@Override
+	protected int getExpectedDeltaCount(long fromVersion, long toVersion) {
+		// deltas of more than one version are composed to one delta per changed policy: p1 and p3 up to v3; p1 and p2 up
+		// to v4, as p3 created in v3 is deleted in v4
+		return toVersion == fromVersion + 1 ? deltasFromVersion.get(fromVersion).getPolicyDeltas().size() : 2;
+	}
+
+	@Test
+	public void testComposedDeltas() throws Exception {
+		RangerServicePoliciesCache cache      = createCache(100);
+		List<RangerPolicy>         policiesV1 = getServicePolicies(cache, -1L).getPolicies();
+
+		Assert.assertEquals(2, policiesV1.size());
+
+		for (versionInDB = 2L; versionInDB <= 4L; versionInDB++) {
+			ServicePolicies deltas = getServicePolicies(cache, versionInDB - 1);
+
+			Assert.assertEquals("deltas of one version", deltasFromVersion.get(versionInDB - 1).getPolicyDeltas(), deltas.getPolicyDeltas());
+		}
+
+		versionInDB = 4L;
+
+		ServicePolicies deltasFromV1 = getServicePolicies(cache, 1L);
+
+		Assert.assertEquals(Long.valueOf(4L), deltasFromV1.getPolicyVersion());
+		Assert.assertNull(deltasFromV1.getPolicies());
+		Assert.assertEquals("p3 created and deleted", Arrays.asList(13L, 14L), getDeltaIds(deltasFromV1));
+
+		for (RangerPolicyDelta delta : deltasFromV1.getPolicyDeltas()) {
+			Assert.assertEquals(Integer.valueOf(RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE), delta.getChangeType());
+			Assert.assertEquals("latest version of the policy", Long.valueOf(4L), delta.getPolicy().getVersion());
+		}
+
+		Assert.assertSame("deltas from a version are composed once", deltasFromV1, getServicePolicies(cache, 1L));
+
+		ServicePolicies deltasFromV2 = getServicePolicies(cache, 2L);
+
+		Assert.assertEquals(Arrays.asList(13L, 14L), getDeltaIds(deltasFromV2));
+
+		ServicePolicies deltasFromV3 = getServicePolicies(cache, 3L);
+
+		Assert.assertEquals(Arrays.asList(12L, 13L, 14L), getDeltaIds(deltasFromV3));
+
+		// plugin with v1 policies has the latest policies after applying the deltas
+		List<RangerPolicy> latest   = getServicePolicies(cache, -1L).getPolicies();
+		List<RangerPolicy> policies = RangerPolicyDeltaUtil.applyDeltas(policiesV1, deltasFromV1.getPolicyDeltas(), "hive");
+
+		Assert.assertEquals(latest.size(), policies.size());
+
+		for (int i = 0; i < latest.size(); i++) {
+			Assert.assertSame(latest.get(i), policies.get(i));
+		}
+
+		Assert.assertEquals("served from memory", 7, cache.getDeltaCacheHitCount());
+		Assert.assertEquals(0, cache.getDeltaCacheMissCount());
+
+		// version not in the change log
+		Assert.assertNotNull(getServicePolicies(cache, 0L).getPolicies());
+		Assert.assertEquals(1, cache.getDeltaCacheMissCount());
+
+		Mockito.verify(serviceStore, Mockito.times(1)).getServicePolicyDeltas(SERVICE_NAME, 0L);
+	}
+
+	@Test
+	public void testComposeDeltas() {
+		List<RangerPolicyDelta> v2 = Arrays.asList(createDelta(1L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 2L, 5L), createDelta(2L, RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE, 2L, 6L));
+		List<RangerPolicyDelta> v3 = Arrays.asList(createDelta(3L, RangerPolicyDelta.CHANGE_TYPE_POLICY_UPDATE, 3L, 5L), createDelta(4L, RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE, 3L, 7L));
+
+		List<RangerPolicyDelta> composed = RangerServicePoliciesCache.composeDeltas(Arrays.asList(v2, v3));
+
+		Assert.assertEquals(3, composed.size());
+		Assert.assertEquals(Integer.valueOf(RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE), composed.get(0).getChangeType());
+		Assert.assertEquals(Long.valueOf(6L), composed.get(0).getPolicyId());
+		Assert.assertEquals(Integer.valueOf(RangerPolicyDelta.CHANGE_TYPE_POLICY_CREATE), composed.get(1).getChangeType());
+		Assert.assertEquals(Long.valueOf(3L), composed.get(1).getPolicy().getVersion());
+		Assert.assertEquals(Integer.valueOf(RangerPolicyDelta.CHANGE_TYPE_POLICY_DELETE), composed.get(2).getChangeType());
+
+		List<RangerPolicyDelta> serviceChange = Collections.singletonList(new RangerPolicyDelta(5L, RangerPolicyDelta.CHANGE_TYPE_SERVICE_CHANGE, 4L, null));
+
+		Assert.assertNull(RangerServicePoliciesCache.composeDeltas(Arrays.asList(v2, serviceChange)));
+	}
+
+	@Test
+	public void testCompactServicePolicies() throws Exception {
+		RangerServicePoliciesCache cache      = createCache(100);
+		ServicePolicies            policiesV1 = getServicePolicies(cache, -1L);
+		byte[]                     compactV1  = cache.getCompactServicePolicies(SERVICE_NAME, -1L, false, policiesV1);
+
+		Assert.assertEquals(Long.valueOf(1L), CompactServicePolicies.fromByteArray(compactV1).getPolicyVersion());
+		Assert.assertSame("encoded once per version", compactV1, cache.getCompactServicePolicies(SERVICE_NAME, -1L, false, getServicePolicies(cache, -1L)));
+
+		versionInDB = 2L;
+
+		ServicePolicies deltas        = getServicePolicies(cache, 1L);
+		byte[]          compactDeltas = cache.getCompactServicePolicies(SERVICE_NAME, 1L, false, deltas);
+
+		Assert.assertEquals(deltas.getPolicyDeltas().size(), CompactServicePolicies.fromByteArray(compactDeltas).getPolicyDeltas().size());
+		Assert.assertSame(compactDeltas, cache.getCompactServicePolicies(SERVICE_NAME, 1L, false, getServicePolicies(cache, 1L)));
+
+		ServicePolicies policiesV2 = getServicePolicies(cache, -1L);
+		byte[]          compactV2  = cache.getCompactServicePolicies(SERVICE_NAME, -1L, false, policiesV2);
+
+		Assert.assertNotSame("new version", compactV1, compactV2);
+		Assert.assertEquals(Long.valueOf(2L), CompactServicePolicies.fromByteArray(compactV2).getPolicyVersion());
+		Assert.assertNull(CompactServicePolicies.fromByteArray(compactV2).getPolicyDeltas());
+	}
+
+	private ServicePolicies getServicePolicies(RangerServicePoliciesCache cache, Long lastKnownVersion) throws Exception {
+		return cache.getServicePolicies(SERVICE_NAME, SERVICE_ID, lastKnownVersion, false, serviceStore);
+	}
+
+	private static List<Long> getDeltaIds(ServicePolicies servicePolicies) {
+		List<Long> ret = new ArrayList<>();
+
+		for (RangerPolicyDelta delta : servicePolicies.getPolicyDeltas()) {
+			ret.add(delta.getId());
+		}
+
+		return ret;
+	}
+
+	private static ServicePolicies createServicePolicies(Long version, RangerPolicy... policies) {
+		RangerServiceDef serviceDef = new RangerServiceDef();
+
+		serviceDef.setName("hive");
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceId(SERVICE_ID);
+		ret.setServiceName(SERVICE_NAME);
+		ret.setServiceDef(serviceDef);
+		ret.setPolicyVersion(version);
+		ret.setPolicies(new ArrayList<>(Arrays.asList(policies)));
+
+		return ret;
+	}
+
+	private static ServicePolicies createDeltas(Long version, RangerPolicyDelta... deltas) {
+		ServicePolicies ret = createServicePolicies(version);
+
+		ret.setPolicies(null);
+		ret.setPolicyDeltas(Arrays.asList(deltas));
+
+		return ret;
+	}
+
+	private static RangerPolicyDelta createDelta(Long id, int changeType, Long policiesVersion, Long policyId) {
+		return new RangerPolicyDelta(id, changeType, policiesVersion, createPolicy(policyId, policiesVersion));
+	}
+
+	private static RangerPolicy createPolicy(Long id, Long version) {
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(id);
+		ret.setVersion(version);
+		ret.setServiceType("hive");
+		ret.setService(SERVICE_NAME);
+		ret.setName("policy-" + id);
+
+		return ret;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.store.TagStore;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerServiceTagsCache {
+	private static final String SERVICE_NAME = "svc";
+	private static final Long   SERVICE_ID   = 1L;
+
+	@Mock
+	TagStore tagStore;
+
+	private long versionInDB = 1L;
+
+	@Test
+	public void testDeltaDoesNotChangeCachedTags() throws Exception {
+		Mockito.when(tagStore.getTagVersion(SERVICE_NAME)).thenAnswer(invocation -> versionInDB);
+		Mockito.when(tagStore.getServiceTags(SERVICE_NAME, -1L)).thenReturn(createServiceTags(1L, false, "sig-1"));
+		Mockito.when(tagStore.getServiceTags(SERVICE_NAME, 1L)).thenReturn(createServiceTags(2L, true, "sig-2"));
+
+		RangerServiceTagsCache cache      = new RangerServiceTagsCache(true, 10);
+		ServiceTags            tagsV1     = cache.getServiceTags(SERVICE_NAME, SERVICE_ID, -1L, false, tagStore);
+		RangerServiceResource  resourceV1 = tagsV1.getServiceResources().get(0);
+
+		// the resource changes in v2
+		versionInDB = 2L;
+
+		ServiceTags deltasV2 = cache.getServiceTags(SERVICE_NAME, SERVICE_ID, 1L, false, tagStore);
+		ServiceTags tagsV2   = cache.getServiceTags(SERVICE_NAME, SERVICE_ID, -1L, false, tagStore);
+
+		Assert.assertTrue(deltasV2.getIsDelta());
+		Assert.assertEquals("sig-2", tagsV2.getServiceResources().get(0).getResourceSignature());
+
+		// plugins still downloading v1 get it unchanged
+		Assert.assertEquals(1, tagsV1.getServiceResources().size());
+		Assert.assertSame(resourceV1, tagsV1.getServiceResources().get(0));
+		Assert.assertEquals("sig-1", resourceV1.getResourceSignature());
+	}
+
+	private static ServiceTags createServiceTags(Long version, boolean isDelta, String resourceSignature) {
+		RangerTag             tag      = new RangerTag();
+		RangerServiceResource resource = new RangerServiceResource(null, SERVICE_NAME, null, resourceSignature);
+
+		tag.setId(1L);
+		tag.setType("PII");
+		resource.setId(1L);
+
+		Map<Long, RangerTag>        tags             = new HashMap<>();
+		Map<Long, List<Long>>       resourceToTagIds = new HashMap<>();
+		List<RangerServiceResource> resources        = new ArrayList<>();
+
+		tags.put(tag.getId(), tag);
+		resourceToTagIds.put(resource.getId(), Collections.singletonList(tag.getId()));
+		resources.add(resource);
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setServiceName(SERVICE_NAME);
+		ret.setTagVersion(version);
+		ret.setTags(tags);
+		ret.setServiceResources(resources);
+		ret.setResourceToTagIds(resourceToTagIds);
+		ret.setIsDelta(isDelta);
+
+		return ret;
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ranger.biz.XUserMgr;
+import org.apache.ranger.plugin.model.GroupInfo;
+import org.apache.ranger.plugin.model.RangerUserStoreDelta;
+import org.apache.ranger.plugin.model.UserInfo;
+import org.apache.ranger.plugin.util.RangerUserStore;
+import org.apache.ranger.plugin.util.RangerUserStoreDeltaUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestRangerUserStoreCache extends RangerChangeLogCacheTestBase<RangerUserStoreCache, RangerUserStore> {
+
+	@Mock
+	XUserMgr xUserMgr;
+
+	@Override
+	protected RangerUserStoreCache createCache(int maxDeltaVersions) throws Exception {
+		Set<UserInfo>  usersV1  = asSet(createUser("u1", "dept", "sales"), createUser("u2", "dept", "hr"), createUser("u3", "dept", "hr"));
+		Set<UserInfo>  usersV2  = asSet(createUser("u1", "dept", "sales"), createUser("u2", "dept", "finance"), createUser("u4", "dept", "hr"));
+		Set<UserInfo>  usersV4  = asSet(createUser("u1", "dept", "hr"), createUser("u2", "dept", "finance"), createUser("u4", "dept", "hr"));
+		Set<GroupInfo> groupsV1 = asSet(createGroup("g1", "owner", "u1"), createGroup("g2", "owner", "u2"));
+		Set<GroupInfo> groupsV2 = asSet(createGroup("g1", "owner", "u1"));
+
+		Map<String, Set<String>> userGroupsV1 = new HashMap<>();
+		Map<String, Set<String>> userGroupsV2 = new HashMap<>();
+
+		// users not changed; the change log keeps versions only while deltas are fewer than users and groups
+		for (int i = 5; i < 10; i++) {
+			usersV1.add(createUser("u" + i, "dept", "sales"));
+			usersV2.add(createUser("u" + i, "dept", "sales"));
+			usersV4.add(createUser("u" + i, "dept", "sales"));
+		}
+
+		userGroupsV1.put("u1", asSet("g1"));
+		userGroupsV1.put("u2", asSet("g1", "g2"));
+		userGroupsV2.put("u1", asSet("g1", "g2"));
+		userGroupsV2.put("u2", asSet("g1", "g2"));
+
+		// no changes to users and groups in version 3
+		Mockito.when(xUserMgr.getUsers()).thenReturn(usersV1, usersV2, usersV2, usersV4);
+		Mockito.when(xUserMgr.getGroups()).thenReturn(groupsV1, groupsV2, groupsV2, groupsV2);
+		Mockito.when(xUserMgr.getUserGroups()).thenReturn(userGroupsV1, userGroupsV2, userGroupsV2, userGroupsV2);
+
+		return new RangerUserStoreCache(10, true, maxDeltaVersions);
+	}
+
+	@Override
+	protected RangerUserStore download(RangerUserStoreCache cache, Long lastKnownVersion, Long versionInDB) throws Exception {
+		return cache.getLatestRangerUserStoreOrCached(xUserMgr, lastKnownVersion, versionInDB, true);
+	}
+
+	@Override
+	protected Long getVersion(RangerUserStore download) {
+		return download.getUserStoreVersion();
+	}
+
+	@Override
+	protected List<?> getDeltas(RangerUserStore download) {
+		Assert.assertTrue("userstore or deltas", download.getUserAttrMapping() == null ^ download.getUserStoreDeltas() == null);
+
+		return download.getUserStoreDeltas();
+	}
+
+	@Override
+	protected int getExpectedDeltaCount(long fromVersion, long toVersion) {
+		return sumDeltaCounts(new int[] { 0, 0, 5, 0, 1 }, fromVersion, toVersion);
+	}
+
+	@Test
+	public void testUserStoreDeltas() throws Exception {
+		RangerUserStoreCache cache  = createCache(100);
+		RangerUserStore      fullV1 = download(cache, -1L, 1L);
+
+		Assert.assertEquals(8, fullV1.getUserAttrMapping().size());
+		Assert.assertNull("no change", download(cache, 1L, 1L));
+
+		RangerUserStore deltasV2 = download(cache, 1L, 2L);
+
+		Assert.assertNull(deltasV2.getUserAttrMapping());
+
+		for (RangerUserStoreDelta delta : deltasV2.getUserStoreDeltas()) {
+			switch (delta.getName()) {
+				case "u1": // groups changed
+				case "u2": // attributes changed
+				case "u4":
+					Assert.assertEquals(Integer.valueOf(RangerUserStoreDelta.CHANGE_TYPE_USER_UPDATE), delta.getChangeType());
+					break;
+				case "u3":
+					Assert.assertEquals(Integer.valueOf(RangerUserStoreDelta.CHANGE_TYPE_USER_DELETE), delta.getChangeType());
+					break;
+				case "g2":
+					Assert.assertEquals(Integer.valueOf(RangerUserStoreDelta.CHANGE_TYPE_GROUP_DELETE), delta.getChangeType());
+					break;
+				default:
+					Assert.fail("unexpected delta: " + delta);
+			}
+		}
+
+		RangerUserStore fullV2  = cache.getLatestRangerUserStoreOrCached(xUserMgr, 1L, 2L, false);
+		RangerUserStore updated = RangerUserStoreDeltaUtil.applyDeltas(fullV1, deltasV2);
+
+		Assert.assertNull("plugin without delta support", fullV2.getUserStoreDeltas());
+		Assert.assertEquals(fullV2.getUserAttrMapping(), updated.getUserAttrMapping());
+		Assert.assertEquals(fullV2.getGroupAttrMapping(), updated.getGroupAttrMapping());
+		Assert.assertEquals(fullV2.getUserGroupMapping(), updated.getUserGroupMapping());
+
+		Mockito.verify(xUserMgr, Mockito.times(2)).getUsers();
+	}
+
+	@Test
+	public void testUserStoreDeltasDisabled() throws Exception {
+		Mockito.when(xUserMgr.getUsers()).thenReturn(asSet(createUser("u1", "dept", "sales")), asSet(createUser("u1", "dept", "hr")));
+		Mockito.when(xUserMgr.getGroups()).thenReturn(Collections.<GroupInfo>emptySet());
+		Mockito.when(xUserMgr.getUserGroups()).thenReturn(Collections.<String, Set<String>>emptyMap());
+
+		RangerUserStoreCache cache = new RangerUserStoreCache(10, false, 100);
+
+		cache.getLatestRangerUserStoreOrCached(xUserMgr, -1L, 1L, true);
+
+		RangerUserStore userStore = cache.getLatestRangerUserStoreOrCached(xUserMgr, 1L, 2L, true);
+
+		Assert.assertNull(userStore.getUserStoreDeltas());
+		Assert.assertEquals("hr", userStore.getUserAttrMapping().get("u1").get("dept"));
+	}
+
+	@Test
+	public void testVersionChangedDuringLoad() throws Exception {
+		RangerUserStoreCache cache = createCache(100);
+
+		// version 3 is created while the userstore of version 2 is loaded
+		Mockito.when(xUserMgr.getUserStoreVersion()).thenReturn(1L, 3L, 3L);
+
+		download(cache, -1L, 1L);
+
+		Assert.assertNull("no deltas to a version loaded with later changes", getDeltas(download(cache, 1L, 2L)));
+		Assert.assertEquals(0, getDeltas(download(cache, 2L, 3L)).size());
+		Assert.assertNull("version not in change log", getDeltas(download(cache, 1L, 3L)));
+	}
+
+	private static UserInfo createUser(String name, String attrName, String attrValue) {
+		return new UserInfo(name, null, Collections.singletonMap(attrName, attrValue));
+	}
+
+	private static GroupInfo createGroup(String name, String attrName, String attrValue) {
+		return new GroupInfo(name, null, Collections.singletonMap(attrName, attrValue));
+	}
+
+	@SafeVarargs
+	private static <T> Set<T> asSet(T... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.localaudit;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ranger.audit.destination.LocalAuditStoreDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.utils.RangerLocalAuditStore;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.common.SearchCriteria;
+import org.apache.ranger.view.VXAccessAudit;
+import org.apache.ranger.view.VXAccessAuditList;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestLocalAccessAuditsService {
+
+	private static final String PROP_PREFIX = "xasecure.audit.destination.localstore";
+	private static final long   BASE_TIME   = System.currentTimeMillis() - 60 * 60 * 1000;
+
+	@After
+	public void tearDown() {
+		PropertiesUtil.getPropertiesMap().remove(LocalAccessAuditsService.PROP_AUDIT_LOCAL_DIR);
+		PropertiesUtil.getPropertiesMap().remove("ranger.accesslogs.exclude.users.list");
+	}
+
+	// segments are read with the runtime classpath of security-admin
+	@Test
+	public void testSearchXAccessAudits() throws Exception {
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+
+		for (int i = 0; i < 20; i++) {
+			events.add(createEvent(i, "user" + (i % 2), "db1/table" + i, i % 2));
+		}
+
+		writeEvents(events, "zlib");
+
+		LocalAccessAuditsService service        = new LocalAccessAuditsService();
+		SearchCriteria           searchCriteria = new SearchCriteria();
+
+		searchCriteria.setStartIndex(0);
+		searchCriteria.setMaxRows(5);
+		searchCriteria.getParamList().put("requestUser", Collections.singletonList("user1"));
+
+		VXAccessAuditList audits = service.searchXAccessAudits(searchCriteria);
+
+		assertEquals("total count", 10, audits.getTotalCount());
+		assertEquals("audits", 5, audits.getVXAccessAudits().size());
+
+		VXAccessAudit audit = audits.getVXAccessAudits().get(0);
+
+		assertEquals("latest event first", 19, audit.getSequenceNumber());
+		assertEquals("user", "user1", audit.getRequestUser());
+		assertEquals("resource", "db1/table19", audit.getResourcePath());
+		assertEquals("result", 1, audit.getAccessResult());
+		assertEquals("tags", "PII", audit.getTags());
+
+		assertEquals("count", 20, service.getXAccessAuditSearchCount(new SearchCriteria()).getValue());
+	}
+
+	@Test
+	public void testSearchFilters() throws Exception {
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+
+		for (int i = 0; i < 20; i++) {
+			AuthzAuditEvent event = createEvent(i, "user" + (i % 2), "db1/table" + i, i % 2);
+
+			event.setPolicyId(i % 4);
+			event.setRepositoryType(i % 2 == 0 ? 1 : 7);
+			event.setClientIP("10.0.0." + (i % 5));
+			event.setZoneName(i % 3 == 0 ? "zone1" : null);
+			event.setClusterName("cl1");
+			event.setAgentHostname("host" + (i % 2) + ".example.com");
+			event.setRequestData("select * from table" + i);
+			event.setSessionId("session" + (i % 2));
+			event.setAclEnforcer("ranger-acl");
+			event.setAgentId("hiveServer2");
+			event.setResourceType("@table");
+			event.setAction("query");
+			event.setResultReason("policy" + (i % 4));
+
+			if (i % 2 == 0) {
+				event.getTags().clear();
+				event.getTags().add("FIN");
+			}
+
+			events.add(event);
+		}
+
+		writeEvents(events, null); // default compression
+
+		assertEquals("policyId", 5, getCount("policyId", 2L));
+		assertEquals("repoType", 10, getCount("repoType", 1));
+		assertEquals("-repoType", 10, getCount("-repoType", 7L));
+		assertEquals("clientIP", 4, getCount("clientIP", "10.0.0.3"));
+		assertEquals("zoneName", 7, getCount("zoneName", Collections.singletonList("zone1")));
+		assertEquals("cluster", 20, getCount("cluster", "cl1"));
+		assertEquals("cluster", 0, getCount("cluster", "cl2"));
+		assertEquals("agentHost", 10, getCount("agentHost", "host1"));
+		assertEquals("requestData", 11, getCount("requestData", "table1"));
+		assertEquals("sessionId", 10, getCount("sessionId", "session0"));
+		assertEquals("aclEnforcer", 0, getCount("aclEnforcer", "hadoop-acl"));
+		assertEquals("agentId", 20, getCount("agentId", "hiveServer2"));
+		assertEquals("resourceType", 20, getCount("resourceType", "@table"));
+		assertEquals("action", 0, getCount("action", "update"));
+		assertEquals("reason", 5, getCount("reason", "policy3"));
+		assertEquals("tags", 10, getCount("tags", "FIN"));
+		assertEquals("eventId", 1, getCount("eventId", ((AuthzAuditEvent) events.get(3)).getEventId()));
+		assertEquals("accessResult", 10, getCount("accessResult", "1"));
+
+		SearchCriteria searchCriteria = new SearchCriteria();
+
+		searchCriteria.getParamList().put("policyId", 2L);
+		searchCriteria.getParamList().put("clientIP", "10.0.0.3");
+
+		assertEquals("policyId and clientIP", 1, new LocalAccessAuditsService().getXAccessAuditSearchCount(searchCriteria).getValue());
+	}
+
+	@Test
+	public void testSortAndUserExclusion() throws Exception {
+		List<AuditEventBase> events = new ArrayList<AuditEventBase>();
+
+		for (int i = 0; i < 20; i++) {
+			events.add(createEvent(i, "user" + (i % 2), "db1/table" + i, i % 2));
+		}
+
+		writeEvents(events, null);
+
+		LocalAccessAuditsService service        = new LocalAccessAuditsService();
+		SearchCriteria           searchCriteria = new SearchCriteria();
+
+		searchCriteria.setStartIndex(5);
+		searchCriteria.setMaxRows(5);
+		searchCriteria.setSortBy("eventTime");
+		searchCriteria.setSortType("asc");
+
+		List<VXAccessAudit> audits = service.searchXAccessAudits(searchCriteria).getVXAccessAudits();
+
+		assertEquals("audits", 5, audits.size());
+		assertEquals("oldest event first", 5, audits.get(0).getSequenceNumber());
+		assertEquals("oldest event first", 9, audits.get(4).getSequenceNumber());
+
+		searchCriteria.setSortType("desc");
+
+		assertEquals("latest event first", 14, service.searchXAccessAudits(searchCriteria).getVXAccessAudits().get(0).getSequenceNumber());
+
+		PropertiesUtil.getPropertiesMap().put("ranger.accesslogs.exclude.users.list", "user1");
+
+		assertEquals("count with excluded users", 10, getCount("excludeServiceUser", "true"));
+	}
+
+	@Test
+	public void testAuditId() {
+		String uuid = "0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0";
+
+		assertEquals("same ID in every query", LocalAccessAuditsService.toAuditId(uuid + "-1"), LocalAccessAuditsService.toAuditId(uuid + "-1"));
+		assertNotEquals("sequence numbers of a UUID", LocalAccessAuditsService.toAuditId(uuid + "-1"), LocalAccessAuditsService.toAuditId(uuid + "-2"));
+		assertNotEquals("UUID and its first sequence number", LocalAccessAuditsService.toAuditId(uuid), LocalAccessAuditsService.toAuditId(uuid + "-1"));
+		assertEquals("other event IDs", "event-1".hashCode(), LocalAccessAuditsService.toAuditId("event-1"));
+	}
+
+	private void writeEvents(List<AuditEventBase> events, String compression) throws Exception {
+		File       dir   = new File("target", "testLocalAccessAuditsService_" + MiscUtil.generateUniqueId()).getAbsoluteFile();
+		Properties props = new Properties();
+
+		props.put(PROP_PREFIX + "." + LocalAuditStoreDestination.PROP_DIR, dir.getPath());
+
+		if (compression != null) {
+			props.put(PROP_PREFIX + "." + RangerLocalAuditStore.PROP_COMPRESSION, compression);
+		}
+
+		LocalAuditStoreDestination destination = new LocalAuditStoreDestination();
+
+		destination.init(props, PROP_PREFIX);
+
+		assertTrue("log", destination.log(events));
+
+		destination.stop();
+
+		PropertiesUtil.getPropertiesMap().put(LocalAccessAuditsService.PROP_AUDIT_LOCAL_DIR, dir.getPath());
+	}
+
+	private long getCount(String param, Object value) {
+		SearchCriteria searchCriteria = new SearchCriteria();
+
+		searchCriteria.getParamList().put(param, value);
+
+		return new LocalAccessAuditsService().getXAccessAuditSearchCount(searchCriteria).getValue();
+	}
+
+	private AuthzAuditEvent createEvent(int seqNum, String user, String resource, int accessResult) {
+		AuthzAuditEvent ret = new AuthzAuditEvent();
+
+		ret.setEventId(MiscUtil.generateUniqueId());
+		ret.setEventTime(new Date(BASE_TIME + seqNum));
+		ret.setSeqNum(seqNum);
+		ret.setUser(user);
+		ret.setResourcePath(resource);
+		ret.setAccessResult((short) accessResult);
+		ret.setRepositoryName("dev_hive");
+		ret.setAccessType("select");
+		ret.getTags().add("PII");
+
+		return ret;
+	}
+}
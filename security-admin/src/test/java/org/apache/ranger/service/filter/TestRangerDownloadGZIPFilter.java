@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.service.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerDownloadGZIPFilter {
+	@Test
+	public void testDownloadPaths() {
+		String[] downloads = {
+			"plugins/policies/download/cl1_hive",
+			"plugins/secure/policies/download/cl1_hive",
+			"plugins/policies/compact/download/cl1_hive",
+			"plugins/secure/policies/compact/download/cl1_hive",
+			"tags/download/cl1_hive",
+			"tags/secure/download/cl1_hive",
+			"roles/download/cl1_hive",
+			"roles/secure/download/cl1_hive",
+			"xusers/download/cl1_hive",
+			"xusers/secure/download/cl1_hive",
+			"/plugins/policies/download/cl1_hive"
+		};
+
+		for (String path : downloads) {
+			Assert.assertTrue(path, RangerDownloadGZIPFilter.isDownload(path));
+		}
+	}
+
+	@Test
+	public void testOtherPaths() {
+		String[] others = {
+			"plugins/policies/downloadExcel",
+			"plugins/policies/exportJson",
+			"plugins/services/name/cl1_hive",
+			"xusers/users",
+			"public/v2/api/policy",
+			"",
+			null
+		};
+
+		for (String path : others) {
+			Assert.assertFalse(path, RangerDownloadGZIPFilter.isDownload(path));
+		}
+	}
+}